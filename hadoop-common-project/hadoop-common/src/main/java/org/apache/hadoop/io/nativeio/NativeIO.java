@@ -23,6 +23,8 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -213,6 +215,101 @@ public static void syncFileRangeIfPossible(
       }
     }
 
+    /** Wrapper around mlock(2) */
+    static native void mlock_native(
+        ByteBuffer buffer, long len) throws NativeIOException;
+
+    /** Wrapper around munlock(2) */
+    static native void munlock_native(
+        ByteBuffer buffer, long len) throws NativeIOException;
+
+    /** Wrapper around getrlimit(RLIMIT_MEMLOCK) */
+    static native long getMemlockLimit0() throws NativeIOException;
+
+    /**
+     * Locks the provided direct ByteBuffer into memory, preventing it from
+     * swapping out. After a buffer is locked, future accesses will not incur
+     * a page fault.
+     *
+     * See the mlock(2) man page for more information.
+     *
+     * @throws NativeIOException
+     */
+    public static void mlock(ByteBuffer buffer, long len)
+        throws IOException {
+      assertCodeLoaded();
+      if (!buffer.isDirect()) {
+        throw new IOException("Cannot mlock a non-direct ByteBuffer");
+      }
+      mlock_native(buffer, len);
+    }
+
+    /**
+     * Unlocks a locked direct ByteBuffer, allowing it to swap out of memory.
+     * This is a no-op if the ByteBuffer was not previously locked.
+     *
+     * See the munlock(2) man page for more information.
+     *
+     * @throws NativeIOException
+     */
+    public static void munlock(ByteBuffer buffer, long len)
+        throws IOException {
+      assertCodeLoaded();
+      if (!buffer.isDirect()) {
+        throw new IOException("Cannot munlock a non-direct ByteBuffer");
+      }
+      munlock_native(buffer, len);
+    }
+
+    /**
+     * Unmaps the block from memory. See munmap(2).
+     *
+     * There isn't any portable way to unmap a memory region in Java.
+     * So we use the sun.nio method here.
+     * Note that unmapping a memory region could cause crashes if code
+     * continues to reference the unmapped code.  However, if we don't
+     * manually unmap the memory, we are dependent on the finalizer to
+     * do it, and we have no idea when the finalizer will run.
+     *
+     * @param buffer    The buffer to unmap.
+     */
+    public static void munmap(MappedByteBuffer buffer) {
+      if (buffer instanceof sun.nio.ch.DirectBuffer) {
+        sun.misc.Cleaner cleaner =
+            ((sun.nio.ch.DirectBuffer)buffer).cleaner();
+        cleaner.clean();
+      }
+    }
+
+    /**
+     * Get the maximum number of bytes that can be locked into memory at any
+     * given point.
+     *
+     * @return 0 if no bytes can be locked into memory;
+     *         Long.MAX_VALUE if there is no limit;
+     *         The number of bytes that can be locked into memory otherwise.
+     */
+    public static long getMemlockLimit() {
+      if (!isAvailable()) {
+        return 0;
+      }
+      try {
+        return getMemlockLimit0();
+      } catch (NativeIOException e) {
+        LOG.warn("Unable to determine the memlock limit", e);
+        return 0;
+      } catch (UnsatisfiedLinkError ule) {
+        // Older libhadoop.so without mlock support
+        return 0;
+      }
+    }
+
+    private static void assertCodeLoaded() throws IOException {
+      if (!isAvailable()) {
+        throw new IOException("NativeIO was not loaded");
+      }
+    }
+
     /** Linux only methods used for getOwner() implementation */
     private static native long getUIDforFDOwnerforOwner(FileDescriptor fd) throws IOException;
     private static native String getUserName(long uid) throws IOException;
@@ -83,6 +83,7 @@ enum InitMode { NORMAL, STANDBY }
   private final Map<String, MetricsSinkAdapter> sinks;
   private final Map<String, MetricsSink> allSinks;
   private final List<Callback> callbacks;
+  private final Map<String, Callback> namedCallbacks;
   private final MetricsCollectorImpl collector;
   private final MetricsRegistry registry = new MetricsRegistry(MS_NAME);
   @Metric({"Snapshot", "Snapshot stats"}) MutableStat snapshotStat;
@@ -118,6 +119,7 @@ public MetricsSystemImpl(String prefix) {
     sourceConfigs = Maps.newHashMap();
     sinkConfigs = Maps.newHashMap();
     callbacks = Lists.newArrayList();
+    namedCallbacks = Maps.newHashMap();
     injectedTags = Lists.newArrayList();
     collector = new MetricsCollectorImpl();
     if (prefix != null) {
@@ -177,11 +179,13 @@ public synchronized void start() {
       return;
     }
     for (Callback cb : callbacks) cb.preStart();
+    for (Callback cb : namedCallbacks.values()) cb.preStart();
     configure(prefix);
     startTimer();
     monitoring = true;
     LOG.info(prefix +" metrics system started");
     for (Callback cb : callbacks) cb.postStart();
+    for (Callback cb : namedCallbacks.values()) cb.postStart();
   }
 
   @Override
@@ -197,6 +201,7 @@ public synchronized void stop() {
       return;
     }
     for (Callback cb : callbacks) cb.preStop();
+    for (Callback cb : namedCallbacks.values()) cb.preStop();
     LOG.info("Stopping "+ prefix +" metrics system...");
     stopTimer();
     stopSources();
@@ -205,6 +210,7 @@ public synchronized void stop() {
     monitoring = false;
     LOG.info(prefix +" metrics system stopped.");
     for (Callback cb : callbacks) cb.postStop();
+    for (Callback cb : namedCallbacks.values()) cb.postStop();
   }
 
   @Override public synchronized <T>
@@ -223,7 +229,7 @@ T register(String name, String desc, T source) {
     }
     // We want to re-register the source to pick up new config when the
     // metrics system restarts.
-    register(new AbstractCallback() {
+    register(finalName, new AbstractCallback() {
       @Override public void postStart() {
         registerSource(finalName, finalDesc, s);
       }
@@ -231,6 +237,17 @@ T register(String name, String desc, T source) {
     return source;
   }
 
+  @Override public synchronized
+  void unregisterSource(String name) {
+    MetricsSourceAdapter sa = sources.remove(name);
+    if (sa != null) {
+      sa.stop();
+    }
+    allSources.remove(name);
+    namedCallbacks.remove(name);
+    DefaultMetricsSystem.removeSourceName(name);
+  }
+
   synchronized
   void registerSource(String name, String desc, MetricsSource source) {
     checkNotNull(config, "config");
@@ -277,7 +294,15 @@ synchronized void registerSink(String name, String desc, MetricsSink sink) {
 
   @Override
   public synchronized void register(final Callback callback) {
-    callbacks.add((Callback) Proxy.newProxyInstance(
+    callbacks.add(getProxyForCallback(callback));
+  }
+
+  private synchronized void register(String name, final Callback callback) {
+    namedCallbacks.put(name, getProxyForCallback(callback));
+  }
+
+  private Callback getProxyForCallback(final Callback callback) {
+    return (Callback) Proxy.newProxyInstance(
         callback.getClass().getClassLoader(), new Class<?>[] { Callback.class },
         new InvocationHandler() {
           @Override
@@ -291,7 +316,7 @@ public Object invoke(Object proxy, Method method, Object[] args)
             }
             return null;
           }
-        }));
+        });
   }
 
   @Override
@@ -560,6 +585,7 @@ public synchronized boolean shutdown() {
     allSources.clear();
     allSinks.clear();
     callbacks.clear();
+    namedCallbacks.clear();
     if (mbeanName != null) {
       MBeans.unregister(mbeanName);
       mbeanName = null;
@@ -115,6 +115,15 @@ public static String sourceName(String name, boolean dupOK) {
     return INSTANCE.newSourceName(name, dupOK);
   }
 
+  @InterfaceAudience.Private
+  public static void removeSourceName(String name) {
+    INSTANCE.removeSource(name);
+  }
+
+  synchronized void removeSource(String name) {
+    sourceNames.map.remove(name);
+  }
+
   synchronized ObjectName newObjectName(String name) {
     try {
       if (mBeanNames.map.containsKey(name) && !miniClusterMode) {
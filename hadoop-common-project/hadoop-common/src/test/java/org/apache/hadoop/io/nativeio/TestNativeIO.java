@@ -24,6 +24,9 @@
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.ArrayList;
 import java.util.List;
@@ -42,6 +45,7 @@
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.util.NativeCodeLoader;
 import org.apache.hadoop.util.Time;
 
@@ -409,6 +413,36 @@ public void testSyncFileRange() throws Exception {
     }
   }
 
+  @Test (timeout = 30000)
+  public void testMlock() throws Exception {
+    assumeTrue(!Path.WINDOWS);
+    final long len = 4096;
+    assumeTrue(NativeIO.POSIX.getMemlockLimit() >= len);
+    File testFile = new File(TEST_DIR, "testMlock");
+    FileOutputStream fos = new FileOutputStream(testFile);
+    try {
+      fos.write(new byte[(int)len]);
+    } finally {
+      fos.close();
+    }
+    FileInputStream fis = new FileInputStream(testFile);
+    try {
+      MappedByteBuffer mapbuf = fis.getChannel().map(
+          FileChannel.MapMode.READ_ONLY, 0, len);
+      NativeIO.POSIX.mlock(mapbuf, len);
+      NativeIO.POSIX.munlock(mapbuf, len);
+      NativeIO.POSIX.munmap(mapbuf);
+    } finally {
+      fis.close();
+    }
+    try {
+      NativeIO.POSIX.mlock(ByteBuffer.allocate((int)len), len);
+      fail("Should not be able to mlock a heap buffer");
+    } catch (IOException ioe) {
+      GenericTestUtils.assertExceptionContains("non-direct", ioe);
+    }
+  }
+
   private void assertPermissions(File f, int expected) throws IOException {
     FileSystem localfs = FileSystem.getLocal(new Configuration());
     FsPermission perms = localfs.getFileStatus(
@@ -44,6 +44,8 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_CLIENT_SOCKET_TIMEOUT_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_CLIENT_USE_LEGACY_BLOCKREADER;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_CLIENT_USE_LEGACY_BLOCKREADER_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_CLIENT_WRITE_PACKET_POOL_SIZE_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_CLIENT_WRITE_PACKET_POOL_SIZE_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_CLIENT_WRITE_PACKET_SIZE_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_CLIENT_WRITE_PACKET_SIZE_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SOCKET_WRITE_TIMEOUT_KEY;
@@ -103,6 +105,7 @@
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
+import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
 import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
@@ -117,6 +120,7 @@
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.NSQuotaExceededException;
+import org.apache.hadoop.hdfs.protocol.PathBasedCacheDirective;
 import org.apache.hadoop.hdfs.protocol.UnresolvedPathException;
 import org.apache.hadoop.hdfs.protocol.datatransfer.DataTransferEncryptor;
 import org.apache.hadoop.hdfs.protocol.datatransfer.IOStreamPair;
@@ -134,6 +138,7 @@
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
 import org.apache.hadoop.hdfs.server.namenode.SafeModeException;
+import org.apache.hadoop.hdfs.util.ByteArrayPool;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.EnumSetWritable;
 import org.apache.hadoop.io.IOUtils;
@@ -193,6 +198,8 @@ public class DFSClient implements java.io.Closeable {
   private final String authority;
   final SocketCache socketCache;
   final Conf dfsClientConf;
+  /** Packet buffers shared by the output streams of this client. */
+  final ByteArrayPool packetBufferPool;
   private Random r = new Random();
   private SocketAddress[] localInterfaceAddrs;
   private DataEncryptionKey encryptionKey;
@@ -209,6 +216,7 @@ static class Conf {
     final int ioBufferSize;
     final ChecksumOpt defaultChecksumOpt;
     final int writePacketSize;
+    final int writePacketPoolSize;
     final int socketTimeout;
     final int socketCacheCapacity;
     final long socketCacheExpiry;
@@ -253,6 +261,8 @@ static class Conf {
       /** dfs.write.packet.size is an internal config variable */
       writePacketSize = conf.getInt(DFS_CLIENT_WRITE_PACKET_SIZE_KEY,
           DFS_CLIENT_WRITE_PACKET_SIZE_DEFAULT);
+      writePacketPoolSize = conf.getInt(DFS_CLIENT_WRITE_PACKET_POOL_SIZE_KEY,
+          DFS_CLIENT_WRITE_PACKET_POOL_SIZE_DEFAULT);
       defaultBlockSize = conf.getLongBytes(DFS_BLOCK_SIZE_KEY,
           DFS_BLOCK_SIZE_DEFAULT);
       defaultReplication = (short) conf.getInt(
@@ -433,6 +443,8 @@ public DFSClient(URI nameNodeUri, Configuration conf,
       Joiner.on(',').join(localInterfaceAddrs) + "]");
     }
     
+    this.packetBufferPool =
+        new ByteArrayPool(dfsClientConf.writePacketPoolSize);
     this.socketCache = SocketCache.getInstance(dfsClientConf.socketCacheCapacity, dfsClientConf.socketCacheExpiry);
   }
 
@@ -1958,6 +1970,80 @@ public DatanodeInfo[] datanodeReport(DatanodeReportType type)
   throws IOException {
     return namenode.getDatanodeReport(type);
   }
+
+  /**
+   * @see ClientProtocol#addPathBasedCacheDirective(PathBasedCacheDirective)
+   */
+  public long addPathBasedCacheDirective(PathBasedCacheDirective directive)
+      throws IOException {
+    checkOpen();
+    try {
+      return namenode.addPathBasedCacheDirective(directive);
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException();
+    }
+  }
+
+  /**
+   * @see ClientProtocol#removePathBasedCacheDirective(long)
+   */
+  public void removePathBasedCacheDirective(long id) throws IOException {
+    checkOpen();
+    try {
+      namenode.removePathBasedCacheDirective(id);
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException();
+    }
+  }
+
+  /**
+   * @see ClientProtocol#listPathBasedCacheDirectives(String)
+   */
+  public PathBasedCacheDirective[] listPathBasedCacheDirectives(String pool)
+      throws IOException {
+    checkOpen();
+    try {
+      return namenode.listPathBasedCacheDirectives(pool);
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException();
+    }
+  }
+
+  /**
+   * @see ClientProtocol#addCachePool(CachePoolInfo)
+   */
+  public void addCachePool(CachePoolInfo info) throws IOException {
+    checkOpen();
+    try {
+      namenode.addCachePool(info);
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException();
+    }
+  }
+
+  /**
+   * @see ClientProtocol#removeCachePool(String)
+   */
+  public void removeCachePool(String poolName) throws IOException {
+    checkOpen();
+    try {
+      namenode.removeCachePool(poolName);
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException();
+    }
+  }
+
+  /**
+   * @see ClientProtocol#listCachePools()
+   */
+  public CachePoolInfo[] listCachePools() throws IOException {
+    checkOpen();
+    try {
+      return namenode.listCachePools();
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException();
+    }
+  }
     
   /**
    * Enter, leave or get safe mode.
@@ -724,7 +724,7 @@ private DNAddrPair chooseDataNode(LocatedBlock block)
     while (true) {
       DatanodeInfo[] nodes = block.getLocations();
       try {
-        DatanodeInfo chosenNode = bestNode(nodes, deadNodes);
+        DatanodeInfo chosenNode = bestNode(block, deadNodes);
         final String dnAddr =
             chosenNode.getXferAddr(dfsClient.connectToDnViaHostname());
         if (DFSClient.LOG.isDebugEnabled()) {
@@ -1202,6 +1202,23 @@ static DatanodeInfo bestNode(DatanodeInfo nodes[],
     throw new IOException("No live nodes contain current block");
   }
 
+  /**
+   * Pick the best node from which to stream the data of a block, preferring
+   * the closest node which has the block cached in memory.
+   */
+  static DatanodeInfo bestNode(LocatedBlock block,
+      AbstractMap<DatanodeInfo, DatanodeInfo> deadNodes) throws IOException {
+    DatanodeInfo[] nodes = block.getLocations();
+    if (block.getCachedLocations().length > 0 && nodes != null) {
+      for (DatanodeInfo node : nodes) {
+        if (!deadNodes.containsKey(node) && block.isCachedOn(node)) {
+          return node;
+        }
+      }
+    }
+    return bestNode(nodes, deadNodes);
+  }
+
   /** Utility class to encapsulate data node info and its address. */
   static class DNAddrPair {
     DatanodeInfo info;
@@ -173,25 +173,27 @@ private static class Packet {
      * Create a heartbeat packet.
      */
     Packet(int checksumSize) {
-      this(0, 0, 0, HEART_BEAT_SEQNO, checksumSize);
+      this(new byte[PacketHeader.PKT_MAX_HEADER_LEN], 0, 0, HEART_BEAT_SEQNO,
+          checksumSize);
     }
     
     /**
      * Create a new packet.
      * 
-     * @param pktSize maximum size of the packet, 
-     *                including checksum data and actual data.
+     * @param buf the buffer of the packet, of at least
+     *            {@link PacketHeader#PKT_MAX_HEADER_LEN} bytes plus the
+     *            maximum size of the checksum data and actual data.
      * @param chunksPerPkt maximum number of chunks per packet.
      * @param offsetInBlock offset in bytes into the HDFS block.
      */
-    Packet(int pktSize, int chunksPerPkt, long offsetInBlock, 
+    Packet(byte[] buf, int chunksPerPkt, long offsetInBlock, 
                               long seqno, int checksumSize) {
       this.lastPacketInBlock = false;
       this.numChunks = 0;
       this.offsetInBlock = offsetInBlock;
       this.seqno = seqno;
       
-      buf = new byte[PacketHeader.PKT_MAX_HEADER_LEN + pktSize];
+      this.buf = buf;
       
       checksumStart = PacketHeader.PKT_MAX_HEADER_LEN;
       checksumPos = checksumStart;
@@ -707,6 +709,9 @@ public void run() {
               ackQueue.removeFirst();
               dataQueue.notifyAll();
             }
+
+            // the packet is no longer needed for resending
+            releaseBuffer(one);
           } catch (Exception e) {
             if (!responderClosed) {
               if (e instanceof IOException) {
@@ -1354,6 +1359,29 @@ static DFSOutputStream newStreamForAppend(DFSClient dfsClient, String src,
     return out;
   }
 
+  /**
+   * Create a new packet whose buffer comes from the packet buffer pool of
+   * the client.
+   */
+  private Packet createPacket(int pktSize, int chunksPerPkt,
+      long offsetInBlock, long seqno) {
+    byte[] buf = dfsClient.packetBufferPool.getBuffer(
+        PacketHeader.PKT_MAX_HEADER_LEN + pktSize);
+    return new Packet(buf, chunksPerPkt, offsetInBlock, seqno,
+        checksum.getChecksumSize());
+  }
+
+  /**
+   * Return the buffer of an acknowledged or discarded packet to the pool.
+   */
+  private void releaseBuffer(Packet packet) {
+    byte[] buf = packet.buf;
+    packet.buf = null;
+    if (buf != null) {
+      dfsClient.packetBufferPool.returnBuffer(buf);
+    }
+  }
+
   private void computePacketChunkSize(int psize, int csize) {
     int chunkSize = csize + checksum.getChecksumSize();
     chunksPerPacket = Math.max(psize/chunkSize, 1);
@@ -1423,8 +1451,8 @@ protected synchronized void writeChunk(byte[] b, int offset, int len, byte[] che
     }
 
     if (currentPacket == null) {
-      currentPacket = new Packet(packetSize, chunksPerPacket, 
-          bytesCurBlock, currentSeqno++, this.checksum.getChecksumSize());
+      currentPacket = createPacket(packetSize, chunksPerPacket, 
+          bytesCurBlock, currentSeqno++);
       if (DFSClient.LOG.isDebugEnabled()) {
         DFSClient.LOG.debug("DFSClient writeChunk allocating new packet seqno=" + 
             currentPacket.seqno +
@@ -1471,8 +1499,7 @@ protected synchronized void writeChunk(byte[] b, int offset, int len, byte[] che
       // indicate the end of block and reset bytesCurBlock.
       //
       if (bytesCurBlock == blockSize) {
-        currentPacket = new Packet(0, 0, bytesCurBlock, 
-            currentSeqno++, this.checksum.getChecksumSize());
+        currentPacket = createPacket(0, 0, bytesCurBlock, currentSeqno++);
         currentPacket.lastPacketInBlock = true;
         currentPacket.syncBlock = shouldSyncBlock;
         waitAndQueueCurrentPacket();
@@ -1566,8 +1593,8 @@ private void flushOrSync(boolean isSync, EnumSet<SyncFlag> syncFlags)
             // Nothing to send right now,
             // but sync was requested.
             // Send an empty packet
-            currentPacket = new Packet(packetSize, chunksPerPacket,
-                bytesCurBlock, currentSeqno++, this.checksum.getChecksumSize());
+            currentPacket = createPacket(packetSize, chunksPerPacket,
+                bytesCurBlock, currentSeqno++);
           }
         } else {
           // We already flushed up to this offset.
@@ -1583,10 +1610,13 @@ private void flushOrSync(boolean isSync, EnumSet<SyncFlag> syncFlags)
             // and the block was partially written,
             // and sync was requested.
             // So send an empty sync packet.
-            currentPacket = new Packet(packetSize, chunksPerPacket,
-                bytesCurBlock, currentSeqno++, this.checksum.getChecksumSize());
+            currentPacket = createPacket(packetSize, chunksPerPacket,
+                bytesCurBlock, currentSeqno++);
           } else {
             // just discard the current packet since it is already been sent.
+            if (currentPacket != null) {
+              releaseBuffer(currentPacket);
+            }
             currentPacket = null;
           }
         }
@@ -1776,8 +1806,7 @@ public synchronized void close() throws IOException {
 
       if (bytesCurBlock != 0) {
         // send an empty packet to mark the end of the block
-        currentPacket = new Packet(0, 0, bytesCurBlock, 
-            currentSeqno++, this.checksum.getChecksumSize());
+        currentPacket = createPacket(0, 0, bytesCurBlock, currentSeqno++);
         currentPacket.lastPacketInBlock = true;
         currentPacket.syncBlock = shouldSyncBlock;
       }
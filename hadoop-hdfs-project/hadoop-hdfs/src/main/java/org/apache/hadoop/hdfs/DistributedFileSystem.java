@@ -49,6 +49,7 @@
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
+import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.DirectoryListing;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
@@ -58,6 +59,7 @@
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.PathBasedCacheDirective;
 import org.apache.hadoop.hdfs.security.token.block.InvalidBlockTokenException;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
@@ -623,6 +625,53 @@ public DatanodeInfo[] getDataNodeStats(final DatanodeReportType type
     return dfs.datanodeReport(type);
   }
 
+  /**
+   * Ask the NameNode to keep the blocks of a file, or of the files directly
+   * in a directory, cached in DataNode memory.
+   *
+   * @param directive the path, cache pool and number of cached replicas
+   * @return the id of the new directive
+   * @see org.apache.hadoop.hdfs.protocol.ClientProtocol#addPathBasedCacheDirective(
+   *    PathBasedCacheDirective)
+   */
+  public long addPathBasedCacheDirective(PathBasedCacheDirective directive)
+      throws IOException {
+    String path = getPathName(new Path(directive.getPath()));
+    return dfs.addPathBasedCacheDirective(new PathBasedCacheDirective(
+        path, directive.getPool(), directive.getReplication()));
+  }
+
+  /**
+   * Remove a path-based cache directive by id.
+   */
+  public void removePathBasedCacheDirective(long id) throws IOException {
+    dfs.removePathBasedCacheDirective(id);
+  }
+
+  /**
+   * @param pool the pool to list the directives of, or null for all pools
+   * @return the path-based cache directives
+   */
+  public PathBasedCacheDirective[] listPathBasedCacheDirectives(String pool)
+      throws IOException {
+    return dfs.listPathBasedCacheDirectives(pool);
+  }
+
+  /** Add a cache pool. */
+  public void addCachePool(CachePoolInfo info) throws IOException {
+    dfs.addCachePool(info);
+  }
+
+  /** Remove a cache pool along with its directives. */
+  public void removeCachePool(String poolName) throws IOException {
+    dfs.removeCachePool(poolName);
+  }
+
+  /** @return the cache pools and their usage. */
+  public CachePoolInfo[] listCachePools() throws IOException {
+    return dfs.listCachePools();
+  }
+
   /**
    * Enter, leave or get safe mode.
    *  
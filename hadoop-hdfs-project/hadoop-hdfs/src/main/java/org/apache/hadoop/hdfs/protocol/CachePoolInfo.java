@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocol;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Describes a cache pool: a named group of path based cache directives
+ * that share a limit on the number of bytes they may cache.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class CachePoolInfo {
+  /** Limit of a pool whose directives may cache any number of bytes. */
+  public static final long LIMIT_UNLIMITED = Long.MAX_VALUE;
+
+  private final String poolName;
+  private final long limit;
+  private final long bytesNeeded;
+  private final long bytesCached;
+
+  public CachePoolInfo(String poolName) {
+    this(poolName, LIMIT_UNLIMITED);
+  }
+
+  public CachePoolInfo(String poolName, long limit) {
+    this(poolName, limit, 0, 0);
+  }
+
+  public CachePoolInfo(String poolName, long limit, long bytesNeeded,
+      long bytesCached) {
+    this.poolName = poolName;
+    this.limit = limit;
+    this.bytesNeeded = bytesNeeded;
+    this.bytesCached = bytesCached;
+  }
+
+  public String getPoolName() {
+    return poolName;
+  }
+
+  /** @return the maximum number of bytes the pool's directives may cache. */
+  public long getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return the number of bytes the pool's directives asked to cache, as of
+   *         the last scan by the NameNode. Only set on listing results.
+   */
+  public long getBytesNeeded() {
+    return bytesNeeded;
+  }
+
+  /**
+   * @return the number of bytes the DataNodes reported as cached for the
+   *         pool's directives. Only set on listing results.
+   */
+  public long getBytesCached() {
+    return bytesCached;
+  }
+
+  /**
+   * Check that this pool description is well-formed.
+   * @throws InvalidRequestException if it is not
+   */
+  public void validate() throws InvalidRequestException {
+    if (poolName == null || poolName.isEmpty()) {
+      throw new InvalidRequestException("Invalid empty cache pool name.");
+    }
+    if (limit < 0) {
+      throw new InvalidRequestException("Invalid negative limit " + limit
+          + " for cache pool " + poolName + ".");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "{poolName:" + poolName + ", limit:" + limit
+        + ", bytesNeeded:" + bytesNeeded + ", bytesCached:" + bytesCached + "}";
+  }
+}
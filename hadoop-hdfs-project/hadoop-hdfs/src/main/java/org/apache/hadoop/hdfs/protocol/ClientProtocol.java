@@ -957,4 +957,69 @@ public void cancelDelegationToken(Token<DelegationTokenIdentifier> token)
    * @throws IOException
    */
   public DataEncryptionKey getDataEncryptionKey() throws IOException;
+
+  ///////////////////////////////////////
+  // Centralized cache management
+  ///////////////////////////////////////
+  /**
+   * Add a directive asking the DataNodes to cache the blocks of a path in
+   * memory. Requires superuser privilege.
+   *
+   * @param directive the path to cache and the pool to charge it to
+   * @return the id assigned to the new directive
+   * @throws InvalidRequestException if the directive is malformed or its
+   *         pool does not exist
+   * @throws IOException
+   */
+  public long addPathBasedCacheDirective(PathBasedCacheDirective directive)
+      throws IOException;
+
+  /**
+   * Remove a path based cache directive. Requires superuser privilege.
+   *
+   * @param id the id of the directive to remove
+   * @throws InvalidRequestException if there is no directive with that id
+   * @throws IOException
+   */
+  public void removePathBasedCacheDirective(long id) throws IOException;
+
+  /**
+   * List the path based cache directives.
+   *
+   * @param pool the pool to list the directives of, or null for all pools
+   * @return the directives, ordered by id
+   * @throws IOException
+   */
+  @Idempotent
+  public PathBasedCacheDirective[] listPathBasedCacheDirectives(String pool)
+      throws IOException;
+
+  /**
+   * Add a cache pool. Requires superuser privilege.
+   *
+   * @param info the name and byte limit of the pool
+   * @throws InvalidRequestException if the info is malformed or a pool with
+   *         that name already exists
+   * @throws IOException
+   */
+  public void addCachePool(CachePoolInfo info) throws IOException;
+
+  /**
+   * Remove a cache pool and all of its directives. Requires superuser
+   * privilege.
+   *
+   * @param poolName the name of the pool to remove
+   * @throws InvalidRequestException if there is no pool with that name
+   * @throws IOException
+   */
+  public void removeCachePool(String poolName) throws IOException;
+
+  /**
+   * List the cache pools along with their current usage.
+   *
+   * @return the pools, ordered by name
+   * @throws IOException
+   */
+  @Idempotent
+  public CachePoolInfo[] listCachePools() throws IOException;
 }
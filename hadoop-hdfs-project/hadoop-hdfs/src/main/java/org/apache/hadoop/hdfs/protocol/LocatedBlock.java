@@ -39,6 +39,10 @@ public class LocatedBlock {
   // their locations are not part of this object
   private boolean corrupt;
   private Token<BlockTokenIdentifier> blockToken = new Token<BlockTokenIdentifier>();
+  // Subset of locs whose replicas are cached in DataNode memory.
+  private DatanodeInfo[] cachedLocs;
+
+  private static final DatanodeInfo[] EMPTY_LOCS = new DatanodeInfo[0];
 
   public LocatedBlock(ExtendedBlock b, DatanodeInfo[] locs) {
     this(b, locs, -1, false); // startOffset is unknown
@@ -50,14 +54,24 @@ public LocatedBlock(ExtendedBlock b, DatanodeInfo[] locs, long startOffset) {
 
   public LocatedBlock(ExtendedBlock b, DatanodeInfo[] locs, long startOffset, 
                       boolean corrupt) {
+    this(b, locs, startOffset, corrupt, EMPTY_LOCS);
+  }
+
+  public LocatedBlock(ExtendedBlock b, DatanodeInfo[] locs, long startOffset,
+                      boolean corrupt, DatanodeInfo[] cachedLocs) {
     this.b = b;
     this.offset = startOffset;
     this.corrupt = corrupt;
     if (locs==null) {
-      this.locs = new DatanodeInfo[0];
+      this.locs = EMPTY_LOCS;
     } else {
       this.locs = locs;
     }
+    if (cachedLocs == null) {
+      this.cachedLocs = EMPTY_LOCS;
+    } else {
+      this.cachedLocs = cachedLocs;
+    }
   }
 
   public Token<BlockTokenIdentifier> getBlockToken() {
@@ -75,6 +89,24 @@ public ExtendedBlock getBlock() {
   public DatanodeInfo[] getLocations() {
     return locs;
   }
+
+  /**
+   * @return the locations, among {@link #getLocations()}, which hold a
+   *         copy of this block in memory.
+   */
+  public DatanodeInfo[] getCachedLocations() {
+    return cachedLocs;
+  }
+
+  /** @return true if the given location holds a cached copy of the block. */
+  public boolean isCachedOn(DatanodeInfo loc) {
+    for (DatanodeInfo cached : cachedLocs) {
+      if (cached.equals(loc)) {
+        return true;
+      }
+    }
+    return false;
+  }
   
   public long getStartOffset() {
     return offset;
@@ -103,6 +135,7 @@ public String toString() {
         + "; corrupt=" + corrupt
         + "; offset=" + offset
         + "; locs=" + java.util.Arrays.asList(locs)
+        + "; cachedLocs=" + java.util.Arrays.asList(cachedLocs)
         + "}";
   }
 }
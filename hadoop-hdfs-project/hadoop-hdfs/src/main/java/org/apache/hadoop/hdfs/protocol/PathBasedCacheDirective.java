@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocol;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.hdfs.DFSUtil;
+
+/**
+ * A directive to cache the blocks of a path in DataNode memory.
+ * If the path is a file, all of its blocks are cached. If the path is a
+ * directory, the blocks of the files directly contained in it are cached.
+ * Every directive belongs to a cache pool, which bounds the amount of
+ * memory that its directives may use.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class PathBasedCacheDirective {
+  /** Id of a directive which has not been assigned one by the NameNode. */
+  public static final long INVALID_ID = -1;
+
+  private final long id;
+  private final String path;
+  private final String pool;
+  private final short replication;
+
+  public PathBasedCacheDirective(String path, String pool) {
+    this(INVALID_ID, path, pool, (short)1);
+  }
+
+  public PathBasedCacheDirective(String path, String pool, short replication) {
+    this(INVALID_ID, path, pool, replication);
+  }
+
+  public PathBasedCacheDirective(long id, String path, String pool,
+      short replication) {
+    this.id = id;
+    this.path = path;
+    this.pool = pool;
+    this.replication = replication;
+  }
+
+  /** @return the id assigned by the NameNode, or {@link #INVALID_ID}. */
+  public long getId() {
+    return id;
+  }
+
+  /** @return the path to cache. */
+  public String getPath() {
+    return path;
+  }
+
+  /** @return the name of the cache pool this directive belongs to. */
+  public String getPool() {
+    return pool;
+  }
+
+  /** @return the number of cached replicas wanted for each block. */
+  public short getReplication() {
+    return replication;
+  }
+
+  /**
+   * Check that this directive is well-formed.
+   * @throws InvalidRequestException if it is not
+   */
+  public void validate() throws InvalidRequestException {
+    if (path == null || !DFSUtil.isValidName(path)) {
+      throw new InvalidRequestException("Invalid path '" + path + "'.");
+    }
+    if (pool == null || pool.isEmpty()) {
+      throw new InvalidRequestException("Invalid empty pool name.");
+    }
+    if (replication <= 0) {
+      throw new InvalidRequestException("Invalid replication factor "
+          + replication + " for " + path + ".");
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof PathBasedCacheDirective)) {
+      return false;
+    }
+    PathBasedCacheDirective other = (PathBasedCacheDirective)o;
+    return id == other.id && replication == other.replication
+        && path.equals(other.path) && pool.equals(other.pool);
+  }
+
+  @Override
+  public int hashCode() {
+    return (int)(id ^ (id >>> 32)) ^ path.hashCode() ^ pool.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "{id:" + id + ", path:" + path + ", pool:" + pool
+        + ", replication:" + replication + "}";
+  }
+}
@@ -33,6 +33,7 @@
 import org.apache.hadoop.fs.UnresolvedLinkException;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.protocol.AlreadyBeingCreatedException;
+import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
 import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
@@ -47,7 +48,18 @@
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.NSQuotaExceededException;
+import org.apache.hadoop.hdfs.protocol.PathBasedCacheDirective;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.AbandonBlockRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.AddCachePoolRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.AddPathBasedCacheDirectiveRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CachePoolInfoProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ListCachePoolsRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ListCachePoolsResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ListPathBasedCacheDirectivesRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ListPathBasedCacheDirectivesResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.PathBasedCacheDirectiveProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.RemoveCachePoolRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.RemovePathBasedCacheDirectiveRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.AddBlockRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.AppendRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.AppendResponseProto;
@@ -154,6 +166,9 @@ public class ClientNamenodeProtocolTranslatorPB implements
   VOID_GET_DATA_ENCRYPTIONKEY_REQUEST =
       GetDataEncryptionKeyRequestProto.newBuilder().build();
 
+  private final static ListCachePoolsRequestProto VOID_LIST_CACHE_POOLS_REQUEST =
+      ListCachePoolsRequestProto.newBuilder().build();
+
   public ClientNamenodeProtocolTranslatorPB(ClientNamenodeProtocolPB proxy) {
     rpcProxy = proxy;
   }
@@ -851,6 +866,96 @@ public DataEncryptionKey getDataEncryptionKey() throws IOException {
     }
   }
 
+  @Override
+  public long addPathBasedCacheDirective(PathBasedCacheDirective directive)
+      throws IOException {
+    AddPathBasedCacheDirectiveRequestProto req =
+        AddPathBasedCacheDirectiveRequestProto.newBuilder()
+        .setDirective(PBHelper.convert(directive))
+        .build();
+    try {
+      return rpcProxy.addPathBasedCacheDirective(null, req).getId();
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
+  @Override
+  public void removePathBasedCacheDirective(long id) throws IOException {
+    RemovePathBasedCacheDirectiveRequestProto req =
+        RemovePathBasedCacheDirectiveRequestProto.newBuilder()
+        .setId(id)
+        .build();
+    try {
+      rpcProxy.removePathBasedCacheDirective(null, req);
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
+  @Override
+  public PathBasedCacheDirective[] listPathBasedCacheDirectives(String pool)
+      throws IOException {
+    ListPathBasedCacheDirectivesRequestProto.Builder builder =
+        ListPathBasedCacheDirectivesRequestProto.newBuilder();
+    if (pool != null) {
+      builder.setPool(pool);
+    }
+    try {
+      ListPathBasedCacheDirectivesResponseProto rsp =
+          rpcProxy.listPathBasedCacheDirectives(null, builder.build());
+      PathBasedCacheDirective[] directives =
+          new PathBasedCacheDirective[rsp.getDirectivesCount()];
+      int i = 0;
+      for (PathBasedCacheDirectiveProto p : rsp.getDirectivesList()) {
+        directives[i++] = PBHelper.convert(p);
+      }
+      return directives;
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
+  @Override
+  public void addCachePool(CachePoolInfo info) throws IOException {
+    AddCachePoolRequestProto req = AddCachePoolRequestProto.newBuilder()
+        .setInfo(PBHelper.convert(info))
+        .build();
+    try {
+      rpcProxy.addCachePool(null, req);
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
+  @Override
+  public void removeCachePool(String poolName) throws IOException {
+    RemoveCachePoolRequestProto req = RemoveCachePoolRequestProto.newBuilder()
+        .setPoolName(poolName)
+        .build();
+    try {
+      rpcProxy.removeCachePool(null, req);
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
+  @Override
+  public CachePoolInfo[] listCachePools() throws IOException {
+    try {
+      ListCachePoolsResponseProto rsp = rpcProxy.listCachePools(null,
+          VOID_LIST_CACHE_POOLS_REQUEST);
+      CachePoolInfo[] pools = new CachePoolInfo[rsp.getPoolsCount()];
+      int i = 0;
+      for (CachePoolInfoProto p : rsp.getPoolsList()) {
+        pools[i++] = PBHelper.convert(p);
+      }
+      return pools;
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
   @Override
   public Object getUnderlyingProxyObject() {
     return rpcProxy;
@@ -48,6 +48,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.StorageReceivedDeletedBlocksProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.VersionRequestProto;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.protocol.CacheReport;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
@@ -152,8 +153,8 @@ public DatanodeRegistration registerDatanode(DatanodeRegistration registration
 
   @Override
   public HeartbeatResponse sendHeartbeat(DatanodeRegistration registration,
-      StorageReport[] reports, int xmitsInProgress, int xceiverCount,
-      int failedVolumes) throws IOException {
+      StorageReport[] reports, CacheReport cacheReport, int xmitsInProgress,
+      int xceiverCount, int failedVolumes) throws IOException {
     HeartbeatRequestProto.Builder builder = HeartbeatRequestProto.newBuilder()
         .setRegistration(PBHelper.convert(registration))
         .setXmitsInProgress(xmitsInProgress).setXceiverCount(xceiverCount)
@@ -161,6 +162,19 @@ public HeartbeatResponse sendHeartbeat(DatanodeRegistration registration,
     for (StorageReport r : reports) {
       builder.addReports(PBHelper.convert(r));
     }
+    if (cacheReport != null) {
+      builder.setCacheCapacity(cacheReport.getCapacity())
+          .setCacheUsed(cacheReport.getUsed())
+          .setFullCacheReport(cacheReport.isFull());
+      long[] blockIds = cacheReport.getBlockIds();
+      for (int i = 0; i < blockIds.length; i++) {
+        builder.addCachedBlocks(blockIds[i]);
+      }
+      long[] uncachedBlockIds = cacheReport.getUncachedBlockIds();
+      for (int i = 0; i < uncachedBlockIds.length; i++) {
+        builder.addUncachedBlocks(uncachedBlockIds[i]);
+      }
+    }
     
     HeartbeatResponseProto resp;
     try {
@@ -45,6 +45,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.LocatedBlockProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.VersionRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.VersionResponseProto;
+import org.apache.hadoop.hdfs.server.protocol.CacheReport;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
@@ -108,9 +109,19 @@ public HeartbeatResponseProto sendHeartbeat(RpcController controller,
             p.getCapacity(), p.getDfsUsed(), p.getRemaining(),
             p.getBlockPoolUsed());
       }
+      long[] cachedBlocks = toLongArray(request.getCachedBlocksList());
+      CacheReport cacheReport;
+      if (request.getFullCacheReport()) {
+        cacheReport = new CacheReport(request.getCacheCapacity(),
+            request.getCacheUsed(), cachedBlocks);
+      } else {
+        cacheReport = new CacheReport(request.getCacheCapacity(),
+            request.getCacheUsed(), cachedBlocks,
+            toLongArray(request.getUncachedBlocksList()));
+      }
       response = impl.sendHeartbeat(PBHelper.convert(request.getRegistration()),
-          report, request.getXmitsInProgress(), request.getXceiverCount(),
-          request.getFailedVolumes());
+          report, cacheReport, request.getXmitsInProgress(),
+          request.getXceiverCount(), request.getFailedVolumes());
     } catch (IOException e) {
       throw new ServiceException(e);
     }
@@ -246,4 +257,12 @@ public CommitBlockSynchronizationResponseProto commitBlockSynchronization(
     }
     return VOID_COMMIT_BLOCK_SYNCHRONIZATION_RESPONSE_PROTO;
   }
+
+  private static long[] toLongArray(List<Long> list) {
+    long[] result = new long[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = list.get(i);
+    }
+    return result;
+  }
 }
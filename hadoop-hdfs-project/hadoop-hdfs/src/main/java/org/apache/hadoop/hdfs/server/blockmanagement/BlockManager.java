@@ -765,7 +765,27 @@ private LocatedBlock createLocatedBlock(final BlockInfo blk, final long pos
       " numCorrupt: " + numCorruptNodes +
       " numCorruptRepls: " + numCorruptReplicas;
     final ExtendedBlock eb = new ExtendedBlock(namesystem.getBlockPoolId(), blk);
-    return new LocatedBlock(eb, machines, pos, isCorrupt);
+    return new LocatedBlock(eb, machines, pos, isCorrupt,
+        getCachedLocations(blk, machines));
+  }
+
+  /** @return the subset of machines which reported the block as cached. */
+  private static DatanodeDescriptor[] getCachedLocations(final Block blk,
+      final DatanodeDescriptor[] machines) {
+    int numCached = 0;
+    for (DatanodeDescriptor d : machines) {
+      if (d.isCached(blk.getBlockId())) {
+        numCached++;
+      }
+    }
+    final DatanodeDescriptor[] cached = new DatanodeDescriptor[numCached];
+    int j = 0;
+    for (DatanodeDescriptor d : machines) {
+      if (d.isCached(blk.getBlockId())) {
+        cached[j++] = d;
+      }
+    }
+    return cached;
   }
 
   /** Create a LocatedBlocks. */
@@ -18,10 +18,15 @@
 package org.apache.hadoop.hdfs.server.blockmanagement;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.hdfs.protocol.Block;
@@ -133,6 +138,28 @@ synchronized void clear() {
                                 new BlockQueue<BlockInfoUnderConstruction>();
   /** A set of blocks to be invalidated by this datanode */
   private LightWeightHashSet<Block> invalidateBlocks = new LightWeightHashSet<Block>();
+  /** A queue of block ids to be cached by this datanode */
+  private BlockQueue<Long> pendingCached = new BlockQueue<Long>();
+  /** A queue of block ids to be uncached by this datanode */
+  private BlockQueue<Long> pendingUncached = new BlockQueue<Long>();
+  /**
+   * Block ids queued to be cached or uncached by this datanode, mapped to
+   * the cache rescan from which on the command may be queued again. Until
+   * then, the command is assumed to be on its way.
+   */
+  private final Map<Long, Long> cacheCommandRetries =
+      new HashMap<Long, Long>();
+  private final Map<Long, Long> uncacheCommandRetries =
+      new HashMap<Long, Long>();
+
+  /**
+   * Ids of the blocks this datanode reported as cached in its last
+   * heartbeat. The set is replaced, never modified, so that readers
+   * need no locking.
+   */
+  private volatile Set<Long> cachedBlocks = Collections.emptySet();
+  private long cacheCapacity = 0L;
+  private long cacheUsed = 0L;
 
   /* Variables for maintaining number of blocks scheduled to be written to
    * this datanode. This count is approximate and might be slightly bigger
@@ -284,6 +311,9 @@ public void resetBlocks() {
     this.blockList = null;
     this.invalidateBlocks.clear();
     this.volumeFailures = 0;
+    this.cachedBlocks = Collections.emptySet();
+    this.cacheCapacity = 0L;
+    this.cacheUsed = 0L;
   }
   
   public void clearBlockQueues() {
@@ -292,6 +322,12 @@ public void clearBlockQueues() {
       this.recoverBlocks.clear();
       this.replicateBlocks.clear();
     }
+    synchronized (cacheCommandRetries) {
+      this.pendingCached.clear();
+      this.pendingUncached.clear();
+      this.cacheCommandRetries.clear();
+      this.uncacheCommandRetries.clear();
+    }
   }
 
   public int numBlocks() {
@@ -314,6 +350,163 @@ public void updateHeartbeat(long capacity, long dfsUsed, long remaining,
     rollBlocksScheduled(getLastUpdate());
   }
 
+  /**
+   * Updates the cache state from a full cache report.
+   */
+  public void updateCacheReport(long capacity, long used, long[] blockIds) {
+    Set<Long> cached = new HashSet<Long>(blockIds.length);
+    for (long blockId : blockIds) {
+      cached.add(blockId);
+    }
+    this.cacheCapacity = capacity;
+    this.cacheUsed = used;
+    this.cachedBlocks = Collections.unmodifiableSet(cached);
+  }
+
+  /**
+   * Updates the cache state from an incremental cache report, which lists
+   * the blocks cached and uncached since the previous report.
+   */
+  public void updateCacheReport(long capacity, long used,
+      long[] cachedBlockIds, long[] uncachedBlockIds) {
+    this.cacheCapacity = capacity;
+    this.cacheUsed = used;
+    if (cachedBlockIds.length == 0 && uncachedBlockIds.length == 0) {
+      return;
+    }
+    Set<Long> cached = new HashSet<Long>(cachedBlocks);
+    for (long blockId : cachedBlockIds) {
+      cached.add(blockId);
+    }
+    for (long blockId : uncachedBlockIds) {
+      cached.remove(blockId);
+    }
+    this.cachedBlocks = Collections.unmodifiableSet(cached);
+  }
+
+  /** @return the number of bytes this datanode may lock in memory. */
+  public long getCacheCapacity() {
+    return cacheCapacity;
+  }
+
+  /** @return the number of bytes this datanode has locked in memory. */
+  public long getCacheUsed() {
+    return cacheUsed;
+  }
+
+  /** @return the cache space which is not used yet. */
+  public long getCacheRemaining() {
+    return Math.max(0L, cacheCapacity - cacheUsed);
+  }
+
+  /** @return the ids of the blocks this datanode last reported as cached. */
+  public Set<Long> getCachedBlocks() {
+    return cachedBlocks;
+  }
+
+  /** @return true if this datanode last reported the block as cached. */
+  public boolean isCached(long blockId) {
+    return cachedBlocks.contains(blockId);
+  }
+
+  /**
+   * Store a block id to be cached by this datanode, unless it was queued
+   * before and may not be queued again until a later rescan.
+   *
+   * @param blockId the block to cache
+   * @param rescan the current cache rescan
+   * @param retryRescan the rescan from which on the block may be queued
+   *                    again if it is still not reported as cached
+   * @return true if the block was queued
+   */
+  public boolean addBlockToBeCached(long blockId, long rescan,
+      long retryRescan) {
+    synchronized (cacheCommandRetries) {
+      uncacheCommandRetries.remove(blockId);
+      if (!queueCacheCommand(cacheCommandRetries, blockId, rescan,
+          retryRescan)) {
+        return false;
+      }
+      pendingCached.offer(blockId);
+      return true;
+    }
+  }
+
+  /**
+   * Store a block id to be uncached by this datanode, unless it was queued
+   * before and may not be queued again until a later rescan.
+   *
+   * @see #addBlockToBeCached(long, long, long)
+   */
+  public boolean addBlockToBeUncached(long blockId, long rescan,
+      long retryRescan) {
+    synchronized (cacheCommandRetries) {
+      cacheCommandRetries.remove(blockId);
+      if (!queueCacheCommand(uncacheCommandRetries, blockId, rescan,
+          retryRescan)) {
+        return false;
+      }
+      pendingUncached.offer(blockId);
+      return true;
+    }
+  }
+
+  private static boolean queueCacheCommand(Map<Long, Long> retries,
+      long blockId, long rescan, long retryRescan) {
+    Long retry = retries.get(blockId);
+    if (retry != null && retry > rescan) {
+      return false;
+    }
+    retries.put(blockId, retryRescan);
+    return true;
+  }
+
+  /**
+   * Forget the cache and uncache commands which may be queued again from
+   * the given rescan on. The cache reports show by now whether they took
+   * effect, and those which did not are queued again by the rescan.
+   */
+  public void pruneCacheCommands(long rescan) {
+    synchronized (cacheCommandRetries) {
+      pruneCacheCommands(cacheCommandRetries, rescan);
+      pruneCacheCommands(uncacheCommandRetries, rescan);
+    }
+  }
+
+  private static void pruneCacheCommands(Map<Long, Long> retries,
+      long rescan) {
+    for (Iterator<Long> it = retries.values().iterator(); it.hasNext();) {
+      if (it.next() <= rescan) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove the specified number of block ids to be cached.
+   */
+  public long[] getCacheCommand(int maxBlocks) {
+    return toLongArray(pendingCached.poll(maxBlocks));
+  }
+
+  /**
+   * Remove the specified number of block ids to be uncached.
+   */
+  public long[] getUncacheCommand(int maxBlocks) {
+    return toLongArray(pendingUncached.poll(maxBlocks));
+  }
+
+  private static long[] toLongArray(List<Long> ids) {
+    if (ids == null) {
+      return null;
+    }
+    long[] result = new long[ids.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = ids.get(i);
+    }
+    return result;
+  }
+
   /**
    * Iterates over the list of blocks belonging to the datanode.
    */
@@ -54,8 +54,10 @@
 import org.apache.hadoop.hdfs.server.namenode.Namesystem;
 import org.apache.hadoop.hdfs.server.protocol.BalancerBandwidthCommand;
 import org.apache.hadoop.hdfs.server.protocol.BlockCommand;
+import org.apache.hadoop.hdfs.server.protocol.BlockIdCommand;
 import org.apache.hadoop.hdfs.server.protocol.BlockRecoveryCommand;
 import org.apache.hadoop.hdfs.server.protocol.BlockRecoveryCommand.RecoveringBlock;
+import org.apache.hadoop.hdfs.server.protocol.CacheReport;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
@@ -1080,6 +1082,7 @@ private void setDatanodeDead(DatanodeDescriptor node) {
   public DatanodeCommand[] handleHeartbeat(DatanodeRegistration nodeReg,
       final String blockPoolId,
       long capacity, long dfsUsed, long remaining, long blockPoolUsed,
+      CacheReport cacheReport,
       int xceiverCount, int maxTransfers, int failedVolumes
       ) throws IOException {
     synchronized (heartbeatManager) {
@@ -1103,6 +1106,14 @@ public DatanodeCommand[] handleHeartbeat(DatanodeRegistration nodeReg,
 
         heartbeatManager.updateHeartbeat(nodeinfo, capacity, dfsUsed,
             remaining, blockPoolUsed, xceiverCount, failedVolumes);
+        if (cacheReport != null && cacheReport.isFull()) {
+          nodeinfo.updateCacheReport(cacheReport.getCapacity(),
+              cacheReport.getUsed(), cacheReport.getBlockIds());
+        } else if (cacheReport != null) {
+          nodeinfo.updateCacheReport(cacheReport.getCapacity(),
+              cacheReport.getUsed(), cacheReport.getBlockIds(),
+              cacheReport.getUncachedBlockIds());
+        }
         
         //check lease recovery
         BlockInfoUnderConstruction[] blocks = nodeinfo
@@ -1132,6 +1143,17 @@ public DatanodeCommand[] handleHeartbeat(DatanodeRegistration nodeReg,
           cmds.add(new BlockCommand(DatanodeProtocol.DNA_INVALIDATE,
               blockPoolId, blks));
         }
+        //check blocks to cache and uncache
+        long[] toCache = nodeinfo.getCacheCommand(blockInvalidateLimit);
+        if (toCache != null) {
+          cmds.add(new BlockIdCommand(DatanodeProtocol.DNA_CACHE,
+              blockPoolId, toCache));
+        }
+        long[] toUncache = nodeinfo.getUncacheCommand(blockInvalidateLimit);
+        if (toUncache != null) {
+          cmds.add(new BlockIdCommand(DatanodeProtocol.DNA_UNCACHE,
+              blockPoolId, toUncache));
+        }
         
         blockManager.addKeyUpdateCommand(cmds, nodeinfo);
 
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.apache.hadoop.hdfs.util.ByteArrayPool;
+
+/**
+ * The disk stage of the {@link BlockReceiver} write pipeline: one thread
+ * pool per volume, which verifies and writes the packets that receivers
+ * have queued for blocks on that volume.
+ *
+ * Receivers copy each packet out of their receive buffer before queuing it,
+ * so that they can go on to read the next one; those copies are pooled
+ * here, since all receivers use packets of about the same size.
+ */
+class AsyncBlockWriteService {
+  public static final Log LOG = LogFactory.getLog(AsyncBlockWriteService.class);
+
+  // ThreadPool keep-alive time for idle threads
+  private static final long THREADS_KEEP_ALIVE_SECONDS = 60;
+  // Number of packet copies of each size retained for reuse
+  private static final int MAX_POOLED_PACKET_BUFFERS = 256;
+
+  private final int threadsPerVolume;
+  private final ThreadGroup threadGroup =
+      new ThreadGroup(getClass().getSimpleName());
+  private final ByteArrayPool packetBufferPool =
+      new ByteArrayPool(MAX_POOLED_PACKET_BUFFERS);
+  private Map<FsVolumeSpi, ThreadPoolExecutor> executors =
+      new HashMap<FsVolumeSpi, ThreadPoolExecutor>();
+
+  /**
+   * @param threadsPerVolume the number of writer threads for each volume
+   */
+  AsyncBlockWriteService(int threadsPerVolume) {
+    this.threadsPerVolume = threadsPerVolume;
+  }
+
+  ByteArrayPool getPacketBufferPool() {
+    return packetBufferPool;
+  }
+
+  /**
+   * Run a write task on the threads of the given volume, creating them on
+   * first use.
+   * @throws RejectedExecutionException if the service has been shut down
+   */
+  synchronized void execute(FsVolumeSpi volume, Runnable task) {
+    if (executors == null) {
+      throw new RejectedExecutionException(
+          "AsyncBlockWriteService is already shutdown");
+    }
+    ThreadPoolExecutor executor = executors.get(volume);
+    if (executor == null) {
+      final int volumeIndex = executors.size();
+      ThreadFactory threadFactory = new ThreadFactory() {
+        int counter = 0;
+
+        @Override
+        public Thread newThread(Runnable r) {
+          int thisIndex;
+          synchronized (this) {
+            thisIndex = counter++;
+          }
+          Thread t = new Thread(threadGroup, r);
+          t.setName("Async block writer #" + thisIndex +
+                    " for volume #" + volumeIndex);
+          t.setDaemon(true);
+          return t;
+        }
+      };
+      executor = new ThreadPoolExecutor(
+          threadsPerVolume, threadsPerVolume,
+          THREADS_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), threadFactory);
+      // This can reduce the number of running threads
+      executor.allowCoreThreadTimeOut(true);
+      executors.put(volume, executor);
+    }
+    executor.execute(task);
+  }
+
+  /**
+   * Shut down all the thread pools. Queued writes are still run, but no
+   * new ones are accepted.
+   */
+  synchronized void shutdown() {
+    if (executors == null) {
+      LOG.warn("AsyncBlockWriteService has already shut down.");
+      return;
+    }
+    LOG.info("Shutting down all async block writer threads");
+    for (ThreadPoolExecutor executor : executors.values()) {
+      executor.shutdown();
+    }
+    // clear the executor map so that calling execute again will fail.
+    executors = null;
+  }
+}
@@ -33,6 +33,7 @@
 import org.apache.hadoop.hdfs.protocolPB.DatanodeProtocolClientSideTranslatorPB;
 import org.apache.hadoop.hdfs.server.protocol.BalancerBandwidthCommand;
 import org.apache.hadoop.hdfs.server.protocol.BlockCommand;
+import org.apache.hadoop.hdfs.server.protocol.BlockIdCommand;
 import org.apache.hadoop.hdfs.server.protocol.BlockRecoveryCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
@@ -543,6 +544,20 @@ private boolean processCommandFromActive(DatanodeCommand cmd,
       }
       dn.metrics.incrBlocksRemoved(toDelete.length);
       break;
+    case DatanodeProtocol.DNA_CACHE:
+      BlockIdCommand cacheCmd = (BlockIdCommand) cmd;
+      LOG.info("DatanodeCommand action: DNA_CACHE for "
+          + cacheCmd.getBlockIds().length + " block(s)");
+      dn.getFSDataset().cache(cacheCmd.getBlockPoolId(),
+          cacheCmd.getBlockIds());
+      break;
+    case DatanodeProtocol.DNA_UNCACHE:
+      BlockIdCommand uncacheCmd = (BlockIdCommand) cmd;
+      LOG.info("DatanodeCommand action: DNA_UNCACHE for "
+          + uncacheCmd.getBlockIds().length + " block(s)");
+      dn.getFSDataset().uncache(uncacheCmd.getBlockPoolId(),
+          uncacheCmd.getBlockIds());
+      break;
     case DatanodeProtocol.DNA_SHUTDOWN:
       // TODO: DNA_SHUTDOWN appears to be unused - the NN never sends this command
       // See HDFS-2987.
@@ -614,6 +629,8 @@ private boolean processCommandFromStandby(DatanodeCommand cmd,
     case DatanodeProtocol.DNA_SHUTDOWN:
     case DatanodeProtocol.DNA_RECOVERBLOCK:
     case DatanodeProtocol.DNA_BALANCERBANDWIDTHUPDATE:
+    case DatanodeProtocol.DNA_CACHE:
+    case DatanodeProtocol.DNA_UNCACHE:
       LOG.warn("Got a command from standby NN - ignoring command:" + cmd.getAction());
       break;
     default:
@@ -23,8 +23,11 @@
 import java.net.InetSocketAddress;
 import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -38,6 +41,7 @@
 import org.apache.hadoop.hdfs.protocolPB.DatanodeProtocolClientSideTranslatorPB;
 import org.apache.hadoop.hdfs.server.common.IncorrectVersionException;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.hdfs.server.protocol.CacheReport;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
@@ -105,6 +109,13 @@ class BPServiceActor implements Runnable {
 
   private DatanodeRegistration bpRegistration;
 
+  /**
+   * The cached blocks last reported to the NN, against which the next
+   * heartbeat computes an incremental cache report. Null until a full
+   * cache report has been sent since (re-)registration.
+   */
+  private Set<Long> reportedCachedBlocks = null;
+
   BPServiceActor(InetSocketAddress nnAddr, BPOfferService bpos) {
     this.bpos = bpos;
     this.dn = bpos.getDataNode();
@@ -442,10 +453,48 @@ HeartbeatResponse sendHeartBeat() throws IOException {
         dn.getFSDataset().getDfsUsed(),
         dn.getFSDataset().getRemaining(),
         dn.getFSDataset().getBlockPoolUsed(bpos.getBlockPoolId())) };
-    return bpNamenode.sendHeartbeat(bpRegistration, report,
-        dn.getXmitsInProgress(),
-        dn.getXceiverCount(),
-        dn.getFSDataset().getNumFailedVolumes());
+    CacheReport fullReport =
+        dn.getFSDataset().getCacheReport(bpos.getBlockPoolId());
+    Set<Long> cachedBlocks = new HashSet<Long>();
+    for (long blockId : fullReport.getBlockIds()) {
+      cachedBlocks.add(blockId);
+    }
+    CacheReport cacheReport = fullReport;
+    if (reportedCachedBlocks != null) {
+      cacheReport = new CacheReport(fullReport.getCapacity(),
+          fullReport.getUsed(),
+          subtract(cachedBlocks, reportedCachedBlocks),
+          subtract(reportedCachedBlocks, cachedBlocks));
+    }
+    HeartbeatResponse response;
+    try {
+      response = bpNamenode.sendHeartbeat(bpRegistration, report,
+          cacheReport,
+          dn.getXmitsInProgress(),
+          dn.getXceiverCount(),
+          dn.getFSDataset().getNumFailedVolumes());
+    } catch (IOException e) {
+      // The NN may or may not have applied the report; resend it in full
+      reportedCachedBlocks = null;
+      throw e;
+    }
+    reportedCachedBlocks = cachedBlocks;
+    return response;
+  }
+
+  /**
+   * @return the block IDs in <code>blockIds</code> but not in
+   *         <code>excluded</code>
+   */
+  private static long[] subtract(Set<Long> blockIds, Set<Long> excluded) {
+    long[] result = new long[blockIds.size()];
+    int i = 0;
+    for (long blockId : blockIds) {
+      if (!excluded.contains(blockId)) {
+        result[i++] = blockId;
+      }
+    }
+    return Arrays.copyOf(result, i);
   }
   
   //This must be called only by BPOfferService
@@ -614,6 +663,8 @@ void register() throws IOException {
     // The handshake() phase loaded the block pool storage
     // off disk - so update the bpRegistration object from that info
     bpRegistration = bpos.createRegistration();
+    // A newly (re-)registered NN expects a full cache report
+    reportedCachedBlocks = null;
 
     LOG.info(this + " beginning handshake with NN");
 
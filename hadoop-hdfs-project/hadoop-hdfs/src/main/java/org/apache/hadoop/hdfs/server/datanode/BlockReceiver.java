@@ -26,10 +26,14 @@
 import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.zip.Checksum;
 
 import org.apache.commons.logging.Log;
@@ -44,8 +48,10 @@
 import org.apache.hadoop.hdfs.protocol.datatransfer.PipelineAck;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.Status;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaInputStreams;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaOutputStreams;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
+import org.apache.hadoop.hdfs.util.ByteArrayPool;
 import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.nativeio.NativeIO;
@@ -61,6 +67,8 @@ class BlockReceiver implements Closeable {
   static final Log ClientTraceLog = DataNode.ClientTraceLog;
 
   private static final long CACHE_DROP_LAG_BYTES = 8 * 1024 * 1024;
+  /** The number of packets a receiver may queue for asynchronous writing */
+  private static final int MAX_QUEUED_PACKETS = 16;
   
   private DataInputStream in = null; // from where data are read
   private DataChecksum clientChecksum; // checksum used by client
@@ -114,6 +122,16 @@ class BlockReceiver implements Closeable {
 
   private boolean syncOnClose;
 
+  /** The disk stage of the pipeline; null if packets are written in line */
+  private AsyncPacketWriter asyncWriter;
+  /**
+   * The length of the replica written to the block file whose checksums
+   * have not been flushed yet, or -1 if there is none. Until they are
+   * flushed, the length is not published to readers of the replica.
+   */
+  private long unflushedDataLen = -1;
+  private byte[] unflushedLastChunkChecksum;
+
   BlockReceiver(final ExtendedBlock block, final DataInputStream in,
       final String inAddr, final String myAddr,
       final BlockConstructionStage stage, 
@@ -350,6 +368,21 @@ void flushOrSync(boolean isSync) throws IOException {
     }
   }
 
+  /**
+   * Flush the block and checksum files, sync them if requested, and then
+   * publish the flushed length and last checksum to readers of the replica.
+   */
+  private void flushWrites(boolean isSync) throws IOException {
+    flushOrSync(isSync);
+    if (unflushedDataLen >= 0) {
+      replicaInfo.setLastChecksumAndDataLen(
+        unflushedDataLen, unflushedLastChunkChecksum
+      );
+      unflushedDataLen = -1;
+      unflushedLastChunkChecksum = null;
+    }
+  }
+
   /**
    * While writing to mirrorOut, failure to write to mirror should not
    * affect this datanode unless it is caused by interruption.
@@ -450,8 +483,10 @@ private int receivePacket() throws IOException {
       replicaInfo.setNumBytes(offsetInBlock);
     }
     
-    // put in queue for pending acks, unless sync was requested
-    if (responder != null && !syncBlock) {
+    // put in queue for pending acks, unless sync was requested or the
+    // packet is written asynchronously; the writer acks those packets
+    // once they are written.
+    if (responder != null && !syncBlock && asyncWriter == null) {
       ((PacketResponder) responder.getRunnable()).enqueue(seqno,
           lastPacketInBlock, offsetInBlock);
     }
@@ -469,13 +504,45 @@ private int receivePacket() throws IOException {
     ByteBuffer dataBuf = packetReceiver.getDataSlice();
     ByteBuffer checksumBuf = packetReceiver.getChecksumSlice();
     
+    if (asyncWriter != null) {
+      asyncWriter.add(new QueuedPacket(seqno, lastPacketInBlock, syncBlock,
+          firstByteInBlock, offsetInBlock, len), dataBuf, checksumBuf);
+    } else {
+      writePacket(dataBuf, checksumBuf, firstByteInBlock, offsetInBlock, len,
+          lastPacketInBlock, syncBlock, false);
+
+      // if sync was requested, put in queue for pending acks here
+      // (after the fsync finished)
+      if (responder != null && syncBlock) {
+        ((PacketResponder) responder.getRunnable()).enqueue(seqno,
+            lastPacketInBlock, offsetInBlock);
+      }
+    }
+
+    if (throttler != null) { // throttle I/O
+      throttler.throttle(len);
+    }
+    
+    return lastPacketInBlock?-1:len;
+  }
+
+  /**
+   * Verifies the checksums of a packet and writes it to disk.
+   * @param deferFlush if true, the block and checksum files are not flushed
+   *                   unless the packet requests a sync; the caller must
+   *                   call {@link #flushWrites(boolean)} later.
+   */
+  private void writePacket(ByteBuffer dataBuf, ByteBuffer checksumBuf,
+      long firstByteInBlock, long offsetInBlock, int len,
+      boolean lastPacketInBlock, boolean syncBlock, boolean deferFlush)
+      throws IOException {
     if (lastPacketInBlock || len == 0) {
       if(LOG.isDebugEnabled()) {
         LOG.debug("Receiving an empty packet or the end of the block " + block);
       }
       // sync block if requested
       if (syncBlock) {
-        flushOrSync(true);
+        flushWrites(true);
       }
     } else {
       int checksumLen = ((len + bytesPerChecksum - 1)/bytesPerChecksum)*
@@ -508,8 +575,15 @@ private int receivePacket() throws IOException {
       byte[] lastChunkChecksum;
       
       try {
-        long onDiskLen = replicaInfo.getBytesOnDisk();
+        long onDiskLen = unflushedDataLen >= 0 ? unflushedDataLen
+            : replicaInfo.getBytesOnDisk();
         if (onDiskLen<offsetInBlock) {
+          // Partial chunks are read back from disk, so flush earlier
+          // deferred writes first
+          if (unflushedDataLen >= 0 && (onDiskLen % bytesPerChecksum != 0
+              || firstByteInBlock % bytesPerChecksum != 0)) {
+            flushWrites(false);
+          }
           //finally write to the disk :
           
           if (onDiskLen % bytesPerChecksum != 0) { 
@@ -565,12 +639,12 @@ private int receivePacket() throws IOException {
                 checksumBuf.arrayOffset() + checksumBuf.position(),
                 checksumLen);
           }
-          /// flush entire packet, sync if requested
-          flushOrSync(syncBlock);
-          
-          replicaInfo.setLastChecksumAndDataLen(
-            offsetInBlock, lastChunkChecksum
-          );
+          unflushedDataLen = offsetInBlock;
+          unflushedLastChunkChecksum = lastChunkChecksum;
+          if (!deferFlush || syncBlock) {
+            /// flush entire packet, sync if requested
+            flushWrites(syncBlock);
+          }
 
           datanode.metrics.incrBytesWritten(len);
 
@@ -581,19 +655,6 @@ private int receivePacket() throws IOException {
         throw iex;
       }
     }
-
-    // if sync was requested, put in queue for pending acks here
-    // (after the fsync finished)
-    if (responder != null && syncBlock) {
-      ((PacketResponder) responder.getRunnable()).enqueue(seqno,
-          lastPacketInBlock, offsetInBlock);
-    }
-
-    if (throttler != null) { // throttle I/O
-      throttler.throttle(len);
-    }
-    
-    return lastPacketInBlock?-1:len;
   }
 
   private void dropOsCacheBehindWriter(long offsetInBlock) {
@@ -637,9 +698,22 @@ void receiveBlock(
             new PacketResponder(replyOut, mirrIn, downstreams));
         responder.start(); // start thread to processes responses
       }
+      if (datanode.blockWriteService != null) {
+        final FsVolumeSpi volume = datanode.data.getVolume(block);
+        if (volume != null) {
+          asyncWriter = new AsyncPacketWriter(datanode.blockWriteService,
+              volume);
+        }
+      }
 
       while (receivePacket() >= 0) { /* Receive until the last packet */ }
 
+      // wait for the queued packets to be written, which also enqueues
+      // the ack of the last packet
+      if (asyncWriter != null) {
+        asyncWriter.waitForCompletion();
+      }
+
       // wait for all outstanding packet responses. And then
       // indicate responder to gracefully shutdown.
       // Mark that responder has been closed for future processing
@@ -672,6 +746,9 @@ void receiveBlock(
       throw ioe;
     } finally {
       if (!responderClosed) { // Abnormal termination of the flow above
+        if (asyncWriter != null) {
+          asyncWriter.cancel();
+        }
         IOUtils.closeStream(this);
         if (responder != null) {
           responder.interrupt();
@@ -1077,6 +1154,231 @@ private synchronized void removeAckHead() {
     }
   }
   
+  /**
+   * A received packet waiting to be written by the {@link AsyncPacketWriter}.
+   */
+  private static class QueuedPacket {
+    final long seqno;
+    final boolean lastPacketInBlock;
+    final boolean syncBlock;
+    final long firstByteInBlock;
+    final long offsetInBlock;
+    final int len;
+    /** the checksums followed by the data of the packet */
+    byte[] buf;
+    ByteBuffer checksumBuf;
+    ByteBuffer dataBuf;
+
+    QueuedPacket(long seqno, boolean lastPacketInBlock, boolean syncBlock,
+        long firstByteInBlock, long offsetInBlock, int len) {
+      this.seqno = seqno;
+      this.lastPacketInBlock = lastPacketInBlock;
+      this.syncBlock = syncBlock;
+      this.firstByteInBlock = firstByteInBlock;
+      this.offsetInBlock = offsetInBlock;
+      this.len = len;
+    }
+  }
+
+  /**
+   * The disk stage of the write pipeline. The receiver thread copies each
+   * packet out of the PacketReceiver buffer and queues it here; a task on
+   * the threads of the replica's volume verifies and writes the queued
+   * packets, so that the disk write overlaps with receiving and mirroring
+   * the next packets. At most one task per block runs at a time, which
+   * keeps the writes of the block in order, and a task writes all the
+   * packets queued when it starts before flushing them together. The
+   * packets are acked only after that flush, so an ack never gets ahead
+   * of the disk write; if a write fails, none of the remaining packets
+   * is acked.
+   */
+  private class AsyncPacketWriter implements Runnable {
+    private final AsyncBlockWriteService service;
+    private final FsVolumeSpi volume;
+    private final ByteArrayPool bufferPool;
+    /** the thread that receives the packets */
+    private final Thread receiverThread = Thread.currentThread();
+    /** packets waiting to be written - synchronization using monitor lock */
+    private final LinkedList<QueuedPacket> queue =
+        new LinkedList<QueuedPacket>();
+    /** is a task scheduled or running? - guarded by the monitor lock */
+    private boolean running = false;
+    /** the failure of a write - guarded by the monitor lock */
+    private IOException error = null;
+    private volatile boolean cancelled = false;
+
+    AsyncPacketWriter(AsyncBlockWriteService service, FsVolumeSpi volume) {
+      this.service = service;
+      this.volume = volume;
+      this.bufferPool = service.getPacketBufferPool();
+    }
+
+    /**
+     * Copy a packet out of the receive buffers and queue it for writing.
+     * Blocks while MAX_QUEUED_PACKETS packets are queued.
+     */
+    void add(QueuedPacket p, ByteBuffer dataBuf, ByteBuffer checksumBuf)
+        throws IOException {
+      final int checksumLen = checksumBuf.remaining();
+      final int dataLen = dataBuf.remaining();
+      p.buf = bufferPool.getBuffer(checksumLen + dataLen);
+      checksumBuf.duplicate().get(p.buf, 0, checksumLen);
+      dataBuf.duplicate().get(p.buf, checksumLen, dataLen);
+      p.checksumBuf = ByteBuffer.wrap(p.buf, 0, checksumLen).slice();
+      p.dataBuf = ByteBuffer.wrap(p.buf, checksumLen, dataLen).slice();
+
+      synchronized (this) {
+        while (error == null && queue.size() >= MAX_QUEUED_PACKETS) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            bufferPool.returnBuffer(p.buf);
+            throw new InterruptedIOException("Interrupted while queuing "
+                + "packet " + p.seqno + " of " + block);
+          }
+        }
+        checkError();
+        queue.addLast(p);
+        if (!running) {
+          try {
+            service.execute(volume, this);
+          } catch (RejectedExecutionException e) {
+            queue.removeLast();
+            bufferPool.returnBuffer(p.buf);
+            throw new IOException("Cannot write " + block, e);
+          }
+          running = true;
+        }
+      }
+    }
+
+    /** Wait for all queued packets to be written. */
+    synchronized void waitForCompletion() throws IOException {
+      while (error == null && running) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException("Interrupted while waiting for "
+              + "the writes of " + block);
+        }
+      }
+      checkError();
+    }
+
+    /**
+     * Discard the queued packets, and wait for a write in progress to
+     * finish, so that the files can be closed.
+     */
+    synchronized void cancel() {
+      cancelled = true;
+      discardQueue();
+      boolean interrupted = false;
+      while (running) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void checkError() throws IOException {
+      if (error != null) {
+        throw new IOException("Failed to write " + block, error);
+      }
+    }
+
+    private void discardQueue() {
+      for (QueuedPacket p : queue) {
+        bufferPool.returnBuffer(p.buf);
+      }
+      queue.clear();
+      notifyAll();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          final List<QueuedPacket> batch;
+          synchronized (this) {
+            if (cancelled || queue.isEmpty()) {
+              running = false;
+              notifyAll();
+              return;
+            }
+            batch = new ArrayList<QueuedPacket>(queue);
+            queue.clear();
+            notifyAll();
+          }
+          try {
+            for (QueuedPacket p : batch) {
+              if (!cancelled) {
+                write(p);
+              }
+            }
+            if (!cancelled) {
+              // the acked data must be visible to readers
+              flush(false);
+              ack(batch);
+            }
+          } finally {
+            for (QueuedPacket p : batch) {
+              bufferPool.returnBuffer(p.buf);
+            }
+          }
+        }
+      } catch (Throwable t) {
+        LOG.warn("Failed to write " + block + " from " + inAddr, t);
+        final boolean wasCancelled = cancelled;
+        synchronized (this) {
+          error = t instanceof IOException ? (IOException)t
+              : new IOException(t);
+          cancelled = true;
+          discardQueue();
+          running = false;
+        }
+        if (!wasCancelled) {
+          // the receiver may be blocked reading the next packet
+          receiverThread.interrupt();
+        }
+      }
+    }
+
+    private void write(QueuedPacket p) throws IOException {
+      DataNodeFaultInjector.get().beforeAsyncPacketWrite(block, p.seqno);
+      // a sync packet is synced here, before it is acked
+      writePacket(p.dataBuf, p.checksumBuf, p.firstByteInBlock,
+          p.offsetInBlock, p.len, p.lastPacketInBlock, p.syncBlock, true);
+    }
+
+    /** Enqueue the acks of written packets, in the order received. */
+    private void ack(List<QueuedPacket> written) {
+      if (responder == null) {
+        return;
+      }
+      final PacketResponder r = (PacketResponder) responder.getRunnable();
+      for (QueuedPacket p : written) {
+        r.enqueue(p.seqno, p.lastPacketInBlock, p.offsetInBlock);
+      }
+    }
+
+    private void flush(boolean isSync) throws IOException {
+      if (unflushedDataLen < 0) {
+        return;
+      }
+      try {
+        flushWrites(isSync);
+      } catch (IOException iex) {
+        datanode.checkDiskError(iex);
+        throw iex;
+      }
+    }
+  }
+
   /**
    * This information is cached by the Datanode in the ackQueue.
    */
@@ -63,6 +63,7 @@ class DNConf {
   final long deleteReportInterval;
   final long initialBlockReportDelay;
   final int writePacketSize;
+  final int asyncWriteThreadsPerVolume;
   
   final String minimumNameNodeVersion;
   final String encryptionAlgorithm;
@@ -94,6 +95,9 @@ public DNConf(Configuration conf) {
     syncBehindWrites = conf.getBoolean(
         DFSConfigKeys.DFS_DATANODE_SYNC_BEHIND_WRITES_KEY,
         DFSConfigKeys.DFS_DATANODE_SYNC_BEHIND_WRITES_DEFAULT);
+    asyncWriteThreadsPerVolume = conf.getInt(
+        DFSConfigKeys.DFS_DATANODE_ASYNC_WRITE_THREADS_PER_VOLUME_KEY,
+        DFSConfigKeys.DFS_DATANODE_ASYNC_WRITE_THREADS_PER_VOLUME_DEFAULT);
     dropCacheBehindReads = conf.getBoolean(
         DFSConfigKeys.DFS_DATANODE_DROP_CACHE_BEHIND_READS_KEY,
         DFSConfigKeys.DFS_DATANODE_DROP_CACHE_BEHIND_READS_DEFAULT);
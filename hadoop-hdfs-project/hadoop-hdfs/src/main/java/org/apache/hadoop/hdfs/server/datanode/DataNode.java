@@ -280,6 +280,7 @@ public static InetSocketAddress createSocketAddr(String target) {
   private final List<String> usersWithLocalPathAccess;
   private boolean connectToDnViaHostname;
   ReadaheadPool readaheadPool;
+  AsyncBlockWriteService blockWriteService;
   private final boolean getHdfsBlockLocationsEnabled;
 
   /**
@@ -506,7 +507,7 @@ private synchronized void initDirectoryScanner(Configuration conf) {
       reason = "verifcation is not supported by SimulatedFSDataset";
     } 
     if (reason == null) {
-      directoryScanner = new DirectoryScanner(data, conf);
+      directoryScanner = new DirectoryScanner(data, conf, metrics);
       directoryScanner.start();
     } else {
       LOG.info("Periodic Directory Tree Verification scan is disabled because " +
@@ -669,6 +670,10 @@ void startDataNode(Configuration conf,
     this.dataDirs = dataDirs;
     this.conf = conf;
     this.dnConf = new DNConf(conf);
+    if (dnConf.asyncWriteThreadsPerVolume > 0) {
+      blockWriteService =
+          new AsyncBlockWriteService(dnConf.asyncWriteThreadsPerVolume);
+    }
 
     storage = new DataStorage();
     
@@ -1150,6 +1155,10 @@ public void shutdown() {
       }
     }
     
+    if (blockWriteService != null) {
+      blockWriteService.shutdown();
+    }
+
     if (storage != null) {
       try {
         this.storage.unlockAll();
@@ -45,21 +45,33 @@
 import org.apache.hadoop.hdfs.server.common.GenerationStamp;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
 import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.Time;
 
 /**
  * Periodically scans the data directories for block and block metadata files.
  * Reconciles the differences with block information maintained in the dataset.
+ *
+ * The volumes are scanned in parallel by a pool of report compilers, each of
+ * which may be throttled to a fraction of every second. The disk report is
+ * compared against a snapshot of the finalized replicas without holding the
+ * dataset lock, and the differences are reconciled in batches, pausing
+ * between them so that writers are not starved of the lock.
  */
 @InterfaceAudience.Private
 public class DirectoryScanner implements Runnable {
   private static final Log LOG = LogFactory.getLog(DirectoryScanner.class);
+  private static final int MILLIS_PER_SECOND = 1000;
 
   private final FsDatasetSpi<?> dataset;
   private final ExecutorService reportCompileThreadPool;
   private final ScheduledExecutorService masterThread;
   private final long scanPeriodMsecs;
+  private final int throttleLimitMsPerSec;
+  private final int reconcileBatchSize;
+  private final long reconcileBatchIntervalMs;
+  private final DataNodeMetrics metrics;
   private volatile boolean shouldRun = false;
   private boolean retainDiffs = false;
 
@@ -222,13 +234,37 @@ public long getGenStamp() {
   }
 
   DirectoryScanner(FsDatasetSpi<?> dataset, Configuration conf) {
+    this(dataset, conf, null);
+  }
+
+  /**
+   * @param metrics the metrics to update after each scan; may be null.
+   */
+  DirectoryScanner(FsDatasetSpi<?> dataset, Configuration conf,
+      DataNodeMetrics metrics) {
     this.dataset = dataset;
+    this.metrics = metrics;
     int interval = conf.getInt(DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INTERVAL_KEY,
         DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INTERVAL_DEFAULT);
     scanPeriodMsecs = interval * 1000L; //msec
     int threads = 
         conf.getInt(DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_THREADS_KEY,
                     DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_THREADS_DEFAULT);
+    throttleLimitMsPerSec = conf.getInt(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_DEFAULT);
+    if (throttleLimitMsPerSec <= 0 || throttleLimitMsPerSec > MILLIS_PER_SECOND) {
+      throw new IllegalArgumentException(
+          DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_KEY
+          + " must be between 1 and " + MILLIS_PER_SECOND + ", but is "
+          + throttleLimitMsPerSec);
+    }
+    reconcileBatchSize = Math.max(1, conf.getInt(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_RECONCILE_BATCH_SIZE_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_RECONCILE_BATCH_SIZE_DEFAULT));
+    reconcileBatchIntervalMs = conf.getLong(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_RECONCILE_BATCH_INTERVAL_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_RECONCILE_BATCH_INTERVAL_DEFAULT);
 
     reportCompileThreadPool = Executors.newFixedThreadPool(threads, 
         new Daemon.DaemonFactory());
@@ -311,20 +347,67 @@ void shutdown() {
   }
 
   /**
-   * Reconcile differences between disk and in-memory blocks
+   * Reconcile differences between disk and in-memory blocks.
+   * Each difference is re-checked against the dataset under its lock, so
+   * the differences are applied in batches of reconcileBatchSize with a
+   * pause in between, rather than all at once.
    */
   void reconcile() {
     scan();
-    for (Entry<String, LinkedList<ScanInfo>> entry : diffs.entrySet()) {
-      String bpid = entry.getKey();
-      LinkedList<ScanInfo> diff = entry.getValue();
-      
-      for (ScanInfo info : diff) {
-        dataset.checkAndUpdate(bpid, info.getBlockId(), info.getBlockFile(),
-            info.getMetaFile(), info.getVolume());
+    final long start = Time.monotonicNow();
+    int inBatch = 0;
+    try {
+      for (Entry<String, LinkedList<ScanInfo>> entry : diffs.entrySet()) {
+        String bpid = entry.getKey();
+        LinkedList<ScanInfo> diff = entry.getValue();
+
+        for (ScanInfo info : diff) {
+          dataset.checkAndUpdate(bpid, info.getBlockId(), info.getBlockFile(),
+              info.getMetaFile(), info.getVolume());
+          if (++inBatch == reconcileBatchSize) {
+            endReconcileBatch(inBatch);
+            inBatch = 0;
+            if (isShutdown()) {
+              // the remaining differences are found again by the next scan
+              LOG.info("DirectoryScanner: shutdown has been called, "
+                  + "abandoning the remaining differences");
+              return;
+            }
+          }
+        }
+      }
+      if (metrics != null) {
+        metrics.addDirectoryScanReconcile(Time.monotonicNow() - start);
+      }
+    } finally {
+      // nothing is pending once reconcile returns, whether it applied all
+      // the differences or not; the next scan finds the remaining ones
+      if (metrics != null) {
+        metrics.resetDirectoryScanPendingDifferences();
+      }
+      if (!retainDiffs) clear();
+    }
+  }
+
+  /**
+   * Whether shutdown() has been called. Not told by shouldRun, which is
+   * only set by start(), as reconcile() is also called without it.
+   */
+  private boolean isShutdown() {
+    return masterThread.isShutdown() || Thread.currentThread().isInterrupted();
+  }
+
+  private void endReconcileBatch(int reconciled) {
+    if (metrics != null) {
+      metrics.decrDirectoryScanPendingDifferences(reconciled);
+    }
+    if (reconcileBatchIntervalMs > 0) {
+      try {
+        Thread.sleep(reconcileBatchIntervalMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       }
     }
-    if (!retainDiffs) clear();
   }
 
   /**
@@ -333,68 +416,75 @@ void reconcile() {
    */
   void scan() {
     clear();
+    final long start = Time.monotonicNow();
     Map<String, ScanInfo[]> diskReport = getDiskReport();
+    long totalDiffs = 0;
 
-    // Hold FSDataset lock to prevent further changes to the block map
-    synchronized(dataset) {
-      for (Entry<String, ScanInfo[]> entry : diskReport.entrySet()) {
-        String bpid = entry.getKey();
-        ScanInfo[] blockpoolReport = entry.getValue();
-        
-        Stats statsRecord = new Stats(bpid);
-        stats.put(bpid, statsRecord);
-        LinkedList<ScanInfo> diffRecord = new LinkedList<ScanInfo>();
-        diffs.put(bpid, diffRecord);
-        
-        statsRecord.totalBlocks = blockpoolReport.length;
-        List<Block> bl = dataset.getFinalizedBlocks(bpid);
-        Block[] memReport = bl.toArray(new Block[bl.size()]);
-        Arrays.sort(memReport); // Sort based on blockId
-  
-        int d = 0; // index for blockpoolReport
-        int m = 0; // index for memReprot
-        while (m < memReport.length && d < blockpoolReport.length) {
-          Block memBlock = memReport[Math.min(m, memReport.length - 1)];
-          ScanInfo info = blockpoolReport[Math.min(
-              d, blockpoolReport.length - 1)];
-          if (info.getBlockId() < memBlock.getBlockId()) {
-            // Block is missing in memory
-            statsRecord.missingMemoryBlocks++;
-            addDifference(diffRecord, statsRecord, info);
-            d++;
-            continue;
-          }
-          if (info.getBlockId() > memBlock.getBlockId()) {
-            // Block is missing on the disk
-            addDifference(diffRecord, statsRecord, memBlock.getBlockId());
-            m++;
-            continue;
-          }
-          // Block file and/or metadata file exists on the disk
-          // Block exists in memory
-          if (info.getBlockFile() == null) {
-            // Block metadata file exits and block file is missing
-            addDifference(diffRecord, statsRecord, info);
-          } else if (info.getGenStamp() != memBlock.getGenerationStamp()
-              || info.getBlockFile().length() != memBlock.getNumBytes()) {
-            // Block metadata file is missing or has wrong generation stamp,
-            // or block file length is different than expected
-            statsRecord.mismatchBlocks++;
-            addDifference(diffRecord, statsRecord, info);
-          }
+    // The in-memory report is a snapshot taken under the dataset lock. The
+    // comparison itself, which stats every block file, runs without the
+    // lock: replicas changing after the snapshot only lead to spurious
+    // differences, which checkAndUpdate finds to be in sync and ignores.
+    for (Entry<String, ScanInfo[]> entry : diskReport.entrySet()) {
+      String bpid = entry.getKey();
+      ScanInfo[] blockpoolReport = entry.getValue();
+      
+      Stats statsRecord = new Stats(bpid);
+      stats.put(bpid, statsRecord);
+      LinkedList<ScanInfo> diffRecord = new LinkedList<ScanInfo>();
+      diffs.put(bpid, diffRecord);
+      
+      statsRecord.totalBlocks = blockpoolReport.length;
+      List<Block> bl = dataset.getFinalizedBlocks(bpid);
+      Block[] memReport = bl.toArray(new Block[bl.size()]);
+      Arrays.sort(memReport); // Sort based on blockId
+
+      int d = 0; // index for blockpoolReport
+      int m = 0; // index for memReprot
+      while (m < memReport.length && d < blockpoolReport.length) {
+        Block memBlock = memReport[Math.min(m, memReport.length - 1)];
+        ScanInfo info = blockpoolReport[Math.min(
+            d, blockpoolReport.length - 1)];
+        if (info.getBlockId() < memBlock.getBlockId()) {
+          // Block is missing in memory
+          statsRecord.missingMemoryBlocks++;
+          addDifference(diffRecord, statsRecord, info);
           d++;
-          m++;
+          continue;
         }
-        while (m < memReport.length) {
-          addDifference(diffRecord, statsRecord, memReport[m++].getBlockId());
+        if (info.getBlockId() > memBlock.getBlockId()) {
+          // Block is missing on the disk
+          addDifference(diffRecord, statsRecord, memBlock.getBlockId());
+          m++;
+          continue;
         }
-        while (d < blockpoolReport.length) {
-          statsRecord.missingMemoryBlocks++;
-          addDifference(diffRecord, statsRecord, blockpoolReport[d++]);
+        // Block file and/or metadata file exists on the disk
+        // Block exists in memory
+        if (info.getBlockFile() == null) {
+          // Block metadata file exits and block file is missing
+          addDifference(diffRecord, statsRecord, info);
+        } else if (info.getGenStamp() != memBlock.getGenerationStamp()
+            || info.getBlockFile().length() != memBlock.getNumBytes()) {
+          // Block metadata file is missing or has wrong generation stamp,
+          // or block file length is different than expected
+          statsRecord.mismatchBlocks++;
+          addDifference(diffRecord, statsRecord, info);
         }
-        LOG.info(statsRecord.toString());
-      } //end for
-    } //end synchronized
+        d++;
+        m++;
+      }
+      while (m < memReport.length) {
+        addDifference(diffRecord, statsRecord, memReport[m++].getBlockId());
+      }
+      while (d < blockpoolReport.length) {
+        statsRecord.missingMemoryBlocks++;
+        addDifference(diffRecord, statsRecord, blockpoolReport[d++]);
+      }
+      totalDiffs += diffRecord.size();
+      LOG.info(statsRecord.toString());
+    } //end for
+    if (metrics != null) {
+      metrics.addDirectoryScan(Time.monotonicNow() - start, totalDiffs);
+    }
   }
 
   /**
@@ -442,7 +532,7 @@ private Map<String, ScanInfo[]> getDiskReport() {
     for (int i = 0; i < volumes.size(); i++) {
       if (isValid(dataset, volumes.get(i))) {
         ReportCompiler reportCompiler =
-          new ReportCompiler(volumes.get(i));
+          new ReportCompiler(volumes.get(i), throttleLimitMsPerSec);
         Future<ScanInfoPerBlockPool> result = 
           reportCompileThreadPool.submit(reportCompiler);
         compilersInProgress.put(i, result);
@@ -479,16 +569,21 @@ private static boolean isBlockMetaFile(String blockId, String metaFile) {
 
   private static class ReportCompiler 
   implements Callable<ScanInfoPerBlockPool> {
-    private FsVolumeSpi volume;
+    private final FsVolumeSpi volume;
+    private final int throttleLimitMsPerSec;
+    /** Start of the current throttling period. */
+    private long periodStart;
 
-    public ReportCompiler(FsVolumeSpi volume) {
+    public ReportCompiler(FsVolumeSpi volume, int throttleLimitMsPerSec) {
       this.volume = volume;
+      this.throttleLimitMsPerSec = throttleLimitMsPerSec;
     }
 
     @Override
     public ScanInfoPerBlockPool call() throws Exception {
       String[] bpList = volume.getBlockPoolList();
       ScanInfoPerBlockPool result = new ScanInfoPerBlockPool(bpList.length);
+      periodStart = Time.monotonicNow();
       for (String bpid : bpList) {
         LinkedList<ScanInfo> report = new LinkedList<ScanInfo>();
         File bpFinalizedDir = volume.getFinalizedDir(bpid);
@@ -497,9 +592,28 @@ public ScanInfoPerBlockPool call() throws Exception {
       return result;
     }
 
-    /** Compile list {@link ScanInfo} for the blocks in the directory <dir> */
+    /**
+     * Sleep for the rest of the current second once this compiler has been
+     * running for throttleLimitMsPerSec of it.
+     */
+    private void throttle() throws InterruptedException {
+      if (throttleLimitMsPerSec >= MILLIS_PER_SECOND) {
+        return;
+      }
+      if (Time.monotonicNow() - periodStart >= throttleLimitMsPerSec) {
+        Thread.sleep(MILLIS_PER_SECOND - throttleLimitMsPerSec);
+        periodStart = Time.monotonicNow();
+      }
+    }
+
+    /**
+     * Compile list {@link ScanInfo} for the blocks in the directory <dir>.
+     * The throttle is checked before each file is looked at, as a single
+     * directory may hold many blocks.
+     */
     private LinkedList<ScanInfo> compileReport(FsVolumeSpi vol, File dir,
-        LinkedList<ScanInfo> report) {
+        LinkedList<ScanInfo> report) throws InterruptedException {
+      throttle();
       File[] files;
       try {
         files = FileUtil.listFiles(dir);
@@ -516,6 +630,7 @@ private LinkedList<ScanInfo> compileReport(FsVolumeSpi vol, File dir,
        * blk_<blockid>_<genstamp>.meta
        */
       for (int i = 0; i < files.length; i++) {
+        throttle();
         if (files[i].isDirectory()) {
           compileReport(vol, files[i], report);
           continue;
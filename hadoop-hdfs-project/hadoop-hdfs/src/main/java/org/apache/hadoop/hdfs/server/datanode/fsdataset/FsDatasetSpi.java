@@ -39,6 +39,7 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.impl.FsDatasetFactory;
 import org.apache.hadoop.hdfs.server.datanode.metrics.FSDatasetMBean;
 import org.apache.hadoop.hdfs.server.protocol.BlockRecoveryCommand.RecoveringBlock;
+import org.apache.hadoop.hdfs.server.protocol.CacheReport;
 import org.apache.hadoop.hdfs.server.protocol.ReplicaRecoveryInfo;
 import org.apache.hadoop.util.DiskChecker.DiskErrorException;
 import org.apache.hadoop.util.ReflectionUtils;
@@ -294,6 +295,27 @@ public void recoverClose(ExtendedBlock b, long newGS, long expectedBlockLen
    */
   public void invalidate(String bpid, Block invalidBlks[]) throws IOException;
 
+  /**
+   * Lock the specified blocks in memory, asynchronously. Blocks which are
+   * not finalized or are already cached are skipped.
+   * @param bpid Block pool Id
+   * @param blockIds - the ids of the blocks to be cached
+   */
+  public void cache(String bpid, long[] blockIds);
+
+  /**
+   * Release the specified blocks from memory, if they are cached.
+   * @param bpid Block pool Id
+   * @param blockIds - the ids of the blocks to be uncached
+   */
+  public void uncache(String bpid, long[] blockIds);
+
+  /**
+   * @param bpid Block pool Id
+   * @return the cache capacity, usage and cached block ids of the block pool
+   */
+  public CacheReport getCacheReport(String bpid);
+
     /**
      * Check if all the data directories are healthy
      * @throws DiskErrorException
@@ -0,0 +1,341 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hdfs.server.datanode.BlockMetadataHeader;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.nativeio.NativeIO;
+import org.apache.hadoop.util.DataChecksum;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Keeps finalized replicas mapped and locked in memory, as directed by the
+ * NameNode. The data of a block is verified against its checksums once,
+ * when it is cached, so readers of a cached block need not verify it again.
+ *
+ * The amount of locked memory is bounded by the configured
+ * dfs.datanode.max.locked.memory and by the RLIMIT_MEMLOCK ulimit of the
+ * DataNode process.
+ */
+class FsDatasetCache {
+  static final Log LOG = LogFactory.getLog(FsDatasetCache.class);
+
+  /** The state of a block in the cache. */
+  private enum State {
+    CACHING, CACHED, UNCACHED_WHILE_CACHING
+  }
+
+  private static final class Key {
+    private final String bpid;
+    private final long blockId;
+
+    Key(String bpid, long blockId) {
+      this.bpid = bpid;
+      this.blockId = blockId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key)o;
+      return blockId == other.blockId && bpid.equals(other.bpid);
+    }
+
+    @Override
+    public int hashCode() {
+      return bpid.hashCode() ^ (int)(blockId ^ (blockId >>> 32));
+    }
+  }
+
+  private static final class Value {
+    private final long length;
+    private State state = State.CACHING;
+    private MappedByteBuffer mmap;
+
+    Value(long length) {
+      this.length = length;
+    }
+  }
+
+  private final Map<Key, Value> blocks = new HashMap<Key, Value>();
+  private final long capacity;
+  private final AtomicLong used = new AtomicLong(0);
+  private final ExecutorService executor;
+
+  FsDatasetCache(long configuredCapacity) {
+    long limit = NativeIO.POSIX.getMemlockLimit();
+    if (configuredCapacity > 0 && limit < configuredCapacity) {
+      LOG.warn("Cannot lock " + configuredCapacity + " bytes of memory: the"
+          + " memlock ulimit of the DataNode is " + limit + " bytes."
+          + " Capping the cache capacity at the ulimit.");
+    }
+    this.capacity = Math.max(0L, Math.min(configuredCapacity, limit));
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(4, 4, 60,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("FsDatasetCache-%d").build());
+    pool.allowCoreThreadTimeOut(true);
+    this.executor = pool;
+  }
+
+  long getCapacity() {
+    return capacity;
+  }
+
+  long getUsed() {
+    return used.get();
+  }
+
+  /**
+   * @return the ids of the blocks of the given block pool which are locked
+   *         in memory.
+   */
+  synchronized long[] getCachedBlocks(String bpid) {
+    List<Long> ids = new ArrayList<Long>();
+    for (Map.Entry<Key, Value> e : blocks.entrySet()) {
+      if (e.getValue().state == State.CACHED && e.getKey().bpid.equals(bpid)) {
+        ids.add(e.getKey().blockId);
+      }
+    }
+    long[] result = new long[ids.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = ids.get(i);
+    }
+    return result;
+  }
+
+  synchronized boolean isCached(String bpid, long blockId) {
+    Value v = blocks.get(new Key(bpid, blockId));
+    return v != null && v.state == State.CACHED;
+  }
+
+  /**
+   * Start caching a finalized replica in the background. Nothing is done if
+   * the replica is already cached, or there is not enough room for it. A
+   * replica which was uncached while still caching is kept once its caching
+   * task completes.
+   */
+  void cacheBlock(String bpid, long blockId, long length, File blockFile,
+      File metaFile) {
+    Key key = new Key(bpid, blockId);
+    synchronized (this) {
+      Value v = blocks.get(key);
+      if (v != null && v.state == State.UNCACHED_WHILE_CACHING) {
+        v.state = State.CACHING;
+        return;
+      }
+      if (v != null) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Block " + blockId + " is already cached or caching");
+        }
+        return;
+      }
+      if (!reserve(length)) {
+        LOG.warn("Failed to cache block " + blockId + " of " + bpid + ": "
+            + length + " bytes needed, but only " + (capacity - used.get())
+            + " of " + capacity + " bytes are free");
+        return;
+      }
+      blocks.put(key, new Value(length));
+    }
+    try {
+      executor.execute(new CachingTask(key, length, blockFile, metaFile));
+    } catch (RejectedExecutionException e) {
+      // shut down
+      synchronized (this) {
+        blocks.remove(key);
+      }
+      used.addAndGet(-length);
+    }
+  }
+
+  /**
+   * Release a block from memory. A block which is still being cached is
+   * released as soon as its caching task completes.
+   */
+  void uncacheBlock(String bpid, long blockId) {
+    Value v;
+    synchronized (this) {
+      Key key = new Key(bpid, blockId);
+      v = blocks.get(key);
+      if (v == null) {
+        return;
+      }
+      if (v.state == State.CACHING) {
+        v.state = State.UNCACHED_WHILE_CACHING;
+        return;
+      }
+      if (v.state != State.CACHED) {
+        return;
+      }
+      blocks.remove(key);
+    }
+    release(v.mmap, v.length);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Uncached block " + blockId + " of " + bpid);
+    }
+  }
+
+  /**
+   * Release all cached blocks. The room reserved for blocks which are still
+   * caching is released too: by their caching task once it completes, as
+   * their entries are gone, or here for the tasks which never got to run.
+   */
+  void shutdown() {
+    List<Runnable> notRun = executor.shutdownNow();
+    List<Value> values;
+    synchronized (this) {
+      values = new ArrayList<Value>(blocks.values());
+      blocks.clear();
+    }
+    for (Value v : values) {
+      if (v.mmap != null) {
+        release(v.mmap, v.length);
+      }
+    }
+    for (Runnable task : notRun) {
+      used.addAndGet(-((CachingTask)task).length);
+    }
+  }
+
+  private boolean reserve(long length) {
+    while (true) {
+      long cur = used.get();
+      if (cur + length > capacity) {
+        return false;
+      }
+      if (used.compareAndSet(cur, cur + length)) {
+        return true;
+      }
+    }
+  }
+
+  private void release(MappedByteBuffer mmap, long length) {
+    try {
+      NativeIO.POSIX.munlock(mmap, length);
+    } catch (IOException e) {
+      LOG.warn("Failed to munlock a cached block", e);
+    }
+    NativeIO.POSIX.munmap(mmap);
+    used.addAndGet(-length);
+  }
+
+  /** Maps, locks and verifies one replica. */
+  private class CachingTask implements Runnable {
+    private final Key key;
+    private final long length;
+    private final File blockFile;
+    private final File metaFile;
+
+    CachingTask(Key key, long length, File blockFile, File metaFile) {
+      this.key = key;
+      this.length = length;
+      this.blockFile = blockFile;
+      this.metaFile = metaFile;
+    }
+
+    @Override
+    public void run() {
+      MappedByteBuffer mmap = null;
+      boolean success = false;
+      FileInputStream blockIn = null;
+      try {
+        blockIn = new FileInputStream(blockFile);
+        FileChannel channel = blockIn.getChannel();
+        if (channel.size() < length) {
+          throw new IOException("Block file " + blockFile + " is shorter ("
+              + channel.size() + ") than the replica length " + length);
+        }
+        mmap = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        NativeIO.POSIX.mlock(mmap, length);
+        verifyChecksum(mmap);
+        success = true;
+      } catch (IOException e) {
+        LOG.warn("Failed to cache block " + key.blockId + " of " + key.bpid,
+            e);
+      } finally {
+        IOUtils.closeStream(blockIn);
+      }
+
+      boolean keep;
+      synchronized (FsDatasetCache.this) {
+        Value v = blocks.get(key);
+        keep = success && v != null && v.state == State.CACHING;
+        if (keep) {
+          v.mmap = mmap;
+          v.state = State.CACHED;
+        } else {
+          blocks.remove(key);
+        }
+      }
+      if (keep) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Cached block " + key.blockId + " of " + key.bpid);
+        }
+      } else if (mmap != null) {
+        release(mmap, length);
+      } else {
+        used.addAndGet(-length);
+      }
+    }
+
+    private void verifyChecksum(MappedByteBuffer mmap) throws IOException {
+      DataInputStream metaIn = null;
+      try {
+        metaIn = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(metaFile), BlockMetadataHeader.getHeaderSize()));
+        DataChecksum checksum =
+            BlockMetadataHeader.readHeader(metaIn).getChecksum();
+        int bytesPerChecksum = checksum.getBytesPerChecksum();
+        int numChunks = (int)((length + bytesPerChecksum - 1)
+            / bytesPerChecksum);
+        byte[] sums = new byte[numChunks * checksum.getChecksumSize()];
+        IOUtils.readFully(metaIn, sums, 0, sums.length);
+        ByteBuffer data = mmap.duplicate();
+        checksum.verifyChunkedSums(data, ByteBuffer.wrap(sums),
+            blockFile.getPath(), 0);
+      } finally {
+        IOUtils.closeStream(metaIn);
+      }
+    }
+  }
+}
@@ -28,10 +28,13 @@
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
@@ -75,6 +78,7 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.VolumeChoosingPolicy;
 import org.apache.hadoop.hdfs.server.datanode.metrics.FSDatasetMBean;
 import org.apache.hadoop.hdfs.server.protocol.BlockRecoveryCommand.RecoveringBlock;
+import org.apache.hadoop.hdfs.server.protocol.CacheReport;
 import org.apache.hadoop.hdfs.server.protocol.ReplicaRecoveryInfo;
 import org.apache.hadoop.io.nativeio.NativeIO;
 import org.apache.hadoop.metrics2.util.MBeans;
@@ -108,13 +112,17 @@ public List<FsVolumeImpl> getVolumes() {
   }
 
   @Override
-  public synchronized FsVolumeImpl getVolume(final ExtendedBlock b) {
+  public FsVolumeImpl getVolume(final ExtendedBlock b) {
     final ReplicaInfo r =  volumeMap.get(b.getBlockPoolId(), b.getLocalBlock());
     return r != null? (FsVolumeImpl)r.getVolume(): null;
   }
 
+  /**
+   * Look up the block file of a replica, then read the generation stamp and
+   * length from disk without holding the dataset lock.
+   */
   @Override // FsDatasetSpi
-  public synchronized Block getStoredBlock(String bpid, long blkid)
+  public Block getStoredBlock(String bpid, long blkid)
       throws IOException {
     File blockfile = getFile(bpid, blkid);
     if (blockfile == null) {
@@ -170,7 +178,11 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
   final FsVolumeList volumes;
   final ReplicaMap volumeMap;
   final FsDatasetAsyncDiskService asyncDiskService;
+  final FsDatasetCache cacheManager;
   private final int validVolsRequired;
+  // Blocks whose new replica is being created outside the dataset lock
+  private final Set<ExtendedBlock> replicasBeingCreated = Collections
+      .newSetFromMap(new ConcurrentHashMap<ExtendedBlock, Boolean>());
 
   // Used for synchronizing access to usage stats
   private final Object statsLock = new Object();
@@ -228,6 +240,9 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
       roots[idx] = storage.getStorageDir(idx).getCurrentDir();
     }
     asyncDiskService = new FsDatasetAsyncDiskService(datanode, roots);
+    cacheManager = new FsDatasetCache(conf.getLong(
+        DFSConfigKeys.DFS_DATANODE_MAX_LOCKED_MEMORY_KEY,
+        DFSConfigKeys.DFS_DATANODE_MAX_LOCKED_MEMORY_DEFAULT));
     registerMBean(storage.getStorageID());
   }
 
@@ -287,6 +302,22 @@ public int getNumFailedVolumes() {
     return volumes.numberOfFailedVolumes();
   }
 
+  /**
+   * Return the number of bytes which may be locked in memory for caching.
+   */
+  @Override // FSDatasetMBean
+  public long getCacheCapacity() {
+    return cacheManager.getCapacity();
+  }
+
+  /**
+   * Return the number of bytes locked in memory for caching.
+   */
+  @Override // FSDatasetMBean
+  public long getCacheUsed() {
+    return cacheManager.getUsed();
+  }
+
   /**
    * Find the block's on-disk length
    */
@@ -397,15 +428,20 @@ private ReplicaInfo getReplicaInfo(String bpid, long blkid)
    * Returns handles to the block file and its metadata file
    */
   @Override // FsDatasetSpi
-  public synchronized ReplicaInputStreams getTmpInputStreams(ExtendedBlock b, 
+  public ReplicaInputStreams getTmpInputStreams(ExtendedBlock b, 
                           long blkOffset, long ckoff) throws IOException {
-    ReplicaInfo info = getReplicaInfo(b);
-    File blockFile = info.getBlockFile();
+    final File blockFile;
+    final File metaFile;
+    synchronized (this) {
+      ReplicaInfo info = getReplicaInfo(b);
+      blockFile = info.getBlockFile();
+      metaFile = info.getMetaFile();
+    }
+    // open the files outside the dataset lock
     RandomAccessFile blockInFile = new RandomAccessFile(blockFile, "r");
     if (blkOffset > 0) {
       blockInFile.seek(blkOffset);
     }
-    File metaFile = info.getMetaFile();
     RandomAccessFile metaInFile = new RandomAccessFile(metaFile, "r");
     if (ckoff > 0) {
       metaInFile.seek(ckoff);
@@ -696,9 +732,60 @@ private void bumpReplicaGS(ReplicaInfo replicaInfo,
     }
   }
 
+  /**
+   * Create a new RBW replica. Choosing the volume and creating the file on
+   * it happen outside the dataset lock, so that blocks are created on
+   * different volumes in parallel; the replica map is re-checked before the
+   * new replica is added.
+   */
   @Override // FsDatasetSpi
-  public synchronized ReplicaInPipeline createRbw(ExtendedBlock b)
+  public ReplicaInPipeline createRbw(ExtendedBlock b)
       throws IOException {
+    ExtendedBlock creating = startCreatingReplica(b);
+    try {
+      // create a new block
+      FsVolumeImpl v = volumes.getNextVolume(b.getNumBytes());
+      // create a rbw file to hold block in the designated volume
+      File f = v.createRbwFile(b.getBlockPoolId(), b.getLocalBlock());
+      ReplicaBeingWritten newReplicaInfo = new ReplicaBeingWritten(
+          b.getBlockId(), b.getGenerationStamp(), v, f.getParentFile());
+      addNewReplica(b, newReplicaInfo, f);
+      return newReplicaInfo;
+    } finally {
+      replicasBeingCreated.remove(creating);
+    }
+  }
+
+  /**
+   * Claim the creation of a new replica of the block, so that a concurrent
+   * creation of the same block fails before it creates any file.
+   * @return the claim, to be removed from replicasBeingCreated once the
+   *         replica is in the replica map or its creation failed
+   * @throws ReplicaAlreadyExistsException if a replica of the block exists
+   *         or is being created
+   */
+  private ExtendedBlock startCreatingReplica(ExtendedBlock b)
+      throws ReplicaAlreadyExistsException {
+    ExtendedBlock creating =
+        new ExtendedBlock(b.getBlockPoolId(), b.getBlockId());
+    if (!replicasBeingCreated.add(creating)) {
+      throw new ReplicaAlreadyExistsException("Block " + b +
+          " is already being created and thus cannot be created.");
+    }
+    try {
+      checkReplicaAbsent(b);
+    } catch (ReplicaAlreadyExistsException e) {
+      replicasBeingCreated.remove(creating);
+      throw e;
+    }
+    return creating;
+  }
+
+  /**
+   * @throws ReplicaAlreadyExistsException if a replica of the block exists
+   */
+  private void checkReplicaAbsent(ExtendedBlock b)
+      throws ReplicaAlreadyExistsException {
     ReplicaInfo replicaInfo = volumeMap.get(b.getBlockPoolId(), 
         b.getBlockId());
     if (replicaInfo != null) {
@@ -706,14 +793,30 @@ public synchronized ReplicaInPipeline createRbw(ExtendedBlock b)
       " already exists in state " + replicaInfo.getState() +
       " and thus cannot be created.");
     }
-    // create a new block
-    FsVolumeImpl v = volumes.getNextVolume(b.getNumBytes());
-    // create a rbw file to hold block in the designated volume
-    File f = v.createRbwFile(b.getBlockPoolId(), b.getLocalBlock());
-    ReplicaBeingWritten newReplicaInfo = new ReplicaBeingWritten(b.getBlockId(), 
-        b.getGenerationStamp(), v, f.getParentFile());
-    volumeMap.add(b.getBlockPoolId(), newReplicaInfo);
-    return newReplicaInfo;
+  }
+
+  /**
+   * Add a newly created replica to the replica map, unless another replica
+   * of the block was added while its file was being created. In that case
+   * the new file is removed and the creation fails, even if the other
+   * replica has been removed since: the new replica has no file any more.
+   */
+  private void addNewReplica(ExtendedBlock b, ReplicaInfo newReplicaInfo,
+      File f) throws ReplicaAlreadyExistsException {
+    ReplicaInfo replicaInfo;
+    synchronized (this) {
+      replicaInfo = volumeMap.get(b.getBlockPoolId(), b.getBlockId());
+      if (replicaInfo == null) {
+        volumeMap.add(b.getBlockPoolId(), newReplicaInfo);
+        return;
+      }
+    }
+    if (!f.delete()) {
+      LOG.warn("Failed to delete " + f + " of a concurrently created " + b);
+    }
+    throw new ReplicaAlreadyExistsException("Block " + b +
+        " was created in state " + replicaInfo.getState() +
+        " while its file was being created.");
   }
   
   @Override // FsDatasetSpi
@@ -823,23 +926,20 @@ public synchronized ReplicaInPipeline convertTemporaryToRbw(
   }
 
   @Override // FsDatasetSpi
-  public synchronized ReplicaInPipeline createTemporary(ExtendedBlock b)
+  public ReplicaInPipeline createTemporary(ExtendedBlock b)
       throws IOException {
-    ReplicaInfo replicaInfo = volumeMap.get(b.getBlockPoolId(), b.getBlockId());
-    if (replicaInfo != null) {
-      throw new ReplicaAlreadyExistsException("Block " + b +
-          " already exists in state " + replicaInfo.getState() +
-          " and thus cannot be created.");
+    ExtendedBlock creating = startCreatingReplica(b);
+    try {
+      FsVolumeImpl v = volumes.getNextVolume(b.getNumBytes());
+      // create a temporary file to hold block in the designated volume
+      File f = v.createTmpFile(b.getBlockPoolId(), b.getLocalBlock());
+      ReplicaInPipeline newReplicaInfo = new ReplicaInPipeline(
+          b.getBlockId(), b.getGenerationStamp(), v, f.getParentFile());
+      addNewReplica(b, newReplicaInfo, f);
+      return newReplicaInfo;
+    } finally {
+      replicasBeingCreated.remove(creating);
     }
-    
-    FsVolumeImpl v = volumes.getNextVolume(b.getNumBytes());
-    // create a temporary file to hold block in the designated volume
-    File f = v.createTmpFile(b.getBlockPoolId(), b.getLocalBlock());
-    ReplicaInPipeline newReplicaInfo = new ReplicaInPipeline(b.getBlockId(), 
-        b.getGenerationStamp(), v, f.getParentFile());
-    volumeMap.add(b.getBlockPoolId(), newReplicaInfo);
-    
-    return newReplicaInfo;
   }
 
   /**
@@ -870,6 +970,8 @@ public void adjustCrcChannelPosition(ExtendedBlock b, ReplicaOutputStreams strea
 
   /**
    * Complete the block write!
+   * The block files are renamed under the dataset lock, so finalizing
+   * blocks is serialized across all volumes.
    */
   @Override // FsDatasetSpi
   public synchronized void finalizeBlock(ExtendedBlock b) throws IOException {
@@ -1130,6 +1232,7 @@ public void invalidate(String bpid, Block invalidBlks[]) throws IOException {
         }
         volumeMap.remove(bpid, invalidBlks[i]);
       }
+      cacheManager.uncacheBlock(bpid, invalidBlks[i].getBlockId());
 
       // Delete the block asynchronously to make sure we can do it fast enough
       asyncDiskService.deleteAsync(v, f,
@@ -1142,7 +1245,41 @@ public void invalidate(String bpid, Block invalidBlks[]) throws IOException {
   }
 
   @Override // FsDatasetSpi
-  public synchronized boolean contains(final ExtendedBlock block) {
+  public void cache(String bpid, long[] blockIds) {
+    for (long blockId : blockIds) {
+      final File blockFile;
+      final File metaFile;
+      final long length;
+      synchronized (this) {
+        ReplicaInfo info = volumeMap.get(bpid, blockId);
+        if (info == null || info.getState() != ReplicaState.FINALIZED) {
+          LOG.warn("Failed to cache block " + blockId + " of " + bpid
+              + ": replica " + (info == null ? "not found" : "not finalized"));
+          continue;
+        }
+        blockFile = info.getBlockFile();
+        metaFile = info.getMetaFile();
+        length = info.getNumBytes();
+      }
+      cacheManager.cacheBlock(bpid, blockId, length, blockFile, metaFile);
+    }
+  }
+
+  @Override // FsDatasetSpi
+  public void uncache(String bpid, long[] blockIds) {
+    for (long blockId : blockIds) {
+      cacheManager.uncacheBlock(bpid, blockId);
+    }
+  }
+
+  @Override // FsDatasetSpi
+  public CacheReport getCacheReport(String bpid) {
+    return new CacheReport(cacheManager.getCapacity(), cacheManager.getUsed(),
+        cacheManager.getCachedBlocks(bpid));
+  }
+
+  @Override // FsDatasetSpi
+  public boolean contains(final ExtendedBlock block) {
     final long blockId = block.getLocalBlock().getBlockId();
     return getFile(block.getBlockPoolId(), blockId) != null;
   }
@@ -1248,6 +1385,10 @@ public void shutdown() {
     if (asyncDiskService != null) {
       asyncDiskService.shutdown();
     }
+
+    if (cacheManager != null) {
+      cacheManager.shutdown();
+    }
     
     if(volumes != null) {
       volumes.shutdown();
@@ -1430,7 +1571,7 @@ public ReplicaInfo getReplica(String bpid, long blockId) {
   }
 
   @Override 
-  public synchronized String getReplicaString(String bpid, long blockId) {
+  public String getReplicaString(String bpid, long blockId) {
     final Replica r = volumeMap.get(bpid, blockId);
     return r == null? "null": r.toString();
   }
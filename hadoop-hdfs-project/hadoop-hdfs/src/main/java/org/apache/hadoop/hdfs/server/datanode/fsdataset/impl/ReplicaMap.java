@@ -18,8 +18,8 @@
 package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.hdfs.protocol.Block;
@@ -27,14 +27,19 @@
 
 /**
  * Maintains the replica map. 
+ *
+ * Lookups, additions and removals of single replicas are thread-safe and do
+ * not take the mutex, so that reads of the map do not contend with the
+ * dataset lock. Compound operations which must observe a consistent set of
+ * replicas, such as building a block report, still synchronize on the mutex.
  */
 class ReplicaMap {
-  // Object using which this class is synchronized
+  // Object using which compound operations on this class are synchronized
   private final Object mutex;
   
   // Map of block pool Id to another map of block Id to ReplicaInfo.
-  private Map<String, Map<Long, ReplicaInfo>> map = 
-    new HashMap<String, Map<Long, ReplicaInfo>>();
+  private final ConcurrentMap<String, ConcurrentMap<Long, ReplicaInfo>> map =
+    new ConcurrentHashMap<String, ConcurrentMap<Long, ReplicaInfo>>();
   
   ReplicaMap(Object mutex) {
     if (mutex == null) {
@@ -45,9 +50,7 @@ class ReplicaMap {
   }
   
   String[] getBlockPoolList() {
-    synchronized(mutex) {
-      return map.keySet().toArray(new String[map.keySet().size()]);   
-    }
+    return map.keySet().toArray(new String[0]);
   }
   
   private void checkBlockPool(String bpid) {
@@ -90,10 +93,8 @@ ReplicaInfo get(String bpid, Block block) {
    */
   ReplicaInfo get(String bpid, long blockId) {
     checkBlockPool(bpid);
-    synchronized(mutex) {
-      Map<Long, ReplicaInfo> m = map.get(bpid);
-      return m != null ? m.get(blockId) : null;
-    }
+    ConcurrentMap<Long, ReplicaInfo> m = map.get(bpid);
+    return m != null ? m.get(blockId) : null;
   }
   
   /**
@@ -107,15 +108,21 @@ ReplicaInfo get(String bpid, long blockId) {
   ReplicaInfo add(String bpid, ReplicaInfo replicaInfo) {
     checkBlockPool(bpid);
     checkBlock(replicaInfo);
-    synchronized(mutex) {
-      Map<Long, ReplicaInfo> m = map.get(bpid);
-      if (m == null) {
-        // Add an entry for block pool if it does not exist already
-        m = new HashMap<Long, ReplicaInfo>();
-        map.put(bpid, m);
+    return getOrCreateBlockPool(bpid).put(replicaInfo.getBlockId(),
+        replicaInfo);
+  }
+
+  private ConcurrentMap<Long, ReplicaInfo> getOrCreateBlockPool(String bpid) {
+    ConcurrentMap<Long, ReplicaInfo> m = map.get(bpid);
+    if (m == null) {
+      // Add an entry for block pool if it does not exist already
+      m = new ConcurrentHashMap<Long, ReplicaInfo>();
+      ConcurrentMap<Long, ReplicaInfo> prev = map.putIfAbsent(bpid, m);
+      if (prev != null) {
+        m = prev;
       }
-      return  m.put(replicaInfo.getBlockId(), replicaInfo);
     }
+    return m;
   }
   
   /**
@@ -129,18 +136,16 @@ ReplicaInfo add(String bpid, ReplicaInfo replicaInfo) {
   ReplicaInfo remove(String bpid, Block block) {
     checkBlockPool(bpid);
     checkBlock(block);
-    synchronized(mutex) {
-      Map<Long, ReplicaInfo> m = map.get(bpid);
-      if (m != null) {
-        Long key = Long.valueOf(block.getBlockId());
-        ReplicaInfo replicaInfo = m.get(key);
-        if (replicaInfo != null &&
-            block.getGenerationStamp() == replicaInfo.getGenerationStamp()) {
-          return m.remove(key);
-        } 
+    ConcurrentMap<Long, ReplicaInfo> m = map.get(bpid);
+    if (m != null) {
+      Long key = Long.valueOf(block.getBlockId());
+      ReplicaInfo replicaInfo = m.get(key);
+      if (replicaInfo != null &&
+          block.getGenerationStamp() == replicaInfo.getGenerationStamp() &&
+          m.remove(key, replicaInfo)) {
+        return replicaInfo;
       }
     }
-    
     return null;
   }
   
@@ -152,13 +157,8 @@ ReplicaInfo remove(String bpid, Block block) {
    */
   ReplicaInfo remove(String bpid, long blockId) {
     checkBlockPool(bpid);
-    synchronized(mutex) {
-      Map<Long, ReplicaInfo> m = map.get(bpid);
-      if (m != null) {
-        return m.remove(blockId);
-      }
-    }
-    return null;
+    ConcurrentMap<Long, ReplicaInfo> m = map.get(bpid);
+    return m != null ? m.remove(blockId) : null;
   }
  
   /**
@@ -167,46 +167,33 @@ ReplicaInfo remove(String bpid, long blockId) {
    * @return the number of replicas in the map
    */
   int size(String bpid) {
-    Map<Long, ReplicaInfo> m = null;
-    synchronized(mutex) {
-      m = map.get(bpid);
-      return m != null ? m.size() : 0;
-    }
+    ConcurrentMap<Long, ReplicaInfo> m = map.get(bpid);
+    return m != null ? m.size() : 0;
   }
   
   /**
    * Get a collection of the replicas for given block pool
-   * This method is <b>not synchronized</b>. It needs to be synchronized
-   * externally using the mutex, both for getting the replicas
-   * values from the map and iterating over it. Mutex can be accessed using
-   * {@link #getMutext()} method.
+   * This method is <b>not synchronized</b>. Iterating over the collection
+   * never throws ConcurrentModificationException, but callers which need a
+   * consistent view of the replicas must synchronize externally using the
+   * mutex, which can be accessed using {@link #getMutext()} method.
    * 
    * @param bpid block pool id
    * @return a collection of the replicas belonging to the block pool
    */
   Collection<ReplicaInfo> replicas(String bpid) {
-    Map<Long, ReplicaInfo> m = null;
-    m = map.get(bpid);
+    ConcurrentMap<Long, ReplicaInfo> m = map.get(bpid);
     return m != null ? m.values() : null;
   }
 
   void initBlockPool(String bpid) {
     checkBlockPool(bpid);
-    synchronized(mutex) {
-      Map<Long, ReplicaInfo> m = map.get(bpid);
-      if (m == null) {
-        // Add an entry for block pool if it does not exist already
-        m = new HashMap<Long, ReplicaInfo>();
-        map.put(bpid, m);
-      }
-    }
+    getOrCreateBlockPool(bpid);
   }
   
   void cleanUpBlockPool(String bpid) {
     checkBlockPool(bpid);
-    synchronized(mutex) {
-      map.remove(bpid);
-    }
+    map.remove(bpid);
   }
   
   /**
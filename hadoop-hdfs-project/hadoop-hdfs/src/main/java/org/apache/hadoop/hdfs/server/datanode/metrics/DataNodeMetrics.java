@@ -29,6 +29,7 @@
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
 import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
@@ -74,6 +75,11 @@ public class DataNodeMetrics {
   @Metric MutableRate replaceBlockOp;
   @Metric MutableRate heartbeats;
   @Metric MutableRate blockReports;
+  @Metric MutableRate directoryScans;
+  @Metric MutableRate directoryScanReconciles;
+  @Metric MutableCounterLong directoryScanDifferences;
+  @Metric("Differences found by the last directory scan and not yet " +
+      "reconciled") MutableGaugeLong directoryScanPendingDifferences;
   @Metric MutableRate packetAckRoundTripTimeNanos;
   MutableQuantiles[] packetAckRoundTripTimeNanosQuantiles;
   
@@ -151,6 +157,24 @@ public void addBlockReport(long latency) {
     blockReports.add(latency);
   }
 
+  public void addDirectoryScan(long latency, long differences) {
+    directoryScans.add(latency);
+    directoryScanDifferences.incr(differences);
+    directoryScanPendingDifferences.set(differences);
+  }
+
+  public void addDirectoryScanReconcile(long latency) {
+    directoryScanReconciles.add(latency);
+  }
+
+  public void decrDirectoryScanPendingDifferences(long delta) {
+    directoryScanPendingDifferences.decr(delta);
+  }
+
+  public void resetDirectoryScanPendingDifferences() {
+    directoryScanPendingDifferences.set(0);
+  }
+
   public void incrBlocksReplicated(int delta) {
     blocksReplicated.incr(delta);
   }
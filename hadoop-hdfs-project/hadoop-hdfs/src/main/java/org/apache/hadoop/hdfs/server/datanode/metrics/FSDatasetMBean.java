@@ -77,4 +77,14 @@ public interface FSDatasetMBean {
    * @return The number of failed volumes in the datanode.
    */
   public int getNumFailedVolumes();
+
+  /**
+   * Returns the number of bytes which may be locked in memory for caching.
+   */
+  public long getCacheCapacity();
+
+  /**
+   * Returns the number of bytes currently locked in memory for caching.
+   */
+  public long getCacheUsed();
 }
@@ -0,0 +1,353 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.UnresolvedLinkException;
+import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.DatanodeReportType;
+import org.apache.hadoop.hdfs.protocol.InvalidRequestException;
+import org.apache.hadoop.hdfs.protocol.PathBasedCacheDirective;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockManager;
+import org.apache.hadoop.hdfs.server.blockmanagement.DatanodeDescriptor;
+import org.apache.hadoop.hdfs.server.blockmanagement.DatanodeManager;
+
+/**
+ * Keeps track of the cache pools and path-based cache directives, and
+ * periodically works out which datanodes should keep which blocks locked in
+ * memory.
+ *
+ * Directives are kept in NameNode memory only. All methods must be called
+ * with the {@link FSNamesystem} lock held; {@link #rescan()} and the
+ * mutating methods need the write lock.
+ */
+@InterfaceAudience.Private
+final class CacheManager {
+  static final Log LOG = LogFactory.getLog(CacheManager.class);
+
+  private static class CachePool {
+    private final String name;
+    private long limit;
+    private long bytesNeeded;
+    private long bytesCached;
+
+    CachePool(String name, long limit) {
+      this.name = name;
+      this.limit = limit;
+    }
+
+    CachePoolInfo getInfo() {
+      return new CachePoolInfo(name, limit, bytesNeeded, bytesCached);
+    }
+  }
+
+  /** Orders the candidate datanodes by free cache space, largest first. */
+  private static final Comparator<DatanodeDescriptor> CACHE_REMAINING_COMPARATOR =
+      new Comparator<DatanodeDescriptor>() {
+        @Override
+        public int compare(DatanodeDescriptor a, DatanodeDescriptor b) {
+          long ra = a.getCacheRemaining();
+          long rb = b.getCacheRemaining();
+          return ra > rb ? -1 : (ra < rb ? 1 : 0);
+        }
+      };
+
+  /**
+   * Number of rescans a cache or uncache command is given to show in the
+   * cache reports of its datanode before it is sent again, e.g. because
+   * the datanode failed to cache the block.
+   */
+  private static final int CACHE_COMMAND_RETRY_RESCANS = 3;
+
+  private final FSNamesystem namesystem;
+  private final BlockManager blockManager;
+
+  /** Cache pools, sorted by name. */
+  private final TreeMap<String, CachePool> pools =
+      new TreeMap<String, CachePool>();
+
+  /** Cache directives, sorted by id. */
+  private final TreeMap<Long, PathBasedCacheDirective> directives =
+      new TreeMap<Long, PathBasedCacheDirective>();
+
+  private long nextDirectiveId = 1;
+
+  /** Number of rescans so far. */
+  private long rescanCount = 0;
+
+  CacheManager(FSNamesystem namesystem, BlockManager blockManager) {
+    this.namesystem = namesystem;
+    this.blockManager = blockManager;
+  }
+
+  PathBasedCacheDirective addDirective(PathBasedCacheDirective directive)
+      throws InvalidRequestException {
+    directive.validate();
+    if (!pools.containsKey(directive.getPool())) {
+      throw new InvalidRequestException("Unknown cache pool "
+          + directive.getPool() + ".");
+    }
+    PathBasedCacheDirective added = new PathBasedCacheDirective(
+        nextDirectiveId++, directive.getPath(), directive.getPool(),
+        directive.getReplication());
+    directives.put(added.getId(), added);
+    LOG.info("Added cache directive " + added);
+    return added;
+  }
+
+  void removeDirective(long id) throws InvalidRequestException {
+    if (directives.remove(id) == null) {
+      throw new InvalidRequestException("No cache directive with id "
+          + id + ".");
+    }
+    LOG.info("Removed cache directive " + id);
+  }
+
+  /**
+   * @param pool the pool to list the directives of, or null for all pools
+   */
+  PathBasedCacheDirective[] listDirectives(String pool) {
+    List<PathBasedCacheDirective> results =
+        new ArrayList<PathBasedCacheDirective>();
+    for (PathBasedCacheDirective d : directives.values()) {
+      if (pool == null || pool.equals(d.getPool())) {
+        results.add(d);
+      }
+    }
+    return results.toArray(new PathBasedCacheDirective[results.size()]);
+  }
+
+  void addPool(CachePoolInfo info) throws InvalidRequestException {
+    info.validate();
+    if (pools.containsKey(info.getPoolName())) {
+      throw new InvalidRequestException("Cache pool " + info.getPoolName()
+          + " already exists.");
+    }
+    pools.put(info.getPoolName(),
+        new CachePool(info.getPoolName(), info.getLimit()));
+    LOG.info("Added cache pool " + info.getPoolName());
+  }
+
+  /**
+   * Remove a pool and all of the directives which belong to it.
+   */
+  void removePool(String poolName) throws InvalidRequestException {
+    if (pools.remove(poolName) == null) {
+      throw new InvalidRequestException("Unknown cache pool " + poolName
+          + ".");
+    }
+    for (Iterator<PathBasedCacheDirective> it = directives.values().iterator();
+        it.hasNext();) {
+      if (it.next().getPool().equals(poolName)) {
+        it.remove();
+      }
+    }
+    LOG.info("Removed cache pool " + poolName);
+  }
+
+  CachePoolInfo[] listPools() {
+    CachePoolInfo[] results = new CachePoolInfo[pools.size()];
+    int i = 0;
+    for (CachePool pool : pools.values()) {
+      results[i++] = pool.getInfo();
+    }
+    return results;
+  }
+
+  /**
+   * Compute which datanodes should cache which blocks, and queue cache and
+   * uncache commands for the difference with what the datanodes last
+   * reported. The commands go out on the following heartbeats. A command
+   * is not queued again while its datanode may still be carrying it out.
+   */
+  void rescan() {
+    final long rescan = ++rescanCount;
+    final long retryRescan = rescan + CACHE_COMMAND_RETRY_RESCANS;
+    // block id -> datanodes which should cache it
+    final Map<Long, List<DatanodeDescriptor>> wanted =
+        new HashMap<Long, List<DatanodeDescriptor>>();
+    // bytes assigned to each datanode during this scan
+    final Map<DatanodeDescriptor, Long> assigned =
+        new HashMap<DatanodeDescriptor, Long>();
+    // pool -> blocks wanted by its directives, with the highest replication
+    // any of them asks for, so that a block is counted once per pool
+    final Map<CachePool, Map<BlockInfo, Short>> poolBlocks =
+        new HashMap<CachePool, Map<BlockInfo, Short>>();
+
+    for (CachePool pool : pools.values()) {
+      pool.bytesNeeded = 0;
+      pool.bytesCached = 0;
+      poolBlocks.put(pool, new HashMap<BlockInfo, Short>());
+    }
+    for (PathBasedCacheDirective directive : directives.values()) {
+      CachePool pool = pools.get(directive.getPool());
+      Map<BlockInfo, Short> counted = poolBlocks.get(pool);
+      short replication = directive.getReplication();
+      for (INodeFile file : getFiles(directive.getPath())) {
+        for (BlockInfo block : file.getBlocks()) {
+          if (!block.isComplete()) {
+            continue;
+          }
+          Short countedReplication = counted.get(block);
+          int more = countedReplication == null ? replication
+              : replication - countedReplication;
+          if (more <= 0) {
+            continue;
+          }
+          long needed = block.getNumBytes() * more;
+          if (pool.bytesNeeded + needed > pool.limit) {
+            continue;
+          }
+          pool.bytesNeeded += needed;
+          counted.put(block, replication);
+          List<DatanodeDescriptor> targets = chooseCacheTargets(block,
+              replication, wanted.get(block.getBlockId()), assigned);
+          wanted.put(block.getBlockId(), targets);
+        }
+      }
+    }
+    for (Map.Entry<CachePool, Map<BlockInfo, Short>> e :
+        poolBlocks.entrySet()) {
+      CachePool pool = e.getKey();
+      for (Map.Entry<BlockInfo, Short> b : e.getValue().entrySet()) {
+        BlockInfo block = b.getKey();
+        int cached = 0;
+        for (DatanodeDescriptor dn : wanted.get(block.getBlockId())) {
+          if (dn.isCached(block.getBlockId())) {
+            cached++;
+          }
+        }
+        pool.bytesCached +=
+            block.getNumBytes() * Math.min(cached, b.getValue());
+      }
+    }
+
+    final DatanodeManager dm = blockManager.getDatanodeManager();
+    int toCache = 0, toUncache = 0;
+    for (DatanodeDescriptor dn : dm.getDatanodeListForReport(
+        DatanodeReportType.LIVE)) {
+      dn.pruneCacheCommands(rescan);
+      Set<Long> cached = dn.getCachedBlocks();
+      for (Long blockId : cached) {
+        List<DatanodeDescriptor> targets = wanted.get(blockId);
+        if ((targets == null || !targets.contains(dn))
+            && dn.addBlockToBeUncached(blockId, rescan, retryRescan)) {
+          toUncache++;
+        }
+      }
+    }
+    for (Map.Entry<Long, List<DatanodeDescriptor>> e : wanted.entrySet()) {
+      for (DatanodeDescriptor dn : e.getValue()) {
+        if (!dn.isCached(e.getKey())
+            && dn.addBlockToBeCached(e.getKey(), rescan, retryRescan)) {
+          toCache++;
+        }
+      }
+    }
+    if (LOG.isDebugEnabled() && (toCache > 0 || toUncache > 0)) {
+      LOG.debug("Cache rescan queued " + toCache + " block(s) to cache and "
+          + toUncache + " block(s) to uncache");
+    }
+  }
+
+  /**
+   * @return the complete files named by a directive path: the file itself,
+   *         or the files directly inside a directory.
+   */
+  private List<INodeFile> getFiles(String path) {
+    INode inode;
+    try {
+      inode = namesystem.dir.getINode(path);
+    } catch (UnresolvedLinkException e) {
+      return Collections.emptyList();
+    }
+    List<INodeFile> files = new ArrayList<INodeFile>();
+    if (inode == null) {
+      return files;
+    }
+    if (inode.isFile()) {
+      files.add((INodeFile)inode);
+    } else if (inode.isDirectory()) {
+      for (INode child : ((INodeDirectory)inode).getChildrenList()) {
+        if (child.isFile()) {
+          files.add((INodeFile)child);
+        }
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Pick the datanodes which should cache a block. Datanodes which already
+   * cache it are kept; the rest are the live replica holders with the most
+   * free cache space.
+   */
+  private List<DatanodeDescriptor> chooseCacheTargets(BlockInfo block,
+      short replication, List<DatanodeDescriptor> chosen,
+      Map<DatanodeDescriptor, Long> assigned) {
+    List<DatanodeDescriptor> targets = chosen != null ? chosen
+        : new ArrayList<DatanodeDescriptor>(replication);
+    if (targets.size() >= replication) {
+      return targets;
+    }
+    List<DatanodeDescriptor> candidates = new ArrayList<DatanodeDescriptor>();
+    for (Iterator<DatanodeDescriptor> it =
+        blockManager.datanodeIterator(block); it.hasNext();) {
+      DatanodeDescriptor dn = it.next();
+      if (!dn.isAlive || dn.isDecommissionInProgress()
+          || dn.isDecommissioned() || targets.contains(dn)) {
+        continue;
+      }
+      if (dn.isCached(block.getBlockId())) {
+        targets.add(dn);
+        if (targets.size() >= replication) {
+          return targets;
+        }
+      } else {
+        candidates.add(dn);
+      }
+    }
+    Collections.sort(candidates, CACHE_REMAINING_COMPARATOR);
+    for (DatanodeDescriptor dn : candidates) {
+      if (targets.size() >= replication) {
+        break;
+      }
+      Long pending = assigned.get(dn);
+      long used = pending == null ? 0 : pending;
+      if (dn.getCacheRemaining() - used < block.getNumBytes()) {
+        continue;
+      }
+      assigned.put(dn, used + block.getNumBytes());
+      targets.add(dn);
+    }
+    return targets;
+  }
+}
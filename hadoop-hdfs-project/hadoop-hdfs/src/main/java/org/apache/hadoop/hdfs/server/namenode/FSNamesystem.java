@@ -53,6 +53,8 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_REPLICATION_MIN_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_REPLICATION_MIN_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_REPL_QUEUE_THRESHOLD_PCT_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_RESOURCE_CHECK_INTERVAL_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_RESOURCE_CHECK_INTERVAL_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_SAFEMODE_EXTENSION_KEY;
@@ -134,6 +136,7 @@
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.protocol.AlreadyBeingCreatedException;
 import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -145,6 +148,7 @@
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.protocol.PathBasedCacheDirective;
 import org.apache.hadoop.hdfs.protocol.QuotaExceededException;
 import org.apache.hadoop.hdfs.protocol.RecoveryInProgressException;
 import org.apache.hadoop.hdfs.protocol.datatransfer.ReplaceDatanodeOnFailure;
@@ -177,6 +181,7 @@
 import org.apache.hadoop.hdfs.server.namenode.metrics.FSNamesystemMBean;
 import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
 import org.apache.hadoop.hdfs.server.namenode.web.resources.NamenodeWebHdfsMethods;
+import org.apache.hadoop.hdfs.server.protocol.CacheReport;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.server.protocol.HeartbeatResponse;
@@ -344,6 +349,8 @@ private void logAuditEvent(boolean succeeded,
   
   Daemon nnrmthread = null; // NamenodeResourceMonitor thread
 
+  Daemon crmthread = null; // CacheRescanMonitor thread
+
   private volatile boolean hasResourcesAvailable = false;
   private volatile boolean fsRunning = true;
   
@@ -353,6 +360,10 @@ private void logAuditEvent(boolean succeeded,
   /** The interval of namenode checking for the disk space availability */
   private final long resourceRecheckInterval;
 
+  /** Cache pools and path-based cache directives. */
+  private final CacheManager cacheManager;
+  private final long cacheRescanInterval;
+
   // The actual resource checker instance.
   NameNodeResourceChecker nnResourceChecker;
 
@@ -540,7 +551,12 @@ public static FSNamesystem loadFromDisk(Configuration conf)
           DFS_NAMENODE_RESOURCE_CHECK_INTERVAL_KEY,
           DFS_NAMENODE_RESOURCE_CHECK_INTERVAL_DEFAULT);
 
+      cacheRescanInterval = conf.getLong(
+          DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS_KEY,
+          DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS_DEFAULT);
+
       this.blockManager = new BlockManager(this, this, conf);
+      this.cacheManager = new CacheManager(this, blockManager);
       this.datanodeStatistics = blockManager.getDatanodeManager().getDatanodeStatistics();
 
       this.fsOwner = UserGroupInformation.getCurrentUser();
@@ -814,6 +830,9 @@ void startActiveServices() throws IOException {
       //ResourceMonitor required only at ActiveNN. See HDFS-2914
       this.nnrmthread = new Daemon(new NameNodeResourceMonitor());
       nnrmthread.start();
+
+      this.crmthread = new Daemon(new CacheRescanMonitor());
+      crmthread.start();
     } finally {
       writeUnlock();
     }
@@ -840,6 +859,10 @@ void stopActiveServices() {
         ((NameNodeResourceMonitor) nnrmthread.getRunnable()).stopMonitor();
         nnrmthread.interrupt();
       }
+      if (crmthread != null) {
+        ((CacheRescanMonitor) crmthread.getRunnable()).stopMonitor();
+        crmthread.interrupt();
+      }
       if (dir != null && dir.fsImage != null) {
         if (dir.fsImage.editLog != null) {
           dir.fsImage.editLog.close();
@@ -3533,15 +3556,15 @@ String getRegistrationID() {
    */
   HeartbeatResponse handleHeartbeat(DatanodeRegistration nodeReg,
       long capacity, long dfsUsed, long remaining, long blockPoolUsed,
-      int xceiverCount, int xmitsInProgress, int failedVolumes) 
-        throws IOException {
+      CacheReport cacheReport, int xceiverCount, int xmitsInProgress,
+      int failedVolumes) throws IOException {
     readLock();
     try {
       final int maxTransfer = blockManager.getMaxReplicationStreams()
           - xmitsInProgress;
       DatanodeCommand[] cmds = blockManager.getDatanodeManager().handleHeartbeat(
           nodeReg, blockPoolId, capacity, dfsUsed, remaining, blockPoolUsed,
-          xceiverCount, maxTransfer, failedVolumes);
+          cacheReport, xceiverCount, maxTransfer, failedVolumes);
       return new HeartbeatResponse(cmds, createHaStatusHeartbeat());
     } finally {
       readUnlock();
@@ -3611,6 +3634,50 @@ public void stopMonitor() {
       shouldNNRmRun = false;
     }
  }
+
+  /**
+   * Periodically rescans the path-based cache directives and queues cache
+   * and uncache commands for the datanodes.
+   */
+  class CacheRescanMonitor implements Runnable {
+    private volatile boolean shouldRun = true;
+
+    @Override
+    public void run() {
+      while (fsRunning && shouldRun) {
+        try {
+          rescanCacheDirectives();
+        } catch (Exception e) {
+          FSNamesystem.LOG.error("Exception in CacheRescanMonitor: ", e);
+        }
+        try {
+          Thread.sleep(cacheRescanInterval);
+        } catch (InterruptedException ie) {
+          // Deliberately ignore
+        }
+      }
+    }
+
+    public void stopMonitor() {
+      shouldRun = false;
+    }
+  }
+
+  /**
+   * Recompute which datanodes should cache which blocks. Nothing is done
+   * while in safe mode, since block locations may still be incomplete.
+   */
+  void rescanCacheDirectives() {
+    writeLock();
+    try {
+      if (isInSafeMode()) {
+        return;
+      }
+      cacheManager.rescan();
+    } finally {
+      writeUnlock();
+    }
+  }
   
   public FSImage getFSImage() {
     return dir.fsImage;
@@ -3738,6 +3805,124 @@ int getNumberOfDatanodes(DatanodeReportType type) {
     }
   }
 
+  /**
+   * Add a path-based cache directive.
+   * @see ClientProtocol#addPathBasedCacheDirective(PathBasedCacheDirective)
+   */
+  long addPathBasedCacheDirective(PathBasedCacheDirective directive)
+      throws IOException {
+    checkSuperuserPrivilege();
+    PathBasedCacheDirective added;
+    checkOperation(OperationCategory.WRITE);
+    writeLock();
+    try {
+      checkOperation(OperationCategory.WRITE);
+      if (isInSafeMode()) {
+        throw new SafeModeException("Cannot add cache directive for "
+            + directive.getPath(), safeMode);
+      }
+      added = cacheManager.addDirective(directive);
+    } finally {
+      writeUnlock();
+    }
+    logAuditEvent(true, "addPathBasedCacheDirective", directive.getPath());
+    return added.getId();
+  }
+
+  /**
+   * Remove a path-based cache directive.
+   * @see ClientProtocol#removePathBasedCacheDirective(long)
+   */
+  void removePathBasedCacheDirective(long id) throws IOException {
+    checkSuperuserPrivilege();
+    checkOperation(OperationCategory.WRITE);
+    writeLock();
+    try {
+      checkOperation(OperationCategory.WRITE);
+      if (isInSafeMode()) {
+        throw new SafeModeException("Cannot remove cache directive " + id,
+            safeMode);
+      }
+      cacheManager.removeDirective(id);
+    } finally {
+      writeUnlock();
+    }
+    logAuditEvent(true, "removePathBasedCacheDirective", null);
+  }
+
+  /**
+   * List path-based cache directives.
+   * @see ClientProtocol#listPathBasedCacheDirectives(String)
+   */
+  PathBasedCacheDirective[] listPathBasedCacheDirectives(String pool)
+      throws IOException {
+    checkOperation(OperationCategory.READ);
+    readLock();
+    try {
+      checkOperation(OperationCategory.READ);
+      return cacheManager.listDirectives(pool);
+    } finally {
+      readUnlock();
+    }
+  }
+
+  /**
+   * Add a cache pool.
+   * @see ClientProtocol#addCachePool(CachePoolInfo)
+   */
+  void addCachePool(CachePoolInfo info) throws IOException {
+    checkSuperuserPrivilege();
+    checkOperation(OperationCategory.WRITE);
+    writeLock();
+    try {
+      checkOperation(OperationCategory.WRITE);
+      if (isInSafeMode()) {
+        throw new SafeModeException("Cannot add cache pool "
+            + info.getPoolName(), safeMode);
+      }
+      cacheManager.addPool(info);
+    } finally {
+      writeUnlock();
+    }
+    logAuditEvent(true, "addCachePool", null);
+  }
+
+  /**
+   * Remove a cache pool and its directives.
+   * @see ClientProtocol#removeCachePool(String)
+   */
+  void removeCachePool(String poolName) throws IOException {
+    checkSuperuserPrivilege();
+    checkOperation(OperationCategory.WRITE);
+    writeLock();
+    try {
+      checkOperation(OperationCategory.WRITE);
+      if (isInSafeMode()) {
+        throw new SafeModeException("Cannot remove cache pool " + poolName,
+            safeMode);
+      }
+      cacheManager.removePool(poolName);
+    } finally {
+      writeUnlock();
+    }
+    logAuditEvent(true, "removeCachePool", null);
+  }
+
+  /**
+   * List cache pools along with their usage as of the last rescan.
+   * @see ClientProtocol#listCachePools()
+   */
+  CachePoolInfo[] listCachePools() throws IOException {
+    checkOperation(OperationCategory.READ);
+    readLock();
+    try {
+      checkOperation(OperationCategory.READ);
+      return cacheManager.listPools();
+    } finally {
+      readUnlock();
+    }
+  }
+
   DatanodeInfo[] datanodeReport(final DatanodeReportType type
       ) throws AccessControlException, StandbyException {
     checkSuperuserPrivilege();
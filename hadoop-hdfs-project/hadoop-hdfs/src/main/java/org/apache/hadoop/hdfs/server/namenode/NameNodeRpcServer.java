@@ -51,6 +51,7 @@
 import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.HDFSPolicyProvider;
 import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -62,6 +63,7 @@
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.protocol.PathBasedCacheDirective;
 import org.apache.hadoop.hdfs.protocol.UnregisteredNodeException;
 import org.apache.hadoop.hdfs.protocol.UnresolvedPathException;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ClientNamenodeProtocol;
@@ -91,6 +93,7 @@
 import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
 import org.apache.hadoop.hdfs.server.namenode.web.resources.NamenodeWebHdfsMethods;
 import org.apache.hadoop.hdfs.server.protocol.BlocksWithLocations;
+import org.apache.hadoop.hdfs.server.protocol.CacheReport;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
@@ -703,6 +706,38 @@ public long[] getStats() throws IOException {
     return namesystem.getStats();
   }
 
+  @Override // ClientProtocol
+  public long addPathBasedCacheDirective(PathBasedCacheDirective directive)
+      throws IOException {
+    return namesystem.addPathBasedCacheDirective(directive);
+  }
+
+  @Override // ClientProtocol
+  public void removePathBasedCacheDirective(long id) throws IOException {
+    namesystem.removePathBasedCacheDirective(id);
+  }
+
+  @Override // ClientProtocol
+  public PathBasedCacheDirective[] listPathBasedCacheDirectives(String pool)
+      throws IOException {
+    return namesystem.listPathBasedCacheDirectives(pool);
+  }
+
+  @Override // ClientProtocol
+  public void addCachePool(CachePoolInfo info) throws IOException {
+    namesystem.addCachePool(info);
+  }
+
+  @Override // ClientProtocol
+  public void removeCachePool(String poolName) throws IOException {
+    namesystem.removeCachePool(poolName);
+  }
+
+  @Override // ClientProtocol
+  public CachePoolInfo[] listCachePools() throws IOException {
+    return namesystem.listCachePools();
+  }
+
   @Override // ClientProtocol
   public DatanodeInfo[] getDatanodeReport(DatanodeReportType type)
   throws IOException {
@@ -886,13 +921,13 @@ public DatanodeRegistration registerDatanode(DatanodeRegistration nodeReg)
 
   @Override // DatanodeProtocol
   public HeartbeatResponse sendHeartbeat(DatanodeRegistration nodeReg,
-      StorageReport[] report, int xmitsInProgress, int xceiverCount,
-      int failedVolumes) throws IOException {
+      StorageReport[] report, CacheReport cacheReport, int xmitsInProgress,
+      int xceiverCount, int failedVolumes) throws IOException {
     verifyRequest(nodeReg);
     return namesystem.handleHeartbeat(nodeReg, report[0].getCapacity(),
         report[0].getDfsUsed(), report[0].getRemaining(),
-        report[0].getBlockPoolUsed(), xceiverCount, xmitsInProgress,
-        failedVolumes);
+        report[0].getBlockPoolUsed(), cacheReport, xceiverCount,
+        xmitsInProgress, failedVolumes);
   }
 
   @Override // DatanodeProtocol
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.protocol;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Cache state of a datanode, sent to the namenode with every heartbeat.
+ * A full report lists every cached block. It is sent when the datanode
+ * registers, and whenever the namenode may have missed a report. The other
+ * reports are incremental: they list the blocks cached and uncached since
+ * the previous report.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class CacheReport {
+  private static final long[] NO_BLOCK_IDS = new long[0];
+
+  public static final CacheReport EMPTY =
+      new CacheReport(0, 0, NO_BLOCK_IDS);
+
+  private final long capacity;
+  private final long used;
+  private final boolean full;
+  private final long[] blockIds;
+  private final long[] uncachedBlockIds;
+
+  /**
+   * A full report.
+   */
+  public CacheReport(long capacity, long used, long[] blockIds) {
+    this(capacity, used, true, blockIds, NO_BLOCK_IDS);
+  }
+
+  /**
+   * An incremental report.
+   */
+  public CacheReport(long capacity, long used, long[] cachedBlockIds,
+      long[] uncachedBlockIds) {
+    this(capacity, used, false, cachedBlockIds, uncachedBlockIds);
+  }
+
+  private CacheReport(long capacity, long used, boolean full,
+      long[] blockIds, long[] uncachedBlockIds) {
+    this.capacity = capacity;
+    this.used = used;
+    this.full = full;
+    this.blockIds = blockIds;
+    this.uncachedBlockIds = uncachedBlockIds;
+  }
+
+  /** @return the number of bytes the datanode may lock in memory. */
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /** @return the number of bytes currently locked in memory. */
+  public long getUsed() {
+    return used;
+  }
+
+  /** @return true if the report lists every cached block. */
+  public boolean isFull() {
+    return full;
+  }
+
+  /**
+   * @return the ids of the blocks cached in the reporting block pool, or
+   *         of those cached since the previous report if it is incremental.
+   */
+  public long[] getBlockIds() {
+    return blockIds;
+  }
+
+  /**
+   * @return the ids of the blocks uncached since the previous report, empty
+   *         if the report is full.
+   */
+  public long[] getUncachedBlockIds() {
+    return uncachedBlockIds;
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A bounded pool of heap byte arrays, for buffers which are allocated at a
+ * high rate and live just long enough to be promoted out of the young
+ * generation, such as the packet buffers of an output stream.
+ *
+ * At most maxBuffersPerSize arrays of each size are retained; arrays
+ * returned beyond that are left to the garbage collector. Like
+ * {@link DirectBufferPool}, there is no attempt to reuse larger arrays to
+ * satisfy smaller allocations.
+ */
+@InterfaceAudience.Private
+public class ByteArrayPool {
+  private final int maxBuffersPerSize;
+
+  private final ConcurrentMap<Integer, BlockingQueue<byte[]>> buffersBySize =
+      new ConcurrentHashMap<Integer, BlockingQueue<byte[]>>();
+
+  private final AtomicLong numAllocated = new AtomicLong();
+  private final AtomicLong numReused = new AtomicLong();
+
+  /**
+   * @param maxBuffersPerSize the number of arrays of each size to retain;
+   *                          0 disables pooling.
+   */
+  public ByteArrayPool(int maxBuffersPerSize) {
+    this.maxBuffersPerSize = maxBuffersPerSize;
+  }
+
+  /**
+   * Get an array of the specified size, in bytes. If a pooled array is
+   * available, returns that; its content is undefined. Otherwise allocates
+   * a new one.
+   */
+  public byte[] getBuffer(int size) {
+    BlockingQueue<byte[]> list = buffersBySize.get(size);
+    if (list != null) {
+      byte[] b = list.poll();
+      if (b != null) {
+        numReused.incrementAndGet();
+        return b;
+      }
+    }
+    numAllocated.incrementAndGet();
+    return new byte[size];
+  }
+
+  /**
+   * Return an array into the pool. After being returned, the array may be
+   * handed out again, so the caller must not continue to use it in any way.
+   * @param buf the array to return
+   */
+  public void returnBuffer(byte[] buf) {
+    if (maxBuffersPerSize <= 0) {
+      return;
+    }
+    int size = buf.length;
+    BlockingQueue<byte[]> list = buffersBySize.get(size);
+    if (list == null) {
+      list = new ArrayBlockingQueue<byte[]>(maxBuffersPerSize);
+      BlockingQueue<byte[]> prev = buffersBySize.putIfAbsent(size, list);
+      // someone else put a queue in the map before we did
+      if (prev != null) {
+        list = prev;
+      }
+    }
+    // drop the array if the pool for its size is full
+    list.offer(buf);
+  }
+
+  /** @return the number of arrays allocated because none was pooled. */
+  public long getNumAllocated() {
+    return numAllocated.get();
+  }
+
+  /** @return the number of arrays handed out again from the pool. */
+  public long getNumReused() {
+    return numReused.get();
+  }
+
+  /**
+   * Return the number of available arrays of a given size.
+   * This is used only for tests.
+   */
+  @VisibleForTesting
+  int countBuffersOfSize(int size) {
+    BlockingQueue<byte[]> list = buffersBySize.get(size);
+    return list == null ? 0 : list.size();
+  }
+}
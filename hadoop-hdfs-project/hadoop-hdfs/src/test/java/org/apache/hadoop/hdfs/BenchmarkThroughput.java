@@ -33,6 +33,7 @@
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocalDirAllocator;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.util.ByteArrayPool;
 import org.apache.hadoop.util.Time;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
@@ -218,6 +219,11 @@ public int run(String[] args) throws IOException {
       for(int i=0; i < reps; ++i) {
         writeAndReadFile(dfs, "dfs", conf, SIZE);
       }
+      ByteArrayPool packetPool =
+          ((DistributedFileSystem) dfs).getClient().packetBufferPool;
+      System.out.println("Packet buffers allocated: "
+          + packetPool.getNumAllocated() + " reused: "
+          + packetPool.getNumReused());
     } finally {
       if (cluster != null) {
         cluster.shutdown();
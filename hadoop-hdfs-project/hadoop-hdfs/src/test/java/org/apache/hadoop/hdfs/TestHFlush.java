@@ -20,10 +20,19 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.EnumSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.impl.Log4JLogger;
 import org.apache.hadoop.conf.Configuration;
@@ -31,7 +40,9 @@
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream.SyncFlag;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
 import org.apache.log4j.Level;
 import org.junit.Test;
 
@@ -173,6 +184,144 @@ public void hSyncUpdateLength_03() throws IOException {
     doTheJob(conf, fName, customBlockSize, (short) 2, true,
         EnumSet.of(SyncFlag.UPDATE_LENGTH));
   }
+
+  /**
+   * Same as {@link #hFlush_03()}, with the DataNodes writing packets
+   * asynchronously on per-volume writer threads.
+   */
+  @Test
+  public void hFlush_asyncWrites() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    int customPerChecksumSize = 400;
+    int customBlockSize = customPerChecksumSize * 3;
+    conf.setInt(DFSConfigKeys.DFS_BYTES_PER_CHECKSUM_KEY, customPerChecksumSize);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, customBlockSize);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_ASYNC_WRITE_THREADS_PER_VOLUME_KEY,
+        2);
+
+    doTheJob(conf, fName, customBlockSize, (short) 2, false,
+        EnumSet.noneOf(SyncFlag.class));
+  }
+
+  /**
+   * Same as {@link #hSyncUpdateLength_03()}, with the DataNodes writing
+   * packets asynchronously on per-volume writer threads.
+   */
+  @Test
+  public void hSyncUpdateLength_asyncWrites() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    int customPerChecksumSize = 400;
+    int customBlockSize = customPerChecksumSize * 3;
+    conf.setInt(DFSConfigKeys.DFS_BYTES_PER_CHECKSUM_KEY, customPerChecksumSize);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, customBlockSize);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_ASYNC_WRITE_THREADS_PER_VOLUME_KEY,
+        2);
+
+    doTheJob(conf, fName, customBlockSize, (short) 2, true,
+        EnumSet.of(SyncFlag.UPDATE_LENGTH));
+  }
+
+  /**
+   * With asynchronous writes, a DataNode acks an hflush'ed packet only
+   * after its writer thread wrote it.
+   */
+  @Test(timeout = 60000)
+  public void hFlush_asyncWritesAckAfterWrite() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_ASYNC_WRITE_THREADS_PER_VOLUME_KEY,
+        1);
+    final CountDownLatch writeStarted = new CountDownLatch(1);
+    final CountDownLatch writeAllowed = new CountDownLatch(1);
+    DataNodeFaultInjector oldInjector = DataNodeFaultInjector.instance;
+    DataNodeFaultInjector.instance = new DataNodeFaultInjector() {
+      @Override
+      public void beforeAsyncPacketWrite(ExtendedBlock block, long seqno)
+          throws IOException {
+        writeStarted.countDown();
+        try {
+          writeAllowed.await();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException("Interrupted writing " + block);
+        }
+      }
+    };
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1)
+        .build();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      final Path p = new Path("/hflush-async-ack");
+      final byte[] fileContents = AppendTestUtil.initBuffer(1000);
+      final FSDataOutputStream stm = AppendTestUtil.createFile(fs, p, 1);
+      stm.write(fileContents);
+      Future<Void> hflush = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          stm.hflush();
+          return null;
+        }
+      });
+
+      // the packet is queued, but not written: hflush must not return
+      writeStarted.await();
+      try {
+        hflush.get(2, TimeUnit.SECONDS);
+        fail("hflush returned before the packet was written");
+      } catch (TimeoutException e) {
+        // expected
+      }
+
+      writeAllowed.countDown();
+      hflush.get();
+      stm.close();
+      AppendTestUtil.checkFullFile(fs, p, fileContents.length,
+          fileContents, "Failed to write asynchronously");
+    } finally {
+      writeAllowed.countDown();
+      executor.shutdownNow();
+      DataNodeFaultInjector.instance = oldInjector;
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * With asynchronous writes, a failed write on the writer thread fails
+   * the write pipeline instead of being acked.
+   */
+  @Test(timeout = 60000)
+  public void hFlush_asyncWriteError() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_ASYNC_WRITE_THREADS_PER_VOLUME_KEY,
+        1);
+    final AtomicInteger failedWrites = new AtomicInteger(0);
+    DataNodeFaultInjector oldInjector = DataNodeFaultInjector.instance;
+    DataNodeFaultInjector.instance = new DataNodeFaultInjector() {
+      @Override
+      public void beforeAsyncPacketWrite(ExtendedBlock block, long seqno)
+          throws IOException {
+        failedWrites.incrementAndGet();
+        throw new IOException("Injected failure writing " + block);
+      }
+    };
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1)
+        .build();
+    try {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      FSDataOutputStream stm = AppendTestUtil.createFile(fs,
+          new Path("/hflush-async-error"), 1);
+      stm.write(AppendTestUtil.initBuffer(1000));
+      try {
+        stm.hflush();
+        fail("hflush succeeded although the DataNode failed to write");
+      } catch (IOException e) {
+        // expected
+      }
+      assertTrue(failedWrites.get() > 0);
+    } finally {
+      DataNodeFaultInjector.instance = oldInjector;
+      cluster.shutdown();
+    }
+  }
   
   /**
    * The method starts new cluster with defined Configuration; creates a file
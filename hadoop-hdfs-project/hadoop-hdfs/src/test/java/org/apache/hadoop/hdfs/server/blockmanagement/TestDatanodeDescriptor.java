@@ -17,8 +17,10 @@
  */
 package org.apache.hadoop.hdfs.server.blockmanagement;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -78,4 +80,41 @@ public void testBlocksCounter() throws Exception {
     assertTrue(dd.removeBlock(blk1));
     assertEquals(0, dd.numBlocks());    
   }
+
+  /**
+   * Test that a cache command is not queued again until its retry rescan.
+   */
+  @Test
+  public void testCacheCommandRetries() throws Exception {
+    DatanodeDescriptor dd = DFSTestUtil.getLocalDatanodeDescriptor();
+    assertTrue(dd.addBlockToBeCached(1L, 1, 4));
+    assertArrayEquals(new long[] { 1L }, dd.getCacheCommand(10));
+    // pending until rescan 4
+    dd.pruneCacheCommands(2);
+    assertFalse(dd.addBlockToBeCached(1L, 2, 5));
+    assertNull(dd.getCacheCommand(10));
+    dd.pruneCacheCommands(4);
+    assertTrue(dd.addBlockToBeCached(1L, 4, 7));
+    assertArrayEquals(new long[] { 1L }, dd.getCacheCommand(10));
+    // an uncache command replaces the pending cache command
+    assertTrue(dd.addBlockToBeUncached(1L, 5, 8));
+    assertArrayEquals(new long[] { 1L }, dd.getUncacheCommand(10));
+    assertFalse(dd.addBlockToBeUncached(1L, 6, 9));
+    assertTrue(dd.addBlockToBeCached(1L, 6, 9));
+  }
+
+  @Test
+  public void testIncrementalCacheReport() throws Exception {
+    DatanodeDescriptor dd = DFSTestUtil.getLocalDatanodeDescriptor();
+    dd.updateCacheReport(100L, 20L, new long[] { 1L, 2L });
+    assertTrue(dd.isCached(1L));
+    assertTrue(dd.isCached(2L));
+    dd.updateCacheReport(100L, 30L, new long[] { 3L }, new long[] { 1L });
+    assertEquals(30L, dd.getCacheUsed());
+    assertFalse(dd.isCached(1L));
+    assertTrue(dd.isCached(2L));
+    assertTrue(dd.isCached(3L));
+    dd.updateCacheReport(100L, 0L, new long[0]);
+    assertEquals(0, dd.getCachedBlocks().size());
+  }
 }
@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.hdfs.server.datanode;
 
+import static org.apache.hadoop.test.MetricsAsserts.assertGauge;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -45,6 +47,7 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.impl.FsDatasetTestUtil;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
 import org.junit.Test;
 
 /**
@@ -231,6 +234,36 @@ public void testDirectoryScanner() throws Exception {
     }
   }
   
+  /**
+   * Scanning with throttled report compilers and reconciling one
+   * difference per batch must find and fix the same differences.
+   */
+  @Test
+  public void testThrottledScanAndBatchedReconcile() throws Exception {
+    CONF.setInt(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_KEY,
+        100);
+    CONF.setInt(DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_RECONCILE_BATCH_SIZE_KEY,
+        1);
+    try {
+      runTest(2);
+    } finally {
+      CONF.unset(
+          DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_KEY);
+      CONF.unset(
+          DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_RECONCILE_BATCH_SIZE_KEY);
+    }
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testInvalidThrottleLimit() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_KEY,
+        0);
+    new DirectoryScanner(null, conf);
+  }
+
   public void runTest(int parallelism) throws Exception {
     cluster = new MiniDFSCluster.Builder(CONF).build();
     try {
@@ -345,6 +378,27 @@ public void runTest(int parallelism) throws Exception {
       ////assertTrue(scanner.getRunStatus()); //assumes "real" FSDataset, not sim
       scanner.shutdown();
       assertFalse(scanner.getRunStatus());
+
+      // Test15: a scanner that is shut down stops reconciling after a batch
+      Configuration batchConf = new Configuration(CONF);
+      batchConf.setInt(
+          DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_RECONCILE_BATCH_SIZE_KEY, 1);
+      DataNodeMetrics metrics = cluster.getDataNodes().get(0).getMetrics();
+      DirectoryScanner stopped =
+          new DirectoryScanner(fds, batchConf, metrics);
+      stopped.shutdown();
+      long[] blockIds = { createBlockFile(), createBlockFile() };
+      stopped.reconcile();
+      int added = 0;
+      for (long id : blockIds) {
+        if (FsDatasetTestUtil.fetchReplicaInfo(fds, bpid, id) != null) {
+          added++;
+        }
+      }
+      assertEquals(1, added);
+      // the abandoned difference is not left pending
+      assertGauge("DirectoryScanPendingDifferences", 0L,
+          getMetrics(metrics.name()));
       
     } finally {
       scanner.shutdown();
@@ -17,12 +17,17 @@
  */
 package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.server.datanode.FinalizedReplica;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -107,4 +112,48 @@ public void testRemove() {
     map.add(bpid, new FinalizedReplica(block, null, null));
     assertNotNull(map.remove(bpid, block.getBlockId()));
   }
+
+  /**
+   * Add, look up and iterate over replicas from several threads at once,
+   * without holding the mutex.
+   */
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    final int numThreads = 8;
+    final int perThread = 1000;
+    final List<Throwable> errors = new ArrayList<Throwable>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < numThreads; t++) {
+      final int base = (t + 1) * perThread * 10;
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < perThread; i++) {
+              map.add(bpid, new FinalizedReplica(
+                  new Block(base + i, 0, 1), null, null));
+              assertNotNull(map.get(bpid, base + i));
+              if (i % 100 == 0) {
+                for (ReplicaInfo r : map.replicas(bpid)) {
+                  assertNotNull(r);
+                }
+              }
+            }
+          } catch (Throwable e) {
+            synchronized (errors) {
+              errors.add(e);
+            }
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(errors.toString(), 0, errors.size());
+    // the replica added in setup, plus every replica added above
+    assertEquals(1 + numThreads * perThread, map.size(bpid));
+  }
 }
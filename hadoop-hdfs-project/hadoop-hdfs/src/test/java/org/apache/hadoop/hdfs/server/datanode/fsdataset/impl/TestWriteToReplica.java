@@ -18,6 +18,10 @@
 package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
@@ -128,6 +132,55 @@ public void testWriteToTempoary() throws Exception {
     }
   }
   
+  // concurrent creations of the same block
+  @Test
+  public void testConcurrentCreateRbw() throws Exception {
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(new HdfsConfiguration()).build();
+    try {
+      cluster.waitActive();
+      DataNode dn = cluster.getDataNodes().get(0);
+      final FsDatasetImpl dataSet =
+          (FsDatasetImpl)DataNodeTestUtils.getFSDataset(dn);
+      String bpid = cluster.getNamesystem().getBlockPoolId();
+
+      for (int i = 0; i < 20; i++) {
+        final ExtendedBlock block = new ExtendedBlock(bpid, 100 + i, 1, 2001);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger created = new AtomicInteger();
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+          Thread thread = new Thread() {
+            @Override
+            public void run() {
+              try {
+                start.await();
+                dataSet.createRbw(block);
+                created.incrementAndGet();
+              } catch (ReplicaAlreadyExistsException e) {
+                // lost the race
+              } catch (Throwable e) {
+                synchronized (errors) {
+                  errors.add(e);
+                }
+              }
+            }
+          };
+          thread.start();
+          threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+          thread.join();
+        }
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+        Assert.assertEquals(1, created.get());
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
   /**
    * Generate testing environment and return a collection of blocks
    * on which to run the tests.
@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
+import org.apache.hadoop.hdfs.protocol.InvalidRequestException;
+import org.apache.hadoop.hdfs.protocol.PathBasedCacheDirective;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the path-based cache directive and cache pool requests of the
+ * NameNode.
+ */
+public class TestPathBasedCacheRequests {
+  private static final long BLOCK_SIZE = 1024;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem dfs;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    dfs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testCachePools() throws Exception {
+    dfs.addCachePool(new CachePoolInfo("pool1"));
+    dfs.addCachePool(new CachePoolInfo("pool2", 4096));
+    CachePoolInfo[] pools = dfs.listCachePools();
+    assertEquals(2, pools.length);
+    assertEquals("pool1", pools[0].getPoolName());
+    assertEquals(CachePoolInfo.LIMIT_UNLIMITED, pools[0].getLimit());
+    assertEquals("pool2", pools[1].getPoolName());
+    assertEquals(4096, pools[1].getLimit());
+
+    try {
+      dfs.addCachePool(new CachePoolInfo("pool1"));
+      fail("expected a duplicate pool to be rejected");
+    } catch (InvalidRequestException e) {
+      GenericTestUtils.assertExceptionContains("already exists", e);
+    }
+    try {
+      dfs.addCachePool(new CachePoolInfo("pool3", -1));
+      fail("expected a negative limit to be rejected");
+    } catch (InvalidRequestException e) {
+      GenericTestUtils.assertExceptionContains("negative limit", e);
+    }
+
+    dfs.removeCachePool("pool1");
+    assertEquals(1, dfs.listCachePools().length);
+    try {
+      dfs.removeCachePool("pool1");
+      fail("expected removal of an unknown pool to fail");
+    } catch (InvalidRequestException e) {
+      GenericTestUtils.assertExceptionContains("Unknown cache pool", e);
+    }
+  }
+
+  @Test
+  public void testDirectives() throws Exception {
+    dfs.addCachePool(new CachePoolInfo("pool1"));
+    dfs.addCachePool(new CachePoolInfo("pool2"));
+
+    long id1 = dfs.addPathBasedCacheDirective(
+        new PathBasedCacheDirective("/a", "pool1"));
+    long id2 = dfs.addPathBasedCacheDirective(
+        new PathBasedCacheDirective("/b", "pool2", (short)2));
+    assertEquals(2, dfs.listPathBasedCacheDirectives(null).length);
+
+    PathBasedCacheDirective[] inPool2 =
+        dfs.listPathBasedCacheDirectives("pool2");
+    assertEquals(1, inPool2.length);
+    assertEquals(id2, inPool2[0].getId());
+    assertEquals("/b", inPool2[0].getPath());
+    assertEquals(2, inPool2[0].getReplication());
+
+    try {
+      dfs.addPathBasedCacheDirective(
+          new PathBasedCacheDirective("/c", "nosuchpool"));
+      fail("expected a directive for an unknown pool to be rejected");
+    } catch (InvalidRequestException e) {
+      GenericTestUtils.assertExceptionContains("Unknown cache pool", e);
+    }
+    try {
+      dfs.addPathBasedCacheDirective(
+          new PathBasedCacheDirective("/c", "pool1", (short)0));
+      fail("expected a zero replication directive to be rejected");
+    } catch (InvalidRequestException e) {
+      GenericTestUtils.assertExceptionContains("replication", e);
+    }
+
+    dfs.removePathBasedCacheDirective(id1);
+    assertEquals(0, dfs.listPathBasedCacheDirectives("pool1").length);
+    try {
+      dfs.removePathBasedCacheDirective(id1);
+      fail("expected removal of an unknown directive to fail");
+    } catch (InvalidRequestException e) {
+      GenericTestUtils.assertExceptionContains("No cache directive", e);
+    }
+
+    // removing a pool drops its directives
+    dfs.removeCachePool("pool2");
+    assertEquals(0, dfs.listPathBasedCacheDirectives(null).length);
+  }
+
+  @Test
+  public void testRescanComputesPoolUsage() throws Exception {
+    final Path dir = new Path("/dir");
+    DFSTestUtil.createFile(dfs, new Path(dir, "f1"), 3 * BLOCK_SIZE,
+        (short)1, 0L);
+    DFSTestUtil.createFile(dfs, new Path(dir, "f2"), BLOCK_SIZE, (short)1,
+        0L);
+    dfs.addCachePool(new CachePoolInfo("pool1"));
+    dfs.addCachePool(new CachePoolInfo("small", 2 * BLOCK_SIZE));
+    dfs.addPathBasedCacheDirective(
+        new PathBasedCacheDirective(dir.toString(), "pool1"));
+    dfs.addPathBasedCacheDirective(
+        new PathBasedCacheDirective(dir.toString(), "small"));
+    // a block wanted by two directives of a pool is counted once
+    dfs.addPathBasedCacheDirective(
+        new PathBasedCacheDirective(new Path(dir, "f1").toString(), "pool1"));
+
+    cluster.getNamesystem().rescanCacheDirectives();
+    CachePoolInfo[] pools = dfs.listCachePools();
+    assertEquals("pool1", pools[0].getPoolName());
+    assertEquals(4 * BLOCK_SIZE, pools[0].getBytesNeeded());
+    assertEquals(0, pools[0].getBytesCached());
+    // blocks beyond the limit of a pool are not cached
+    assertEquals("small", pools[1].getPoolName());
+    assertEquals(2 * BLOCK_SIZE, pools[1].getBytesNeeded());
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TestByteArrayPool {
+
+  @Test
+  public void testBasics() {
+    ByteArrayPool pool = new ByteArrayPool(4);
+    byte[] a = pool.getBuffer(100);
+    assertEquals(100, a.length);
+    pool.returnBuffer(a);
+
+    // Getting a new buffer should return the same one
+    byte[] b = pool.getBuffer(100);
+    assertSame(a, b);
+
+    // Getting a new buffer before returning "b" should
+    // not return the same one
+    byte[] c = pool.getBuffer(100);
+    assertNotSame(b, c);
+
+    // Buffers of other sizes are not shared
+    pool.returnBuffer(b);
+    assertEquals(200, pool.getBuffer(200).length);
+    pool.returnBuffer(c);
+
+    assertEquals(3, pool.getNumAllocated());
+    assertEquals(1, pool.getNumReused());
+  }
+
+  @Test
+  public void testBounded() {
+    ByteArrayPool pool = new ByteArrayPool(2);
+    for (int i = 0; i < 5; i++) {
+      pool.returnBuffer(new byte[100]);
+    }
+    assertEquals(2, pool.countBuffersOfSize(100));
+  }
+
+  @Test
+  public void testDisabled() {
+    ByteArrayPool pool = new ByteArrayPool(0);
+    byte[] a = pool.getBuffer(100);
+    pool.returnBuffer(a);
+    assertEquals(0, pool.countBuffersOfSize(100));
+    assertNotSame(a, pool.getBuffer(100));
+    assertEquals(2, pool.getNumAllocated());
+  }
+}
@@ -22,9 +22,17 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -49,35 +57,54 @@
 import org.apache.hadoop.mapreduce.v2.app.launcher.ContainerLauncher;
 import org.apache.hadoop.mapreduce.v2.app.launcher.ContainerLauncherEvent;
 import org.apache.hadoop.mapreduce.v2.app.launcher.ContainerRemoteLaunchEvent;
+import org.apache.hadoop.mapreduce.v2.util.MRApps;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.yarn.YarnException;
 import org.apache.hadoop.yarn.api.ApplicationConstants;
 import org.apache.hadoop.yarn.service.AbstractService;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Runs the container task locally in a thread.
- * Since all (sub)tasks share the same local directory, they must be executed
- * sequentially in order to avoid creating/deleting the same files/dirs.
+ * Map tasks run on a bounded thread pool (see
+ * {@link MRApps#getUberMapThreads(org.apache.hadoop.conf.Configuration)});
+ * each writes its intermediate output under its own attempt directory, so
+ * concurrent maps never create the same files/dirs.  The reduce waits for
+ * all maps and runs on the event-handling thread.
  */
 public class LocalContainerLauncher extends AbstractService implements
     ContainerLauncher {
 
-  private static final File curDir = new File(".");
   private static final Log LOG = LogFactory.getLog(LocalContainerLauncher.class);
 
+  private final File curDir;
   private FileContext curFC = null;
   private final HashSet<File> localizedFiles;
+  // the AM's local dirs, where the tasks write their intermediate output
+  private final String[] localSysDirs;
   private final AppContext context;
   private final TaskUmbilicalProtocol umbilical;
   private Thread eventHandlingThread;
+  private int numMapThreads;
+  private ExecutorService mapRunner;
   private BlockingQueue<ContainerLauncherEvent> eventQueue =
       new LinkedBlockingQueue<ContainerLauncherEvent>();
 
   public LocalContainerLauncher(AppContext context,
                                 TaskUmbilicalProtocol umbilical) {
+    this(context, umbilical, new File("."), StringUtils.getTrimmedStrings(
+        System.getenv(ApplicationConstants.LOCAL_DIR_ENV)));
+  }
+
+  LocalContainerLauncher(AppContext context, TaskUmbilicalProtocol umbilical,
+      File curDir, String[] localSysDirs) {
     super(LocalContainerLauncher.class.getName());
     this.context = context;
     this.umbilical = umbilical;
+    this.curDir = curDir;
+    this.localSysDirs = localSysDirs;
         // umbilical:  MRAppMaster creates (taskAttemptListener), passes to us
         // (TODO/FIXME:  pointless to use RPC to talk to self; should create
         // LocalTaskAttemptListener or similar:  implement umbilical protocol
@@ -113,6 +140,11 @@ public LocalContainerLauncher(AppContext context,
   }
 
   public void start() {
+    numMapThreads = MRApps.getUberMapThreads(getConfig());
+    LOG.info("Running uber map tasks with " + numMapThreads + " thread(s)");
+    mapRunner = Executors.newFixedThreadPool(numMapThreads,
+        new ThreadFactoryBuilder().setNameFormat("uber-MapRunner #%d")
+            .setDaemon(true).build());
     eventHandlingThread = new Thread(new SubtaskRunner(), "uber-SubtaskRunner");
     eventHandlingThread.start();
     super.start();
@@ -120,6 +152,9 @@ public void start() {
 
   public void stop() {
     eventHandlingThread.interrupt();
+    if (mapRunner != null) {
+      mapRunner.shutdownNow();
+    }
     super.stop();
   }
 
@@ -153,11 +188,19 @@ public void handle(ContainerLauncherEvent event) {
    *     ]]
    *   - runs Task (runSubMap() or runSubReduce())
    *     - TA can safely send TA_UPDATE since in RUNNING state
+   *
+   * Maps are handed to the mapRunner pool and may run concurrently; a reduce
+   * is run on this thread once all previously submitted maps are finished.
    */
   private class SubtaskRunner implements Runnable {
 
-    private boolean doneWithMaps = false;
-    private int finishedSubMaps = 0;
+    private volatile boolean doneWithMaps = false;
+    private final AtomicInteger finishedSubMaps = new AtomicInteger();
+    private final List<Future<?>> mapFutures = new ArrayList<Future<?>>();
+    // running maps hold the read lock; relocalize() needs the write lock so
+    // that it never deletes files out from under a running map
+    private final ReentrantReadWriteLock localDirLock =
+        new ReentrantReadWriteLock();
 
     SubtaskRunner() {
     }
@@ -182,68 +225,30 @@ public void run() {
 
         if (event.getType() == EventType.CONTAINER_REMOTE_LAUNCH) {
 
-          ContainerRemoteLaunchEvent launchEv =
+          final ContainerRemoteLaunchEvent launchEv =
               (ContainerRemoteLaunchEvent)event;
-          TaskAttemptId attemptID = launchEv.getTaskAttemptID(); 
-
-          Job job = context.getAllJobs().get(attemptID.getTaskId().getJobId());
-          int numMapTasks = job.getTotalMaps();
-          int numReduceTasks = job.getTotalReduces();
-
-          // YARN (tracking) Task:
-          org.apache.hadoop.mapreduce.v2.app.job.Task ytask =
-              job.getTask(attemptID.getTaskId());
-          // classic mapred Task:
-          org.apache.hadoop.mapred.Task remoteTask = launchEv.getRemoteTask();
-
-          // after "launching," send launched event to task attempt to move
-          // state from ASSIGNED to RUNNING (also nukes "remoteTask", so must
-          // do getRemoteTask() call first)
-          
-          //There is no port number because we are not really talking to a task
-          // tracker.  The shuffle is just done through local files.  So the
-          // port number is set to -1 in this case.
-          context.getEventHandler().handle(
-              new TaskAttemptContainerLaunchedEvent(attemptID, -1));
+          TaskAttemptId attemptID = launchEv.getTaskAttemptID();
 
-          if (numMapTasks == 0) {
-            doneWithMaps = true;
-          }
-
-          try {
-            if (remoteTask.isMapOrReduce()) {
-              JobCounterUpdateEvent jce = new JobCounterUpdateEvent(attemptID.getTaskId().getJobId());
-              jce.addCounterUpdate(JobCounter.TOTAL_LAUNCHED_UBERTASKS, 1);
-              if (remoteTask.isMapTask()) {
-                jce.addCounterUpdate(JobCounter.NUM_UBER_SUBMAPS, 1);
-              } else {
-                jce.addCounterUpdate(JobCounter.NUM_UBER_SUBREDUCES, 1);
+          if (attemptID.getTaskId().getTaskType() == TaskType.MAP) {
+            mapFutures.add(mapRunner.submit(new Runnable() {
+              @Override
+              public void run() {
+                runTask(launchEv);
               }
-              context.getEventHandler().handle(jce);
+            }));
+          } else {
+            // the reduce consumes every map output, so wait for the maps
+            try {
+              waitForMaps();
+            } catch (InterruptedException e) {
+              LOG.error("Returning, interrupted : " + e);
+              return;
             }
-            runSubtask(remoteTask, ytask.getType(), attemptID, numMapTasks,
-                       (numReduceTasks > 0));
-            
-          } catch (RuntimeException re) {
-            JobCounterUpdateEvent jce = new JobCounterUpdateEvent(attemptID.getTaskId().getJobId());
-            jce.addCounterUpdate(JobCounter.NUM_FAILED_UBERTASKS, 1);
-            context.getEventHandler().handle(jce);
-            // this is our signal that the subtask failed in some way, so
-            // simulate a failed JVM/container and send a container-completed
-            // event to task attempt (i.e., move state machine from RUNNING
-            // to FAIL_CONTAINER_CLEANUP [and ultimately to FAILED])
-            context.getEventHandler().handle(new TaskAttemptEvent(attemptID,
-                TaskAttemptEventType.TA_CONTAINER_COMPLETED));
-          } catch (IOException ioe) {
-            // if umbilical itself barfs (in error-handler of runSubMap()),
-            // we're pretty much hosed, so do what YarnChild main() does
-            // (i.e., exit clumsily--but can never happen, so no worries!)
-            LOG.fatal("oopsie...  this can never happen: "
-                + StringUtils.stringifyException(ioe));
-            System.exit(-1);
+            runTask(launchEv);
           }
 
-        } else if (event.getType() == EventType.CONTAINER_REMOTE_CLEANUP) {
+        } else if (event.getType() == EventType.CONTAINER_REMOTE_CLEANUP
+            || event.getType() == EventType.CONTAINER_REMOTE_DETACH) {
 
           // no container to kill, so just send "cleaned" event to task attempt
           // to move us from SUCCESS_CONTAINER_CLEANUP to SUCCEEDED state
@@ -259,6 +264,83 @@ public void run() {
       }
     }
 
+    private void waitForMaps() throws InterruptedException {
+      for (Future<?> future : mapFutures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          // runTask() reports its own failures; nothing more to do here
+          LOG.warn("Uber map task terminated abnormally", e.getCause());
+        }
+      }
+      mapFutures.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTask(ContainerRemoteLaunchEvent launchEv) {
+      TaskAttemptId attemptID = launchEv.getTaskAttemptID();
+
+      Job job = context.getAllJobs().get(attemptID.getTaskId().getJobId());
+      int numMapTasks = job.getTotalMaps();
+      int numReduceTasks = job.getTotalReduces();
+
+      // YARN (tracking) Task:
+      org.apache.hadoop.mapreduce.v2.app.job.Task ytask =
+          job.getTask(attemptID.getTaskId());
+      // classic mapred Task:
+      org.apache.hadoop.mapred.Task remoteTask = launchEv.getRemoteTask();
+
+      // after "launching," send launched event to task attempt to move
+      // state from ASSIGNED to RUNNING (also nukes "remoteTask", so must
+      // do getRemoteTask() call first).  Maps may have waited in the
+      // mapRunner queue, so this is only sent once the task actually starts.
+
+      //There is no port number because we are not really talking to a task
+      // tracker.  The shuffle is just done through local files.  So the
+      // port number is set to -1 in this case.
+      context.getEventHandler().handle(
+          new TaskAttemptContainerLaunchedEvent(attemptID, -1));
+
+      if (numMapTasks == 0) {
+        doneWithMaps = true;
+      }
+
+      try {
+        if (remoteTask.isMapOrReduce()) {
+          JobCounterUpdateEvent jce =
+              new JobCounterUpdateEvent(attemptID.getTaskId().getJobId());
+          jce.addCounterUpdate(JobCounter.TOTAL_LAUNCHED_UBERTASKS, 1);
+          if (remoteTask.isMapTask()) {
+            jce.addCounterUpdate(JobCounter.NUM_UBER_SUBMAPS, 1);
+          } else {
+            jce.addCounterUpdate(JobCounter.NUM_UBER_SUBREDUCES, 1);
+          }
+          context.getEventHandler().handle(jce);
+        }
+        runSubtask(remoteTask, ytask.getType(), attemptID, numMapTasks,
+                   (numReduceTasks > 0));
+
+      } catch (RuntimeException re) {
+        JobCounterUpdateEvent jce =
+            new JobCounterUpdateEvent(attemptID.getTaskId().getJobId());
+        jce.addCounterUpdate(JobCounter.NUM_FAILED_UBERTASKS, 1);
+        context.getEventHandler().handle(jce);
+        // this is our signal that the subtask failed in some way, so
+        // simulate a failed JVM/container and send a container-completed
+        // event to task attempt (i.e., move state machine from RUNNING
+        // to FAIL_CONTAINER_CLEANUP [and ultimately to FAILED])
+        context.getEventHandler().handle(new TaskAttemptEvent(attemptID,
+            TaskAttemptEventType.TA_CONTAINER_COMPLETED));
+      } catch (IOException ioe) {
+        // if umbilical itself barfs (in error-handler of runSubMap()),
+        // we're pretty much hosed, so do what YarnChild main() does
+        // (i.e., exit clumsily--but can never happen, so no worries!)
+        LOG.fatal("oopsie...  this can never happen: "
+            + StringUtils.stringifyException(ioe));
+        System.exit(-1);
+      }
+    }
+
     @SuppressWarnings("deprecation")
     private void runSubtask(org.apache.hadoop.mapred.Task task,
                             final TaskType taskType,
@@ -279,8 +361,6 @@ private void runSubtask(org.apache.hadoop.mapred.Task task,
 
         // Use the AM's local dir env to generate the intermediate step 
         // output files
-        String[] localSysDirs = StringUtils.getTrimmedStrings(
-            System.getenv(ApplicationConstants.LOCAL_DIR_ENV));
         conf.setStrings(MRConfig.LOCAL_DIR, localSysDirs);
         LOG.info(MRConfig.LOCAL_DIR + " for uber task: "
             + conf.get(MRConfig.LOCAL_DIR));
@@ -302,17 +382,36 @@ private void runSubtask(org.apache.hadoop.mapred.Task task,
             throw new RuntimeException();
           }
 
+          // concurrent maps share the local dirs, so keep their spills and
+          // outputs apart under per-attempt names
+          conf.setClass(MRConfig.TASK_LOCAL_OUTPUT_CLASS,
+              YarnOutputFiles.class, MapOutputFile.class);
+          // nor can they tell their CPU, memory and GC time from the others'
+          conf.setBoolean(Task.UBER_CONCURRENT_TASK, numMapThreads > 1);
+
           MapTask map = (MapTask)task;
           map.setConf(conf);
 
-          map.run(conf, umbilical);
+          localDirLock.readLock().lock();
+          try {
+            map.run(conf, umbilical);
 
-          if (renameOutputs) {
-            renameMapOutputForReduce(conf, attemptID, map.getMapOutputFile());
+            if (renameOutputs) {
+              renameMapOutputForReduce(conf, attemptID, map.getMapOutputFile());
+            }
+          } finally {
+            localDirLock.readLock().unlock();
+          }
+          // if other maps are still running, whichever finishes last cleans up
+          if (localDirLock.writeLock().tryLock()) {
+            try {
+              relocalize();
+            } finally {
+              localDirLock.writeLock().unlock();
+            }
           }
-          relocalize();
 
-          if (++finishedSubMaps == numMapTasks) {
+          if (finishedSubMaps.incrementAndGet() == numMapTasks) {
             doneWithMaps = true;
           }
 
@@ -381,9 +480,11 @@ private void runSubtask(org.apache.hadoop.mapred.Task task,
      * and all sub-MapTasks create the same filename ("file.out").  Rename that
      * to something unique (e.g., "map_0.out") to avoid collisions.
      *
-     * Longer-term, we'll modify [something] to use TaskAttemptID-based
-     * filenames instead of "file.out". (All of this is entirely internal,
-     * so there are no particular compatibility issues.)
+     * The maps themselves already write under TaskAttemptID-based names
+     * (see {@link YarnOutputFiles}), so only the destination needs to follow
+     * the {@link MROutputFiles} layout the local reduce reads from.  (All of
+     * this is entirely internal, so there are no particular compatibility
+     * issues.)
      */
     @SuppressWarnings("deprecation")
     private void renameMapOutputForReduce(JobConf conf, TaskAttemptId mapId,
@@ -393,7 +494,9 @@ private void renameMapOutputForReduce(JobConf conf, TaskAttemptId mapId,
       // move map output to reduce input
       Path mapOut = subMapOutputFile.getOutputFile();
       FileStatus mStatus = localFs.getFileStatus(mapOut);      
-      Path reduceIn = subMapOutputFile.getInputFileForWrite(
+      MapOutputFile reduceInputFile =
+          ReflectionUtils.newInstance(MROutputFiles.class, conf);
+      Path reduceIn = reduceInputFile.getInputFileForWrite(
           TypeConverter.fromYarn(mapId).getTaskID(), mStatus.getLen());
       if (LOG.isDebugEnabled()) {
         LOG.debug("Renaming map output file for task attempt "
@@ -426,7 +529,7 @@ private void relocalize() {
           try {
             if (curFC != null) {
               // this is recursive, unlike File delete():
-              deleted = curFC.delete(new Path(curLocalFiles[j].getName()),true);
+              deleted = curFC.delete(new Path(curLocalFiles[j].toURI()), true);
             }
           } catch (IOException e) {
             deleted = false;
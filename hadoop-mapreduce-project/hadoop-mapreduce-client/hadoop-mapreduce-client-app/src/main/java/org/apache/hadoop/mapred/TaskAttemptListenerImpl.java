@@ -47,6 +47,8 @@
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEventType;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptStatusUpdateEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptStatusUpdateEvent.TaskAttemptStatus;
+import org.apache.hadoop.mapreduce.v2.app.rm.ContainerAllocator;
+import org.apache.hadoop.mapreduce.v2.app.rm.ContainerAllocatorEvent;
 import org.apache.hadoop.mapreduce.v2.app.rm.RMHeartbeatHandler;
 import org.apache.hadoop.mapreduce.v2.app.security.authorize.MRAMPolicyProvider;
 import org.apache.hadoop.net.NetUtils;
@@ -82,6 +84,19 @@ public class TaskAttemptListenerImpl extends CompositeService
       = new ConcurrentHashMap<WrappedJvmID, org.apache.hadoop.mapred.Task>();
   private Set<WrappedJvmID> launchedJVMs = Collections
       .newSetFromMap(new ConcurrentHashMap<WrappedJvmID, Boolean>()); 
+  // JVMs running a task, which may ask for another one before the AM is
+  // done with the attempt
+  private Set<WrappedJvmID> runningJVMs = Collections
+      .newSetFromMap(new ConcurrentHashMap<WrappedJvmID, Boolean>());
+  // JVMs whose attempt succeeded, with that attempt
+  private ConcurrentMap<WrappedJvmID,
+      org.apache.hadoop.mapreduce.v2.api.records.TaskAttemptId> reusableJVMs =
+      new ConcurrentHashMap<WrappedJvmID,
+          org.apache.hadoop.mapreduce.v2.api.records.TaskAttemptId>();
+  // JVMs that asked for another task and wait for the allocator's answer
+  private Set<WrappedJvmID> idleJVMs = Collections
+      .newSetFromMap(new ConcurrentHashMap<WrappedJvmID, Boolean>());
+  private boolean reuseJVMs;
   
   private JobTokenSecretManager jobTokenSecretManager = null;
   
@@ -99,6 +114,7 @@ public void init(Configuration conf) {
    registerHeartbeatHandler(conf);
    commitWindowMs = conf.getLong(MRJobConfig.MR_AM_COMMIT_WINDOW_MS,
        MRJobConfig.DEFAULT_MR_AM_COMMIT_WINDOW_MS);
+   reuseJVMs = new JobConf(conf).getNumTasksToExecutePerJvm() != 1;
    super.init(conf);
   }
 
@@ -413,11 +429,28 @@ public JvmTask getTask(JvmContext context) throws IOException {
     WrappedJvmID wJvmID = new WrappedJvmID(jvmId.getJobId(), jvmId.isMap,
         jvmId.getId());
 
-    // Try to look up the task. We remove it directly as we don't give
-    // multiple tasks to a JVM
+    // Try to look up the task. We remove it directly as a JVM asks for its
+    // next task only once it is done with the current one
     if (!jvmIDToActiveAttemptMap.containsKey(wJvmID)) {
-      LOG.info("JVM with ID: " + jvmId + " is invalid and will be killed.");
-      jvmTask = TASK_FOR_INVALID_JVM;
+      org.apache.hadoop.mapreduce.v2.api.records.TaskAttemptId lastAttemptID =
+          reusableJVMs.remove(wJvmID);
+      if (lastAttemptID != null) {
+        // The JVM finished its task and may run another one. Offer its
+        // container to the allocator, which either assigns it the next task
+        // or releases it.
+        LOG.info("JVM with ID: " + jvmId + " finished " + lastAttemptID
+            + " and is offered for reuse. Given null task");
+        idleJVMs.add(wJvmID);
+        this.context.getEventHandler().handle(new ContainerAllocatorEvent(
+            lastAttemptID, ContainerAllocator.EventType.CONTAINER_REUSABLE));
+        jvmTask = null;
+      } else if (runningJVMs.contains(wJvmID)
+          || idleJVMs.contains(wJvmID)) {
+        jvmTask = null;
+      } else {
+        LOG.info("JVM with ID: " + jvmId + " is invalid and will be killed.");
+        jvmTask = TASK_FOR_INVALID_JVM;
+      }
     } else {
       if (!launchedJVMs.contains(wJvmID)) {
         jvmTask = null;
@@ -430,6 +463,9 @@ public JvmTask getTask(JvmContext context) throws IOException {
         org.apache.hadoop.mapred.Task task =
             jvmIDToActiveAttemptMap.remove(wJvmID);
         launchedJVMs.remove(wJvmID);
+        if (reuseJVMs) {
+          runningJVMs.add(wJvmID);
+        }
         LOG.info("JVM with ID: " + jvmId + " given task: " + task.getTaskID());
         jvmTask = new JvmTask(task, false);
       }
@@ -445,6 +481,7 @@ public void registerPendingTask(
 
     // A JVM not present in this map is an illegal task/JVM.
     jvmIDToActiveAttemptMap.put(jvmID, task);
+    idleJVMs.remove(jvmID);
   }
 
   @Override
@@ -474,11 +511,24 @@ public void unregister(
     // remove the mappings if not already removed
     launchedJVMs.remove(jvmID);
     jvmIDToActiveAttemptMap.remove(jvmID);
+    runningJVMs.remove(jvmID);
 
     //unregister this attempt
     taskHeartbeatHandler.unregister(attemptID);
   }
 
+  @Override
+  public void registerReusableJvm(
+      org.apache.hadoop.mapreduce.v2.api.records.TaskAttemptId attemptID,
+      WrappedJvmID jvmID) {
+    // The attempt succeeded, and its container is left running. When the JVM
+    // asks for its next task the container is offered to the allocator.
+    // This happens before unregister() drops the JVM from runningJVMs, and
+    // getTask() checks reusableJVMs first, so it always finds the JVM in one
+    // of them.
+    reusableJVMs.put(jvmID, attemptID);
+  }
+
   @Override
   public ProtocolSignature getProtocolSignature(String protocol,
       long clientVersion, int clientMethodsHash) throws IOException {
@@ -24,6 +24,10 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.security.PrivilegedExceptionAction;
@@ -120,45 +124,67 @@ public TaskUmbilicalProtocol run() throws Exception {
     Task task = null;
     UserGroupInformation childUGI = null;
 
+    // Load the job configuration before the first task overwrites job.xml
+    // with its localized copy, the tasks of a reused JVM all start from it.
+    final JobConf jobConf = new JobConf(MRJobConfig.JOB_CONF_FILE);
+    int numTasksToRun = jobConf.getNumTasksToExecutePerJvm();
+    float maxHeapUsage = jobConf.getFloat(
+        MRJobConfig.JVM_REUSE_MAX_HEAP_USAGE,
+        MRJobConfig.DEFAULT_JVM_REUSE_MAX_HEAP_USAGE);
+
     try {
-      int idleLoopCount = 0;
-      JvmTask myTask = null;;
-      // poll for new task
-      for (int idle = 0; null == myTask; ++idle) {
-        long sleepTimeMilliSecs = Math.min(idle * 500, 1500);
-        LOG.info("Sleeping for " + sleepTimeMilliSecs
-            + "ms before retrying again. Got null now.");
-        MILLISECONDS.sleep(sleepTimeMilliSecs);
-        myTask = umbilical.getTask(context);
-      }
-      if (myTask.shouldDie()) {
-        return;
-      }
+      for (int numTasksRun = 0;
+          numTasksToRun < 0 || numTasksRun < numTasksToRun; ++numTasksRun) {
+        if (numTasksRun > 0 && isHeapExhausted(maxHeapUsage)) {
+          LOG.info("Not asking for another task after " + numTasksRun
+              + " tasks, heap usage after GC is above " + maxHeapUsage);
+          break;
+        }
 
-      task = myTask.getTask();
-      YarnChild.taskid = task.getTaskID();
-
-      // Create the job-conf and set credentials
-      final JobConf job = configureTask(task, credentials, jt);
-
-      // Initiate Java VM metrics
-      JvmMetrics.initSingleton(jvmId.toString(), job.getSessionId());
-      childUGI = UserGroupInformation.createRemoteUser(System
-          .getenv(ApplicationConstants.Environment.USER.toString()));
-      // Add tokens to new user so that it may execute its task correctly.
-      childUGI.addCredentials(credentials);
-
-      // Create a final reference to the task for the doAs block
-      final Task taskFinal = task;
-      childUGI.doAs(new PrivilegedExceptionAction<Object>() {
-        @Override
-        public Object run() throws Exception {
-          // use job-specified working directory
-          FileSystem.get(job).setWorkingDirectory(job.getWorkingDirectory());
-          taskFinal.run(job, umbilical); // run the task
-          return null;
+        JvmTask myTask = null;
+        // poll for new task
+        for (int idle = 0; null == myTask; ++idle) {
+          long sleepTimeMilliSecs = Math.min(idle * 500, 1500);
+          LOG.info("Sleeping for " + sleepTimeMilliSecs
+              + "ms before retrying again. Got null now.");
+          MILLISECONDS.sleep(sleepTimeMilliSecs);
+          myTask = umbilical.getTask(context);
+        }
+        if (myTask.shouldDie()) {
+          return;
         }
-      });
+
+        task = myTask.getTask();
+        YarnChild.taskid = task.getTaskID();
+
+        // Create the job-conf and set credentials
+        final JobConf job = configureTask(task, jobConf, credentials, jt);
+
+        if (childUGI == null) {
+          // Initiate Java VM metrics
+          JvmMetrics.initSingleton(jvmId.toString(), job.getSessionId());
+          // The same user runs all the tasks of the JVM, so that they share
+          // its cached FileSystems.
+          childUGI = UserGroupInformation.createRemoteUser(System
+              .getenv(ApplicationConstants.Environment.USER.toString()));
+          // Add tokens to new user so that it may execute its task correctly.
+          childUGI.addCredentials(credentials);
+        }
+
+        // Create a final reference to the task for the doAs block
+        final Task taskFinal = task;
+        childUGI.doAs(new PrivilegedExceptionAction<Object>() {
+          @Override
+          public Object run() throws Exception {
+            // use job-specified working directory
+            FileSystem.get(job).setWorkingDirectory(job.getWorkingDirectory());
+            taskFinal.run(job, umbilical); // run the task
+            return null;
+          }
+        });
+        task = null;
+        YarnChild.taskid = null;
+      }
     } catch (FSError e) {
       LOG.fatal("FSError from child", e);
       umbilical.fsError(taskid, e.getMessage());
@@ -250,9 +276,30 @@ private static void configureLocalDirs(Task task, JobConf job) throws IOExceptio
     job.set(MRJobConfig.JOB_LOCAL_DIR,workDir.toString());
   }
 
-  private static JobConf configureTask(Task task, Credentials credentials,
-      Token<JobTokenIdentifier> jt) throws IOException {
-    final JobConf job = new JobConf(MRJobConfig.JOB_CONF_FILE);
+  /**
+   * Whether the heap retained after the last garbage collections is above
+   * the given fraction of the maximum heap, in which case the JVM is not
+   * given another task. The usage right after a collection is used, as the
+   * current usage also counts garbage not collected yet.
+   */
+  private static boolean isHeapExhausted(float maxHeapUsage) {
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() != MemoryType.HEAP || !pool.isValid()) {
+        continue;
+      }
+      MemoryUsage usage = pool.getCollectionUsage();
+      if (usage != null) {
+        used += usage.getUsed();
+      }
+    }
+    return used > maxHeapUsage * Runtime.getRuntime().maxMemory();
+  }
+
+  private static JobConf configureTask(Task task, JobConf jobConf,
+      Credentials credentials, Token<JobTokenIdentifier> jt)
+      throws IOException {
+    final JobConf job = new JobConf(jobConf);
     job.setCredentials(credentials);
 
     // set job classloader if configured
@@ -859,7 +859,7 @@ public synchronized void start() {
         this.containerLauncher = new LocalContainerLauncher(context,
             (TaskUmbilicalProtocol) taskAttemptListener);
       } else {
-        this.containerLauncher = new ContainerLauncherImpl(context);
+        this.containerLauncher = new ContainerLauncherImpl(context, metrics);
       }
       ((Service)this.containerLauncher).init(getConfig());
       ((Service)this.containerLauncher).start();
@@ -57,4 +57,14 @@ public interface TaskAttemptListener {
    */
   void unregister(TaskAttemptId attemptID, WrappedJvmID jvmID);
 
+  /**
+   * Register the JVM of an attempt that succeeded as one that can be given
+   * another task of the job. This should be called before the attempt is
+   * unregistered, so that the JVM is never unknown when it asks for its
+   * next task, and only when its container is left running.
+   * @param attemptID the ID of the attempt that succeeded.
+   * @param jvmID the ID of the JVM for that attempt.
+   */
+  void registerReusableJvm(TaskAttemptId attemptID, WrappedJvmID jvmID);
+
 }
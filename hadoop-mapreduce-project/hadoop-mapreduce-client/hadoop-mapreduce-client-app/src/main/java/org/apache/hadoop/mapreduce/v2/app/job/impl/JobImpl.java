@@ -1102,7 +1102,8 @@ private void makeUberDecision(long dataInputLength) {
     if (isUber) {
       LOG.info("Uberizing job " + jobId + ": " + numMapTasks + "m+"
           + numReduceTasks + "r tasks (" + dataInputLength
-          + " input bytes) will run sequentially on single node.");
+          + " input bytes) will run on single node, "
+          + MRApps.getUberMapThreads(conf) + " maps at a time.");
 
       // make sure reduces are scheduled only after all map are completed
       conf.setFloat(MRJobConfig.COMPLETED_MAPS_FOR_REDUCE_SLOWSTART,
@@ -1731,6 +1731,18 @@ private static class CleanupContainerTransition implements
     @Override
     public void transition(TaskAttemptImpl taskAttempt, 
         TaskAttemptEvent event) {
+      // the container of an attempt that succeeded is left running when its
+      // JVM may be given another task. The JVM asks for its next task right
+      // after it is done, so it must be known as reusable before it is
+      // unregistered, or it would be told to exit in between.
+      ContainerLauncher.EventType cleanupType =
+          ContainerLauncher.EventType.CONTAINER_REMOTE_CLEANUP;
+      if (event.getType() == TaskAttemptEventType.TA_DONE
+          && taskAttempt.conf.getNumTasksToExecutePerJvm() != 1) {
+        taskAttempt.taskAttemptListener.registerReusableJvm(
+            taskAttempt.attemptId, taskAttempt.jvmID);
+        cleanupType = ContainerLauncher.EventType.CONTAINER_REMOTE_DETACH;
+      }
       // unregister it to TaskAttemptListener so that it stops listening
       // for it
       taskAttempt.taskAttemptListener.unregister(
@@ -1741,8 +1753,7 @@ public void transition(TaskAttemptImpl taskAttempt,
       taskAttempt.eventHandler.handle(new ContainerLauncherEvent(
           taskAttempt.attemptId, 
           taskAttempt.containerID, taskAttempt.containerMgrAddress,
-          taskAttempt.containerToken,
-          ContainerLauncher.EventType.CONTAINER_REMOTE_CLEANUP));
+          taskAttempt.containerToken, cleanupType));
     }
   }
 
@@ -23,6 +23,9 @@
 import java.nio.ByteBuffer;
 import java.security.PrivilegedAction;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -44,10 +47,12 @@
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptDiagnosticsUpdateEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEventType;
+import org.apache.hadoop.mapreduce.v2.app.metrics.MRAppMetrics;
 import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Time;
 import org.apache.hadoop.yarn.YarnException;
 import org.apache.hadoop.yarn.api.ContainerManager;
 import org.apache.hadoop.yarn.api.protocolrecords.StartContainerRequest;
@@ -75,6 +80,7 @@ public class ContainerLauncherImpl extends AbstractService implements
   private ConcurrentHashMap<ContainerId, Container> containers = 
     new ConcurrentHashMap<ContainerId, Container>(); 
   private AppContext context;
+  private final MRAppMetrics metrics;
   protected ThreadPoolExecutor launcherPool;
   protected static final int INITIAL_POOL_SIZE = 10;
   private int limitOnPoolSize;
@@ -84,6 +90,21 @@ public class ContainerLauncherImpl extends AbstractService implements
   YarnRPC rpc;
   private final AtomicBoolean stopped;
 
+  // NodeManager address -> proxy shared by all containers on that node, in
+  // least-recently-used order; empty when proxies are not cached
+  private final LinkedHashMap<String, CachedCMProxy> cmProxies =
+      new LinkedHashMap<String, CachedCMProxy>(16, 0.75f, true);
+  private int maxCachedProxies;
+
+  private static class CachedCMProxy {
+    final ContainerManager proxy;
+    int refCount = 0;
+
+    CachedCMProxy(ContainerManager proxy) {
+      this.proxy = proxy;
+    }
+  }
+
   private Container getContainer(ContainerLauncherEvent event) {
     ContainerId id = event.getContainerID();
     Container c = containers.get(id);
@@ -106,7 +127,7 @@ private void removeContainerIfDone(ContainerId id) {
   }
   
   private static enum ContainerState {
-    PREP, FAILED, RUNNING, DONE, KILLED_BEFORE_LAUNCH
+    PREP, FAILED, RUNNING, REUSABLE, DONE, KILLED_BEFORE_LAUNCH
   }
 
   private class Container {
@@ -116,6 +137,7 @@ private class Container {
     private ContainerId containerID;
     final private String containerMgrAddress;
     private ContainerToken containerToken;
+    private int shufflePort = -1;
     
     public Container(TaskAttemptId taId, ContainerId containerID,
         String containerMgrAddress, ContainerToken containerToken) {
@@ -131,7 +153,20 @@ public synchronized boolean isCompletelyDone() {
     }
     
     @SuppressWarnings("unchecked")
-    public synchronized void launch(ContainerRemoteLaunchEvent event) {
+    public synchronized void launch(ContainerRemoteLaunchEvent event,
+        long launchStartTime) {
+      if (this.state == ContainerState.RUNNING
+          || this.state == ContainerState.REUSABLE) {
+        // the JVM of the container is already up and runs the next task of
+        // the job, no need to start anything on the NodeManager
+        this.taskAttemptID = event.getTaskAttemptID();
+        LOG.info("Reusing " + containerID + " for " + taskAttemptID);
+        context.getEventHandler().handle(
+            new TaskAttemptContainerLaunchedEvent(taskAttemptID, shufflePort));
+        this.state = ContainerState.RUNNING;
+        return;
+      }
+
       LOG.info("Launching " + taskAttemptID);
       if(this.state == ContainerState.KILLED_BEFORE_LAUNCH) {
         state = ContainerState.DONE;
@@ -143,7 +178,7 @@ public synchronized void launch(ContainerRemoteLaunchEvent event) {
       ContainerManager proxy = null;
       try {
 
-        proxy = getCMProxy(containerID, containerMgrAddress,
+        proxy = acquireCMProxy(containerID, containerMgrAddress,
             containerToken);
 
         // Construct the actual Container
@@ -175,15 +210,22 @@ public synchronized void launch(ContainerRemoteLaunchEvent event) {
         // it from ASSIGNED to RUNNING state
         context.getEventHandler().handle(
             new TaskAttemptContainerLaunchedEvent(taskAttemptID, port));
+        this.shufflePort = port;
         this.state = ContainerState.RUNNING;
+        if (metrics != null) {
+          metrics.launchedContainer(Time.monotonicNow() - launchStartTime);
+        }
       } catch (Throwable t) {
         String message = "Container launch failed for " + containerID + " : "
             + StringUtils.stringifyException(t);
         this.state = ContainerState.FAILED;
+        if (metrics != null) {
+          metrics.failedContainerLaunch();
+        }
         sendContainerLaunchFailedMsg(taskAttemptID, message);
       } finally {
         if (proxy != null) {
-          ContainerLauncherImpl.this.rpc.stopProxy(proxy, getConfig());
+          releaseCMProxy(containerMgrAddress, proxy);
         }
       }
     }
@@ -193,12 +235,16 @@ public synchronized void kill() {
 
       if(this.state == ContainerState.PREP) {
         this.state = ContainerState.KILLED_BEFORE_LAUNCH;
+      } else if (this.state == ContainerState.REUSABLE) {
+        // not running an attempt, the JVM either exits by itself or the
+        // allocator releases the container
+        this.state = ContainerState.DONE;
       } else if (!isCompletelyDone()) {
         LOG.info("KILLING " + taskAttemptID);
 
         ContainerManager proxy = null;
         try {
-          proxy = getCMProxy(this.containerID, this.containerMgrAddress,
+          proxy = acquireCMProxy(this.containerID, this.containerMgrAddress,
               this.containerToken);
 
             // kill the remote container if already launched
@@ -218,7 +264,7 @@ public synchronized void kill() {
           LOG.warn(message);
         } finally {
           if (proxy != null) {
-            ContainerLauncherImpl.this.rpc.stopProxy(proxy, getConfig());
+            releaseCMProxy(this.containerMgrAddress, proxy);
           }
         }
         this.state = ContainerState.DONE;
@@ -228,23 +274,61 @@ public synchronized void kill() {
           new TaskAttemptEvent(this.taskAttemptID,
               TaskAttemptEventType.TA_CONTAINER_CLEANED));
     }
+
+    /**
+     * Finish with an attempt that succeeded but leave the container running,
+     * so that its JVM can be given another task.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void detach(TaskAttemptId attemptID) {
+      if (this.state != ContainerState.RUNNING
+          && this.state != ContainerState.REUSABLE) {
+        kill();
+        return;
+      }
+      // the container may already have been given to the next attempt
+      if (attemptID.equals(this.taskAttemptID)) {
+        LOG.info("Detaching " + taskAttemptID + " from " + containerID);
+        this.state = ContainerState.REUSABLE;
+      }
+      context.getEventHandler().handle(
+          new TaskAttemptEvent(attemptID,
+              TaskAttemptEventType.TA_CONTAINER_CLEANED));
+    }
   }
 
   // To track numNodes.
   Set<String> allNodes = new HashSet<String>();
 
   public ContainerLauncherImpl(AppContext context) {
+    this(context, null);
+  }
+
+  public ContainerLauncherImpl(AppContext context, MRAppMetrics metrics) {
     super(ContainerLauncherImpl.class.getName());
     this.context = context;
+    this.metrics = metrics;
     this.stopped = new AtomicBoolean(false);
   }
 
   @Override
   public synchronized void init(Configuration config) {
     Configuration conf = new Configuration(config);
-    conf.setInt(
-        CommonConfigurationKeysPublic.IPC_CLIENT_CONNECTION_MAXIDLETIME_KEY,
-        0);
+    // With security enabled a connection authenticates as the single
+    // container whose token it carries, so it cannot be shared by the other
+    // containers of the node, and proxies are not cached.
+    this.maxCachedProxies = UserGroupInformation.isSecurityEnabled() ? 0
+        : conf.getInt(MRJobConfig.MR_AM_CONTAINERLAUNCHER_PROXY_CACHE_SIZE,
+            MRJobConfig.DEFAULT_MR_AM_CONTAINERLAUNCHER_PROXY_CACHE_SIZE);
+    if (this.maxCachedProxies > 0) {
+      LOG.info("Caching up to " + this.maxCachedProxies
+          + " NodeManager proxies");
+    } else {
+      // every call gets its own connection, close it as soon as it is done
+      conf.setInt(
+          CommonConfigurationKeysPublic.IPC_CLIENT_CONNECTION_MAXIDLETIME_KEY,
+          0);
+    }
     this.limitOnPoolSize = conf.getInt(
         MRJobConfig.MR_AM_CONTAINERLAUNCHER_THREAD_COUNT_LIMIT,
         MRJobConfig.DEFAULT_MR_AM_CONTAINERLAUNCHER_THREAD_COUNT_LIMIT);
@@ -306,9 +390,6 @@ public void run() {
           // the events from the queue are handled in parallel
           // using a thread pool
           launcherPool.execute(createEventProcessor(event));
-
-          // TODO: Group launching of multiple containers to a single
-          // NodeManager into a single connection
         }
       }
     };
@@ -334,6 +415,12 @@ public void stop() {
     shutdownAllContainers();
     eventHandlingThread.interrupt();
     launcherPool.shutdownNow();
+    synchronized (cmProxies) {
+      for (CachedCMProxy cached : cmProxies.values()) {
+        rpc.stopProxy(cached.proxy, getConfig());
+      }
+      cmProxies.clear();
+    }
     super.stop();
   }
 
@@ -368,12 +455,70 @@ public ContainerManager run() {
     return proxy;
   }
 
+  /**
+   * Get a proxy to the given NodeManager, shared with other containers on the
+   * same node when proxies are cached, which they are only when security is
+   * disabled. Must be given back through
+   * {@link #releaseCMProxy(String, ContainerManager)}.
+   */
+  private ContainerManager acquireCMProxy(ContainerId containerID,
+      String containerManagerBindAddr, ContainerToken containerToken)
+      throws IOException {
+    if (maxCachedProxies <= 0) {
+      return getCMProxy(containerID, containerManagerBindAddr,
+          containerToken);
+    }
+    synchronized (cmProxies) {
+      CachedCMProxy cached = cmProxies.get(containerManagerBindAddr);
+      if (cached == null) {
+        cached = new CachedCMProxy(getCMProxy(containerID,
+            containerManagerBindAddr, containerToken));
+        cmProxies.put(containerManagerBindAddr, cached);
+      }
+      cached.refCount++;
+      evictIdleCMProxies();
+      return cached.proxy;
+    }
+  }
+
+  private void releaseCMProxy(String containerManagerBindAddr,
+      ContainerManager proxy) {
+    synchronized (cmProxies) {
+      CachedCMProxy cached = cmProxies.get(containerManagerBindAddr);
+      if (cached != null && cached.proxy == proxy) {
+        cached.refCount--;
+        evictIdleCMProxies();
+        return;
+      }
+    }
+    rpc.stopProxy(proxy, getConfig());
+  }
+
+  /**
+   * Close least recently used proxies that are not in use until the cache is
+   * within its limit. Proxies still in use are kept, so the cache may
+   * temporarily hold more.
+   */
+  private void evictIdleCMProxies() {
+    Iterator<Map.Entry<String, CachedCMProxy>> it =
+        cmProxies.entrySet().iterator();
+    while (cmProxies.size() > maxCachedProxies && it.hasNext()) {
+      CachedCMProxy cached = it.next().getValue();
+      if (cached.refCount == 0) {
+        it.remove();
+        rpc.stopProxy(cached.proxy, getConfig());
+      }
+    }
+  }
+
 
   /**
    * Setup and start the container on remote nodemanager.
    */
   class EventProcessor implements Runnable {
     private ContainerLauncherEvent event;
+    // when the request was handed to the pool, for launch latency
+    private final long createTime = Time.monotonicNow();
 
     EventProcessor(ContainerLauncherEvent event) {
       this.event = event;
@@ -383,8 +528,6 @@ class EventProcessor implements Runnable {
     public void run() {
       LOG.info("Processing the event " + event.toString());
 
-      // Load ContainerManager tokens before creating a connection.
-      // TODO: Do it only once per NodeManager.
       ContainerId containerID = event.getContainerID();
 
       Container c = getContainer(event);
@@ -393,12 +536,16 @@ public void run() {
       case CONTAINER_REMOTE_LAUNCH:
         ContainerRemoteLaunchEvent launchEvent
             = (ContainerRemoteLaunchEvent) event;
-        c.launch(launchEvent);
+        c.launch(launchEvent, createTime);
         break;
 
       case CONTAINER_REMOTE_CLEANUP:
         c.kill();
         break;
+
+      case CONTAINER_REMOTE_DETACH:
+        c.detach(event.getTaskAttemptID());
+        break;
       }
       removeContainerIfDone(containerID);
     }
@@ -24,11 +24,19 @@
 import org.apache.hadoop.metrics2.annotation.Metrics;
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.lib.MutableCounterInt;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableQuantiles;
+import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
 
 @Metrics(about="MR App Metrics", context="mapred")
 public class MRAppMetrics {
+  // rollover interval of the container launch latency percentiles, in seconds
+  static final int LAUNCH_LATENCY_INTERVAL = 60;
+
+  final MetricsRegistry registry = new MetricsRegistry("MRAppMetrics");
+
   @Metric MutableCounterInt jobsSubmitted;
   @Metric MutableCounterInt jobsCompleted;
   @Metric MutableCounterInt jobsFailed;
@@ -49,7 +57,18 @@ public class MRAppMetrics {
   @Metric MutableCounterInt reducesKilled;
   @Metric MutableGaugeInt reducesRunning;
   @Metric MutableGaugeInt reducesWaiting;
-  
+
+  @Metric("Container launch latency") MutableRate containerLaunches;
+  @Metric MutableCounterInt containerLaunchesFailed;
+  final MutableQuantiles containerLaunchLatency;
+
+  MRAppMetrics() {
+    containerLaunchLatency = registry.newQuantiles(
+        "containerLaunchLatency" + LAUNCH_LATENCY_INTERVAL + "s",
+        "Container launch latency", "ops", "latency",
+        LAUNCH_LATENCY_INTERVAL);
+  }
+
   public static MRAppMetrics create() {
     return create(DefaultMetricsSystem.instance());
   }
@@ -170,6 +189,19 @@ public void waitingTask(Task task) {
     }
   }
 
+  /**
+   * Record a container launch, from the time the launcher picked up the
+   * request until the NodeManager started the container.
+   */
+  public void launchedContainer(long latencyMillis) {
+    containerLaunches.add(latencyMillis);
+    containerLaunchLatency.add(latencyMillis);
+  }
+
+  public void failedContainerLaunch() {
+    containerLaunchesFailed.incr();
+  }
+
   public void endWaitingTask(Task task) {
     switch (task.getType()) {
       case MAP:
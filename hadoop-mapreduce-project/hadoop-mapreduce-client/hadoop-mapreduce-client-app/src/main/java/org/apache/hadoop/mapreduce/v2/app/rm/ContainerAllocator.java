@@ -26,7 +26,8 @@ enum EventType {
 
     CONTAINER_REQ,
     CONTAINER_DEALLOCATE,
-    CONTAINER_FAILED
+    CONTAINER_FAILED,
+    CONTAINER_REUSABLE
   }
 
 }
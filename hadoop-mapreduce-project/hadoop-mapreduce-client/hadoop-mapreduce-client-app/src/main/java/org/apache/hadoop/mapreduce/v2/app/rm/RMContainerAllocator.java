@@ -128,6 +128,10 @@ added to the pending and are ramped up (added to scheduled) based
   //holds scheduled requests to be fulfilled by RM
   private final ScheduledRequests scheduledRequests = new ScheduledRequests();
   
+  //containers of finished JVMs that were released as no task could reuse them
+  private final Set<ContainerId> releasedReusableContainers =
+    new HashSet<ContainerId>();
+
   private int containersAllocated = 0;
   private int containersReleased = 0;
   private int hostLocalAssigned = 0;
@@ -369,6 +373,16 @@ protected synchronized void handleEvent(ContainerAllocatorEvent event) {
       ContainerFailedEvent fEv = (ContainerFailedEvent) event;
       String host = getHost(fEv.getContMgrAddress());
       containerFailedOnHost(host);
+    } else if (
+        event.getType() == ContainerAllocator.EventType.CONTAINER_REUSABLE) {
+      TaskAttemptId aId = event.getAttemptID();
+      Container container = assignedRequests.getContainer(aId);
+      if (container == null) {
+        LOG.info("Container of " + aId + " already completed, not reusing it");
+      } else {
+        assignedRequests.remove(aId);
+        scheduledRequests.reuse(container);
+      }
     }
   }
 
@@ -602,6 +616,11 @@ private List<Container> getResources() throws Exception {
     for (ContainerStatus cont : finishedContainers) {
       LOG.info("Received completed container " + cont.getContainerId());
       TaskAttemptId attemptID = assignedRequests.get(cont.getContainerId());
+      if (attemptID == null
+          && releasedReusableContainers.remove(cont.getContainerId())) {
+        // an idle reused JVM we had no task for
+        continue;
+      }
       if (attemptID == null) {
         LOG.error("Container complete event for unknown container id "
             + cont.getContainerId());
@@ -893,6 +912,35 @@ private void containerNotAssigned(Container allocated) {
       containersReleased++;
       release(allocated.getId());      
     }
+
+    /**
+     * Assign a container whose JVM finished its task to the next scheduled
+     * task of the same type, or release it if there is none.
+     */
+    private void reuse(Container container) {
+      ContainerRequest assigned = null;
+      String host = container.getNodeId().getHost();
+      if (!isNodeBlacklisted(host)) {
+        if (PRIORITY_REDUCE.equals(container.getPriority())) {
+          assigned = assignToReduce(container);
+        } else {
+          assigned = assignToFailedMap(container);
+          if (assigned == null) {
+            assigned = assignToMap(container);
+          }
+        }
+      }
+      if (assigned != null) {
+        LOG.info("Reusing container " + container.getId() + " for "
+            + assigned.attemptID);
+        containerAssigned(container, assigned);
+      } else {
+        LOG.info("No task to reuse container " + container.getId()
+            + " for, releasing it");
+        releasedReusableContainers.add(container.getId());
+        containerNotAssigned(container);
+      }
+    }
     
     private ContainerRequest assignWithoutLocality(Container allocated) {
       ContainerRequest assigned = null;
@@ -993,6 +1041,44 @@ private ContainerRequest assignToReduce(Container allocated) {
       return assigned;
     }
     
+    @SuppressWarnings("unchecked")
+    private ContainerRequest assignToMap(Container allocated) {
+      // prefer a map with data on the node, then on the rack
+      String host = allocated.getNodeId().getHost();
+      ContainerRequest assigned = removeMap(mapsHostMapping.get(host));
+      JobCounter locality = JobCounter.DATA_LOCAL_MAPS;
+      if (assigned != null) {
+        hostLocalAssigned++;
+      } else {
+        String rack = RackResolver.resolve(host).getNetworkLocation();
+        assigned = removeMap(mapsRackMapping.get(rack));
+        locality = JobCounter.RACK_LOCAL_MAPS;
+        if (assigned != null) {
+          rackLocalAssigned++;
+        } else if (maps.size() > 0) {
+          assigned = maps.remove(maps.keySet().iterator().next());
+          locality = JobCounter.OTHER_LOCAL_MAPS;
+        }
+      }
+      if (assigned != null) {
+        JobCounterUpdateEvent jce =
+          new JobCounterUpdateEvent(assigned.attemptID.getTaskId().getJobId());
+        jce.addCounterUpdate(locality, 1);
+        eventHandler.handle(jce);
+      }
+      return assigned;
+    }
+
+    private ContainerRequest removeMap(LinkedList<TaskAttemptId> list) {
+      while (list != null && list.size() > 0) {
+        TaskAttemptId tId = list.removeFirst();
+        if (maps.containsKey(tId)) {
+          return maps.remove(tId);
+        }
+      }
+      return null;
+    }
+
     @SuppressWarnings("unchecked")
     private void assignMapsWithLocality(List<Container> allocatedContainers) {
       // try to assign to all nodes first to match node local
@@ -1154,14 +1240,16 @@ NodeId getNodeId(TaskAttemptId tId) {
       }
     }
 
-    ContainerId get(TaskAttemptId tId) {
-      Container taskContainer;
+    Container getContainer(TaskAttemptId tId) {
       if (tId.getTaskId().getTaskType().equals(TaskType.MAP)) {
-        taskContainer = maps.get(tId);
+        return maps.get(tId);
       } else {
-        taskContainer = reduces.get(tId);
+        return reduces.get(tId);
       }
+    }
 
+    ContainerId get(TaskAttemptId tId) {
+      Container taskContainer = getContainer(tId);
       if (taskContainer == null) {
         return null;
       } else {
@@ -158,6 +158,22 @@ protected AMResponse makeRemoteRequest() throws YarnRemoteException {
     lastClusterNmCount = clusterNmCount;
     clusterNmCount = allocateResponse.getNumClusterNodes();
 
+    if (response.getResync()) {
+      // The RM has restarted and dropped what was asked so far. Register
+      // again and send all outstanding requests along with the releases.
+      LOG.info("Resyncing with the ResourceManager");
+      register();
+      for (Map<String, Map<Resource, ResourceRequest>> requests
+          : remoteRequestsTable.values()) {
+        for (Map<Resource, ResourceRequest> reqMap : requests.values()) {
+          for (ResourceRequest request : reqMap.values()) {
+            addResourceRequestToAsk(request);
+          }
+        }
+      }
+      return response;
+    }
+
     if (ask.size() > 0 || release.size() > 0) {
       LOG.info("getResources() for " + applicationId + ":" + " ask="
           + ask.size() + " release= " + release.size() + " newContainers="
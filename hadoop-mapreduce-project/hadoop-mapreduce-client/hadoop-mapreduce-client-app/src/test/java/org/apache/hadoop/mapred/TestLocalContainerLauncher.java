@@ -0,0 +1,324 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.hadoop.mapred;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.MRConfig;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.TypeConverter;
+import org.apache.hadoop.mapreduce.v2.api.records.JobId;
+import org.apache.hadoop.mapreduce.v2.api.records.TaskAttemptId;
+import org.apache.hadoop.mapreduce.v2.api.records.TaskId;
+import org.apache.hadoop.mapreduce.v2.api.records.TaskType;
+import org.apache.hadoop.mapreduce.v2.app.AppContext;
+import org.apache.hadoop.mapreduce.v2.app.job.Job;
+import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEvent;
+import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEventType;
+import org.apache.hadoop.mapreduce.v2.app.launcher.ContainerRemoteLaunchEvent;
+import org.apache.hadoop.mapreduce.v2.util.MRBuilderUtils;
+import org.apache.hadoop.yarn.event.Event;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class TestLocalContainerLauncher {
+
+  private static final File TEST_DIR = new File("target",
+      TestLocalContainerLauncher.class.getName());
+
+  private final File workDir = new File(TEST_DIR, "work").getAbsoluteFile();
+  private final File localDir = new File(TEST_DIR, "local").getAbsoluteFile();
+  private final List<Event> events =
+      Collections.synchronizedList(new ArrayList<Event>());
+  private final List<Throwable> errors =
+      Collections.synchronizedList(new ArrayList<Throwable>());
+  private final JobId jobId = MRBuilderUtils.newJobId(1, 1, 1);
+  private Job job;
+  private LocalContainerLauncher launcher;
+
+  @Before
+  @SuppressWarnings("rawtypes")
+  public void setup() throws Exception {
+    FileUtil.fullyDelete(TEST_DIR);
+    assertTrue(workDir.mkdirs());
+    assertTrue(localDir.mkdirs());
+
+    job = mock(Job.class);
+    when(job.getTotalMaps()).thenReturn(3);
+    when(job.getTotalReduces()).thenReturn(1);
+    AppContext context = mock(AppContext.class);
+    when(context.getAllJobs()).thenReturn(
+        Collections.singletonMap(jobId, job));
+    when(context.getEventHandler()).thenReturn(new EventHandler() {
+      @Override
+      public void handle(Event event) {
+        events.add(event);
+      }
+    });
+
+    JobConf conf = new JobConf();
+    conf.setInt(MRJobConfig.JOB_UBERTASK_MAP_THREADS, 2);
+    conf.setInt(MRJobConfig.MR_AM_CPU_VCORES, 2);
+    conf.setInt(MRJobConfig.MR_AM_VMEM_MB, 2048);
+    conf.setInt(MRJobConfig.MAP_MEMORY_MB, 1024);
+    launcher = new LocalContainerLauncher(context,
+        mock(TaskUmbilicalProtocol.class), workDir,
+        new String[] { localDir.getPath() });
+    launcher.init(conf);
+    launcher.start();
+  }
+
+  @After
+  public void tearDown() {
+    if (launcher != null) {
+      launcher.stop();
+    }
+    FileUtil.fullyDelete(TEST_DIR);
+  }
+
+  /**
+   * Two maps run at the same time, the one finishing last cleans up the
+   * working directory, a failed map is retried, and the reduce then finds
+   * the outputs of all the successful map attempts.
+   */
+  @Test(timeout = 60000)
+  public void testConcurrentMapsThenReduce() throws Exception {
+    final CountDownLatch bothRunning = new CountDownLatch(2);
+    final File reduceIn0 = new File(localDir, "output/map_0.out");
+    final AtomicBoolean strayKept = new AtomicBoolean(false);
+
+    // the first map creates a file in the working directory, and finishes
+    // while the second one still runs
+    TaskAttemptId map0 = attemptId(0, TaskType.MAP, 0);
+    MapTask mapTask0 = mockMap(map0, new Runnable() {
+      @Override
+      public void run() {
+        touch(new File(workDir, "stray0"));
+        await(bothRunning);
+      }
+    });
+    // the second map sees the output of the first one renamed, but its
+    // stray file kept until it is done itself
+    TaskAttemptId map1 = attemptId(1, TaskType.MAP, 0);
+    MapTask mapTask1 = mockMap(map1, new Runnable() {
+      @Override
+      public void run() {
+        await(bothRunning);
+        waitFor(reduceIn0);
+        sleep(500);
+        strayKept.set(new File(workDir, "stray0").exists());
+      }
+    });
+    launcher.handle(launchEvent(map0, mapTask0));
+    launcher.handle(launchEvent(map1, mapTask1));
+
+    File reduceIn1 = new File(localDir, "output/map_1.out");
+    waitFor(reduceIn1);
+    waitForDeletion(new File(workDir, "stray0"));
+    assertTrue("Cleaned up while a map was running", strayKept.get());
+
+    // a failed map attempt is reported as a completed container
+    TaskAttemptId map2 = attemptId(2, TaskType.MAP, 0);
+    MapTask failingTask = mock(MapTask.class);
+    stubTask(failingTask, map2);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        throw new IOException("Injected failure");
+      }
+    }).when(failingTask).run(any(JobConf.class),
+        any(TaskUmbilicalProtocol.class));
+    launcher.handle(launchEvent(map2, failingTask));
+    waitForContainerCompleted(map2);
+
+    // the retried attempt succeeds, and the reduce runs after it
+    TaskAttemptId map2retry = attemptId(2, TaskType.MAP, 1);
+    launcher.handle(launchEvent(map2retry, mockMap(map2retry, null)));
+    TaskAttemptId reduce = attemptId(0, TaskType.REDUCE, 0);
+    ReduceTask reduceTask = mock(ReduceTask.class);
+    stubTask(reduceTask, reduce);
+    final CountDownLatch reduceRan = new CountDownLatch(1);
+    final JobConf[] reduceConf = new JobConf[1];
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        reduceConf[0] = (JobConf) invocation.getArguments()[0];
+        reduceRan.countDown();
+        return null;
+      }
+    }).when(reduceTask).run(any(JobConf.class),
+        any(TaskUmbilicalProtocol.class));
+    launcher.handle(launchEvent(reduce, reduceTask));
+    assertTrue(reduceRan.await(30, TimeUnit.SECONDS));
+
+    assertTrue(errors.toString(), errors.isEmpty());
+    // each map output is renamed for the reduce, from its attempt's own file
+    assertEquals(map0.toString(), read(reduceIn0));
+    assertEquals(map1.toString(), read(reduceIn1));
+    assertEquals(map2retry.toString(),
+        read(new File(localDir, "output/map_2.out")));
+    assertEquals(MRConfig.LOCAL_FRAMEWORK_NAME,
+        reduceConf[0].get(MRConfig.FRAMEWORK_NAME));
+    assertFalse(reduceConf[0].getBoolean(Task.UBER_CONCURRENT_TASK, false));
+    // only the failed attempt is reported as a completed container
+    for (Event event : events) {
+      if (event.getType() == TaskAttemptEventType.TA_CONTAINER_COMPLETED) {
+        assertEquals(map2, ((TaskAttemptEvent) event).getTaskAttemptID());
+      }
+    }
+  }
+
+  private TaskAttemptId attemptId(int task, TaskType type, int attempt) {
+    TaskId taskId = MRBuilderUtils.newTaskId(jobId, task, type);
+    org.apache.hadoop.mapreduce.v2.app.job.Task ytask =
+        mock(org.apache.hadoop.mapreduce.v2.app.job.Task.class);
+    when(ytask.getType()).thenReturn(type);
+    when(job.getTask(taskId)).thenReturn(ytask);
+    return MRBuilderUtils.newTaskAttemptId(taskId, attempt);
+  }
+
+  private void stubTask(Task task, TaskAttemptId attemptId) {
+    when(task.getTaskID()).thenReturn(TypeConverter.fromYarn(attemptId));
+    when(task.getJobID()).thenReturn(TypeConverter.fromYarn(jobId));
+    when(task.getPartition()).thenReturn(attemptId.getTaskId().getId());
+  }
+
+  /**
+   * A map that writes its attempt id to an output file of its own, like
+   * {@link YarnOutputFiles} does, after running the given action.
+   */
+  private MapTask mockMap(final TaskAttemptId attemptId,
+      final Runnable action) throws Exception {
+    MapTask map = mock(MapTask.class);
+    stubTask(map, attemptId);
+    final File out = new File(localDir, attemptId + "/file.out");
+    MapOutputFile mapOutputFile = mock(MapOutputFile.class);
+    when(mapOutputFile.getOutputFile()).thenReturn(
+        new Path(out.getAbsolutePath()));
+    when(map.getMapOutputFile()).thenReturn(mapOutputFile);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        try {
+          JobConf conf = (JobConf) invocation.getArguments()[0];
+          assertEquals(YarnOutputFiles.class,
+              conf.getClass(MRConfig.TASK_LOCAL_OUTPUT_CLASS, null));
+          assertTrue(conf.getBoolean(Task.UBER_CONCURRENT_TASK, false));
+          if (action != null) {
+            action.run();
+          }
+          assertTrue(out.getParentFile().mkdirs());
+          Files.write(attemptId.toString(), out, Charsets.UTF_8);
+        } catch (Throwable t) {
+          errors.add(t);
+          throw t;
+        }
+        return null;
+      }
+    }).when(map).run(any(JobConf.class), any(TaskUmbilicalProtocol.class));
+    return map;
+  }
+
+  private static ContainerRemoteLaunchEvent launchEvent(
+      TaskAttemptId attemptId, Task task) {
+    return new ContainerRemoteLaunchEvent(attemptId, null, null, null, null,
+        task);
+  }
+
+  private void waitForContainerCompleted(TaskAttemptId attemptId)
+      throws InterruptedException {
+    while (true) {
+      synchronized (events) {
+        for (Event event : events) {
+          if (event.getType() == TaskAttemptEventType.TA_CONTAINER_COMPLETED
+              && attemptId.equals(
+                  ((TaskAttemptEvent) event).getTaskAttemptID())) {
+            return;
+          }
+        }
+      }
+      Thread.sleep(50);
+    }
+  }
+
+  private static String read(File file) throws IOException {
+    return Files.toString(file, Charsets.UTF_8);
+  }
+
+  private static void touch(File file) {
+    try {
+      assertTrue(file.createNewFile());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    latch.countDown();
+    try {
+      assertTrue("Maps did not run concurrently",
+          latch.await(30, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void waitFor(File file) {
+    while (!file.exists()) {
+      sleep(50);
+    }
+  }
+
+  private static void waitForDeletion(File file) {
+    while (file.exists()) {
+      sleep(50);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
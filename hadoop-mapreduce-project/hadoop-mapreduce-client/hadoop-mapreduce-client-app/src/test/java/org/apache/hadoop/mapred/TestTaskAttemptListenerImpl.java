@@ -33,6 +33,7 @@
 import java.util.Arrays;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.TaskType;
 import org.apache.hadoop.mapreduce.TypeConverter;
 import org.apache.hadoop.mapreduce.security.token.JobTokenSecretManager;
@@ -44,12 +45,17 @@
 import org.apache.hadoop.mapreduce.v2.app.AppContext;
 import org.apache.hadoop.mapreduce.v2.app.TaskHeartbeatHandler;
 import org.apache.hadoop.mapreduce.v2.app.job.Job;
+import org.apache.hadoop.mapreduce.v2.app.rm.ContainerAllocator;
+import org.apache.hadoop.mapreduce.v2.app.rm.ContainerAllocatorEvent;
 import org.apache.hadoop.mapreduce.v2.app.rm.RMHeartbeatHandler;
 import org.apache.hadoop.mapreduce.v2.util.MRBuilderUtils;
 import org.apache.hadoop.yarn.SystemClock;
+import org.apache.hadoop.yarn.event.Event;
+import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.hadoop.yarn.factories.RecordFactory;
 import org.apache.hadoop.yarn.factory.providers.RecordFactoryProvider;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 public class TestTaskAttemptListenerImpl {
   public static class MockTaskAttemptListenerImpl extends TaskAttemptListenerImpl {
@@ -138,6 +144,74 @@ public void testGetTask() throws IOException {
     listener.stop();
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testGetTaskWithJvmReuse() throws IOException {
+    AppContext appCtx = mock(AppContext.class);
+    EventHandler ea = mock(EventHandler.class);
+    when(appCtx.getEventHandler()).thenReturn(ea);
+    JobTokenSecretManager secret = mock(JobTokenSecretManager.class);
+    RMHeartbeatHandler rmHeartbeatHandler =
+        mock(RMHeartbeatHandler.class);
+    TaskHeartbeatHandler hbHandler = mock(TaskHeartbeatHandler.class);
+    MockTaskAttemptListenerImpl listener =
+      new MockTaskAttemptListenerImpl(appCtx, secret,
+          rmHeartbeatHandler, hbHandler);
+    Configuration conf = new Configuration();
+    conf.setInt(MRJobConfig.JVM_NUMTASKS_TORUN, -1);
+    listener.init(conf);
+    listener.start();
+    JVMId id = new JVMId("foo",1, true, 1);
+    WrappedJvmID wid = new WrappedJvmID(id.getJobId(), id.isMap, id.getId());
+    JvmContext context = new JvmContext();
+    context.jvmId = id;
+
+    TaskAttemptId attemptID = mock(TaskAttemptId.class);
+    Task task = mock(Task.class);
+    when(task.getTaskID()).thenReturn(
+        new TaskAttemptID("foo", 1, TaskType.MAP, 1, 0));
+    listener.registerPendingTask(task, wid);
+    listener.registerLaunchedTask(attemptID, wid);
+    JvmTask result = listener.getTask(context);
+    assertNotNull(result);
+    assertFalse(result.shouldDie);
+
+    // A JVM asking again while its attempt is running waits.
+    result = listener.getTask(context);
+    assertNull(result);
+
+    // Once the attempt succeeded the container is offered to the allocator,
+    // once, also when the JVM asks before its attempt is unregistered.
+    listener.registerReusableJvm(attemptID, wid);
+    result = listener.getTask(context);
+    assertNull(result);
+    listener.unregister(attemptID, wid);
+    result = listener.getTask(context);
+    assertNull(result);
+    ArgumentCaptor<Event> arg = ArgumentCaptor.forClass(Event.class);
+    verify(ea).handle(arg.capture());
+    ContainerAllocatorEvent event = (ContainerAllocatorEvent) arg.getValue();
+    assertEquals(ContainerAllocator.EventType.CONTAINER_REUSABLE,
+        event.getType());
+    assertEquals(attemptID, event.getAttemptID());
+
+    // The allocator assigns the JVM its next task.
+    TaskAttemptId attemptID2 = mock(TaskAttemptId.class);
+    listener.registerPendingTask(task, wid);
+    listener.registerLaunchedTask(attemptID2, wid);
+    result = listener.getTask(context);
+    assertNotNull(result);
+    assertFalse(result.shouldDie);
+
+    // A JVM whose attempt failed is told to die.
+    listener.unregister(attemptID2, wid);
+    result = listener.getTask(context);
+    assertNotNull(result);
+    assertTrue(result.shouldDie);
+
+    listener.stop();
+  }
+
   @Test
   public void testGetMapCompletionEvents() throws IOException {
     TaskAttemptCompletionEvent[] empty = {};
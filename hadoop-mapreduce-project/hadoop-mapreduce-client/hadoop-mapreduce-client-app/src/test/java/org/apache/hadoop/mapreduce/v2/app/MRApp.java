@@ -444,6 +444,10 @@ public void registerLaunchedTask(TaskAttemptId attemptID,
       public void unregister(TaskAttemptId attemptID, WrappedJvmID jvmID) {
       }
       @Override
+      public void registerReusableJvm(TaskAttemptId attemptID,
+          WrappedJvmID jvmID) {
+      }
+      @Override
       public void registerPendingTask(org.apache.hadoop.mapred.Task task,
           WrappedJvmID jvmID) {
       }
@@ -484,6 +488,7 @@ public void handle(ContainerLauncherEvent event) {
         attemptLaunched(event.getTaskAttemptID());
         break;
       case CONTAINER_REMOTE_CLEANUP:
+      case CONTAINER_REMOTE_DETACH:
         getContext().getEventHandler().handle(
             new TaskAttemptEvent(event.getTaskAttemptID(),
                 TaskAttemptEventType.TA_CONTAINER_CLEANED));
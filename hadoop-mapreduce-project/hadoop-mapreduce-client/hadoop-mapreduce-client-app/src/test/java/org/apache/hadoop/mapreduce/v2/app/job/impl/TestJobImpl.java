@@ -483,6 +483,17 @@ public void testUberDecision() throws Exception {
     conf.setInt(MRJobConfig.JOB_UBERTASK_MAXMAPS, 1);
     isUber = testUberDecision(conf);
     Assert.assertFalse(isUber);
+
+    // enable uber mode, no of maps is 2 and uber task max maps is 1; the
+    // AM running 2 maps at a time does not raise the threshold
+    conf = new Configuration();
+    conf.setBoolean(MRJobConfig.JOB_UBERTASK_ENABLE, true);
+    conf.setInt(MRJobConfig.JOB_UBERTASK_MAXMAPS, 1);
+    conf.setInt(MRJobConfig.MR_AM_CPU_VCORES, 2);
+    conf.setInt(MRJobConfig.MR_AM_VMEM_MB, 2048);
+    conf.setInt(MRJobConfig.MAP_MEMORY_MB, 1024);
+    isUber = testUberDecision(conf);
+    Assert.assertFalse(isUber);
   }
 
   private boolean testUberDecision(Configuration conf) {
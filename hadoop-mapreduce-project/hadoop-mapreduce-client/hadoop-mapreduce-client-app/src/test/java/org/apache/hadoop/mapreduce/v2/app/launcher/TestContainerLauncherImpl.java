@@ -21,6 +21,7 @@
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.atLeast;
@@ -34,6 +35,7 @@
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapred.ShuffleHandler;
+import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.v2.api.records.JobId;
 import org.apache.hadoop.mapreduce.v2.api.records.TaskAttemptId;
 import org.apache.hadoop.mapreduce.v2.api.records.TaskId;
@@ -302,6 +304,65 @@ public void testMyShutdown() throws Exception {
     }
   }
   
+  @Test
+  public void testCMProxyCaching() throws Exception {
+    LOG.info("STARTING testCMProxyCaching");
+
+    YarnRPC mockRpc = mock(YarnRPC.class);
+    AppContext mockContext = mock(AppContext.class);
+    @SuppressWarnings("rawtypes")
+    EventHandler mockEventHandler = mock(EventHandler.class);
+    when(mockContext.getEventHandler()).thenReturn(mockEventHandler);
+
+    ContainerManager mockCM = mock(ContainerManager.class);
+    when(mockRpc.getProxy(eq(ContainerManager.class),
+        any(InetSocketAddress.class), any(Configuration.class)))
+        .thenReturn(mockCM);
+
+    ContainerLauncherImplUnderTest ut =
+      new ContainerLauncherImplUnderTest(mockContext, mockRpc);
+
+    Configuration conf = new Configuration();
+    conf.setInt(MRJobConfig.MR_AM_CONTAINERLAUNCHER_PROXY_CACHE_SIZE, 1);
+    ut.init(conf);
+    ut.start();
+    try {
+      StartContainerResponse startResp =
+        recordFactory.newRecordInstance(StartContainerResponse.class);
+      startResp.setServiceResponse(ShuffleHandler.MAPREDUCE_SHUFFLE_SERVICEID,
+          ShuffleHandler.serializeMetaData(80));
+      when(mockCM.startContainer(any(StartContainerRequest.class)))
+        .thenReturn(startResp);
+
+      // two containers on the same node share one proxy
+      String[] cmAddresses =
+        { "127.0.0.1:8000", "127.0.0.1:8000", "127.0.0.2:8000" };
+      for (int i = 0; i < cmAddresses.length; i++) {
+        ContainerRemoteLaunchEvent mockLaunchEvent =
+          mock(ContainerRemoteLaunchEvent.class);
+        when(mockLaunchEvent.getType())
+          .thenReturn(EventType.CONTAINER_REMOTE_LAUNCH);
+        when(mockLaunchEvent.getContainerID())
+          .thenReturn(makeContainerId(0l, 0, 0, i + 1));
+        when(mockLaunchEvent.getTaskAttemptID())
+          .thenReturn(makeTaskAttemptId(0l, 0, i, TaskType.MAP, 0));
+        when(mockLaunchEvent.getContainerMgrAddress())
+          .thenReturn(cmAddresses[i]);
+        ut.handle(mockLaunchEvent);
+        ut.waitForPoolToIdle();
+      }
+
+      verify(mockCM, times(3)).startContainer(any(StartContainerRequest.class));
+      verify(mockRpc, times(2)).getProxy(eq(ContainerManager.class),
+          any(InetSocketAddress.class), any(Configuration.class));
+      // the first node's proxy was evicted for the second one
+      verify(mockRpc, times(1)).stopProxy(eq(mockCM),
+          any(Configuration.class));
+    } finally {
+      ut.stop();
+    }
+  }
+
   @SuppressWarnings({ "rawtypes", "unchecked" })
   @Test
   public void testContainerCleaned() throws Exception {
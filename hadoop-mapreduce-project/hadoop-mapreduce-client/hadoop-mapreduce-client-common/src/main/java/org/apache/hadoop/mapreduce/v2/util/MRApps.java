@@ -304,6 +304,34 @@ public ClassLoader run() throws MalformedURLException {
     }
   }
 
+  /**
+   * Get how many maps of an uber job the AM runs at the same time. The
+   * configured {@link MRJobConfig#JOB_UBERTASK_MAP_THREADS} is bounded by how
+   * many maps fit in the vcores and the memory of the AM container.
+   * @param conf the job configuration
+   * @return the number of uber map threads, at least 1
+   */
+  public static int getUberMapThreads(Configuration conf) {
+    int threads = conf.getInt(MRJobConfig.JOB_UBERTASK_MAP_THREADS,
+        MRJobConfig.DEFAULT_JOB_UBERTASK_MAP_THREADS);
+    if (threads < 0) {
+      threads = Integer.MAX_VALUE;
+    }
+    int mapVcores = conf.getInt(MRJobConfig.MAP_CPU_VCORES,
+        MRJobConfig.DEFAULT_MAP_CPU_VCORES);
+    if (mapVcores > 0) {
+      threads = Math.min(threads, conf.getInt(MRJobConfig.MR_AM_CPU_VCORES,
+          MRJobConfig.DEFAULT_MR_AM_CPU_VCORES) / mapVcores);
+    }
+    int mapMemory = conf.getInt(MRJobConfig.MAP_MEMORY_MB,
+        MRJobConfig.DEFAULT_MAP_MEMORY_MB);
+    if (mapMemory > 0) {
+      threads = Math.min(threads, conf.getInt(MRJobConfig.MR_AM_VMEM_MB,
+          MRJobConfig.DEFAULT_MR_AM_VMEM_MB) / mapMemory);
+    }
+    return Math.max(1, threads);
+  }
+
   private static final String STAGING_CONSTANT = ".staging";
   public static Path getStagingAreaDir(Configuration conf, String user) {
     return new Path(conf.get(MRJobConfig.MR_AM_STAGING_DIR,
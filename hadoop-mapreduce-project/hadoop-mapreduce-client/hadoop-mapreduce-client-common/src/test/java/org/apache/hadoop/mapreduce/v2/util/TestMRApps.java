@@ -283,6 +283,31 @@ public void testSetClasspathWithJobClassloader() throws IOException {
       + " classpath!", expectedAppClasspath, appCp);
   }
   
+  @Test (timeout = 30000)
+  public void testGetUberMapThreads() {
+    Configuration conf = new Configuration();
+    // the default AM fits a single default map
+    assertEquals(1, MRApps.getUberMapThreads(conf));
+
+    conf.setInt(MRJobConfig.MR_AM_CPU_VCORES, 4);
+    conf.setInt(MRJobConfig.MR_AM_VMEM_MB, 4096);
+    conf.setInt(MRJobConfig.MAP_MEMORY_MB, 1024);
+    assertEquals(4, MRApps.getUberMapThreads(conf));
+
+    // bounded by the vcores of the AM
+    conf.setInt(MRJobConfig.MAP_CPU_VCORES, 2);
+    assertEquals(2, MRApps.getUberMapThreads(conf));
+
+    // and by the configured number of threads
+    conf.setInt(MRJobConfig.MAP_CPU_VCORES, 1);
+    conf.setInt(MRJobConfig.JOB_UBERTASK_MAP_THREADS, 3);
+    assertEquals(3, MRApps.getUberMapThreads(conf));
+
+    // never less than one
+    conf.setInt(MRJobConfig.MAP_MEMORY_MB, 8192);
+    assertEquals(1, MRApps.getUberMapThreads(conf));
+  }
+
   @Test (timeout = 30000)
   public void testSetupDistributedCacheEmpty() throws IOException {
     Configuration conf = new Configuration();
@@ -595,9 +595,15 @@ public void setNumTasksToExecutePerJvm(int numTasks) {
   
   /**
    * Get the number of tasks that a spawned JVM should execute
+   * @return the number of tasks to execute, at least 1; -1 signifies no
+   * limit. A configured 0 is the same as 1, any negative value as -1.
    */
   public int getNumTasksToExecutePerJvm() {
-    return getInt(JobContext.JVM_NUMTASKS_TORUN, 1);
+    int numTasks = getInt(JobContext.JVM_NUMTASKS_TORUN, 1);
+    if (numTasks < 0) {
+      return -1;
+    }
+    return Math.max(numTasks, 1);
   }
   
   /**
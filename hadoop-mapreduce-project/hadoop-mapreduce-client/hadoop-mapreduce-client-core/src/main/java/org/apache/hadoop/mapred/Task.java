@@ -123,6 +123,16 @@ protected static String[] getFileSystemCounterNames(String uriScheme) {
    */
   protected static final String FILESYSTEM_COUNTER_GROUP = "FileSystemCounters";
 
+  /**
+   * Set for a task of an uber job that may run in the AM at the same time
+   * as other tasks. The CPU, memory and GC figures are those of the whole
+   * JVM and cannot be told apart per task, so the task leaves its
+   * CPU_MILLISECONDS, PHYSICAL_MEMORY_BYTES, VIRTUAL_MEMORY_BYTES and
+   * GC_TIME_MILLIS counters unset.
+   */
+  static final String UBER_CONCURRENT_TASK =
+      "mapreduce.task.uberized.concurrent";
+
   ///////////////////////////////////////////////////////////
   // Helper methods to construct task-output paths
   ///////////////////////////////////////////////////////////
@@ -170,6 +180,7 @@ static synchronized String getOutputName(int partition) {
 
   private ResourceCalculatorProcessTree pTree;
   private long initCpuCumulativeTime = 0;
+  private boolean concurrentInJvm = false;
 
   protected JobConf conf;
   protected MapOutputFile mapOutputFile;
@@ -573,6 +584,11 @@ public void initialize(JobConf job, JobID id,
       }
     }
     committer.setupTask(taskContext);
+    concurrentInJvm = conf.getBoolean(UBER_CONCURRENT_TASK, false);
+    if (concurrentInJvm) {
+      // the process tree is shared with the other tasks, see updateCounters
+      return;
+    }
     Class<? extends ResourceCalculatorProcessTree> clazz =
         conf.getClass(MRConfig.RESOURCE_CALCULATOR_PROCESS_TREE,
             null, ResourceCalculatorProcessTree.class);
@@ -974,7 +990,9 @@ private synchronized void updateCounters() {
       updater.updateCounters();
     }
     
-    gcUpdater.incrementGcCounter();
+    if (!concurrentInJvm) {
+      gcUpdater.incrementGcCounter();
+    }
     updateResourceCounters();
   }
 
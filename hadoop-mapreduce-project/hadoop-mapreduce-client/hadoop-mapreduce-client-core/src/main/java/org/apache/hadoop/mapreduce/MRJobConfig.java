@@ -61,6 +61,14 @@ public interface MRJobConfig {
 
   public static final String JVM_NUMTASKS_TORUN = "mapreduce.job.jvm.numtasks";
 
+  /**
+   * Fraction of the maximum heap a reused task JVM may have in use after a
+   * task and still ask for another one.
+   */
+  public static final String JVM_REUSE_MAX_HEAP_USAGE =
+      "mapreduce.job.jvm.reuse.max-heap-usage";
+  public static final float DEFAULT_JVM_REUSE_MAX_HEAP_USAGE = 0.8f;
+
   public static final String SPLIT_FILE = "mapreduce.job.splitfile";
 
   public static final String SPLIT_METAINFO_MAXSIZE = "mapreduce.job.split.metainfo.maxsize";
@@ -332,6 +340,13 @@ public interface MRJobConfig {
     "mapreduce.job.ubertask.maxreduces";
   public static final String JOB_UBERTASK_MAXBYTES =
     "mapreduce.job.ubertask.maxbytes";
+  /**
+   * How many maps of an uber job the AM runs at the same time, at most as
+   * many as fit in its vcores and memory. -1 means only bounded by those.
+   */
+  public static final String JOB_UBERTASK_MAP_THREADS =
+    "mapreduce.job.ubertask.map-threads";
+  public static final int DEFAULT_JOB_UBERTASK_MAP_THREADS = -1;
 
   public static final String MR_PREFIX = "yarn.app.mapreduce.";
 
@@ -397,6 +412,18 @@ public interface MRJobConfig {
   public static final int DEFAULT_MR_AM_CONTAINERLAUNCHER_THREAD_COUNT_LIMIT = 
       500;
 
+  /**
+   * Maximum number of NodeManager proxies the app master keeps open to
+   * reuse their connections across container launches and stops. 0 opens
+   * a new connection per call. Proxies are never cached when security is
+   * enabled, as each connection authenticates as a single container.
+   */
+  public static final String MR_AM_CONTAINERLAUNCHER_PROXY_CACHE_SIZE =
+    MR_AM_PREFIX+"containerlauncher.proxy-cache-size";
+
+  public static final int DEFAULT_MR_AM_CONTAINERLAUNCHER_PROXY_CACHE_SIZE =
+      500;
+
   /** Number of threads to handle job client RPC requests.*/
   public static final String MR_AM_JOB_CLIENT_THREAD_COUNT =
     MR_AM_PREFIX + "job.client.thread-count";
@@ -201,4 +201,20 @@ public void testMaxTaskFailuresPerTracker() {
       jobConf.getMaxTaskFailuresPerTracker() < jobConf.getMaxReduceAttempts()
       );
   }
+
+  /**
+   * Test that a number of tasks per JVM of 0 is the same as 1, and any
+   * negative one the same as -1, no limit.
+   */
+  @Test
+  public void testNumTasksToExecutePerJvm() {
+    JobConf jobConf = new JobConf(false);
+    Assert.assertEquals(1, jobConf.getNumTasksToExecutePerJvm());
+    jobConf.setNumTasksToExecutePerJvm(0);
+    Assert.assertEquals(1, jobConf.getNumTasksToExecutePerJvm());
+    jobConf.setNumTasksToExecutePerJvm(3);
+    Assert.assertEquals(3, jobConf.getNumTasksToExecutePerJvm());
+    jobConf.setNumTasksToExecutePerJvm(-5);
+    Assert.assertEquals(-1, jobConf.getNumTasksToExecutePerJvm());
+  }
 }
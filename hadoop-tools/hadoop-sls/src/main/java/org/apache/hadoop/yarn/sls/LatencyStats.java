@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.sls;
+
+/**
+ * Wall-clock latencies of one kind of scheduler call. Latencies are kept in
+ * a histogram of power-of-two microsecond buckets, so percentiles are only
+ * accurate to within a factor of two; count, mean and maximum are exact.
+ */
+public class LatencyStats {
+  private static final int BUCKETS = 40;
+
+  private final String name;
+  private final long[] histogram = new long[BUCKETS];
+  private long count = 0;
+  private long totalNanos = 0;
+  private long maxNanos = 0;
+
+  public LatencyStats(String name) {
+    this.name = name;
+  }
+
+  public void add(long nanos) {
+    count++;
+    totalNanos += nanos;
+    maxNanos = Math.max(maxNanos, nanos);
+    long micros = nanos / 1000;
+    int bucket = 64 - Long.numberOfLeadingZeros(micros);
+    histogram[Math.min(bucket, BUCKETS - 1)]++;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getMeanMicros() {
+    return count == 0 ? 0 : totalNanos / 1000.0 / count;
+  }
+
+  public double getMaxMicros() {
+    return maxNanos / 1000.0;
+  }
+
+  /**
+   * @return the upper bound, in microseconds, of the histogram bucket which
+   *         holds the given percentile of the latencies
+   */
+  public long getPercentileMicros(double percentile) {
+    long target = (long) Math.ceil(count * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += histogram[i];
+      if (seen >= target && seen > 0) {
+        return 1L << i;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: count=%d mean=%.1fus p50<=%dus p99<=%dus " +
+        "max=%.1fus", name, count, getMeanMicros(), getPercentileMicros(50),
+        getPercentileMicros(99), getMaxMicros());
+  }
+}
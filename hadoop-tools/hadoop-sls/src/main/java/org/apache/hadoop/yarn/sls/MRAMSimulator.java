@@ -0,0 +1,408 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.sls;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.Priority;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.api.records.ResourceRequest;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttemptState;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.Allocation;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.ResourceScheduler;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.AppAddedSchedulerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.AppRemovedSchedulerEvent;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+
+/**
+ * A simulated MapReduce ApplicationMaster. Once its job is submitted it
+ * asks for its own container, then for one container per map, preferring
+ * the hosts and racks the trace gives for each map, and once all maps are
+ * done for one container per reduce. Each task holds its container for as
+ * long as it ran in the trace. Tasks whose containers are preempted are
+ * asked for again; an AM whose own container is preempted gives up, as
+ * attempts are not retried.
+ */
+public class MRAMSimulator {
+  private static final Log LOG = LogFactory.getLog(MRAMSimulator.class);
+
+  static final Priority AM_PRIORITY = BuilderUtils.newPriority(0);
+  static final Priority REDUCE_PRIORITY = BuilderUtils.newPriority(10);
+  static final Priority MAP_PRIORITY = BuilderUtils.newPriority(20);
+
+  /**
+   * A map or reduce as found in the trace.
+   */
+  public static class SimulatedTask {
+    final long duration;
+    final List<String> hosts;
+    final List<String> racks;
+
+    /**
+     * @param duration how long the task holds its container
+     * @param hosts the hosts the task prefers to run on
+     * @param racks the racks the task prefers to run on
+     */
+    public SimulatedTask(long duration, List<String> hosts,
+        List<String> racks) {
+      this.duration = duration;
+      this.hosts = hosts;
+      this.racks = racks;
+    }
+  }
+
+  private static class RunningTask {
+    final Container container;
+    final SimulatedTask task;
+    final boolean isMap;
+
+    RunningTask(Container container, SimulatedTask task, boolean isMap) {
+      this.container = container;
+      this.task = task;
+      this.isMap = isMap;
+    }
+  }
+
+  private final SLSRunner runner;
+  private final String jobId;
+  private final String user;
+  private final String queue;
+  private final long submitTime;
+  private final ApplicationAttemptId attemptId;
+  private final Resource amResource;
+  private final Resource mapResource;
+  private final Resource reduceResource;
+  private final int numMaps;
+  private final int numReduces;
+
+  private final LinkedList<SimulatedTask> pendingMaps;
+  private final LinkedList<SimulatedTask> pendingReduces;
+  private final Map<ContainerId, RunningTask> runningTasks =
+      new LinkedHashMap<ContainerId, RunningTask>();
+  private int mapsToFinish;
+  private int reducesToFinish;
+  // containers asked for but not allocated yet, as the scheduler counts them
+  private int outstandingMaps = 0;
+  private int outstandingReduces = 0;
+
+  private List<ResourceRequest> ask = new ArrayList<ResourceRequest>();
+  private List<ContainerId> release = new ArrayList<ContainerId>();
+  private final Runnable heartbeat = new Runnable() {
+    @Override
+    public void run() {
+      heartbeat();
+    }
+  };
+
+  private Container amContainer = null;
+  private long amStartTime = -1;
+  private long finishTime = -1;
+  private int allocatedMB = 0;
+  private RMAppAttemptState finalState = null;
+
+  public MRAMSimulator(SLSRunner runner, String jobId, String user,
+      String queue, long submitTime, ApplicationAttemptId attemptId,
+      Resource amResource, Resource mapResource, Resource reduceResource,
+      List<SimulatedTask> maps, List<SimulatedTask> reduces) {
+    this.runner = runner;
+    this.jobId = jobId;
+    this.user = user;
+    this.queue = queue;
+    this.submitTime = submitTime;
+    this.attemptId = attemptId;
+    this.amResource = amResource;
+    this.mapResource = mapResource;
+    this.reduceResource = reduceResource;
+    this.pendingMaps = new LinkedList<SimulatedTask>(maps);
+    this.pendingReduces = new LinkedList<SimulatedTask>(reduces);
+    this.numMaps = maps.size();
+    this.numReduces = reduces.size();
+    this.mapsToFinish = numMaps;
+    this.reducesToFinish = numReduces;
+  }
+
+  /**
+   * Submit the job to the scheduler and start heartbeating.
+   */
+  void submit() {
+    runner.getScheduler().handle(
+        new AppAddedSchedulerEvent(attemptId, queue, user));
+    ask.add(BuilderUtils.newResourceRequest(AM_PRIORITY, RMNode.ANY,
+        amResource, 1));
+    heartbeat();
+  }
+
+  private void heartbeat() {
+    if (isFinished()) {
+      return;
+    }
+    long now = runner.getTaskRunner().getTime();
+    List<ResourceRequest> asks = ask;
+    List<ContainerId> releases = release;
+    ask = new ArrayList<ResourceRequest>();
+    release = new ArrayList<ContainerId>();
+
+    ResourceScheduler scheduler = runner.getScheduler();
+    long start = System.nanoTime();
+    Allocation allocation = scheduler.allocate(attemptId, asks, releases);
+    runner.getAllocateLatency().add(System.nanoTime() - start);
+
+    for (Container container : allocation.getContainers()) {
+      runner.containerAllocated();
+      assign(container, now);
+    }
+    if (!isFinished()) {
+      runner.getTaskRunner().schedule(now + runner.getAMHeartbeatInterval(),
+          heartbeat);
+    }
+  }
+
+  private void assign(Container container, long now) {
+    NMSimulator nm = runner.getNM(container.getNodeId());
+    int priority = container.getPriority().getPriority();
+    if (priority == AM_PRIORITY.getPriority() && amContainer == null) {
+      amContainer = container;
+      amStartTime = now;
+      nm.launchContainer(container, Long.MAX_VALUE, this);
+      allocatedMB += container.getResource().getMemory();
+      if (numMaps > 0) {
+        outstandingMaps = requestTasks(pendingMaps, MAP_PRIORITY, mapResource);
+      } else {
+        mapsDone(now);
+      }
+      return;
+    }
+
+    SimulatedTask task = null;
+    boolean isMap = priority == MAP_PRIORITY.getPriority();
+    if (isMap) {
+      outstandingMaps--;
+      task = pickTask(pendingMaps, nm);
+    } else if (priority == REDUCE_PRIORITY.getPriority()) {
+      outstandingReduces--;
+      task = pickTask(pendingReduces, nm);
+    }
+    if (task == null) {
+      // more containers than tasks, e.g. after a preempted task was done
+      // over somewhere else
+      release.add(container.getId());
+      return;
+    }
+    nm.launchContainer(container, now + task.duration, this);
+    runningTasks.put(container.getId(),
+        new RunningTask(container, task, isMap));
+    allocatedMB += container.getResource().getMemory();
+  }
+
+  /**
+   * Pick the pending task which best fits the given node: one which prefers
+   * the node, else one which prefers its rack, else the first one.
+   */
+  private SimulatedTask pickTask(LinkedList<SimulatedTask> pending,
+      NMSimulator nm) {
+    if (pending.isEmpty()) {
+      return null;
+    }
+    SimulatedTask rackLocal = null;
+    for (Iterator<SimulatedTask> i = pending.iterator(); i.hasNext();) {
+      SimulatedTask task = i.next();
+      if (task.hosts.contains(nm.getHostName())) {
+        i.remove();
+        return task;
+      }
+      if (rackLocal == null && task.racks.contains(nm.getRackName())) {
+        rackLocal = task;
+      }
+    }
+    if (rackLocal != null) {
+      pending.remove(rackLocal);
+      return rackLocal;
+    }
+    return pending.removeFirst();
+  }
+
+  /**
+   * Ask for a container for each of the given tasks, at the hosts and racks
+   * they prefer as well as anywhere.
+   * @return the number of containers asked for
+   */
+  private int requestTasks(List<SimulatedTask> tasks, Priority priority,
+      Resource capability) {
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for (SimulatedTask task : tasks) {
+      for (String host : task.hosts) {
+        increment(counts, host);
+      }
+      for (String rack : task.racks) {
+        increment(counts, rack);
+      }
+    }
+    for (Map.Entry<String, Integer> e : counts.entrySet()) {
+      ask.add(BuilderUtils.newResourceRequest(priority, e.getKey(),
+          capability, e.getValue()));
+    }
+    ask.add(BuilderUtils.newResourceRequest(priority, RMNode.ANY, capability,
+        tasks.size()));
+    return tasks.size();
+  }
+
+  private static void increment(Map<String, Integer> counts, String key) {
+    Integer count = counts.get(key);
+    counts.put(key, count == null ? 1 : count + 1);
+  }
+
+  /**
+   * Called by the node when a task's container is done.
+   */
+  void containerCompleted(Container container, long now) {
+    RunningTask running = runningTasks.remove(container.getId());
+    if (running == null || isFinished()) {
+      return;
+    }
+    allocatedMB -= container.getResource().getMemory();
+    if (running.isMap) {
+      if (--mapsToFinish == 0) {
+        mapsDone(now);
+      }
+    } else if (--reducesToFinish == 0) {
+      finish(now, RMAppAttemptState.FINISHED);
+    }
+  }
+
+  /**
+   * Called by the node when the RM had one of our containers killed.
+   */
+  void containerKilled(Container container, long now) {
+    if (isFinished()) {
+      return;
+    }
+    if (amContainer != null && container.getId().equals(amContainer.getId())) {
+      LOG.info("AM container of " + jobId + " was killed, giving up");
+      amContainer = null;
+      finish(now, RMAppAttemptState.KILLED);
+      return;
+    }
+    RunningTask running = runningTasks.remove(container.getId());
+    if (running == null) {
+      return;
+    }
+    allocatedMB -= container.getResource().getMemory();
+    if (running.isMap) {
+      pendingMaps.addFirst(running.task);
+      ask.add(BuilderUtils.newResourceRequest(MAP_PRIORITY, RMNode.ANY,
+          mapResource, ++outstandingMaps));
+    } else {
+      pendingReduces.addFirst(running.task);
+      ask.add(BuilderUtils.newResourceRequest(REDUCE_PRIORITY, RMNode.ANY,
+          reduceResource, ++outstandingReduces));
+    }
+  }
+
+  private void mapsDone(long now) {
+    if (numReduces > 0) {
+      outstandingReduces =
+          requestTasks(pendingReduces, REDUCE_PRIORITY, reduceResource);
+    } else {
+      finish(now, RMAppAttemptState.FINISHED);
+    }
+  }
+
+  private void finish(long now, RMAppAttemptState state) {
+    finishTime = now;
+    finalState = state;
+    for (RunningTask running : runningTasks.values()) {
+      runner.getNM(running.container.getNodeId())
+          .stopContainer(running.container.getId());
+    }
+    runningTasks.clear();
+    if (amContainer != null) {
+      runner.getNM(amContainer.getNodeId()).stopContainer(amContainer.getId());
+    }
+    allocatedMB = 0;
+    // the scheduler releases whatever the job still holds
+    runner.getScheduler().handle(new AppRemovedSchedulerEvent(attemptId,
+        state));
+    runner.jobFinished(this);
+  }
+
+  boolean isFinished() {
+    return finalState != null;
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public String getQueue() {
+    return queue;
+  }
+
+  public String getUser() {
+    return user;
+  }
+
+  public long getSubmitTime() {
+    return submitTime;
+  }
+
+  /**
+   * @return when the AM got its container, or -1 if it has not yet
+   */
+  public long getAMStartTime() {
+    return amStartTime;
+  }
+
+  /**
+   * @return when the job finished, or -1 if it has not yet
+   */
+  public long getFinishTime() {
+    return finishTime;
+  }
+
+  public RMAppAttemptState getFinalState() {
+    return finalState;
+  }
+
+  public int getNumMaps() {
+    return numMaps;
+  }
+
+  public int getNumReduces() {
+    return numReduces;
+  }
+
+  /**
+   * @return the memory of the containers the job holds
+   */
+  public int getAllocatedMB() {
+    return allocatedMB;
+  }
+}
@@ -0,0 +1,244 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.sls;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.hadoop.net.Node;
+import org.apache.hadoop.net.NodeBase;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerState;
+import org.apache.hadoop.yarn.api.records.ContainerStatus;
+import org.apache.hadoop.yarn.api.records.NodeHealthStatus;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.api.records.NodeState;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.hadoop.yarn.factory.providers.RecordFactoryProvider;
+import org.apache.hadoop.yarn.server.api.records.HeartbeatResponse;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeCleanContainerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.UpdatedContainerInfo;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.ResourceScheduler;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeUpdateSchedulerEvent;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+
+/**
+ * A simulated NodeManager. It stands in for both the NodeManager and its
+ * {@link RMNode}: on every heartbeat it reports the containers launched and
+ * completed since the last one straight to the scheduler, without going
+ * through the ResourceTracker or the RMNode state machine. Containers end
+ * when their simulated duration is up, or when the RM asks for them to be
+ * cleaned up, e.g. after preemption.
+ */
+public class NMSimulator implements RMNode, EventHandler<RMNodeEvent> {
+
+  private static class SimulatedContainer {
+    final Container container;
+    final long endTime;
+    final MRAMSimulator am;
+
+    SimulatedContainer(Container container, long endTime, MRAMSimulator am) {
+      this.container = container;
+      this.endTime = endTime;
+      this.am = am;
+    }
+  }
+
+  private final NodeId nodeId;
+  private final String rackName;
+  private final Resource capability;
+  private final Node node;
+  private final NodeHealthStatus nodeHealthStatus;
+
+  private final Map<ContainerId, SimulatedContainer> running =
+      new LinkedHashMap<ContainerId, SimulatedContainer>();
+  private List<ContainerStatus> launched = new ArrayList<ContainerStatus>();
+  private List<ContainerStatus> completed = new ArrayList<ContainerStatus>();
+  // filled in by the RM's dispatcher thread
+  private final Queue<ContainerId> toCleanUp =
+      new ConcurrentLinkedQueue<ContainerId>();
+
+  public NMSimulator(String hostName, String rackName, Resource capability) {
+    this.nodeId = BuilderUtils.newNodeId(hostName, 0);
+    this.rackName = rackName;
+    this.capability = capability;
+    this.node = new NodeBase(hostName, rackName);
+    this.nodeHealthStatus = RecordFactoryProvider.getRecordFactory(null)
+        .newRecordInstance(NodeHealthStatus.class);
+    nodeHealthStatus.setIsNodeHealthy(true);
+    nodeHealthStatus.setHealthReport("");
+  }
+
+  /**
+   * Start running a container until the given simulated time.
+   */
+  void launchContainer(Container container, long endTime, MRAMSimulator am) {
+    running.put(container.getId(),
+        new SimulatedContainer(container, endTime, am));
+    launched.add(BuilderUtils.newContainerStatus(container.getId(),
+        ContainerState.RUNNING, "", 0));
+  }
+
+  /**
+   * Stop a container without reporting it, because the scheduler already
+   * knows it is gone.
+   */
+  void stopContainer(ContainerId containerId) {
+    running.remove(containerId);
+  }
+
+  /**
+   * @return the number of containers running on the node
+   */
+  int getNumRunningContainers() {
+    return running.size();
+  }
+
+  /**
+   * Complete the containers which are due or were cleaned up by the RM,
+   * let their AMs know, and report them to the scheduler.
+   */
+  void heartbeat(long now, ResourceScheduler scheduler,
+      LatencyStats nodeUpdateLatency) {
+    ContainerId cleanedUp;
+    while ((cleanedUp = toCleanUp.poll()) != null) {
+      SimulatedContainer killed = running.remove(cleanedUp);
+      if (killed != null) {
+        killed.am.containerKilled(killed.container, now);
+      }
+    }
+    for (Iterator<SimulatedContainer> i = running.values().iterator();
+         i.hasNext();) {
+      SimulatedContainer c = i.next();
+      if (c.endTime <= now) {
+        i.remove();
+        completed.add(BuilderUtils.newContainerStatus(c.container.getId(),
+            ContainerState.COMPLETE, "", 0));
+        c.am.containerCompleted(c.container, now);
+      }
+    }
+    long start = System.nanoTime();
+    scheduler.handle(new NodeUpdateSchedulerEvent(this));
+    nodeUpdateLatency.add(System.nanoTime() - start);
+  }
+
+  @Override
+  public void handle(RMNodeEvent event) {
+    if (event instanceof RMNodeCleanContainerEvent) {
+      toCleanUp.add(((RMNodeCleanContainerEvent) event).getContainerId());
+    }
+  }
+
+  @Override
+  public List<UpdatedContainerInfo> pullContainerUpdates() {
+    if (launched.isEmpty() && completed.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<UpdatedContainerInfo> updates = Collections.singletonList(
+        new UpdatedContainerInfo(launched, completed));
+    launched = new ArrayList<ContainerStatus>();
+    completed = new ArrayList<ContainerStatus>();
+    return updates;
+  }
+
+  @Override
+  public NodeId getNodeID() {
+    return nodeId;
+  }
+
+  @Override
+  public String getHostName() {
+    return nodeId.getHost();
+  }
+
+  @Override
+  public int getCommandPort() {
+    return nodeId.getPort();
+  }
+
+  @Override
+  public int getHttpPort() {
+    return 0;
+  }
+
+  @Override
+  public String getNodeAddress() {
+    return nodeId.toString();
+  }
+
+  @Override
+  public String getHttpAddress() {
+    return getHostName() + ":0";
+  }
+
+  @Override
+  public NodeHealthStatus getNodeHealthStatus() {
+    return nodeHealthStatus;
+  }
+
+  @Override
+  public Resource getTotalCapability() {
+    return capability;
+  }
+
+  @Override
+  public String getRackName() {
+    return rackName;
+  }
+
+  @Override
+  public Node getNode() {
+    return node;
+  }
+
+  @Override
+  public NodeState getState() {
+    return NodeState.RUNNING;
+  }
+
+  @Override
+  public List<ContainerId> getContainersToCleanUp() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public List<ApplicationId> getAppsToCleanup() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public void updateHeartbeatResponseForCleanup(HeartbeatResponse response) {
+  }
+
+  @Override
+  public HeartbeatResponse getLastHeartBeatResponse() {
+    return null;
+  }
+}
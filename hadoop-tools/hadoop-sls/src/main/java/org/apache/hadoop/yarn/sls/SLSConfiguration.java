@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.sls;
+
+/**
+ * Configuration keys of the scheduler load simulator. All times are in
+ * simulated milliseconds.
+ */
+public class SLSConfiguration {
+  public static final String PREFIX = "yarn.sls.";
+
+  /** Memory of each simulated NodeManager. */
+  public static final String NM_MEMORY_MB = PREFIX + "nm.memory.mb";
+  public static final int DEFAULT_NM_MEMORY_MB = 10240;
+
+  /** Virtual cores of each simulated NodeManager. */
+  public static final String NM_VCORES = PREFIX + "nm.vcores";
+  public static final int DEFAULT_NM_VCORES = 10;
+
+  /** Interval between the heartbeats of each simulated NodeManager. */
+  public static final String NM_HEARTBEAT_INTERVAL_MS =
+      PREFIX + "nm.heartbeat.interval.ms";
+  public static final long DEFAULT_NM_HEARTBEAT_INTERVAL_MS = 1000;
+
+  /** Interval between the allocate calls of each simulated AM. */
+  public static final String AM_HEARTBEAT_INTERVAL_MS =
+      PREFIX + "am.heartbeat.interval.ms";
+  public static final long DEFAULT_AM_HEARTBEAT_INTERVAL_MS = 1000;
+
+  /** Memory of the container each simulated AM runs in. */
+  public static final String AM_CONTAINER_MEMORY_MB =
+      PREFIX + "am.container.memory.mb";
+  public static final int DEFAULT_AM_CONTAINER_MEMORY_MB = 1024;
+
+  /**
+   * Memory of the task containers, for jobs whose trace does not give
+   * their map or reduce memory.
+   */
+  public static final String CONTAINER_MEMORY_MB =
+      PREFIX + "container.memory.mb";
+  public static final int DEFAULT_CONTAINER_MEMORY_MB = 1024;
+
+  /** Virtual cores of every container. */
+  public static final String CONTAINER_VCORES = PREFIX + "container.vcores";
+  public static final int DEFAULT_CONTAINER_VCORES = 1;
+
+  /**
+   * Interval at which the fair scheduler recomputes fair shares, which the
+   * RM otherwise does on its own thread in wall-clock time.
+   */
+  public static final String FAIR_SCHEDULER_UPDATE_INTERVAL_MS =
+      PREFIX + "fairscheduler.update.interval.ms";
+  public static final long DEFAULT_FAIR_SCHEDULER_UPDATE_INTERVAL_MS = 500;
+
+  /** Interval between two lines of the metrics output. */
+  public static final String METRICS_INTERVAL_MS =
+      PREFIX + "metrics.interval.ms";
+  public static final long DEFAULT_METRICS_INTERVAL_MS = 1000;
+}
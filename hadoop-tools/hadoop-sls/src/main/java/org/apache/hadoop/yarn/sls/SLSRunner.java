@@ -0,0 +1,503 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.sls;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.tools.rumen.JobTraceReader;
+import org.apache.hadoop.tools.rumen.LoggedJob;
+import org.apache.hadoop.tools.rumen.LoggedLocation;
+import org.apache.hadoop.tools.rumen.LoggedTask;
+import org.apache.hadoop.tools.rumen.LoggedTaskAttempt;
+import org.apache.hadoop.tools.rumen.Pre21JobHistoryConstants;
+import org.apache.hadoop.tools.rumen.datatypes.NodeName;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.server.resourcemanager.ResourceManager;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.ResourceScheduler;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeAddedSchedulerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.fair.FairScheduler;
+import org.apache.hadoop.yarn.service.Service;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+
+/**
+ * The scheduler load simulator. It replays the jobs of Rumen traces against
+ * the scheduler configured by <code>yarn.resourcemanager.scheduler.class
+ * </code>, with simulated NodeManagers and MapReduce AMs, on a simulated
+ * clock. There are no RPCs and no other RM services: nodes heartbeat and
+ * AMs call allocate on the scheduler directly, on a single thread, so one
+ * JVM can simulate thousands of nodes in far less time than the trace
+ * took.
+ *
+ * The simulator writes to its output directory
+ * <ul>
+ * <li><code>metrics.csv</code>: cluster and per queue usage, running jobs
+ * and containers allocated, at every metrics interval of simulated
+ * time</li>
+ * <li><code>jobs.csv</code>: submit, AM start and finish time of every
+ * job</li>
+ * </ul>
+ * and prints how long the scheduler took to handle node heartbeats and
+ * allocate calls, in wall-clock time.
+ *
+ * Usage: SLSRunner -inputrumen &lt;trace&gt;[,&lt;trace&gt;...]
+ * -output &lt;dir&gt; [-nodes &lt;count&gt;]
+ */
+public class SLSRunner extends Configured implements Tool {
+  private static final Log LOG = LogFactory.getLog(SLSRunner.class);
+
+  static final String DEFAULT_QUEUE = "default";
+  static final String DEFAULT_USER = "default";
+  static final String DEFAULT_RACK = "/default-rack";
+  static final int NODES_PER_RACK = 40;
+
+  private final TaskRunner taskRunner = new TaskRunner();
+  private final Map<NodeId, NMSimulator> nms =
+      new LinkedHashMap<NodeId, NMSimulator>();
+  private final List<MRAMSimulator> ams = new ArrayList<MRAMSimulator>();
+  private final LatencyStats nodeUpdateLatency =
+      new LatencyStats("Node heartbeats");
+  private final LatencyStats allocateLatency =
+      new LatencyStats("AM allocate calls");
+  private ResourceManager rm;
+  private ResourceScheduler scheduler;
+  private long amHeartbeatInterval;
+  private int finishedJobs = 0;
+  private long containersAllocated = 0;
+  private long containersAllocatedAtLastSample = 0;
+  private long totalMB = 0;
+  private PrintWriter jobsOut;
+  private PrintWriter metricsOut;
+  private List<String> queues;
+
+  public SLSRunner() {
+  }
+
+  public SLSRunner(Configuration conf) {
+    super(conf);
+  }
+
+  ResourceScheduler getScheduler() {
+    return scheduler;
+  }
+
+  TaskRunner getTaskRunner() {
+    return taskRunner;
+  }
+
+  NMSimulator getNM(NodeId nodeId) {
+    return nms.get(nodeId);
+  }
+
+  LatencyStats getAllocateLatency() {
+    return allocateLatency;
+  }
+
+  LatencyStats getNodeUpdateLatency() {
+    return nodeUpdateLatency;
+  }
+
+  long getAMHeartbeatInterval() {
+    return amHeartbeatInterval;
+  }
+
+  List<MRAMSimulator> getAMs() {
+    return ams;
+  }
+
+  long getContainersAllocated() {
+    return containersAllocated;
+  }
+
+  void containerAllocated() {
+    containersAllocated++;
+  }
+
+  void jobFinished(MRAMSimulator am) {
+    finishedJobs++;
+    jobsOut.println(am.getJobId() + "," + am.getQueue() + "," + am.getUser()
+        + "," + am.getNumMaps() + "," + am.getNumReduces() + ","
+        + am.getSubmitTime() + "," + am.getAMStartTime() + ","
+        + am.getFinishTime() + "," + am.getFinalState());
+    if (finishedJobs == ams.size()) {
+      writeMetrics();
+      taskRunner.stop();
+    }
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    List<Path> traces = new ArrayList<Path>();
+    String output = null;
+    int numNodes = 0;
+    for (int i = 0; i < args.length; i++) {
+      if ("-inputrumen".equals(args[i]) && i + 1 < args.length) {
+        for (String trace : args[++i].split(",")) {
+          traces.add(new Path(trace));
+        }
+      } else if ("-output".equals(args[i]) && i + 1 < args.length) {
+        output = args[++i];
+      } else if ("-nodes".equals(args[i]) && i + 1 < args.length) {
+        numNodes = Integer.parseInt(args[++i]);
+      } else {
+        printUsage();
+        return -1;
+      }
+    }
+    if (traces.isEmpty() || output == null) {
+      printUsage();
+      return -1;
+    }
+    simulate(traces, numNodes, new File(output));
+    return 0;
+  }
+
+  private static void printUsage() {
+    System.err.println("Usage: SLSRunner -inputrumen <trace>[,<trace>...]"
+        + " -output <dir> [-nodes <count>]");
+    System.err.println("  -nodes  simulate this many nodes instead of the"
+        + " ones found in the traces");
+  }
+
+  /**
+   * Replay the jobs of the given traces and write the results to the given
+   * directory.
+   * @param numNodes the number of nodes to simulate, or 0 to simulate the
+   *        nodes the traces ran on
+   */
+  public void simulate(List<Path> traces, int numNodes, File outputDir)
+      throws IOException {
+    Configuration conf = new YarnConfiguration(getConf());
+    amHeartbeatInterval = conf.getLong(
+        SLSConfiguration.AM_HEARTBEAT_INTERVAL_MS,
+        SLSConfiguration.DEFAULT_AM_HEARTBEAT_INTERVAL_MS);
+
+    rm = new ResourceManager();
+    rm.init(conf);
+    // only the dispatcher is needed, to carry the scheduler's events
+    ((Service) rm.getRMContext().getDispatcher()).start();
+    scheduler = rm.getResourceScheduler();
+
+    Map<String, String> nodes = new TreeMap<String, String>();
+    loadJobs(conf, traces, nodes);
+    if (numNodes > 0) {
+      nodes.clear();
+      for (int i = 0; i < numNodes; i++) {
+        nodes.put("host" + i, "/rack" + (i / NODES_PER_RACK));
+      }
+    }
+    if (nodes.isEmpty()) {
+      throw new IOException("No nodes found in the traces, use -nodes");
+    }
+
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException("Cannot create " + outputDir);
+    }
+    jobsOut = new PrintWriter(new FileWriter(new File(outputDir, "jobs.csv")));
+    metricsOut =
+        new PrintWriter(new FileWriter(new File(outputDir, "metrics.csv")));
+    try {
+      jobsOut.println("job,queue,user,maps,reduces,submit_ms,am_start_ms,"
+          + "finish_ms,state");
+      StringBuilder header = new StringBuilder("time_ms,allocated_mb,"
+          + "available_mb,utilization,running_containers,"
+          + "containers_allocated,running_jobs,finished_jobs");
+      for (String queue : queues) {
+        header.append(",queue.").append(queue).append(".allocated_mb");
+      }
+      metricsOut.println(header);
+
+      startNodes(conf, nodes);
+      scheduleHousekeeping(conf);
+      for (final MRAMSimulator am : ams) {
+        taskRunner.schedule(am.getSubmitTime(), new Runnable() {
+          @Override
+          public void run() {
+            am.submit();
+          }
+        });
+      }
+
+      LOG.info("Simulating " + ams.size() + " jobs on " + nms.size()
+          + " nodes with " + scheduler.getClass().getSimpleName());
+      long start = Time.monotonicNow();
+      if (!ams.isEmpty()) {
+        taskRunner.run();
+      }
+      long elapsed = Time.monotonicNow() - start;
+      printSummary(elapsed);
+    } finally {
+      jobsOut.close();
+      metricsOut.close();
+      ((Service) rm.getRMContext().getDispatcher()).stop();
+    }
+  }
+
+  /**
+   * Create an AM for every job of the traces, with its submit time relative
+   * to the first job's, and collect the nodes the jobs ran on.
+   */
+  private void loadJobs(Configuration conf, List<Path> traces,
+      Map<String, String> nodes) throws IOException {
+    List<LoggedJob> jobs = new ArrayList<LoggedJob>();
+    long firstSubmit = Long.MAX_VALUE;
+    for (Path trace : traces) {
+      JobTraceReader reader = new JobTraceReader(trace, conf);
+      try {
+        LoggedJob job;
+        while ((job = reader.getNext()) != null) {
+          jobs.add(job);
+          firstSubmit = Math.min(firstSubmit, job.getSubmitTime());
+        }
+      } finally {
+        reader.close();
+      }
+    }
+
+    int containerVCores = conf.getInt(SLSConfiguration.CONTAINER_VCORES,
+        SLSConfiguration.DEFAULT_CONTAINER_VCORES);
+    int containerMB = conf.getInt(SLSConfiguration.CONTAINER_MEMORY_MB,
+        SLSConfiguration.DEFAULT_CONTAINER_MEMORY_MB);
+    Resource amResource = BuilderUtils.newResource(
+        conf.getInt(SLSConfiguration.AM_CONTAINER_MEMORY_MB,
+            SLSConfiguration.DEFAULT_AM_CONTAINER_MEMORY_MB), containerVCores);
+    long clusterTimestamp = System.currentTimeMillis();
+    TreeSet<String> queueNames = new TreeSet<String>();
+    int appId = 0;
+    for (LoggedJob job : jobs) {
+      String queue = job.getQueue() == null ? DEFAULT_QUEUE
+          : job.getQueue().getValue();
+      String user = job.getUser() == null ? DEFAULT_USER
+          : job.getUser().getValue();
+      queueNames.add(queue);
+      ApplicationId applicationId =
+          BuilderUtils.newApplicationId(clusterTimestamp, ++appId);
+      Resource mapResource = BuilderUtils.newResource(job.getJobMapMB() > 0
+          ? job.getJobMapMB() : containerMB, containerVCores);
+      Resource reduceResource = BuilderUtils.newResource(
+          job.getJobReduceMB() > 0 ? job.getJobReduceMB() : containerMB,
+          containerVCores);
+      ams.add(new MRAMSimulator(this, String.valueOf(job.getJobID()), user,
+          queue, job.getSubmitTime() - firstSubmit,
+          BuilderUtils.newApplicationAttemptId(applicationId, 1),
+          amResource, mapResource, reduceResource,
+          toTasks(job.getMapTasks(), nodes),
+          toTasks(job.getReduceTasks(), nodes)));
+    }
+    queues = new ArrayList<String>(queueNames);
+  }
+
+  private static List<MRAMSimulator.SimulatedTask> toTasks(
+      List<LoggedTask> loggedTasks, Map<String, String> nodes) {
+    List<MRAMSimulator.SimulatedTask> tasks =
+        new ArrayList<MRAMSimulator.SimulatedTask>();
+    if (loggedTasks == null) {
+      return tasks;
+    }
+    for (LoggedTask loggedTask : loggedTasks) {
+      long duration = loggedTask.getFinishTime() - loggedTask.getStartTime();
+      for (LoggedTaskAttempt attempt : loggedTask.getAttempts()) {
+        if (attempt.getHostName() != null) {
+          addNode(nodes, attempt.getHostName().getRackName(),
+              attempt.getHostName().getHostName());
+        }
+        if (attempt.getResult() == Pre21JobHistoryConstants.Values.SUCCESS) {
+          duration = attempt.getFinishTime() - attempt.getStartTime();
+        }
+      }
+      List<String> hosts = new ArrayList<String>();
+      List<String> racks = new ArrayList<String>();
+      if (loggedTask.getPreferredLocations() != null) {
+        for (LoggedLocation location : loggedTask.getPreferredLocations()) {
+          List<NodeName> layers = location.getLayers();
+          if (layers == null || layers.size() < 2) {
+            continue;
+          }
+          String rack = addNode(nodes, layers.get(0).getValue(),
+              layers.get(layers.size() - 1).getValue());
+          hosts.add(layers.get(layers.size() - 1).getValue());
+          if (!racks.contains(rack)) {
+            racks.add(rack);
+          }
+        }
+      }
+      tasks.add(new MRAMSimulator.SimulatedTask(Math.max(0, duration),
+          hosts, racks));
+    }
+    return tasks;
+  }
+
+  /**
+   * Remember the rack of a host.
+   * @return the rack, in the form the scheduler knows it by
+   */
+  private static String addNode(Map<String, String> nodes, String rack,
+      String host) {
+    if (rack == null || rack.isEmpty()) {
+      rack = DEFAULT_RACK;
+    } else if (!rack.startsWith("/")) {
+      rack = "/" + rack;
+    }
+    if (host != null && !nodes.containsKey(host)) {
+      nodes.put(host, rack);
+    }
+    return rack;
+  }
+
+  /**
+   * Add the nodes to the scheduler and start their heartbeats, spread over
+   * the heartbeat interval.
+   */
+  private void startNodes(Configuration conf, Map<String, String> nodes) {
+    int memory = conf.getInt(SLSConfiguration.NM_MEMORY_MB,
+        SLSConfiguration.DEFAULT_NM_MEMORY_MB);
+    int vcores = conf.getInt(SLSConfiguration.NM_VCORES,
+        SLSConfiguration.DEFAULT_NM_VCORES);
+    final long interval = conf.getLong(
+        SLSConfiguration.NM_HEARTBEAT_INTERVAL_MS,
+        SLSConfiguration.DEFAULT_NM_HEARTBEAT_INTERVAL_MS);
+    Random random = new Random(0);
+    for (Map.Entry<String, String> e : nodes.entrySet()) {
+      final NMSimulator nm = new NMSimulator(e.getKey(), e.getValue(),
+          BuilderUtils.newResource(memory, vcores));
+      nms.put(nm.getNodeID(), nm);
+      totalMB += memory;
+      // so that the RM's container cleanup events reach the node
+      rm.getRMContext().getRMNodes().put(nm.getNodeID(), nm);
+      scheduler.handle(new NodeAddedSchedulerEvent(nm));
+      taskRunner.schedule((long) (random.nextDouble() * interval),
+          new Runnable() {
+        @Override
+        public void run() {
+          nm.heartbeat(taskRunner.getTime(), scheduler, nodeUpdateLatency);
+          taskRunner.schedule(taskRunner.getTime() + interval, this);
+        }
+      });
+    }
+  }
+
+  /**
+   * Schedule the metrics output, and the fair scheduler's updates, which it
+   * would otherwise do in wall-clock time.
+   */
+  private void scheduleHousekeeping(Configuration conf) {
+    final long metricsInterval = conf.getLong(
+        SLSConfiguration.METRICS_INTERVAL_MS,
+        SLSConfiguration.DEFAULT_METRICS_INTERVAL_MS);
+    taskRunner.schedule(0, new Runnable() {
+      @Override
+      public void run() {
+        writeMetrics();
+        taskRunner.schedule(taskRunner.getTime() + metricsInterval, this);
+      }
+    });
+
+    if (scheduler instanceof FairScheduler) {
+      final FairScheduler fairScheduler = (FairScheduler) scheduler;
+      final long updateInterval = conf.getLong(
+          SLSConfiguration.FAIR_SCHEDULER_UPDATE_INTERVAL_MS,
+          SLSConfiguration.DEFAULT_FAIR_SCHEDULER_UPDATE_INTERVAL_MS);
+      taskRunner.schedule(0, new Runnable() {
+        @Override
+        public void run() {
+          fairScheduler.update();
+          taskRunner.schedule(taskRunner.getTime() + updateInterval, this);
+        }
+      });
+    }
+  }
+
+  private void writeMetrics() {
+    long allocatedMB = 0;
+    int runningJobs = 0;
+    Map<String, Long> queueMB = new TreeMap<String, Long>();
+    for (String queue : queues) {
+      queueMB.put(queue, 0L);
+    }
+    for (MRAMSimulator am : ams) {
+      allocatedMB += am.getAllocatedMB();
+      queueMB.put(am.getQueue(), queueMB.get(am.getQueue())
+          + am.getAllocatedMB());
+      if (am.getAMStartTime() >= 0 && !am.isFinished()) {
+        runningJobs++;
+      }
+    }
+    int runningContainers = 0;
+    for (NMSimulator nm : nms.values()) {
+      runningContainers += nm.getNumRunningContainers();
+    }
+    StringBuilder line = new StringBuilder();
+    line.append(taskRunner.getTime()).append(',')
+        .append(allocatedMB).append(',')
+        .append(totalMB - allocatedMB).append(',')
+        .append(String.format("%.3f", totalMB == 0 ? 0.0
+            : (double) allocatedMB / totalMB)).append(',')
+        .append(runningContainers).append(',')
+        .append(containersAllocated - containersAllocatedAtLastSample)
+        .append(',')
+        .append(runningJobs).append(',')
+        .append(finishedJobs);
+    for (Long mb : queueMB.values()) {
+      line.append(',').append(mb);
+    }
+    metricsOut.println(line);
+    containersAllocatedAtLastSample = containersAllocated;
+  }
+
+  private void printSummary(long elapsedMillis) {
+    long simulatedMillis = taskRunner.getTime();
+    StringBuilder summary = new StringBuilder();
+    summary.append("Simulated ").append(simulatedMillis / 1000)
+        .append("s in ").append(elapsedMillis / 1000.0).append("s\n");
+    summary.append("Jobs: ").append(finishedJobs).append(" of ")
+        .append(ams.size()).append(" finished\n");
+    summary.append("Containers allocated: ").append(containersAllocated)
+        .append(String.format(" (%.1f per simulated second)\n",
+            simulatedMillis == 0 ? 0.0
+                : containersAllocated * 1000.0 / simulatedMillis));
+    summary.append(nodeUpdateLatency).append('\n');
+    summary.append(allocateLatency);
+    System.out.println(summary);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new SLSRunner(), args);
+    System.exit(res);
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.sls;
+
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.yarn.Clock;
+
+/**
+ * Runs tasks in the order of their simulated start time, on the calling
+ * thread. The simulated clock jumps to the start time of each task as it is
+ * run, so the simulation goes as fast as the tasks themselves allow. Tasks
+ * which are due at the same time run in the order they were scheduled.
+ */
+public class TaskRunner implements Clock {
+
+  private static class ScheduledTask implements Comparable<ScheduledTask> {
+    final long time;
+    final long seq;
+    final Runnable task;
+
+    ScheduledTask(long time, long seq, Runnable task) {
+      this.time = time;
+      this.seq = seq;
+      this.task = task;
+    }
+
+    @Override
+    public int compareTo(ScheduledTask other) {
+      if (time != other.time) {
+        return time < other.time ? -1 : 1;
+      }
+      return seq < other.seq ? -1 : (seq == other.seq ? 0 : 1);
+    }
+  }
+
+  private final PriorityQueue<ScheduledTask> queue =
+      new PriorityQueue<ScheduledTask>();
+  private long now = 0;
+  private long seq = 0;
+  private boolean stopped = false;
+
+  /**
+   * @return the current simulated time
+   */
+  @Override
+  public long getTime() {
+    return now;
+  }
+
+  /**
+   * Schedule a task to run at the given simulated time, or right away if
+   * that time has passed.
+   */
+  public void schedule(long time, Runnable task) {
+    queue.add(new ScheduledTask(Math.max(time, now), seq++, task));
+  }
+
+  /**
+   * Run tasks until there are none left or {@link #stop()} is called.
+   */
+  public void run() {
+    while (!stopped && !queue.isEmpty()) {
+      ScheduledTask next = queue.poll();
+      now = next.time;
+      next.task.run();
+    }
+  }
+
+  /**
+   * Stop running tasks once the current one is done.
+   */
+  public void stop() {
+    stopped = true;
+  }
+}
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.sls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttemptState;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.ResourceScheduler;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.capacity.CapacityScheduler;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.capacity.CapacitySchedulerConfiguration;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.fair.FairScheduler;
+import org.junit.Test;
+
+public class TestSLSRunner {
+  private static final File TEST_DIR = new File(
+      System.getProperty("test.build.data", "target/test/data"), "sls");
+
+  // 3 jobs of 6 maps and 2 reduces, each with its AM
+  private static final int TRACE_JOBS = 3;
+  private static final int TRACE_CONTAINERS = TRACE_JOBS * (1 + 6 + 2);
+
+  private static Path getTrace() {
+    return new Path(new File(TestSLSRunner.class.getResource(
+        "/sls-test-trace.json").getPath()).getAbsolutePath());
+  }
+
+  private SLSRunner simulate(Configuration conf, int numNodes, String name)
+      throws IOException {
+    SLSRunner runner = new SLSRunner(conf);
+    runner.simulate(Collections.singletonList(getTrace()), numNodes,
+        new File(TEST_DIR, name));
+    return runner;
+  }
+
+  private static List<String> readLines(File file) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader in = new BufferedReader(new FileReader(file));
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      in.close();
+    }
+    return lines;
+  }
+
+  private void checkRun(SLSRunner runner, String name) throws IOException {
+    assertEquals(TRACE_JOBS, runner.getAMs().size());
+    for (MRAMSimulator am : runner.getAMs()) {
+      assertEquals(RMAppAttemptState.FINISHED, am.getFinalState());
+      assertTrue(am.getAMStartTime() >= am.getSubmitTime());
+      // maps take at least 10s and reduces 5s
+      assertTrue(am.getFinishTime() >= am.getAMStartTime() + 15000);
+      assertEquals(0, am.getAllocatedMB());
+    }
+    assertEquals(TRACE_CONTAINERS, runner.getContainersAllocated());
+    assertTrue(runner.getNodeUpdateLatency().getCount() > 0);
+    assertTrue(runner.getAllocateLatency().getCount() > 0);
+
+    File outputDir = new File(TEST_DIR, name);
+    List<String> jobs = readLines(new File(outputDir, "jobs.csv"));
+    assertEquals(TRACE_JOBS + 1, jobs.size());
+    List<String> metrics = readLines(new File(outputDir, "metrics.csv"));
+    assertTrue(metrics.size() > 2);
+    assertTrue(metrics.get(0).endsWith(",queue.default.allocated_mb"));
+  }
+
+  private static Configuration createConf(
+      Class<? extends ResourceScheduler> scheduler) {
+    Configuration conf = new YarnConfiguration();
+    conf.setClass(YarnConfiguration.RM_SCHEDULER, scheduler,
+        ResourceScheduler.class);
+    return conf;
+  }
+
+  @Test (timeout = 60000)
+  public void testFairScheduler() throws Exception {
+    Configuration conf = createConf(FairScheduler.class);
+    SLSRunner runner = simulate(conf, 0, "fair");
+    checkRun(runner, "fair");
+  }
+
+  @Test (timeout = 60000)
+  public void testCapacityScheduler() throws Exception {
+    Configuration conf = createConf(CapacityScheduler.class);
+    conf.set(CapacitySchedulerConfiguration.PREFIX
+        + CapacitySchedulerConfiguration.ROOT + ".queues", "default");
+    conf.set(CapacitySchedulerConfiguration.PREFIX
+        + CapacitySchedulerConfiguration.ROOT + ".default.capacity", "100");
+    SLSRunner runner = simulate(conf, 0, "capacity");
+    checkRun(runner, "capacity");
+  }
+
+  @Test (timeout = 60000)
+  public void testGeneratedNodes() throws Exception {
+    Configuration conf = createConf(FairScheduler.class);
+    conf.setInt(SLSConfiguration.NM_MEMORY_MB, 2048);
+    SLSRunner runner = simulate(conf, 100, "nodes");
+    checkRun(runner, "nodes");
+  }
+
+  @Test
+  public void testTaskRunnerOrder() {
+    final TaskRunner taskRunner = new TaskRunner();
+    final List<String> ran = new ArrayList<String>();
+    for (final String name : new String[] {"b", "c"}) {
+      taskRunner.schedule(10, new Runnable() {
+        @Override
+        public void run() {
+          ran.add(name + "@" + taskRunner.getTime());
+        }
+      });
+    }
+    taskRunner.schedule(5, new Runnable() {
+      @Override
+      public void run() {
+        ran.add("a@" + taskRunner.getTime());
+        // in the past, so runs right away
+        taskRunner.schedule(0, new Runnable() {
+          @Override
+          public void run() {
+            ran.add("a2@" + taskRunner.getTime());
+          }
+        });
+      }
+    });
+    taskRunner.run();
+    assertEquals("[a@5, a2@5, b@10, c@10]", ran.toString());
+  }
+}
@@ -200,6 +200,11 @@ goto :eof
   set YARN_OPTS=%YARN_OPTS% %YARN_CLIENT_OPTS%
   goto :eof
 
+:convertlogs
+  set CLASS=org.apache.hadoop.yarn.logaggregation.AggregatedLogConverter
+  set YARN_OPTS=%YARN_OPTS% %YARN_CLIENT_OPTS%
+  goto :eof
+
 :daemonlog
   set CLASS=org.apache.hadoop.log.LogLevel
   set YARN_OPTS=%YARN_OPTS% %YARN_CLIENT_OPTS%
@@ -240,6 +245,7 @@ goto :eof
   @echo   application          prints application(s) report/kill application
   @echo   node                 prints node report(s)
   @echo   logs                 dump container logs
+  @echo   convertlogs          convert aggregated logs to the indexed format
   @echo   classpath            prints the class path needed to get the
   @echo                        Hadoop jar and the required libraries
   @echo   daemonlog            get/set the log level for each daemon
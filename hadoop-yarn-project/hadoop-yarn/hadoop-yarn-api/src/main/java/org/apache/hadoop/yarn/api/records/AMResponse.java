@@ -37,6 +37,10 @@
  *     <li>
  *       A reboot flag to let the <code>ApplicationMaster</code> know that its 
  *       horribly out of sync and needs to reboot.</li>
+ *     <li>
+ *       A resync flag to let the <code>ApplicationMaster</code> know that the
+ *       <code>ResourceManager</code> restarted and needs it to register and
+ *       send all of its outstanding requests again.</li>
  *     <li>A list of newly allocated {@link Container}.</li>
  *     <li>A list of completed {@link Container}.</li>
  *     <li>
@@ -67,6 +71,22 @@ public interface AMResponse {
   @Unstable
   public void setReboot(boolean reboot);
 
+  /**
+   * Should the <code>ApplicationMaster</code> register again and resend all
+   * its outstanding resource requests, because the
+   * <code>ResourceManager</code> restarted without killing it?
+   * 
+   * @return <code>true</code> if the <code>ApplicationMaster</code> should
+   *         resync, <code>false</code> otherwise
+   */
+  @Public
+  @Unstable
+  public boolean getResync();
+
+  @Private
+  @Unstable
+  public void setResync(boolean resync);
+
   /**
    * Get the <em>last response id</em>.
    * @return <em>last response id</em>
@@ -159,4 +159,18 @@ public interface Container extends Comparable<Container> {
   @Private
   @Unstable
   void setContainerStatus(ContainerStatus containerStatus);
+  
+  /**
+   * Is the container <em>opportunistic</em>, i.e. queued at the
+   * <code>NodeManager</code> until resources free up there and preempted
+   * by the guaranteed containers it launches?
+   * @return <code>true</code> if the container is opportunistic
+   */
+  @Public
+  @Unstable
+  boolean getOpportunistic();
+  
+  @Private
+  @Unstable
+  void setOpportunistic(boolean opportunistic);
 }
@@ -24,6 +24,7 @@
 
 import org.apache.hadoop.classification.InterfaceAudience.Public;
 import org.apache.hadoop.classification.InterfaceStability.Stable;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
 import org.apache.hadoop.yarn.api.ContainerManager;
 
 /**
@@ -202,4 +203,23 @@ public interface ContainerLaunchContext {
   @Public
   @Stable
   public void setApplicationACLs(Map<ApplicationAccessType, String> acls);
+
+  /**
+   * Is the container <em>opportunistic</em>? An opportunistic container is
+   * queued by the <code>NodeManager</code> until it has the resources to
+   * run it, and is killed to make room for guaranteed containers.
+   * @return <code>true</code> if the container is opportunistic
+   */
+  @Public
+  @Unstable
+  boolean getOpportunistic();
+
+  /**
+   * Set whether the container is <em>opportunistic</em>, as it was
+   * allocated by the <code>ResourceManager</code>.
+   * @param opportunistic <code>true</code> if the container is opportunistic
+   */
+  @Public
+  @Unstable
+  void setOpportunistic(boolean opportunistic);
 }
@@ -20,6 +20,7 @@
 
 import org.apache.hadoop.classification.InterfaceAudience.Public;
 import org.apache.hadoop.classification.InterfaceStability.Stable;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
 import org.apache.hadoop.yarn.api.AMRMProtocol;
 
 /**
@@ -122,6 +123,26 @@ public abstract class ResourceRequest implements Comparable<ResourceRequest> {
   @Stable
   public abstract void setNumContainers(int numContainers);
 
+  /**
+   * Get whether <em>opportunistic</em> containers are requested. These are
+   * placed on lightly loaded nodes without waiting for the scheduler, and
+   * queued by the <code>NodeManager</code> until it has the resources to
+   * run them. They may be killed to make room for guaranteed containers.
+   * @return <code>true</code> if opportunistic containers are requested
+   */
+  @Public
+  @Unstable
+  public abstract boolean getOpportunistic();
+
+  /**
+   * Set whether <em>opportunistic</em> containers are requested.
+   * @param opportunistic <code>true</code> if opportunistic containers are
+   *                      requested
+   */
+  @Public
+  @Unstable
+  public abstract void setOpportunistic(boolean opportunistic);
+
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -118,6 +118,18 @@ public synchronized void setReboot(boolean reboot) {
     maybeInitBuilder();
     builder.setReboot((reboot));
   }
+
+  @Override
+  public synchronized boolean getResync() {
+    AMResponseProtoOrBuilder p = viaProto ? proto : builder;
+    return (p.getResync());
+  }
+
+  @Override
+  public synchronized void setResync(boolean resync) {
+    maybeInitBuilder();
+    builder.setResync((resync));
+  }
   @Override
   public synchronized int getResponseId() {
     AMResponseProtoOrBuilder p = viaProto ? proto : builder;
@@ -197,6 +197,19 @@ public void setUser(String user) {
     }
     builder.setUser((user));
   }
+
+  @Override
+  public boolean getOpportunistic() {
+    ContainerLaunchContextProtoOrBuilder p = viaProto ? proto : builder;
+    return p.getOpportunistic();
+  }
+
+  @Override
+  public void setOpportunistic(boolean opportunistic) {
+    maybeInitBuilder();
+    builder.setOpportunistic(opportunistic);
+  }
+
   @Override
   public ContainerId getContainerId() {
     ContainerLaunchContextProtoOrBuilder p = viaProto ? proto : builder;
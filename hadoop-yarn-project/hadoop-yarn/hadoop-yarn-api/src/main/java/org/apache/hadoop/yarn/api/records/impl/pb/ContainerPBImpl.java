@@ -135,6 +135,19 @@ public void setState(ContainerState state) {
     }
     builder.setState(convertToProtoFormat(state));
   }
+
+  @Override
+  public boolean getOpportunistic() {
+    ContainerProtoOrBuilder p = viaProto ? proto : builder;
+    return p.getOpportunistic();
+  }
+
+  @Override
+  public void setOpportunistic(boolean opportunistic) {
+    maybeInitBuilder();
+    builder.setOpportunistic(opportunistic);
+  }
+
   @Override
   public ContainerId getId() {
     ContainerProtoOrBuilder p = viaProto ? proto : builder;
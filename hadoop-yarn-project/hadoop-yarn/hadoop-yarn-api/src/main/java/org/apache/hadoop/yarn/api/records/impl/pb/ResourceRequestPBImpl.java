@@ -147,6 +147,18 @@ public void setNumContainers(int numContainers) {
     builder.setNumContainers((numContainers));
   }
 
+  @Override
+  public boolean getOpportunistic() {
+    ResourceRequestProtoOrBuilder p = viaProto ? proto : builder;
+    return p.getOpportunistic();
+  }
+
+  @Override
+  public void setOpportunistic(boolean opportunistic) {
+    maybeInitBuilder();
+    builder.setOpportunistic(opportunistic);
+  }
+
   private PriorityPBImpl convertFromProtoFormat(PriorityProto p) {
     return new PriorityPBImpl(p);
   }
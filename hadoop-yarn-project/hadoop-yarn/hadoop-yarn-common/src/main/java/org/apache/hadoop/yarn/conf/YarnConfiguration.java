@@ -131,6 +131,27 @@ public class YarnConfiguration extends Configuration {
     RM_PREFIX + "scheduler.client.thread-count";
   public static final int DEFAULT_RM_SCHEDULER_CLIENT_THREAD_COUNT = 50;
 
+  /**
+   * Whether opportunistic container requests are placed by the RM directly
+   * on lightly loaded nodes, bypassing the scheduler.
+   */
+  public static final String RM_OPPORTUNISTIC_CONTAINERS_ENABLED =
+    RM_PREFIX + "opportunistic-containers.enabled";
+  public static final boolean DEFAULT_RM_OPPORTUNISTIC_CONTAINERS_ENABLED =
+    false;
+
+  /** The most opportunistic containers placed on a node at a time.*/
+  public static final String RM_OPPORTUNISTIC_CONTAINERS_MAX_PER_NODE =
+    RM_PREFIX + "opportunistic-containers.max-per-node";
+  public static final int DEFAULT_RM_OPPORTUNISTIC_CONTAINERS_MAX_PER_NODE =
+    10;
+
+  /** The most opportunistic containers of an attempt at a time.*/
+  public static final String RM_OPPORTUNISTIC_CONTAINERS_MAX_PER_APP =
+    RM_PREFIX + "opportunistic-containers.max-per-app";
+  public static final int DEFAULT_RM_OPPORTUNISTIC_CONTAINERS_MAX_PER_APP =
+    100;
+
   /** The address of the RM web application.*/
   public static final String RM_WEBAPP_ADDRESS = 
     RM_PREFIX + "webapp.address";
@@ -216,6 +237,14 @@ public class YarnConfiguration extends Configuration {
   public static final String DEFAULT_RM_SCHEDULER = 
       "org.apache.hadoop.yarn.server.resourcemanager.scheduler.capacity.CapacityScheduler";
 
+  /**
+   * Number of threads dispatching the RM's application and node events.
+   * With more than one, events are partitioned by application and node.
+   */
+  public static final String RM_DISPATCHER_THREADS =
+      RM_PREFIX + "dispatcher.threads";
+  public static final int DEFAULT_RM_DISPATCHER_THREADS = 1;
+
   //Delegation token related keys
   public static final String  DELEGATION_KEY_UPDATE_INTERVAL_KEY = 
     RM_PREFIX + "delegation.key.update-interval";
@@ -232,6 +261,15 @@ public class YarnConfiguration extends Configuration {
   
   public static final String RECOVERY_ENABLED = RM_PREFIX + "recovery.enabled";
   public static final boolean DEFAULT_RM_RECOVERY_ENABLED = false;
+
+  /**
+   * Whether running containers and AMs survive an RM restart. NMs report
+   * their containers when they register again, and AMs resync.
+   */
+  public static final String RM_WORK_PRESERVING_RECOVERY_ENABLED =
+    RM_PREFIX + "work-preserving-recovery.enabled";
+  public static final boolean DEFAULT_RM_WORK_PRESERVING_RECOVERY_ENABLED =
+    false;
   
   /** The class to use as the persistent store.*/
   public static final String RM_STORE = RM_PREFIX + "store.class";
@@ -240,6 +278,28 @@ public class YarnConfiguration extends Configuration {
   public static final String FS_RM_STATE_STORE_URI =
                                            RM_PREFIX + "fs.rm-state-store.uri";
 
+  /** Local directory for LocalRMStateStore */
+  public static final String LOCAL_RM_STATE_STORE_DIR =
+                                        RM_PREFIX + "local-rm-state-store.dir";
+
+  /**
+   * Size in bytes below which the log of LocalRMStateStore is never
+   * compacted.
+   */
+  public static final String LOCAL_RM_STATE_STORE_COMPACTION_MIN_BYTES =
+      RM_PREFIX + "local-rm-state-store.compaction.min-bytes";
+  public static final long DEFAULT_LOCAL_RM_STATE_STORE_COMPACTION_MIN_BYTES =
+      16 * 1024 * 1024;
+
+  /**
+   * Fraction of the log of LocalRMStateStore that must be superseded or
+   * removed state for it to be compacted.
+   */
+  public static final String LOCAL_RM_STATE_STORE_COMPACTION_GARBAGE_RATIO =
+      RM_PREFIX + "local-rm-state-store.compaction.garbage-ratio";
+  public static final float
+      DEFAULT_LOCAL_RM_STATE_STORE_COMPACTION_GARBAGE_RATIO = 0.5f;
+
   /** The maximum number of completed applications RM keeps. */ 
   public static final String RM_MAX_COMPLETED_APPLICATIONS =
     RM_PREFIX + "max-completed-applications";
@@ -300,6 +360,17 @@ public class YarnConfiguration extends Configuration {
   public static final int DEFAULT_NM_PORT = 0;
   public static final String DEFAULT_NM_ADDRESS = "0.0.0.0:"
       + DEFAULT_NM_PORT;
+
+  /**
+   * Whether the NM keeps its containers running across restarts, and
+   * recovers them from its state store when it starts.
+   */
+  public static final String NM_RECOVERY_ENABLED =
+    NM_PREFIX + "recovery.enabled";
+  public static final boolean DEFAULT_NM_RECOVERY_ENABLED = false;
+
+  /** Local directory of the NM state store.*/
+  public static final String NM_RECOVERY_DIR = NM_PREFIX + "recovery.dir";
   
   /** who will execute(launch) the containers.*/
   public static final String NM_CONTAINER_EXECUTOR = 
@@ -325,6 +396,16 @@ public class YarnConfiguration extends Configuration {
   public static final String NM_DELETE_THREAD_COUNT = 
     NM_PREFIX +  "delete.thread-count";
   public static final int DEFAULT_NM_DELETE_THREAD_COUNT = 4;
+
+  /** Max number of paths deleted from one local disk in a batch.*/
+  public static final String NM_DELETE_BATCH_SIZE =
+    NM_PREFIX + "delete.batch-size";
+  public static final int DEFAULT_NM_DELETE_BATCH_SIZE = 100;
+
+  /** Bytes per second deletions may free on each local disk, 0 for no limit.*/
+  public static final String NM_DELETE_DISK_BANDWIDTH =
+    NM_PREFIX + "delete.disk-bandwidth";
+  public static final long DEFAULT_NM_DELETE_DISK_BANDWIDTH = 0;
   
   // TODO: Should this instead be dictated by RM?
   /** Heartbeat interval to RM*/
@@ -367,6 +448,14 @@ public class YarnConfiguration extends Configuration {
     NM_PREFIX + "localizer.fetch.thread-count";
   public static final int DEFAULT_NM_LOCALIZER_FETCH_THREAD_COUNT = 4;
 
+  /**
+   * Number of private and application resources a container localizer
+   * downloads in parallel.
+   */
+  public static final String NM_LOCALIZER_CONTAINER_FETCH_THREAD_COUNT =
+    NM_PREFIX + "localizer.container.fetch.thread-count";
+  public static final int DEFAULT_NM_LOCALIZER_CONTAINER_FETCH_THREAD_COUNT = 4;
+
   /** Where to store container logs.*/
   public static final String NM_LOG_DIRS = NM_PREFIX + "log-dirs";
   public static final String DEFAULT_NM_LOG_DIRS = "/tmp/logs";
@@ -542,11 +631,80 @@ public class YarnConfiguration extends Configuration {
   /** Where the linux container executor should mount cgroups if not found */
   public static final String NM_LINUX_CONTAINER_CGROUPS_MOUNT_PATH =
     NM_PREFIX + "linux-container-executor.cgroups.mount-path";
+
+  /**
+   * Whether the linux container executor should cap the cpu use of
+   * containers to their share of the physical cores with cgroups
+   */
+  public static final String NM_LINUX_CONTAINER_CGROUPS_STRICT_CPU_USAGE =
+    NM_PREFIX + "linux-container-executor.cgroups.strict-cpu-usage";
+  public static final boolean
+      DEFAULT_NM_LINUX_CONTAINER_CGROUPS_STRICT_CPU_USAGE = false;
+
+  /**
+   * Whether the linux container executor should limit and account the
+   * memory of containers with cgroups
+   */
+  public static final String NM_LINUX_CONTAINER_CGROUPS_MEMORY_ENABLED =
+    NM_PREFIX + "linux-container-executor.cgroups.memory.enabled";
+  public static final boolean
+      DEFAULT_NM_LINUX_CONTAINER_CGROUPS_MEMORY_ENABLED = false;
   
   /** T-file compression types used to compress aggregated logs.*/
   public static final String NM_LOG_AGG_COMPRESSION_TYPE = 
     NM_PREFIX + "log-aggregation.compression-type";
   public static final String DEFAULT_NM_LOG_AGG_COMPRESSION_TYPE = "none";
+
+  /**
+   * How often the logs of running applications are uploaded, in seconds.
+   * Logs are only uploaded once the application finishes if not positive.
+   */
+  public static final String NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS =
+    NM_PREFIX + "log-aggregation.roll-monitoring-interval-seconds";
+  public static final long
+      DEFAULT_NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS = -1;
+  /**
+   * The smallest roll interval used, as every roll creates a file in the
+   * remote log dir for each running application of the node.
+   */
+  public static final long
+      MIN_NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS = 3600;
+
+  /** Allow roll intervals below the minimum, to ease debugging */
+  public static final String NM_LOG_AGG_DEBUG_ENABLED =
+    NM_PREFIX + "log-aggregation.debug-enabled";
+  public static final boolean DEFAULT_NM_LOG_AGG_DEBUG_ENABLED = false;
+
+  /**
+   * The bytes per second all the log uploads of the node manager are
+   * throttled to. Not throttled if not positive.
+   */
+  public static final String NM_LOG_AGG_UPLOAD_BANDWIDTH =
+    NM_PREFIX + "log-aggregation.upload-bandwidth";
+  public static final long DEFAULT_NM_LOG_AGG_UPLOAD_BANDWIDTH = 0;
+
+  /**
+   * The format aggregated logs are written in, tfile or indexed. Files in
+   * either format are read.
+   */
+  public static final String NM_LOG_AGG_FILE_FORMAT =
+    NM_PREFIX + "log-aggregation.file-format";
+  public static final String DEFAULT_NM_LOG_AGG_FILE_FORMAT = "tfile";
+
+  /**
+   * The codec logs are compressed with in the indexed format. Not compressed
+   * if empty.
+   */
+  public static final String NM_LOG_AGG_INDEXED_COMPRESSION_CODEC =
+    NM_PREFIX + "log-aggregation.indexed.compression-codec";
+  public static final String DEFAULT_NM_LOG_AGG_INDEXED_COMPRESSION_CODEC = "";
+
+  /**
+   * The types of logs compressed in the indexed format, all of them if
+   * empty.
+   */
+  public static final String NM_LOG_AGG_INDEXED_COMPRESSED_LOG_TYPES =
+    NM_PREFIX + "log-aggregation.indexed.compressed-log-types";
   
   /** The kerberos principal for the node manager.*/
   public static final String NM_PRINCIPAL =
@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.yarn.YarnException;
+import org.apache.hadoop.yarn.service.AbstractService;
+
+/**
+ * Dispatches events on several threads, each of which drains its own queue.
+ * An event is put on the queue picked by the hash of its partition key, as
+ * returned by {@link #getPartitionKey(Event)}, so events with the same key
+ * are dispatched in the order they were sent, while events with different
+ * keys may be dispatched concurrently. Events without a key all go to the
+ * first queue, and so keep their order among themselves.
+ *
+ * Handlers for keyed events must be safe to call from several threads at
+ * once. Handler errors are treated as by {@link AsyncDispatcher}. The
+ * dispatcher publishes the size of each queue as metrics, along with the
+ * time events wait in it and take to be handled.
+ */
+@SuppressWarnings("rawtypes")
+public class MultiThreadedDispatcher extends AbstractService
+    implements Dispatcher, MetricsSource {
+
+  private static final Log LOG =
+      LogFactory.getLog(MultiThreadedDispatcher.class);
+
+  private final int numThreads;
+  private final List<BlockingQueue<QueuedEvent>> eventQueues;
+  private final List<Thread> eventHandlingThreads;
+  private volatile boolean stopped = false;
+
+  // Only used to look up the registered handlers and report their errors;
+  // it is never started.
+  private final AsyncDispatcher handlers = new AsyncDispatcher();
+
+  private final MetricsRegistry registry;
+  private final MutableRate[] waitTimes;
+  private final MutableRate[] dispatchTimes;
+
+  public MultiThreadedDispatcher(String name, int numThreads) {
+    super(name);
+    if (numThreads < 1) {
+      throw new IllegalArgumentException(
+          "Number of dispatcher threads must be positive: " + numThreads);
+    }
+    this.numThreads = numThreads;
+    this.eventQueues = new ArrayList<BlockingQueue<QueuedEvent>>(numThreads);
+    this.eventHandlingThreads = new ArrayList<Thread>(numThreads);
+    this.registry = new MetricsRegistry(name).setContext("yarn");
+    this.waitTimes = new MutableRate[numThreads];
+    this.dispatchTimes = new MutableRate[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      eventQueues.add(new LinkedBlockingQueue<QueuedEvent>());
+      waitTimes[i] = registry.newRate("EventQueue" + i + "Wait",
+          "Time events wait in queue " + i, false);
+      dispatchTimes[i] = registry.newRate("EventQueue" + i + "Dispatch",
+          "Time handling the events of queue " + i, false);
+    }
+  }
+
+  /**
+   * Get the key of the entity an event is about. Events with the same key
+   * are dispatched in order, on the same thread.
+   * @return the key, or null for events which are dispatched in order with
+   *         all other events without a key
+   */
+  protected Object getPartitionKey(Event event) {
+    return null;
+  }
+
+  int getPartition(Event event) {
+    Object key = getPartitionKey(event);
+    if (key == null) {
+      return 0;
+    }
+    int h = key.hashCode();
+    // spread the high bits, the keys' own hashes are often sequential ids
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return (h & Integer.MAX_VALUE) % numThreads;
+  }
+
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  /**
+   * @return the number of events waiting in the given queue
+   */
+  public int getQueueSize(int queue) {
+    return eventQueues.get(queue).size();
+  }
+
+  private Runnable createThread(final int queue) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        BlockingQueue<QueuedEvent> eventQueue = eventQueues.get(queue);
+        while (!stopped && !Thread.currentThread().isInterrupted()) {
+          QueuedEvent queued;
+          try {
+            queued = eventQueue.take();
+          } catch(InterruptedException ie) {
+            if (!stopped) {
+              LOG.warn(getName() + " thread " + queue + " interrupted", ie);
+            }
+            return;
+          }
+          long start = Time.monotonicNow();
+          waitTimes[queue].add(start - queued.enqueueTime);
+          handlers.dispatch(queued.event);
+          dispatchTimes[queue].add(Time.monotonicNow() - start);
+        }
+      }
+    };
+  }
+
+  @Override
+  public synchronized void init(Configuration conf) {
+    handlers.init(conf);
+    super.init(conf);
+  }
+
+  @Override
+  public void start() {
+    //start all the components
+    super.start();
+    DefaultMetricsSystem.instance().register(getName(),
+        "Event queues of " + getName(), this);
+    for (int i = 0; i < numThreads; i++) {
+      Thread thread = new Thread(createThread(i));
+      thread.setName(getName() + " event handler #" + i);
+      thread.start();
+      eventHandlingThreads.add(thread);
+    }
+  }
+
+  @Override
+  public void stop() {
+    stopped = true;
+    for (Thread thread : eventHandlingThreads) {
+      thread.interrupt();
+    }
+    for (Thread thread : eventHandlingThreads) {
+      try {
+        thread.join();
+      } catch (InterruptedException ie) {
+        LOG.warn("Interrupted Exception while stopping", ie);
+      }
+    }
+    DefaultMetricsSystem.instance().unregisterSource(getName());
+
+    // stop all the components
+    super.stop();
+  }
+
+  @Override
+  public void register(Class<? extends Enum> eventType,
+      EventHandler handler) {
+    handlers.register(eventType, handler);
+  }
+
+  @Override
+  public EventHandler getEventHandler() {
+    return new PartitioningEventHandler();
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    MetricsRecordBuilder rb = collector.addRecord(registry.info());
+    for (int i = 0; i < numThreads; i++) {
+      rb.addGauge(Interns.info("EventQueue" + i + "Size",
+          "Events waiting in queue " + i), getQueueSize(i));
+    }
+    registry.snapshot(rb, all);
+  }
+
+  private static class QueuedEvent {
+    final Event event;
+    final long enqueueTime;
+
+    QueuedEvent(Event event, long enqueueTime) {
+      this.event = event;
+      this.enqueueTime = enqueueTime;
+    }
+  }
+
+  class PartitioningEventHandler implements EventHandler<Event> {
+    public void handle(Event event) {
+      int queue = getPartition(event);
+      BlockingQueue<QueuedEvent> eventQueue = eventQueues.get(queue);
+      int qSize = eventQueue.size();
+      if (qSize !=0 && qSize %1000 == 0) {
+        LOG.info("Size of event-queue " + queue + " is " + qSize);
+      }
+      try {
+        eventQueue.put(new QueuedEvent(event, Time.monotonicNow()));
+      } catch (InterruptedException e) {
+        if (!stopped) {
+          LOG.warn(getName() + " interrupted", e);
+        }
+        throw new YarnException(e);
+      }
+    }
+  }
+}
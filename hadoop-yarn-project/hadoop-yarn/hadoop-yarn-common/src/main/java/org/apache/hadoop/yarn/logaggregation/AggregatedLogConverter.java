@@ -0,0 +1,178 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.apache.hadoop.yarn.logaggregation;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options.Rename;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogKey;
+import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogReader;
+import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogWriter;
+
+/**
+ * Converts aggregated log files in the TFile format to the indexed format,
+ * see {@link IndexedLogFormat}. Directories are converted recursively, and
+ * files already in the indexed format or still being uploaded are left
+ * alone.
+ */
+public class AggregatedLogConverter extends Configured implements Tool {
+
+  private static final String TMP_FILE_SUFFIX = ".tmp";
+  private static final String CONVERTING_FILE_SUFFIX = ".converting";
+
+  private int numConverted = 0;
+  private int numFailed = 0;
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.out.println("Usage: yarn convertlogs <path>...");
+      return -1;
+    }
+    for (String arg : args) {
+      Path path = new Path(arg);
+      FileContext fc = FileContext.getFileContext(path.toUri(), getConf());
+      convertPath(fc, fc.getFileStatus(path));
+    }
+    System.out.println("Converted " + numConverted + " file(s), "
+        + numFailed + " failed.");
+    return numFailed == 0 ? 0 : -1;
+  }
+
+  private void convertPath(FileContext fc, FileStatus status)
+      throws IOException {
+    if (status.isDirectory()) {
+      RemoteIterator<FileStatus> children = fc.listStatus(status.getPath());
+      while (children.hasNext()) {
+        convertPath(fc, children.next());
+      }
+      return;
+    }
+    String name = status.getPath().getName();
+    if (name.endsWith(TMP_FILE_SUFFIX)
+        || name.endsWith(CONVERTING_FILE_SUFFIX)) {
+      return;
+    }
+    try {
+      if (convert(fc, status.getPath())) {
+        System.out.println("Converted " + status.getPath());
+        numConverted++;
+      }
+    } catch (IOException e) {
+      System.out.println("Failed to convert " + status.getPath() + ": "
+          + e.getMessage());
+      numFailed++;
+    }
+  }
+
+  /**
+   * Convert a file to the indexed format, replacing it.
+   *
+   * @param fc
+   * @param logFile the file
+   * @return false if the file is in the indexed format already
+   * @throws IOException
+   */
+  public boolean convert(FileContext fc, Path logFile) throws IOException {
+    Configuration conf = new Configuration(getConf());
+    conf.set(YarnConfiguration.NM_LOG_AGG_FILE_FORMAT,
+        IndexedLogFormat.INDEXED_FORMAT);
+    Path convertedFile = new Path(logFile.getParent(),
+        logFile.getName() + CONVERTING_FILE_SUFFIX);
+
+    LogReader reader = new LogReader(conf, logFile);
+    try {
+      if (reader.isIndexed()) {
+        return false;
+      }
+      LogWriter writer = new LogWriter(conf, convertedFile,
+          UserGroupInformation.getCurrentUser());
+      try {
+        writer.writeApplicationOwner(reader.getApplicationOwner());
+        writer.writeApplicationACLs(reader.getApplicationAcls());
+        LogKey key = new LogKey();
+        DataInputStream valueStream = reader.next(key);
+        while (valueStream != null) {
+          writer.append(key, valueStream);
+          key = new LogKey();
+          valueStream = reader.next(key);
+        }
+      } finally {
+        writer.closeWriter();
+      }
+    } catch (IOException e) {
+      fc.delete(convertedFile, false);
+      throw e;
+    } finally {
+      reader.close();
+    }
+
+    // closeWriter only logs failures, so read the index back before
+    // replacing the original
+    LogReader check = null;
+    try {
+      check = new LogReader(conf, convertedFile);
+      copyAttributes(fc, logFile, convertedFile);
+    } catch (IOException e) {
+      fc.delete(convertedFile, false);
+      throw e;
+    } finally {
+      if (check != null) {
+        check.close();
+      }
+    }
+    fc.rename(convertedFile, logFile, Rename.OVERWRITE);
+    return true;
+  }
+
+  /**
+   * The converted file is written by the user running the converter, so the
+   * owner, group and permission of the original are restored on it before
+   * it replaces the original, or the log would no longer be readable by the
+   * application owner or the web UI.
+   */
+  private static void copyAttributes(FileContext fc, Path logFile,
+      Path convertedFile) throws IOException {
+    FileStatus original = fc.getFileStatus(logFile);
+    FileStatus converted = fc.getFileStatus(convertedFile);
+    if (!original.getOwner().equals(converted.getOwner())
+        || !original.getGroup().equals(converted.getGroup())) {
+      fc.setOwner(convertedFile, original.getOwner(), original.getGroup());
+    }
+    fc.setPermission(convertedFile, original.getPermission());
+  }
+
+  public static void main(String[] args) throws Exception {
+    Configuration conf = new YarnConfiguration();
+    AggregatedLogConverter converter = new AggregatedLogConverter();
+    converter.setConf(conf);
+    int exitCode = converter.run(args);
+    System.exit(exitCode);
+  }
+}
@@ -27,6 +27,7 @@
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
@@ -34,6 +35,8 @@
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -49,7 +52,9 @@
 import org.apache.hadoop.fs.Options;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.file.tfile.MetaBlockDoesNotExist;
 import org.apache.hadoop.io.file.tfile.TFile;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.yarn.YarnException;
@@ -68,6 +73,10 @@ public class AggregatedLogFormat {
   //Maybe write out the retention policy.
   //Maybe write out a list of containerLogs skipped by the retention policy.
   private static final int VERSION = 1;
+  /**
+   * Name of the meta block indexing the records of the containers.
+   */
+  private static final String CONTAINER_INDEX_BLOCK = "container.index";
 
   /**
    * Umask for the log file.
@@ -132,22 +141,72 @@ public String toString() {
     }
   }
 
+  /**
+   * Where the logs of a container are written to, one log at a time.
+   */
+  interface LogSink {
+    /**
+     * @param logType the type of the log
+     * @param length the number of bytes that will be written
+     * @return the stream to write the log to, which must not be closed
+     */
+    OutputStream startLog(String logType, long length) throws IOException;
+
+    void endLog() throws IOException;
+  }
+
   public static class LogValue {
 
     private final List<String> rootLogDirs;
     private final ContainerId containerId;
+    private final Map<String, Long> uploadedLengths;
+    private final LogUploadThrottler throttler;
     // TODO Maybe add a version string here. Instead of changing the version of
     // the entire k-v format
 
     public LogValue(List<String> rootLogDirs, ContainerId containerId) {
+      this(rootLogDirs, containerId, null, null);
+    }
+
+    /**
+     * @param rootLogDirs the log dirs of the node
+     * @param containerId the container the logs are for
+     * @param uploadedLengths if not null, the lengths of the log files that
+     *          were already uploaded by path. Only the bytes written since
+     *          are uploaded, and the map is updated.
+     * @param throttler if not null, throttles reading the logs
+     */
+    public LogValue(List<String> rootLogDirs, ContainerId containerId,
+        Map<String, Long> uploadedLengths, LogUploadThrottler throttler) {
       this.rootLogDirs = new ArrayList<String>(rootLogDirs);
       this.containerId = containerId;
+      this.uploadedLengths = uploadedLengths;
+      this.throttler = throttler;
 
       // Ensure logs are processed in lexical order
       Collections.sort(this.rootLogDirs);
     }
 
-    public void write(DataOutputStream out) throws IOException {
+    public void write(final DataOutputStream out) throws IOException {
+      writeLogs(new LogSink() {
+        @Override
+        public OutputStream startLog(String logType, long length)
+            throws IOException {
+          // Write the logFile Type
+          out.writeUTF(logType);
+
+          // Write the log length as UTF so that it is printable
+          out.writeUTF(String.valueOf(length));
+          return out;
+        }
+
+        @Override
+        public void endLog() {
+        }
+      });
+    }
+
+    void writeLogs(LogSink sink) throws IOException {
       for (String rootLogDir : this.rootLogDirs) {
         File appLogDir =
             new File(rootLogDir, 
@@ -166,24 +225,60 @@ public void write(DataOutputStream out) throws IOException {
         File[] logFiles = containerLogDir.listFiles();
         Arrays.sort(logFiles);
         for (File logFile : logFiles) {
-
-          // Write the logFile Type
-          out.writeUTF(logFile.getName());
-
-          // Write the log length as UTF so that it is printable
-          out.writeUTF(String.valueOf(logFile.length()));
+          // The file may still be written to, only upload what it has now
+          long fileLength = logFile.length();
+          long uploaded = 0;
+          if (uploadedLengths != null) {
+            Long previous = uploadedLengths.get(logFile.getPath());
+            if (previous != null) {
+              if (previous == fileLength) {
+                continue; // nothing new
+              }
+              // start over if the file was truncated
+              uploaded = previous < fileLength ? previous : 0;
+            }
+          }
+          long length = fileLength - uploaded;
+          OutputStream out = sink.startLog(logFile.getName(), length);
 
           // Write the log itself
           FileInputStream in = null;
           try {
             in = new FileInputStream(logFile);
+            long skipped = 0;
+            while (skipped < uploaded) {
+              long n = in.skip(uploaded - skipped);
+              if (n <= 0) {
+                break;
+              }
+              skipped += n;
+            }
             byte[] buf = new byte[65535];
+            long remaining = length;
             int len = 0;
-            while ((len = in.read(buf)) != -1) {
+            while (remaining > 0 && (len = in.read(buf, 0,
+                (int) Math.min(buf.length, remaining))) != -1) {
+              if (throttler != null) {
+                throttler.throttle(len);
+              }
               out.write(buf, 0, len);
+              remaining -= len;
+            }
+            // keep the length written above if the file got truncated
+            while (remaining > 0) {
+              int pad = (int) Math.min(buf.length, remaining);
+              Arrays.fill(buf, 0, pad, (byte) 0);
+              out.write(buf, 0, pad);
+              remaining -= pad;
             }
           } finally {
-            in.close();
+            if (in != null) {
+              in.close();
+            }
+          }
+          sink.endLog();
+          if (uploadedLengths != null) {
+            uploadedLengths.put(logFile.getPath(), fileLength);
           }
         }
       }
@@ -193,7 +288,13 @@ public void write(DataOutputStream out) throws IOException {
   public static class LogWriter {
 
     private final FSDataOutputStream fsDataOStream;
+    // one of them is null, depending on the configured file format
     private final TFile.Writer writer;
+    private final IndexedLogFormat.Writer indexedWriter;
+    // the record number of the logs of every container, in append order
+    private final Map<String, Long> containerRecords =
+        new LinkedHashMap<String, Long>();
+    private long numRecords = 0;
 
     public LogWriter(final Configuration conf, final Path remoteAppLogFile,
         UserGroupInformation userUgi) throws IOException {
@@ -214,14 +315,22 @@ public FSDataOutputStream run() throws Exception {
         throw new IOException(e);
       }
 
-      // Keys are not sorted: null arg
-      // 256KB minBlockSize : Expected log size for each container too
-      this.writer =
-          new TFile.Writer(this.fsDataOStream, 256 * 1024, conf.get(
-              YarnConfiguration.NM_LOG_AGG_COMPRESSION_TYPE,
-              YarnConfiguration.DEFAULT_NM_LOG_AGG_COMPRESSION_TYPE), null, conf);
-      //Write the version string
-      writeVersion();
+      if (IndexedLogFormat.isConfigured(conf)) {
+        this.writer = null;
+        this.indexedWriter =
+            new IndexedLogFormat.Writer(conf, this.fsDataOStream);
+      } else {
+        this.indexedWriter = null;
+        // Keys are not sorted: null arg
+        // 256KB minBlockSize : Expected log size for each container too
+        this.writer =
+            new TFile.Writer(this.fsDataOStream, 256 * 1024, conf.get(
+                YarnConfiguration.NM_LOG_AGG_COMPRESSION_TYPE,
+                YarnConfiguration.DEFAULT_NM_LOG_AGG_COMPRESSION_TYPE), null,
+                conf);
+        //Write the version string
+        writeVersion();
+      }
     }
 
     private void writeVersion() throws IOException {
@@ -231,19 +340,29 @@ private void writeVersion() throws IOException {
       out = this.writer.prepareAppendValue(-1);
       out.writeInt(VERSION);
       out.close();
+      numRecords++;
     }
 
     public void writeApplicationOwner(String user) throws IOException {
+      if (indexedWriter != null) {
+        indexedWriter.setApplicationOwner(user);
+        return;
+      }
       DataOutputStream out = this.writer.prepareAppendKey(-1);
       APPLICATION_OWNER_KEY.write(out);
       out.close();
       out = this.writer.prepareAppendValue(-1);
       out.writeUTF(user);
       out.close();
+      numRecords++;
     }
 
     public void writeApplicationACLs(Map<ApplicationAccessType, String> appAcls)
         throws IOException {
+      if (indexedWriter != null) {
+        indexedWriter.setApplicationAcls(appAcls);
+        return;
+      }
       DataOutputStream out = this.writer.prepareAppendKey(-1);
       APPLICATION_ACL_KEY.write(out);
       out.close();
@@ -253,18 +372,96 @@ public void writeApplicationACLs(Map<ApplicationAccessType, String> appAcls)
         out.writeUTF(entry.getValue());
       }
       out.close();
+      numRecords++;
     }
 
     public void append(LogKey logKey, LogValue logValue) throws IOException {
+      if (indexedWriter != null) {
+        indexedWriter.append(logKey.toString(), logValue);
+        return;
+      }
       DataOutputStream out = this.writer.prepareAppendKey(-1);
       logKey.write(out);
       out.close();
       out = this.writer.prepareAppendValue(-1);
       logValue.write(out);
       out.close();
+      recordContainer(logKey);
+    }
+
+    /**
+     * Append the logs of a container as read from another log file.
+     *
+     * @param logKey the container
+     * @param valueStream the value-stream of its logs
+     * @throws IOException
+     */
+    void append(LogKey logKey, DataInputStream valueStream)
+        throws IOException {
+      if (indexedWriter != null) {
+        indexedWriter.append(logKey.toString(), valueStream);
+        return;
+      }
+      DataOutputStream out = this.writer.prepareAppendKey(-1);
+      logKey.write(out);
+      out.close();
+      out = this.writer.prepareAppendValue(-1);
+      IOUtils.copyBytes(valueStream, out, 65536, false);
+      out.close();
+      recordContainer(logKey);
+    }
+
+    private void recordContainer(LogKey logKey) {
+      if (!containerRecords.containsKey(logKey.toString())) {
+        containerRecords.put(logKey.toString(), numRecords);
+      }
+      numRecords++;
+    }
+
+    private void writeContainerIndex() throws IOException {
+      DataOutputStream out = this.writer.prepareMetaBlock(
+          CONTAINER_INDEX_BLOCK);
+      out.writeInt(containerRecords.size());
+      for (Entry<String, Long> entry : containerRecords.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue());
+      }
+      out.close();
+    }
+
+    /**
+     * Close the writer. Unlike {@link #closeWriter()}, failures are not only
+     * logged, since the log-file may be incomplete after them.
+     *
+     * @throws IOException if the log-file could not be completed
+     */
+    public void close() throws IOException {
+      if (indexedWriter != null) {
+        indexedWriter.close();
+        return;
+      }
+      try {
+        writeContainerIndex();
+        this.writer.close();
+      } finally {
+        this.fsDataOStream.close();
+      }
     }
 
     public void closeWriter() {
+      if (indexedWriter != null) {
+        try {
+          indexedWriter.close();
+        } catch (IOException e) {
+          LOG.warn("Exception closing writer", e);
+        }
+        return;
+      }
+      try {
+        writeContainerIndex();
+      } catch (IOException e) {
+        LOG.warn("Exception writing the container index", e);
+      }
       try {
         this.writer.close();
       } catch (IOException e) {
@@ -281,17 +478,39 @@ public void closeWriter() {
   public static class LogReader {
 
     private final FSDataInputStream fsDataIStream;
+    // the TFile reader and scanner are null for files in the indexed format
     private final TFile.Reader.Scanner scanner;
     private final TFile.Reader reader;
+    private final IndexedLogFormat.Reader indexedReader;
+    private Iterator<String> indexedContainers = null;
+    // loaded lazily, empty for files written without an index
+    private Map<String, Long> containerIndex = null;
+    private boolean hasContainerIndex = false;
+    private final List<TFile.Reader.Scanner> containerScanners =
+        new ArrayList<TFile.Reader.Scanner>();
 
     public LogReader(Configuration conf, Path remoteAppLogFile)
         throws IOException {
       FileContext fileContext = FileContext.getFileContext(conf);
       this.fsDataIStream = fileContext.open(remoteAppLogFile);
-      reader =
-          new TFile.Reader(this.fsDataIStream, fileContext.getFileStatus(
-              remoteAppLogFile).getLen(), conf);
-      this.scanner = reader.createScanner();
+      long fileLength = fileContext.getFileStatus(remoteAppLogFile).getLen();
+      if (IndexedLogFormat.isIndexed(this.fsDataIStream, fileLength)) {
+        this.indexedReader = new IndexedLogFormat.Reader(conf,
+            this.fsDataIStream, fileLength);
+        this.reader = null;
+        this.scanner = null;
+      } else {
+        this.indexedReader = null;
+        this.reader = new TFile.Reader(this.fsDataIStream, fileLength, conf);
+        this.scanner = reader.createScanner();
+      }
+    }
+
+    /**
+     * @return whether the file is in the indexed format
+     */
+    public boolean isIndexed() {
+      return indexedReader != null;
     }
 
     private boolean atBeginning = true;
@@ -303,6 +522,9 @@ public LogReader(Configuration conf, Path remoteAppLogFile)
      * @throws IOException
      */
     public String getApplicationOwner() throws IOException {
+      if (indexedReader != null) {
+        return indexedReader.getApplicationOwner();
+      }
       TFile.Reader.Scanner ownerScanner = reader.createScanner();
       LogKey key = new LogKey();
       while (!ownerScanner.atEnd()) {
@@ -326,6 +548,9 @@ public String getApplicationOwner() throws IOException {
      */
     public Map<ApplicationAccessType, String> getApplicationAcls()
         throws IOException {
+      if (indexedReader != null) {
+        return indexedReader.getApplicationAcls();
+      }
       // TODO Seek directly to the key once a comparator is specified.
       TFile.Reader.Scanner aclScanner = reader.createScanner();
       LogKey key = new LogKey();
@@ -367,6 +592,16 @@ public Map<ApplicationAccessType, String> getApplicationAcls()
      * @throws IOException
      */
     public DataInputStream next(LogKey key) throws IOException {
+      if (indexedReader != null) {
+        if (indexedContainers == null) {
+          indexedContainers = indexedReader.getContainerKeys().iterator();
+        }
+        if (!indexedContainers.hasNext()) {
+          return null;
+        }
+        key.keyString = indexedContainers.next();
+        return indexedReader.getValueStream(key.keyString);
+      }
       if (!this.atBeginning) {
         this.scanner.advance();
       } else {
@@ -396,20 +631,55 @@ public DataInputStream next(LogKey key) throws IOException {
      */
     public ContainerLogsReader getContainerLogsReader(
         ContainerId containerId) throws IOException {
-      ContainerLogsReader logReader = null;
+      DataInputStream valueStream = getContainerLogsStream(containerId);
+      if (valueStream == null) {
+        return null;
+      }
+      return new ContainerLogsReader(valueStream);
+    }
 
+    /**
+     * Get the value-stream of the logs of the specified container, seeking
+     * to them if the file has a container index.
+     *
+     * @param containerId
+     * @return the valueStream of the container's logs or null if the logs
+     *         could not be found
+     * @throws IOException
+     */
+    public DataInputStream getContainerLogsStream(ContainerId containerId)
+        throws IOException {
       final LogKey containerKey = new LogKey(containerId);
+      if (indexedReader != null) {
+        return indexedReader.getValueStream(containerKey.toString());
+      }
+      loadContainerIndex();
+      if (hasContainerIndex) {
+        Long recordNum = containerIndex.get(containerKey.toString());
+        if (recordNum == null) {
+          return null;
+        }
+        TFile.Reader.Scanner containerScanner =
+            reader.createScannerByRecordNum(recordNum, recordNum + 1);
+        containerScanners.add(containerScanner);
+        if (!containerScanner.atEnd()) {
+          TFile.Reader.Scanner.Entry entry = containerScanner.entry();
+          LogKey key = new LogKey();
+          key.readFields(entry.getKeyStream());
+          if (key.equals(containerKey)) {
+            return entry.getValueStream();
+          }
+        }
+        LOG.warn("Container index does not match the logs of "
+            + containerId + ", scanning them instead");
+      }
+
       LogKey key = new LogKey();
       DataInputStream valueStream = next(key);
       while (valueStream != null && !key.equals(containerKey)) {
         valueStream = next(key);
       }
-
-      if (valueStream != null) {
-        logReader = new ContainerLogsReader(valueStream);
-      }
-
-      return logReader;
+      return valueStream;
     }
 
     //TODO  Change Log format and interfaces to be containerId specific.
@@ -535,8 +805,36 @@ public static void readAContainerLogsForALogType(
       }
     }
 
+    private void loadContainerIndex() throws IOException {
+      if (containerIndex != null) {
+        return;
+      }
+      containerIndex = new HashMap<String, Long>();
+      DataInputStream in;
+      try {
+        in = reader.getMetaBlock(CONTAINER_INDEX_BLOCK);
+      } catch (MetaBlockDoesNotExist e) {
+        return; // written before the index was added
+      }
+      try {
+        int numContainers = in.readInt();
+        for (int i = 0; i < numContainers; i++) {
+          String key = in.readUTF();
+          containerIndex.put(key, in.readLong());
+        }
+        hasContainerIndex = true;
+      } finally {
+        in.close();
+      }
+    }
+
     public void close() throws IOException {
-      this.scanner.close();
+      for (TFile.Reader.Scanner containerScanner : containerScanners) {
+        containerScanner.close();
+      }
+      if (this.scanner != null) {
+        this.scanner.close();
+      }
       this.fsDataIStream.close();
     }
   }
@@ -0,0 +1,622 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.apache.hadoop.yarn.logaggregation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.yarn.YarnException;
+import org.apache.hadoop.yarn.api.records.ApplicationAccessType;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogSink;
+import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogValue;
+
+/**
+ * An aggregated log file format with an index of the logs in a footer, so
+ * that the logs of a container, and every single log of it, are read
+ * without going through the rest of the file. The logs of chosen types may
+ * be compressed, each on its own.
+ *
+ * <pre>
+ * MAGIC VERSION
+ * log*                     the logs, each compressed or not
+ * index                    owner, ACLs, and the offset, stored length,
+ *                          length and codec of every log by container
+ * index offset, MAGIC
+ * </pre>
+ *
+ * {@link AggregatedLogFormat.LogWriter} writes files in this format when
+ * configured to, and {@link AggregatedLogFormat.LogReader} reads files in
+ * either format.
+ */
+public class IndexedLogFormat {
+
+  public static final String TFILE_FORMAT = "tfile";
+  public static final String INDEXED_FORMAT = "indexed";
+
+  private static final byte[] MAGIC =
+      { 'Y', 'L', 'O', 'G', 'I', 'D', 'X', '1' };
+  private static final int VERSION = 1;
+  private static final int TRAILER_LENGTH = 8 + MAGIC.length;
+
+  /**
+   * @param conf
+   * @return whether aggregated logs should be written in this format
+   */
+  public static boolean isConfigured(Configuration conf) {
+    String format = conf.get(YarnConfiguration.NM_LOG_AGG_FILE_FORMAT,
+        YarnConfiguration.DEFAULT_NM_LOG_AGG_FILE_FORMAT);
+    if (INDEXED_FORMAT.equals(format)) {
+      return true;
+    } else if (TFILE_FORMAT.equals(format)) {
+      return false;
+    }
+    throw new YarnException("Unknown aggregated log file format " + format);
+  }
+
+  /**
+   * @param in the stream of the file, left at its start
+   * @param fileLength the length of the file
+   * @return whether the file is in this format
+   * @throws IOException
+   */
+  public static boolean isIndexed(FSDataInputStream in, long fileLength)
+      throws IOException {
+    if (fileLength < MAGIC.length + 4 + TRAILER_LENGTH) {
+      return false;
+    }
+    byte[] magic = new byte[MAGIC.length];
+    in.readFully(0, magic);
+    return Arrays.equals(MAGIC, magic);
+  }
+
+  /**
+   * Where a log is in the file.
+   */
+  public static class LogEntry {
+    private final String logType;
+    private final long offset;
+    private final long storedLength;
+    private final long length;
+    private final String codec;
+
+    LogEntry(String logType, long offset, long storedLength, long length,
+        String codec) {
+      this.logType = logType;
+      this.offset = offset;
+      this.storedLength = storedLength;
+      this.length = length;
+      this.codec = codec;
+    }
+
+    public String getLogType() {
+      return logType;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    /**
+     * @return the number of bytes the log takes in the file
+     */
+    public long getStoredLength() {
+      return storedLength;
+    }
+
+    /**
+     * @return whether the log is compressed in the file
+     */
+    public boolean isCompressed() {
+      return codec != null;
+    }
+  }
+
+  public static class Writer {
+
+    private final FSDataOutputStream out;
+    private final CompressionCodec codec;
+    // all the log types are compressed if empty
+    private final Set<String> compressedLogTypes;
+    private final Map<String, List<LogEntry>> index =
+        new LinkedHashMap<String, List<LogEntry>>();
+    private String owner = "";
+    private Map<ApplicationAccessType, String> acls =
+        Collections.emptyMap();
+
+    public Writer(Configuration conf, FSDataOutputStream out)
+        throws IOException {
+      this.out = out;
+      String codecClass = conf.get(
+          YarnConfiguration.NM_LOG_AGG_INDEXED_COMPRESSION_CODEC,
+          YarnConfiguration.DEFAULT_NM_LOG_AGG_INDEXED_COMPRESSION_CODEC);
+      if (codecClass == null || codecClass.isEmpty()) {
+        this.codec = null;
+      } else {
+        try {
+          this.codec = (CompressionCodec) ReflectionUtils.newInstance(
+              conf.getClassByName(codecClass), conf);
+        } catch (ClassNotFoundException e) {
+          throw new YarnException("Unknown compression codec " + codecClass,
+              e);
+        }
+      }
+      this.compressedLogTypes = new HashSet<String>(
+          conf.getTrimmedStringCollection(
+              YarnConfiguration.NM_LOG_AGG_INDEXED_COMPRESSED_LOG_TYPES));
+      out.write(MAGIC);
+      out.writeInt(VERSION);
+    }
+
+    public void setApplicationOwner(String owner) {
+      this.owner = owner;
+    }
+
+    public void setApplicationAcls(Map<ApplicationAccessType, String> acls) {
+      this.acls = new HashMap<ApplicationAccessType, String>(acls);
+    }
+
+    /**
+     * Append the logs of a container.
+     *
+     * @param containerKey the container
+     * @param logValue its logs
+     * @throws IOException
+     */
+    public void append(String containerKey, LogValue logValue)
+        throws IOException {
+      logValue.writeLogs(new ContainerSink(containerKey));
+    }
+
+    /**
+     * Append the logs of a container as read from a TFile log file.
+     *
+     * @param containerKey the container
+     * @param valueStream the value-stream of its logs
+     * @throws IOException
+     */
+    public void append(String containerKey, DataInputStream valueStream)
+        throws IOException {
+      ContainerSink sink = new ContainerSink(containerKey);
+      byte[] buf = new byte[65536];
+      while (true) {
+        String logType;
+        try {
+          logType = valueStream.readUTF();
+        } catch (EOFException e) {
+          break;
+        }
+        long length = Long.parseLong(valueStream.readUTF());
+        OutputStream logOut = sink.startLog(logType, length);
+        long remaining = length;
+        while (remaining > 0) {
+          int len = valueStream.read(buf, 0,
+              (int) Math.min(buf.length, remaining));
+          if (len == -1) {
+            throw new EOFException("Truncated " + logType + " log of "
+                + containerKey);
+          }
+          logOut.write(buf, 0, len);
+          remaining -= len;
+        }
+        sink.endLog();
+      }
+    }
+
+    private boolean isCompressed(String logType) {
+      return codec != null && (compressedLogTypes.isEmpty()
+          || compressedLogTypes.contains(logType));
+    }
+
+    /**
+     * Write the index and close the file.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+      try {
+        long indexOffset = out.getPos();
+        out.writeUTF(owner);
+        out.writeInt(acls.size());
+        for (Entry<ApplicationAccessType, String> entry : acls.entrySet()) {
+          out.writeUTF(entry.getKey().toString());
+          out.writeUTF(entry.getValue());
+        }
+        out.writeInt(index.size());
+        for (Entry<String, List<LogEntry>> container : index.entrySet()) {
+          out.writeUTF(container.getKey());
+          out.writeInt(container.getValue().size());
+          for (LogEntry log : container.getValue()) {
+            out.writeUTF(log.logType);
+            out.writeLong(log.offset);
+            out.writeLong(log.storedLength);
+            out.writeLong(log.length);
+            out.writeUTF(log.codec == null ? "" : log.codec);
+          }
+        }
+        out.writeLong(indexOffset);
+        out.write(MAGIC);
+      } finally {
+        out.close();
+      }
+    }
+
+    private class ContainerSink implements LogSink {
+      private final List<LogEntry> logs;
+      private String logType;
+      private long offset;
+      private long length;
+      private Compressor compressor;
+      private CompressionOutputStream compressed;
+
+      ContainerSink(String containerKey) {
+        List<LogEntry> entries = index.get(containerKey);
+        if (entries == null) {
+          entries = new ArrayList<LogEntry>();
+          index.put(containerKey, entries);
+        }
+        this.logs = entries;
+      }
+
+      @Override
+      public OutputStream startLog(String logType, long length)
+          throws IOException {
+        this.logType = logType;
+        this.length = length;
+        this.offset = out.getPos();
+        if (!isCompressed(logType)) {
+          return out;
+        }
+        compressor = CodecPool.getCompressor(codec);
+        compressed = codec.createOutputStream(out, compressor);
+        return compressed;
+      }
+
+      @Override
+      public void endLog() throws IOException {
+        String codecClass = null;
+        if (compressed != null) {
+          try {
+            compressed.finish();
+          } finally {
+            CodecPool.returnCompressor(compressor);
+            compressor = null;
+            compressed = null;
+          }
+          codecClass = codec.getClass().getName();
+        }
+        logs.add(new LogEntry(logType, offset, out.getPos() - offset, length,
+            codecClass));
+      }
+    }
+  }
+
+  /**
+   * Reads a file in this format. The logs are read off the stream of the
+   * file, so only one of them may be read at a time.
+   */
+  public static class Reader {
+
+    private final Configuration conf;
+    private final FSDataInputStream in;
+    private final Map<String, List<LogEntry>> index =
+        new LinkedHashMap<String, List<LogEntry>>();
+    private final Map<String, CompressionCodec> codecs =
+        new HashMap<String, CompressionCodec>();
+    private final String owner;
+    private final Map<ApplicationAccessType, String> acls =
+        new HashMap<ApplicationAccessType, String>();
+
+    public Reader(Configuration conf, FSDataInputStream in, long fileLength)
+        throws IOException {
+      this.conf = conf;
+      this.in = in;
+      in.seek(MAGIC.length);
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported aggregated log file version "
+            + version);
+      }
+      in.seek(fileLength - TRAILER_LENGTH);
+      long indexOffset = in.readLong();
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(MAGIC, magic)) {
+        throw new IOException("Incomplete aggregated log file");
+      }
+
+      in.seek(indexOffset);
+      owner = in.readUTF();
+      int numAcls = in.readInt();
+      for (int i = 0; i < numAcls; i++) {
+        ApplicationAccessType accessType =
+            ApplicationAccessType.valueOf(in.readUTF());
+        acls.put(accessType, in.readUTF());
+      }
+      int numContainers = in.readInt();
+      for (int i = 0; i < numContainers; i++) {
+        String containerKey = in.readUTF();
+        int numLogs = in.readInt();
+        List<LogEntry> logs = new ArrayList<LogEntry>(numLogs);
+        for (int j = 0; j < numLogs; j++) {
+          String logType = in.readUTF();
+          long offset = in.readLong();
+          long storedLength = in.readLong();
+          long length = in.readLong();
+          String codec = in.readUTF();
+          logs.add(new LogEntry(logType, offset, storedLength, length,
+              codec.isEmpty() ? null : codec));
+        }
+        index.put(containerKey, logs);
+      }
+    }
+
+    public String getApplicationOwner() {
+      return owner;
+    }
+
+    public Map<ApplicationAccessType, String> getApplicationAcls() {
+      return acls;
+    }
+
+    /**
+     * @return the containers with logs in the file, in upload order
+     */
+    public Collection<String> getContainerKeys() {
+      return Collections.unmodifiableCollection(index.keySet());
+    }
+
+    /**
+     * @param containerKey the container
+     * @return its logs, or null if it has no logs in the file
+     */
+    public List<LogEntry> getLogs(String containerKey) {
+      List<LogEntry> logs = index.get(containerKey);
+      return logs == null ? null : Collections.unmodifiableList(logs);
+    }
+
+    /**
+     * Open a log, seeking to it. The stream must be closed, so that the
+     * decompressor of a compressed log goes back to the pool.
+     *
+     * @param log the log
+     * @return the stream of its contents
+     * @throws IOException
+     */
+    public InputStream openLog(LogEntry log) throws IOException {
+      in.seek(log.offset);
+      BoundedInputStream stored = new BoundedInputStream(in, log.storedLength);
+      stored.setPropagateClose(false);
+      if (log.codec == null) {
+        return stored;
+      }
+      CompressionCodec codec = getCodec(log.codec);
+      final Decompressor decompressor = CodecPool.getDecompressor(codec);
+      InputStream decompressed;
+      try {
+        decompressed = codec.createInputStream(stored, decompressor);
+      } catch (IOException e) {
+        CodecPool.returnDecompressor(decompressor);
+        throw e;
+      }
+      return new FilterInputStream(decompressed) {
+        private boolean closed = false;
+
+        @Override
+        public void close() throws IOException {
+          if (closed) {
+            return;
+          }
+          closed = true;
+          try {
+            super.close();
+          } finally {
+            CodecPool.returnDecompressor(decompressor);
+          }
+        }
+      };
+    }
+
+    /**
+     * Get the logs of a container laid out like the values of the TFile
+     * format: the type and length of each log as UTF, then the log. Logs that
+     * are skipped over are not read.
+     *
+     * @param containerKey the container
+     * @return the valueStream of its logs, or null if it has no logs in the
+     *         file
+     */
+    public DataInputStream getValueStream(String containerKey) {
+      List<LogEntry> logs = index.get(containerKey);
+      if (logs == null) {
+        return null;
+      }
+      return new DataInputStream(new ValueInputStream(logs.iterator()));
+    }
+
+    private synchronized CompressionCodec getCodec(String codecClass)
+        throws IOException {
+      CompressionCodec codec = codecs.get(codecClass);
+      if (codec == null) {
+        try {
+          codec = (CompressionCodec) ReflectionUtils.newInstance(
+              conf.getClassByName(codecClass), conf);
+        } catch (ClassNotFoundException e) {
+          throw new IOException("Unknown compression codec " + codecClass, e);
+        }
+        codecs.put(codecClass, codec);
+      }
+      return codec;
+    }
+
+    private class ValueInputStream extends InputStream {
+      private final Iterator<LogEntry> logs;
+      private LogEntry log = null;
+      // the type and length of the log, while being read
+      private InputStream header = null;
+      // the contents of the log, opened on the first read
+      private InputStream contents = null;
+      private long remaining = 0;
+
+      ValueInputStream(Iterator<LogEntry> logs) {
+        this.logs = logs;
+      }
+
+      /**
+       * Move on to the contents of the log after its header, or to the
+       * header of the next log.
+       *
+       * @return false at the end of the logs
+       */
+      private boolean advance() throws IOException {
+        if (header != null) {
+          header = null;
+          remaining = log.length;
+          return true;
+        }
+        closeContents();
+        if (!logs.hasNext()) {
+          return false;
+        }
+        log = logs.next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream headerOut = new DataOutputStream(bytes);
+        headerOut.writeUTF(log.logType);
+        headerOut.writeUTF(String.valueOf(log.length));
+        headerOut.close();
+        header = new ByteArrayInputStream(bytes.toByteArray());
+        return true;
+      }
+
+      private InputStream contents() throws IOException {
+        if (contents == null) {
+          contents = openLog(log);
+        }
+        return contents;
+      }
+
+      private void closeContents() throws IOException {
+        if (contents != null) {
+          contents.close();
+          contents = null;
+        }
+      }
+
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        int len = read(b, 0, 1);
+        return len == -1 ? -1 : (b[0] & 0xff);
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+          return 0;
+        }
+        while (true) {
+          if (header != null) {
+            int read = header.read(b, off, len);
+            if (read != -1) {
+              return read;
+            }
+          } else if (remaining > 0) {
+            int read = contents().read(b, off,
+                (int) Math.min(len, remaining));
+            if (read == -1) {
+              throw new EOFException("Truncated " + log.logType + " log");
+            }
+            remaining -= read;
+            return read;
+          }
+          if (!advance()) {
+            return -1;
+          }
+        }
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+        while (n > 0) {
+          if (header != null) {
+            long skipped = header.skip(n);
+            if (skipped > 0) {
+              return skipped;
+            }
+          } else if (remaining > 0) {
+            long skipped;
+            if (contents == null && n >= remaining) {
+              // jump over the whole log without reading it
+              skipped = remaining;
+            } else {
+              skipped = contents().skip(Math.min(n, remaining));
+              if (skipped <= 0) {
+                throw new EOFException("Truncated " + log.logType + " log");
+              }
+            }
+            remaining -= skipped;
+            return skipped;
+          }
+          if (!advance()) {
+            return 0;
+          }
+        }
+        return 0;
+      }
+
+      @Override
+      public void close() throws IOException {
+        closeContents();
+      }
+    }
+
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -18,14 +18,30 @@
 
 package org.apache.hadoop.yarn.logaggregation;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 
 public class LogAggregationUtils {
 
+  /**
+   * Separates the name of the log file of the node from the time of an
+   * upload made while the application was running.
+   */
+  private static final String ROLLED_LOG_FILE_SEPARATOR = ".";
+
   /**
    * Constructs the full filename for an application's log file per node.
    * @param remoteRootLogDir
@@ -41,6 +57,66 @@ public static Path getRemoteNodeLogFileForApp(Path remoteRootLogDir,
         getNodeString(nodeId));
   }
 
+  /**
+   * Constructs the filename for the logs a node uploads while the
+   * application is running.
+   * @param remoteNodeLogFileForApp the log file of the node for the app
+   * @param timestamp the time of the upload
+   * @return the remote log file for the upload.
+   */
+  public static Path getRemoteRolledNodeLogFileForApp(
+      Path remoteNodeLogFileForApp, long timestamp) {
+    return new Path(remoteNodeLogFileForApp.getParent(),
+        remoteNodeLogFileForApp.getName() + ROLLED_LOG_FILE_SEPARATOR
+            + timestamp);
+  }
+
+  /**
+   * Lists the log files a node uploaded for an application: those uploaded
+   * while it was running in upload order, then the one uploaded once it
+   * finished, if any.
+   * @param conf
+   * @param remoteRootLogDir
+   * @param appId
+   * @param user
+   * @param nodeId
+   * @param suffix
+   * @return the remote log files of the node.
+   * @throws FileNotFoundException if the app log dir does not exist
+   * @throws IOException
+   */
+  public static List<Path> getRemoteNodeLogFilesForApp(Configuration conf,
+      Path remoteRootLogDir, ApplicationId appId, String user, NodeId nodeId,
+      String suffix) throws IOException {
+    Path remoteAppLogDir =
+        getRemoteAppLogDir(remoteRootLogDir, appId, user, suffix);
+    String nodeString = getNodeString(nodeId);
+    String rolledPrefix = nodeString + ROLLED_LOG_FILE_SEPARATOR;
+    SortedMap<Long, Path> rolled = new TreeMap<Long, Path>();
+    Path finished = null;
+    RemoteIterator<FileStatus> nodeFiles =
+        FileContext.getFileContext(conf).listStatus(remoteAppLogDir);
+    while (nodeFiles.hasNext()) {
+      Path nodeFile = nodeFiles.next().getPath();
+      String name = nodeFile.getName();
+      if (name.equals(nodeString)) {
+        finished = nodeFile;
+      } else if (name.startsWith(rolledPrefix)) {
+        try {
+          rolled.put(Long.parseLong(name.substring(rolledPrefix.length())),
+              nodeFile);
+        } catch (NumberFormatException e) {
+          // a temporary file
+        }
+      }
+    }
+    List<Path> logFiles = new ArrayList<Path>(rolled.values());
+    if (finished != null) {
+      logFiles.add(finished);
+    }
+    return logFiles;
+  }
+
   /**
    * Gets the remote app log dir.
    * @param remoteRootLogDir
@@ -71,9 +147,6 @@ public static Path getRemoteLogSuffixedDir(Path remoteRootLogDir,
     return new Path(getRemoteLogUserDir(remoteRootLogDir, user), suffix);
   }
 
-  // TODO Add a utility method to list available log files. Ignore the
-  // temporary ones.
-  
   /**
    * Gets the remote log user dir.
    * @param remoteRootLogDir
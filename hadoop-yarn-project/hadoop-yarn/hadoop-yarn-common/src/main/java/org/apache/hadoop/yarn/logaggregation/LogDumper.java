@@ -23,6 +23,8 @@
 import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -39,6 +41,7 @@
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.factories.RecordFactory;
 import org.apache.hadoop.yarn.factory.providers.RecordFactoryProvider;
@@ -52,6 +55,7 @@ public class LogDumper extends Configured implements Tool {
   private static final String APPLICATION_ID_OPTION = "applicationId";
   private static final String NODE_ADDRESS_OPTION = "nodeAddress";
   private static final String APP_OWNER_OPTION = "appOwner";
+  private static final String TMP_FILE_SUFFIX = ".tmp";
 
   @Override
   public int run(String[] args) throws Exception {
@@ -114,18 +118,8 @@ public int run(String[] args) throws Exception {
       formatter.printHelp("general options are: ", opts);
       resultCode = -1;
     } else {
-      Path remoteRootLogDir =
-        new Path(getConf().get(YarnConfiguration.NM_REMOTE_APP_LOG_DIR,
-            YarnConfiguration.DEFAULT_NM_REMOTE_APP_LOG_DIR));
-      AggregatedLogFormat.LogReader reader =
-          new AggregatedLogFormat.LogReader(getConf(),
-              LogAggregationUtils.getRemoteNodeLogFileForApp(
-                  remoteRootLogDir,
-                  appId,
-                  appOwner,
-                  ConverterUtils.toNodeId(nodeAddress),
-                  LogAggregationUtils.getRemoteNodeLogDirSuffix(getConf())));
-      resultCode = dumpAContainerLogs(containerIdStr, reader, out);
+      resultCode = dumpAContainersLogs(appIdStr, containerIdStr, nodeAddress,
+          appOwner);
     }
 
     return resultCode;
@@ -137,38 +131,50 @@ public int dumpAContainersLogs(String appId, String containerId,
         new Path(getConf().get(YarnConfiguration.NM_REMOTE_APP_LOG_DIR,
             YarnConfiguration.DEFAULT_NM_REMOTE_APP_LOG_DIR));
     String suffix = LogAggregationUtils.getRemoteNodeLogDirSuffix(getConf());
-    Path logPath = LogAggregationUtils.getRemoteNodeLogFileForApp(
-        remoteRootLogDir, ConverterUtils.toApplicationId(appId), jobOwner,
-        ConverterUtils.toNodeId(nodeId), suffix);
-    AggregatedLogFormat.LogReader reader;
+    ApplicationId applicationId = ConverterUtils.toApplicationId(appId);
+    NodeId node = ConverterUtils.toNodeId(nodeId);
+    // The node may have uploaded the logs while the application was running
+    List<Path> logPaths;
     try {
-      reader = new AggregatedLogFormat.LogReader(getConf(), logPath);
+      logPaths = LogAggregationUtils.getRemoteNodeLogFilesForApp(getConf(),
+          remoteRootLogDir, applicationId, jobOwner, node, suffix);
     } catch (FileNotFoundException fnfe) {
-      System.out.println("Logs not available at " + logPath.toString());
+      logPaths = Collections.emptyList();
+    }
+    if (logPaths.isEmpty()) {
+      System.out.println("Logs not available at "
+          + LogAggregationUtils.getRemoteNodeLogFileForApp(remoteRootLogDir,
+              applicationId, jobOwner, node, suffix));
       System.out.println(
           "Log aggregation has not completed or is not enabled.");
       return -1;
     }
     DataOutputStream out = new DataOutputStream(System.out);
-    return dumpAContainerLogs(containerId, reader, out);
+    int resultCode = -1;
+    for (Path logPath : logPaths) {
+      AggregatedLogFormat.LogReader reader =
+          new AggregatedLogFormat.LogReader(getConf(), logPath);
+      try {
+        if (dumpAContainerLogs(containerId, reader, out) == 0) {
+          resultCode = 0;
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    if (resultCode != 0) {
+      System.out.println("Logs for container " + containerId
+          + " are not present in the log-files of " + nodeId + ".");
+    }
+    return resultCode;
   }
 
   private int dumpAContainerLogs(String containerIdStr,
       AggregatedLogFormat.LogReader reader, DataOutputStream out)
       throws IOException {
-    DataInputStream valueStream;
-    LogKey key = new LogKey();
-    valueStream = reader.next(key);
-
-    while (valueStream != null && !key.toString().equals(containerIdStr)) {
-      // Next container
-      key = new LogKey();
-      valueStream = reader.next(key);
-    }
-
+    DataInputStream valueStream = reader.getContainerLogsStream(
+        ConverterUtils.toContainerId(containerIdStr));
     if (valueStream == null) {
-      System.out.println("Logs for container " + containerIdStr
-          + " are not present in this log-file.");
       return -1;
     }
 
@@ -206,6 +212,9 @@ private int dumpAllContainersLogs(ApplicationId appId, String appOwner,
     }
     while (nodeFiles.hasNext()) {
       FileStatus thisNodeFile = nodeFiles.next();
+      if (thisNodeFile.getPath().getName().endsWith(TMP_FILE_SUFFIX)) {
+        continue; // still being uploaded
+      }
       AggregatedLogFormat.LogReader reader =
           new AggregatedLogFormat.LogReader(getConf(),
               new Path(remoteAppLogDir, thisNodeFile.getPath().getName()));
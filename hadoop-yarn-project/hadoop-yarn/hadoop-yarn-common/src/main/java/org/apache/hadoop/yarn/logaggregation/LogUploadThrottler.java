@@ -0,0 +1,74 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.apache.hadoop.yarn.logaggregation;
+
+import java.io.InterruptedIOException;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+
+/**
+ * Throttles the log uploads sharing it to a number of bytes per second.
+ * The budget is handed out per period, so that uploads catch up after an
+ * idle period no faster than the bandwidth allows.
+ */
+@Private
+public class LogUploadThrottler {
+
+  private static final long PERIOD = 500; // ms
+
+  private final long bytesPerPeriod;
+  private long periodStart;
+  private long reserve;
+
+  /**
+   * @param bandwidthPerSec the number of bytes per second
+   */
+  public LogUploadThrottler(long bandwidthPerSec) {
+    this.bytesPerPeriod = Math.max(1, bandwidthPerSec * PERIOD / 1000);
+    this.periodStart = System.currentTimeMillis();
+    this.reserve = bytesPerPeriod;
+  }
+
+  /**
+   * Account for bytes about to be uploaded, blocking until the bandwidth
+   * allows for them.
+   *
+   * @param numBytes the number of bytes
+   * @throws InterruptedIOException if interrupted while waiting
+   */
+  public synchronized void throttle(long numBytes)
+      throws InterruptedIOException {
+    reserve -= numBytes;
+    while (reserve <= 0) {
+      long now = System.currentTimeMillis();
+      long periodEnd = periodStart + PERIOD;
+      if (now < periodEnd) {
+        try {
+          wait(periodEnd - now);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while throttled");
+        }
+        continue;
+      }
+      periodStart = now;
+      reserve += bytesPerPeriod;
+    }
+  }
+}
@@ -52,15 +52,24 @@ public class ContainerTokenIdentifier extends TokenIdentifier {
   private Resource resource;
   private long expiryTimeStamp;
   private int masterKeyId;
+  private boolean opportunistic;
 
   public ContainerTokenIdentifier(ContainerId containerID, String hostName,
       String appSubmitter, Resource r, long expiryTimeStamp, int masterKeyId) {
+    this(containerID, hostName, appSubmitter, r, expiryTimeStamp, masterKeyId,
+        false);
+  }
+
+  public ContainerTokenIdentifier(ContainerId containerID, String hostName,
+      String appSubmitter, Resource r, long expiryTimeStamp, int masterKeyId,
+      boolean opportunistic) {
     this.containerId = containerID;
     this.nmHostAddr = hostName;
     this.appSubmitter = appSubmitter;
     this.resource = r;
     this.expiryTimeStamp = expiryTimeStamp;
     this.masterKeyId = masterKeyId;
+    this.opportunistic = opportunistic;
   }
 
   /**
@@ -93,6 +102,10 @@ public int getMasterKeyId() {
     return this.masterKeyId;
   }
 
+  public boolean isOpportunistic() {
+    return this.opportunistic;
+  }
+
   @Override
   public void write(DataOutput out) throws IOException {
     LOG.debug("Writing ContainerTokenIdentifier to RPC layer: " + this);
@@ -109,6 +122,7 @@ public void write(DataOutput out) throws IOException {
     out.writeInt(this.resource.getVirtualCores());
     out.writeLong(this.expiryTimeStamp);
     out.writeInt(this.masterKeyId);
+    out.writeBoolean(this.opportunistic);
   }
 
   @Override
@@ -126,6 +140,7 @@ public void readFields(DataInput in) throws IOException {
     this.resource = BuilderUtils.newResource(memory, vCores);
     this.expiryTimeStamp = in.readLong();
     this.masterKeyId = in.readInt();
+    this.opportunistic = in.readBoolean();
   }
 
   @Override
@@ -331,6 +331,7 @@ public static ResourceRequest newResourceRequest(ResourceRequest r) {
     request.setHostName(r.getHostName());
     request.setCapability(r.getCapability());
     request.setNumContainers(r.getNumContainers());
+    request.setOpportunistic(r.getOpportunistic());
     return request;
   }
 
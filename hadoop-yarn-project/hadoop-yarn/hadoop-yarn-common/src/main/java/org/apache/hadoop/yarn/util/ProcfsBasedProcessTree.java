@@ -90,6 +90,8 @@ public class ProcfsBasedProcessTree extends ResourceCalculatorProcessTree {
   // to enable testing, using this variable which can be configured
   // to a test directory.
   private String procfsDir;
+  // the node-wide snapshot this tree is a view of, if any
+  private ProcfsSnapshot snapshot;
 
   static private String deadPid = "-1";
   private String pid = deadPid;
@@ -118,6 +120,19 @@ public ProcfsBasedProcessTree(String pid, String procfsDir) {
     this.procfsDir = procfsDir;
   }
 
+  /**
+   * Build a new process tree rooted at the pid, over a snapshot of the proc
+   * file system shared with other trees. The owner of the snapshot updates
+   * it once before the trees are updated.
+   *
+   * @param pid root of the process tree
+   * @param snapshot the shared snapshot of the proc file system
+   */
+  public ProcfsBasedProcessTree(String pid, ProcfsSnapshot snapshot) {
+    this(pid, snapshot.getProcfsDir());
+    this.snapshot = snapshot;
+  }
+
   /**
    * Checks if the ProcfsBasedProcessTree is available on this system.
    *
@@ -145,59 +160,26 @@ public static boolean isAvailable() {
   @Override
   public void updateProcessTree() {
     if (!pid.equals(deadPid)) {
-      // Get the list of processes
-      List<String> processList = getProcessList();
-
-      Map<String, ProcessInfo> allProcessInfo = new HashMap<String, ProcessInfo>();
-
       // cache the processTree to get the age for processes
       Map<String, ProcessInfo> oldProcs =
               new HashMap<String, ProcessInfo>(processTree);
       processTree.clear();
 
-      ProcessInfo me = null;
-      for (String proc : processList) {
-        // Get information for each process
-        ProcessInfo pInfo = new ProcessInfo(proc);
-        if (constructProcessInfo(pInfo, procfsDir) != null) {
-          allProcessInfo.put(proc, pInfo);
-          if (proc.equals(this.pid)) {
-            me = pInfo; // cache 'me'
-            processTree.put(proc, pInfo);
-          }
-        }
-      }
-
-      if (me == null) {
+      boolean found = snapshot != null ?
+          constructProcessTreeFromSnapshot() : constructProcessTree();
+      if (!found) {
         return;
       }
 
-      // Add each process to its parent.
-      for (Map.Entry<String, ProcessInfo> entry : allProcessInfo.entrySet()) {
-        String pID = entry.getKey();
-        if (!pID.equals("1")) {
-          ProcessInfo pInfo = entry.getValue();
-          ProcessInfo parentPInfo = allProcessInfo.get(pInfo.getPpid());
-          if (parentPInfo != null) {
-            parentPInfo.addChild(pInfo);
-          }
-        }
-      }
-
-      // now start constructing the process-tree
-      LinkedList<ProcessInfo> pInfoQueue = new LinkedList<ProcessInfo>();
-      pInfoQueue.addAll(me.getChildren());
-      while (!pInfoQueue.isEmpty()) {
-        ProcessInfo pInfo = pInfoQueue.remove();
-        if (!processTree.containsKey(pInfo.getPid())) {
-          processTree.put(pInfo.getPid(), pInfo);
-        }
-        pInfoQueue.addAll(pInfo.getChildren());
-      }
-
       // update age values and compute the number of jiffies since last update
       for (Map.Entry<String, ProcessInfo> procs : processTree.entrySet()) {
         ProcessInfo oldInfo = oldProcs.get(procs.getKey());
+        ProcessInfo newInfo = procs.getValue();
+        // a reused pid belongs to a different process, with its own age
+        if (oldInfo != null && newInfo != null
+            && !oldInfo.getStartTime().equals(newInfo.getStartTime())) {
+          oldInfo = null;
+        }
         if (procs.getValue() != null) {
           procs.getValue().updateJiffy(oldInfo);
           if (oldInfo != null) {
@@ -213,6 +195,89 @@ public void updateProcessTree() {
     }
   }
 
+  /**
+   * Add the processes in the tree to processTree, reading all of procfs.
+   *
+   * @return false if the root process is not alive
+   */
+  private boolean constructProcessTree() {
+    // Get the list of processes
+    List<String> processList = getProcessList(procfsDir);
+
+    Map<String, ProcessInfo> allProcessInfo = new HashMap<String, ProcessInfo>();
+
+    ProcessInfo me = null;
+    for (String proc : processList) {
+      // Get information for each process
+      ProcessInfo pInfo = new ProcessInfo(proc);
+      if (constructProcessInfo(pInfo, procfsDir) != null) {
+        allProcessInfo.put(proc, pInfo);
+        if (proc.equals(this.pid)) {
+          me = pInfo; // cache 'me'
+          processTree.put(proc, pInfo);
+        }
+      }
+    }
+
+    if (me == null) {
+      return false;
+    }
+
+    // Add each process to its parent.
+    for (Map.Entry<String, ProcessInfo> entry : allProcessInfo.entrySet()) {
+      String pID = entry.getKey();
+      if (!pID.equals("1")) {
+        ProcessInfo pInfo = entry.getValue();
+        ProcessInfo parentPInfo = allProcessInfo.get(pInfo.getPpid());
+        if (parentPInfo != null) {
+          parentPInfo.addChild(pInfo);
+        }
+      }
+    }
+
+    // now start constructing the process-tree
+    LinkedList<ProcessInfo> pInfoQueue = new LinkedList<ProcessInfo>();
+    pInfoQueue.addAll(me.getChildren());
+    while (!pInfoQueue.isEmpty()) {
+      ProcessInfo pInfo = pInfoQueue.remove();
+      if (!processTree.containsKey(pInfo.getPid())) {
+        processTree.put(pInfo.getPid(), pInfo);
+      }
+      pInfoQueue.addAll(pInfo.getChildren());
+    }
+    return true;
+  }
+
+  /**
+   * Add the processes in the tree to processTree, reading only their stat
+   * files and finding them through the parent-to-children index of the
+   * snapshot.
+   *
+   * @return false if the root process is not alive
+   */
+  private boolean constructProcessTreeFromSnapshot() {
+    ProcessInfo me = snapshot.getProcessInfo(pid);
+    if (me == null) {
+      return false;
+    }
+    processTree.put(pid, me);
+
+    LinkedList<String> pidQueue = new LinkedList<String>();
+    pidQueue.addAll(snapshot.getChildren(pid));
+    while (!pidQueue.isEmpty()) {
+      String child = pidQueue.remove();
+      if (processTree.containsKey(child)) {
+        continue;
+      }
+      ProcessInfo pInfo = snapshot.getProcessInfo(child);
+      if (pInfo != null) {
+        processTree.put(child, pInfo);
+        pidQueue.addAll(snapshot.getChildren(child));
+      }
+    }
+    return true;
+  }
+
   /** Verify that the given process id is same as its process group id.
    * @return true if the process id matches else return false.
    */
@@ -341,7 +406,7 @@ private static String getValidPID(String pid) {
   /**
    * Get the list of all processes in the system.
    */
-  private List<String> getProcessList() {
+  static List<String> getProcessList(String procfsDir) {
     String[] processDirs = (new File(procfsDir)).list();
     List<String> processList = new ArrayList<String>();
 
@@ -370,7 +435,7 @@ private List<String> getProcessList() {
    * @param procfsDir root of the proc file system
    * @return updated ProcessInfo, null on errors.
    */
-  private static ProcessInfo constructProcessInfo(ProcessInfo pinfo,
+  static ProcessInfo constructProcessInfo(ProcessInfo pinfo,
                                                     String procfsDir) {
     ProcessInfo ret = null;
     // Read "procfsDir/<pid>/stat" file - typically /proc/<pid>/stat
@@ -398,6 +463,8 @@ private static ProcessInfo constructProcessInfo(ProcessInfo pinfo,
                 Integer.parseInt(m.group(4)), Integer.parseInt(m.group(5)),
                 Long.parseLong(m.group(7)), new BigInteger(m.group(8)),
                 Long.parseLong(m.group(10)), Long.parseLong(m.group(11)));
+        // the last of the fields before vsize is the start time
+        pinfo.setStartTime(Long.parseLong(m.group(9).trim()));
       } else {
         LOG.warn("Unexpected: procfs stat file is not in the expected format"
             + " for process with pid " + pinfo.getPid());
@@ -441,7 +508,7 @@ public String toString() {
    * Class containing information of a process.
    *
    */
-  private static class ProcessInfo {
+  static class ProcessInfo {
     private String pid; // process-id
     private String name; // command name
     private Integer pgrpId; // process group-id
@@ -452,6 +519,7 @@ private static class ProcessInfo {
     private Long utime = 0L; // # of jiffies in user mode
     private final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
     private BigInteger stime = new BigInteger("0"); // # of jiffies in kernel mode
+    private Long startTime = 0L; // # of jiffies after boot the process started
     // how many times has this process been seen alive
     private int age;
 
@@ -505,6 +573,14 @@ public Long getDtime() {
       return dtime;
     }
 
+    public Long getStartTime() {
+      return startTime;
+    }
+
+    public void setStartTime(Long startTime) {
+      this.startTime = startTime;
+    }
+
     public Long getRssmemPage() { // get rss # of pages
       return rssmemPage;
     }
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.yarn.util.ProcfsBasedProcessTree.ProcessInfo;
+
+/**
+ * A node-wide view of the proc file-system, shared by the
+ * {@link ProcfsBasedProcessTree}s of all the monitored containers so that
+ * the process table is read once per monitoring interval instead of once
+ * per container.
+ *
+ * Every {@link #update()} lists the processes, reads each stat file once
+ * and rebuilds the parent-to-children index. Every stat file has to be read:
+ * a pid may have been reused by a new process with a different parent since
+ * the last update, and only its stat file tells. Such a process is told
+ * apart from the old one by its start time.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public class ProcfsSnapshot {
+
+  private static final Log LOG = LogFactory.getLog(ProcfsSnapshot.class);
+
+  private static final String PROCFS = "/proc/";
+
+  private final String procfsDir;
+
+  // the stat of every process, as of the last update
+  private final Map<String, ProcessInfo> processes =
+      new HashMap<String, ProcessInfo>();
+  private final Map<String, List<String>> children =
+      new HashMap<String, List<String>>();
+
+  private long scanTime = 0;
+  private int statReads = 0;
+
+  public ProcfsSnapshot() {
+    this(PROCFS);
+  }
+
+  /**
+   * @param procfsDir the root of a proc file system - only used for testing.
+   */
+  public ProcfsSnapshot(String procfsDir) {
+    this.procfsDir = procfsDir;
+  }
+
+  String getProcfsDir() {
+    return procfsDir;
+  }
+
+  /**
+   * Refresh the stat of every process and the parent-to-children index.
+   */
+  public synchronized void update() {
+    long start = System.currentTimeMillis();
+    statReads = 0;
+
+    List<String> processList =
+        ProcfsBasedProcessTree.getProcessList(procfsDir);
+    processes.keySet().retainAll(new HashSet<String>(processList));
+
+    for (String pid : processList) {
+      ProcessInfo old = processes.get(pid);
+      ProcessInfo pInfo = read(pid);
+      if (old != null && pInfo != null
+          && !old.getStartTime().equals(pInfo.getStartTime())
+          && LOG.isDebugEnabled()) {
+        LOG.debug("Process " + pid + " was replaced by a new process"
+            + " with the same pid");
+      }
+    }
+
+    children.clear();
+    for (ProcessInfo pInfo : processes.values()) {
+      if (!pInfo.getPid().equals("1")) {
+        List<String> siblings = children.get(pInfo.getPpid());
+        if (siblings == null) {
+          siblings = new ArrayList<String>();
+          children.put(pInfo.getPpid(), siblings);
+        }
+        siblings.add(pInfo.getPid());
+      }
+    }
+    scanTime = System.currentTimeMillis() - start;
+  }
+
+  /**
+   * @param pid process id
+   * @return the information of the process as of the last update, or null
+   *         if the process is gone
+   */
+  synchronized ProcessInfo getProcessInfo(String pid) {
+    return processes.get(pid);
+  }
+
+  /**
+   * @param pid process id
+   * @return the ids of the children of the process as of the last update
+   */
+  synchronized List<String> getChildren(String pid) {
+    List<String> pids = children.get(pid);
+    if (pids == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<String>(pids);
+  }
+
+  /**
+   * @return the number of processes as of the last update
+   */
+  public synchronized int getNumProcesses() {
+    return processes.size();
+  }
+
+  /**
+   * @return the time the last update took to list the processes, in ms
+   */
+  public synchronized long getScanTime() {
+    return scanTime;
+  }
+
+  /**
+   * @return the number of stat files read by the last update
+   */
+  public synchronized int getStatReads() {
+    return statReads;
+  }
+
+  private ProcessInfo read(String pid) {
+    statReads++;
+    ProcessInfo pInfo = ProcfsBasedProcessTree.constructProcessInfo(
+        new ProcessInfo(pid), procfsDir);
+    if (pInfo == null) {
+      processes.remove(pid);
+    } else {
+      processes.put(pid, pInfo);
+    }
+    return pInfo;
+  }
+}
@@ -26,6 +26,7 @@
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
@@ -84,13 +85,17 @@ protected void render(Block html) {
     Path remoteRootLogDir =
         new Path(conf.get(YarnConfiguration.NM_REMOTE_APP_LOG_DIR,
             YarnConfiguration.DEFAULT_NM_REMOTE_APP_LOG_DIR));
+    // The node may have uploaded the logs while the application was running
+    List<Path> logFiles = null;
     AggregatedLogFormat.LogReader reader = null;
     try {
-      reader =
-          new AggregatedLogFormat.LogReader(conf,
-              LogAggregationUtils.getRemoteNodeLogFileForApp(
-                  remoteRootLogDir, applicationId, appOwner, nodeId,
-                  LogAggregationUtils.getRemoteNodeLogDirSuffix(conf)));
+      logFiles = LogAggregationUtils.getRemoteNodeLogFilesForApp(conf,
+          remoteRootLogDir, applicationId, appOwner, nodeId,
+          LogAggregationUtils.getRemoteNodeLogDirSuffix(conf));
+      if (logFiles.isEmpty()) {
+        throw new FileNotFoundException("No log files for " + nodeId);
+      }
+      reader = new AggregatedLogFormat.LogReader(conf, logFiles.get(0));
     } catch (FileNotFoundException e) {
       // ACLs not available till the log file is opened.
       html.h1()
@@ -112,6 +117,7 @@ protected void render(Block html) {
       owner = reader.getApplicationOwner();
       appAcls = reader.getApplicationAcls();
     } catch (IOException e) {
+      closeReader(reader);
       html.h1()._("Error getting logs for " + logEntity)._();
       LOG.error("Error getting logs for " + logEntity, e);
       return;
@@ -127,6 +133,7 @@ protected void render(Block html) {
     if (callerUGI != null
         && !aclsManager.checkAccess(callerUGI, ApplicationAccessType.VIEW_APP,
             owner, applicationId)) {
+      closeReader(reader);
       html.h1()
           ._("User [" + remoteUser
               + "] is not authorized to view the logs for " + logEntity)._();
@@ -135,18 +142,32 @@ protected void render(Block html) {
 
     String desiredLogType = $(CONTAINER_LOG_TYPE);
     try {
-      AggregatedLogFormat.ContainerLogsReader logReader =
-          reader.getContainerLogsReader(containerId);
-      if (logReader == null) {
+      boolean foundContainer = false;
+      boolean foundLog = false;
+      for (Path logFile : logFiles) {
+        if (reader == null) {
+          reader = new AggregatedLogFormat.LogReader(conf, logFile);
+        }
+        try {
+          AggregatedLogFormat.ContainerLogsReader logReader =
+              reader.getContainerLogsReader(containerId);
+          if (logReader != null) {
+            foundContainer = true;
+            foundLog |= readContainerLogs(html, logReader, logLimits,
+                desiredLogType);
+          }
+        } finally {
+          closeReader(reader);
+          reader = null;
+        }
+      }
+      if (!foundContainer) {
         html.h1()._(
             "Logs not available for " + logEntity
                 + ". Could be caused by the rentention policy")._();
         return;
       }
 
-      boolean foundLog = readContainerLogs(html, logReader, logLimits,
-          desiredLogType);
-
       if (!foundLog) {
         if (desiredLogType.isEmpty()) {
           html.h1("No logs available for container " + containerId.toString());
@@ -157,12 +178,23 @@ protected void render(Block html) {
         return;
       }
     } catch (IOException e) {
+      closeReader(reader);
       html.h1()._("Error getting logs for " + logEntity)._();
       LOG.error("Error getting logs for " + logEntity, e);
       return;
     }
   }
 
+  private void closeReader(AggregatedLogFormat.LogReader reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        LOG.warn("Error closing the log reader", e);
+      }
+    }
+  }
+
   private boolean readContainerLogs(Block html,
       AggregatedLogFormat.ContainerLogsReader logReader, LogLimits logLimits,
       String desiredLogType) throws IOException {
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.event;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.yarn.service.AbstractService;
+
+/**
+ * Replays a synthetic mix of events through an {@link AsyncDispatcher} and
+ * a {@link MultiThreadedDispatcher}, and reports their throughput. The mix
+ * resembles the ResourceManager's: most events are about applications, some
+ * about nodes and a few about neither. Each handler spins for a while to
+ * stand in for a state machine transition.
+ *
+ * Usage: EventDispatcherBenchmark [events] [apps] [nodes] [threads] [work]
+ */
+public class EventDispatcherBenchmark {
+
+  enum BenchmarkEventType { APP, NODE, OTHER }
+
+  static class BenchmarkEvent extends AbstractEvent<BenchmarkEventType> {
+    final Object key;
+
+    BenchmarkEvent(BenchmarkEventType type, Object key) {
+      super(type);
+      this.key = key;
+    }
+  }
+
+  static class BenchmarkDispatcher extends MultiThreadedDispatcher {
+    BenchmarkDispatcher(int numThreads) {
+      super("BenchmarkDispatcher", numThreads);
+    }
+
+    @Override
+    protected Object getPartitionKey(Event event) {
+      return ((BenchmarkEvent) event).key;
+    }
+  }
+
+  private final int numEvents;
+  private final int numApps;
+  private final int numNodes;
+  private final int workPerEvent;
+  private volatile long sink;
+
+  EventDispatcherBenchmark(int numEvents, int numApps, int numNodes,
+      int workPerEvent) {
+    this.numEvents = numEvents;
+    this.numApps = numApps;
+    this.numNodes = numNodes;
+    this.workPerEvent = workPerEvent;
+  }
+
+  /**
+   * Dispatch the events and wait until all are handled.
+   * @return the number of events handled per second
+   */
+  @SuppressWarnings("unchecked")
+  <D extends AbstractService & Dispatcher> double run(D dispatcher)
+      throws InterruptedException {
+    final CountDownLatch handled = new CountDownLatch(numEvents);
+    EventHandler<BenchmarkEvent> handler = new EventHandler<BenchmarkEvent>() {
+      @Override
+      public void handle(BenchmarkEvent event) {
+        long x = event.getType().ordinal();
+        for (int i = 0; i < workPerEvent; i++) {
+          x = x * 31 + i;
+        }
+        sink = x;
+        handled.countDown();
+      }
+    };
+    dispatcher.register(BenchmarkEventType.class, handler);
+    dispatcher.init(new Configuration());
+    dispatcher.start();
+    try {
+      Random random = new Random(0);
+      EventHandler<Event> eventHandler = dispatcher.getEventHandler();
+      long start = Time.monotonicNow();
+      for (int i = 0; i < numEvents; i++) {
+        int r = random.nextInt(10);
+        BenchmarkEvent event;
+        if (r < 6) {
+          event = new BenchmarkEvent(BenchmarkEventType.APP,
+              "app_" + random.nextInt(numApps));
+        } else if (r < 9) {
+          event = new BenchmarkEvent(BenchmarkEventType.NODE,
+              "node_" + random.nextInt(numNodes));
+        } else {
+          event = new BenchmarkEvent(BenchmarkEventType.OTHER, null);
+        }
+        eventHandler.handle(event);
+      }
+      handled.await();
+      long elapsed = Math.max(1, Time.monotonicNow() - start);
+      return numEvents * 1000.0 / elapsed;
+    } finally {
+      dispatcher.stop();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int numEvents = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int numApps = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    int numNodes = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+    int numThreads = args.length > 3 ? Integer.parseInt(args[3]) :
+        Runtime.getRuntime().availableProcessors();
+    int work = args.length > 4 ? Integer.parseInt(args[4]) : 10000;
+
+    EventDispatcherBenchmark benchmark =
+        new EventDispatcherBenchmark(numEvents, numApps, numNodes, work);
+    System.out.println("AsyncDispatcher: " +
+        (long) benchmark.run(new AsyncDispatcher()) + " events/s");
+    System.out.println("MultiThreadedDispatcher with " + numThreads +
+        " threads: " + (long) benchmark.run(new BenchmarkDispatcher(numThreads))
+        + " events/s");
+  }
+}
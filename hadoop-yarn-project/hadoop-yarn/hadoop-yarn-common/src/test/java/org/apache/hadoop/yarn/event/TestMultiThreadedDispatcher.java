@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.event;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.assertGauge;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.yarn.event.EventDispatcherBenchmark.BenchmarkDispatcher;
+import org.apache.hadoop.yarn.event.EventDispatcherBenchmark.BenchmarkEvent;
+import org.apache.hadoop.yarn.event.EventDispatcherBenchmark.BenchmarkEventType;
+import org.junit.Test;
+
+public class TestMultiThreadedDispatcher {
+
+  /**
+   * Records the order in which events are handled, and the threads which
+   * handled them.
+   */
+  private static class RecordingHandler
+      implements EventHandler<BenchmarkEvent> {
+    private final Map<Object, Integer> lastSeq = new HashMap<Object, Integer>();
+    private final Map<Object, Thread> threads = new HashMap<Object, Thread>();
+    private final CountDownLatch handled;
+    private volatile String error;
+
+    RecordingHandler(int numEvents) {
+      handled = new CountDownLatch(numEvents);
+    }
+
+    @Override
+    public synchronized void handle(BenchmarkEvent event) {
+      SequencedEvent seqEvent = (SequencedEvent) event;
+      Integer last = lastSeq.put(event.key, seqEvent.seq);
+      if (last != null && last + 1 != seqEvent.seq) {
+        error = "Event " + seqEvent.seq + " of " + event.key +
+            " handled after " + last;
+      }
+      Thread thread = threads.put(event.key, Thread.currentThread());
+      if (thread != null && thread != Thread.currentThread()) {
+        error = "Events of " + event.key + " handled by several threads";
+      }
+      handled.countDown();
+    }
+  }
+
+  private static class SequencedEvent extends BenchmarkEvent {
+    final int seq;
+
+    SequencedEvent(Object key, int seq) {
+      super(BenchmarkEventType.APP, key);
+      this.seq = seq;
+    }
+  }
+
+  @Test (timeout = 30000)
+  @SuppressWarnings("unchecked")
+  public void testEventsOfAKeyAreHandledInOrder() throws Exception {
+    int numKeys = 16;
+    int eventsPerKey = 1000;
+    BenchmarkDispatcher dispatcher = new BenchmarkDispatcher(4);
+    RecordingHandler handler = new RecordingHandler(numKeys * eventsPerKey);
+    dispatcher.register(BenchmarkEventType.class, handler);
+    dispatcher.init(new Configuration());
+    dispatcher.start();
+    try {
+      EventHandler<Event> eventHandler = dispatcher.getEventHandler();
+      for (int seq = 0; seq < eventsPerKey; seq++) {
+        for (int key = 0; key < numKeys; key++) {
+          eventHandler.handle(new SequencedEvent(
+              key == 0 ? null : "key_" + key, seq));
+        }
+      }
+      handler.handled.await();
+      assertEquals(null, handler.error);
+      assertEquals(numKeys, handler.lastSeq.size());
+    } finally {
+      dispatcher.stop();
+    }
+  }
+
+  @Test
+  public void testPartitions() {
+    BenchmarkDispatcher dispatcher = new BenchmarkDispatcher(8);
+    // events without a key all go to the first queue
+    assertEquals(0, dispatcher.getPartition(
+        new BenchmarkEvent(BenchmarkEventType.OTHER, null)));
+    // and sequential keys are spread over all queues
+    boolean[] used = new boolean[dispatcher.getNumThreads()];
+    for (int i = 0; i < 1000; i++) {
+      int partition = dispatcher.getPartition(
+          new BenchmarkEvent(BenchmarkEventType.APP, Integer.valueOf(i)));
+      assertEquals(partition, dispatcher.getPartition(
+          new BenchmarkEvent(BenchmarkEventType.NODE, Integer.valueOf(i))));
+      used[partition] = true;
+    }
+    for (boolean u : used) {
+      assertTrue(u);
+    }
+  }
+
+  @Test (timeout = 30000)
+  @SuppressWarnings("unchecked")
+  public void testQueueMetrics() throws Exception {
+    int numEvents = 100;
+    BenchmarkDispatcher dispatcher = new BenchmarkDispatcher(1);
+    RecordingHandler handler = new RecordingHandler(numEvents);
+    dispatcher.register(BenchmarkEventType.class, handler);
+    dispatcher.init(new Configuration());
+    dispatcher.start();
+    try {
+      EventHandler<Event> eventHandler = dispatcher.getEventHandler();
+      for (int seq = 0; seq < numEvents; seq++) {
+        eventHandler.handle(new SequencedEvent("key", seq));
+      }
+      handler.handled.await();
+    } finally {
+      dispatcher.stop();
+    }
+    MetricsRecordBuilder rb = getMetrics(dispatcher);
+    assertGauge("EventQueue0Size", 0, rb);
+    assertCounter("EventQueue0WaitNumOps", (long) numEvents, rb);
+    assertCounter("EventQueue0DispatchNumOps", (long) numEvents, rb);
+    // a stopped dispatcher no longer publishes its queues
+    assertNull(DefaultMetricsSystem.instance().getSource(dispatcher.getName()));
+  }
+
+  @Test (timeout = 60000)
+  public void testBenchmark() throws Exception {
+    EventDispatcherBenchmark benchmark =
+        new EventDispatcherBenchmark(10000, 100, 100, 100);
+    assertTrue(benchmark.run(new AsyncDispatcher()) > 0);
+    assertTrue(benchmark.run(new BenchmarkDispatcher(4)) > 0);
+  }
+}
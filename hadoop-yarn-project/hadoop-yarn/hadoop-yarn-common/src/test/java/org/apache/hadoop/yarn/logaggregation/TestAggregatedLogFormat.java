@@ -26,18 +26,26 @@
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import junit.framework.Assert;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileContext;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.DefaultCodec;
 import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.yarn.api.records.ApplicationAccessType;
 import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.ContainerLogsReader;
 import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogKey;
 import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogReader;
 import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogValue;
@@ -131,9 +139,196 @@ public void testReadAcontainerLogs1() throws Exception {
     Assert.assertEquals(expectedLength, s.length());
   }
 
-  
+  // Verify that only the new bytes are uploaded again, and that the logs of
+  // a container are found through the container index
+  @Test
+  public void testIncrementalUploadWithIndex() throws Exception {
+    Configuration conf = new Configuration();
+    File workDir = new File(testWorkDir, "testIncrementalUploadWithIndex");
+    Path srcFileRoot = new Path(workDir.getAbsolutePath(), "srcFiles");
+    ContainerId container1 = BuilderUtils.newContainerId(1, 1, 1, 1);
+    ContainerId container2 = BuilderUtils.newContainerId(1, 1, 1, 2);
+    Path appDir = new Path(srcFileRoot, container1.getApplicationAttemptId()
+        .getApplicationId().toString());
+    Path srcFilePath1 = new Path(appDir, container1.toString());
+    Path srcFilePath2 = new Path(appDir, container2.toString());
+    writeSrcFile(srcFilePath1, "stdout", 1000);
+    writeSrcFile(srcFilePath1, "stderr", 10);
+
+    UserGroupInformation ugi = UserGroupInformation.getCurrentUser();
+    List<String> rootLogDirs = Collections.singletonList(
+        srcFileRoot.toString());
+    Map<String, Long> uploaded1 = new HashMap<String, Long>();
+    Map<String, Long> uploaded2 = new HashMap<String, Long>();
+
+    Path firstLogFile = new Path(workDir.getAbsolutePath(), "first");
+    LogWriter logWriter = new LogWriter(conf, firstLogFile, ugi);
+    logWriter.append(new LogKey(container1),
+        new LogValue(rootLogDirs, container1, uploaded1, null));
+    logWriter.closeWriter();
+
+    writeSrcFile(srcFilePath1, "stdout", 500, true);
+    writeSrcFile(srcFilePath2, "stdout", 2000);
+    Path secondLogFile = new Path(workDir.getAbsolutePath(), "second");
+    logWriter = new LogWriter(conf, secondLogFile, ugi);
+    logWriter.append(new LogKey(container2),
+        new LogValue(rootLogDirs, container2, uploaded2, null));
+    logWriter.append(new LogKey(container1),
+        new LogValue(rootLogDirs, container1, uploaded1,
+            new LogUploadThrottler(1024 * 1024)));
+    logWriter.closeWriter();
+
+    LogReader logReader = new LogReader(conf, firstLogFile);
+    ContainerLogsReader logsReader =
+        logReader.getContainerLogsReader(container1);
+    Assert.assertEquals("stderr", logsReader.nextLog());
+    Assert.assertEquals(10, logsReader.getCurrentLogLength());
+    Assert.assertEquals("stdout", logsReader.nextLog());
+    Assert.assertEquals(1000, logsReader.getCurrentLogLength());
+    Assert.assertNull(logsReader.nextLog());
+    Assert.assertNull(logReader.getContainerLogsReader(container2));
+    logReader.close();
+
+    // The unchanged stderr is not uploaded again
+    logReader = new LogReader(conf, secondLogFile);
+    logsReader = logReader.getContainerLogsReader(container1);
+    Assert.assertEquals("stdout", logsReader.nextLog());
+    Assert.assertEquals(500, logsReader.getCurrentLogLength());
+    char[] buf = new char[1000];
+    Assert.assertEquals(500, logsReader.read(buf, 0, buf.length));
+    Assert.assertEquals(filler, buf[499]);
+    Assert.assertNull(logsReader.nextLog());
+    logsReader = logReader.getContainerLogsReader(container2);
+    Assert.assertEquals("stdout", logsReader.nextLog());
+    Assert.assertEquals(2000, logsReader.getCurrentLogLength());
+    logReader.close();
+  }
+
+  // Verify that the indexed format is read like the TFile format, with the
+  // chosen log types compressed, and that TFile files are converted to it
+  @Test
+  public void testIndexedFormatAndConversion() throws Exception {
+    File workDir = new File(testWorkDir, "testIndexedFormatAndConversion");
+    Path srcFileRoot = new Path(workDir.getAbsolutePath(), "srcFiles");
+    ContainerId container1 = BuilderUtils.newContainerId(1, 1, 1, 1);
+    ContainerId container2 = BuilderUtils.newContainerId(1, 1, 1, 2);
+    Path appDir = new Path(srcFileRoot, container1.getApplicationAttemptId()
+        .getApplicationId().toString());
+    writeSrcFile(new Path(appDir, container1.toString()), "stdout", 5000);
+    writeSrcFile(new Path(appDir, container1.toString()), "syslog", 300);
+    writeSrcFile(new Path(appDir, container2.toString()), "stdout", 7000);
+    List<String> rootLogDirs = Collections.singletonList(
+        srcFileRoot.toString());
+    UserGroupInformation ugi = UserGroupInformation.getCurrentUser();
+    Map<ApplicationAccessType, String> acls =
+        new HashMap<ApplicationAccessType, String>();
+    acls.put(ApplicationAccessType.VIEW_APP, "viewer");
+
+    Configuration indexedConf = new Configuration();
+    indexedConf.set(YarnConfiguration.NM_LOG_AGG_FILE_FORMAT,
+        IndexedLogFormat.INDEXED_FORMAT);
+    indexedConf.set(YarnConfiguration.NM_LOG_AGG_INDEXED_COMPRESSION_CODEC,
+        DefaultCodec.class.getName());
+    indexedConf.set(YarnConfiguration.NM_LOG_AGG_INDEXED_COMPRESSED_LOG_TYPES,
+        "stdout");
+    Path indexedFile = new Path(workDir.getAbsolutePath(), "indexed");
+    LogWriter logWriter = new LogWriter(indexedConf, indexedFile, ugi);
+    logWriter.writeApplicationOwner("owner");
+    logWriter.writeApplicationACLs(acls);
+    logWriter.append(new LogKey(container1),
+        new LogValue(rootLogDirs, container1));
+    logWriter.append(new LogKey(container2),
+        new LogValue(rootLogDirs, container2));
+    logWriter.closeWriter();
+    // the stdout logs are compressed
+    Assert.assertTrue(fs.getFileStatus(indexedFile).getLen() < 5000);
+
+    // Files in either format are read with the default configuration
+    LogReader logReader = new LogReader(conf, indexedFile);
+    Assert.assertTrue(logReader.isIndexed());
+    Assert.assertEquals("owner", logReader.getApplicationOwner());
+    Assert.assertEquals(acls, logReader.getApplicationAcls());
+    ContainerLogsReader logsReader =
+        logReader.getContainerLogsReader(container2);
+    Assert.assertEquals("stdout", logsReader.nextLog());
+    Assert.assertEquals(7000, logsReader.getCurrentLogLength());
+    char[] buf = new char[8000];
+    int read = 0;
+    int len;
+    while ((len = logsReader.read(buf, read, buf.length - read)) > 0) {
+      read += len;
+    }
+    Assert.assertEquals(7000, read);
+    Assert.assertEquals(filler, buf[6999]);
+    Assert.assertNull(logsReader.nextLog());
+    // The compressed stdout is skipped over
+    logsReader = logReader.getContainerLogsReader(container1);
+    Assert.assertEquals("stdout", logsReader.nextLog());
+    Assert.assertEquals("syslog", logsReader.nextLog());
+    Assert.assertEquals(300, logsReader.read(buf, 0, buf.length));
+    Assert.assertNull(logsReader.nextLog());
+    Assert.assertNull(logReader.getContainerLogsReader(
+        BuilderUtils.newContainerId(1, 1, 1, 3)));
+    logReader.close();
+
+    Path tfile = new Path(workDir.getAbsolutePath(), "tfile");
+    logWriter = new LogWriter(conf, tfile, ugi);
+    logWriter.writeApplicationOwner("owner");
+    logWriter.writeApplicationACLs(acls);
+    logWriter.append(new LogKey(container1),
+        new LogValue(rootLogDirs, container1));
+    logWriter.append(new LogKey(container2),
+        new LogValue(rootLogDirs, container2));
+    logWriter.closeWriter();
+    String tfileLogs = readAllLogs(tfile);
+
+    AggregatedLogConverter converter = new AggregatedLogConverter();
+    converter.setConf(indexedConf);
+    FileContext fc = FileContext.getLocalFSFileContext();
+    FsPermission tfilePermission = new FsPermission((short) 0644);
+    fc.setPermission(tfile, tfilePermission);
+    Assert.assertTrue(converter.convert(fc, tfile));
+    // the converted file keeps the owner, group and permission
+    FileStatus converted = fc.getFileStatus(tfile);
+    Assert.assertEquals(tfilePermission, converted.getPermission());
+    Assert.assertEquals(ugi.getShortUserName(), converted.getOwner());
+    Assert.assertFalse(converter.convert(fc, tfile));
+    Assert.assertFalse(fs.exists(new Path(tfile.getParent(),
+        tfile.getName() + ".converting")));
+    logReader = new LogReader(conf, tfile);
+    Assert.assertTrue(logReader.isIndexed());
+    Assert.assertEquals("owner", logReader.getApplicationOwner());
+    Assert.assertEquals(acls, logReader.getApplicationAcls());
+    logReader.close();
+    Assert.assertEquals(tfileLogs, readAllLogs(tfile));
+    Assert.assertEquals(tfileLogs, readAllLogs(indexedFile));
+  }
+
+  private String readAllLogs(Path logFile) throws IOException {
+    LogReader logReader = new LogReader(conf, logFile);
+    try {
+      Writer writer = new StringWriter();
+      LogKey key = new LogKey();
+      DataInputStream valueStream = logReader.next(key);
+      while (valueStream != null) {
+        writer.write(key.toString());
+        LogReader.readAcontainerLogs(valueStream, writer);
+        key = new LogKey();
+        valueStream = logReader.next(key);
+      }
+      return writer.toString();
+    } finally {
+      logReader.close();
+    }
+  }
+
   private void writeSrcFile(Path srcFilePath, String fileName, long length)
       throws IOException {
+    writeSrcFile(srcFilePath, fileName, length, false);
+  }
+
+  private void writeSrcFile(Path srcFilePath, String fileName, long length,
+      boolean append) throws IOException {
     File dir = new File(srcFilePath.toString());
     if (!dir.exists()) {
       if (!dir.mkdirs()) {
@@ -141,7 +336,7 @@ private void writeSrcFile(Path srcFilePath, String fileName, long length)
       }
     }
     File outputFile = new File(new File(srcFilePath.toString()), fileName);
-    FileOutputStream os = new FileOutputStream(outputFile);
+    FileOutputStream os = new FileOutputStream(outputFile, append);
     OutputStreamWriter osw = new OutputStreamWriter(os, "UTF8");
     int ch = filler;
     for (int i = 0; i < length; i++) {
@@ -297,6 +297,7 @@ public static class ProcessStatInfo {
     String rssmemPage = "0";
     String utime = "0";
     String stime = "0";
+    String startTime = "0";
 
     public ProcessStatInfo(String[] statEntries) {
       pid = statEntries[0];
@@ -312,17 +313,20 @@ public ProcessStatInfo(String[] statEntries) {
         utime = statEntries[7];
         stime = statEntries[8];
       }
+      if (statEntries.length > 9) {
+        startTime = statEntries[9];
+      }
     }
 
     // construct a line that mimics the procfs stat file.
     // all unused numerical entries are set to 0.
     public String getStatLine() {
       return String.format("%s (%s) S %s %s %s 0 0 0" +
-                      " 0 0 0 0 %s %s 0 0 0 0 0 0 0 %s %s 0 0" +
+                      " 0 0 0 0 %s %s 0 0 0 0 0 0 %s %s %s 0 0" +
                       " 0 0 0 0 0 0 0 0" +
                       " 0 0 0 0 0",
                       pid, name, ppid, pgrpId, session,
-                      utime, stime, vmem, rssmemPage);
+                      utime, stime, startTime, vmem, rssmemPage);
     }
   }
 
@@ -507,6 +511,97 @@ public void testMemForOlderProcesses() throws IOException {
     }
   }
 
+  /**
+   * Tests that process trees built over a shared snapshot see the same
+   * processes as the ones reading all of procfs, that every stat file is
+   * read once per update, and that a reused pid is seen as a new process.
+   * @throws IOException if there was a problem setting up the
+   *                      fake procfs directories or files.
+   */
+  @Test (timeout = 30000)
+  public void testSharedSnapshot() throws IOException {
+    String[] pids = { "100", "200", "300", "400", "500" };
+    File procfsRootDir = new File(TEST_ROOT_DIR, "proc");
+
+    try {
+      setupProcfsRootDir(procfsRootDir);
+      setupPidDirs(procfsRootDir, pids);
+
+      // two trees, 100 -> 200 and 300 -> 400. 500 is in neither.
+      ProcessStatInfo[] procInfos = new ProcessStatInfo[5];
+      procInfos[0] = new ProcessStatInfo(new String[]
+          {"100", "proc1", "1", "100", "100", "100000", "100"});
+      procInfos[1] = new ProcessStatInfo(new String[]
+          {"200", "proc2", "100", "100", "100", "200000", "200"});
+      procInfos[2] = new ProcessStatInfo(new String[]
+          {"300", "proc3", "1", "300", "300", "300000", "300"});
+      procInfos[3] = new ProcessStatInfo(new String[]
+          {"400", "proc4", "300", "300", "300", "400000", "400"});
+      procInfos[4] = new ProcessStatInfo(new String[]
+          {"500", "proc5", "1", "500", "500", "500000", "500"});
+      writeStatFiles(procfsRootDir, pids, procInfos);
+
+      ProcfsSnapshot snapshot =
+          new ProcfsSnapshot(procfsRootDir.getAbsolutePath());
+      ProcfsBasedProcessTree tree1 = new ProcfsBasedProcessTree("100",
+          snapshot);
+      ProcfsBasedProcessTree tree2 = new ProcfsBasedProcessTree("300",
+          snapshot);
+
+      // the first update reads every process once
+      snapshot.update();
+      tree1.updateProcessTree();
+      tree2.updateProcessTree();
+      Assert.assertEquals(5, snapshot.getNumProcesses());
+      Assert.assertEquals(5, snapshot.getStatReads());
+      Assert.assertEquals(300000L, tree1.getCumulativeVmem());
+      Assert.assertEquals(700000L, tree2.getCumulativeVmem());
+
+      // later ones read every process once again
+      procInfos[1] = new ProcessStatInfo(new String[]
+          {"200", "proc2", "100", "100", "100", "250000", "200"});
+      writeStatFiles(procfsRootDir, pids, procInfos);
+      snapshot.update();
+      tree1.updateProcessTree();
+      tree2.updateProcessTree();
+      Assert.assertEquals(5, snapshot.getStatReads());
+      Assert.assertEquals(350000L, tree1.getCumulativeVmem());
+      Assert.assertEquals(350000L, tree1.getCumulativeVmem(1));
+
+      // new processes are read once, and old ones that are gone are dropped
+      String[] newPids = { "600" };
+      setupPidDirs(procfsRootDir, newPids);
+      writeStatFiles(procfsRootDir, newPids, new ProcessStatInfo[] {
+          new ProcessStatInfo(new String[]
+              {"600", "proc6", "400", "300", "300", "600000", "600"})});
+      Assert.assertTrue(FileUtil.fullyDelete(new File(procfsRootDir, "200")));
+      snapshot.update();
+      tree1.updateProcessTree();
+      tree2.updateProcessTree();
+      Assert.assertEquals(5, snapshot.getNumProcesses());
+      Assert.assertEquals(5, snapshot.getStatReads());
+      Assert.assertEquals(100000L, tree1.getCumulativeVmem());
+      Assert.assertEquals(1300000L, tree2.getCumulativeVmem());
+      Assert.assertEquals(700000L, tree2.getCumulativeVmem(1));
+
+      // pid 500 is reused by a child of 400, which started later
+      procInfos[4] = new ProcessStatInfo(new String[]
+          {"500", "proc7", "400", "300", "300", "700000", "500",
+           "0", "0", "7852"});
+      writeStatFiles(procfsRootDir, new String[] { "500" },
+          new ProcessStatInfo[] { procInfos[4] });
+      snapshot.update();
+      tree1.updateProcessTree();
+      tree2.updateProcessTree();
+      Assert.assertEquals(5, snapshot.getNumProcesses());
+      Assert.assertEquals(2000000L, tree2.getCumulativeVmem());
+      // and is only as old as the new process
+      Assert.assertEquals(1300000L, tree2.getCumulativeVmem(1));
+    } finally {
+      FileUtil.fullyDelete(procfsRootDir);
+    }
+  }
+
   /**
    * Verifies ProcfsBasedProcessTree.checkPidPgrpidForMatch() in case of
    * 'constructProcessInfo() returning null' by not writing stat file for the
@@ -19,11 +19,18 @@
 package org.apache.hadoop.yarn.server.api.protocolrecords.impl.pb;
 
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.api.records.ProtoBase;
 import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.api.records.impl.pb.ContainerPBImpl;
 import org.apache.hadoop.yarn.api.records.impl.pb.NodeIdPBImpl;
 import org.apache.hadoop.yarn.api.records.impl.pb.ResourcePBImpl;
+import org.apache.hadoop.yarn.proto.YarnProtos.ContainerProto;
 import org.apache.hadoop.yarn.proto.YarnProtos.NodeIdProto;
 import org.apache.hadoop.yarn.proto.YarnProtos.ResourceProto;
 import org.apache.hadoop.yarn.proto.YarnServerCommonServiceProtos.RegisterNodeManagerRequestProto;
@@ -39,6 +46,7 @@ public class RegisterNodeManagerRequestPBImpl extends ProtoBase<RegisterNodeMana
   
   private Resource resource = null;
   private NodeId nodeId = null;
+  private List<Container> containers = null;
   
   public RegisterNodeManagerRequestPBImpl() {
     builder = RegisterNodeManagerRequestProto.newBuilder();
@@ -63,7 +71,41 @@ private void mergeLocalToBuilder() {
     if (this.nodeId != null) {
       builder.setNodeId(convertToProtoFormat(this.nodeId));
     }
+    if (this.containers != null) {
+      addContainersToProto();
+    }
+  }
 
+  private void addContainersToProto() {
+    maybeInitBuilder();
+    builder.clearContainers();
+    if (containers == null)
+      return;
+    Iterable<ContainerProto> iterable = new Iterable<ContainerProto>() {
+      @Override
+      public Iterator<ContainerProto> iterator() {
+        return new Iterator<ContainerProto>() {
+
+          Iterator<Container> iter = containers.iterator();
+
+          @Override
+          public boolean hasNext() {
+            return iter.hasNext();
+          }
+
+          @Override
+          public ContainerProto next() {
+            return convertToProtoFormat(iter.next());
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+    builder.addAllContainers(iterable);
   }
 
   private void mergeLocalToProto() {
@@ -139,6 +181,32 @@ public void setHttpPort(int httpPort) {
     builder.setHttpPort(httpPort);
   }
 
+  @Override
+  public List<Container> getContainers() {
+    initContainers();
+    return this.containers;
+  }
+
+  @Override
+  public void setContainers(List<Container> containers) {
+    maybeInitBuilder();
+    if (containers == null) 
+      builder.clearContainers();
+    this.containers = containers;
+  }
+
+  private void initContainers() {
+    if (this.containers != null) {
+      return;
+    }
+    RegisterNodeManagerRequestProtoOrBuilder p = viaProto ? proto : builder;
+    List<ContainerProto> list = p.getContainersList();
+    this.containers = new ArrayList<Container>();
+    for (ContainerProto c : list) {
+      this.containers.add(convertFromProtoFormat(c));
+    }
+  }
+
   private NodeIdPBImpl convertFromProtoFormat(NodeIdProto p) {
     return new NodeIdPBImpl(p);
   }
@@ -155,6 +223,14 @@ private ResourceProto convertToProtoFormat(Resource t) {
     return ((ResourcePBImpl)t).getProto();
   }
 
+  private ContainerPBImpl convertFromProtoFormat(ContainerProto p) {
+    return new ContainerPBImpl(p);
+  }
+
+  private ContainerProto convertToProtoFormat(Container t) {
+    return ((ContainerPBImpl)t).getProto();
+  }
+
 
 
 }  
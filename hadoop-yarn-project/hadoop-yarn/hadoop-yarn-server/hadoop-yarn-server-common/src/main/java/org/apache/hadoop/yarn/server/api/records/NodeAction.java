@@ -21,8 +21,10 @@
 /**
  * The NodeManager is instructed to perform the given action.
  * 
+ * <code>RESYNC</code> asks the NodeManager to register again, with its
+ * running containers, without killing them.
  */
 
 public enum NodeAction {
-  NORMAL, REBOOT, SHUTDOWN
+  NORMAL, REBOOT, SHUTDOWN, RESYNC
 }
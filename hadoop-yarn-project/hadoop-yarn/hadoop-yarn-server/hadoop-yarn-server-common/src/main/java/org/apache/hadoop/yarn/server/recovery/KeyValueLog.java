@@ -0,0 +1,503 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.recovery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.io.IOUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * An embedded, log-structured key-value store in a single local file.
+ *
+ * Every put and delete is appended to the log as a checksummed record, and
+ * the last record of a key wins. Appends are buffered until
+ * {@link #sync(long)} is called: a caller that finds another one already
+ * syncing waits for it and, if its own records were not covered, syncs
+ * everything appended in the meantime. Concurrent writers thus share
+ * flushes and fsyncs, i.e. records are committed in groups.
+ *
+ * Records of keys that were since put again or deleted are garbage. Once
+ * they make up enough of the log, {@link #compact()} rewrites it with the
+ * live records only. Writers keep appending while the live records are
+ * rewritten, and are only held up while their records are copied after
+ * them.
+ *
+ * Records at the end of the log that were cut short or corrupted by a
+ * crash are dropped when the log is opened. The log is cut at its first
+ * corrupt record: a bad length makes the records after it unreadable, and
+ * applying them without the ones before could bring back deleted keys.
+ *
+ * The log files are only accessible to their owner, as callers keep
+ * secrets such as tokens and keys in them.
+ */
+@Private
+@Unstable
+public class KeyValueLog implements Closeable {
+
+  private static final Log LOG = LogFactory.getLog(KeyValueLog.class);
+
+  private static final byte PUT = 1;
+  private static final byte DELETE = 2;
+
+  // Length and checksum of the body of every record
+  private static final int HEADER_LENGTH = 8;
+
+  // Bodies are read into memory whole, a larger length is corrupt
+  static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+  private static final FsPermission FILE_PERMISSION =
+      new FsPermission((short) 0600);
+
+  private final File file;
+  private final long compactionMinBytes;
+  private final float compactionGarbageRatio;
+
+  // Size of the last record of every live key
+  private Map<String, Integer> liveRecords;
+  private long liveBytes;
+  private long logBytes;
+
+  private FileOutputStream fileOut;
+  private DataOutputStream out;
+
+  private long appendedSeq = 0;
+  private long syncedSeq = 0;
+  private boolean syncing = false;
+  private long numSyncs = 0;
+  private boolean compacting = false;
+
+  public KeyValueLog(File file, long compactionMinBytes,
+      float compactionGarbageRatio) throws IOException {
+    this.file = file;
+    this.compactionMinBytes = compactionMinBytes;
+    this.compactionGarbageRatio = compactionGarbageRatio;
+
+    createPrivateFile(file);
+    liveRecords = new HashMap<String, Integer>();
+    long length = replay(null, liveRecords, file.length());
+    if (length < file.length()) {
+      LOG.error("Dropping " + (file.length() - length)
+          + " bytes of " + file + " from the incomplete or corrupt record"
+          + " at offset " + length);
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(length);
+      } finally {
+        raf.close();
+      }
+    }
+    logBytes = length;
+    liveBytes = 0;
+    for (Integer size : liveRecords.values()) {
+      liveBytes += size;
+    }
+    openForAppend();
+  }
+
+  /**
+   * Create the file if it does not exist yet, and restrict it to its owner
+   * before anything is written to it.
+   */
+  private static void createPrivateFile(File f) throws IOException {
+    if (!f.createNewFile() && !f.isFile()) {
+      throw new IOException("Could not create " + f);
+    }
+    FileUtil.setPermission(f, FILE_PERMISSION);
+  }
+
+  private void openForAppend() throws IOException {
+    fileOut = new FileOutputStream(file, true);
+    out = new DataOutputStream(new BufferedOutputStream(fileOut));
+  }
+
+  private void checkOpen() throws IOException {
+    if (out == null) {
+      throw new IOException("Key-value log " + file + " is closed");
+    }
+  }
+
+  /**
+   * Append a put of a key.
+   * @return the sequence number to {@link #sync(long)} on
+   */
+  public synchronized long put(String key, byte[] value) throws IOException {
+    checkOpen();
+    int size = append(PUT, key, value);
+    Integer old = liveRecords.put(key, size);
+    liveBytes += size - (old == null ? 0 : old);
+    return ++appendedSeq;
+  }
+
+  /**
+   * Append a delete of a key, if it is live.
+   * @return the sequence number to {@link #sync(long)} on
+   */
+  public synchronized long delete(String key) throws IOException {
+    checkOpen();
+    Integer old = liveRecords.remove(key);
+    if (old == null) {
+      return appendedSeq;
+    }
+    append(DELETE, key, null);
+    liveBytes -= old;
+    return ++appendedSeq;
+  }
+
+  private int append(byte type, String key, byte[] value) throws IOException {
+    byte[] body = encode(type, key, value);
+    writeRecord(out, body);
+    int size = HEADER_LENGTH + body.length;
+    logBytes += size;
+    return size;
+  }
+
+  /**
+   * Make all records up to the given sequence number durable.
+   */
+  public void sync(long seq) throws IOException {
+    FileChannel channel;
+    long target;
+    synchronized (this) {
+      while (syncedSeq < seq && syncing) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException(
+              "Interrupted waiting to sync " + file);
+        }
+      }
+      if (syncedSeq >= seq) {
+        return;
+      }
+      checkOpen();
+      syncing = true;
+      target = appendedSeq;
+      channel = fileOut.getChannel();
+      try {
+        out.flush();
+      } catch (IOException e) {
+        syncing = false;
+        notifyAll();
+        throw e;
+      }
+    }
+
+    // Other writers keep appending while we wait for the disk
+    boolean synced = false;
+    try {
+      channel.force(false);
+      synced = true;
+    } finally {
+      synchronized (this) {
+        syncing = false;
+        if (synced) {
+          syncedSeq = target;
+          numSyncs++;
+        }
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Read the value of every live key.
+   */
+  public synchronized Map<String, byte[]> load() throws IOException {
+    checkOpen();
+    out.flush();
+    Map<String, byte[]> values = new LinkedHashMap<String, byte[]>();
+    replay(values, null, logBytes);
+    return values;
+  }
+
+  /**
+   * Whether enough of the log is garbage for it to be worth compacting.
+   */
+  public synchronized boolean needsCompaction() {
+    return logBytes >= compactionMinBytes
+        && (logBytes - liveBytes) > logBytes * compactionGarbageRatio;
+  }
+
+  /**
+   * Rewrite the log with the live records only. The records appended while
+   * the live ones are rewritten are copied after them. Nothing is done if
+   * the log is being compacted already.
+   */
+  public void compact() throws IOException {
+    long compactFrom;
+    synchronized (this) {
+      checkOpen();
+      if (compacting) {
+        return;
+      }
+      out.flush();
+      compacting = true;
+      compactFrom = logBytes;
+    }
+
+    File compacted = new File(file.getPath() + ".compacting");
+    FileOutputStream compactedFileOut = null;
+    DataOutputStream compactedOut = null;
+    boolean replaced = false;
+    try {
+      Map<String, byte[]> values = new LinkedHashMap<String, byte[]>();
+      replay(values, null, compactFrom);
+      if (compacted.exists() && !compacted.delete()) {
+        throw new IOException("Could not delete " + compacted);
+      }
+      createPrivateFile(compacted);
+      compactedFileOut = new FileOutputStream(compacted);
+      compactedOut = new DataOutputStream(
+          new BufferedOutputStream(compactedFileOut));
+      long compactedBytes = 0;
+      for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+        byte[] body = encode(PUT, entry.getKey(), entry.getValue());
+        writeRecord(compactedOut, body);
+        compactedBytes += HEADER_LENGTH + body.length;
+      }
+      compactedOut.flush();
+      compactedFileOut.getChannel().force(false);
+
+      synchronized (this) {
+        checkOpen();
+        waitForSync();
+        out.flush();
+        long oldBytes = logBytes;
+        copyTail(compactFrom, oldBytes - compactFrom, compactedOut);
+        compactedOut.flush();
+        compactedFileOut.getChannel().force(true);
+        compactedOut.close();
+        compactedOut = null;
+
+        out.close();
+        out = null;
+        FileUtil.replaceFile(compacted, file);
+        replaced = true;
+        openForAppend();
+
+        // The rewritten records have the same size as the ones they
+        // replace, so only the garbage is gone
+        logBytes = compactedBytes + (oldBytes - compactFrom);
+        // Everything appended so far is in the fsynced, compacted log
+        syncedSeq = appendedSeq;
+        notifyAll();
+        LOG.info("Compacted " + file + " from " + oldBytes + " to "
+            + logBytes + " bytes");
+      }
+    } finally {
+      IOUtils.cleanup(LOG, compactedOut);
+      if (!replaced && compacted.exists() && !compacted.delete()) {
+        LOG.warn("Could not delete " + compacted);
+      }
+      synchronized (this) {
+        compacting = false;
+      }
+    }
+  }
+
+  /**
+   * Copy the records appended to the log from the given offset on.
+   */
+  private void copyTail(long offset, long length, DataOutputStream to)
+      throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      in.getChannel().position(offset);
+      IOUtils.copyBytes(in, to, length, false);
+    } finally {
+      in.close();
+    }
+  }
+
+  private void waitForSync() throws IOException {
+    while (syncing) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException(
+            "Interrupted waiting for sync of " + file);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (out == null) {
+      return;
+    }
+    waitForSync();
+    try {
+      out.flush();
+      fileOut.getChannel().force(false);
+      syncedSeq = appendedSeq;
+    } finally {
+      IOUtils.cleanup(LOG, out);
+      out = null;
+      notifyAll();
+    }
+  }
+
+  @VisibleForTesting
+  public synchronized long getNumSyncs() {
+    return numSyncs;
+  }
+
+  @VisibleForTesting
+  public synchronized long getLogBytes() {
+    return logBytes;
+  }
+
+  @VisibleForTesting
+  public synchronized long getLiveBytes() {
+    return liveBytes;
+  }
+
+  private static byte[] encode(byte type, String key, byte[] value)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream body = new DataOutputStream(bytes);
+    body.writeByte(type);
+    body.writeUTF(key);
+    if (value != null) {
+      body.write(value);
+    }
+    body.close();
+    if (bytes.size() > MAX_RECORD_LENGTH) {
+      throw new IOException("Record of " + key + " is " + bytes.size()
+          + " bytes long, more than the maximum of " + MAX_RECORD_LENGTH);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void writeRecord(DataOutputStream out, byte[] body)
+      throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    out.writeInt(body.length);
+    out.writeInt((int) crc.getValue());
+    out.write(body);
+  }
+
+  /**
+   * Read the log from the start up to the given offset, into the live values
+   * and/or the record sizes of the live keys. Reading stops at the first
+   * incomplete or corrupt record.
+   * @return the length of the log up to the end of the last valid record
+   */
+  private long replay(Map<String, byte[]> values, Map<String, Integer> sizes,
+      long limit) throws IOException {
+    if (!file.exists()) {
+      return 0;
+    }
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)));
+    long offset = 0;
+    try {
+      while (offset + HEADER_LENGTH <= limit) {
+        int bodyLength = in.readInt();
+        int checksum = in.readInt();
+        if (bodyLength < 0 || bodyLength > MAX_RECORD_LENGTH
+            || bodyLength > limit - offset - HEADER_LENGTH) {
+          break;
+        }
+        byte[] body = new byte[bodyLength];
+        in.readFully(body);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != checksum
+            || !apply(body, values, sizes, offset)) {
+          break;
+        }
+        offset += HEADER_LENGTH + bodyLength;
+      }
+    } catch (EOFException e) {
+      // the file is shorter than the limit
+    } finally {
+      in.close();
+    }
+    return offset;
+  }
+
+  /**
+   * Apply a record read from the given offset.
+   * @return false if the record is corrupt
+   */
+  private boolean apply(byte[] body, Map<String, byte[]> values,
+      Map<String, Integer> sizes, long offset) throws IOException {
+    DataInputStream record =
+        new DataInputStream(new ByteArrayInputStream(body));
+    byte type;
+    String key;
+    try {
+      type = record.readByte();
+      key = record.readUTF();
+    } catch (IOException e) {
+      return false;
+    }
+    if (type == PUT) {
+      if (values != null) {
+        byte[] value = new byte[record.available()];
+        record.readFully(value);
+        // keep the order of the last puts
+        values.remove(key);
+        values.put(key, value);
+      }
+      if (sizes != null) {
+        sizes.put(key, HEADER_LENGTH + body.length);
+      }
+    } else if (type == DELETE) {
+      if (values != null) {
+        values.remove(key);
+      }
+      if (sizes != null) {
+        sizes.remove(key);
+      }
+    } else {
+      throw new IOException("Unknown record type " + type + " in "
+          + file + " at offset " + offset);
+    }
+    return true;
+  }
+}
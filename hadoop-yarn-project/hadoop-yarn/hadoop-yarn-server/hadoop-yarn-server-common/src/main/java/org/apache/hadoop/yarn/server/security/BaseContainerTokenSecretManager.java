@@ -181,6 +181,24 @@ public ContainerTokenIdentifier createIdentifier() {
    */
   public ContainerToken createContainerToken(ContainerId containerId,
       NodeId nodeId, String appSubmitter, Resource capability) {
+    return createContainerToken(containerId, nodeId, appSubmitter, capability,
+        false);
+  }
+
+  /**
+   * Helper function for creating ContainerTokens for guaranteed or
+   * opportunistic containers
+   * 
+   * @param containerId
+   * @param nodeId
+   * @param appSubmitter
+   * @param capability
+   * @param opportunistic
+   * @return the container-token
+   */
+  public ContainerToken createContainerToken(ContainerId containerId,
+      NodeId nodeId, String appSubmitter, Resource capability,
+      boolean opportunistic) {
     byte[] password;
     ContainerTokenIdentifier tokenIdentifier;
     long expiryTimeStamp =
@@ -192,7 +210,7 @@ public ContainerToken createContainerToken(ContainerId containerId,
       tokenIdentifier =
           new ContainerTokenIdentifier(containerId, nodeId.toString(),
             appSubmitter, capability, expiryTimeStamp, this.currentMasterKey
-              .getMasterKey().getKeyId());
+              .getMasterKey().getKeyId(), opportunistic);
       password = this.createPassword(tokenIdentifier);
 
     } finally {
@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.yarn.server.nodemanager;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
@@ -29,6 +30,7 @@
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configurable;
@@ -39,6 +41,7 @@
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.Container;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.launcher.ContainerLaunch;
 import org.apache.hadoop.yarn.server.nodemanager.util.ProcessIdFileReader;
 import org.apache.hadoop.util.Shell;
 
@@ -117,6 +120,59 @@ public abstract int launchContainer(Container container,
       String user, String appId, Path containerWorkDir, List<String> localDirs,
       List<String> logDirs) throws IOException;
 
+  /**
+   * Wait for a container launched before the NodeManager restarted to exit.
+   * The container must have been activated with the pid file it was
+   * launched with.
+   * @param user the user of the container
+   * @param containerId the container
+   * @return the exit code of the container
+   * @throws IOException if the exit code of the container is unknown
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public int reacquireContainer(String user, ContainerId containerId)
+      throws IOException, InterruptedException {
+    Path pidPath = getPidFilePath(containerId);
+    if (pidPath == null) {
+      LOG.warn(containerId + " is not active, returning terminated error");
+      return ExitCode.TERMINATED.getExitCode();
+    }
+
+    String pid = ProcessIdFileReader.getProcessId(pidPath);
+    if (pid == null) {
+      throw new IOException("Unable to determine pid for " + containerId);
+    }
+    LOG.info("Reacquiring " + containerId + " with pid " + pid);
+    while (signalContainer(user, pid, Signal.NULL)) {
+      Thread.sleep(1000);
+    }
+
+    // The wrapper of the container writes the exit code once the container
+    // exits, wait a bit for it
+    File exitCodeFile = new File(
+        ContainerLaunch.getExitCodeFile(pidPath.toUri().getPath()));
+    int msecLeft = 2000;
+    while (!exitCodeFile.exists() && msecLeft >= 0) {
+      if (!isContainerActive(containerId)) {
+        LOG.info(containerId + " was deactivated");
+        return ExitCode.TERMINATED.getExitCode();
+      }
+      Thread.sleep(100);
+      msecLeft -= 100;
+    }
+    if (msecLeft < 0) {
+      throw new IOException("Timeout while waiting for exit code from "
+          + containerId);
+    }
+
+    try {
+      return Integer.parseInt(
+          FileUtils.readFileToString(exitCodeFile).trim());
+    } catch (NumberFormatException e) {
+      throw new IOException("Error parsing exit code from pid " + pid, e);
+    }
+  }
+
   public abstract boolean signalContainer(String user, String pid,
       Signal signal)
       throws IOException;
@@ -124,9 +180,27 @@ public abstract boolean signalContainer(String user, String pid,
   public abstract void deleteAsUser(String user, Path subDir, Path... basedirs)
       throws IOException, InterruptedException;
 
+  /**
+   * Delete the given paths, with their contents, as the user. Executors that
+   * run a process for each deletion delete them all in one instead.
+   * @param user the user to delete as
+   * @param paths the absolute paths to delete
+   * @return the number of bytes deleted, or -1 if not known
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  public long deletePathsAsUser(String user, List<Path> paths)
+      throws IOException, InterruptedException {
+    for (Path path : paths) {
+      deleteAsUser(user, path);
+    }
+    return -1;
+  }
+
   public enum ExitCode {
     FORCE_KILLED(137),
-    TERMINATED(143);
+    TERMINATED(143),
+    LOST(154);
     private final int code;
 
     private ExitCode(int exitCode) {
@@ -242,27 +242,67 @@ protected LocalWrapperScriptBuilder(Path wrapperScriptPath) {
     }
   }
 
+  /**
+   * The wrapper runs the session script, which writes the pid file and
+   * becomes the container, and then writes the exit code of the container.
+   * The exit code is written even if the NodeManager is no longer around to
+   * wait for the container.
+   */
   private final class UnixLocalWrapperScriptBuilder
       extends LocalWrapperScriptBuilder {
 
+    private final Path sessionScriptPath;
+
     public UnixLocalWrapperScriptBuilder(Path containerWorkDir) {
       super(new Path(containerWorkDir, "default_container_executor.sh"));
+      this.sessionScriptPath = new Path(containerWorkDir,
+          "default_container_executor_session.sh");
+    }
+
+    @Override
+    public void writeLocalWrapperScript(Path launchDst, Path pidFile)
+        throws IOException {
+      writeSessionScript(launchDst, pidFile);
+      super.writeLocalWrapperScript(launchDst, pidFile);
     }
 
     @Override
     public void writeLocalWrapperScript(Path launchDst, Path pidFile,
         PrintStream pout) {
-
-      // We need to do a move as writing to a file is not atomic
-      // Process reading a file being written to may get garbled data
-      // hence write pid to tmp file first followed by a mv
+      String exitCodeFile = ContainerLaunch.getExitCodeFile(
+          pidFile.toString());
+      String tmpFile = exitCodeFile + ".tmp";
       pout.println("#!/bin/bash");
-      pout.println();
-      pout.println("echo $$ > " + pidFile.toString() + ".tmp");
-      pout.println("/bin/mv -f " + pidFile.toString() + ".tmp " + pidFile);
-      String exec = ContainerExecutor.isSetsidAvailable? "exec setsid" : "exec";
-      pout.println(exec + " /bin/bash -c \"" +
-        launchDst.toUri().getPath().toString() + "\"");
+      pout.println("/bin/bash \"" + sessionScriptPath.toString() + "\"");
+      pout.println("rc=$?");
+      pout.println("echo $rc > \"" + tmpFile + "\"");
+      pout.println("/bin/mv -f \"" + tmpFile + "\" \"" + exitCodeFile + "\"");
+      pout.println("exit $rc");
+    }
+
+    private void writeSessionScript(Path launchDst, Path pidFile)
+        throws IOException {
+      DataOutputStream out = null;
+      PrintStream pout = null;
+      try {
+        out = lfs.create(sessionScriptPath, EnumSet.of(CREATE, OVERWRITE));
+        pout = new PrintStream(out);
+        // We need to do a move as writing to a file is not atomic
+        // Process reading a file being written to may get garbled data
+        // hence write pid to tmp file first followed by a mv
+        pout.println("#!/bin/bash");
+        pout.println();
+        pout.println("echo $$ > " + pidFile.toString() + ".tmp");
+        pout.println("/bin/mv -f " + pidFile.toString() + ".tmp " + pidFile);
+        String exec =
+            ContainerExecutor.isSetsidAvailable? "exec setsid" : "exec";
+        pout.println(exec + " /bin/bash -c \"" +
+          launchDst.toUri().getPath().toString() + "\"");
+      } finally {
+        IOUtils.cleanup(LOG, pout, out);
+      }
+      lfs.setPermission(sessionScriptPath,
+          ContainerExecutor.TASK_LAUNCH_SCRIPT_PERMISSION);
     }
   }
 
@@ -291,6 +331,13 @@ public void writeLocalWrapperScript(Path launchDst, Path pidFile,
       pout.println("@move /Y " + normalizedPidFile + ".tmp " +
         normalizedPidFile);
       pout.println("@call " + launchDst.toString());
+      // Write the exit code for a restarted NodeManager
+      String exitCodeFile = ContainerLaunch.getExitCodeFile(
+          normalizedPidFile);
+      pout.println("@set rc=%errorlevel%");
+      pout.println("@echo %rc% > " + exitCodeFile + ".tmp");
+      pout.println("@move /Y " + exitCodeFile + ".tmp " + exitCodeFile);
+      pout.println("@exit /B %rc%");
     }
   }
 
@@ -366,6 +413,59 @@ public void deleteAsUser(String user, Path subDir, Path... baseDirs)
     }
   }
 
+  @Override
+  public long deletePathsAsUser(String user, List<Path> paths)
+      throws IOException, InterruptedException {
+    long bytes = 0;
+    for (Path path : paths) {
+      LOG.info("Deleting path : " + path);
+      bytes += deleteCountingBytes(lfs, path);
+    }
+    return bytes;
+  }
+
+  /**
+   * Delete a local path with its contents, adding up the lengths of the
+   * files deleted on the way instead of sizing the tree beforehand.
+   * @return the number of bytes deleted
+   */
+  static long deleteCountingBytes(FileContext lfs, Path path)
+      throws IOException {
+    File file = new File(path.toUri().getPath());
+    if (file.isFile()) {
+      // through the file system, which deletes the checksum file as well
+      long length = file.length();
+      if (!lfs.delete(path, false)) {
+        LOG.warn("delete returned false for path: [" + path + "]");
+        return 0;
+      }
+      return length;
+    }
+    long bytes = deleteTree(file);
+    if (file.exists()) {
+      LOG.warn("Could not fully delete path: [" + path + "]");
+    }
+    return bytes;
+  }
+
+  private static long deleteTree(File file) {
+    long length = file.isFile() ? file.length() : 0;
+    // a file, a symlink or an empty directory
+    if (file.delete()) {
+      return length;
+    }
+    File[] children = file.listFiles();
+    if (children == null) {
+      return 0;
+    }
+    long bytes = 0;
+    for (File child : children) {
+      bytes += deleteTree(child);
+    }
+    file.delete();
+    return bytes;
+  }
+
   /** Permissions for user dir.
    * $local.dir/usercache/$user */
   static final short USER_PERM = (short)0750;
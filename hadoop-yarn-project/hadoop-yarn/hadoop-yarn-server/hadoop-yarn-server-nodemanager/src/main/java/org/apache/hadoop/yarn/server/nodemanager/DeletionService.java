@@ -19,9 +19,18 @@
 package org.apache.hadoop.yarn.server.nodemanager;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import static java.util.concurrent.TimeUnit.*;
 
 import org.apache.hadoop.fs.Path;
@@ -31,6 +40,7 @@
 import org.apache.hadoop.fs.UnsupportedFileSystemException;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor;
+import org.apache.hadoop.yarn.server.nodemanager.metrics.NodeManagerMetrics;
 import org.apache.hadoop.yarn.service.AbstractService;
 
 import org.apache.commons.logging.Log;
@@ -38,11 +48,42 @@
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Deletes paths in the background. The deletions are queued per local disk
+ * and each disk deletes one batch at a time, highest priority first, so
+ * that cleaning up after large applications does not take the disks from
+ * the running containers. The paths a user owns in a batch are deleted by
+ * the container executor in one go, and the next batch on a disk can be
+ * held back until the disk bandwidth allows for the bytes deleted.
+ */
 public class DeletionService extends AbstractService {
   static final Log LOG = LogFactory.getLog(DeletionService.class);
+
+  /**
+   * The order the deletions on a disk run in
+   */
+  public enum Priority {
+    /** Container working directories, the space running containers need */
+    CONTAINER,
+    /** Application directories and logs */
+    APPLICATION,
+    /** Localized resources evicted from the cache */
+    CACHE
+  }
+
   private int debugDelay;
   private final ContainerExecutor exec;
+  private final NodeManagerMetrics metrics;
   private ScheduledThreadPoolExecutor sched;
+  private int batchSize;
+  private long diskBandwidth;
+  // the local and log dirs, the deletions under each are queued apart
+  private final List<String> diskRoots = new ArrayList<String>();
+  private final Map<String, DiskDeletions> disks =
+      new HashMap<String, DiskDeletions>();
+  private final AtomicLong deletionSequence = new AtomicLong();
+  // once set, the queued deletions run without waiting for the bandwidth
+  private volatile boolean stopping = false;
   private final FileContext lfs = getLfs();
   static final FileContext getLfs() {
     try {
@@ -53,13 +94,16 @@ static final FileContext getLfs() {
   }
 
   public DeletionService(ContainerExecutor exec) {
+    this(exec, null);
+  }
+
+  public DeletionService(ContainerExecutor exec, NodeManagerMetrics metrics) {
     super(DeletionService.class.getName());
     this.exec = exec;
+    this.metrics = metrics;
     this.debugDelay = 0;
   }
-  
-  /**
-   * 
+
   /**
    * Delete the path(s) as this user.
    * @param user The user to delete as, or the JVM user if null
@@ -67,10 +111,45 @@ public DeletionService(ContainerExecutor exec) {
    * @param baseDirs the base directories which contains the subDir's
    */
   public void delete(String user, Path subDir, Path... baseDirs) {
+    delete(Priority.APPLICATION, user, subDir, baseDirs);
+  }
+
+  /**
+   * Delete the path(s) as this user, ahead of the deletions of a lower
+   * priority on the same disk.
+   * @param priority the priority of the deletion
+   * @param user The user to delete as, or the JVM user if null
+   * @param subDir the sub directory name, or null to delete the baseDirs
+   * @param baseDirs the base directories which contains the subDir's
+   */
+  public void delete(Priority priority, String user, Path subDir,
+      Path... baseDirs) {
     // TODO if parent owned by NM, rename within parent inline
-    if (debugDelay != -1) {
-      sched.schedule(new FileDeletion(user, subDir, baseDirs), debugDelay,
-          TimeUnit.SECONDS);
+    if (debugDelay == -1) {
+      return;
+    }
+    final List<PathDeletion> deletions = new ArrayList<PathDeletion>();
+    if (baseDirs == null || baseDirs.length == 0) {
+      deletions.add(new PathDeletion(priority, user, subDir));
+    } else {
+      for (Path baseDir : baseDirs) {
+        Path del = subDir == null ? baseDir : new Path(baseDir, subDir);
+        deletions.add(new PathDeletion(priority, user, del));
+      }
+    }
+    if (debugDelay > 0) {
+      try {
+        sched.schedule(new Runnable() {
+          @Override
+          public void run() {
+            queue(deletions);
+          }
+        }, debugDelay, TimeUnit.SECONDS);
+      } catch (RejectedExecutionException e) {
+        LOG.warn("Not deleting " + subDir + " as the service is stopped");
+      }
+    } else {
+      queue(deletions);
     }
   }
 
@@ -84,17 +163,44 @@ public void init(Configuration conf) {
           conf.getInt(YarnConfiguration.NM_DELETE_THREAD_COUNT, YarnConfiguration.DEFAULT_NM_DELETE_THREAD_COUNT),
           tf);
       debugDelay = conf.getInt(YarnConfiguration.DEBUG_NM_DELETE_DELAY_SEC, 0);
+      batchSize = conf.getInt(YarnConfiguration.NM_DELETE_BATCH_SIZE,
+          YarnConfiguration.DEFAULT_NM_DELETE_BATCH_SIZE);
+      diskBandwidth = conf.getLong(YarnConfiguration.NM_DELETE_DISK_BANDWIDTH,
+          YarnConfiguration.DEFAULT_NM_DELETE_DISK_BANDWIDTH);
+      addDiskRoots(conf.getTrimmedStrings(YarnConfiguration.NM_LOCAL_DIRS));
+      addDiskRoots(conf.getTrimmedStrings(YarnConfiguration.NM_LOG_DIRS));
     } else {
       sched = new ScheduledThreadPoolExecutor(YarnConfiguration.DEFAULT_NM_DELETE_THREAD_COUNT,
           tf);
+      batchSize = YarnConfiguration.DEFAULT_NM_DELETE_BATCH_SIZE;
+      diskBandwidth = YarnConfiguration.DEFAULT_NM_DELETE_DISK_BANDWIDTH;
     }
+    batchSize = Math.max(1, batchSize);
     sched.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
     sched.setKeepAliveTime(60L, SECONDS);
     super.init(conf);
   }
 
+  private void addDiskRoots(String[] dirs) {
+    for (String dir : dirs) {
+      String root = new Path(dir).toUri().getPath();
+      if (!diskRoots.contains(root)) {
+        diskRoots.add(root);
+      }
+    }
+  }
+
   @Override
   public void stop() {
+    // Run what is queued during the termination wait
+    stopping = true;
+    List<DiskDeletions> queued;
+    synchronized (disks) {
+      queued = new ArrayList<DiskDeletions>(disks.values());
+    }
+    for (DiskDeletions disk : queued) {
+      disk.runNow();
+    }
     sched.shutdown();
     boolean terminated = false;
     try {
@@ -103,6 +209,9 @@ public void stop() {
     }
     if (terminated != true) {
       sched.shutdownNow();
+      for (DiskDeletions disk : queued) {
+        disk.drop();
+      }
     }
     super.stop();
   }
@@ -117,40 +226,197 @@ public boolean isTerminated() {
     return getServiceState() == STATE.STOPPED && sched.isTerminated();
   }
 
-  private class FileDeletion implements Runnable {
+  /**
+   * The local or log dir the path is under, the empty string if none.
+   */
+  private String getDiskRoot(Path path) {
+    String p = path.toUri().getPath();
+    String match = "";
+    for (String root : diskRoots) {
+      if (root.length() > match.length()
+          && (p.equals(root) || p.startsWith(root.endsWith("/")
+              ? root : root + "/"))) {
+        match = root;
+      }
+    }
+    return match;
+  }
+
+  private void queue(List<PathDeletion> deletions) {
+    for (PathDeletion deletion : deletions) {
+      String root = getDiskRoot(deletion.path);
+      DiskDeletions disk;
+      synchronized (disks) {
+        disk = disks.get(root);
+        if (disk == null) {
+          disk = new DiskDeletions(root);
+          disks.put(root, disk);
+        }
+      }
+      disk.add(deletion);
+    }
+    if (metrics != null) {
+      metrics.queuedDeletions(deletions.size());
+    }
+  }
+
+  private class PathDeletion implements Comparable<PathDeletion> {
+    final Priority priority;
+    final long sequence;
     final String user;
-    final Path subDir;
-    final Path[] baseDirs;
-    FileDeletion(String user, Path subDir, Path[] baseDirs) {
+    final Path path;
+    PathDeletion(Priority priority, String user, Path path) {
+      this.priority = priority;
+      this.sequence = deletionSequence.getAndIncrement();
       this.user = user;
-      this.subDir = subDir;
-      this.baseDirs = baseDirs;
+      this.path = path;
     }
+    @Override
+    public int compareTo(PathDeletion other) {
+      int cmp = priority.compareTo(other.priority);
+      if (cmp != 0) {
+        return cmp;
+      }
+      return sequence < other.sequence ? -1
+          : (sequence == other.sequence ? 0 : 1);
+    }
+  }
+
+  /**
+   * The pending deletions of a disk. It is scheduled whenever it has
+   * deletions pending, and runs a batch of them at a time.
+   */
+  private class DiskDeletions implements Runnable {
+    final String root;
+    final PriorityQueue<PathDeletion> pending =
+        new PriorityQueue<PathDeletion>();
+    boolean scheduled = false;
+    ScheduledFuture<?> next;
+    // when the bandwidth allows for the next batch
+    long nextBatchTime = 0;
+
+    DiskDeletions(String root) {
+      this.root = root;
+    }
+
+    synchronized void add(PathDeletion deletion) {
+      pending.add(deletion);
+      if (!scheduled) {
+        scheduled = true;
+        schedule();
+      }
+    }
+
+    private void schedule() {
+      long delay = stopping ? 0
+          : Math.max(0, nextBatchTime - System.currentTimeMillis());
+      try {
+        next = sched.schedule(this, delay, MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        drop();
+      }
+    }
+
+    /**
+     * Run the next batch right away if it is waiting for the bandwidth.
+     */
+    synchronized void runNow() {
+      if (next != null && next.cancel(false)) {
+        schedule();
+      }
+    }
+
+    synchronized void drop() {
+      if (!pending.isEmpty()) {
+        LOG.warn("Not deleting " + pending.size() + " paths under ["
+            + root + "] as the service is stopped");
+        if (metrics != null) {
+          metrics.droppedDeletions(pending.size());
+        }
+        pending.clear();
+      }
+      scheduled = false;
+    }
+
     @Override
     public void run() {
-      if (null == user) {
-        if (baseDirs == null || baseDirs.length == 0) {
-          LOG.debug("NM deleting absolute path : " + subDir);
-          try {
-            lfs.delete(subDir, true);
-          } catch (IOException e) {
-            LOG.warn("Failed to delete " + subDir);
+      boolean more = true;
+      while (more) {
+        List<PathDeletion> batch = new ArrayList<PathDeletion>();
+        synchronized (this) {
+          while (batch.size() < batchSize && !pending.isEmpty()) {
+            batch.add(pending.poll());
+          }
+        }
+        long bytes = 0;
+        try {
+          bytes = deleteBatch(batch);
+        } finally {
+          if (metrics != null) {
+            metrics.deletedPaths(batch.size(), bytes);
           }
-          return;
+          more = batchDone(bytes);
         }
-        for (Path baseDir : baseDirs) {
-          Path del = subDir == null? baseDir : new Path(baseDir, subDir);
+      }
+    }
+
+    /**
+     * @return whether to run the next batch right away, as the service is
+     *         stopping
+     */
+    private synchronized boolean batchDone(long bytes) {
+      if (diskBandwidth > 0) {
+        nextBatchTime = System.currentTimeMillis()
+            + bytes * 1000 / diskBandwidth;
+      }
+      if (pending.isEmpty()) {
+        scheduled = false;
+        return false;
+      }
+      if (stopping) {
+        return true;
+      }
+      schedule();
+      return false;
+    }
+  }
+
+  /**
+   * Delete the paths of a batch, those of each user in one go.
+   * @return the number of bytes deleted, as far as known
+   */
+  private long deleteBatch(List<PathDeletion> batch) {
+    Map<String, List<Path>> pathsByUser =
+        new LinkedHashMap<String, List<Path>>();
+    for (PathDeletion deletion : batch) {
+      List<Path> paths = pathsByUser.get(deletion.user);
+      if (paths == null) {
+        paths = new ArrayList<Path>();
+        pathsByUser.put(deletion.user, paths);
+      }
+      paths.add(deletion.path);
+    }
+
+    long bytes = 0;
+    for (Map.Entry<String, List<Path>> entry : pathsByUser.entrySet()) {
+      String user = entry.getKey();
+      if (null == user) {
+        for (Path del : entry.getValue()) {
           LOG.debug("NM deleting path : " + del);
           try {
-            lfs.delete(del, true);
+            bytes += DefaultContainerExecutor.deleteCountingBytes(lfs, del);
           } catch (IOException e) {
-            LOG.warn("Failed to delete " + subDir);
+            LOG.warn("Failed to delete " + del);
           }
         }
       } else {
         try {
-          LOG.debug("Deleting path: [" + subDir + "] as user: [" + user + "]");
-          exec.deleteAsUser(user, subDir, baseDirs);
+          LOG.debug("Deleting paths: " + entry.getValue() + " as user: ["
+              + user + "]");
+          long deleted = exec.deletePathsAsUser(user, entry.getValue());
+          if (deleted > 0) {
+            bytes += deleted;
+          }
         } catch (IOException e) {
           LOG.warn("Failed to delete as user " + user, e);
         } catch (InterruptedException e) {
@@ -158,5 +424,6 @@ public void run() {
         }
       }
     }
+    return bytes;
   }
 }
@@ -48,6 +48,9 @@ public class LinuxContainerExecutor extends ContainerExecutor {
   private static final Log LOG = LogFactory
       .getLog(LinuxContainerExecutor.class);
 
+  // the line container-executor reports the bytes it deleted on
+  static final String DELETED_BYTES_PREFIX = "Deleted bytes: ";
+
   private String containerExecutorExe;
   private LCEResourcesHandler resourcesHandler;
   private boolean containerSchedPriorityIsSet = false;
@@ -79,7 +82,8 @@ enum Commands {
     INITIALIZE_CONTAINER(0),
     LAUNCH_CONTAINER(1),
     SIGNAL_CONTAINER(2),
-    DELETE_AS_USER(3);
+    DELETE_AS_USER(3),
+    DELETE_PATHS_AS_USER(4);
 
     private int value;
     Commands(int value) {
@@ -288,6 +292,16 @@ public int launchContainer(Container container,
     return 0;
   }
 
+  @Override
+  public int reacquireContainer(String user, ContainerId containerId)
+      throws IOException, InterruptedException {
+    try {
+      return super.reacquireContainer(user, containerId);
+    } finally {
+      resourcesHandler.postExecute(containerId);
+    }
+  }
+
   @Override
   public boolean signalContainer(String user, String pid, Signal signal)
       throws IOException {
@@ -355,6 +369,61 @@ public void deleteAsUser(String user, Path dir, Path... baseDirs) {
     }
   }
   
+  /**
+   * Deletes all the paths with a single container-executor, which reports
+   * the number of bytes it deleted.
+   */
+  @Override
+  public long deletePathsAsUser(String user, List<Path> paths) {
+    List<String> command = new ArrayList<String>(
+        Arrays.asList(containerExecutorExe,
+                    user,
+                    Integer.toString(
+                        Commands.DELETE_PATHS_AS_USER.getValue())));
+    for (Path path : paths) {
+      LOG.info("Deleting path : " + path);
+      command.add(path.toUri().getPath());
+    }
+    String[] commandArray = command.toArray(new String[command.size()]);
+    ShellCommandExecutor shExec = new ShellCommandExecutor(commandArray);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("deletePathsAsUser: " + Arrays.toString(commandArray));
+    }
+    try {
+      shExec.execute();
+      if (LOG.isDebugEnabled()) {
+        logOutput(shExec.getOutput());
+      }
+    } catch (IOException e) {
+      int exitCode = shExec.getExitCode();
+      LOG.warn("Exit code from container-executor is : " + exitCode);
+      LOG.error("DeletePathsAsUser of " + paths.size() + " paths"
+          + " returned with non-zero exit code" + exitCode);
+      LOG.error("Output from LinuxContainerExecutor's deletePathsAsUser"
+          + " follows:");
+      logOutput(shExec.getOutput());
+    }
+    return parseDeletedBytes(shExec.getOutput());
+  }
+
+  static long parseDeletedBytes(String output) {
+    for (String line : output.split("\n")) {
+      if (line.startsWith(DELETED_BYTES_PREFIX)) {
+        try {
+          return Long.parseLong(
+              line.substring(DELETED_BYTES_PREFIX.length()).trim());
+        } catch (NumberFormatException e) {
+          LOG.warn("Cannot parse the deleted bytes from " + line);
+        }
+      }
+    }
+    return -1;
+  }
+
+  public LCEResourcesHandler getResourcesHandler() {
+    return resourcesHandler;
+  }
+
   public void mountCgroups(List<String> cgroupKVs, String hierarchy)
          throws IOException {
     List<String> command = new ArrayList<String>(
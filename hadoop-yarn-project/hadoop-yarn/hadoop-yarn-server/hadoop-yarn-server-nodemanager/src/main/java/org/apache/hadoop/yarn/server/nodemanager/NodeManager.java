@@ -19,6 +19,7 @@
 package org.apache.hadoop.yarn.server.nodemanager;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +52,9 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.application.Application;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.Container;
 import org.apache.hadoop.yarn.server.nodemanager.metrics.NodeManagerMetrics;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.LocalNMStateStore;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NullNMStateStore;
 import org.apache.hadoop.yarn.server.nodemanager.security.NMContainerTokenSecretManager;
 import org.apache.hadoop.yarn.server.nodemanager.webapp.WebServer;
 import org.apache.hadoop.yarn.server.security.ApplicationACLsManager;
@@ -79,11 +83,14 @@ public class NodeManager extends CompositeService
   private Context context;
   private AsyncDispatcher dispatcher;
   private ContainerManagerImpl containerManager;
+  private NMStateStore nmStore;
   private static CompositeServiceShutdownHook nodeManagerShutdownHook; 
   
   private long waitForContainersOnShutdownMillis;
   
   private AtomicBoolean isStopping = new AtomicBoolean(false);
+  // whether to kill the containers on stop even though they are recovered
+  private volatile boolean cleanupContainersOnStop = false;
   
   public NodeManager() {
     super(NodeManager.class.getName());
@@ -113,6 +120,22 @@ protected WebServer createWebServer(Context nmContext,
     return new WebServer(nmContext, resourceView, aclsManager, dirsHandler);
   }
 
+  protected NMStateStore createNMStateStore(Configuration conf) {
+    if (!conf.getBoolean(YarnConfiguration.NM_RECOVERY_ENABLED,
+        YarnConfiguration.DEFAULT_NM_RECOVERY_ENABLED)) {
+      return new NullNMStateStore();
+    }
+    // The RM and the AMs find recovered containers at the same address
+    InetSocketAddress address = conf.getSocketAddr(
+        YarnConfiguration.NM_ADDRESS, YarnConfiguration.DEFAULT_NM_ADDRESS,
+        YarnConfiguration.DEFAULT_NM_PORT);
+    if (address.getPort() == 0) {
+      throw new YarnException(YarnConfiguration.NM_RECOVERY_ENABLED
+          + " requires a fixed port in " + YarnConfiguration.NM_ADDRESS);
+    }
+    return new LocalNMStateStore();
+  }
+
   protected void doSecureLogin() throws IOException {
     SecurityUtil.login(getConfig(), YarnConfiguration.NM_KEYTAB,
         YarnConfiguration.NM_PRINCIPAL);
@@ -123,15 +146,20 @@ public void init(Configuration conf) {
 
     conf.setBoolean(Dispatcher.DISPATCHER_EXIT_ON_ERROR_KEY, true);
 
+    // Added first so that the state is there for the other services
+    this.nmStore = createNMStateStore(conf);
+    addService(nmStore);
+
     // Create the secretManager if need be.
     NMContainerTokenSecretManager containerTokenSecretManager = null;
     if (UserGroupInformation.isSecurityEnabled()) {
       LOG.info("Security is enabled on NodeManager. "
           + "Creating ContainerTokenSecretManager");
-      containerTokenSecretManager = new NMContainerTokenSecretManager(conf);
+      containerTokenSecretManager =
+          new NMContainerTokenSecretManager(conf, nmStore);
     }
 
-    this.context = new NMContext(containerTokenSecretManager);
+    this.context = new NMContext(containerTokenSecretManager, nmStore);
 
     this.aclsManager = new ApplicationACLsManager(conf);
 
@@ -143,7 +171,7 @@ public void init(Configuration conf) {
     } catch (IOException e) {
       throw new YarnException("Failed to initialize container executor", e);
     }    
-    DeletionService del = new DeletionService(exec);
+    DeletionService del = new DeletionService(exec, metrics);
     addService(del);
 
     // NodeManager level dispatcher
@@ -205,7 +233,11 @@ public void stop() {
       return;
     }
     
-    cleanupContainers();
+    // Containers are left running for the next NM to recover, unless the
+    // RM asked the NM to shut down or reboot
+    if (!nmStore.canRecover() || cleanupContainersOnStop) {
+      cleanupContainers();
+    }
     super.stop();
     DefaultMetricsSystem.shutdown();
   }
@@ -253,12 +285,19 @@ public static class NMContext implements Context {
         new ConcurrentSkipListMap<ContainerId, Container>();
 
     private final NMContainerTokenSecretManager containerTokenSecretManager;
+    private final NMStateStore stateStore;
 
     private final NodeHealthStatus nodeHealthStatus = RecordFactoryProvider
         .getRecordFactory(null).newRecordInstance(NodeHealthStatus.class);
 
     public NMContext(NMContainerTokenSecretManager containerTokenSecretManager) {
+      this(containerTokenSecretManager, new NullNMStateStore());
+    }
+
+    public NMContext(NMContainerTokenSecretManager containerTokenSecretManager,
+        NMStateStore stateStore) {
       this.containerTokenSecretManager = containerTokenSecretManager;
+      this.stateStore = stateStore;
       this.nodeHealthStatus.setIsNodeHealthy(true);
       this.nodeHealthStatus.setHealthReport("Healthy");
       this.nodeHealthStatus.setLastHealthReportTime(System.currentTimeMillis());
@@ -290,6 +329,11 @@ public NMContainerTokenSecretManager getContainerTokenSecretManager() {
     public NodeHealthStatus getNodeHealthStatus() {
       return this.nodeHealthStatus;
     }
+
+    @Override
+    public NMStateStore getNMStateStore() {
+      return this.stateStore;
+    }
   }
 
 
@@ -330,9 +374,11 @@ private void initAndStartNodeManager(Configuration conf, boolean hasToReboot) {
   public void handle(NodeManagerEvent event) {
     switch (event.getType()) {
     case SHUTDOWN:
+      cleanupContainersOnStop = true;
       stop();
       break;
     case REBOOT:
+      cleanupContainersOnStop = true;
       stop();
       reboot();
       break;
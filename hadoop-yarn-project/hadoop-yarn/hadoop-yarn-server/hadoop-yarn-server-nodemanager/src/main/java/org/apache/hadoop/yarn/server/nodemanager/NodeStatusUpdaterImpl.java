@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.yarn.server.nodemanager;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -59,6 +60,7 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.Container;
 import org.apache.hadoop.yarn.server.nodemanager.metrics.NodeManagerMetrics;
 import org.apache.hadoop.yarn.service.AbstractService;
+import org.apache.hadoop.yarn.util.BuilderUtils;
 
 public class NodeStatusUpdaterImpl extends AbstractService implements
     NodeStatusUpdater {
@@ -234,6 +236,7 @@ private void registerWithRM() throws YarnRemoteException {
     request.setHttpPort(this.httpPort);
     request.setResource(this.totalResource);
     request.setNodeId(this.nodeId);
+    request.setContainers(getRunningContainers());
     RegistrationResponse regResponse;
 
     while(true) {
@@ -312,6 +315,32 @@ private List<ApplicationId> createKeepAliveApplicationList() {
     return appList;
   }
 
+  /**
+   * The containers that are still running, so that a restarted RM can take
+   * them over when the NM registers again.
+   */
+  private List<org.apache.hadoop.yarn.api.records.Container>
+      getRunningContainers() {
+    List<org.apache.hadoop.yarn.api.records.Container> containers =
+        new ArrayList<org.apache.hadoop.yarn.api.records.Container>();
+    String nodeHttpAddress = this.nodeId.getHost() + ":" + this.httpPort;
+    for (Container container : this.context.getContainers().values()) {
+      ContainerStatus containerStatus =
+          container.cloneAndGetContainerStatus();
+      if (containerStatus.getState() == ContainerState.COMPLETE) {
+        continue;
+      }
+      org.apache.hadoop.yarn.api.records.Container c =
+          BuilderUtils.newContainer(containerStatus.getContainerId(),
+              this.nodeId, nodeHttpAddress,
+              container.getLaunchContext().getResource(), null, null);
+      c.setState(containerStatus.getState());
+      c.setContainerStatus(containerStatus);
+      containers.add(c);
+    }
+    return containers;
+  }
+
   private NodeStatus getNodeStatus() {
 
     NodeStatus nodeStatus = recordFactory.newRecordInstance(NodeStatus.class);
@@ -335,6 +364,12 @@ private NodeStatus getNodeStatus() {
       if (containerStatus.getState() == ContainerState.COMPLETE) {
         // Remove
         i.remove();
+        try {
+          context.getNMStateStore().removeContainer(containerId);
+        } catch (IOException ex) {
+          LOG.error("Unable to remove container " + containerId
+              + " from state store", ex);
+        }
 
         LOG.info("Removed completed container " + containerId);
       }
@@ -436,6 +471,13 @@ public void run() {
                   new NodeManagerEvent(NodeManagerEventType.REBOOT));
               break;
             }
+            if (response.getNodeAction() == NodeAction.RESYNC) {
+              LOG.info("ResourceManager has restarted,"
+                  + " registering again with the running containers.");
+              registerWithRM();
+              lastHeartBeatID = 0;
+              continue;
+            }
 
             lastHeartBeatID = response.getResponseId();
             List<ContainerId> containersToCleanup = response
@@ -41,6 +41,7 @@
 import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.security.token.TokenIdentifier;
 import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.yarn.YarnException;
 import org.apache.hadoop.yarn.api.ContainerManager;
 import org.apache.hadoop.yarn.api.protocolrecords.GetContainerStatusRequest;
 import org.apache.hadoop.yarn.api.protocolrecords.GetContainerStatusResponse;
@@ -96,6 +97,9 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.monitor.ContainersMonitorEventType;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.monitor.ContainersMonitorImpl;
 import org.apache.hadoop.yarn.server.nodemanager.metrics.NodeManagerMetrics;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore.RecoveredApplication;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore.RecoveredContainerState;
 import org.apache.hadoop.yarn.server.nodemanager.security.authorize.NMPolicyProvider;
 import org.apache.hadoop.yarn.server.security.ApplicationACLsManager;
 import org.apache.hadoop.yarn.service.CompositeService;
@@ -143,6 +147,10 @@ public ContainerManagerImpl(Context context, ContainerExecutor exec,
         createResourceLocalizationService(exec, deletionContext);
     addService(rsrcLocalizationSrvc);
 
+    // The launcher asks the monitor before launching containers
+    this.containersMonitor =
+        new ContainersMonitorImpl(exec, dispatcher, this.context, metrics);
+
     containersLauncher = createContainersLauncher(context, exec);
     addService(containersLauncher);
 
@@ -154,8 +162,6 @@ public ContainerManagerImpl(Context context, ContainerExecutor exec,
     auxiliaryServices.register(this);
     addService(auxiliaryServices);
 
-    this.containersMonitor =
-        new ContainersMonitorImpl(exec, dispatcher, this.context);
     addService(this.containersMonitor);
 
 
@@ -211,7 +217,8 @@ protected ResourceLocalizationService createResourceLocalizationService(
 
   protected ContainersLauncher createContainersLauncher(Context context,
       ContainerExecutor exec) {
-    return new ContainersLauncher(context, this.dispatcher, exec, dirsHandler);
+    return new ContainersLauncher(context, this.dispatcher, exec, dirsHandler,
+        this.containersMonitor);
   }
 
   @Override
@@ -219,6 +226,16 @@ public void start() {
 
     // Enqueue user dirs in deletion context
 
+    // Recover before serving requests, so that the recovered containers are
+    // known when the ApplicationMasters reconnect
+    if (context.getNMStateStore().canRecover()) {
+      try {
+        recover();
+      } catch (IOException e) {
+        throw new YarnException("Failed to recover the NM state", e);
+      }
+    }
+
     Configuration conf = getConfig();
     YarnRPC rpc = YarnRPC.create(conf);
 
@@ -248,6 +265,71 @@ public void start() {
     super.start();
   }
 
+  @SuppressWarnings("unchecked")
+  private void recover() throws IOException {
+    NMStateStore stateStore = context.getNMStateStore();
+    context.getContainerTokenSecretManager().recover(
+        stateStore.loadContainerTokensState());
+
+    for (RecoveredApplication app : stateStore.loadApplicationsState()) {
+      LOG.info("Recovering application " + app.getAppId());
+      Application application = new ApplicationImpl(dispatcher,
+          this.aclsManager, app.getUser(), app.getAppId(),
+          app.getCredentials(), context);
+      context.getApplications().put(app.getAppId(), application);
+      dispatcher.getEventHandler().handle(
+          new ApplicationInitEvent(app.getAppId(), app.getAcls()));
+    }
+
+    for (RecoveredContainerState rcs : stateStore.loadContainersState()) {
+      recoverContainer(rcs);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void recoverContainer(RecoveredContainerState rcs)
+      throws IOException {
+    ContainerLaunchContext launchContext = rcs.getLaunchContext();
+    ContainerId containerId = launchContext.getContainerId();
+    ApplicationId appId =
+        containerId.getApplicationAttemptId().getApplicationId();
+    if (!context.getApplications().containsKey(appId)) {
+      LOG.warn("Not recovering " + containerId + " of unknown application "
+          + appId);
+      context.getNMStateStore().removeContainer(containerId);
+      return;
+    }
+
+    LOG.info("Recovering " + containerId + " in state " + rcs.getStatus()
+        + " with exit code " + rcs.getExitCode());
+    Credentials credentials = parseCredentials(launchContext);
+    Container container = new ContainerImpl(getConfig(), this.dispatcher,
+        credentials, metrics, rcs);
+    context.getContainers().put(containerId, container);
+    metrics.allocateContainer(launchContext.getResource());
+    dispatcher.getEventHandler().handle(
+        new ApplicationContainerInitEvent(container));
+  }
+
+  private Credentials parseCredentials(ContainerLaunchContext launchContext)
+      throws IOException {
+    ByteBuffer tokens = launchContext.getContainerTokens();
+    Credentials credentials = new Credentials();
+    if (tokens != null) {
+      DataInputByteBuffer buf = new DataInputByteBuffer();
+      tokens.rewind();
+      buf.reset(tokens);
+      credentials.readTokenStorageStream(buf);
+      if (LOG.isDebugEnabled()) {
+        for (Token<? extends TokenIdentifier> tk : credentials
+            .getAllTokens()) {
+          LOG.debug(tk.getService() + " = " + tk.toString());
+        }
+      }
+    }
+    return credentials;
+  }
+
   void refreshServiceAcls(Configuration configuration, 
       PolicyProvider policyProvider) {
     this.server.refreshServiceAcl(configuration, policyProvider);
@@ -374,6 +456,15 @@ private void authorizeRequest(String containerIDStr,
           messageBuilder.append("\nExpected resource " + resource
               + " but found " + launchContext.getResource());
         }
+
+        // A guaranteed container cannot be passed off as opportunistic, and
+        // an opportunistic one must not get to preempt others
+        if (tokenId.isOpportunistic() != launchContext.getOpportunistic()) {
+          unauthorized = true;
+          messageBuilder.append("\nExpected opportunistic "
+              + tokenId.isOpportunistic() + " but found "
+              + launchContext.getOpportunistic());
+        }
       }
     }
 
@@ -399,27 +490,24 @@ public StartContainerResponse startContainer(StartContainerRequest request)
     UserGroupInformation remoteUgi = getRemoteUgi(containerIDStr);
     authorizeRequest(containerIDStr, launchContext, remoteUgi);
 
+    // The opportunistic flag is only trusted when authorizeRequest checked
+    // it against the container token
+    if (!UserGroupInformation.isSecurityEnabled()
+        && launchContext.getOpportunistic()) {
+      LOG.warn("Ignoring the opportunistic flag of " + containerIDStr
+          + ", it needs security to be enabled");
+      launchContext.setOpportunistic(false);
+    }
+
     LOG.info("Start request for " + containerIDStr + " by user "
         + launchContext.getUser());
 
     // //////////// Parse credentials
-    ByteBuffer tokens = launchContext.getContainerTokens();
-    Credentials credentials = new Credentials();
-    if (tokens != null) {
-      DataInputByteBuffer buf = new DataInputByteBuffer();
-      tokens.rewind();
-      buf.reset(tokens);
-      try {
-        credentials.readTokenStorageStream(buf);
-        if (LOG.isDebugEnabled()) {
-          for (Token<? extends TokenIdentifier> tk : credentials
-              .getAllTokens()) {
-            LOG.debug(tk.getService() + " = " + tk.toString());
-          }
-        }
-      } catch (IOException e) {
-        throw RPCUtil.getRemoteException(e);
-      }
+    Credentials credentials;
+    try {
+      credentials = parseCredentials(launchContext);
+    } catch (IOException e) {
+      throw RPCUtil.getRemoteException(e);
     }
     // //////////// End of parsing credentials
 
@@ -436,6 +524,14 @@ public StartContainerResponse startContainer(StartContainerRequest request)
           + " already is running on this node!!");
     }
 
+    // Only start containers a restarted NodeManager can recover
+    try {
+      context.getNMStateStore().storeContainer(launchContext);
+    } catch (IOException e) {
+      context.getContainers().remove(containerID);
+      throw RPCUtil.getRemoteException(e);
+    }
+
     // Create the application
     Application application =
         new ApplicationImpl(dispatcher, this.aclsManager,
@@ -444,6 +540,13 @@ public StartContainerResponse startContainer(StartContainerRequest request)
         context.getApplications().putIfAbsent(applicationID, application)) {
       LOG.info("Creating a new application reference for app "
           + applicationID);
+      try {
+        context.getNMStateStore().storeApplication(applicationID,
+            launchContext.getUser(), credentials,
+            launchContext.getApplicationACLs());
+      } catch (IOException e) {
+        LOG.error("Unable to store application " + applicationID, e);
+      }
       dispatcher.getEventHandler().handle(
           new ApplicationInitEvent(applicationID, container
               .getLaunchContext().getApplicationACLs()));
@@ -503,6 +606,7 @@ public StopContainerResponse stopContainer(StopContainerRequest request)
       return response; // Return immediately.
     }
 
+    storeContainerKilled(containerID);
     dispatcher.getEventHandler().handle(
         new ContainerKillEvent(containerID,
             "Container killed by the ApplicationMaster."));
@@ -546,6 +650,14 @@ public GetContainerStatusResponse getContainerStatus(
         + " is not handled by this NodeManager");
   }
 
+  private void storeContainerKilled(ContainerId containerId) {
+    try {
+      context.getNMStateStore().storeContainerKilled(containerId);
+    } catch (IOException e) {
+      LOG.error("Unable to store the kill of " + containerId, e);
+    }
+  }
+
   class ContainerEventDispatcher implements EventHandler<ContainerEvent> {
     @Override
     public void handle(ContainerEvent event) {
@@ -603,6 +715,7 @@ public void handle(ContainerManagerEvent event) {
             CMgrCompletedContainersEvent.Reason.BY_RESOURCEMANAGER) {
           diagnostic = "Container Killed by ResourceManager";
         }
+        storeContainerKilled(container);
         this.dispatcher.getEventHandler().handle(
             new ContainerKillEvent(container, diagnostic));
       }
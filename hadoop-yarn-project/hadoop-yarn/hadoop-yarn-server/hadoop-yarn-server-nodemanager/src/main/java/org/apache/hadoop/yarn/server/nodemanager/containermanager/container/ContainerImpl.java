@@ -55,11 +55,14 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.launcher.ContainersLauncherEventType;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.LocalResourceRequest;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ContainerLocalizationCleanupEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ContainerLocalizationRecoveredEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ContainerLocalizationRequestEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.loghandler.event.LogHandlerContainerFinishedEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.monitor.ContainerStartMonitoringEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.monitor.ContainerStopMonitoringEvent;
 import org.apache.hadoop.yarn.server.nodemanager.metrics.NodeManagerMetrics;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore.RecoveredContainerState;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore.RecoveredContainerStatus;
 import org.apache.hadoop.yarn.state.InvalidStateTransitonException;
 import org.apache.hadoop.yarn.state.MultipleArcTransition;
 import org.apache.hadoop.yarn.state.SingleArcTransition;
@@ -94,6 +97,9 @@ public class ContainerImpl implements Container {
     new ArrayList<LocalResourceRequest>();
   private final List<LocalResourceRequest> appRsrcs =
     new ArrayList<LocalResourceRequest>();
+  private RecoveredContainerStatus recoveredStatus =
+      RecoveredContainerStatus.REQUESTED;
+  private boolean recoveredAsKilled = false;
 
   public ContainerImpl(Configuration conf,
       Dispatcher dispatcher,
@@ -113,6 +119,20 @@ public ContainerImpl(Configuration conf,
     stateMachine = stateMachineFactory.make(this);
   }
 
+  /**
+   * A container recovered after the NodeManager restarted.
+   */
+  public ContainerImpl(Configuration conf, Dispatcher dispatcher,
+      Credentials creds, NodeManagerMetrics metrics,
+      RecoveredContainerState rcs) {
+    this(conf, dispatcher, rcs.getLaunchContext(), creds, metrics);
+    this.recoveredStatus = rcs.getStatus();
+    if (recoveredStatus == RecoveredContainerStatus.COMPLETED) {
+      this.exitCode = rcs.getExitCode();
+    }
+    this.recoveredAsKilled = rcs.getKilled();
+  }
+
   private static final ContainerDoneTransition CONTAINER_DONE_TRANSITION =
     new ContainerDoneTransition();
 
@@ -127,7 +147,7 @@ public ContainerImpl(Configuration conf,
     // From NEW State
     .addTransition(ContainerState.NEW,
         EnumSet.of(ContainerState.LOCALIZING, ContainerState.LOCALIZED,
-            ContainerState.LOCALIZATION_FAILED),
+            ContainerState.LOCALIZATION_FAILED, ContainerState.DONE),
         ContainerEventType.INIT_CONTAINER, new RequestResourcesTransition())
     .addTransition(ContainerState.NEW, ContainerState.NEW,
         ContainerEventType.UPDATE_DIAGNOSTICS_MSG,
@@ -414,7 +434,11 @@ private void finished() {
     }
 
     metrics.releaseContainer(getLaunchContext().getResource());
+    sendFinishedEvents();
+  }
 
+  @SuppressWarnings("unchecked") // dispatcher not typed
+  private void sendFinishedEvents() {
     // Inform the application
     ContainerId containerID = getContainerID();
     @SuppressWarnings("rawtypes")
@@ -429,6 +453,13 @@ private void finished() {
 
   @SuppressWarnings("unchecked") // dispatcher not typed
   public void cleanup() {
+    dispatcher.getEventHandler().handle(
+        new ContainerLocalizationCleanupEvent(this,
+            getResourcesByVisibility()));
+  }
+
+  private Map<LocalResourceVisibility, Collection<LocalResourceRequest>>
+      getResourcesByVisibility() {
     Map<LocalResourceVisibility, Collection<LocalResourceRequest>> rsrc =
       new HashMap<LocalResourceVisibility, 
                   Collection<LocalResourceRequest>>();
@@ -441,8 +472,40 @@ public void cleanup() {
     if (!appRsrcs.isEmpty()) {
       rsrc.put(LocalResourceVisibility.APPLICATION, appRsrcs);
     }
+    return rsrc;
+  }
+
+  /**
+   * Claim the localized resources of a container recovered while running,
+   * so that the cache cleanup keeps them, and they are released when the
+   * container is cleaned up like those of any other container.
+   */
+  @SuppressWarnings("unchecked") // dispatcher not typed
+  private void recoverResources() {
+    for (LocalResource rsrc : getLaunchContext().getLocalResources().values()) {
+      LocalResourceRequest req;
+      try {
+        req = new LocalResourceRequest(rsrc);
+      } catch (URISyntaxException e) {
+        // was parsed when the container was first localized
+        LOG.warn("Failed to parse recovered resource-request", e);
+        continue;
+      }
+      switch (rsrc.getVisibility()) {
+      case PUBLIC:
+        publicRsrcs.add(req);
+        break;
+      case PRIVATE:
+        privateRsrcs.add(req);
+        break;
+      case APPLICATION:
+        appRsrcs.add(req);
+        break;
+      }
+    }
     dispatcher.getEventHandler().handle(
-        new ContainerLocalizationCleanupEvent(this, rsrc));
+        new ContainerLocalizationRecoveredEvent(this,
+            getResourcesByVisibility()));
   }
 
   static class ContainerTransition implements
@@ -468,6 +531,11 @@ public void transition(ContainerImpl container, ContainerEvent event) {
    * 
    * If there are any invalid resources specified, enters LOCALIZATION_FAILED
    * directly.
+   *
+   * A container recovered after the NodeManager restarted is DONE if it
+   * completed or was killed before it was launched. If it was launched, its
+   * resources are in place, so it claims them in the cache, the launcher is
+   * told to recover it and it enters LOCALIZED state directly.
    */
   @SuppressWarnings("unchecked") // dispatcher not typed
   static class RequestResourcesTransition implements
@@ -475,6 +543,26 @@ static class RequestResourcesTransition implements
     @Override
     public ContainerState transition(ContainerImpl container,
         ContainerEvent event) {
+      if (container.recoveredStatus == RecoveredContainerStatus.COMPLETED) {
+        container.metrics.releaseContainer(
+            container.getLaunchContext().getResource());
+        container.sendFinishedEvents();
+        return ContainerState.DONE;
+      } else if (container.recoveredAsKilled &&
+          container.recoveredStatus == RecoveredContainerStatus.REQUESTED) {
+        // container was killed but never launched
+        container.metrics.killedContainer();
+        NMAuditLogger.logSuccess(container.getUser(),
+            AuditConstants.FINISH_KILLED_CONTAINER, "ContainerImpl",
+            container.getContainerID().getApplicationAttemptId()
+                .getApplicationId(),
+            container.getContainerID());
+        container.metrics.releaseContainer(
+            container.getLaunchContext().getResource());
+        container.sendFinishedEvents();
+        return ContainerState.DONE;
+      }
+
       final ContainerLaunchContext ctxt = container.getLaunchContext();
       container.metrics.initingContainer();
 
@@ -492,6 +580,20 @@ public ContainerState transition(ContainerImpl container,
         }
       }
 
+      if (container.recoveredStatus == RecoveredContainerStatus.LAUNCHED) {
+        container.recoverResources();
+        container.dispatcher.getEventHandler().handle(
+            new ContainersLauncherEvent(container,
+                ContainersLauncherEventType.RECOVER_CONTAINER));
+        if (container.recoveredAsKilled) {
+          container.dispatcher.getEventHandler().handle(
+              new ContainerKillEvent(container.getContainerID(),
+                  "Container killed before the NodeManager restarted"));
+        }
+        container.metrics.endInitingContainer();
+        return ContainerState.LOCALIZED;
+      }
+
       // Send requests for public, private resources
       Map<String,LocalResource> cntrRsrc = ctxt.getLocalResources();
       if (!cntrRsrc.isEmpty()) {
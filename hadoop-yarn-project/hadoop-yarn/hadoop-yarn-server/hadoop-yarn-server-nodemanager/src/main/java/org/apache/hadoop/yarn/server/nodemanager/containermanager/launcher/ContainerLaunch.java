@@ -52,6 +52,7 @@
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.event.Dispatcher;
 import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor;
+import org.apache.hadoop.yarn.server.nodemanager.Context;
 import org.apache.hadoop.yarn.server.nodemanager.LocalDirsHandlerService;
 import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor.DelayedProcessKiller;
 import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor.ExitCode;
@@ -76,26 +77,30 @@ public class ContainerLaunch implements Callable<Integer> {
   public static final String FINAL_CONTAINER_TOKENS_FILE = "container_tokens";
 
   private static final String PID_FILE_NAME_FMT = "%s.pid";
+  private static final String EXIT_CODE_FILE_SUFFIX = ".exitcode";
 
-  private final Dispatcher dispatcher;
-  private final ContainerExecutor exec;
-  private final Application app;
-  private final Container container;
+  protected final Context context;
+  protected final Dispatcher dispatcher;
+  protected final ContainerExecutor exec;
+  protected final Application app;
+  protected final Container container;
   private final Configuration conf;
   
-  private volatile AtomicBoolean shouldLaunchContainer = new AtomicBoolean(false);
-  private volatile AtomicBoolean completed = new AtomicBoolean(false);
+  protected volatile AtomicBoolean shouldLaunchContainer =
+      new AtomicBoolean(false);
+  protected volatile AtomicBoolean completed = new AtomicBoolean(false);
 
   private long sleepDelayBeforeSigKill = 250;
   private long maxKillWaitTime = 2000;
 
-  private Path pidFilePath = null;
+  protected Path pidFilePath = null;
 
-  private final LocalDirsHandlerService dirsHandler;
+  protected final LocalDirsHandlerService dirsHandler;
 
-  public ContainerLaunch(Configuration configuration, Dispatcher dispatcher,
-      ContainerExecutor exec, Application app, Container container,
-      LocalDirsHandlerService dirsHandler) {
+  public ContainerLaunch(Context context, Configuration configuration,
+      Dispatcher dispatcher, ContainerExecutor exec, Application app,
+      Container container, LocalDirsHandlerService dirsHandler) {
+    this.context = context;
     this.conf = configuration;
     this.app = app;
     this.exec = exec;
@@ -173,14 +178,10 @@ public Integer call() {
               + Path.SEPARATOR + containerIdStr,
               LocalDirAllocator.SIZE_UNKNOWN, false);
 
-      String pidFileSuffix = String.format(ContainerLaunch.PID_FILE_NAME_FMT,
-          containerIdStr);
-
       // pid file should be in nm private dir so that it is not 
       // accessible by users
       pidFilePath = dirsHandler.getLocalPathForWrite(
-          ResourceLocalizationService.NM_PRIVATE_DIR + Path.SEPARATOR 
-          + pidFileSuffix);
+          getPidFileSubpath(containerIdStr));
       List<String> localDirs = dirsHandler.getLocalDirs();
       List<String> logDirs = dirsHandler.getLogDirs();
 
@@ -242,6 +243,7 @@ public Integer call() {
       }
       else {
         exec.activateContainer(containerID, pidFilePath);
+        context.getNMStateStore().storeContainerLaunched(containerID);
         ret = exec.launchContainer(container, nmPrivateContainerScriptPath,
                 nmPrivateTokensPath, user, appIdStr, containerWorkDir,
                 localDirs, logDirs);
@@ -258,6 +260,41 @@ public Integer call() {
       exec.deactivateContainer(containerID);
     }
 
+    storeContainerCompleted(ret);
+    return handleContainerExitCode(ret);
+  }
+
+  /**
+   * Record the exit code, so that a restarted NodeManager does not wait for
+   * the container.
+   */
+  protected void storeContainerCompleted(int exitCode) {
+    ContainerId containerId = container.getContainerID();
+    try {
+      context.getNMStateStore().storeContainerCompleted(containerId,
+          exitCode);
+    } catch (IOException e) {
+      LOG.error("Unable to store the exit code of container " + containerId,
+          e);
+      return;
+    }
+    // The exit code file is only needed until the exit code is stored
+    if (pidFilePath != null) {
+      try {
+        FileContext.getLocalFSFileContext().delete(
+            new Path(getExitCodeFile(pidFilePath.toString())), false);
+      } catch (IOException e) {
+        LOG.warn("Unable to delete the exit code file of container "
+            + containerId, e);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked") // dispatcher not typed
+  protected int handleContainerExitCode(int ret) {
+    ContainerLaunchContext launchContext = container.getLaunchContext();
+    String containerIdStr =
+        ConverterUtils.toString(container.getContainerID());
     if (LOG.isDebugEnabled()) {
       LOG.debug("Container " + containerIdStr + " completed with exit code "
                 + ret);
@@ -399,6 +436,38 @@ else if ((sleepCounter*sleepInterval) > maxKillWaitTime) {
     return processId;
   }
 
+  private static String getPidFileSubpath(String containerIdStr) {
+    return ResourceLocalizationService.NM_PRIVATE_DIR + Path.SEPARATOR
+        + String.format(PID_FILE_NAME_FMT, containerIdStr);
+  }
+
+  /**
+   * Find the pid file of a container launched before the NodeManager
+   * restarted.
+   * @return the pid file, or null if there is none
+   */
+  protected Path getExistingPidFilePath() {
+    String containerIdStr =
+        ConverterUtils.toString(container.getContainerID());
+    try {
+      return dirsHandler.getLocalPathForRead(
+          getPidFileSubpath(containerIdStr));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * The file the exit code of a container is written to once it exits,
+   * next to its pid file. It outlives the NodeManager, so that a restarted
+   * NodeManager learns how a container it did not launch ended.
+   * @param pidFile the pid file of the container
+   * @return the exit code file
+   */
+  public static String getExitCodeFile(String pidFile) {
+    return pidFile + EXIT_CODE_FILE_SUFFIX;
+  }
+
   public static String getRelativeContainerLogDir(String appIdStr,
       String containerIdStr) {
     return appIdStr + Path.SEPARATOR + containerIdStr;
@@ -36,11 +36,15 @@
 import org.apache.hadoop.yarn.event.Dispatcher;
 import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor;
+import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor.ExitCode;
 import org.apache.hadoop.yarn.server.nodemanager.LocalDirsHandlerService;
 import org.apache.hadoop.yarn.server.nodemanager.Context;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.application.Application;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.Container;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerEventType;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerExitEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.ResourceLocalizationService;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.monitor.ContainersMonitor;
 import org.apache.hadoop.yarn.service.AbstractService;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -50,6 +54,10 @@
  * the {@link ResourceLocalizationService} is started as it depends on creation
  * of system directories on the local file-system.
  * 
+ * Containers are only launched once the {@link ContainersMonitor}, if any,
+ * admits them: opportunistic containers may have to wait for resources.
+ * Containers that kept running while the NodeManager restarted are waited
+ * for rather than launched.
  */
 public class ContainersLauncher extends AbstractService
     implements EventHandler<ContainersLauncherEvent> {
@@ -59,6 +67,7 @@ public class ContainersLauncher extends AbstractService
   private final Context context;
   private final ContainerExecutor exec;
   private final Dispatcher dispatcher;
+  private final ContainersMonitor containersMonitor;
 
   private LocalDirsHandlerService dirsHandler;
   private final ExecutorService containerLauncher =
@@ -83,11 +92,18 @@ public RunningContainer(Future<Integer> submit,
 
   public ContainersLauncher(Context context, Dispatcher dispatcher,
       ContainerExecutor exec, LocalDirsHandlerService dirsHandler) {
+    this(context, dispatcher, exec, dirsHandler, null);
+  }
+
+  public ContainersLauncher(Context context, Dispatcher dispatcher,
+      ContainerExecutor exec, LocalDirsHandlerService dirsHandler,
+      ContainersMonitor containersMonitor) {
     super("containers-launcher");
     this.exec = exec;
     this.context = context;
     this.dispatcher = dispatcher;
     this.dirsHandler = dirsHandler;
+    this.containersMonitor = containersMonitor;
   }
 
   @Override
@@ -103,10 +119,17 @@ public void init(Configuration conf) {
 
   @Override
   public void stop() {
-    containerLauncher.shutdownNow();
+    if (context.getNMStateStore().canRecover()) {
+      // Interrupting the launches would kill the containers, leave them
+      // running for the restarted NodeManager to recover
+      containerLauncher.shutdown();
+    } else {
+      containerLauncher.shutdownNow();
+    }
     super.stop();
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public void handle(ContainersLauncherEvent event) {
     // TODO: ContainersLauncher launches containers one by one!!
@@ -114,17 +137,43 @@ public void handle(ContainersLauncherEvent event) {
     ContainerId containerId = container.getContainerID();
     switch (event.getType()) {
       case LAUNCH_CONTAINER:
+        if (containersMonitor != null
+            && !containersMonitor.admitContainer(container)) {
+          // Queued, the monitor launches it again once it fits
+          return;
+        }
         Application app =
           context.getApplications().get(
               containerId.getApplicationAttemptId().getApplicationId());
 
-        ContainerLaunch launch = new ContainerLaunch(getConfig(), dispatcher,
-            exec, app, event.getContainer(), dirsHandler);
+        ContainerLaunch launch = new ContainerLaunch(context, getConfig(),
+            dispatcher, exec, app, event.getContainer(), dirsHandler);
         running.put(containerId,
             new RunningContainer(containerLauncher.submit(launch), 
                 launch));
         break;
+      case RECOVER_CONTAINER:
+        if (containersMonitor != null) {
+          containersMonitor.recoverContainer(container);
+        }
+        app = context.getApplications().get(
+            containerId.getApplicationAttemptId().getApplicationId());
+        launch = new RecoveredContainerLaunch(context, getConfig(),
+            dispatcher, exec, app, event.getContainer(), dirsHandler);
+        running.put(containerId,
+            new RunningContainer(containerLauncher.submit(launch),
+                launch));
+        break;
       case CLEANUP_CONTAINER:
+        if (containersMonitor != null
+            && containersMonitor.releaseContainer(containerId)) {
+          // Killed while queued, so it was never launched
+          dispatcher.getEventHandler().handle(new ContainerExitEvent(
+              containerId, ContainerEventType.CONTAINER_KILLED_ON_REQUEST,
+              ExitCode.TERMINATED.getExitCode(),
+              "Container killed while queued"));
+          return;
+        }
         RunningContainer rContainerDatum = running.remove(containerId);
         if (rContainerDatum == null) {
           // Container not launched. So nothing needs to be done.
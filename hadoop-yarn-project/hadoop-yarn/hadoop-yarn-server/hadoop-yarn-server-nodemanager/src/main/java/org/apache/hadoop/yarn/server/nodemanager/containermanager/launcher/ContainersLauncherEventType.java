@@ -20,5 +20,6 @@
 
 public enum ContainersLauncherEventType {
   LAUNCH_CONTAINER,
+  RECOVER_CONTAINER, // Launched before the NodeManager restarted.
   CLEANUP_CONTAINER, // The process(grp) itself.
 }
@@ -0,0 +1,93 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.apache.hadoop.yarn.server.nodemanager.containermanager.launcher;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.event.Dispatcher;
+import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor;
+import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor.ExitCode;
+import org.apache.hadoop.yarn.server.nodemanager.Context;
+import org.apache.hadoop.yarn.server.nodemanager.LocalDirsHandlerService;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.application.Application;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.Container;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerEventType;
+import org.apache.hadoop.yarn.util.ConverterUtils;
+
+/**
+ * Reacquires a container launched before the NodeManager restarted: instead
+ * of launching it, waits for the running container to exit.
+ */
+public class RecoveredContainerLaunch extends ContainerLaunch {
+
+  private static final Log LOG =
+      LogFactory.getLog(RecoveredContainerLaunch.class);
+
+  public RecoveredContainerLaunch(Context context, Configuration configuration,
+      Dispatcher dispatcher, ContainerExecutor exec, Application app,
+      Container container, LocalDirsHandlerService dirsHandler) {
+    super(context, configuration, dispatcher, exec, app, container,
+        dirsHandler);
+    this.shouldLaunchContainer.set(true);
+    // Known up front, so that the container can be killed right away
+    this.pidFilePath = getExistingPidFilePath();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // dispatcher not typed
+  public Integer call() {
+    int retCode = ExitCode.LOST.getExitCode();
+    ContainerId containerId = container.getContainerID();
+    String containerIdStr = ConverterUtils.toString(containerId);
+    dispatcher.getEventHandler().handle(new ContainerEvent(containerId,
+        ContainerEventType.CONTAINER_LAUNCHED));
+
+    try {
+      if (pidFilePath != null) {
+        exec.activateContainer(containerId, pidFilePath);
+        retCode = exec.reacquireContainer(
+            container.getLaunchContext().getUser(), containerId);
+      } else {
+        LOG.warn("Unable to locate pid file for container " + containerIdStr);
+        retCode = ExitCode.TERMINATED.getExitCode();
+      }
+    } catch (IOException e) {
+      LOG.error("Unable to recover container " + containerIdStr, e);
+    } catch (InterruptedException e) {
+      // The NodeManager is stopping, the container is recovered again
+      LOG.warn("Interrupted while waiting for exit code from "
+          + containerIdStr);
+      Thread.currentThread().interrupt();
+      return retCode;
+    } finally {
+      completed.set(true);
+      exec.deactivateContainer(containerId);
+    }
+
+    LOG.info("Recovered container " + containerIdStr + " exited with code "
+        + retCode);
+    storeContainerCompleted(retCode);
+    return handleContainerExitCode(retCode);
+  }
+}
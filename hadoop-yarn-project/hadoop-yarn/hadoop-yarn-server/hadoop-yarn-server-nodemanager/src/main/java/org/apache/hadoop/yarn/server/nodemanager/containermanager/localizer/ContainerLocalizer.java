@@ -189,8 +189,9 @@ public LocalizationProtocol run() {
   }
 
   ExecutorService createDownloadThreadPool() {
-    return Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
-      .setNameFormat("ContainerLocalizer Downloader").build());
+    // The NM bounds the number of resources it gives out for download
+    return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+      .setNameFormat("ContainerLocalizer Downloader #%d").build());
   }
 
   CompletionService<Path> createCompletionService(ExecutorService exec) {
@@ -17,8 +17,18 @@
 */
 package org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
@@ -27,15 +37,28 @@
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.yarn.api.records.LocalResourceType;
 import org.apache.hadoop.yarn.api.records.LocalResourceVisibility;
 import org.apache.hadoop.yarn.event.Dispatcher;
 import org.apache.hadoop.yarn.server.nodemanager.DeletionService;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceEventType;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceLocalizedEvent;
 
 /**
  * A collection of {@link LocalizedResource}s all of same
  * {@link LocalResourceVisibility}.
+ *
+ * If the tracker is given an index file, the localized resources are
+ * written to it as they are localized and removed, so that they can be
+ * recovered when the NodeManager restarts without scanning the cache.
+ * The index is a log: each localized or removed resource appends a
+ * record, and the log is rewritten with only the localized resources
+ * once most of its records are stale. Appends are not synced; losing the
+ * tail of the log in a crash only means localizing those resources
+ * again, and resources removed from the cache are found missing when
+ * they are requested.
  * 
  */
 
@@ -46,20 +69,44 @@ class LocalResourcesTrackerImpl implements LocalResourcesTracker {
   private static final Pattern RANDOM_DIR_PATTERN = Pattern
       .compile(RANDOM_DIR_REGEX);
 
+  private static final int INDEX_VERSION = 1;
+  private static final byte INDEX_ADD = 0;
+  private static final byte INDEX_REMOVE = 1;
+  /** stale records the index may hold beyond its live ones */
+  static final int INDEX_STALE_RECORDS = 1000;
+
   private final String user;
   private final Dispatcher dispatcher;
   private final ConcurrentMap<LocalResourceRequest,LocalizedResource> localrsrc;
+  private final File indexFile;
+  /** records in the index file - guarded by this */
+  private int indexRecords = -1;
+  /** localized resources in the index file - guarded by this */
+  private int indexLiveRecords = 0;
 
   public LocalResourcesTrackerImpl(String user, Dispatcher dispatcher) {
+    this(user, dispatcher, (File) null);
+  }
+
+  public LocalResourcesTrackerImpl(String user, Dispatcher dispatcher,
+      File indexFile) {
     this(user, dispatcher,
-        new ConcurrentHashMap<LocalResourceRequest,LocalizedResource>());
+        new ConcurrentHashMap<LocalResourceRequest,LocalizedResource>(),
+        indexFile);
   }
 
   LocalResourcesTrackerImpl(String user, Dispatcher dispatcher,
       ConcurrentMap<LocalResourceRequest,LocalizedResource> localrsrc) {
+    this(user, dispatcher, localrsrc, null);
+  }
+
+  LocalResourcesTrackerImpl(String user, Dispatcher dispatcher,
+      ConcurrentMap<LocalResourceRequest,LocalizedResource> localrsrc,
+      File indexFile) {
     this.user = user;
     this.dispatcher = dispatcher;
     this.localrsrc = localrsrc;
+    this.indexFile = indexFile;
   }
 
   @Override
@@ -86,8 +133,22 @@ public void handle(ResourceEvent event) {
         return;
       }
       break;
+    case RECOVERED:
+      // only a resource still in the cache can be claimed without fetching
+      if (null == rsrc || !ResourceState.LOCALIZED.equals(rsrc.getState())
+          || !isResourcePresent(rsrc)) {
+        LOG.info("Recovered container uses untracked resource " + req
+            + " (discard)");
+        return;
+      }
+      break;
     }
+    boolean wasLocalized = ResourceState.LOCALIZED.equals(rsrc.getState());
     rsrc.handle(event);
+    if (event.getType() == ResourceEventType.LOCALIZED && !wasLocalized
+        && ResourceState.LOCALIZED.equals(rsrc.getState())) {
+      appendIndex(INDEX_ADD, rsrc);
+    }
   }
 
   /**
@@ -131,7 +192,9 @@ public boolean remove(LocalizedResource rem, DeletionService delService) {
     } else { // ResourceState is LOCALIZED or INIT
       localrsrc.remove(rem.getRequest());
       if (ResourceState.LOCALIZED.equals(rsrc.getState())) {
-        delService.delete(getUser(), getPathToDelete(rsrc.getLocalPath()));
+        appendIndex(INDEX_REMOVE, rsrc);
+        delService.delete(DeletionService.Priority.CACHE, getUser(),
+            getPathToDelete(rsrc.getLocalPath()));
       }
       return true;
     }
@@ -154,6 +217,171 @@ private Path getPathToDelete(Path localPath) {
     }
   }
 
+  /**
+   * Add the resources in the index file, if any, as localized. Whether they
+   * are still on disk is only checked when they are requested again. The
+   * index is then rewritten with the recovered resources only.
+   *
+   * @return the number of recovered resources
+   */
+  synchronized int recover() {
+    if (indexFile == null || !indexFile.exists()) {
+      return 0;
+    }
+    Map<LocalResourceRequest, LocalizedResource> indexed =
+        new LinkedHashMap<LocalResourceRequest, LocalizedResource>();
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(indexFile)));
+      int version = in.readInt();
+      if (version != INDEX_VERSION) {
+        throw new IOException("Unknown index version " + version);
+      }
+      while (true) {
+        byte op;
+        try {
+          op = in.readByte();
+        } catch (EOFException e) {
+          break;
+        }
+        LocalResourceRequest req = readRequest(in);
+        if (op == INDEX_ADD) {
+          Path localPath = new Path(in.readUTF());
+          long size = in.readLong();
+          LocalizedResource rsrc = new LocalizedResource(req, dispatcher);
+          rsrc.handle(new ResourceLocalizedEvent(req, localPath, size));
+          indexed.put(req, rsrc);
+        } else if (op == INDEX_REMOVE) {
+          indexed.remove(req);
+        } else {
+          throw new IOException("Unknown index record " + op);
+        }
+      }
+    } catch (EOFException e) {
+      LOG.warn("Ignoring the truncated last record of " + indexFile);
+    } catch (Exception e) {
+      LOG.warn("Unable to recover localized resources from " + indexFile
+          + ", they will be localized again", e);
+      indexed.clear();
+    } finally {
+      IOUtils.closeStream(in);
+    }
+    int recovered = 0;
+    for (LocalizedResource rsrc : indexed.values()) {
+      if (localrsrc.putIfAbsent(rsrc.getRequest(), rsrc) == null) {
+        recovered++;
+      }
+    }
+    storeIndex();
+    LOG.info("Recovered " + recovered + " localized resources from "
+        + indexFile);
+    return recovered;
+  }
+
+  /**
+   * Append a localized or removed resource to the index file. The first
+   * append, or one that leaves too many stale records, rewrites the index.
+   */
+  private synchronized void appendIndex(byte op, LocalizedResource rsrc) {
+    if (indexFile == null) {
+      return;
+    }
+    if (indexRecords < 0
+        || indexRecords >= 2 * indexLiveRecords + INDEX_STALE_RECORDS) {
+      // the resource is already added to or removed from localrsrc
+      storeIndex();
+      return;
+    }
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(indexFile, true)));
+      writeRecord(out, op, rsrc);
+      out.close();
+      out = null;
+      indexRecords++;
+      indexLiveRecords += op == INDEX_ADD ? 1 : -1;
+    } catch (IOException e) {
+      LOG.warn("Unable to store localized resources to " + indexFile, e);
+      // rewrite the index on the next change
+      indexRecords = -1;
+    } finally {
+      IOUtils.closeStream(out);
+    }
+  }
+
+  /**
+   * Write the localized resources to the index file. The file is replaced
+   * as a whole, and synced before it is, so that a crash leaves either the
+   * old or the new index.
+   */
+  private synchronized void storeIndex() {
+    if (indexFile == null) {
+      return;
+    }
+    File tmpFile = new File(indexFile.getPath() + ".tmp");
+    FileOutputStream fos = null;
+    try {
+      fos = new FileOutputStream(tmpFile);
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(fos));
+      out.writeInt(INDEX_VERSION);
+      int records = 0;
+      for (LocalizedResource rsrc : localrsrc.values()) {
+        if (ResourceState.LOCALIZED.equals(rsrc.getState())) {
+          writeRecord(out, INDEX_ADD, rsrc);
+          records++;
+        }
+      }
+      out.flush();
+      fos.getFD().sync();
+      fos.close();
+      fos = null;
+      if (!tmpFile.renameTo(indexFile)) {
+        throw new IOException("Unable to rename " + tmpFile + " to "
+            + indexFile);
+      }
+      indexRecords = records;
+      indexLiveRecords = records;
+    } catch (IOException e) {
+      LOG.warn("Unable to store localized resources to " + indexFile, e);
+      indexRecords = -1;
+    } finally {
+      IOUtils.closeStream(fos);
+    }
+  }
+
+  private static void writeRecord(DataOutputStream out, byte op,
+      LocalizedResource rsrc) throws IOException {
+    LocalResourceRequest req = rsrc.getRequest();
+    out.writeByte(op);
+    out.writeUTF(req.getPath().toString());
+    out.writeLong(req.getTimestamp());
+    out.writeUTF(req.getType().name());
+    out.writeUTF(req.getVisibility().name());
+    out.writeBoolean(req.getPattern() != null);
+    if (req.getPattern() != null) {
+      out.writeUTF(req.getPattern());
+    }
+    if (op == INDEX_ADD) {
+      out.writeUTF(rsrc.getLocalPath().toString());
+      out.writeLong(rsrc.getSize());
+    }
+  }
+
+  private static LocalResourceRequest readRequest(DataInputStream in)
+      throws IOException {
+    Path loc = new Path(in.readUTF());
+    long timestamp = in.readLong();
+    LocalResourceType type = LocalResourceType.valueOf(in.readUTF());
+    LocalResourceVisibility visibility =
+        LocalResourceVisibility.valueOf(in.readUTF());
+    String pattern = in.readBoolean() ? in.readUTF() : null;
+    return new LocalResourceRequest(loc, timestamp, type, visibility,
+        pattern);
+  }
+
   @Override
   public String getUser() {
     return user;
@@ -37,6 +37,7 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceEventType;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceLocalizedEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceRecoveredEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceReleaseEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceRequestEvent;
 import org.apache.hadoop.yarn.state.InvalidStateTransitonException;
@@ -97,6 +98,8 @@ ResourceEventType.REQUEST, new LocalizedResourceTransition())
         ResourceEventType.LOCALIZED)
     .addTransition(ResourceState.LOCALIZED, ResourceState.LOCALIZED,
         ResourceEventType.RELEASE, new ReleaseTransition())
+    .addTransition(ResourceState.LOCALIZED, ResourceState.LOCALIZED,
+        ResourceEventType.RECOVERED, new RecoveredResourceTransition())
     .installTopology();
 
   public LocalizedResource(LocalResourceRequest rsrc, Dispatcher dispatcher) {
@@ -268,6 +271,19 @@ public void transition(LocalizedResource rsrc, ResourceEvent event) {
     }
   }
 
+  /**
+   * Resource in use by a container that was running when the NodeManager
+   * restarted. The container is not waiting for it, so it is not notified.
+   */
+  private static class RecoveredResourceTransition
+      extends ResourceTransition {
+    @Override
+    public void transition(LocalizedResource rsrc, ResourceEvent event) {
+      ResourceRecoveredEvent recEvent = (ResourceRecoveredEvent) event;
+      rsrc.ref.add(recEvent.getContainer());
+    }
+  }
+
   /**
    * Decrement resource count, update timestamp.
    */
@@ -22,6 +22,7 @@
 
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URISyntaxException;
@@ -90,6 +91,7 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerResourceFailedEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ApplicationLocalizationEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ContainerLocalizationCleanupEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ContainerLocalizationRecoveredEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ContainerLocalizationRequestEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.LocalizationEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.LocalizationEventType;
@@ -97,6 +99,7 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.LocalizerEventType;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.LocalizerResourceRequestEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceLocalizedEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceRecoveredEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceReleaseEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceRequestEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.security.LocalizerTokenSecretManager;
@@ -113,12 +116,17 @@ public class ResourceLocalizationService extends CompositeService
 
   private static final Log LOG = LogFactory.getLog(ResourceLocalizationService.class);
   public static final String NM_PRIVATE_DIR = "nmPrivate";
+  static final String PUBLIC_CACHE_INDEX = "filecache.index";
+  static final String PRIVATE_CACHE_INDEX_FMT = "%s.filecache.index";
   public static final FsPermission NM_PRIVATE_PERM = new FsPermission((short) 0700);
 
   private Server server;
   private InetSocketAddress localizationServerAddress;
   private long cacheTargetSize;
   private long cacheCleanupPeriod;
+  private int containerFetchThreads;
+  // Where the indexes of the public and private caches are kept
+  private File cacheIndexDir;
 
   private final ContainerExecutor exec;
   protected final Dispatcher dispatcher;
@@ -127,7 +135,7 @@ public class ResourceLocalizationService extends CompositeService
   private RecordFactory recordFactory;
   private final ScheduledExecutorService cacheCleanup;
 
-  private final LocalResourcesTracker publicRsrc;
+  private LocalResourcesTracker publicRsrc;
 
   private LocalDirsHandlerService dirsHandler;
 
@@ -195,6 +203,16 @@ public void init(Configuration conf) {
       for (String logDir : logDirs) {
         lfs.mkdir(new Path(logDir), null, true);
       }
+
+      // Recover the public cache of a previous run
+      if (!localDirs.isEmpty()) {
+        cacheIndexDir = getCacheIndexDir(localDirs);
+        LocalResourcesTrackerImpl publicTracker =
+            new LocalResourcesTrackerImpl(null, dispatcher,
+                new File(cacheIndexDir, PUBLIC_CACHE_INDEX));
+        publicTracker.recover();
+        publicRsrc = publicTracker;
+      }
     } catch (IOException e) {
       throw new YarnException("Failed to initialize LocalizationService", e);
     }
@@ -203,6 +221,9 @@ public void init(Configuration conf) {
       conf.getLong(YarnConfiguration.NM_LOCALIZER_CACHE_TARGET_SIZE_MB, YarnConfiguration.DEFAULT_NM_LOCALIZER_CACHE_TARGET_SIZE_MB) << 20;
     cacheCleanupPeriod =
       conf.getLong(YarnConfiguration.NM_LOCALIZER_CACHE_CLEANUP_INTERVAL_MS, YarnConfiguration.DEFAULT_NM_LOCALIZER_CACHE_CLEANUP_INTERVAL_MS);
+    containerFetchThreads = conf.getInt(
+        YarnConfiguration.NM_LOCALIZER_CONTAINER_FETCH_THREAD_COUNT,
+        YarnConfiguration.DEFAULT_NM_LOCALIZER_CONTAINER_FETCH_THREAD_COUNT);
     localizationServerAddress = conf.getSocketAddr(
         YarnConfiguration.NM_LOCALIZER_ADDRESS,
         YarnConfiguration.DEFAULT_NM_LOCALIZER_ADDRESS,
@@ -218,6 +239,30 @@ public LocalizerHeartbeatResponse heartbeat(LocalizerStatus status) {
     return localizerTracker.processHeartbeat(status);
   }
 
+  /**
+   * Find the nmPrivate dir holding the cache indexes of a previous run, in
+   * case the local dir they were written to is no longer the first good
+   * one. Otherwise the indexes go to the first local dir. An index on a
+   * failed dir is lost, and its resources are localized again.
+   */
+  private static File getCacheIndexDir(List<String> localDirs) {
+    for (String localDir : localDirs) {
+      File sysDir =
+          new File(new Path(localDir, NM_PRIVATE_DIR).toUri().getPath());
+      String[] indexes = sysDir.list(new FilenameFilter() {
+        @Override
+        public boolean accept(File dir, String name) {
+          return name.endsWith(PUBLIC_CACHE_INDEX);
+        }
+      });
+      if (indexes != null && indexes.length > 0) {
+        return sysDir;
+      }
+    }
+    return new File(
+        new Path(localDirs.get(0), NM_PRIVATE_DIR).toUri().getPath());
+  }
+
   @Override
   public void start() {
     cacheCleanup.scheduleWithFixedDelay(new CacheCleanup(dispatcher),
@@ -278,6 +323,10 @@ public void handle(LocalizationEvent event) {
     case INIT_CONTAINER_RESOURCES:
       handleInitContainerResources((ContainerLocalizationRequestEvent) event);
       break;
+    case RECOVER_CONTAINER_RESOURCES:
+      handleRecoverContainerResources(
+          (ContainerLocalizationRecoveredEvent) event);
+      break;
     case CACHE_CLEANUP:
       handleCacheCleanup(event);
       break;
@@ -301,8 +350,16 @@ public void handle(LocalizationEvent event) {
   private void handleInitApplicationResources(Application app) {
     // 0) Create application tracking structs
     String userName = app.getUser();
-    privateRsrc.putIfAbsent(userName,
-        new LocalResourcesTrackerImpl(userName, dispatcher));
+    if (!privateRsrc.containsKey(userName)) {
+      LocalResourcesTrackerImpl privateTracker =
+          new LocalResourcesTrackerImpl(userName, dispatcher,
+              cacheIndexDir == null ? null : new File(cacheIndexDir,
+                  String.format(PRIVATE_CACHE_INDEX_FMT, userName)));
+      if (null == privateRsrc.putIfAbsent(userName, privateTracker)) {
+        // Recover the private cache of the user from a previous run
+        privateTracker.recover();
+      }
+    }
     if (null != appRsrc.putIfAbsent(ConverterUtils.toString(app.getAppId()),
         new LocalResourcesTrackerImpl(app.getUser(), dispatcher))) {
       LOG.warn("Initializing application " + app + " already present");
@@ -341,6 +398,30 @@ private void handleInitContainerResources(
     }
   }
   
+  /**
+   * For each of the resources of a container recovered after a restart,
+   * claims the copy already in the cache for the container, so that it is
+   * kept until the container is cleaned up.
+   */
+  private void handleRecoverContainerResources(
+      ContainerLocalizationRecoveredEvent rsrcRecovered) {
+    Container c = rsrcRecovered.getContainer();
+    Map<LocalResourceVisibility, Collection<LocalResourceRequest>> rsrcs =
+      rsrcRecovered.getResources();
+    for (Map.Entry<LocalResourceVisibility, Collection<LocalResourceRequest>> e :
+         rsrcs.entrySet()) {
+      LocalResourcesTracker tracker = getLocalResourcesTracker(e.getKey(),
+          c.getUser(),
+          c.getContainerID().getApplicationAttemptId().getApplicationId());
+      if (tracker == null) {
+        continue;
+      }
+      for (LocalResourceRequest req : e.getValue()) {
+        tracker.handle(new ResourceRecoveredEvent(req, c.getContainerID()));
+      }
+    }
+  }
+
   private void handleCacheCleanup(LocalizationEvent event) {
     ResourceRetentionSet retain =
       new ResourceRetentionSet(delService, cacheTargetSize);
@@ -384,14 +465,16 @@ private void handleCleanupContainerResources(
       Path allAppsdir = new Path(userdir, ContainerLocalizer.APPCACHE);
       Path appDir = new Path(allAppsdir, appIDStr);
       Path containerDir = new Path(appDir, containerIDStr);
-      delService.delete(userName, containerDir, new Path[] {});
+      delService.delete(DeletionService.Priority.CONTAINER, userName,
+          containerDir, new Path[] {});
 
       // Delete the nmPrivate container-dir
       
       Path sysDir = new Path(localDir, NM_PRIVATE_DIR);
       Path appSysDir = new Path(sysDir, appIDStr);
       Path containerSysDir = new Path(appSysDir, containerIDStr);
-      delService.delete(null, containerSysDir,  new Path[] {});
+      delService.delete(DeletionService.Priority.CONTAINER, null,
+          containerSysDir, new Path[] {});
     }
 
     dispatcher.getEventHandler().handle(new ContainerEvent(c.getContainerID(),
@@ -646,7 +729,7 @@ public void run() {
                 return;
               }
               LocalResourceRequest key = assoc.getResource().getRequest();
-              assoc.getResource().handle(
+              publicRsrc.handle(
                   new ResourceLocalizedEvent(key,
                     local, FileUtil.getDU(new File(local.toUri()))));
               synchronized (attempts) {
@@ -704,6 +787,8 @@ class LocalizerRunner extends Thread {
     final String localizerId;
     final Map<LocalResourceRequest,LocalizerResourceRequestEvent> scheduled;
     final List<LocalizerResourceRequestEvent> pending;
+    // # of resources given to the localizer that it has not fetched yet
+    private int downloading = 0;
 
     // TODO: threadsafe, use outer?
     private final RecordFactory recordFactory =
@@ -723,6 +808,22 @@ public void addResource(LocalizerResourceRequestEvent request) {
       pending.add(request);
     }
 
+    /**
+     * Give the localizer more resources to fetch, up to the number it
+     * fetches in parallel. Resources already being localized by others are
+     * skipped, so that each one is only fetched once on the node.
+     */
+    private void addResources(LocalizerHeartbeatResponse response) {
+      while (downloading < containerFetchThreads) {
+        LocalResource next = findNextResource();
+        if (next == null) {
+          return;
+        }
+        response.addResource(next);
+        downloading++;
+      }
+    }
+
     /**
      * Find next resource to be given to a spawned localizer.
      * 
@@ -765,10 +866,9 @@ LocalizerHeartbeatResponse update(
       // The localizer has just spawned. Start giving it resources for
       // remote-fetching.
       if (remoteResourceStatuses.isEmpty()) {
-        LocalResource next = findNextResource();
-        if (next != null) {
+        addResources(response);
+        if (!response.getAllResources().isEmpty()) {
           response.setLocalizerAction(LocalizerAction.LIVE);
-          response.addResource(next);
         } else if (pending.isEmpty()) {
           // TODO: Synchronization
           response.setLocalizerAction(LocalizerAction.DIE);
@@ -794,12 +894,21 @@ LocalizerHeartbeatResponse update(
         }
         switch (stat.getStatus()) {
           case FETCH_SUCCESS:
-            // notify resource
+            // notify resource through its tracker, which records it
+            downloading--;
             try {
-              assoc.getResource().handle(
-                  new ResourceLocalizedEvent(req,
-                    ConverterUtils.getPathFromYarnURL(stat.getLocalPath()),
-                    stat.getLocalSize()));
+              ResourceLocalizedEvent localized = new ResourceLocalizedEvent(
+                  req, ConverterUtils.getPathFromYarnURL(stat.getLocalPath()),
+                  stat.getLocalSize());
+              LocalResourcesTracker tracker = getLocalResourcesTracker(
+                  assoc.getVisibility(), context.getUser(),
+                  context.getContainerId().getApplicationAttemptId()
+                      .getApplicationId());
+              if (tracker != null) {
+                tracker.handle(localized);
+              } else {
+                assoc.getResource().handle(localized);
+              }
             } catch (URISyntaxException e) { }
             if (pending.isEmpty()) {
               // TODO: Synchronization
@@ -807,13 +916,11 @@ LocalizerHeartbeatResponse update(
               break;
             }
             response.setLocalizerAction(LocalizerAction.LIVE);
-            LocalResource next = findNextResource();
-            if (next != null) {
-              response.addResource(next);
-            }
+            addResources(response);
             break;
           case FETCH_PENDING:
             response.setLocalizerAction(LocalizerAction.LIVE);
+            addResources(response);
             break;
           case FETCH_FAILURE:
             LOG.info("DEBUG: FAILED " + req, stat.getException());
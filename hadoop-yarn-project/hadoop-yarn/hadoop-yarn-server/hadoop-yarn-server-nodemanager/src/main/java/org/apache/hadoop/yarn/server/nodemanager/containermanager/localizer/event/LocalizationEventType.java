@@ -20,6 +20,7 @@
 public enum LocalizationEventType {
   INIT_APPLICATION_RESOURCES,
   INIT_CONTAINER_RESOURCES,
+  RECOVER_CONTAINER_RESOURCES,
   CACHE_CLEANUP,
   CLEANUP_CONTAINER_RESOURCES,
   DESTROY_APPLICATION_RESOURCES,
@@ -26,4 +26,11 @@ void startContainerLogAggregation(ContainerId containerId,
       boolean wasContainerSuccessful);
 
   void finishLogAggregation();
+
+  /**
+   * Stop aggregating the logs because the NodeManager is restarting. The
+   * logs uploaded so far are kept, the logs still on the node are left for
+   * the restarted NodeManager.
+   */
+  void abortLogAggregation();
 }
@@ -18,11 +18,18 @@
 
 package org.apache.hadoop.yarn.server.nodemanager.containermanager.logaggregation;
 
+import java.io.File;
 import java.io.IOException;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -38,6 +45,8 @@
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.event.Dispatcher;
 import org.apache.hadoop.yarn.logaggregation.ContainerLogsRetentionPolicy;
+import org.apache.hadoop.yarn.logaggregation.LogAggregationUtils;
+import org.apache.hadoop.yarn.logaggregation.LogUploadThrottler;
 import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogKey;
 import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogValue;
 import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogWriter;
@@ -70,8 +79,18 @@ public class AppLogAggregatorImpl implements AppLogAggregator {
   private final BlockingQueue<ContainerId> pendingContainers;
   private final AtomicBoolean appFinishing = new AtomicBoolean();
   private final AtomicBoolean appAggregationFinished = new AtomicBoolean();
+  private final AtomicBoolean aborted = new AtomicBoolean();
   private final Map<ApplicationAccessType, String> appAcls;
 
+  // rolling uploads while the application runs, disabled if not positive
+  private final long rollingMonitorInterval;
+  private final LogUploadThrottler throttler;
+  private final Set<ContainerId> finishedContainers =
+      Collections.newSetFromMap(new ConcurrentHashMap<ContainerId, Boolean>());
+  // the lengths of the log files already uploaded, by container
+  private final Map<ContainerId, Map<String, Long>> uploadedLengths =
+      new HashMap<ContainerId, Map<String, Long>>();
+
   private LogWriter writer = null;
 
   public AppLogAggregatorImpl(Dispatcher dispatcher,
@@ -80,6 +99,23 @@ public AppLogAggregatorImpl(Dispatcher dispatcher,
       Path remoteNodeLogFileForApp,
       ContainerLogsRetentionPolicy retentionPolicy,
       Map<ApplicationAccessType, String> appAcls) {
+    this(dispatcher, deletionService, conf, appId, userUgi, dirsHandler,
+        remoteNodeLogFileForApp, retentionPolicy, appAcls, -1, null);
+  }
+
+  /**
+   * @param rollingMonitorInterval how often to upload the new logs while
+   *          the application runs, in ms. Only upload them once it
+   *          finishes if not positive.
+   * @param throttler if not null, throttles the uploads
+   */
+  public AppLogAggregatorImpl(Dispatcher dispatcher,
+      DeletionService deletionService, Configuration conf, ApplicationId appId,
+      UserGroupInformation userUgi, LocalDirsHandlerService dirsHandler,
+      Path remoteNodeLogFileForApp,
+      ContainerLogsRetentionPolicy retentionPolicy,
+      Map<ApplicationAccessType, String> appAcls, long rollingMonitorInterval,
+      LogUploadThrottler throttler) {
     this.dispatcher = dispatcher;
     this.conf = conf;
     this.delService = deletionService;
@@ -92,6 +128,16 @@ public AppLogAggregatorImpl(Dispatcher dispatcher,
     this.retentionPolicy = retentionPolicy;
     this.pendingContainers = new LinkedBlockingQueue<ContainerId>();
     this.appAcls = appAcls;
+    this.rollingMonitorInterval = rollingMonitorInterval;
+    this.throttler = throttler;
+  }
+
+  private LogWriter createWriter(Path logFile) throws IOException {
+    LogWriter logWriter = new LogWriter(this.conf, logFile, this.userUgi);
+    //Write ACLs once when and if the writer is created.
+    logWriter.writeApplicationACLs(appAcls);
+    logWriter.writeApplicationOwner(this.userUgi.getShortUserName());
+    return logWriter;
   }
 
   private void uploadLogsForContainer(ContainerId containerId) {
@@ -105,12 +151,7 @@ private void uploadLogsForContainer(ContainerId containerId) {
       LOG.info("Starting aggregate log-file for app " + this.applicationId
           + " at " + this.remoteNodeTmpLogFileForApp);
       try {
-        this.writer =
-            new LogWriter(this.conf, this.remoteNodeTmpLogFileForApp,
-                this.userUgi);
-        //Write ACLs once when and if the writer is created.
-        this.writer.writeApplicationACLs(appAcls);
-        this.writer.writeApplicationOwner(this.userUgi.getShortUserName());
+        this.writer = createWriter(this.remoteNodeTmpLogFileForApp);
       } catch (IOException e) {
         LOG.error("Cannot create writer for app " + this.applicationId
             + ". Disabling log-aggregation for this app.", e);
@@ -118,20 +159,200 @@ private void uploadLogsForContainer(ContainerId containerId) {
         return;
       }
     }
+    appendContainerLogs(this.writer, containerId);
+  }
 
+  private void appendContainerLogs(LogWriter logWriter,
+      ContainerId containerId) {
     LOG.info("Uploading logs for container " + containerId
         + ". Current good log dirs are "
         + StringUtils.join(",", dirsHandler.getLogDirs()));
     LogKey logKey = new LogKey(containerId);
-    LogValue logValue = new LogValue(dirsHandler.getLogDirs(), containerId);
+    LogValue logValue = new LogValue(dirsHandler.getLogDirs(), containerId,
+        getUploadedLengths(containerId), throttler);
     try {
-      this.writer.append(logKey, logValue);
+      logWriter.append(logKey, logValue);
     } catch (IOException e) {
       LOG.error("Couldn't upload logs for " + containerId
           + ". Skipping this container.");
     }
   }
 
+  private Map<String, Long> getUploadedLengths(ContainerId containerId) {
+    if (this.rollingMonitorInterval <= 0) {
+      return null; // everything is uploaded at once
+    }
+    Map<String, Long> lengths = this.uploadedLengths.get(containerId);
+    if (lengths == null) {
+      lengths = new HashMap<String, Long>();
+      this.uploadedLengths.put(containerId, lengths);
+    }
+    return lengths;
+  }
+
+  /**
+   * Upload the logs written since the last upload to a file of their own,
+   * and remove the logs of the containers that are done from the node.
+   */
+  private void uploadRolledLogs() {
+    if (this.logAggregationDisabled) {
+      return;
+    }
+    List<ContainerId> finished = new ArrayList<ContainerId>();
+    this.pendingContainers.drainTo(finished);
+    List<ContainerId> containers = new ArrayList<ContainerId>();
+    for (ContainerId containerId : finished) {
+      if (hasNewLogs(containerId)) {
+        containers.add(containerId);
+      }
+    }
+    for (ContainerId containerId : getRunningContainers()) {
+      if (shouldRollLogs(containerId) && hasNewLogs(containerId)) {
+        containers.add(containerId);
+      }
+    }
+
+    if (!containers.isEmpty()) {
+      final Path rolledLogFile =
+          LogAggregationUtils.getRemoteRolledNodeLogFileForApp(
+              this.remoteNodeLogFileForApp, System.currentTimeMillis());
+      final Path rolledTmpLogFile = new Path(rolledLogFile.getParent(),
+          rolledLogFile.getName() + TMP_FILE_SUFFIX);
+      LOG.info("Rolling aggregate log-file for app " + this.applicationId
+          + " at " + rolledLogFile);
+      LogWriter rolledWriter;
+      try {
+        rolledWriter = createWriter(rolledTmpLogFile);
+      } catch (IOException e) {
+        LOG.error("Cannot create writer for app " + this.applicationId
+            + ". Retrying at the next roll.", e);
+        this.pendingContainers.addAll(finished);
+        return;
+      }
+      // to upload the same logs again if the upload does not make it
+      Map<ContainerId, Map<String, Long>> previousLengths =
+          new HashMap<ContainerId, Map<String, Long>>();
+      for (ContainerId containerId : containers) {
+        previousLengths.put(containerId,
+            new HashMap<String, Long>(getUploadedLengths(containerId)));
+      }
+      for (ContainerId containerId : containers) {
+        appendContainerLogs(rolledWriter, containerId);
+      }
+      try {
+        // a file which could not be closed may be truncated
+        rolledWriter.close();
+        userUgi.doAs(new PrivilegedExceptionAction<Object>() {
+          @Override
+          public Object run() throws Exception {
+            FileSystem remoteFS = FileSystem.get(conf);
+            if (!remoteFS.rename(rolledTmpLogFile, rolledLogFile)) {
+              throw new IOException("Rename returned false");
+            }
+            return null;
+          }
+        });
+      } catch (Exception e) {
+        LOG.error("Failed to upload temporary log file to final location: ["
+            + rolledTmpLogFile + "] to [" + rolledLogFile
+            + "]. Retrying at the next roll.", e);
+        deleteRemoteFile(rolledTmpLogFile);
+        this.uploadedLengths.putAll(previousLengths);
+        this.pendingContainers.addAll(finished);
+        return;
+      }
+    }
+
+    // The logs of the containers that are done are all uploaded
+    for (ContainerId containerId : finished) {
+      this.uploadedLengths.remove(containerId);
+      deleteContainerLogDirs(containerId);
+    }
+  }
+
+  private void deleteRemoteFile(final Path remoteFile) {
+    try {
+      userUgi.doAs(new PrivilegedExceptionAction<Object>() {
+        @Override
+        public Object run() throws Exception {
+          FileSystem.get(conf).delete(remoteFile, false);
+          return null;
+        }
+      });
+    } catch (Exception e) {
+      LOG.warn("Failed to delete " + remoteFile, e);
+    }
+  }
+
+  private List<File> getContainerLogDirs(ContainerId containerId) {
+    List<File> containerLogDirs = new ArrayList<File>();
+    for (String rootLogDir : dirsHandler.getLogDirs()) {
+      File containerLogDir = new File(new File(rootLogDir, this.applicationId),
+          ConverterUtils.toString(containerId));
+      if (containerLogDir.isDirectory()) {
+        containerLogDirs.add(containerLogDir);
+      }
+    }
+    return containerLogDirs;
+  }
+
+  private boolean hasNewLogs(ContainerId containerId) {
+    Map<String, Long> lengths = getUploadedLengths(containerId);
+    for (File containerLogDir : getContainerLogDirs(containerId)) {
+      File[] logFiles = containerLogDir.listFiles();
+      if (logFiles == null) {
+        continue;
+      }
+      for (File logFile : logFiles) {
+        Long uploaded = lengths.get(logFile.getPath());
+        if (uploaded == null || uploaded != logFile.length()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private void deleteContainerLogDirs(ContainerId containerId) {
+    List<File> containerLogDirs = getContainerLogDirs(containerId);
+    if (containerLogDirs.isEmpty()) {
+      return;
+    }
+    Path[] paths = new Path[containerLogDirs.size()];
+    int index = 0;
+    for (File containerLogDir : containerLogDirs) {
+      paths[index++] = new Path(containerLogDir.getAbsolutePath());
+    }
+    this.delService.delete(this.userUgi.getShortUserName(), null, paths);
+  }
+
+  /**
+   * @return the containers of the app with logs on the node that are not
+   *         done yet
+   */
+  private Set<ContainerId> getRunningContainers() {
+    Set<ContainerId> running = new HashSet<ContainerId>();
+    for (String rootLogDir : dirsHandler.getLogDirs()) {
+      File[] containerLogDirs =
+          new File(rootLogDir, this.applicationId).listFiles();
+      if (containerLogDirs == null) {
+        continue;
+      }
+      for (File containerLogDir : containerLogDirs) {
+        ContainerId containerId;
+        try {
+          containerId = ConverterUtils.toContainerId(containerLogDir.getName());
+        } catch (RuntimeException e) {
+          continue; // not the logs of a container
+        }
+        if (!this.finishedContainers.contains(containerId)) {
+          running.add(containerId);
+        }
+      }
+    }
+    return running;
+  }
+
   @Override
   public void run() {
     try {
@@ -148,6 +369,9 @@ public void run() {
   private void doAppLogAggregation() {
     ContainerId containerId;
 
+    long nextRoll = this.rollingMonitorInterval > 0
+        ? System.currentTimeMillis() + this.rollingMonitorInterval
+        : Long.MAX_VALUE;
     while (!this.appFinishing.get()) {
       synchronized(this) {
         try {
@@ -157,6 +381,11 @@ private void doAppLogAggregation() {
           this.appFinishing.set(true);
         }
       }
+      if (!this.appFinishing.get()
+          && System.currentTimeMillis() >= nextRoll) {
+        uploadRolledLogs();
+        nextRoll = System.currentTimeMillis() + this.rollingMonitorInterval;
+      }
     }
 
     // Application is finished. Finish pending-containers
@@ -164,6 +393,12 @@ private void doAppLogAggregation() {
       uploadLogsForContainer(containerId);
     }
 
+    if (this.aborted.get()) {
+      finishAbortedLogFile();
+      this.appAggregationFinished.set(true);
+      return;
+    }
+
     // Remove the local app-log-dirs
     List<String> rootLogDirs = dirsHandler.getLogDirs();
     Path[] localAppLogDirs = new Path[rootLogDirs.size()];
@@ -201,11 +436,47 @@ public Object run() throws Exception {
     this.appAggregationFinished.set(true);    
   }
 
+  /**
+   * Keep the logs uploaded so far in a rolled log-file, so that the restarted
+   * NodeManager does not overwrite them.
+   */
+  private void finishAbortedLogFile() {
+    if (this.writer == null) {
+      return;
+    }
+    this.writer.closeWriter();
+    final Path rolledLogFile =
+        LogAggregationUtils.getRemoteRolledNodeLogFileForApp(
+            this.remoteNodeLogFileForApp, System.currentTimeMillis());
+    try {
+      userUgi.doAs(new PrivilegedExceptionAction<Object>() {
+        @Override
+        public Object run() throws Exception {
+          FileSystem remoteFS = FileSystem.get(conf);
+          remoteFS.rename(remoteNodeTmpLogFileForApp, rolledLogFile);
+          return null;
+        }
+      });
+      LOG.info("Aborted aggregate log-file for app " + this.applicationId
+          + " kept at " + rolledLogFile);
+    } catch (Exception e) {
+      LOG.error("Failed to move temporary log file to final location: ["
+          + remoteNodeTmpLogFileForApp + "] to [" + rolledLogFile + "]", e);
+    }
+  }
+
   private Path getRemoteNodeTmpLogFileForApp() {
     return new Path(remoteNodeLogFileForApp.getParent(),
         (remoteNodeLogFileForApp.getName() + TMP_FILE_SUFFIX));
   }
 
+  private boolean shouldRollLogs(ContainerId containerId) {
+    // Whether a running container fails is not known yet
+    return this.retentionPolicy
+        .equals(ContainerLogsRetentionPolicy.ALL_CONTAINERS)
+        || containerId.getId() == 1;
+  }
+
   private boolean shouldUploadLogs(ContainerId containerId,
       boolean wasContainerSuccessful) {
 
@@ -240,6 +511,7 @@ private boolean shouldUploadLogs(ContainerId containerId,
   @Override
   public void startContainerLogAggregation(ContainerId containerId,
       boolean wasContainerSuccessful) {
+    this.finishedContainers.add(containerId);
     if (shouldUploadLogs(containerId, wasContainerSuccessful)) {
       LOG.info("Considering container " + containerId
           + " for log-aggregation");
@@ -247,6 +519,14 @@ public void startContainerLogAggregation(ContainerId containerId,
     }
   }
 
+  @Override
+  public synchronized void abortLogAggregation() {
+    LOG.info("Aborting log aggregation for " + this.applicationId);
+    this.aborted.set(true);
+    this.appFinishing.set(true);
+    this.notifyAll();
+  }
+
   @Override
   public synchronized void finishLogAggregation() {
     LOG.info("Application just finished : " + this.applicationId);
@@ -45,6 +45,7 @@
 import org.apache.hadoop.yarn.event.Dispatcher;
 import org.apache.hadoop.yarn.logaggregation.ContainerLogsRetentionPolicy;
 import org.apache.hadoop.yarn.logaggregation.LogAggregationUtils;
+import org.apache.hadoop.yarn.logaggregation.LogUploadThrottler;
 import org.apache.hadoop.yarn.server.nodemanager.Context;
 import org.apache.hadoop.yarn.server.nodemanager.DeletionService;
 import org.apache.hadoop.yarn.server.nodemanager.LocalDirsHandlerService;
@@ -58,6 +59,7 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.loghandler.event.LogHandlerEvent;
 import org.apache.hadoop.yarn.service.AbstractService;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class LogAggregationService extends AbstractService implements
@@ -93,6 +95,9 @@ public class LogAggregationService extends AbstractService implements
   Path remoteRootLogDir;
   String remoteRootLogDirSuffix;
   private NodeId nodeId;
+  private long rollingMonitorInterval;
+  // shared by the uploads of all the applications
+  private LogUploadThrottler throttler;
 
   private final ConcurrentMap<ApplicationId, AppLogAggregator> appLogAggregators;
 
@@ -120,10 +125,36 @@ public synchronized void init(Configuration conf) {
     this.remoteRootLogDirSuffix =
         conf.get(YarnConfiguration.NM_REMOTE_APP_LOG_DIR_SUFFIX,
             YarnConfiguration.DEFAULT_NM_REMOTE_APP_LOG_DIR_SUFFIX);
+    long rollingInterval = conf.getLong(
+        YarnConfiguration.NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS,
+        YarnConfiguration.DEFAULT_NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS);
+    if (rollingInterval > 0
+        && rollingInterval
+            < YarnConfiguration.MIN_NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS
+        && !conf.getBoolean(YarnConfiguration.NM_LOG_AGG_DEBUG_ENABLED,
+            YarnConfiguration.DEFAULT_NM_LOG_AGG_DEBUG_ENABLED)) {
+      LOG.warn(YarnConfiguration.NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS
+          + " of " + rollingInterval + " is below the minimum, using "
+          + YarnConfiguration.MIN_NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS
+          + " instead");
+      rollingInterval =
+          YarnConfiguration.MIN_NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS;
+    }
+    this.rollingMonitorInterval = rollingInterval * 1000;
+    long uploadBandwidth = conf.getLong(
+        YarnConfiguration.NM_LOG_AGG_UPLOAD_BANDWIDTH,
+        YarnConfiguration.DEFAULT_NM_LOG_AGG_UPLOAD_BANDWIDTH);
+    this.throttler = uploadBandwidth > 0
+        ? new LogUploadThrottler(uploadBandwidth) : null;
 
     super.init(conf);
   }
 
+  @VisibleForTesting
+  long getRollingMonitorInterval() {
+    return rollingMonitorInterval;
+  }
+
   @Override
   public synchronized void start() {
     // NodeId is only available during start, the following cannot be moved
@@ -142,9 +173,15 @@ public synchronized void stop() {
    
   private void stopAggregators() {
     threadPool.shutdown();
-    // politely ask to finish
+    // politely ask to finish, or to leave the rest to the restarted
+    // NodeManager if the applications are recovered
+    boolean recovering = context.getNMStateStore().canRecover();
     for (AppLogAggregator aggregator : appLogAggregators.values()) {
-      aggregator.finishLogAggregation();
+      if (recovering) {
+        aggregator.abortLogAggregation();
+      } else {
+        aggregator.finishLogAggregation();
+      }
     }
     while (!threadPool.isTerminated()) { // wait for all threads to finish
       for (ApplicationId appId : appLogAggregators.keySet()) {
@@ -323,7 +360,7 @@ protected void initAppAggregator(final ApplicationId appId, String user,
         new AppLogAggregatorImpl(this.dispatcher, this.deletionService,
             getConfig(), appId, userUgi, dirsHandler,
             getRemoteNodeLogFileForApp(appId, user), logRetentionPolicy,
-            appAcls);
+            appAcls, this.rollingMonitorInterval, this.throttler);
     if (this.appLogAggregators.putIfAbsent(appId, appLogAggregator) != null) {
       throw new YarnException("Duplicate initApp for " + appId);
     }
@@ -18,11 +18,42 @@
 
 package org.apache.hadoop.yarn.server.nodemanager.containermanager.monitor;
 
+import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.hadoop.yarn.server.nodemanager.ResourceView;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.Container;
 import org.apache.hadoop.yarn.service.Service;
 
 public interface ContainersMonitor extends Service,
     EventHandler<ContainersMonitorEvent>, ResourceView {
 
+  /**
+   * Admit a container for launch. Guaranteed containers are always admitted,
+   * killing opportunistic ones if the node does not have the resources for
+   * them. Opportunistic containers are queued until it does, and are then
+   * launched again.
+   * @param container the container to launch
+   * @return whether the container can be launched now
+   */
+  boolean admitContainer(Container container);
+
+  /**
+   * Account for a container that kept running while the NodeManager
+   * restarted. It is admitted whether or not it fits.
+   * @param container the recovered container
+   */
+  void recoverContainer(Container container);
+
+  /**
+   * Release the resources of a container that is done, or take it off the
+   * queue, and start the queued containers that fit.
+   * @param containerId the container that is cleaned up
+   * @return whether the container was queued, i.e. never launched
+   */
+  boolean releaseContainer(ContainerId containerId);
+
+  /**
+   * @return the number of opportunistic containers waiting for resources
+   */
+  int getQueuedContainers();
 }
@@ -19,24 +19,39 @@
 package org.apache.hadoop.yarn.server.nodemanager.containermanager.monitor;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.util.StringUtils.TraditionalBinaryPrefix;
 import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.event.AsyncDispatcher;
 import org.apache.hadoop.yarn.event.Dispatcher;
 import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor;
 import org.apache.hadoop.yarn.server.nodemanager.Context;
+import org.apache.hadoop.yarn.server.nodemanager.LinuxContainerExecutor;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.Container;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerKillEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.launcher.ContainersLauncherEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.launcher.ContainersLauncherEventType;
+import org.apache.hadoop.yarn.server.nodemanager.metrics.NodeManagerMetrics;
+import org.apache.hadoop.yarn.server.nodemanager.util.CgroupsLCEResourcesHandler;
+import org.apache.hadoop.yarn.server.nodemanager.util.CgroupsResourceCalculatorProcessTree;
+import org.apache.hadoop.yarn.server.nodemanager.util.LCEResourcesHandler;
 import org.apache.hadoop.yarn.service.AbstractService;
+import org.apache.hadoop.yarn.util.ProcfsBasedProcessTree;
+import org.apache.hadoop.yarn.util.ProcfsSnapshot;
 import org.apache.hadoop.yarn.util.ResourceCalculatorProcessTree;
 import org.apache.hadoop.yarn.util.ResourceCalculatorPlugin;
 
@@ -59,13 +74,36 @@ public class ContainersMonitorImpl extends AbstractService implements
   final ContainerExecutor containerExecutor;
   private final Dispatcher eventDispatcher;
   private final Context context;
+  private final NodeManagerMetrics metrics;
   private ResourceCalculatorPlugin resourceCalculatorPlugin;
   private Configuration conf;
   private Class<? extends ResourceCalculatorProcessTree> processTreeClass;
+  // The process table shared by the trees of all containers, when procfs is
+  // used
+  private ProcfsSnapshot procfsSnapshot;
+  // Set when the memory of containers is accounted by their cgroups
+  private CgroupsLCEResourcesHandler cgroupsHandler;
 
   private long maxVmemAllottedForContainers = DISABLED_MEMORY_LIMIT;
   private long maxPmemAllottedForContainers = DISABLED_MEMORY_LIMIT;
 
+  // Resources of the node and of the containers admitted for launch
+  private int nodeMemoryMB;
+  private int nodeVCores;
+  private int allocatedMemoryMB = 0;
+  private int allocatedVCores = 0;
+  private final Map<ContainerId, Resource> allocatedContainers =
+      new HashMap<ContainerId, Resource>();
+  // Admitted opportunistic containers in the order they were admitted, and
+  // the ones among them that are being killed for guaranteed containers
+  private final Map<ContainerId, Resource> opportunisticContainers =
+      new LinkedHashMap<ContainerId, Resource>();
+  private final Set<ContainerId> preemptedContainers =
+      new HashSet<ContainerId>();
+  // Opportunistic containers waiting for resources, first come first served
+  private final Map<ContainerId, Container> queuedContainers =
+      new LinkedHashMap<ContainerId, Container>();
+
   /**
    * A value which if set for memory related configuration options, indicates
    * that the options are turned off.
@@ -73,12 +111,14 @@ public class ContainersMonitorImpl extends AbstractService implements
   public static final long DISABLED_MEMORY_LIMIT = -1L;
 
   public ContainersMonitorImpl(ContainerExecutor exec,
-      AsyncDispatcher dispatcher, Context context) {
+      AsyncDispatcher dispatcher, Context context,
+      NodeManagerMetrics metrics) {
     super("containers-monitor");
 
     this.containerExecutor = exec;
     this.eventDispatcher = dispatcher;
     this.context = context;
+    this.metrics = metrics;
 
     this.containersToBeAdded = new HashMap<ContainerId, ProcessTreeInfo>();
     this.containersToBeRemoved = new ArrayList<ContainerId>();
@@ -103,6 +143,20 @@ public synchronized void init(Configuration conf) {
     this.conf = conf;
     LOG.info(" Using ResourceCalculatorProcessTree : "
         + this.processTreeClass);
+    if ((processTreeClass == null && ProcfsBasedProcessTree.isAvailable())
+        || ProcfsBasedProcessTree.class.equals(processTreeClass)) {
+      procfsSnapshot = new ProcfsSnapshot();
+    }
+    if (containerExecutor instanceof LinuxContainerExecutor) {
+      LCEResourcesHandler handler =
+          ((LinuxContainerExecutor) containerExecutor).getResourcesHandler();
+      if (handler instanceof CgroupsLCEResourcesHandler
+          && ((CgroupsLCEResourcesHandler) handler).isMemoryEnabled()) {
+        LOG.info(" Using cgroups to account the memory of containers");
+        cgroupsHandler = (CgroupsLCEResourcesHandler) handler;
+        procfsSnapshot = null;
+      }
+    }
 
     long totalPhysicalMemoryOnNM = DISABLED_MEMORY_LIMIT;
     if (this.resourceCalculatorPlugin != null) {
@@ -142,6 +196,13 @@ public synchronized void init(Configuration conf) {
     this.maxVmemAllottedForContainers =
       (long)(vmemRatio * maxPmemAllottedForContainers);
 
+    this.nodeMemoryMB =
+        conf.getInt(YarnConfiguration.NM_PMEM_MB,
+            YarnConfiguration.DEFAULT_NM_PMEM_MB);
+    this.nodeVCores =
+        conf.getInt(YarnConfiguration.NM_VCORES,
+            YarnConfiguration.DEFAULT_NM_VCORES);
+
     super.init(conf);
   }
 
@@ -163,6 +224,15 @@ boolean isVirtualMemoryCheckEnabled() {
     return !(this.maxVmemAllottedForContainers == DISABLED_MEMORY_LIMIT);
   }
 
+  /**
+   * @return the memory the virtual memory limit is checked against. cgroups
+   *         do not account virtual memory, with them it is the physical
+   *         memory and swap in use.
+   */
+  private String getVmemType() {
+    return cgroupsHandler != null ? "physical and swap" : "virtual";
+  }
+
   private boolean isEnabled() {
     if (resourceCalculatorPlugin == null) {
             LOG.info("ResourceCalculatorPlugin is unavailable on this system. "
@@ -358,6 +428,13 @@ public void run() {
           containersToBeRemoved.clear();
         }
 
+        // Scan the process table once for all the containers
+        boolean scanned = false;
+        if (procfsSnapshot != null && !trackingContainers.isEmpty()) {
+          procfsSnapshot.update();
+          scanned = true;
+        }
+
         // Now do the monitoring for the trackingContainers
         // Check memory usage and kill any overflowing containers
         long vmemStillInUsage = 0;
@@ -381,8 +458,15 @@ public void run() {
                 LOG.debug("Tracking ProcessTree " + pId
                     + " for the first time");
 
-                ResourceCalculatorProcessTree pt =
-                    ResourceCalculatorProcessTree.getResourceCalculatorProcessTree(pId, processTreeClass, conf);
+                ResourceCalculatorProcessTree pt;
+                if (cgroupsHandler != null) {
+                  pt = new CgroupsResourceCalculatorProcessTree(pId,
+                      containerId, cgroupsHandler);
+                } else if (procfsSnapshot != null) {
+                  pt = new ProcfsBasedProcessTree(pId, procfsSnapshot);
+                } else {
+                  pt = ResourceCalculatorProcessTree.getResourceCalculatorProcessTree(pId, processTreeClass, conf);
+                }
                 ptInfo.setPid(pId);
                 ptInfo.setProcessTree(pt);
               }
@@ -418,7 +502,7 @@ && isProcessTreeOverLimit(containerId.toString(),
               // Container (the root process) is still alive and overflowing
               // memory.
               // Dump the process-tree and then clean it up.
-              msg = formatErrorMessage("virtual",
+              msg = formatErrorMessage(getVmemType(),
                   currentVmemUsage, vmemLimit,
                   currentPmemUsage, pmemLimit,
                   pId, containerId, pTree);
@@ -466,6 +550,14 @@ && isProcessTreeOverLimit(containerId.toString(),
           }
         }
 
+        if (scanned) {
+          LOG.debug("Scanned " + procfsSnapshot.getNumProcesses()
+              + " processes in " + procfsSnapshot.getScanTime() + "ms, read "
+              + procfsSnapshot.getStatReads() + " stat files");
+          metrics.scannedProcessTable(procfsSnapshot.getScanTime(),
+              procfsSnapshot.getStatReads());
+        }
+
         try {
           Thread.sleep(monitoringInterval);
         } catch (InterruptedException e) {
@@ -494,7 +586,7 @@ private String formatErrorMessage(String memTypeExceeded,
     private String formatUsageString(long currentVmemUsage, long vmemLimit,
         long currentPmemUsage, long pmemLimit) {
       return String.format("%sB of %sB physical memory used; " +
-          "%sB of %sB virtual memory used",
+          "%sB of %sB " + getVmemType() + " memory used",
           TraditionalBinaryPrefix.long2String(currentPmemUsage, "", 1),
           TraditionalBinaryPrefix.long2String(pmemLimit, "", 1),
           TraditionalBinaryPrefix.long2String(currentVmemUsage, "", 1),
@@ -512,6 +604,150 @@ public long getPmemAllocatedForContainers() {
     return this.maxPmemAllottedForContainers;
   }
 
+  @Override
+  public synchronized boolean admitContainer(Container container) {
+    ContainerId containerId = container.getContainerID();
+    if (allocatedContainers.containsKey(containerId)) {
+      // Launched again after waiting in the queue
+      return true;
+    }
+    Resource resource = container.getLaunchContext().getResource();
+    if (!container.getLaunchContext().getOpportunistic()) {
+      allocate(containerId, resource);
+      preemptOpportunisticContainers();
+      return true;
+    }
+    if (queuedContainers.isEmpty() && fits(resource)) {
+      allocateOpportunistic(containerId, resource);
+      return true;
+    }
+    LOG.info("Queueing opportunistic container " + containerId
+        + ", queue length " + (queuedContainers.size() + 1));
+    queuedContainers.put(containerId, container);
+    metrics.queuedContainer();
+    return false;
+  }
+
+  @Override
+  public synchronized void recoverContainer(Container container) {
+    ContainerId containerId = container.getContainerID();
+    if (allocatedContainers.containsKey(containerId)) {
+      return;
+    }
+    Resource resource = container.getLaunchContext().getResource();
+    if (container.getLaunchContext().getOpportunistic()) {
+      allocateOpportunistic(containerId, resource);
+    } else {
+      allocate(containerId, resource);
+    }
+  }
+
+  @Override
+  public synchronized boolean releaseContainer(ContainerId containerId) {
+    if (queuedContainers.remove(containerId) != null) {
+      metrics.endQueuedContainer();
+      return true;
+    }
+    Resource resource = allocatedContainers.remove(containerId);
+    if (resource == null) {
+      return false;
+    }
+    allocatedMemoryMB -= resource.getMemory();
+    allocatedVCores -= resource.getVirtualCores();
+    if (opportunisticContainers.remove(containerId) != null) {
+      preemptedContainers.remove(containerId);
+      metrics.endRunningOpportunisticContainer();
+    }
+    startQueuedContainers();
+    return false;
+  }
+
+  @Override
+  public synchronized int getQueuedContainers() {
+    return queuedContainers.size();
+  }
+
+  synchronized int getOpportunisticContainers() {
+    return opportunisticContainers.size();
+  }
+
+  private boolean fits(Resource resource) {
+    return allocatedMemoryMB + resource.getMemory() <= nodeMemoryMB
+        && allocatedVCores + resource.getVirtualCores() <= nodeVCores;
+  }
+
+  private void allocate(ContainerId containerId, Resource resource) {
+    allocatedContainers.put(containerId, resource);
+    allocatedMemoryMB += resource.getMemory();
+    allocatedVCores += resource.getVirtualCores();
+  }
+
+  private void allocateOpportunistic(ContainerId containerId,
+      Resource resource) {
+    allocate(containerId, resource);
+    opportunisticContainers.put(containerId, resource);
+    metrics.runningOpportunisticContainer();
+  }
+
+  /**
+   * Start the queued containers, in order, for as long as they fit.
+   */
+  @SuppressWarnings("unchecked")
+  private void startQueuedContainers() {
+    for (Iterator<Container> it = queuedContainers.values().iterator();
+        it.hasNext();) {
+      Container container = it.next();
+      Resource resource = container.getLaunchContext().getResource();
+      if (!fits(resource)) {
+        break;
+      }
+      it.remove();
+      metrics.endQueuedContainer();
+      allocateOpportunistic(container.getContainerID(), resource);
+      LOG.info("Starting queued opportunistic container "
+          + container.getContainerID());
+      eventDispatcher.getEventHandler().handle(
+          new ContainersLauncherEvent(container,
+              ContainersLauncherEventType.LAUNCH_CONTAINER));
+    }
+  }
+
+  /**
+   * Kill the most recently started opportunistic containers until the ones
+   * that are left fit on the node.
+   */
+  @SuppressWarnings("unchecked")
+  private void preemptOpportunisticContainers() {
+    // Resources of preempted containers are released once they are cleaned up
+    int memoryMB = allocatedMemoryMB;
+    int vCores = allocatedVCores;
+    List<ContainerId> newestFirst = new ArrayList<ContainerId>();
+    for (Map.Entry<ContainerId, Resource> entry
+        : opportunisticContainers.entrySet()) {
+      if (preemptedContainers.contains(entry.getKey())) {
+        memoryMB -= entry.getValue().getMemory();
+        vCores -= entry.getValue().getVirtualCores();
+      } else {
+        newestFirst.add(entry.getKey());
+      }
+    }
+    Collections.reverse(newestFirst);
+    for (ContainerId containerId : newestFirst) {
+      if (memoryMB <= nodeMemoryMB && vCores <= nodeVCores) {
+        break;
+      }
+      Resource resource = opportunisticContainers.get(containerId);
+      memoryMB -= resource.getMemory();
+      vCores -= resource.getVirtualCores();
+      preemptedContainers.add(containerId);
+      metrics.preemptedContainer();
+      LOG.info("Preempting opportunistic container " + containerId);
+      eventDispatcher.getEventHandler().handle(
+          new ContainerKillEvent(containerId,
+              "Container preempted to run guaranteed containers"));
+    }
+  }
+
   @Override
   public void handle(ContainersMonitorEvent monitoringEvent) {
 
@@ -22,7 +22,9 @@
 import org.apache.hadoop.metrics2.annotation.Metrics;
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.lib.MutableCounterInt;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
 import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
 import org.apache.hadoop.yarn.api.records.Resource;
 
@@ -40,6 +42,22 @@ public class NodeManagerMetrics {
   @Metric("Current # of allocated containers")
       MutableGaugeInt allocatedContainers;
   @Metric MutableGaugeInt availableGB;
+  @Metric("# of opportunistic containers waiting for resources")
+      MutableGaugeInt containersQueued;
+  @Metric("# of running opportunistic containers")
+      MutableGaugeInt opportunisticContainersRunning;
+  @Metric("# of opportunistic containers killed for guaranteed ones")
+      MutableCounterInt containersPreempted;
+  @Metric("Time to scan the process table of the node")
+      MutableRate processTableScan;
+  @Metric("# of process stat files read by the containers monitor")
+      MutableCounterLong processStatReads;
+  @Metric("# of paths waiting to be deleted")
+      MutableGaugeInt deletionsPending;
+  @Metric("# of paths deleted")
+      MutableCounterLong pathsDeleted;
+  @Metric("Bytes deleted from the local disks, as far as known")
+      MutableCounterLong bytesDeleted;
 
   public static NodeManagerMetrics create() {
     return create(DefaultMetricsSystem.instance());
@@ -96,6 +114,45 @@ public void releaseContainer(Resource res) {
     availableGB.incr(res.getMemory() / 1024);
   }
 
+  public void queuedContainer() {
+    containersQueued.incr();
+  }
+
+  public void endQueuedContainer() {
+    containersQueued.decr();
+  }
+
+  public void runningOpportunisticContainer() {
+    opportunisticContainersRunning.incr();
+  }
+
+  public void endRunningOpportunisticContainer() {
+    opportunisticContainersRunning.decr();
+  }
+
+  public void preemptedContainer() {
+    containersPreempted.incr();
+  }
+
+  public void scannedProcessTable(long millis, int statReads) {
+    processTableScan.add(millis);
+    processStatReads.incr(statReads);
+  }
+
+  public void queuedDeletions(int numPaths) {
+    deletionsPending.incr(numPaths);
+  }
+
+  public void droppedDeletions(int numPaths) {
+    deletionsPending.decr(numPaths);
+  }
+
+  public void deletedPaths(int numPaths, long bytes) {
+    deletionsPending.decr(numPaths);
+    pathsDeleted.incr(numPaths);
+    bytesDeleted.incr(bytes);
+  }
+
   public void addResource(Resource res) {
     availableGB.incr(res.getMemory() / 1024);
   }
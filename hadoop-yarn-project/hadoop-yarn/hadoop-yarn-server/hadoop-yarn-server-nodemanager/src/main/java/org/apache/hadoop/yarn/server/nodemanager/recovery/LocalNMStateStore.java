@@ -0,0 +1,380 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.apache.hadoop.yarn.server.nodemanager.recovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.security.Credentials;
+import org.apache.hadoop.yarn.api.records.ApplicationAccessType;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.api.records.impl.pb.ContainerLaunchContextPBImpl;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.proto.YarnProtos.ContainerLaunchContextProto;
+import org.apache.hadoop.yarn.proto.YarnServerCommonProtos.MasterKeyProto;
+import org.apache.hadoop.yarn.server.api.records.MasterKey;
+import org.apache.hadoop.yarn.server.api.records.impl.pb.MasterKeyPBImpl;
+import org.apache.hadoop.yarn.server.recovery.KeyValueLog;
+import org.apache.hadoop.yarn.util.ConverterUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Stores the NodeManager state in a log-structured key-value store on local
+ * disk, like the LocalRMStateStore of the ResourceManager. Every state
+ * change is a put or delete of a key that is synced before it returns.
+ */
+@Private
+@Unstable
+public class LocalNMStateStore extends NMStateStore {
+
+  public static final Log LOG = LogFactory.getLog(LocalNMStateStore.class);
+
+  static final String LOG_FILE_NAME = "nmstate.log";
+
+  private static final String APPLICATIONS_KEY_PREFIX =
+      "ContainerManager/applications/";
+  private static final String CONTAINERS_KEY_PREFIX =
+      "ContainerManager/containers/";
+  private static final String CONTAINER_REQUEST_KEY_SUFFIX = "/request";
+  private static final String CONTAINER_LAUNCHED_KEY_SUFFIX = "/launched";
+  private static final String CONTAINER_KILLED_KEY_SUFFIX = "/killed";
+  private static final String CONTAINER_EXIT_CODE_KEY_SUFFIX = "/exitcode";
+  private static final String[] CONTAINER_KEY_SUFFIXES = {
+    CONTAINER_REQUEST_KEY_SUFFIX, CONTAINER_LAUNCHED_KEY_SUFFIX,
+    CONTAINER_KILLED_KEY_SUFFIX, CONTAINER_EXIT_CODE_KEY_SUFFIX };
+
+  private static final String CONTAINER_TOKENS_KEY_PREFIX =
+      "ContainerTokens/";
+  private static final String CONTAINER_TOKENS_CURRENT_MASTER_KEY =
+      CONTAINER_TOKENS_KEY_PREFIX + "current";
+  private static final String CONTAINER_TOKENS_PREVIOUS_MASTER_KEY =
+      CONTAINER_TOKENS_KEY_PREFIX + "previous";
+  private static final String CONTAINER_TOKENS_CONTAINERS_KEY_PREFIX =
+      CONTAINER_TOKENS_KEY_PREFIX + "containers/";
+
+  // The state of a NodeManager is small, so its log is compacted early
+  private static final long COMPACTION_MIN_BYTES = 1024 * 1024;
+  private static final float COMPACTION_GARBAGE_RATIO = 0.5f;
+
+  private static final byte[] EMPTY_VALUE = new byte[0];
+
+  // The store holds application tokens and container-token master keys
+  static final FsPermission STORE_DIR_PERMISSION =
+      new FsPermission((short) 0700);
+
+  @VisibleForTesting
+  File storeDir;
+
+  private KeyValueLog kvLog;
+
+  public LocalNMStateStore() {
+    super(LocalNMStateStore.class.getName());
+  }
+
+  @Override
+  protected synchronized void initStorage(Configuration conf)
+      throws IOException {
+    String dir = conf.get(YarnConfiguration.NM_RECOVERY_DIR);
+    if (dir == null) {
+      throw new IOException(YarnConfiguration.NM_RECOVERY_DIR + " is not set");
+    }
+    storeDir = new File(dir);
+    if (!storeDir.isDirectory()) {
+      if (!storeDir.mkdirs()) {
+        throw new IOException("Could not create " + storeDir);
+      }
+      FileUtil.setPermission(storeDir, STORE_DIR_PERMISSION);
+    } else {
+      checkStoreDirPermission(conf);
+    }
+    kvLog = new KeyValueLog(new File(storeDir, LOG_FILE_NAME),
+        COMPACTION_MIN_BYTES, COMPACTION_GARBAGE_RATIO);
+    if (kvLog.needsCompaction()) {
+      kvLog.compact();
+    }
+  }
+
+  private void checkStoreDirPermission(Configuration conf)
+      throws IOException {
+    FsPermission perm = FileSystem.getLocal(conf)
+        .getFileStatus(new Path(storeDir.getAbsolutePath())).getPermission();
+    if ((perm.toShort() & ~STORE_DIR_PERMISSION.toShort()) != 0) {
+      throw new IOException("Permissions of " + storeDir + " are " + perm
+          + ", but must not be more open than " + STORE_DIR_PERMISSION);
+    }
+  }
+
+  @Override
+  protected synchronized void closeStorage() throws IOException {
+    if (kvLog != null) {
+      kvLog.close();
+    }
+  }
+
+  @VisibleForTesting
+  KeyValueLog getKeyValueLog() {
+    return kvLog;
+  }
+
+  private Map<String, byte[]> load(String keyPrefix) throws IOException {
+    Map<String, byte[]> values = new LinkedHashMap<String, byte[]>();
+    for (Map.Entry<String, byte[]> entry : kvLog.load().entrySet()) {
+      if (entry.getKey().startsWith(keyPrefix)) {
+        values.put(entry.getKey().substring(keyPrefix.length()),
+            entry.getValue());
+      }
+    }
+    return values;
+  }
+
+  private void put(String key, byte[] value) throws IOException {
+    kvLog.sync(kvLog.put(key, value));
+  }
+
+  private void delete(String... keys) throws IOException {
+    long seq = 0;
+    for (String key : keys) {
+      seq = Math.max(seq, kvLog.delete(key));
+    }
+    kvLog.sync(seq);
+    if (kvLog.needsCompaction()) {
+      kvLog.compact();
+    }
+  }
+
+  @Override
+  public List<RecoveredApplication> loadApplicationsState()
+      throws IOException {
+    List<RecoveredApplication> apps = new ArrayList<RecoveredApplication>();
+    for (Map.Entry<String, byte[]> entry :
+        load(APPLICATIONS_KEY_PREFIX).entrySet()) {
+      ApplicationId appId = ConverterUtils.toApplicationId(entry.getKey());
+      DataInputStream in = new DataInputStream(
+          new ByteArrayInputStream(entry.getValue()));
+      String user = in.readUTF();
+      Credentials credentials = new Credentials();
+      credentials.readTokenStorageStream(in);
+      Map<ApplicationAccessType, String> acls =
+          new HashMap<ApplicationAccessType, String>();
+      int numAcls = in.readInt();
+      for (int i = 0; i < numAcls; i++) {
+        acls.put(ApplicationAccessType.valueOf(in.readUTF()), in.readUTF());
+      }
+      apps.add(new RecoveredApplication(appId, user, credentials, acls));
+    }
+    LOG.info("Loaded " + apps.size() + " applications from " + storeDir);
+    return apps;
+  }
+
+  @Override
+  public void storeApplication(ApplicationId appId, String user,
+      Credentials credentials, Map<ApplicationAccessType, String> acls)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeUTF(user);
+    credentials.writeTokenStorageToStream(out);
+    if (acls == null) {
+      out.writeInt(0);
+    } else {
+      out.writeInt(acls.size());
+      for (Map.Entry<ApplicationAccessType, String> acl : acls.entrySet()) {
+        out.writeUTF(acl.getKey().name());
+        out.writeUTF(acl.getValue());
+      }
+    }
+    out.close();
+    put(APPLICATIONS_KEY_PREFIX + appId, bytes.toByteArray());
+  }
+
+  @Override
+  public void removeApplication(ApplicationId appId) throws IOException {
+    delete(APPLICATIONS_KEY_PREFIX + appId);
+  }
+
+  @Override
+  public List<RecoveredContainerState> loadContainersState()
+      throws IOException {
+    Map<String, RecoveredContainerState> containers =
+        new LinkedHashMap<String, RecoveredContainerState>();
+    for (Map.Entry<String, byte[]> entry :
+        load(CONTAINERS_KEY_PREFIX).entrySet()) {
+      String key = entry.getKey();
+      int idEnd = key.indexOf('/');
+      if (idEnd < 0) {
+        LOG.info("Unknown key: " + CONTAINERS_KEY_PREFIX + key);
+        continue;
+      }
+      String containerIdStr = key.substring(0, idEnd);
+      String suffix = key.substring(idEnd);
+      RecoveredContainerState rcs = containers.get(containerIdStr);
+      if (rcs == null) {
+        rcs = new RecoveredContainerState();
+        containers.put(containerIdStr, rcs);
+      }
+      if (suffix.equals(CONTAINER_REQUEST_KEY_SUFFIX)) {
+        rcs.launchContext = new ContainerLaunchContextPBImpl(
+            ContainerLaunchContextProto.parseFrom(entry.getValue()));
+      } else if (suffix.equals(CONTAINER_LAUNCHED_KEY_SUFFIX)) {
+        if (rcs.status == RecoveredContainerStatus.REQUESTED) {
+          rcs.status = RecoveredContainerStatus.LAUNCHED;
+        }
+      } else if (suffix.equals(CONTAINER_KILLED_KEY_SUFFIX)) {
+        rcs.killed = true;
+      } else if (suffix.equals(CONTAINER_EXIT_CODE_KEY_SUFFIX)) {
+        rcs.status = RecoveredContainerStatus.COMPLETED;
+        rcs.exitCode = Integer.parseInt(new String(entry.getValue(), "UTF-8"));
+      } else {
+        LOG.info("Unknown key: " + CONTAINERS_KEY_PREFIX + key);
+      }
+    }
+
+    List<RecoveredContainerState> result =
+        new ArrayList<RecoveredContainerState>();
+    for (Map.Entry<String, RecoveredContainerState> entry :
+        containers.entrySet()) {
+      if (entry.getValue().launchContext == null) {
+        // the NM stopped between removing the request and the other keys
+        LOG.info("Removing container without request: " + entry.getKey());
+        removeContainer(ConverterUtils.toContainerId(entry.getKey()));
+      } else {
+        result.add(entry.getValue());
+      }
+    }
+    LOG.info("Loaded " + result.size() + " containers from " + storeDir);
+    return result;
+  }
+
+  private static String getContainerKey(ContainerId containerId,
+      String suffix) {
+    return CONTAINERS_KEY_PREFIX + containerId + suffix;
+  }
+
+  @Override
+  public void storeContainer(ContainerLaunchContext launchContext)
+      throws IOException {
+    put(getContainerKey(launchContext.getContainerId(),
+        CONTAINER_REQUEST_KEY_SUFFIX),
+        ((ContainerLaunchContextPBImpl) launchContext).getProto()
+            .toByteArray());
+  }
+
+  @Override
+  public void storeContainerLaunched(ContainerId containerId)
+      throws IOException {
+    put(getContainerKey(containerId, CONTAINER_LAUNCHED_KEY_SUFFIX),
+        EMPTY_VALUE);
+  }
+
+  @Override
+  public void storeContainerKilled(ContainerId containerId)
+      throws IOException {
+    put(getContainerKey(containerId, CONTAINER_KILLED_KEY_SUFFIX),
+        EMPTY_VALUE);
+  }
+
+  @Override
+  public void storeContainerCompleted(ContainerId containerId, int exitCode)
+      throws IOException {
+    put(getContainerKey(containerId, CONTAINER_EXIT_CODE_KEY_SUFFIX),
+        Integer.toString(exitCode).getBytes("UTF-8"));
+  }
+
+  @Override
+  public void removeContainer(ContainerId containerId) throws IOException {
+    String[] keys = new String[CONTAINER_KEY_SUFFIXES.length];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = getContainerKey(containerId, CONTAINER_KEY_SUFFIXES[i]);
+    }
+    delete(keys);
+  }
+
+  @Override
+  public RecoveredContainerTokensState loadContainerTokensState()
+      throws IOException {
+    RecoveredContainerTokensState state = new RecoveredContainerTokensState();
+    for (Map.Entry<String, byte[]> entry :
+        load(CONTAINER_TOKENS_KEY_PREFIX).entrySet()) {
+      String key = CONTAINER_TOKENS_KEY_PREFIX + entry.getKey();
+      MasterKey masterKey =
+          new MasterKeyPBImpl(MasterKeyProto.parseFrom(entry.getValue()));
+      if (key.equals(CONTAINER_TOKENS_CURRENT_MASTER_KEY)) {
+        state.currentMasterKey = masterKey;
+      } else if (key.equals(CONTAINER_TOKENS_PREVIOUS_MASTER_KEY)) {
+        state.previousMasterKey = masterKey;
+      } else if (key.startsWith(CONTAINER_TOKENS_CONTAINERS_KEY_PREFIX)) {
+        ContainerId containerId = ConverterUtils.toContainerId(
+            key.substring(CONTAINER_TOKENS_CONTAINERS_KEY_PREFIX.length()));
+        state.containerMasterKeys.put(containerId, masterKey);
+      } else {
+        LOG.info("Unknown key: " + key);
+      }
+    }
+    return state;
+  }
+
+  private static byte[] toBytes(MasterKey key) {
+    return ((MasterKeyPBImpl) key).getProto().toByteArray();
+  }
+
+  @Override
+  public void storeContainerTokenCurrentMasterKey(MasterKey key)
+      throws IOException {
+    put(CONTAINER_TOKENS_CURRENT_MASTER_KEY, toBytes(key));
+  }
+
+  @Override
+  public void storeContainerTokenPreviousMasterKey(MasterKey key)
+      throws IOException {
+    put(CONTAINER_TOKENS_PREVIOUS_MASTER_KEY, toBytes(key));
+  }
+
+  @Override
+  public void storeContainerTokenMasterKey(ContainerId containerId,
+      MasterKey key) throws IOException {
+    put(CONTAINER_TOKENS_CONTAINERS_KEY_PREFIX + containerId, toBytes(key));
+  }
+
+  @Override
+  public void removeContainerTokenMasterKey(ContainerId containerId)
+      throws IOException {
+    delete(CONTAINER_TOKENS_CONTAINERS_KEY_PREFIX + containerId);
+  }
+}
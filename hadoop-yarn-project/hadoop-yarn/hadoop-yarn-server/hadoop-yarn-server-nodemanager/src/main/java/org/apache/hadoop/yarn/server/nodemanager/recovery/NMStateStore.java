@@ -0,0 +1,212 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.apache.hadoop.yarn.server.nodemanager.recovery;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.Credentials;
+import org.apache.hadoop.yarn.YarnException;
+import org.apache.hadoop.yarn.api.records.ApplicationAccessType;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.server.api.records.MasterKey;
+import org.apache.hadoop.yarn.service.AbstractService;
+
+/**
+ * Base class for the storage of the NodeManager state that a restarted
+ * NodeManager recovers its applications and running containers from.
+ * Stores are blocking, so that the state is durable before the NodeManager
+ * acts on it.
+ *
+ * Localized resources are not stored here, the localization service keeps
+ * its own index of the resource caches.
+ */
+@Private
+@Unstable
+public abstract class NMStateStore extends AbstractService {
+
+  /**
+   * State of an application
+   */
+  public static class RecoveredApplication {
+    final ApplicationId appId;
+    final String user;
+    final Credentials credentials;
+    final Map<ApplicationAccessType, String> acls;
+
+    public RecoveredApplication(ApplicationId appId, String user,
+        Credentials credentials, Map<ApplicationAccessType, String> acls) {
+      this.appId = appId;
+      this.user = user;
+      this.credentials = credentials;
+      this.acls = acls;
+    }
+
+    public ApplicationId getAppId() {
+      return appId;
+    }
+    public String getUser() {
+      return user;
+    }
+    public Credentials getCredentials() {
+      return credentials;
+    }
+    public Map<ApplicationAccessType, String> getAcls() {
+      return acls;
+    }
+  }
+
+  /**
+   * How far a container got before the NodeManager stopped
+   */
+  public enum RecoveredContainerStatus {
+    REQUESTED,
+    LAUNCHED,
+    COMPLETED
+  }
+
+  /**
+   * State of a container
+   */
+  public static class RecoveredContainerState {
+    RecoveredContainerStatus status = RecoveredContainerStatus.REQUESTED;
+    int exitCode;
+    boolean killed = false;
+    ContainerLaunchContext launchContext;
+
+    public RecoveredContainerStatus getStatus() {
+      return status;
+    }
+    public int getExitCode() {
+      return exitCode;
+    }
+    public boolean getKilled() {
+      return killed;
+    }
+    public ContainerLaunchContext getLaunchContext() {
+      return launchContext;
+    }
+  }
+
+  /**
+   * State of the container-token secret manager
+   */
+  public static class RecoveredContainerTokensState {
+    MasterKey currentMasterKey;
+    MasterKey previousMasterKey;
+    Map<ContainerId, MasterKey> containerMasterKeys =
+        new HashMap<ContainerId, MasterKey>();
+
+    public MasterKey getCurrentMasterKey() {
+      return currentMasterKey;
+    }
+    public MasterKey getPreviousMasterKey() {
+      return previousMasterKey;
+    }
+    public Map<ContainerId, MasterKey> getContainerMasterKeys() {
+      return containerMasterKeys;
+    }
+  }
+
+  public NMStateStore(String name) {
+    super(name);
+  }
+
+  @Override
+  public synchronized void init(Configuration conf) {
+    try {
+      initStorage(conf);
+    } catch (IOException e) {
+      throw new YarnException("Failed to initialize the NM state store", e);
+    }
+    super.init(conf);
+  }
+
+  @Override
+  public synchronized void stop() {
+    try {
+      closeStorage();
+    } catch (IOException e) {
+      throw new YarnException("Failed to close the NM state store", e);
+    }
+    super.stop();
+  }
+
+  /**
+   * Whether there is state to recover, i.e. whether the NodeManager keeps
+   * its containers running when it stops.
+   */
+  public boolean canRecover() {
+    return true;
+  }
+
+  protected abstract void initStorage(Configuration conf) throws IOException;
+
+  protected abstract void closeStorage() throws IOException;
+
+  public abstract List<RecoveredApplication> loadApplicationsState()
+      throws IOException;
+
+  public abstract void storeApplication(ApplicationId appId, String user,
+      Credentials credentials, Map<ApplicationAccessType, String> acls)
+      throws IOException;
+
+  public abstract void removeApplication(ApplicationId appId)
+      throws IOException;
+
+  public abstract List<RecoveredContainerState> loadContainersState()
+      throws IOException;
+
+  public abstract void storeContainer(ContainerLaunchContext launchContext)
+      throws IOException;
+
+  public abstract void storeContainerLaunched(ContainerId containerId)
+      throws IOException;
+
+  public abstract void storeContainerKilled(ContainerId containerId)
+      throws IOException;
+
+  public abstract void storeContainerCompleted(ContainerId containerId,
+      int exitCode) throws IOException;
+
+  public abstract void removeContainer(ContainerId containerId)
+      throws IOException;
+
+  public abstract RecoveredContainerTokensState loadContainerTokensState()
+      throws IOException;
+
+  public abstract void storeContainerTokenCurrentMasterKey(MasterKey key)
+      throws IOException;
+
+  public abstract void storeContainerTokenPreviousMasterKey(MasterKey key)
+      throws IOException;
+
+  public abstract void storeContainerTokenMasterKey(ContainerId containerId,
+      MasterKey key) throws IOException;
+
+  public abstract void removeContainerTokenMasterKey(ContainerId containerId)
+      throws IOException;
+}
@@ -0,0 +1,147 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.apache.hadoop.yarn.server.nodemanager.recovery;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.Credentials;
+import org.apache.hadoop.yarn.api.records.ApplicationAccessType;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.server.api.records.MasterKey;
+
+/**
+ * The state store of a NodeManager that does not recover, which stores
+ * nothing.
+ */
+@Private
+@Unstable
+public class NullNMStateStore extends NMStateStore {
+
+  public NullNMStateStore() {
+    super(NullNMStateStore.class.getName());
+  }
+
+  @Override
+  public boolean canRecover() {
+    return false;
+  }
+
+  @Override
+  protected void initStorage(Configuration conf) throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  protected void closeStorage() throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public List<RecoveredApplication> loadApplicationsState()
+      throws IOException {
+    throw new UnsupportedOperationException(
+        "Cannot load state from null store");
+  }
+
+  @Override
+  public void storeApplication(ApplicationId appId, String user,
+      Credentials credentials, Map<ApplicationAccessType, String> acls)
+      throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public void removeApplication(ApplicationId appId) throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public List<RecoveredContainerState> loadContainersState()
+      throws IOException {
+    throw new UnsupportedOperationException(
+        "Cannot load state from null store");
+  }
+
+  @Override
+  public void storeContainer(ContainerLaunchContext launchContext)
+      throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public void storeContainerLaunched(ContainerId containerId)
+      throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public void storeContainerKilled(ContainerId containerId)
+      throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public void storeContainerCompleted(ContainerId containerId, int exitCode)
+      throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public void removeContainer(ContainerId containerId) throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public RecoveredContainerTokensState loadContainerTokensState()
+      throws IOException {
+    throw new UnsupportedOperationException(
+        "Cannot load state from null store");
+  }
+
+  @Override
+  public void storeContainerTokenCurrentMasterKey(MasterKey key)
+      throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public void storeContainerTokenPreviousMasterKey(MasterKey key)
+      throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public void storeContainerTokenMasterKey(ContainerId containerId,
+      MasterKey key) throws IOException {
+    // Do nothing
+  }
+
+  @Override
+  public void removeContainerTokenMasterKey(ContainerId containerId)
+      throws IOException {
+    // Do nothing
+  }
+}
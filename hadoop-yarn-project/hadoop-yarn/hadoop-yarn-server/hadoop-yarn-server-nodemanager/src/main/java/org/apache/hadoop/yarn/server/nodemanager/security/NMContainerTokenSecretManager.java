@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.yarn.server.nodemanager.security;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -33,6 +34,9 @@
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.security.ContainerTokenIdentifier;
 import org.apache.hadoop.yarn.server.api.records.MasterKey;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore.RecoveredContainerTokensState;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NullNMStateStore;
 import org.apache.hadoop.yarn.server.security.BaseContainerTokenSecretManager;
 
 /**
@@ -49,11 +53,37 @@ public class NMContainerTokenSecretManager extends
   private MasterKeyData previousMasterKey;
   
   private final Map<ApplicationId, ConcurrentMap<ContainerId, MasterKeyData>> oldMasterKeys;
+
+  private final NMStateStore stateStore;
   
   public NMContainerTokenSecretManager(Configuration conf) {
+    this(conf, new NullNMStateStore());
+  }
+
+  public NMContainerTokenSecretManager(Configuration conf,
+      NMStateStore stateStore) {
     super(conf);
     this.oldMasterKeys =
         new HashMap<ApplicationId, ConcurrentMap<ContainerId, MasterKeyData>>();
+    this.stateStore = stateStore;
+  }
+
+  /**
+   * Restore the keys of a previous run of the NM, so that the containers it
+   * started can still be stopped and queried.
+   */
+  public synchronized void recover(RecoveredContainerTokensState state) {
+    if (state.getCurrentMasterKey() != null) {
+      super.currentMasterKey = new MasterKeyData(state.getCurrentMasterKey());
+    }
+    if (state.getPreviousMasterKey() != null) {
+      this.previousMasterKey =
+          new MasterKeyData(state.getPreviousMasterKey());
+    }
+    for (Map.Entry<ContainerId, MasterKey> entry :
+        state.getContainerMasterKeys().entrySet()) {
+      addKeyForContainerId(entry.getKey(), new MasterKeyData(entry.getValue()));
+    }
   }
 
   /**
@@ -75,7 +105,18 @@ public synchronized void setMasterKey(MasterKey masterKeyRecord) {
         // Update keys only if the key has changed.
         this.previousMasterKey = super.currentMasterKey;
         super.currentMasterKey = new MasterKeyData(masterKeyRecord);
+      } else {
+        return;
+      }
+    }
+    try {
+      if (this.previousMasterKey != null) {
+        stateStore.storeContainerTokenPreviousMasterKey(
+            this.previousMasterKey.getMasterKey());
       }
+      stateStore.storeContainerTokenCurrentMasterKey(masterKeyRecord);
+    } catch (IOException e) {
+      LOG.error("Unable to store the master-keys for container-tokens", e);
     }
   }
 
@@ -139,11 +180,22 @@ public synchronized void startContainerSuccessful(
     }
 
     int keyId = tokenId.getMasterKeyId();
+    MasterKeyData masterKeyData = null;
     if (currentMasterKey.getMasterKey().getKeyId() == keyId) {
-      addKeyForContainerId(tokenId.getContainerID(), currentMasterKey);
+      masterKeyData = currentMasterKey;
     } else if (previousMasterKey != null
         && previousMasterKey.getMasterKey().getKeyId() == keyId) {
-      addKeyForContainerId(tokenId.getContainerID(), previousMasterKey);
+      masterKeyData = previousMasterKey;
+    }
+    if (masterKeyData != null) {
+      addKeyForContainerId(tokenId.getContainerID(), masterKeyData);
+      try {
+        stateStore.storeContainerTokenMasterKey(tokenId.getContainerID(),
+            masterKeyData.getMasterKey());
+      } catch (IOException e) {
+        LOG.error("Unable to store the master-key for "
+            + tokenId.getContainerID(), e);
+      }
     }
   }
 
@@ -183,6 +235,17 @@ private synchronized void addKeyForContainerId(ContainerId containerId,
   // finished due to the multiple ways a container can finish. Avoid
   // stopContainer calls seeing unnecessary authorization exceptions.
   public synchronized void appFinished(ApplicationId appId) {
-    this.oldMasterKeys.remove(appId);
+    Map<ContainerId, MasterKeyData> containerKeys =
+        this.oldMasterKeys.remove(appId);
+    if (containerKeys == null) {
+      return;
+    }
+    for (ContainerId containerId : containerKeys.keySet()) {
+      try {
+        stateStore.removeContainerTokenMasterKey(containerId);
+      } catch (IOException e) {
+        LOG.error("Unable to remove the master-key for " + containerId, e);
+      }
+    }
   }
 }
\ No newline at end of file
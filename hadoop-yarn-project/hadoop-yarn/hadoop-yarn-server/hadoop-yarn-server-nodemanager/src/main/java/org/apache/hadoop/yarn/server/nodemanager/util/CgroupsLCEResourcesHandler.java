@@ -40,6 +40,8 @@
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.server.nodemanager.LinuxContainerExecutor;
 
+import com.google.common.annotations.VisibleForTesting;
+
 public class CgroupsLCEResourcesHandler implements LCEResourcesHandler {
 
   final static Log LOG = LogFactory
@@ -51,11 +53,18 @@ public class CgroupsLCEResourcesHandler implements LCEResourcesHandler {
   private String cgroupMountPath;
 
   private boolean cpuWeightEnabled = true;
+  private boolean strictCpuUsage;
+  private boolean memoryEnabled;
+  private float vcoresPerCore;
 
-  private final String MTAB_FILE = "/proc/mounts";
+  private String mtabFile = "/proc/mounts";
   private final String CGROUPS_FSTYPE = "cgroup";
   private final String CONTROLLER_CPU = "cpu";
+  private final String CONTROLLER_MEMORY = "memory";
+  private final String CONTROLLER_CPUACCT = "cpuacct";
   private final int CPU_DEFAULT_WEIGHT = 1024; // set by kernel
+  private final int CPU_PERIOD_US = 100000;
+  private final int CPU_MIN_QUOTA_US = 1000; // set by kernel
   private final Map<String, String> controllerPaths; // Controller -> path
 
   public CgroupsLCEResourcesHandler() {
@@ -80,6 +89,15 @@ public synchronized void init(LinuxContainerExecutor lce) throws IOException {
             NM_LINUX_CONTAINER_CGROUPS_MOUNT, false);
     this.cgroupMountPath = conf.get(YarnConfiguration.
             NM_LINUX_CONTAINER_CGROUPS_MOUNT_PATH, null);
+    this.strictCpuUsage = conf.getBoolean(YarnConfiguration.
+            NM_LINUX_CONTAINER_CGROUPS_STRICT_CPU_USAGE, YarnConfiguration.
+            DEFAULT_NM_LINUX_CONTAINER_CGROUPS_STRICT_CPU_USAGE);
+    this.memoryEnabled = conf.getBoolean(YarnConfiguration.
+            NM_LINUX_CONTAINER_CGROUPS_MEMORY_ENABLED, YarnConfiguration.
+            DEFAULT_NM_LINUX_CONTAINER_CGROUPS_MEMORY_ENABLED);
+    this.vcoresPerCore = conf.getFloat(
+            YarnConfiguration.NM_VCORES_PCORES_RATIO,
+            YarnConfiguration.DEFAULT_NM_VCORES_PCORES_RATIO);
 
     // remove extra /'s at end or start of cgroupPrefix
     if (cgroupPrefix.charAt(0) == '/') {
@@ -96,6 +114,10 @@ public synchronized void init(LinuxContainerExecutor lce) throws IOException {
       ArrayList<String> cgroupKVs = new ArrayList<String>();
       cgroupKVs.add(CONTROLLER_CPU + "=" + cgroupMountPath + "/" +
                     CONTROLLER_CPU);
+      if (memoryEnabled) {
+        cgroupKVs.add(CONTROLLER_MEMORY + "=" + cgroupMountPath + "/" +
+                      CONTROLLER_MEMORY);
+      }
       lce.mountCgroups(cgroupKVs, cgroupPrefix);
     }
 
@@ -107,8 +129,33 @@ boolean isCpuWeightEnabled() {
     return this.cpuWeightEnabled;
   }
 
+  /**
+   * @return whether the memory of containers is limited and accounted with
+   *         cgroups
+   */
+  public boolean isMemoryEnabled() {
+    return this.memoryEnabled;
+  }
+
+  @VisibleForTesting
+  void setMtabFile(String mtabFile) {
+    this.mtabFile = mtabFile;
+  }
+
+  /**
+   * @return whether the cpuacct controller is mounted apart from the
+   *         controllers containers get a cgroup of, in which case they get a
+   *         cpuacct cgroup too
+   */
+  private boolean isCpuacctSeparate() {
+    String cpuacctPath = controllerPaths.get(CONTROLLER_CPUACCT);
+    return cpuacctPath != null
+        && !cpuacctPath.equals(controllerPaths.get(CONTROLLER_CPU))
+        && !cpuacctPath.equals(controllerPaths.get(CONTROLLER_MEMORY));
+  }
+
   /*
-   * Next four functions are for an individual cgroup.
+   * Next five functions are for an individual cgroup.
    */
 
   private String pathForCgroup(String controller, String groupName) {
@@ -157,6 +204,29 @@ private void updateCgroup(String controller, String groupName, String param,
     }
   }
 
+  private List<String> readCgroup(String controller, String groupName,
+                                  String file) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    String path = pathForCgroup(controller, groupName) + "/" + file;
+    BufferedReader in = null;
+
+    try {
+      in = new BufferedReader(new FileReader(path));
+      for (String str = in.readLine(); str != null; str = in.readLine()) {
+        lines.add(str);
+      }
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          LOG.warn("Unable to close cgroup file: " + path, e);
+        }
+      }
+    }
+    return lines;
+  }
+
   private void deleteCgroup(String controller, String groupName) {
     String path = pathForCgroup(controller, groupName);
 
@@ -171,18 +241,35 @@ private void deleteCgroup(String controller, String groupName) {
    * Next three functions operate on all the resources we are enforcing.
    */
 
-  /*
-   * TODO: After YARN-2 is committed, we should call containerResource.getCpus()
-   * (or equivalent) to multiply the weight by the number of requested cpus.
-   */
   private void setupLimits(ContainerId containerId,
                            Resource containerResource) throws IOException {
     String containerName = containerId.toString();
+    int vcores = Math.max(1, containerResource.getVirtualCores());
 
     if (isCpuWeightEnabled()) {
       createCgroup(CONTROLLER_CPU, containerName);
       updateCgroup(CONTROLLER_CPU, containerName, "shares",
-          String.valueOf(CPU_DEFAULT_WEIGHT));
+          String.valueOf(CPU_DEFAULT_WEIGHT * vcores));
+      if (strictCpuUsage) {
+        // Cap the container to the physical cores its vcores stand for
+        int quota = Math.max(CPU_MIN_QUOTA_US,
+            (int) (CPU_PERIOD_US * vcores / vcoresPerCore));
+        updateCgroup(CONTROLLER_CPU, containerName, "cfs_period_us",
+            String.valueOf(CPU_PERIOD_US));
+        updateCgroup(CONTROLLER_CPU, containerName, "cfs_quota_us",
+            String.valueOf(quota));
+      }
+    }
+
+    if (isMemoryEnabled()) {
+      createCgroup(CONTROLLER_MEMORY, containerName);
+      updateCgroup(CONTROLLER_MEMORY, containerName, "limit_in_bytes",
+          String.valueOf(((long) containerResource.getMemory()) << 20));
+    }
+
+    // for accounting only, no limits
+    if (isCpuacctSeparate()) {
+      createCgroup(CONTROLLER_CPUACCT, containerName);
     }
   }
 
@@ -203,6 +290,12 @@ private void clearLimits(ContainerId containerId) {
     if (isCpuWeightEnabled()) {
       deleteCgroup(CONTROLLER_CPU, containerName);
     }
+    if (isMemoryEnabled()) {
+      deleteCgroup(CONTROLLER_MEMORY, containerName);
+    }
+    if (isCpuacctSeparate()) {
+      deleteCgroup(CONTROLLER_CPUACCT, containerName);
+    }
   }
 
   /*
@@ -228,6 +321,18 @@ public String getResourcesOption(ContainerId containerId) {
       sb.append(",");
     }
 
+    if (isMemoryEnabled()) {
+      sb.append(pathForCgroup(CONTROLLER_MEMORY, containerName)
+          + "/cgroup.procs");
+      sb.append(",");
+    }
+
+    if (isCpuacctSeparate()) {
+      sb.append(pathForCgroup(CONTROLLER_CPUACCT, containerName)
+          + "/cgroup.procs");
+      sb.append(",");
+    }
+
     if (sb.charAt(sb.length() - 1) == ',') {
       sb.deleteCharAt(sb.length() - 1);
     }
@@ -235,6 +340,61 @@ public String getResourcesOption(ContainerId containerId) {
     return sb.toString();
   }
 
+  /*
+   * Resource accounting of the containers
+   */
+
+  /**
+   * Read the memory statistics of the memory cgroup of a container, e.g.
+   * total_rss and total_swap in bytes.
+   * @param containerId the id of the container
+   * @return the statistics by name, empty if they could not be read
+   */
+  public Map<String, Long> getMemoryStat(ContainerId containerId) {
+    Map<String, Long> stat = new HashMap<String, Long>();
+    if (!isMemoryEnabled()) {
+      return stat;
+    }
+    try {
+      for (String line : readCgroup(CONTROLLER_MEMORY,
+          containerId.toString(), CONTROLLER_MEMORY + ".stat")) {
+        String[] kv = line.split("\\s+");
+        if (kv.length == 2) {
+          stat.put(kv[0], Long.parseLong(kv[1]));
+        }
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to read memory.stat of " + containerId, e);
+    } catch (NumberFormatException e) {
+      LOG.warn("Unexpected memory.stat format for " + containerId, e);
+    }
+    return stat;
+  }
+
+  /**
+   * Read the cpu time used by a container from its cpuacct cgroup, which is
+   * its cpu cgroup if the two controllers are mounted together.
+   * @param containerId the id of the container
+   * @return the cpu time in ms, or -1 if it could not be read
+   */
+  public long getCpuTime(ContainerId containerId) {
+    if (!controllerPaths.containsKey(CONTROLLER_CPUACCT)) {
+      return -1;
+    }
+    try {
+      List<String> lines = readCgroup(CONTROLLER_CPUACCT,
+          containerId.toString(), CONTROLLER_CPUACCT + ".usage");
+      if (!lines.isEmpty()) {
+        return Long.parseLong(lines.get(0).trim()) / 1000000; // ns
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to read cpuacct.usage of " + containerId, e);
+    } catch (NumberFormatException e) {
+      LOG.warn("Unexpected cpuacct.usage format for " + containerId, e);
+    }
+    return -1;
+  }
+
   /* We are looking for entries of the form:
    * none /cgroup/path/mem cgroup rw,memory 0 0
    *
@@ -255,7 +415,7 @@ private Map<String, List<String>> parseMtab() throws IOException {
     BufferedReader in = null;
 
     try {
-      in = new BufferedReader(new FileReader(new File(MTAB_FILE)));
+      in = new BufferedReader(new FileReader(new File(mtabFile)));
 
       for (String str = in.readLine(); str != null;
           str = in.readLine()) {
@@ -273,13 +433,13 @@ private Map<String, List<String>> parseMtab() throws IOException {
         }
       }
     } catch (IOException e) {
-      throw new IOException("Error while reading " + MTAB_FILE, e);
+      throw new IOException("Error while reading " + mtabFile, e);
     } finally {
       // Close the streams
       try {
         in.close();
       } catch (IOException e2) {
-        LOG.warn("Error closing the stream: " + MTAB_FILE, e2);
+        LOG.warn("Error closing the stream: " + mtabFile, e2);
       }
     }
 
@@ -315,7 +475,42 @@ private void initializeControllerPaths() throws IOException {
       }
     } else {
       throw new IOException("Not able to enforce cpu weights; cannot find "
-          + "cgroup for cpu controller in " + MTAB_FILE);
+          + "cgroup for cpu controller in " + mtabFile);
+    }
+
+    // Memory
+
+    if (isMemoryEnabled()) {
+      controllerPath = findControllerInMtab(CONTROLLER_MEMORY, parsedMtab);
+
+      if (controllerPath != null) {
+        File f = new File(controllerPath + "/" + this.cgroupPrefix);
+
+        if (f.canWrite()) {
+          controllerPaths.put(CONTROLLER_MEMORY, controllerPath);
+        } else {
+          throw new IOException("Not able to enforce memory limits; cannot "
+              + "write to cgroup at: " + controllerPath);
+        }
+      } else {
+        throw new IOException("Not able to enforce memory limits; cannot "
+            + "find cgroup for memory controller in " + mtabFile);
+      }
+    }
+
+    // CPU accounting, optional
+
+    controllerPath = findControllerInMtab(CONTROLLER_CPUACCT, parsedMtab);
+
+    if (controllerPath == null) {
+      LOG.info("No cgroup for cpuacct controller in " + mtabFile
+          + ", the cpu time of containers is not accounted");
+    } else if (!new File(controllerPath + "/" + this.cgroupPrefix)
+        .canWrite()) {
+      LOG.warn("Not accounting the cpu time of containers; cannot write to "
+          + "cgroup at: " + controllerPath);
+    } else {
+      controllerPaths.put(CONTROLLER_CPUACCT, controllerPath);
     }
   }
 }
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.nodemanager.util;
+
+import java.util.Map;
+
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.util.ProcfsBasedProcessTree;
+import org.apache.hadoop.yarn.util.ResourceCalculatorProcessTree;
+
+/**
+ * The resource usage of a container as accounted by its cgroups, without
+ * walking the processes of the container in /proc.
+ *
+ * cgroups do not account virtual memory, so the memory and swap in use by
+ * the container is reported as its virtual memory instead, see
+ * {@link #getCumulativeVmem(int)}. cgroups do not keep the age of the
+ * processes either, so the usage of the container counts as the usage of
+ * processes as old as the number of times it was read.
+ */
+public class CgroupsResourceCalculatorProcessTree
+    extends ResourceCalculatorProcessTree {
+
+  private static final String PROCESSTREE_DUMP_FORMAT =
+      "\t|- %s %d %d %d\n";
+
+  private final String pid;
+  private final ContainerId containerId;
+  private final CgroupsLCEResourcesHandler resourcesHandler;
+
+  private int age = 0;
+  private long rssmem = 0;
+  private long swap = 0;
+  private long cpuTime = 0;
+
+  public CgroupsResourceCalculatorProcessTree(String pid,
+      ContainerId containerId, CgroupsLCEResourcesHandler resourcesHandler) {
+    super(pid);
+    this.pid = pid;
+    this.containerId = containerId;
+    this.resourcesHandler = resourcesHandler;
+  }
+
+  @Override
+  public void updateProcessTree() {
+    Map<String, Long> stat = resourcesHandler.getMemoryStat(containerId);
+    Long rss = stat.get("total_rss");
+    if (rss == null) {
+      // the cgroup is gone along with the container
+      age = 0;
+      rssmem = 0;
+      swap = 0;
+      return;
+    }
+    Long swapped = stat.get("total_swap");
+    age++;
+    rssmem = rss;
+    swap = swapped != null ? swapped : 0;
+
+    long cpu = resourcesHandler.getCpuTime(containerId);
+    if (cpu >= 0) {
+      cpuTime = cpu;
+    }
+  }
+
+  @Override
+  public String getProcessTreeDump() {
+    StringBuilder ret = new StringBuilder();
+    ret.append(String.format("\t|- CGROUP RSSMEM_USAGE(BYTES) "
+        + "SWAP_USAGE(BYTES) CPU_TIME(MILLIS)\n"));
+    ret.append(String.format(PROCESSTREE_DUMP_FORMAT, containerId, rssmem,
+        swap, cpuTime));
+    return ret.toString();
+  }
+
+  /**
+   * Get the physical memory and swap in use by the container, in bytes,
+   * which stands in for its virtual memory.
+   */
+  @Override
+  public long getCumulativeVmem(int olderThanAge) {
+    return age > olderThanAge ? rssmem + swap : 0;
+  }
+
+  @Override
+  public long getCumulativeRssmem(int olderThanAge) {
+    return age > olderThanAge ? rssmem : 0;
+  }
+
+  @Override
+  public long getCumulativeCpuTime() {
+    return cpuTime;
+  }
+
+  @Override
+  public boolean checkPidPgrpidForMatch() {
+    return ProcfsBasedProcessTree.checkPidPgrpidForMatch(pid, "/proc/");
+  }
+}
@@ -24,6 +24,7 @@
 #include <fts.h>
 #include <errno.h>
 #include <grp.h>
+#include <libgen.h>
 #include <unistd.h>
 #include <signal.h>
 #include <stdarg.h>
@@ -32,6 +33,7 @@
 #include <string.h>
 #include <sys/stat.h>
 #include <sys/mount.h>
+#include <sys/wait.h>
 
 static const int DEFAULT_MIN_USERID = 1000;
 
@@ -190,17 +192,17 @@ static int write_pid_to_cgroup_as_root(const char* cgroup_file, pid_t pid) {
 }
 
 /**
- * Write the pid of the current process into the pid file.
- * pid_file: Path to pid file where pid needs to be written to
+ * Write a number into a file as the node manager.
+ * path: Path to the file the number needs to be written to
  */
-static int write_pid_to_file_as_nm(const char* pid_file, pid_t pid) {
+static int write_number_to_file_as_nm(const char* path, int number) {
   uid_t user = geteuid();
   gid_t group = getegid();
   if (change_effective_user(nm_uid, nm_gid) != 0) {
     return -1;
   }
 
-  char *temp_pid_file = concatenate("%s.tmp", "pid_file_path", 1, pid_file);
+  char *temp_pid_file = concatenate("%s.tmp", "pid_file_path", 1, path);
 
   // create with 700
   int pid_fd = open(temp_pid_file, O_WRONLY|O_CREAT|O_EXCL, S_IRWXU);
@@ -211,23 +213,23 @@ static int write_pid_to_file_as_nm(const char* pid_file, pid_t pid) {
     return -1;
   }
 
-  // write pid to temp file
+  // write the number to temp file
   char pid_buf[21];
-  snprintf(pid_buf, 21, "%d", pid);
+  snprintf(pid_buf, 21, "%d", number);
   ssize_t written = write(pid_fd, pid_buf, strlen(pid_buf));
   close(pid_fd);
   if (written == -1) {
-    fprintf(LOGFILE, "Failed to write pid to file %s as node manager - %s\n",
+    fprintf(LOGFILE, "Failed to write to file %s as node manager - %s\n",
        temp_pid_file, strerror(errno));
     free(temp_pid_file);
     return -1;
   }
 
-  // rename temp file to actual pid file
+  // rename temp file to actual file
   // use rename as atomic
-  if (rename(temp_pid_file, pid_file)) {
-    fprintf(LOGFILE, "Can't move pid file from %s to %s as node manager - %s\n",
-        temp_pid_file, pid_file, strerror(errno));
+  if (rename(temp_pid_file, path)) {
+    fprintf(LOGFILE, "Can't move file from %s to %s as node manager - %s\n",
+        temp_pid_file, path, strerror(errno));
     unlink(temp_pid_file);
     free(temp_pid_file);
     return -1;
@@ -243,6 +245,49 @@ static int write_pid_to_file_as_nm(const char* pid_file, pid_t pid) {
   return 0;
 }
 
+/**
+ * Write the pid of the current process into the pid file.
+ * pid_file: Path to pid file where pid needs to be written to
+ */
+static int write_pid_to_file_as_nm(const char* pid_file, pid_t pid) {
+  return write_number_to_file_as_nm(pid_file, pid);
+}
+
+/**
+ * Wait for the container process to exit and write its exit code next to
+ * its pid file, so that a restarted node manager can learn the exit code.
+ * Returns the exit code of the container.
+ */
+static int wait_and_write_exit_code(pid_t pid, const char* pid_file) {
+  int status = 0;
+  int exit_code = -1;
+  char *exit_code_file = concatenate("%s.exitcode", "exit_code_path", 1,
+      pid_file);
+  if (exit_code_file == NULL) {
+    return OUT_OF_MEMORY;
+  }
+  while (waitpid(pid, &status, 0) == -1) {
+    if (errno != EINTR) {
+      fprintf(LOGFILE, "Error waiting for container process %d - %s\n",
+              pid, strerror(errno));
+      free(exit_code_file);
+      return -1;
+    }
+  }
+  if (WIFEXITED(status)) {
+    exit_code = WEXITSTATUS(status);
+  } else if (WIFSIGNALED(status)) {
+    // same as the exit code of a shell for a signalled process
+    exit_code = 0x80 + WTERMSIG(status);
+  }
+  if (write_number_to_file_as_nm(exit_code_file, exit_code) != 0) {
+    fprintf(LOGFILE, "Could not write exit code to file %s\n",
+            exit_code_file);
+  }
+  free(exit_code_file);
+  return exit_code;
+}
+
 /**
  * Change the real and effective user and group to abandon the super user
  * priviledges.
@@ -877,6 +922,25 @@ int launch_container_as_user(const char *user, const char *app_id,
     goto cleanup;
   }
 
+  if (pid_file == NULL) {
+    exit_code = WRITE_PIDFILE_FAILED;
+    goto cleanup;
+  }
+
+  // The container runs in a child process, the parent waits for it so
+  // that it can record the exit code even if the node manager is gone
+  pid_t child_pid = fork();
+  if (child_pid == -1) {
+    fprintf(LOGFILE, "Failed to fork the container process - %s\n",
+            strerror(errno));
+    goto cleanup;
+  } else if (child_pid != 0) {
+    close(container_file_source);
+    close(cred_file_source);
+    exit_code = wait_and_write_exit_code(child_pid, pid_file);
+    goto cleanup;
+  }
+
   // setsid 
   pid_t pid = setsid();
   if (pid == -1) {
@@ -1013,6 +1077,9 @@ static int rmdir_as_nm(const char* path) {
   return ret;
 }
 
+// the number of bytes in the files deleted so far
+static unsigned long long deleted_bytes = 0;
+
 /**
  * Recursively delete the given path.
  * full_path : the path to delete
@@ -1071,6 +1138,8 @@ static int delete_path(const char *full_path,
           fprintf(LOGFILE, "Couldn't delete file %s - %s\n", entry->fts_path,
                   strerror(errno));
           exit_code = -1;
+        } else if (entry->fts_info == FTS_F) {
+          deleted_bytes += entry->fts_statp->st_size;
         }
         break;
 
@@ -1163,6 +1232,36 @@ int delete_as_user(const char *user,
   return ret;
 }
 
+/**
+ * Delete the given paths as the user, and report the number of bytes
+ * deleted. The top level of a path in a directory the user does not own,
+ * like a log directory, is removed as the node manager.
+ * user: the user doing the delete
+ * paths: the absolute paths to delete
+ */
+int delete_paths_as_user(const char *user, char* const* paths) {
+  int ret = 0;
+  char** ptr;
+
+  for(ptr = (char**)paths; *ptr != NULL; ++ptr) {
+    char *parent = strdup(*ptr);
+    if (parent == NULL) {
+      fprintf(LOGFILE, "Malloc failed in delete_paths_as_user\n");
+      return -1;
+    }
+    struct stat sb;
+    int needs_nm = stat(dirname(parent), &sb) == 0 && sb.st_uid != geteuid();
+    free(parent);
+    int this_ret = delete_path(*ptr, needs_nm);
+    // delete as much as we can, but remember the error
+    if (this_ret != 0) {
+      ret = this_ret;
+    }
+  }
+  fprintf(LOGFILE, "Deleted bytes: %llu\n", deleted_bytes);
+  return ret;
+}
+
 void chown_dir_contents(const char *dir_path, uid_t uid, gid_t gid) {
   DIR *dp;
   struct dirent *ep;
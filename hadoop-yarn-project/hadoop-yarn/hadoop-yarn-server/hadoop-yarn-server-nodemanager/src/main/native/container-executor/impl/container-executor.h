@@ -25,6 +25,7 @@ enum command {
   LAUNCH_CONTAINER = 1,
   SIGNAL_CONTAINER = 2,
   DELETE_AS_USER = 3,
+  DELETE_PATHS_AS_USER = 4,
 };
 
 enum errorcodes {
@@ -143,6 +144,10 @@ int delete_as_user(const char *user,
                    const char *dir_to_be_deleted,
                    char* const* baseDirs);
 
+// delete the given absolute paths recursively as the user, and report the
+// number of bytes deleted on the log file
+int delete_paths_as_user(const char *user, char* const* paths);
+
 // set the uid and gid of the node manager.  This is used when doing some
 // priviledged operations for setting the effective uid and gid.
 void set_nm_uid(uid_t user, gid_t group);
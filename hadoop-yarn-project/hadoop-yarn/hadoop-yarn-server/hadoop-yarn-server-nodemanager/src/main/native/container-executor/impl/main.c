@@ -61,6 +61,8 @@ void display_usage(FILE *stream) {
 	  SIGNAL_CONTAINER);
   fprintf(stream, "   delete as user: %2d relative-path\n",
 	  DELETE_AS_USER);
+  fprintf(stream, "   delete paths as user: %2d absolute-path...\n",
+	  DELETE_PATHS_AS_USER);
 }
 
 int main(int argc, char **argv) {
@@ -268,6 +270,9 @@ int main(int argc, char **argv) {
     exit_code= delete_as_user(user_detail->pw_name, dir_to_be_deleted,
                               argv + optind);
     break;
+  case DELETE_PATHS_AS_USER:
+    exit_code = delete_paths_as_user(user_detail->pw_name, argv + optind);
+    break;
   default:
     fprintf(ERRORFILE, "Invalid command %d not supported.",command);
     fflush(ERRORFILE);
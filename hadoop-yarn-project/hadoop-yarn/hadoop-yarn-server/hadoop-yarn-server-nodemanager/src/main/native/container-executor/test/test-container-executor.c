@@ -345,6 +345,49 @@ void test_delete_app() {
 }
 
 
+void test_delete_paths() {
+  char* app_dir = get_app_directory(TEST_ROOT "/local-1", username, "app_4");
+  char* container_1 = get_container_work_directory(TEST_ROOT "/local-1",
+                                     username, "app_4", "container_1");
+  char* container_2 = get_container_work_directory(TEST_ROOT "/local-1",
+                                     username, "app_4", "container_2");
+  char buffer[100000];
+  sprintf(buffer, "mkdir -p %s/who/let/the/dogs", container_1);
+  run(buffer);
+  sprintf(buffer, "head -c 1000 /dev/zero > %s/who/let/file", container_1);
+  run(buffer);
+  sprintf(buffer, "mkdir -p %s/out", container_2);
+  run(buffer);
+
+  // delete both container directories in one go
+  char * paths[] = {container_1, container_2, 0};
+  int ret = delete_paths_as_user(username, paths);
+  if (ret != 0) {
+    printf("FAIL: return code from delete_paths_as_user is %d\n", ret);
+    exit(1);
+  }
+
+  // check to make sure the container directories are gone
+  if (access(container_1, R_OK) == 0) {
+    printf("FAIL: failed to delete the directory - %s\n", container_1);
+    exit(1);
+  }
+  if (access(container_2, R_OK) == 0) {
+    printf("FAIL: failed to delete the directory - %s\n", container_2);
+    exit(1);
+  }
+  // but that the app directory is not gone
+  if (access(app_dir, R_OK) != 0) {
+    printf("FAIL: accidently deleted the directory - %s\n", app_dir);
+    exit(1);
+  }
+  sprintf(buffer, "rm -fr %s", app_dir);
+  run(buffer);
+  free(app_dir);
+  free(container_1);
+  free(container_2);
+}
+
 void test_delete_user() {
   printf("\nTesting delete_user\n");
   char* app_dir = get_app_directory(TEST_ROOT "/local-1", username, "app_3");
@@ -625,8 +668,8 @@ void test_run_container() {
       printf("FAIL: failed in child\n");
       exit(42);
     }
-    // should never return
-    exit(1);
+    // returns the exit code of the container once it exits
+    exit(0);
   }
   int status = 0;
   if (waitpid(child, &status, 0) <= 0) {
@@ -634,6 +677,10 @@ void test_run_container() {
 	   strerror(errno));
     exit(1);
   }
+  if (!WIFEXITED(status) || WEXITSTATUS(status) != 0) {
+    printf("FAIL: child %d didn't exit cleanly - %d\n", child, status);
+    exit(1);
+  }
   if (access(TEST_ROOT "/logs/userlogs/app_4/container_1", R_OK) != 0) {
     printf("FAIL: failed to create container log directory\n");
     exit(1);
@@ -673,12 +720,28 @@ void test_run_container() {
     exit(1);
   }
 
+  // the container runs in a process forked from the child
   pid_t mypid = child;
   char myPidBuf[33];
   snprintf(myPidBuf, 33, "%d", mypid);
-  if (strncmp(pidBuf, myPidBuf, strlen(myPidBuf)) != 0) {
-    printf("FAIL: failed to find matching pid in pid file\n");
-    printf("FAIL: Expected pid %d : Got %.*s", mypid, (int)bytes, pidBuf);
+  if (bytes <= 0 || strncmp(pidBuf, myPidBuf, strlen(myPidBuf)) == 0) {
+    printf("FAIL: failed to find the container pid in pid file\n");
+    printf("FAIL: Got %.*s", (int)bytes, pidBuf);
+    exit(1);
+  }
+
+  const char * exit_code_file = TEST_ROOT "/pid.txt.exitcode";
+  int exitfd = open(exit_code_file, O_RDONLY);
+  if (exitfd == -1) {
+    printf("FAIL: failed to open exit code file %s - %s\n", exit_code_file,
+           strerror(errno));
+    exit(1);
+  }
+  char exitBuf[100];
+  bytes = read(exitfd, exitBuf, 100);
+  close(exitfd);
+  if (bytes != 1 || exitBuf[0] != '0') {
+    printf("FAIL: expected exit code 0 : Got %.*s", (int)bytes, exitBuf);
     exit(1);
   }
 }
@@ -749,6 +812,9 @@ int main(int argc, char **argv) {
   printf("\nTesting delete_app()\n");
   test_delete_app();
 
+  printf("\nTesting delete_paths()\n");
+  test_delete_paths();
+
   test_delete_user();
 
   test_check_user();
@@ -191,6 +191,29 @@ public void testDirPermissions() throws Exception {
     }
   }
 
+  @Test
+  public void testDeletePathsCountsBytes() throws Exception {
+    deleteTmpFiles();
+    FileContext lfs = FileContext.getLocalFSFileContext();
+    Random r = new Random();
+    Path dir = lfs.makeQualified(new Path(BASE_TMP_PATH, "dir"));
+    Path file = lfs.makeQualified(new Path(BASE_TMP_PATH, "file"));
+    createTmpFile(new Path(dir, "a"), r, 100);
+    createTmpFile(new Path(new Path(dir, "sub"), "b"), r, 200);
+    createTmpFile(file, r, 50);
+
+    DefaultContainerExecutor executor = new DefaultContainerExecutor(lfs);
+    List<Path> paths = new ArrayList<Path>();
+    paths.add(dir);
+    paths.add(file);
+    // the data and its checksum files
+    assertTrue(executor.deletePathsAsUser("dingo", paths) > 350);
+    assertFalse(lfs.util().exists(dir));
+    assertFalse(lfs.util().exists(file));
+    assertFalse(lfs.util().exists(
+        new Path(BASE_TMP_PATH, "." + file.getName() + ".crc")));
+  }
+
 //  @Test
 //  public void testInit() throws IOException, InterruptedException {
 //    Configuration conf = new Configuration();
@@ -20,8 +20,10 @@
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileContext;
@@ -196,6 +198,100 @@ public void testNoDelete() throws Exception {
     }
   }
 
+  /**
+   * Records the paths deleted in each call, holding up the deletions of the
+   * first path until released.
+   */
+  static class RecordingContainerExecutor extends DefaultContainerExecutor {
+    final List<List<Path>> calls = new ArrayList<List<Path>>();
+    final CountDownLatch release = new CountDownLatch(1);
+    @Override
+    public long deletePathsAsUser(String user, List<Path> paths)
+        throws IOException, InterruptedException {
+      if (paths.get(0).getName().equals("first")) {
+        release.await();
+      }
+      synchronized (calls) {
+        calls.add(new ArrayList<Path>(paths));
+        calls.notifyAll();
+      }
+      return 1;
+    }
+    void waitForCalls(int numCalls) throws InterruptedException {
+      synchronized (calls) {
+        long end = System.currentTimeMillis() + 20 * 1000;
+        while (calls.size() < numCalls && System.currentTimeMillis() < end) {
+          calls.wait(100);
+        }
+        assertEquals(numCalls, calls.size());
+      }
+    }
+  }
+
+  @Test
+  public void testBatchesPerDisk() throws Exception {
+    Path disk1 = new Path(base, "disk1");
+    Path disk2 = new Path(base, "disk2");
+    Configuration conf = new Configuration();
+    conf.setStrings(YarnConfiguration.NM_LOCAL_DIRS, disk1.toString(),
+        disk2.toString());
+    RecordingContainerExecutor exec = new RecordingContainerExecutor();
+    exec.setConf(conf);
+    DeletionService del = new DeletionService(exec);
+    del.init(conf);
+    del.start();
+    try {
+      del.delete("dingo", new Path(disk1, "first"));
+      // queued behind the first deletion on the same disk
+      del.delete(DeletionService.Priority.CACHE, "dingo",
+          new Path(disk1, "cache"));
+      del.delete("dingo", new Path(disk1, "app"));
+      del.delete(DeletionService.Priority.CONTAINER, "dingo",
+          new Path(disk1, "container"));
+      // the other disk goes ahead
+      del.delete("dingo", new Path(disk2, "other"));
+      exec.waitForCalls(1);
+      assertEquals(Arrays.asList(new Path(disk2, "other")),
+          exec.calls.get(0));
+
+      exec.release.countDown();
+      exec.waitForCalls(3);
+      assertEquals(Arrays.asList(new Path(disk1, "first")),
+          exec.calls.get(1));
+      // the rest in one batch, highest priority first
+      assertEquals(Arrays.asList(new Path(disk1, "container"),
+          new Path(disk1, "app"), new Path(disk1, "cache")),
+          exec.calls.get(2));
+    } finally {
+      del.stop();
+    }
+  }
+
+  @Test
+  public void testStopRunsQueuedDeletions() throws Exception {
+    Path disk = new Path(base, "disk");
+    Configuration conf = new Configuration();
+    conf.setStrings(YarnConfiguration.NM_LOCAL_DIRS, disk.toString());
+    conf.setInt(YarnConfiguration.NM_DELETE_BATCH_SIZE, 1);
+    // each batch holds up the next one for a second
+    conf.setLong(YarnConfiguration.NM_DELETE_DISK_BANDWIDTH, 1);
+    RecordingContainerExecutor exec = new RecordingContainerExecutor();
+    exec.setConf(conf);
+    DeletionService del = new DeletionService(exec);
+    del.init(conf);
+    del.start();
+    try {
+      for (int i = 0; i < 3; i++) {
+        del.delete("dingo", new Path(disk, "app" + i));
+      }
+      exec.waitForCalls(1);
+    } finally {
+      del.stop();
+    }
+    assertTrue(del.isTerminated());
+    assertEquals(3, exec.calls.size());
+  }
+
   @Test
   public void testStopWithDelayedTasks() throws Exception {
     DeletionService del = new DeletionService(Mockito.mock(ContainerExecutor.class));
@@ -283,4 +283,21 @@ public void testDeleteAsUser() throws IOException {
     assertEquals(Arrays.asList(appSubmitter, cmd, "/tmp/testdir"),
         readMockParams());
   }
+
+  @Test
+  public void testDeletePathsAsUser() throws IOException {
+    String appSubmitter = "nobody";
+    String cmd = String.valueOf(
+        LinuxContainerExecutor.Commands.DELETE_PATHS_AS_USER.getValue());
+
+    mockExec.deletePathsAsUser(appSubmitter, Arrays.asList(
+        new Path("/tmp/testdir1"), new Path("/tmp/testdir2")));
+    assertEquals(Arrays.asList(appSubmitter, cmd, "/tmp/testdir1",
+        "/tmp/testdir2"), readMockParams());
+
+    assertEquals(4096, LinuxContainerExecutor.parseDeletedBytes(
+        "main : command provided 4\n"
+        + LinuxContainerExecutor.DELETED_BYTES_PREFIX + "4096\n"));
+    assertEquals(-1, LinuxContainerExecutor.parseDeletedBytes(""));
+  }
 }
@@ -24,6 +24,7 @@
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -35,9 +36,11 @@
 import org.apache.hadoop.fs.FileContext;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.UnsupportedFileSystemException;
+import org.apache.hadoop.security.Credentials;
 import org.apache.hadoop.yarn.api.protocolrecords.GetContainerStatusRequest;
 import org.apache.hadoop.yarn.api.protocolrecords.StartContainerRequest;
 import org.apache.hadoop.yarn.api.protocolrecords.StopContainerRequest;
+import org.apache.hadoop.yarn.api.records.ApplicationAccessType;
 import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.api.records.ContainerId;
@@ -49,15 +52,22 @@
 import org.apache.hadoop.yarn.api.records.LocalResourceVisibility;
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.hadoop.yarn.api.records.URL;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.exceptions.YarnRemoteException;
 import org.apache.hadoop.yarn.server.nodemanager.CMgrCompletedAppsEvent;
 import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor.ExitCode;
 import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor.Signal;
+import org.apache.hadoop.yarn.server.nodemanager.Context;
 import org.apache.hadoop.yarn.server.nodemanager.DeletionService;
+import org.apache.hadoop.yarn.server.nodemanager.NodeManager.NMContext;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.application.ApplicationState;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.ContainerLocalizer;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.ResourceLocalizationService;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.LocalNMStateStore;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore;
+import org.apache.hadoop.yarn.server.nodemanager.security.NMContainerTokenSecretManager;
 import org.apache.hadoop.yarn.server.security.ApplicationACLsManager;
+import org.apache.hadoop.yarn.util.BuilderUtils;
 import org.apache.hadoop.yarn.util.ConverterUtils;
 import org.junit.Test;
 
@@ -494,4 +504,72 @@ public void testLocalFilesCleanup() throws InterruptedException,
     Assert.assertFalse(targetFile.getAbsolutePath() + " exists!!",
         targetFile.exists());
   }
+
+  @Test
+  public void testRecoverContainers() throws Exception {
+    conf.setBoolean(YarnConfiguration.NM_RECOVERY_ENABLED, true);
+    conf.set(YarnConfiguration.NM_RECOVERY_DIR,
+        new File(tmpDir, "nm-recovery").getAbsolutePath());
+    NMStateStore stateStore = new LocalNMStateStore();
+    stateStore.init(conf);
+    stateStore.start();
+    ContainerManagerImpl recoveredManager = null;
+    try {
+      // State left behind by the NodeManager before it restarted
+      ContainerId cId = createContainerId();
+      ApplicationId appId =
+          cId.getApplicationAttemptId().getApplicationId();
+      stateStore.storeApplication(appId, user, new Credentials(),
+          Collections.<ApplicationAccessType, String>emptyMap());
+      stateStore.storeContainer(createRecoveredLaunchContext(cId));
+      stateStore.storeContainerLaunched(cId);
+      stateStore.storeContainerCompleted(cId, 0);
+      ContainerId orphanId = BuilderUtils.newContainerId(1, 1, 0, 0);
+      stateStore.storeContainer(createRecoveredLaunchContext(orphanId));
+
+      Context recoveredContext = new NMContext(
+          new NMContainerTokenSecretManager(conf), stateStore);
+      recoveredManager = new ContainerManagerImpl(recoveredContext, exec,
+          delSrvc, nodeStatusUpdater, metrics,
+          new ApplicationACLsManager(conf), dirsHandler);
+      recoveredManager.init(conf);
+      recoveredManager.start();
+
+      Assert.assertTrue(recoveredContext.getApplications().containsKey(appId));
+      Assert.assertTrue(recoveredContext.getContainers().containsKey(cId));
+      waitForContainerState(recoveredManager, cId, ContainerState.COMPLETE);
+      GetContainerStatusRequest gcsRequest =
+          recordFactory.newRecordInstance(GetContainerStatusRequest.class);
+      gcsRequest.setContainerId(cId);
+      Assert.assertEquals(0, recoveredManager.getContainerStatus(gcsRequest)
+          .getStatus().getExitStatus());
+
+      // A container of an unknown application is dropped, state and all
+      Assert.assertFalse(
+          recoveredContext.getContainers().containsKey(orphanId));
+      for (NMStateStore.RecoveredContainerState rcs
+          : stateStore.loadContainersState()) {
+        Assert.assertFalse(orphanId.equals(
+            rcs.getLaunchContext().getContainerId()));
+      }
+    } finally {
+      if (recoveredManager != null) {
+        recoveredManager.stop();
+      }
+      stateStore.stop();
+    }
+  }
+
+  private ContainerLaunchContext createRecoveredLaunchContext(
+      ContainerId cId) {
+    ContainerLaunchContext launchContext =
+        recordFactory.newRecordInstance(ContainerLaunchContext.class);
+    launchContext.setContainerId(cId);
+    launchContext.setUser(user);
+    launchContext.setLocalResources(new HashMap<String, LocalResource>());
+    launchContext.setCommands(new ArrayList<String>());
+    Resource r = BuilderUtils.newResource(100, 1);
+    launchContext.setResource(r);
+    return launchContext;
+  }
 }
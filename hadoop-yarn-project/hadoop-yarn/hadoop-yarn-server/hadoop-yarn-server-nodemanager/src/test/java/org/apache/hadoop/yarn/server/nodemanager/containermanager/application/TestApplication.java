@@ -54,6 +54,7 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.loghandler.event.LogHandlerEventType;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.monitor.ContainersMonitorEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.monitor.ContainersMonitorEventType;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NullNMStateStore;
 import org.apache.hadoop.yarn.server.security.ApplicationACLsManager;
 import org.apache.hadoop.yarn.util.BuilderUtils;
 import org.junit.Test;
@@ -447,6 +448,7 @@ private class WrappedApplication {
       dispatcher.register(LogHandlerEventType.class, logAggregationBus);
 
       context = mock(Context.class);
+      when(context.getNMStateStore()).thenReturn(new NullNMStateStore());
       
       this.user = user;
       this.appId = BuilderUtils.newApplicationId(timestamp, id);
@@ -19,6 +19,12 @@
 package org.apache.hadoop.yarn.server.nodemanager.containermanager.launcher;
 
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -53,15 +59,27 @@
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.hadoop.yarn.api.records.URL;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.event.Dispatcher;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor;
 import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor.ExitCode;
 import org.apache.hadoop.yarn.server.nodemanager.ContainerExecutor.Signal;
+import org.apache.hadoop.yarn.server.nodemanager.Context;
+import org.apache.hadoop.yarn.server.nodemanager.LocalDirsHandlerService;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.BaseContainerManagerTest;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.application.Application;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.Container;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerEventType;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.launcher.ContainerLaunch;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore;
+import org.apache.hadoop.yarn.util.BuilderUtils;
 import org.apache.hadoop.yarn.util.ConverterUtils;
 import org.apache.hadoop.yarn.util.LinuxResourceCalculatorPlugin;
 import org.apache.hadoop.yarn.util.ResourceCalculatorPlugin;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import junit.framework.Assert;
 
 public class TestContainerLaunch extends BaseContainerManagerTest {
@@ -392,4 +410,78 @@ public void testDelayedKill() throws Exception {
     reader.close();
   }
 
+  @Test
+  public void testRecoveredContainerLaunch() throws Exception {
+    ContainerId cId = BuilderUtils.newContainerId(0, 1, 0, 0);
+    Context context = mock(Context.class);
+    NMStateStore stateStore = mock(NMStateStore.class);
+    when(context.getNMStateStore()).thenReturn(stateStore);
+    ContainerExecutor exec = mock(ContainerExecutor.class);
+    when(exec.reacquireContainer("user", cId)).thenReturn(0);
+    LocalDirsHandlerService dirs = mock(LocalDirsHandlerService.class);
+    Path pidFile = new Path(tmpDir.getAbsolutePath(), cId + ".pid");
+    when(dirs.getLocalPathForRead(anyString())).thenReturn(pidFile);
+    EventHandler handler = mock(EventHandler.class);
+
+    Integer ret = new RecoveredContainerLaunch(context, conf,
+        mockDispatcher(handler), exec, mock(Application.class),
+        mockContainer(cId), dirs).call();
+
+    Assert.assertEquals(0, ret.intValue());
+    verify(exec).activateContainer(cId, pidFile);
+    verify(exec).deactivateContainer(cId);
+    verify(stateStore).storeContainerCompleted(cId, 0);
+    ArgumentCaptor<ContainerEvent> events =
+        ArgumentCaptor.forClass(ContainerEvent.class);
+    verify(handler, times(2)).handle(events.capture());
+    Assert.assertEquals(ContainerEventType.CONTAINER_LAUNCHED,
+        events.getAllValues().get(0).getType());
+    Assert.assertEquals(ContainerEventType.CONTAINER_EXITED_WITH_SUCCESS,
+        events.getAllValues().get(1).getType());
+  }
+
+  @Test
+  public void testRecoveredContainerLaunchWithoutPidFile() throws Exception {
+    ContainerId cId = BuilderUtils.newContainerId(0, 1, 0, 0);
+    Context context = mock(Context.class);
+    NMStateStore stateStore = mock(NMStateStore.class);
+    when(context.getNMStateStore()).thenReturn(stateStore);
+    ContainerExecutor exec = mock(ContainerExecutor.class);
+    LocalDirsHandlerService dirs = mock(LocalDirsHandlerService.class);
+    when(dirs.getLocalPathForRead(anyString())).thenThrow(
+        new IOException("no pid file"));
+    EventHandler handler = mock(EventHandler.class);
+
+    Integer ret = new RecoveredContainerLaunch(context, conf,
+        mockDispatcher(handler), exec, mock(Application.class),
+        mockContainer(cId), dirs).call();
+
+    // Without a pid file the container cannot be waited for
+    Assert.assertEquals(ExitCode.TERMINATED.getExitCode(), ret.intValue());
+    verify(exec, times(0)).reacquireContainer(anyString(),
+        any(ContainerId.class));
+    verify(stateStore).storeContainerCompleted(cId,
+        ExitCode.TERMINATED.getExitCode());
+    ArgumentCaptor<ContainerEvent> events =
+        ArgumentCaptor.forClass(ContainerEvent.class);
+    verify(handler, times(2)).handle(events.capture());
+    Assert.assertEquals(ContainerEventType.CONTAINER_KILLED_ON_REQUEST,
+        events.getAllValues().get(1).getType());
+  }
+
+  private static Dispatcher mockDispatcher(EventHandler handler) {
+    Dispatcher dispatcher = mock(Dispatcher.class);
+    when(dispatcher.getEventHandler()).thenReturn(handler);
+    return dispatcher;
+  }
+
+  private static Container mockContainer(ContainerId cId) {
+    ContainerLaunchContext launchContext = mock(ContainerLaunchContext.class);
+    when(launchContext.getContainerId()).thenReturn(cId);
+    when(launchContext.getUser()).thenReturn("user");
+    Container container = mock(Container.class);
+    when(container.getContainerID()).thenReturn(cId);
+    when(container.getLaunchContext()).thenReturn(launchContext);
+    return container;
+  }
 }
@@ -24,6 +24,7 @@
 import static org.mockito.Mockito.verify;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
@@ -32,6 +33,7 @@
 import junit.framework.Assert;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.LocalResourceType;
@@ -46,6 +48,7 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.LocalizerResourceRequestEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceLocalizedEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceRecoveredEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceReleaseEvent;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.event.ResourceRequestEvent;
 import org.apache.hadoop.yarn.util.BuilderUtils;
@@ -221,6 +224,166 @@ public void testConsistency() {
     }
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRecovery() {
+    String user = "testuser";
+    File indexDir = new File("target",
+        TestLocalResourcesTrackerImpl.class.getName() + "-index");
+    FileUtil.fullyDelete(indexDir);
+    Assert.assertTrue(indexDir.mkdirs());
+    File indexFile = new File(indexDir, "filecache.index");
+    DrainDispatcher dispatcher = null;
+    try {
+      dispatcher = createDispatcher(new Configuration());
+      EventHandler<LocalizerEvent> containerEventHandler =
+          mock(EventHandler.class);
+      dispatcher.register(ContainerEventType.class, containerEventHandler);
+      DeletionService mockDelService = mock(DeletionService.class);
+
+      LocalResourceRequest req1 = createLocalResourceRequest(user, 1, 1,
+          LocalResourceVisibility.PUBLIC);
+      LocalResourceRequest req2 = createLocalResourceRequest(user, 2, 1,
+          LocalResourceVisibility.PUBLIC);
+      LocalResourcesTrackerImpl tracker =
+          new LocalResourcesTrackerImpl(user, dispatcher, indexFile);
+      Assert.assertEquals(0, tracker.recover());
+
+      Path path1 = new Path(new File(indexDir, "r1").getAbsolutePath());
+      Path path2 = new Path(new File(indexDir, "r2").getAbsolutePath());
+      Assert.assertTrue(createdummylocalizefile(path1));
+      Assert.assertTrue(createdummylocalizefile(path2));
+      tracker.handle(new ResourceLocalizedEvent(req1, path1, 10));
+      tracker.handle(new ResourceLocalizedEvent(req2, path2, 20));
+      dispatcher.await();
+      Assert.assertTrue(indexFile.exists());
+
+      // A restarted tracker knows the resources without localizing them
+      LocalResourcesTrackerImpl recovered =
+          new LocalResourcesTrackerImpl(user, dispatcher, indexFile);
+      Assert.assertEquals(2, recovered.recover());
+      verifyTrackedResourceCount(recovered, 2);
+      Iterator<LocalizedResource> iter = recovered.iterator();
+      while (iter.hasNext()) {
+        LocalizedResource rsrc = iter.next();
+        Assert.assertEquals(ResourceState.LOCALIZED, rsrc.getState());
+        if (rsrc.getRequest().equals(req1)) {
+          Assert.assertEquals(path1, rsrc.getLocalPath());
+          Assert.assertEquals(10, rsrc.getSize());
+        } else {
+          Assert.assertEquals(req2, rsrc.getRequest());
+          Assert.assertEquals(path2, rsrc.getLocalPath());
+          Assert.assertEquals(20, rsrc.getSize());
+        }
+      }
+
+      // A recovered container re-claims the cached resources it uses, so
+      // they cannot be evicted while it is still running
+      ContainerId cId1 = BuilderUtils.newContainerId(1, 1, 1, 1);
+      LocalResourceRequest unknown = createLocalResourceRequest(user, 3, 1,
+          LocalResourceVisibility.PUBLIC);
+      recovered.handle(new ResourceRecoveredEvent(req1, cId1));
+      recovered.handle(new ResourceRecoveredEvent(unknown, cId1));
+      dispatcher.await();
+      Assert.assertEquals(1, getResource(recovered, req1).getRefCount());
+      Assert.assertEquals(0, getResource(recovered, req2).getRefCount());
+      Assert.assertFalse(recovered.contains(unknown));
+      recovered.handle(new ResourceReleaseEvent(req1, cId1));
+      dispatcher.await();
+      Assert.assertEquals(0, getResource(recovered, req1).getRefCount());
+
+      // Removed resources are dropped from the index
+      iter = recovered.iterator();
+      LocalizedResource removed = iter.next();
+      Assert.assertTrue(recovered.remove(removed, mockDelService));
+      LocalResourcesTrackerImpl again =
+          new LocalResourcesTrackerImpl(user, dispatcher, indexFile);
+      Assert.assertEquals(1, again.recover());
+      Assert.assertFalse(again.contains(removed.getRequest()));
+    } finally {
+      if (dispatcher != null) {
+        dispatcher.stop();
+      }
+      FileUtil.fullyDelete(indexDir);
+    }
+  }
+
+  private LocalizedResource getResource(LocalResourcesTracker tracker,
+      LocalResourceRequest req) {
+    Iterator<LocalizedResource> iter = tracker.iterator();
+    while (iter.hasNext()) {
+      LocalizedResource rsrc = iter.next();
+      if (rsrc.getRequest().equals(req)) {
+        return rsrc;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRecoveryCompactsIndex() throws Exception {
+    String user = "testuser";
+    File indexDir = new File("target",
+        TestLocalResourcesTrackerImpl.class.getName() + "-compact");
+    FileUtil.fullyDelete(indexDir);
+    Assert.assertTrue(indexDir.mkdirs());
+    File indexFile = new File(indexDir, "filecache.index");
+    DrainDispatcher dispatcher = null;
+    try {
+      dispatcher = createDispatcher(new Configuration());
+      EventHandler<LocalizerEvent> containerEventHandler =
+          mock(EventHandler.class);
+      dispatcher.register(ContainerEventType.class, containerEventHandler);
+      DeletionService mockDelService = mock(DeletionService.class);
+
+      LocalResourceRequest req1 = createLocalResourceRequest(user, 1, 1,
+          LocalResourceVisibility.PUBLIC);
+      LocalResourceRequest req2 = createLocalResourceRequest(user, 2, 1,
+          LocalResourceVisibility.PUBLIC);
+      ConcurrentMap<LocalResourceRequest, LocalizedResource> localrsrc =
+          new ConcurrentHashMap<LocalResourceRequest, LocalizedResource>();
+      LocalResourcesTrackerImpl tracker = new LocalResourcesTrackerImpl(user,
+          dispatcher, localrsrc, indexFile);
+      Path path1 = new Path(new File(indexDir, "r1").getAbsolutePath());
+      Path path2 = new Path(new File(indexDir, "r2").getAbsolutePath());
+      tracker.handle(new ResourceLocalizedEvent(req1, path1, 10));
+      // the first change writes the whole index
+      long recordLen = indexFile.length() - 4;
+
+      // localizing and removing a resource over and over appends records,
+      // the stale ones are dropped when the index is rewritten
+      int cycles = 3 * LocalResourcesTrackerImpl.INDEX_STALE_RECORDS;
+      for (int i = 0; i < cycles; i++) {
+        tracker.handle(new ResourceLocalizedEvent(req2, path2, 20));
+        Assert.assertTrue(tracker.remove(localrsrc.get(req2),
+            mockDelService));
+      }
+      dispatcher.await();
+      Assert.assertTrue("Index of " + indexFile.length() + " bytes",
+          indexFile.length() < 4
+              + (LocalResourcesTrackerImpl.INDEX_STALE_RECORDS + 5)
+              * recordLen);
+
+      // a record cut short by a crash is ignored
+      FileOutputStream out = new FileOutputStream(indexFile, true);
+      out.write(new byte[] { 0, 0, 10, 'h', 'd' });
+      out.close();
+      LocalResourcesTrackerImpl recovered =
+          new LocalResourcesTrackerImpl(user, dispatcher, indexFile);
+      Assert.assertEquals(1, recovered.recover());
+      Assert.assertTrue(recovered.contains(req1));
+      Assert.assertFalse(recovered.contains(req2));
+      // and dropped from the rewritten index
+      Assert.assertEquals(4 + recordLen, indexFile.length());
+    } finally {
+      if (dispatcher != null) {
+        dispatcher.stop();
+      }
+      FileUtil.fullyDelete(indexDir);
+    }
+  }
+
   private boolean createdummylocalizefile(Path path) {
     boolean ret = false;
     File file = new File(path.toUri().getRawPath().toString());
@@ -68,6 +68,7 @@
 import org.apache.hadoop.yarn.factory.providers.RecordFactoryProvider;
 import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat;
 import org.apache.hadoop.yarn.logaggregation.ContainerLogsRetentionPolicy;
+import org.apache.hadoop.yarn.logaggregation.LogAggregationUtils;
 import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogKey;
 import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogReader;
 import org.apache.hadoop.yarn.server.nodemanager.CMgrCompletedAppsEvent;
@@ -194,6 +195,127 @@ public void testLocalFileDeletionAfterUpload() throws Exception {
     dispatcher.stop();
   }
 
+  @Test
+  public void testRollingIntervalMinimum() throws Exception {
+    this.delSrvc = new DeletionService(createContainerExecutor());
+    this.delSrvc.init(conf);
+    this.conf.setLong(
+        YarnConfiguration.NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS, 60);
+
+    LogAggregationService logAggregationService =
+        new LogAggregationService(createDispatcher(), this.context,
+            this.delSrvc, super.dirsHandler);
+    logAggregationService.init(this.conf);
+    long minimum =
+        YarnConfiguration.MIN_NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS;
+    assertEquals(minimum * 1000,
+        logAggregationService.getRollingMonitorInterval());
+
+    this.conf.setBoolean(YarnConfiguration.NM_LOG_AGG_DEBUG_ENABLED, true);
+    logAggregationService =
+        new LogAggregationService(createDispatcher(), this.context,
+            this.delSrvc, super.dirsHandler);
+    logAggregationService.init(this.conf);
+    assertEquals(60 * 1000, logAggregationService.getRollingMonitorInterval());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRollingLogAggregation() throws Exception {
+    this.delSrvc = new DeletionService(createContainerExecutor());
+    this.delSrvc.init(conf);
+    this.conf.set(YarnConfiguration.NM_LOG_DIRS, localLogDir.getAbsolutePath());
+    this.conf.set(YarnConfiguration.NM_REMOTE_APP_LOG_DIR,
+        this.remoteRootLogDir.getAbsolutePath());
+    this.conf.setLong(
+        YarnConfiguration.NM_LOG_AGG_ROLL_MONITORING_INTERVAL_SECONDS, 1);
+    this.conf.setBoolean(YarnConfiguration.NM_LOG_AGG_DEBUG_ENABLED, true);
+    this.conf.setLong(YarnConfiguration.NM_LOG_AGG_UPLOAD_BANDWIDTH,
+        1024 * 1024);
+
+    DrainDispatcher dispatcher = createDispatcher();
+    EventHandler<ApplicationEvent> appEventHandler = mock(EventHandler.class);
+    dispatcher.register(ApplicationEventType.class, appEventHandler);
+
+    LogAggregationService logAggregationService =
+        new LogAggregationService(dispatcher, this.context, this.delSrvc,
+            super.dirsHandler);
+    logAggregationService.init(this.conf);
+    logAggregationService.start();
+
+    ApplicationId application1 = BuilderUtils.newApplicationId(1234, 1);
+    File app1LogDir =
+        new File(localLogDir, ConverterUtils.toString(application1));
+    app1LogDir.mkdir();
+    logAggregationService.handle(new LogHandlerAppStartedEvent(
+        application1, this.user, null,
+        ContainerLogsRetentionPolicy.ALL_CONTAINERS, this.acls));
+    ApplicationAttemptId appAttemptId =
+        BuilderUtils.newApplicationAttemptId(application1, 1);
+    ContainerId container11 = BuilderUtils.newContainerId(appAttemptId, 1);
+    writeContainerLogs(app1LogDir, container11);
+
+    // The logs of the running container are uploaded
+    List<Path> logFiles = getRemoteNodeLogFiles(application1);
+    for (int i = 0; i < 100 && logFiles.isEmpty(); i++) {
+      Thread.sleep(100);
+      logFiles = getRemoteNodeLogFiles(application1);
+    }
+    Assert.assertEquals(1, logFiles.size());
+
+    String containerStr = ConverterUtils.toString(container11);
+    Writer writer =
+        new FileWriter(new File(new File(app1LogDir, containerStr), "stdout"),
+            true);
+    writer.write(" Bye!");
+    writer.close();
+    logAggregationService.handle(
+        new LogHandlerContainerFinishedEvent(container11, 0));
+    logAggregationService.handle(new LogHandlerAppFinishedEvent(
+        application1));
+    logAggregationService.stop();
+    delSrvc.stop();
+    Assert.assertFalse(app1LogDir.exists());
+
+    // Each log was uploaded once, across the files
+    logFiles = getRemoteNodeLogFiles(application1);
+    Assert.assertTrue(logFiles.size() >= 2);
+    Map<String, String> logs = new HashMap<String, String>();
+    for (Path logFile : logFiles) {
+      LogReader reader = new LogReader(this.conf, logFile);
+      try {
+        Assert.assertEquals(this.user, reader.getApplicationOwner());
+        AggregatedLogFormat.ContainerLogsReader logsReader =
+            reader.getContainerLogsReader(container11);
+        String logType;
+        while (logsReader != null
+            && (logType = logsReader.nextLog()) != null) {
+          char[] buf = new char[(int) logsReader.getCurrentLogLength()];
+          int len = buf.length > 0 ? logsReader.read(buf, 0, buf.length) : 0;
+          String previous = logs.get(logType);
+          logs.put(logType, (previous == null ? "" : previous)
+              + new String(buf, 0, len));
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    Assert.assertEquals(3, logs.size());
+    Assert.assertEquals(containerStr + " Hello stdout! Bye!",
+        logs.get("stdout"));
+    Assert.assertEquals(containerStr + " Hello stderr!", logs.get("stderr"));
+    Assert.assertEquals(containerStr + " Hello syslog!", logs.get("syslog"));
+    dispatcher.stop();
+  }
+
+  private List<Path> getRemoteNodeLogFiles(ApplicationId appId)
+      throws IOException {
+    return LogAggregationUtils.getRemoteNodeLogFilesForApp(this.conf,
+        new Path(this.remoteRootLogDir.getAbsolutePath()), appId, this.user,
+        this.context.getNodeId(),
+        LogAggregationUtils.getRemoteNodeLogDirSuffix(this.conf));
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   public void testNoContainerOnNode() throws Exception {
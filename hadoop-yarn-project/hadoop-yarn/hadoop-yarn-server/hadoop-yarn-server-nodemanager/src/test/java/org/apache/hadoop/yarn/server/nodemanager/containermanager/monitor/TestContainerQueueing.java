@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.nodemanager.containermanager.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.event.AsyncDispatcher;
+import org.apache.hadoop.yarn.event.Event;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.Container;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerEventType;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerKillEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.launcher.ContainersLauncherEvent;
+import org.apache.hadoop.yarn.server.nodemanager.containermanager.launcher.ContainersLauncherEventType;
+import org.apache.hadoop.yarn.server.nodemanager.metrics.NodeManagerMetrics;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+import org.apache.hadoop.yarn.util.Records;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TestContainerQueueing {
+
+  private EventHandler<Event> eventHandler;
+  private NodeManagerMetrics metrics;
+  private ContainersMonitorImpl monitor;
+  private int nextId = 1;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    eventHandler = mock(EventHandler.class);
+    AsyncDispatcher dispatcher = mock(AsyncDispatcher.class);
+    when(dispatcher.getEventHandler()).thenReturn(eventHandler);
+    metrics = mock(NodeManagerMetrics.class);
+
+    Configuration conf = new YarnConfiguration();
+    conf.setInt(YarnConfiguration.NM_PMEM_MB, 4096);
+    conf.setInt(YarnConfiguration.NM_VCORES, 4);
+    monitor = new ContainersMonitorImpl(null, dispatcher, null, metrics);
+    monitor.init(conf);
+  }
+
+  private Container newContainer(int memory, boolean opportunistic) {
+    ContainerId containerId = BuilderUtils.newContainerId(1, 1, 1, nextId++);
+    ContainerLaunchContext launchContext =
+        Records.newRecord(ContainerLaunchContext.class);
+    launchContext.setContainerId(containerId);
+    launchContext.setResource(BuilderUtils.newResource(memory, 1));
+    launchContext.setOpportunistic(opportunistic);
+    Container container = mock(Container.class);
+    when(container.getContainerID()).thenReturn(containerId);
+    when(container.getLaunchContext()).thenReturn(launchContext);
+    return container;
+  }
+
+  @Test
+  public void testOpportunisticContainersQueued() {
+    Container first = newContainer(2048, true);
+    Container second = newContainer(2048, true);
+    Container third = newContainer(1024, true);
+    Container fourth = newContainer(512, true);
+    assertTrue(monitor.admitContainer(first));
+    assertTrue(monitor.admitContainer(second));
+    assertFalse(monitor.admitContainer(third));
+    assertFalse(monitor.admitContainer(fourth));
+    assertEquals(2, monitor.getQueuedContainers());
+    assertEquals(2, monitor.getOpportunisticContainers());
+    verify(metrics, times(2)).queuedContainer();
+
+    // Both queued containers fit once the first one is done
+    assertFalse(monitor.releaseContainer(first.getContainerID()));
+    assertEquals(0, monitor.getQueuedContainers());
+    assertEquals(3, monitor.getOpportunisticContainers());
+    ArgumentCaptor<Event> events = ArgumentCaptor.forClass(Event.class);
+    verify(eventHandler, times(2)).handle(events.capture());
+    List<Event> launched = events.getAllValues();
+    assertEquals(ContainersLauncherEventType.LAUNCH_CONTAINER,
+        launched.get(0).getType());
+    assertSame(third, ((ContainersLauncherEvent) launched.get(0))
+        .getContainer());
+    assertSame(fourth, ((ContainersLauncherEvent) launched.get(1))
+        .getContainer());
+
+    // The launches that come back are let through
+    assertTrue(monitor.admitContainer(third));
+    assertTrue(monitor.admitContainer(fourth));
+    assertEquals(3, monitor.getOpportunisticContainers());
+  }
+
+  @Test
+  public void testKilledWhileQueued() {
+    assertTrue(monitor.admitContainer(newContainer(4096, true)));
+    Container queued = newContainer(1024, true);
+    assertFalse(monitor.admitContainer(queued));
+    assertTrue(monitor.releaseContainer(queued.getContainerID()));
+    assertEquals(0, monitor.getQueuedContainers());
+    verify(metrics).endQueuedContainer();
+    // Not known anymore
+    assertFalse(monitor.releaseContainer(queued.getContainerID()));
+  }
+
+  @Test
+  public void testGuaranteedPreemptsOpportunistic() {
+    Container older = newContainer(2048, true);
+    Container newer = newContainer(2048, true);
+    assertTrue(monitor.admitContainer(older));
+    assertTrue(monitor.admitContainer(newer));
+
+    // Guaranteed containers start right away, and the most recently started
+    // opportunistic container makes room for them
+    assertTrue(monitor.admitContainer(newContainer(1024, false)));
+    ArgumentCaptor<Event> events = ArgumentCaptor.forClass(Event.class);
+    verify(eventHandler).handle(events.capture());
+    assertEquals(ContainerEventType.KILL_CONTAINER,
+        events.getValue().getType());
+    assertEquals(newer.getContainerID(),
+        ((ContainerKillEvent) events.getValue()).getContainerID());
+    verify(metrics).preemptedContainer();
+
+    // The container being killed already makes room for this one
+    reset(eventHandler);
+    assertTrue(monitor.admitContainer(newContainer(1024, false)));
+    verify(eventHandler, never()).handle(any(Event.class));
+
+    // Opportunistic containers wait for the preempted one to be cleaned up
+    Container queued = newContainer(1024, true);
+    assertFalse(monitor.admitContainer(queued));
+    assertFalse(monitor.releaseContainer(newer.getContainerID()));
+    assertEquals(1, monitor.getOpportunisticContainers());
+    assertEquals(1, monitor.getQueuedContainers());
+  }
+}
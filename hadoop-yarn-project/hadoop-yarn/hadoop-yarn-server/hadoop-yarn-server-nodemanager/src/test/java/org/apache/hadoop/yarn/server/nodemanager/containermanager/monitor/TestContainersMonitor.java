@@ -126,7 +126,8 @@ public void testProcessTreeLimits() throws IOException {
       // vmem limit
       long limit = 700000;
 
-      ContainersMonitorImpl test = new ContainersMonitorImpl(null, null, null);
+      ContainersMonitorImpl test =
+          new ContainersMonitorImpl(null, null, null, null);
 
       // create process trees
       // tree rooted at 100 is over limit immediately, as it is
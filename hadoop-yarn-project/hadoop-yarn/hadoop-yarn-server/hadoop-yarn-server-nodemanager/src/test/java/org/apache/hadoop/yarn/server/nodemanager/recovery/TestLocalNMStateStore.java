@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.nodemanager.recovery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.security.Credentials;
+import org.apache.hadoop.security.token.Token;
+import org.apache.hadoop.security.token.TokenIdentifier;
+import org.apache.hadoop.yarn.YarnException;
+import org.apache.hadoop.yarn.api.records.ApplicationAccessType;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.factories.RecordFactory;
+import org.apache.hadoop.yarn.factory.providers.RecordFactoryProvider;
+import org.apache.hadoop.yarn.server.api.records.MasterKey;
+import org.apache.hadoop.yarn.server.api.records.impl.pb.MasterKeyPBImpl;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore.RecoveredApplication;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore.RecoveredContainerState;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore.RecoveredContainerStatus;
+import org.apache.hadoop.yarn.server.nodemanager.recovery.NMStateStore.RecoveredContainerTokensState;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the LocalNMStateStore recovers what it stored after a restart.
+ */
+public class TestLocalNMStateStore {
+
+  private static final File TEST_DIR = new File("target",
+      TestLocalNMStateStore.class.getName() + "-store");
+
+  private final RecordFactory recordFactory =
+      RecordFactoryProvider.getRecordFactory(null);
+  private Configuration conf;
+  private LocalNMStateStore store;
+
+  @Before
+  public void setup() {
+    FileUtil.fullyDelete(TEST_DIR);
+    conf = new YarnConfiguration();
+    conf.setBoolean(YarnConfiguration.NM_RECOVERY_ENABLED, true);
+    conf.set(YarnConfiguration.NM_RECOVERY_DIR, TEST_DIR.getAbsolutePath());
+    startStore();
+  }
+
+  @After
+  public void tearDown() {
+    if (store != null) {
+      store.stop();
+    }
+    FileUtil.fullyDelete(TEST_DIR);
+  }
+
+  private void startStore() {
+    store = new LocalNMStateStore();
+    store.init(conf);
+    store.start();
+  }
+
+  private void restartStore() {
+    store.stop();
+    startStore();
+  }
+
+  @Test
+  public void testPermissions() throws IOException {
+    FileSystem localFs = FileSystem.getLocal(conf);
+    Path storePath = new Path(TEST_DIR.getAbsolutePath());
+    assertEquals(new FsPermission((short) 0700),
+        localFs.getFileStatus(storePath).getPermission());
+    assertEquals(new FsPermission((short) 0600),
+        localFs.getFileStatus(new Path(storePath,
+            LocalNMStateStore.LOG_FILE_NAME)).getPermission());
+
+    store.stop();
+    store = null;
+    FileUtil.setPermission(TEST_DIR, new FsPermission((short) 0755));
+    LocalNMStateStore openStore = new LocalNMStateStore();
+    try {
+      openStore.init(conf);
+      fail("Store was opened in a directory readable by others");
+    } catch (YarnException e) {
+      assertTrue(e.getCause().getMessage().contains("must not be more open"));
+    }
+  }
+
+  @Test
+  public void testApplications() throws IOException {
+    assertTrue(store.loadApplicationsState().isEmpty());
+
+    ApplicationId appId = BuilderUtils.newApplicationId(1234, 1);
+    Credentials credentials = new Credentials();
+    Token<TokenIdentifier> token = new Token<TokenIdentifier>(
+        "identifier".getBytes(), "password".getBytes(), new Text("kind"),
+        new Text("service"));
+    credentials.addToken(new Text("alias"), token);
+    credentials.addSecretKey(new Text("secret"), "secret".getBytes());
+    Map<ApplicationAccessType, String> acls =
+        new HashMap<ApplicationAccessType, String>();
+    acls.put(ApplicationAccessType.VIEW_APP, "viewer");
+    acls.put(ApplicationAccessType.MODIFY_APP, "modifier");
+    store.storeApplication(appId, "user", credentials, acls);
+
+    restartStore();
+    List<RecoveredApplication> apps = store.loadApplicationsState();
+    assertEquals(1, apps.size());
+    RecoveredApplication app = apps.get(0);
+    assertEquals(appId, app.getAppId());
+    assertEquals("user", app.getUser());
+    assertEquals(token, app.getCredentials().getToken(new Text("alias")));
+    assertEquals("secret", new String(
+        app.getCredentials().getSecretKey(new Text("secret"))));
+    assertEquals(acls, app.getAcls());
+
+    store.removeApplication(appId);
+    restartStore();
+    assertTrue(store.loadApplicationsState().isEmpty());
+  }
+
+  @Test
+  public void testContainers() throws IOException {
+    assertTrue(store.loadContainersState().isEmpty());
+
+    ContainerId containerId = BuilderUtils.newContainerId(1234, 1, 1, 2);
+    ContainerLaunchContext launchContext =
+        recordFactory.newRecordInstance(ContainerLaunchContext.class);
+    launchContext.setContainerId(containerId);
+    launchContext.setUser("user");
+    launchContext.setResource(BuilderUtils.newResource(1024, 1));
+    store.storeContainer(launchContext);
+
+    restartStore();
+    RecoveredContainerState rcs = loadOnlyContainer();
+    assertEquals(RecoveredContainerStatus.REQUESTED, rcs.getStatus());
+    assertFalse(rcs.getKilled());
+    assertEquals(containerId, rcs.getLaunchContext().getContainerId());
+    assertEquals("user", rcs.getLaunchContext().getUser());
+    assertEquals(1024, rcs.getLaunchContext().getResource().getMemory());
+
+    store.storeContainerLaunched(containerId);
+    restartStore();
+    assertEquals(RecoveredContainerStatus.LAUNCHED,
+        loadOnlyContainer().getStatus());
+
+    store.storeContainerKilled(containerId);
+    restartStore();
+    rcs = loadOnlyContainer();
+    assertEquals(RecoveredContainerStatus.LAUNCHED, rcs.getStatus());
+    assertTrue(rcs.getKilled());
+
+    store.storeContainerCompleted(containerId, 143);
+    restartStore();
+    rcs = loadOnlyContainer();
+    assertEquals(RecoveredContainerStatus.COMPLETED, rcs.getStatus());
+    assertEquals(143, rcs.getExitCode());
+
+    store.removeContainer(containerId);
+    restartStore();
+    assertTrue(store.loadContainersState().isEmpty());
+  }
+
+  private RecoveredContainerState loadOnlyContainer() throws IOException {
+    List<RecoveredContainerState> containers = store.loadContainersState();
+    assertEquals(1, containers.size());
+    return containers.get(0);
+  }
+
+  @Test
+  public void testContainerTokens() throws IOException {
+    RecoveredContainerTokensState state = store.loadContainerTokensState();
+    assertNull(state.getCurrentMasterKey());
+    assertNull(state.getPreviousMasterKey());
+    assertTrue(state.getContainerMasterKeys().isEmpty());
+
+    MasterKey previousKey = newMasterKey(1);
+    MasterKey currentKey = newMasterKey(2);
+    ContainerId containerId = BuilderUtils.newContainerId(1234, 1, 1, 2);
+    store.storeContainerTokenPreviousMasterKey(previousKey);
+    store.storeContainerTokenCurrentMasterKey(currentKey);
+    store.storeContainerTokenMasterKey(containerId, previousKey);
+
+    restartStore();
+    state = store.loadContainerTokensState();
+    assertEquals(currentKey, state.getCurrentMasterKey());
+    assertEquals(previousKey, state.getPreviousMasterKey());
+    assertEquals(1, state.getContainerMasterKeys().size());
+    assertEquals(previousKey, state.getContainerMasterKeys().get(containerId));
+
+    store.removeContainerTokenMasterKey(containerId);
+    restartStore();
+    assertTrue(store.loadContainerTokensState().getContainerMasterKeys()
+        .isEmpty());
+  }
+
+  private static MasterKey newMasterKey(int keyId) {
+    MasterKey key = new MasterKeyPBImpl();
+    key.setKeyId(keyId);
+    key.setBytes(ByteBuffer.wrap(("key" + keyId).getBytes()));
+    return key;
+  }
+}
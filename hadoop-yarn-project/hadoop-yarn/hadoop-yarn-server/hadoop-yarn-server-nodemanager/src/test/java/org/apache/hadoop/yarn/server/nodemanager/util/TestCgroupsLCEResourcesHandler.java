@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.nodemanager.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the CgroupsLCEResourcesHandler against a fake cgroup hierarchy.
+ */
+public class TestCgroupsLCEResourcesHandler {
+
+  private static final File TEST_ROOT_DIR = new File("target",
+      TestCgroupsLCEResourcesHandler.class.getName() + "-cgroups");
+
+  private File cpuDir;
+  private File memoryDir;
+  private CgroupsLCEResourcesHandler handler;
+
+  @Before
+  public void setup() throws IOException {
+    FileUtil.fullyDelete(TEST_ROOT_DIR);
+    cpuDir = new File(TEST_ROOT_DIR, "cpu");
+    memoryDir = new File(TEST_ROOT_DIR, "memory");
+    assertTrue(new File(cpuDir, "hadoop-yarn").mkdirs());
+    assertTrue(new File(memoryDir, "hadoop-yarn").mkdirs());
+
+    handler = newHandler("cgroup " + cpuDir.getAbsolutePath()
+        + " cgroup rw,cpu,cpuacct 0 0\n"
+        + "cgroup " + memoryDir.getAbsolutePath()
+        + " cgroup rw,memory 0 0\n");
+  }
+
+  private CgroupsLCEResourcesHandler newHandler(String cgroupMounts)
+      throws IOException {
+    File mtab = new File(TEST_ROOT_DIR, "mounts");
+    write(mtab, "proc /proc proc rw 0 0\n" + cgroupMounts);
+
+    Configuration conf = new YarnConfiguration();
+    conf.setBoolean(
+        YarnConfiguration.NM_LINUX_CONTAINER_CGROUPS_STRICT_CPU_USAGE, true);
+    conf.setBoolean(
+        YarnConfiguration.NM_LINUX_CONTAINER_CGROUPS_MEMORY_ENABLED, true);
+    conf.setFloat(YarnConfiguration.NM_VCORES_PCORES_RATIO, 2.0f);
+    CgroupsLCEResourcesHandler resourcesHandler =
+        new CgroupsLCEResourcesHandler();
+    resourcesHandler.setConf(conf);
+    resourcesHandler.setMtabFile(mtab.getAbsolutePath());
+    resourcesHandler.init(null);
+    return resourcesHandler;
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.fullyDelete(TEST_ROOT_DIR);
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    FileWriter writer = new FileWriter(file);
+    try {
+      writer.write(contents);
+    } finally {
+      writer.close();
+    }
+  }
+
+  private static String read(File file) throws IOException {
+    BufferedReader in = new BufferedReader(new FileReader(file));
+    try {
+      return in.readLine();
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void testContainerLimits() throws IOException {
+    ContainerId containerId = BuilderUtils.newContainerId(1, 1, 1, 2);
+    handler.preExecute(containerId, BuilderUtils.newResource(2048, 3));
+
+    File cpuCgroup = new File(new File(cpuDir, "hadoop-yarn"),
+        containerId.toString());
+    File memoryCgroup = new File(new File(memoryDir, "hadoop-yarn"),
+        containerId.toString());
+    assertEquals("3072", read(new File(cpuCgroup, "cpu.shares")));
+    assertEquals("100000", read(new File(cpuCgroup, "cpu.cfs_period_us")));
+    assertEquals("150000", read(new File(cpuCgroup, "cpu.cfs_quota_us")));
+    assertEquals(String.valueOf(2048L << 20),
+        read(new File(memoryCgroup, "memory.limit_in_bytes")));
+
+    // The container executor adds the container to both cgroups
+    assertEquals("cgroups=" + cpuCgroup.getAbsolutePath() + "/cgroup.procs,"
+        + memoryCgroup.getAbsolutePath() + "/cgroup.procs",
+        handler.getResourcesOption(containerId));
+
+    // The cgroups are removed once the container is done. A real cgroup can
+    // be removed with its control files in it.
+    for (File cgroup : new File[] { cpuCgroup, memoryCgroup }) {
+      for (File file : cgroup.listFiles()) {
+        assertTrue(file.delete());
+      }
+    }
+    handler.postExecute(containerId);
+    assertFalse(cpuCgroup.exists());
+    assertFalse(memoryCgroup.exists());
+  }
+
+  @Test
+  public void testContainerUsage() throws IOException {
+    ContainerId containerId = BuilderUtils.newContainerId(1, 1, 1, 2);
+    handler.preExecute(containerId, BuilderUtils.newResource(1024, 1));
+    File cpuCgroup = new File(new File(cpuDir, "hadoop-yarn"),
+        containerId.toString());
+    File memoryCgroup = new File(new File(memoryDir, "hadoop-yarn"),
+        containerId.toString());
+
+    CgroupsResourceCalculatorProcessTree tree =
+        new CgroupsResourceCalculatorProcessTree("100", containerId, handler);
+
+    // Nothing is accounted before the kernel reports it
+    tree.updateProcessTree();
+    assertEquals(0, tree.getCumulativeRssmem());
+
+    write(new File(memoryCgroup, "memory.stat"), "cache 4096\n"
+        + "rss 8192\n" + "total_cache 4096\n" + "total_rss 1048576\n"
+        + "total_swap 2048\n");
+    write(new File(cpuCgroup, "cpuacct.usage"), "2500000000\n");
+    tree.updateProcessTree();
+    assertEquals(1048576, tree.getCumulativeRssmem());
+    assertEquals(1048576 + 2048, tree.getCumulativeVmem());
+    assertEquals(2500, tree.getCumulativeCpuTime());
+    // only read once so far
+    assertEquals(0, tree.getCumulativeRssmem(1));
+
+    tree.updateProcessTree();
+    assertEquals(1048576, tree.getCumulativeRssmem(1));
+    assertEquals(1048576 + 2048, tree.getCumulativeVmem(1));
+  }
+
+  @Test
+  public void testSeparateCpuacctHierarchy() throws IOException {
+    File cpuacctDir = new File(TEST_ROOT_DIR, "cpuacct");
+    assertTrue(new File(cpuacctDir, "hadoop-yarn").mkdirs());
+    handler = newHandler("cgroup " + cpuDir.getAbsolutePath()
+        + " cgroup rw,cpu 0 0\n"
+        + "cgroup " + cpuacctDir.getAbsolutePath()
+        + " cgroup rw,cpuacct 0 0\n"
+        + "cgroup " + memoryDir.getAbsolutePath()
+        + " cgroup rw,memory 0 0\n");
+
+    ContainerId containerId = BuilderUtils.newContainerId(1, 1, 1, 2);
+    handler.preExecute(containerId, BuilderUtils.newResource(1024, 1));
+    File cpuCgroup = new File(new File(cpuDir, "hadoop-yarn"),
+        containerId.toString());
+    File memoryCgroup = new File(new File(memoryDir, "hadoop-yarn"),
+        containerId.toString());
+    File cpuacctCgroup = new File(new File(cpuacctDir, "hadoop-yarn"),
+        containerId.toString());
+    assertTrue(cpuacctCgroup.isDirectory());
+    assertEquals("cgroups=" + cpuCgroup.getAbsolutePath() + "/cgroup.procs,"
+        + memoryCgroup.getAbsolutePath() + "/cgroup.procs,"
+        + cpuacctCgroup.getAbsolutePath() + "/cgroup.procs",
+        handler.getResourcesOption(containerId));
+
+    // The cpu time is read from the cpuacct cgroup
+    assertEquals(-1, handler.getCpuTime(containerId));
+    write(new File(cpuacctCgroup, "cpuacct.usage"), "1500000000\n");
+    assertEquals(1500, handler.getCpuTime(containerId));
+
+    for (File cgroup : new File[] { cpuCgroup, memoryCgroup,
+        cpuacctCgroup }) {
+      for (File file : cgroup.listFiles()) {
+        assertTrue(file.delete());
+      }
+    }
+    handler.postExecute(containerId);
+    assertFalse(cpuacctCgroup.exists());
+  }
+}
@@ -21,7 +21,9 @@
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -44,6 +46,7 @@
 import org.apache.hadoop.yarn.api.records.AMResponse;
 import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.NodeReport;
 import org.apache.hadoop.yarn.api.records.Resource;
@@ -82,6 +85,10 @@ public class ApplicationMasterService extends AbstractService implements
   private final ConcurrentMap<ApplicationAttemptId, AMResponse> responseMap =
       new ConcurrentHashMap<ApplicationAttemptId, AMResponse>();
   private final AMResponse reboot = recordFactory.newRecordInstance(AMResponse.class);
+  // Attempts whose AMs survived an RM restart and have not resynced yet
+  private final Set<ApplicationAttemptId> resyncAttempts =
+      Collections.newSetFromMap(
+          new ConcurrentHashMap<ApplicationAttemptId, Boolean>());
   private final RMContext rmContext;
 
   public ApplicationMasterService(RMContext rmContext, YarnScheduler scheduler) {
@@ -272,6 +279,19 @@ public AllocateResponse allocate(AllocateRequest request)
     // Allow only one thread in AM to do heartbeat at a time.
     synchronized (lastResponse) {
 
+      // The RM has restarted, the AM has to register again and send all its
+      // outstanding requests since the asks of this one are only a delta
+      if (resyncAttempts.remove(appAttemptId)) {
+        LOG.info("Resyncing " + appAttemptId);
+        AMResponse resync = recordFactory.newRecordInstance(AMResponse.class);
+        resync.setResync(true);
+        resync.setResponseId(lastResponse.getResponseId());
+        allocateResponse.setAMResponse(resync);
+        allocateResponse.setNumClusterNodes(
+            this.rScheduler.getNumClusterNodes());
+        return allocateResponse;
+      }
+
       // Send the status update to the appAttempt.
       this.rmContext.getDispatcher().getEventHandler().handle(
           new RMAppAttemptStatusupdateEvent(appAttemptId, request
@@ -280,6 +300,37 @@ public AllocateResponse allocate(AllocateRequest request)
       List<ResourceRequest> ask = request.getAskList();
       List<ContainerId> release = request.getReleaseList();
 
+      // Opportunistic containers are placed without the scheduler
+      List<Container> opportunisticContainers = null;
+      OpportunisticContainerAllocator opportunisticAllocator =
+          this.rmContext.getOpportunisticContainerAllocator();
+      if (opportunisticAllocator != null) {
+        List<ResourceRequest> guaranteedAsk = new ArrayList<ResourceRequest>();
+        List<ResourceRequest> opportunisticAsk =
+            new ArrayList<ResourceRequest>();
+        for (ResourceRequest req : ask) {
+          if (req.getOpportunistic()) {
+            opportunisticAsk.add(req);
+          } else {
+            guaranteedAsk.add(req);
+          }
+        }
+        List<ContainerId> guaranteedRelease = new ArrayList<ContainerId>();
+        List<ContainerId> opportunisticRelease = new ArrayList<ContainerId>();
+        for (ContainerId containerId : release) {
+          if (OpportunisticContainerAllocator.isOpportunistic(containerId)) {
+            opportunisticRelease.add(containerId);
+          } else {
+            guaranteedRelease.add(containerId);
+          }
+        }
+        ask = guaranteedAsk;
+        release = guaranteedRelease;
+        opportunisticAllocator.release(appAttemptId, opportunisticRelease);
+        opportunisticContainers =
+            opportunisticAllocator.allocate(appAttemptId, opportunisticAsk);
+      }
+
       // Send new requests to appAttempt.
       Allocation allocation =
           this.rScheduler.allocate(appAttemptId, ask, release);
@@ -314,7 +365,15 @@ public AllocateResponse allocate(AllocateRequest request)
         response.setUpdatedNodes(updatedNodeReports);
       }
 
-      response.setAllocatedContainers(allocation.getContainers());
+      if (opportunisticContainers == null
+          || opportunisticContainers.isEmpty()) {
+        response.setAllocatedContainers(allocation.getContainers());
+      } else {
+        List<Container> allocated =
+            new ArrayList<Container>(allocation.getContainers());
+        allocated.addAll(opportunisticContainers);
+        response.setAllocatedContainers(allocated);
+      }
       response.setCompletedContainersStatuses(appAttempt
           .pullJustFinishedContainers());
       response.setResponseId(lastResponse.getResponseId() + 1);
@@ -344,8 +403,18 @@ public void registerAppAttempt(ApplicationAttemptId attemptId) {
     responseMap.put(attemptId, response);
   }
 
+  /**
+   * Ask the AM of an attempt recovered after an RM restart to resync on its
+   * next allocate call.
+   */
+  public void resyncAppAttempt(ApplicationAttemptId attemptId) {
+    LOG.info("Resyncing " + attemptId + " on its next allocate");
+    resyncAttempts.add(attemptId);
+  }
+
   public void unregisterAttempt(ApplicationAttemptId attemptId) {
     responseMap.remove(attemptId);
+    resyncAttempts.remove(attemptId);
   }
 
   public void refreshServiceAcls(Configuration configuration, 
@@ -30,6 +30,7 @@
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.yarn.api.records.Resource;
 import com.google.common.annotations.VisibleForTesting;
 
 @InterfaceAudience.Private
@@ -43,6 +44,10 @@ public class ClusterMetrics {
   @Metric("# of lost NMs") MutableGaugeInt numLostNMs;
   @Metric("# of unhealthy NMs") MutableGaugeInt numUnhealthyNMs;
   @Metric("# of Rebooted NMs") MutableGaugeInt numRebootedNMs;
+  @Metric("Available memory in MB no container fits with")
+    MutableGaugeInt fragmentedMB;
+  @Metric("Available virtual cores no container fits with")
+    MutableGaugeInt fragmentedVirtualCores;
   
   private static final MetricsInfo RECORD_INFO = info("ClusterMetrics",
   "Metrics for the Yarn Cluster");
@@ -143,4 +148,24 @@ public void decrNumActiveNodes() {
     numActiveNMs.decr();
   }
 
+  //Resources left on nodes which have too little of another resource for
+  //any container to use them
+  public int getFragmentedMB() {
+    return fragmentedMB.value();
+  }
+
+  public int getFragmentedVirtualCores() {
+    return fragmentedVirtualCores.value();
+  }
+
+  public void incrFragmentedResource(Resource res) {
+    fragmentedMB.incr(res.getMemory());
+    fragmentedVirtualCores.incr(res.getVirtualCores());
+  }
+
+  public void decrFragmentedResource(Resource res) {
+    fragmentedMB.decr(res.getMemory());
+    fragmentedVirtualCores.decr(res.getVirtualCores());
+  }
+
 }
@@ -0,0 +1,379 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.resourcemanager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerStatus;
+import org.apache.hadoop.yarn.api.records.ContainerToken;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.api.records.NodeState;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.api.records.ResourceRequest;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.RMApp;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.event.RMAppAttemptContainerAcquiredEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.event.RMAppAttemptContainerFinishedEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeCleanContainerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerNodeReport;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerUtils;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.YarnScheduler;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.AppRemovedSchedulerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeRemovedSchedulerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.SchedulerEvent;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Places opportunistic containers without going through the scheduler.
+ *
+ * Every opportunistic request an AM makes is granted right away, on the
+ * running node with the least load that the container fits on, preferring
+ * the hosts the AM asked for. The load of a node is the number of containers
+ * the scheduler has running there plus the opportunistic containers placed
+ * on it that have not completed yet. Nodes are not checked for free
+ * resources: the NodeManager queues opportunistic containers until it has
+ * them. A node is given no more than a configured number of outstanding
+ * opportunistic containers, and an application attempt is granted no more
+ * than another.
+ *
+ * Unlike guaranteed requests, opportunistic ones are not kept: a request for
+ * N containers at <em>*</em> is granted N containers once, and the requests
+ * for hosts at the same priority only steer where they are placed.
+ *
+ * Opportunistic containers take their ids from the top of the id space of
+ * every attempt, so they are never confused with the scheduler's.
+ */
+@Private
+@Unstable
+public class OpportunisticContainerAllocator
+    implements EventHandler<SchedulerEvent> {
+
+  private static final Log LOG =
+      LogFactory.getLog(OpportunisticContainerAllocator.class);
+
+  static final int CONTAINER_ID_BASE = 1 << 30;
+
+  private final RMContext rmContext;
+  private final YarnScheduler scheduler;
+  private final int maxPerNode;
+  private final int maxPerApp;
+
+  private final Map<ApplicationAttemptId, Integer> lastContainerIds =
+      new HashMap<ApplicationAttemptId, Integer>();
+  // Number of outstanding opportunistic containers, by attempt
+  private final Map<ApplicationAttemptId, Integer> attemptContainers =
+      new HashMap<ApplicationAttemptId, Integer>();
+  // Outstanding opportunistic containers, by the node they were placed on
+  private final Map<NodeId, Set<ContainerId>> nodeContainers =
+      new HashMap<NodeId, Set<ContainerId>>();
+
+  public OpportunisticContainerAllocator(RMContext rmContext,
+      YarnScheduler scheduler, Configuration conf) {
+    this.rmContext = rmContext;
+    this.scheduler = scheduler;
+    this.maxPerNode = conf.getInt(
+        YarnConfiguration.RM_OPPORTUNISTIC_CONTAINERS_MAX_PER_NODE,
+        YarnConfiguration.DEFAULT_RM_OPPORTUNISTIC_CONTAINERS_MAX_PER_NODE);
+    this.maxPerApp = conf.getInt(
+        YarnConfiguration.RM_OPPORTUNISTIC_CONTAINERS_MAX_PER_APP,
+        YarnConfiguration.DEFAULT_RM_OPPORTUNISTIC_CONTAINERS_MAX_PER_APP);
+  }
+
+  public static boolean isOpportunistic(ContainerId containerId) {
+    return containerId.getId() >= CONTAINER_ID_BASE;
+  }
+
+  private static class NodeLoad implements Comparable<NodeLoad> {
+    final RMNode node;
+    int load;
+
+    NodeLoad(RMNode node, int load) {
+      this.node = node;
+      this.load = load;
+    }
+
+    @Override
+    public int compareTo(NodeLoad other) {
+      return load - other.load;
+    }
+  }
+
+  /**
+   * Place the opportunistic containers an application attempt asks for.
+   * @return the containers placed
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized List<Container> allocate(
+      ApplicationAttemptId attemptId, List<ResourceRequest> asks) {
+    List<Container> allocated = new ArrayList<Container>();
+    if (asks.isEmpty()) {
+      return allocated;
+    }
+    RMApp app = rmContext.getRMApps().get(attemptId.getApplicationId());
+    if (app == null) {
+      return allocated;
+    }
+
+    PriorityQueue<NodeLoad> nodes = new PriorityQueue<NodeLoad>();
+    Map<String, NodeLoad> nodesByHost = new HashMap<String, NodeLoad>();
+    for (RMNode node : rmContext.getRMNodes().values()) {
+      if (node.getState() != NodeState.RUNNING) {
+        continue;
+      }
+      NodeLoad nodeLoad = new NodeLoad(node, getLoad(node.getNodeID()));
+      nodes.add(nodeLoad);
+      nodesByHost.put(node.getHostName(), nodeLoad);
+    }
+
+    for (ResourceRequest ask : asks) {
+      if (!RMNode.ANY.equals(ask.getHostName())) {
+        continue;
+      }
+      List<NodeLoad> preferred = new ArrayList<NodeLoad>();
+      for (ResourceRequest hostAsk : asks) {
+        NodeLoad nodeLoad = nodesByHost.get(hostAsk.getHostName());
+        if (nodeLoad != null && hostAsk.getNumContainers() > 0
+            && hostAsk.getPriority().equals(ask.getPriority())) {
+          preferred.add(nodeLoad);
+        }
+      }
+
+      for (int i = 0; i < ask.getNumContainers(); ++i) {
+        Integer outstanding = attemptContainers.get(attemptId);
+        if (outstanding != null && outstanding >= maxPerApp) {
+          LOG.info(attemptId + " already has " + outstanding
+              + " opportunistic containers, not granting more");
+          return allocated;
+        }
+        NodeLoad nodeLoad = pickNode(preferred, nodes, ask.getCapability());
+        if (nodeLoad == null) {
+          LOG.info("No node for opportunistic container of " + attemptId
+              + " with capability " + ask.getCapability());
+          break;
+        }
+        Container container = newContainer(attemptId, app.getUser(),
+            nodeLoad.node, ask);
+        allocated.add(container);
+        nodeContainers.get(nodeLoad.node.getNodeID()).add(container.getId());
+        attemptContainers.put(attemptId,
+            outstanding == null ? 1 : outstanding + 1);
+
+        // Re-insert with the new load
+        nodes.remove(nodeLoad);
+        nodeLoad.load++;
+        nodes.add(nodeLoad);
+
+        // Let the attempt clean up the node when it is done
+        rmContext.getDispatcher().getEventHandler().handle(
+            new RMAppAttemptContainerAcquiredEvent(attemptId, container));
+      }
+    }
+    return allocated;
+  }
+
+  private int getLoad(NodeId nodeId) {
+    Set<ContainerId> containers = nodeContainers.get(nodeId);
+    if (containers == null) {
+      containers = new HashSet<ContainerId>();
+      nodeContainers.put(nodeId, containers);
+    }
+    int load = containers.size();
+    SchedulerNodeReport report = scheduler.getNodeReport(nodeId);
+    if (report != null) {
+      load += report.getNumContainers();
+    }
+    return load;
+  }
+
+  private NodeLoad pickNode(List<NodeLoad> preferred,
+      PriorityQueue<NodeLoad> nodes, Resource capability) {
+    NodeLoad best = null;
+    for (NodeLoad nodeLoad : preferred) {
+      if (canPlace(nodeLoad.node, capability)
+          && (best == null || nodeLoad.load < best.load)) {
+        best = nodeLoad;
+      }
+    }
+    if (best != null) {
+      return best;
+    }
+    // Skip over the nodes that are too small, least loaded first
+    List<NodeLoad> skipped = new ArrayList<NodeLoad>();
+    while (!nodes.isEmpty() && best == null) {
+      NodeLoad nodeLoad = nodes.poll();
+      skipped.add(nodeLoad);
+      if (canPlace(nodeLoad.node, capability)) {
+        best = nodeLoad;
+      }
+    }
+    nodes.addAll(skipped);
+    return best;
+  }
+
+  private boolean canPlace(RMNode node, Resource capability) {
+    return nodeContainers.get(node.getNodeID()).size() < maxPerNode
+        && fits(node, capability);
+  }
+
+  private static boolean fits(RMNode node, Resource capability) {
+    Resource total = node.getTotalCapability();
+    return capability.getMemory() <= total.getMemory()
+        && capability.getVirtualCores() <= total.getVirtualCores();
+  }
+
+  private Container newContainer(ApplicationAttemptId attemptId, String user,
+      RMNode node, ResourceRequest ask) {
+    Integer lastId = lastContainerIds.get(attemptId);
+    int id = lastId == null ? CONTAINER_ID_BASE : lastId + 1;
+    lastContainerIds.put(attemptId, id);
+    ContainerId containerId = BuilderUtils.newContainerId(attemptId, id);
+
+    ContainerToken containerToken = null;
+    if (UserGroupInformation.isSecurityEnabled()) {
+      containerToken = rmContext.getContainerTokenSecretManager()
+          .createContainerToken(containerId, node.getNodeID(), user,
+              ask.getCapability(), true);
+    }
+    Container container = BuilderUtils.newContainer(containerId,
+        node.getNodeID(), node.getHttpAddress(), ask.getCapability(),
+        ask.getPriority(), containerToken);
+    container.setOpportunistic(true);
+    return container;
+  }
+
+  /**
+   * Kill the opportunistic containers an application attempt released.
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized void release(ApplicationAttemptId attemptId,
+      List<ContainerId> release) {
+    for (ContainerId containerId : release) {
+      NodeId nodeId = removeContainer(containerId);
+      if (nodeId == null) {
+        LOG.info("Unknown opportunistic container " + containerId
+            + " released by " + attemptId);
+        continue;
+      }
+      rmContext.getDispatcher().getEventHandler().handle(
+          new RMNodeCleanContainerEvent(nodeId, containerId));
+      containerCompleted(SchedulerUtils.createAbnormalContainerStatus(
+          containerId, SchedulerUtils.RELEASED_CONTAINER));
+    }
+  }
+
+  /**
+   * Forget the opportunistic containers that completed on a node.
+   */
+  public synchronized void containersCompleted(NodeId nodeId,
+      List<ContainerStatus> completed) {
+    Set<ContainerId> containers = nodeContainers.get(nodeId);
+    if (containers == null) {
+      return;
+    }
+    for (ContainerStatus status : completed) {
+      if (containers.remove(status.getContainerId())) {
+        containerCompleted(status);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void containerCompleted(ContainerStatus status) {
+    ApplicationAttemptId attemptId =
+        status.getContainerId().getApplicationAttemptId();
+    Integer outstanding = attemptContainers.get(attemptId);
+    if (outstanding != null && outstanding > 1) {
+      attemptContainers.put(attemptId, outstanding - 1);
+    } else {
+      attemptContainers.remove(attemptId);
+    }
+    rmContext.getDispatcher().getEventHandler().handle(
+        new RMAppAttemptContainerFinishedEvent(
+            status.getContainerId().getApplicationAttemptId(), status));
+  }
+
+  private NodeId removeContainer(ContainerId containerId) {
+    for (Map.Entry<NodeId, Set<ContainerId>> entry
+        : nodeContainers.entrySet()) {
+      if (entry.getValue().remove(containerId)) {
+        return entry.getKey();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public synchronized void handle(SchedulerEvent event) {
+    switch (event.getType()) {
+    case NODE_REMOVED:
+      NodeId nodeId =
+          ((NodeRemovedSchedulerEvent) event).getRemovedRMNode().getNodeID();
+      Set<ContainerId> lost = nodeContainers.remove(nodeId);
+      if (lost != null) {
+        for (ContainerId containerId : lost) {
+          containerCompleted(SchedulerUtils.createAbnormalContainerStatus(
+              containerId, SchedulerUtils.LOST_CONTAINER));
+        }
+      }
+      break;
+    case APP_REMOVED:
+      ApplicationAttemptId attemptId =
+          ((AppRemovedSchedulerEvent) event).getApplicationAttemptID();
+      lastContainerIds.remove(attemptId);
+      attemptContainers.remove(attemptId);
+      // The NodeManagers clean up the containers of finished applications
+      for (Set<ContainerId> containers : nodeContainers.values()) {
+        for (Iterator<ContainerId> it = containers.iterator(); it.hasNext();) {
+          if (it.next().getApplicationAttemptId().equals(attemptId)) {
+            it.remove();
+          }
+        }
+      }
+      break;
+    default:
+      break;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int getOutstandingContainers(NodeId nodeId) {
+    Set<ContainerId> containers = nodeContainers.get(nodeId);
+    return containers == null ? 0 : containers.size();
+  }
+}
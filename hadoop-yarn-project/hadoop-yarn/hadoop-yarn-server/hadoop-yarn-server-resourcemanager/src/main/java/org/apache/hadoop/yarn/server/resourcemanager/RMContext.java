@@ -61,4 +61,10 @@ public interface RMContext {
   RMContainerTokenSecretManager getContainerTokenSecretManager();
 
   ClientToAMTokenSecretManagerInRM getClientToAMTokenSecretManager();
+
+  /**
+   * @return the allocator of opportunistic containers, or null if they are
+   *         left to the scheduler
+   */
+  OpportunisticContainerAllocator getOpportunisticContainerAllocator();
 }
\ No newline at end of file
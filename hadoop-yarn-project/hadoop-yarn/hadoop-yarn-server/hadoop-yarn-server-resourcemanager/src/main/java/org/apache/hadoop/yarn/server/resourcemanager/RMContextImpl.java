@@ -59,6 +59,7 @@ public class RMContextImpl implements RMContext {
   private final ApplicationTokenSecretManager appTokenSecretManager;
   private final RMContainerTokenSecretManager containerTokenSecretManager;
   private final ClientToAMTokenSecretManagerInRM clientToAMTokenSecretManager;
+  private OpportunisticContainerAllocator opportunisticContainerAllocator;
 
   public RMContextImpl(Dispatcher rmDispatcher,
       RMStateStore store,
@@ -167,4 +168,14 @@ public ClientToAMTokenSecretManagerInRM getClientToAMTokenSecretManager() {
   public void setStateStore(RMStateStore store) {
     stateStore = store;
   }
+
+  @Override
+  public OpportunisticContainerAllocator getOpportunisticContainerAllocator() {
+    return this.opportunisticContainerAllocator;
+  }
+
+  public void setOpportunisticContainerAllocator(
+      OpportunisticContainerAllocator opportunisticContainerAllocator) {
+    this.opportunisticContainerAllocator = opportunisticContainerAllocator;
+  }
 }
\ No newline at end of file
@@ -30,6 +30,7 @@
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
 import org.apache.hadoop.security.SecurityUtil;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.util.ExitUtil;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.ShutdownHookManager;
@@ -42,7 +43,9 @@
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.event.AsyncDispatcher;
 import org.apache.hadoop.yarn.event.Dispatcher;
+import org.apache.hadoop.yarn.event.Event;
 import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.hadoop.yarn.event.MultiThreadedDispatcher;
 import org.apache.hadoop.yarn.server.RMDelegationTokenSecretManager;
 import org.apache.hadoop.yarn.server.resourcemanager.amlauncher.AMLauncherEventType;
 import org.apache.hadoop.yarn.server.resourcemanager.amlauncher.ApplicationMasterLauncher;
@@ -59,6 +62,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttemptEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttemptEventType;
 import org.apache.hadoop.yarn.server.resourcemanager.rmcontainer.ContainerAllocationExpirer;
+import org.apache.hadoop.yarn.server.resourcemanager.rmcontainer.RMContainerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeEventType;
@@ -204,6 +208,28 @@ public synchronized void init(Configuration conf) {
     this.rmDispatcher.register(SchedulerEventType.class,
         this.schedulerDispatcher);
 
+    boolean opportunisticContainersEnabled = conf.getBoolean(
+        YarnConfiguration.RM_OPPORTUNISTIC_CONTAINERS_ENABLED,
+        YarnConfiguration.DEFAULT_RM_OPPORTUNISTIC_CONTAINERS_ENABLED);
+    if (opportunisticContainersEnabled
+        && !UserGroupInformation.isSecurityEnabled()) {
+      // The NodeManagers only trust the flag of a container token
+      LOG.warn("Opportunistic containers need security to be enabled,"
+          + " ignoring "
+          + YarnConfiguration.RM_OPPORTUNISTIC_CONTAINERS_ENABLED);
+      opportunisticContainersEnabled = false;
+    }
+    if (opportunisticContainersEnabled) {
+      OpportunisticContainerAllocator opportunisticContainerAllocator =
+          new OpportunisticContainerAllocator(this.rmContext, this.scheduler,
+              conf);
+      ((RMContextImpl) this.rmContext).setOpportunisticContainerAllocator(
+          opportunisticContainerAllocator);
+      // Also learns of lost nodes and removed attempts
+      this.rmDispatcher.register(SchedulerEventType.class,
+          opportunisticContainerAllocator);
+    }
+
     // Register event handler for RmAppEvents
     this.rmDispatcher.register(RMAppEventType.class,
         new ApplicationEventDispatcher(this.rmContext));
@@ -271,6 +297,12 @@ protected EventHandler<SchedulerEvent> createSchedulerEventDispatcher() {
   }
 
   protected Dispatcher createDispatcher() {
+    int dispatcherThreads = conf.getInt(
+        YarnConfiguration.RM_DISPATCHER_THREADS,
+        YarnConfiguration.DEFAULT_RM_DISPATCHER_THREADS);
+    if (dispatcherThreads > 1) {
+      return new RMEventDispatcher(dispatcherThreads);
+    }
     return new AsyncDispatcher();
   }
 
@@ -503,6 +535,38 @@ public void handle(RMNodeEvent event) {
     }
   }
   
+  /**
+   * Dispatches the events of different applications and nodes in parallel.
+   * The events of an application, of its attempts and of its containers are
+   * keyed by the application, so that they stay in order with each other.
+   * All other events, such as those of the RMAppManager and the state store,
+   * whose handlers are not safe to call concurrently, keep the order and the
+   * single thread they had with the {@link AsyncDispatcher}.
+   */
+  @Private
+  public static class RMEventDispatcher extends MultiThreadedDispatcher {
+
+    public RMEventDispatcher(int numThreads) {
+      super("RMDispatcher", numThreads);
+    }
+
+    @Override
+    protected Object getPartitionKey(Event event) {
+      if (event instanceof RMAppEvent) {
+        return ((RMAppEvent) event).getApplicationId();
+      } else if (event instanceof RMAppAttemptEvent) {
+        return ((RMAppAttemptEvent) event).getApplicationAttemptId()
+            .getApplicationId();
+      } else if (event instanceof RMNodeEvent) {
+        return ((RMNodeEvent) event).getNodeId();
+      } else if (event instanceof RMContainerEvent) {
+        return ((RMContainerEvent) event).getContainerId()
+            .getApplicationAttemptId().getApplicationId();
+      }
+      return null;
+    }
+  }
+
   protected void startWepApp() {
     Builder<ApplicationMasterService> builder = 
       WebApps.$for("cluster", ApplicationMasterService.class, masterService, "ws").at(
@@ -592,6 +656,10 @@ public void stop() {
     this.appTokenSecretManager.stop();
     this.containerTokenSecretManager.stop();
 
+    if (scheduler != null) {
+      scheduler.stop();
+    }
+
     /*synchronized(shutdown) {
       shutdown.set(true);
       shutdown.notifyAll();
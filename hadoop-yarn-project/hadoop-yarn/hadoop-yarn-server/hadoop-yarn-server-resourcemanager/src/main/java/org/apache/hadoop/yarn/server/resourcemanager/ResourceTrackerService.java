@@ -50,6 +50,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeEventType;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeImpl;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeReconnectEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeStartedEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeStatusEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.security.RMContainerTokenSecretManager;
 import org.apache.hadoop.yarn.server.resourcemanager.security.authorize.RMPolicyProvider;
@@ -71,11 +72,14 @@ public class ResourceTrackerService extends AbstractService implements
 
   private Server server;
   private InetSocketAddress resourceTrackerAddress;
+  private boolean workPreservingRecovery;
 
   private static final NodeHeartbeatResponse reboot = recordFactory
       .newRecordInstance(NodeHeartbeatResponse.class);
   private static final NodeHeartbeatResponse shutDown = recordFactory
   .newRecordInstance(NodeHeartbeatResponse.class);
+  private static final NodeHeartbeatResponse resync = recordFactory
+      .newRecordInstance(NodeHeartbeatResponse.class);
   
   static {
     HeartbeatResponse rebootResp = recordFactory
@@ -87,6 +91,11 @@ public class ResourceTrackerService extends AbstractService implements
         .newRecordInstance(HeartbeatResponse.class);
     decommissionedResp.setNodeAction(NodeAction.SHUTDOWN);
     shutDown.setHeartbeatResponse(decommissionedResp);
+
+    HeartbeatResponse resyncResp = recordFactory
+        .newRecordInstance(HeartbeatResponse.class);
+    resyncResp.setNodeAction(NodeAction.RESYNC);
+    resync.setHeartbeatResponse(resyncResp);
   }
 
   public ResourceTrackerService(RMContext rmContext,
@@ -106,6 +115,12 @@ public synchronized void init(Configuration conf) {
         YarnConfiguration.RM_RESOURCE_TRACKER_ADDRESS,
         YarnConfiguration.DEFAULT_RM_RESOURCE_TRACKER_ADDRESS,
         YarnConfiguration.DEFAULT_RM_RESOURCE_TRACKER_PORT);
+    workPreservingRecovery = conf.getBoolean(
+        YarnConfiguration.RECOVERY_ENABLED,
+        YarnConfiguration.DEFAULT_RM_RECOVERY_ENABLED)
+        && conf.getBoolean(
+            YarnConfiguration.RM_WORK_PRESERVING_RECOVERY_ENABLED,
+            YarnConfiguration.DEFAULT_RM_WORK_PRESERVING_RECOVERY_ENABLED);
 
     RackResolver.init(conf);
     super.init(conf);
@@ -181,12 +196,12 @@ public RegisterNodeManagerResponse registerNodeManager(
     RMNode oldNode = this.rmContext.getRMNodes().putIfAbsent(nodeId, rmNode);
     if (oldNode == null) {
       this.rmContext.getDispatcher().getEventHandler().handle(
-          new RMNodeEvent(nodeId, RMNodeEventType.STARTED));
+          new RMNodeStartedEvent(nodeId, request.getContainers()));
     } else {
       LOG.info("Reconnect from the node at: " + host);
       this.nmLivelinessMonitor.unregister(nodeId);
       this.rmContext.getDispatcher().getEventHandler().handle(
-          new RMNodeReconnectEvent(nodeId, rmNode));
+          new RMNodeReconnectEvent(nodeId, rmNode, request.getContainers()));
     }
 
     this.nmLivelinessMonitor.register(nodeId);
@@ -220,6 +235,14 @@ public NodeHeartbeatResponse nodeHeartbeat(NodeHeartbeatRequest request)
     RMNode rmNode = this.rmContext.getRMNodes().get(nodeId);
     if (rmNode == null) {
       /* node does not exist */
+      // The RM might have restarted, keep the node's containers running.
+      // A node this RM deactivated (lost, decommissioned...) must not bring
+      // back containers that were already reported as gone.
+      if (workPreservingRecovery && !this.rmContext.getInactiveRMNodes()
+          .containsKey(nodeId.getHost())) {
+        LOG.info("Node not found resyncing " + remoteNodeStatus.getNodeId());
+        return resync;
+      }
       LOG.info("Node not found rebooting " + remoteNodeStatus.getNodeId());
       return reboot;
     }
@@ -0,0 +1,343 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.resourcemanager.recovery;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.impl.pb.ApplicationAttemptStateDataPBImpl;
+import org.apache.hadoop.yarn.api.records.impl.pb.ApplicationStateDataPBImpl;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.proto.YarnProtos.ApplicationAttemptStateDataProto;
+import org.apache.hadoop.yarn.proto.YarnProtos.ApplicationStateDataProto;
+import org.apache.hadoop.yarn.server.recovery.KeyValueLog;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttempt;
+import org.apache.hadoop.yarn.util.ConverterUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+@Private
+@Unstable
+/**
+ * Stores RM state in a log-structured key-value store on local disk, keyed
+ * by application and attempt ids like {@link FileSystemRMStateStore}.
+ * Stores and removes are appended to a single log, and the ones that are
+ * made concurrently, e.g. by applications submitted at the same time, are
+ * committed with a single fsync. Attempt stores and application removals
+ * queued while a commit is running are committed together by the next one.
+ * The log is compacted in the background once enough of it is state of
+ * removed applications.
+ */
+public class LocalRMStateStore extends RMStateStore {
+
+  public static final Log LOG = LogFactory.getLog(LocalRMStateStore.class);
+
+  static final String LOG_FILE_NAME = "rmstate.log";
+
+  @VisibleForTesting
+  File storeDir;
+
+  private KeyValueLog kvLog;
+  private ExecutorService compactor;
+
+  // Attempt stores and application removals not committed yet
+  private final Queue<RMStateStoreEvent> pendingUpdates =
+      new ConcurrentLinkedQueue<RMStateStoreEvent>();
+  private ExecutorService committer;
+
+  @Override
+  public synchronized void initInternal(Configuration conf) throws Exception {
+    String dir = conf.get(YarnConfiguration.LOCAL_RM_STATE_STORE_DIR);
+    if (dir == null) {
+      throw new IOException(YarnConfiguration.LOCAL_RM_STATE_STORE_DIR
+          + " is not set");
+    }
+    storeDir = new File(dir);
+    if (!storeDir.isDirectory() && !storeDir.mkdirs()) {
+      throw new IOException("Could not create " + storeDir);
+    }
+    kvLog = new KeyValueLog(new File(storeDir, LOG_FILE_NAME),
+        conf.getLong(
+            YarnConfiguration.LOCAL_RM_STATE_STORE_COMPACTION_MIN_BYTES,
+            YarnConfiguration
+                .DEFAULT_LOCAL_RM_STATE_STORE_COMPACTION_MIN_BYTES),
+        conf.getFloat(
+            YarnConfiguration.LOCAL_RM_STATE_STORE_COMPACTION_GARBAGE_RATIO,
+            YarnConfiguration
+                .DEFAULT_LOCAL_RM_STATE_STORE_COMPACTION_GARBAGE_RATIO));
+    if (kvLog.needsCompaction()) {
+      kvLog.compact();
+    }
+    compactor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("LocalRMStateStore Compactor").setDaemon(true)
+        .build());
+    committer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("LocalRMStateStore Committer").setDaemon(true)
+        .build());
+  }
+
+  @Override
+  protected synchronized void closeInternal() throws Exception {
+    // commit what is queued before the log is closed
+    committer.shutdown();
+    if (!committer.awaitTermination(60, TimeUnit.SECONDS)) {
+      LOG.warn("Timed out waiting for the commits to " + storeDir);
+    }
+    compactor.shutdown();
+    if (!compactor.awaitTermination(60, TimeUnit.SECONDS)) {
+      LOG.warn("Timed out waiting for the compaction of " + storeDir);
+    }
+    kvLog.close();
+  }
+
+  @VisibleForTesting
+  KeyValueLog getKeyValueLog() {
+    return kvLog;
+  }
+
+  @Override
+  public synchronized RMState loadState() throws Exception {
+    try {
+      RMState state = new RMState();
+      List<ApplicationAttemptState> attempts =
+                                      new ArrayList<ApplicationAttemptState>();
+      for (Map.Entry<String, byte[]> entry : kvLog.load().entrySet()) {
+        String key = entry.getKey();
+        byte[] data = entry.getValue();
+        if (key.startsWith(ApplicationId.appIdStrPrefix)) {
+          ApplicationId appId = ConverterUtils.toApplicationId(key);
+          ApplicationStateDataPBImpl appStateData =
+              new ApplicationStateDataPBImpl(
+                                ApplicationStateDataProto.parseFrom(data));
+          ApplicationState appState = new ApplicationState(
+                               appStateData.getSubmitTime(),
+                               appStateData.getApplicationSubmissionContext());
+          assert appId.equals(appState.context.getApplicationId());
+          state.appState.put(appId, appState);
+        } else if (key.startsWith(
+                                ApplicationAttemptId.appAttemptIdStrPrefix)) {
+          ApplicationAttemptId attemptId =
+                          ConverterUtils.toApplicationAttemptId(key);
+          ApplicationAttemptStateDataPBImpl attemptStateData =
+              new ApplicationAttemptStateDataPBImpl(
+                  ApplicationAttemptStateDataProto.parseFrom(data));
+          attempts.add(new ApplicationAttemptState(
+                          attemptId, attemptStateData.getMasterContainer()));
+        } else {
+          LOG.info("Unknown key: " + key);
+        }
+      }
+      LOG.info("Loaded " + state.appState.size() + " applications and "
+          + attempts.size() + " attempts from " + storeDir);
+
+      // go through all attempts and add them to their apps
+      long seq = 0;
+      for (ApplicationAttemptState attemptState : attempts) {
+        ApplicationId appId = attemptState.getAttemptId().getApplicationId();
+        ApplicationState appState = state.appState.get(appId);
+        if (appState != null) {
+          appState.attempts.put(attemptState.getAttemptId(), attemptState);
+        } else {
+          // the RM might have stopped between storing an attempt and
+          // removing its application
+          LOG.info("Application not found for attempt: "
+                    + attemptState.getAttemptId());
+          seq = kvLog.delete(attemptState.getAttemptId().toString());
+        }
+      }
+      kvLog.sync(seq);
+
+      return state;
+    } catch (Exception e) {
+      LOG.error("Failed to load state.", e);
+      throw e;
+    }
+  }
+
+  // Not synchronized, so that concurrent stores are committed together
+
+  @Override
+  public void storeApplicationState(String appId,
+                                     ApplicationStateDataPBImpl appStateDataPB)
+                                     throws Exception {
+    try {
+      kvLog.sync(kvLog.put(appId, appStateDataPB.getProto().toByteArray()));
+    } catch (Exception e) {
+      LOG.info("Error storing info for app: " + appId, e);
+      throw e;
+    }
+  }
+
+  /**
+   * Queue the attempt for the next group commit instead of the store
+   * dispatcher, which would sync every attempt on its own.
+   */
+  @Override
+  public void storeApplicationAttempt(RMAppAttempt appAttempt) {
+    ApplicationAttemptState attemptState = new ApplicationAttemptState(
+        appAttempt.getAppAttemptId(), appAttempt.getMasterContainer());
+    commitLater(new RMStateStoreAppAttemptEvent(attemptState));
+  }
+
+  /**
+   * Queue the removal for the next group commit instead of the store
+   * dispatcher, which would sync every removal on its own.
+   */
+  @Override
+  public void removeApplication(ApplicationState appState) {
+    commitLater(new RMStateStoreRemoveAppEvent(appState));
+  }
+
+  private void commitLater(RMStateStoreEvent update) {
+    pendingUpdates.add(update);
+    committer.execute(new Runnable() {
+      @Override
+      public void run() {
+        commitPendingUpdates();
+      }
+    });
+  }
+
+  /**
+   * Append all queued updates and sync them at once, then notify the
+   * stored attempts. A run finding the queue empty had its updates
+   * committed by an earlier one.
+   */
+  private void commitPendingUpdates() {
+    List<RMStateStoreEvent> updates = new ArrayList<RMStateStoreEvent>();
+    List<ApplicationAttemptId> storedAttempts =
+        new ArrayList<ApplicationAttemptId>();
+    RMStateStoreEvent update;
+    while ((update = pendingUpdates.poll()) != null) {
+      updates.add(update);
+      if (update instanceof RMStateStoreAppAttemptEvent) {
+        storedAttempts.add(((RMStateStoreAppAttemptEvent) update)
+            .getAppAttemptState().getAttemptId());
+      }
+    }
+    if (updates.isEmpty()) {
+      return;
+    }
+
+    Exception storedException = null;
+    boolean removed = false;
+    try {
+      long seq = 0;
+      for (RMStateStoreEvent u : updates) {
+        if (u instanceof RMStateStoreAppAttemptEvent) {
+          ApplicationAttemptState attemptState =
+              ((RMStateStoreAppAttemptEvent) u).getAppAttemptState();
+          ApplicationAttemptStateDataPBImpl attemptStateData =
+              new ApplicationAttemptStateDataPBImpl();
+          attemptStateData.setAttemptId(attemptState.getAttemptId());
+          attemptStateData.setMasterContainer(
+              attemptState.getMasterContainer());
+          LOG.info("Storing info for attempt: "
+              + attemptState.getAttemptId());
+          seq = kvLog.put(attemptState.getAttemptId().toString(),
+              attemptStateData.getProto().toByteArray());
+        } else {
+          ApplicationState appState =
+              ((RMStateStoreRemoveAppEvent) u).getAppState();
+          LOG.info("Removing info for app: " + appState.getAppId());
+          seq = appendRemove(appState);
+          removed = true;
+        }
+      }
+      kvLog.sync(seq);
+    } catch (Exception e) {
+      LOG.error("Error committing " + updates.size() + " updates to "
+          + storeDir, e);
+      storedException = e;
+    }
+    for (ApplicationAttemptId attemptId : storedAttempts) {
+      notifyDoneStoringApplicationAttempt(attemptId, storedException);
+    }
+    if (removed) {
+      compactIfNeeded();
+    }
+  }
+
+  @Override
+  public void storeApplicationAttemptState(String attemptId,
+                          ApplicationAttemptStateDataPBImpl attemptStateDataPB)
+                          throws Exception {
+    try {
+      kvLog.sync(kvLog.put(attemptId,
+          attemptStateDataPB.getProto().toByteArray()));
+    } catch (Exception e) {
+      LOG.info("Error storing info for attempt: " + attemptId, e);
+      throw e;
+    }
+  }
+
+  @Override
+  public void removeApplicationState(ApplicationState appState)
+                                                            throws Exception {
+    kvLog.sync(appendRemove(appState));
+    compactIfNeeded();
+  }
+
+  /**
+   * Append the deletes of an application and its attempts, so that they
+   * are committed together.
+   * @return the sequence number to sync on
+   */
+  private long appendRemove(ApplicationState appState) throws IOException {
+    long seq = kvLog.delete(appState.getAppId().toString());
+    for (ApplicationAttemptId attemptId : appState.attempts.keySet()) {
+      seq = kvLog.delete(attemptId.toString());
+    }
+    return seq;
+  }
+
+  private void compactIfNeeded() {
+    if (kvLog.needsCompaction()) {
+      // Off the calling thread, so that stores are not held up meanwhile
+      compactor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (kvLog.needsCompaction()) {
+              kvLog.compact();
+            }
+          } catch (IOException e) {
+            LOG.error("Failed to compact " + storeDir, e);
+          }
+        }
+      });
+    }
+  }
+}
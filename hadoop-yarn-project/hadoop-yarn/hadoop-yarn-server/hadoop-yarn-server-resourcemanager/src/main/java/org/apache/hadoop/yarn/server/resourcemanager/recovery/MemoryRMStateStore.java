@@ -57,7 +57,7 @@ protected synchronized void closeInternal() throws Exception {
   }
 
   @Override
-  public void storeApplicationState(String appId, 
+  public synchronized void storeApplicationState(String appId, 
                                      ApplicationStateDataPBImpl appStateData)
       throws Exception {
     ApplicationState appState = new ApplicationState(
@@ -169,8 +169,10 @@ public synchronized void close() throws Exception {
    * Blocking API
    * ResourceManager services use this to store the application's state
    * This must not be called on the dispatcher thread
+   * It may be called concurrently, stores that need to serialize their
+   * writes must synchronize storeApplicationState themselves
    */
-  public synchronized void storeApplication(RMApp app) throws Exception {
+  public void storeApplication(RMApp app) throws Exception {
     ApplicationSubmissionContext context = app
                                             .getApplicationSubmissionContext();
     assert context instanceof ApplicationSubmissionContextPBImpl;
@@ -304,8 +306,8 @@ private synchronized void handleStoreEvent(RMStateStoreEvent event) {
    * notify the application attempt about operation completion 
    * @param appAttempt attempt that has been saved
    */
-  private void notifyDoneStoringApplicationAttempt(ApplicationAttemptId attemptId,
-                                                  Exception storedException) {
+  protected void notifyDoneStoringApplicationAttempt(
+      ApplicationAttemptId attemptId, Exception storedException) {
     rmDispatcher.getEventHandler().handle(
         new RMAppAttemptStoredEvent(attemptId, storedException));
   }
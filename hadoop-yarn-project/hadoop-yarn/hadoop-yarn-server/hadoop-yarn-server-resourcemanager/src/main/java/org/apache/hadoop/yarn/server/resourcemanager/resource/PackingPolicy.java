@@ -0,0 +1,109 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.apache.hadoop.yarn.server.resourcemanager.resource;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+import org.apache.hadoop.yarn.api.records.Resource;
+
+/**
+ * Scores how well a container of a given size packs on a node, looking at
+ * both memory and cpu. Scores are between 0, for a container which does
+ * not fit, and 1, for the best possible fit. Both dimensions are
+ * normalized by the capability of the node so that they weigh the same.
+ */
+@Private
+@Unstable
+public enum PackingPolicy {
+
+  /**
+   * Every node the container fits on is as good as any other.
+   */
+  NONE {
+    @Override
+    float fit(float[] required, float[] available) {
+      return 1.0f;
+    }
+  },
+
+  /**
+   * Prefers the nodes which the container fills up the most, leaving the
+   * emptier ones for larger containers.
+   */
+  BEST_FIT {
+    @Override
+    float fit(float[] required, float[] available) {
+      float score = 0.0f;
+      for (int i = 0; i < required.length; ++i) {
+        score += (available[i] > 0) ? required[i] / available[i] : 1.0f;
+      }
+      return score / required.length;
+    }
+  },
+
+  /**
+   * Prefers the nodes on which the resources left have the same shape as
+   * the container, i.e. the cosine of the two normalized vectors, so that
+   * memory-heavy containers do not exhaust the memory of nodes with idle
+   * cpus and vice versa.
+   */
+  DOT_PRODUCT {
+    @Override
+    float fit(float[] required, float[] available) {
+      float dot = 0.0f;
+      float requiredNorm = 0.0f;
+      float availableNorm = 0.0f;
+      for (int i = 0; i < required.length; ++i) {
+        dot += required[i] * available[i];
+        requiredNorm += required[i] * required[i];
+        availableNorm += available[i] * available[i];
+      }
+      if (requiredNorm == 0 || availableNorm == 0) {
+        return 1.0f;
+      }
+      return dot / (float) Math.sqrt(requiredNorm * availableNorm);
+    }
+  };
+
+  abstract float fit(float[] required, float[] available);
+
+  /**
+   * Score a container of size <code>required</code> on a node with
+   * <code>available</code> resources out of <code>capability</code>.
+   */
+  public float score(Resource required, Resource available,
+      Resource capability) {
+    if (!Resources.fitsIn(required, available)) {
+      return 0.0f;
+    }
+    return fit(normalize(required, capability),
+        normalize(available, capability));
+  }
+
+  private static float[] normalize(Resource resource, Resource capability) {
+    return new float[] {
+        normalize(resource.getMemory(), capability.getMemory()),
+        normalize(resource.getVirtualCores(), capability.getVirtualCores())
+    };
+  }
+
+  private static float normalize(int value, int capability) {
+    return (capability > 0) ? (float) value / capability : 0.0f;
+  }
+}
@@ -166,6 +166,15 @@ public static boolean equals(Resource lhs, Resource rhs) {
     return lhs.equals(rhs);
   }
 
+  /**
+   * Whether <code>smaller</code> fits in <code>bigger</code> in every
+   * dimension, regardless of the {@link ResourceCalculator} in use.
+   */
+  public static boolean fitsIn(Resource smaller, Resource bigger) {
+    return smaller.getMemory() <= bigger.getMemory() &&
+        smaller.getVirtualCores() <= bigger.getVirtualCores();
+  }
+
   public static boolean lessThan(
       ResourceCalculator resourceCalculator, 
       Resource clusterResource,
@@ -61,6 +61,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttemptImpl;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeCleanAppEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.ResourceScheduler;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.YarnScheduler;
 import org.apache.hadoop.yarn.state.InvalidStateTransitonException;
 import org.apache.hadoop.yarn.state.MultipleArcTransition;
@@ -99,6 +100,8 @@ public class RMAppImpl implements RMApp, Recoverable {
   private long startTime;
   private long finishTime;
   private RMAppAttempt currentAttempt;
+  // Whether the recovered current attempt resumes instead of a new one
+  private boolean resumeCurrentAttempt = false;
   @SuppressWarnings("rawtypes")
   private EventHandler handler;
   private static final FinalTransition FINAL_TRANSITION = new FinalTransition();
@@ -525,11 +528,24 @@ public void recover(RMState state) {
     ApplicationState appState = state.getApplicationState().get(getApplicationId());
     LOG.info("Recovering app: " + getApplicationId() + " with " + 
             + appState.getAttemptCount() + " attempts");
+    // the AM can only go on if the scheduler keeps its containers
+    boolean workPreserving = conf.getBoolean(
+        YarnConfiguration.RM_WORK_PRESERVING_RECOVERY_ENABLED,
+        YarnConfiguration.DEFAULT_RM_WORK_PRESERVING_RECOVERY_ENABLED)
+        && scheduler instanceof ResourceScheduler
+        && ((ResourceScheduler) scheduler).isContainerRecoverySupported();
     for(int i=0; i<appState.getAttemptCount(); ++i) {
       // create attempt
       createNewAttempt(false);
-      // recover attempt
-      ((RMAppAttemptImpl) currentAttempt).recover(state);
+      RMAppAttemptImpl attempt = (RMAppAttemptImpl) currentAttempt;
+      // the AM of the last attempt may still be running
+      if (workPreserving && i == appState.getAttemptCount() - 1
+          && attempt.resume(state)) {
+        resumeCurrentAttempt = true;
+      } else {
+        // recover attempt
+        attempt.recover(state);
+      }
     }
   }
 
@@ -575,6 +591,13 @@ public void transition(RMAppImpl app, RMAppEvent event) {
   
   private static final class StartAppAttemptTransition extends RMAppTransition {
     public void transition(RMAppImpl app, RMAppEvent event) {
+      if (app.resumeCurrentAttempt) {
+        app.resumeCurrentAttempt = false;
+        app.handler.handle(new RMAppAttemptEvent(
+            app.currentAttempt.getAppAttemptId(),
+            RMAppAttemptEventType.START));
+        return;
+      }
       app.createNewAttempt(true);
     };
   }
@@ -132,6 +132,8 @@ public class RMAppAttemptImpl implements RMAppAttempt, Recoverable {
   private final List<ContainerStatus> justFinishedContainers =
     new ArrayList<ContainerStatus>();
   private Container masterContainer;
+  // Whether the AM survived an RM restart and is expected to resync
+  private boolean resumed = false;
 
   private float progress = 0;
   private String host = "N/A";
@@ -176,7 +178,7 @@ RMAppAttemptEventType.START, new AttemptStartedTransition())
           RMAppAttemptEventType.APP_REJECTED, new AppRejectedTransition())
       .addTransition(RMAppAttemptState.SUBMITTED, 
           EnumSet.of(RMAppAttemptState.LAUNCHED_UNMANAGED_SAVING,
-                     RMAppAttemptState.SCHEDULED),
+                     RMAppAttemptState.SCHEDULED, RMAppAttemptState.RUNNING),
           RMAppAttemptEventType.APP_ACCEPTED, 
           new ScheduleTransition())
       .addTransition(RMAppAttemptState.SUBMITTED, RMAppAttemptState.KILLED,
@@ -257,6 +259,9 @@ RMAppAttemptEventType.REGISTERED, new AMRegisteredTransition())
           RMAppAttemptEventType.UNREGISTERED, new AMUnregisteredTransition())
       .addTransition(RMAppAttemptState.RUNNING, RMAppAttemptState.RUNNING,
           RMAppAttemptEventType.STATUS_UPDATE, new StatusUpdateTransition())
+      // AM registering again after an RM restart
+      .addTransition(RMAppAttemptState.RUNNING, RMAppAttemptState.RUNNING,
+          RMAppAttemptEventType.REGISTERED, new AMRegisteredTransition())
       .addTransition(RMAppAttemptState.RUNNING, RMAppAttemptState.RUNNING,
           RMAppAttemptEventType.CONTAINER_ALLOCATED)
       .addTransition(
@@ -665,6 +670,30 @@ public void recover(RMState state) {
                                  RMAppAttemptEventType.RECOVER));
   }
   
+  /**
+   * Recover the last attempt of an application whose AM may have kept
+   * running while the RM restarted. On start the attempt goes straight to
+   * RUNNING and the AM is asked to resync instead of being replaced.
+   * 
+   * @return false if the attempt has no AM container to resume
+   */
+  public boolean resume(RMState state) {
+    ApplicationState appState = 
+        state.getApplicationState().get(getAppAttemptId().getApplicationId());
+    ApplicationAttemptState attemptState = appState.getAttempt(getAppAttemptId());
+    assert attemptState != null;
+    if (attemptState.getMasterContainer() == null) {
+      return false;
+    }
+    setMasterContainer(attemptState.getMasterContainer());
+    LOG.info("Resuming attempt: AppId: "
+             + getAppAttemptId().getApplicationId()
+             + " AttemptId: " + getAppAttemptId()
+             + " MasterContainer: " + masterContainer);
+    resumed = true;
+    return true;
+  }
+
   private static class BaseTransition implements
       SingleArcTransition<RMAppAttemptImpl, RMAppAttemptEvent> {
 
@@ -685,6 +714,10 @@ public void transition(RMAppAttemptImpl appAttempt,
       // Register with the ApplicationMasterService
       appAttempt.masterService
           .registerAppAttempt(appAttempt.applicationAttemptId);
+      if (appAttempt.resumed) {
+        appAttempt.masterService
+            .resyncAppAttempt(appAttempt.applicationAttemptId);
+      }
 
       // Add the application to the scheduler
       appAttempt.eventHandler.handle(
@@ -729,6 +762,15 @@ public void transition(RMAppAttemptImpl appAttempt,
     @Override
     public RMAppAttemptState transition(RMAppAttemptImpl appAttempt,
         RMAppAttemptEvent event) {
+      if (appAttempt.resumed) {
+        appAttempt.eventHandler.handle(new RMAppEvent(event
+            .getApplicationAttemptId().getApplicationId(),
+            RMAppEventType.APP_ACCEPTED));
+
+        // The AM container is already running, wait for the AM to resync
+        appAttempt.attemptLaunched();
+        return RMAppAttemptState.RUNNING;
+      }
       if (!appAttempt.submissionContext.getUnmanagedAM()) {
         // Send the acceptance to the app
         appAttempt.eventHandler.handle(new RMAppEvent(event
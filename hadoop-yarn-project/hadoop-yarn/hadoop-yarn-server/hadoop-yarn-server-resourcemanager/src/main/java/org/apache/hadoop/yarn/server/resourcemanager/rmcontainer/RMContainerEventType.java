@@ -33,5 +33,8 @@ public enum RMContainerEventType {
   RELEASED,
 
   // Source: ContainerAllocationExpirer  
-  EXPIRE
+  EXPIRE,
+
+  // Source: Scheduler, for containers still running after an RM restart
+  RECOVER
 }
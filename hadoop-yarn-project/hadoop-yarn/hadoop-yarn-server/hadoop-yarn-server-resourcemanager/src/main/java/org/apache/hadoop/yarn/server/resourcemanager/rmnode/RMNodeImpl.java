@@ -19,6 +19,7 @@
 package org.apache.hadoop.yarn.server.resourcemanager.rmnode;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
@@ -36,6 +37,7 @@
 import org.apache.hadoop.classification.InterfaceStability.Unstable;
 import org.apache.hadoop.net.Node;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.ContainerState;
 import org.apache.hadoop.yarn.api.records.ContainerStatus;
@@ -50,6 +52,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.ClusterMetrics;
 import org.apache.hadoop.yarn.server.resourcemanager.NodesListManagerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.NodesListManagerEventType;
+import org.apache.hadoop.yarn.server.resourcemanager.OpportunisticContainerAllocator;
 import org.apache.hadoop.yarn.server.resourcemanager.RMContext;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeAddedSchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeRemovedSchedulerEvent;
@@ -398,10 +401,20 @@ public static class AddNodeTransition implements
 
     @Override
     public void transition(RMNodeImpl rmNode, RMNodeEvent event) {
+      // Containers still running after an RM restart are not new launches
+      List<Container> containers = Collections.emptyList();
+      if (event instanceof RMNodeStartedEvent) {
+        containers = ((RMNodeStartedEvent) event).getContainers();
+        for (Container container : containers) {
+          rmNode.justLaunchedContainers.put(container.getId(),
+              container.getContainerStatus());
+        }
+      }
+
       // Inform the scheduler
 
       rmNode.context.getDispatcher().getEventHandler().handle(
-          new NodeAddedSchedulerEvent(rmNode));
+          new NodeAddedSchedulerEvent(rmNode, containers));
       
       String host = rmNode.nodeId.getHost();
       if (rmNode.context.getInactiveRMNodes().containsKey(host)) {
@@ -421,12 +434,23 @@ public static class ReconnectNodeTransition implements
 
     @Override
     public void transition(RMNodeImpl rmNode, RMNodeEvent event) {
+      RMNodeReconnectEvent reconnectEvent = (RMNodeReconnectEvent) event;
+      RMNode newNode = reconnectEvent.getReconnectedNode();
+      if (rmNode.getState() == NodeState.RUNNING
+          && !reconnectEvent.getContainers().isEmpty()
+          && rmNode.getTotalCapability().equals(newNode.getTotalCapability())
+          && rmNode.getHttpPort() == newNode.getHttpPort()) {
+        // The NM restarted and recovered its containers, so the scheduler
+        // keeps them. Ones that completed meanwhile come in the heartbeats.
+        rmNode.getLastHeartBeatResponse().setResponseId(0);
+        return;
+      }
+
       // Kill containers since node is rejoining.
       rmNode.nodeUpdateQueue.clear();
       rmNode.context.getDispatcher().getEventHandler().handle(
           new NodeRemovedSchedulerEvent(rmNode));
 
-      RMNode newNode = ((RMNodeReconnectEvent)event).getReconnectedNode();
       if (rmNode.getTotalCapability().equals(newNode.getTotalCapability())
           && rmNode.getHttpPort() == newNode.getHttpPort()) {
         // Reset heartbeat ID since node just restarted.
@@ -533,6 +557,8 @@ public NodeState transition(RMNodeImpl rmNode, RMNodeEvent event) {
           new ArrayList<ContainerStatus>();
       List<ContainerStatus> completedContainers = 
           new ArrayList<ContainerStatus>();
+      List<ContainerStatus> completedOpportunisticContainers =
+          new ArrayList<ContainerStatus>();
       for (ContainerStatus remoteContainer : statusEvent.getContainers()) {
         ContainerId containerId = remoteContainer.getContainerId();
         
@@ -552,6 +578,14 @@ public NodeState transition(RMNodeImpl rmNode, RMNodeEvent event) {
           continue;
         }
 
+        // Opportunistic containers are tracked outside the scheduler
+        if (OpportunisticContainerAllocator.isOpportunistic(containerId)) {
+          if (remoteContainer.getState() == ContainerState.COMPLETE) {
+            completedOpportunisticContainers.add(remoteContainer);
+          }
+          continue;
+        }
+
         // Process running containers
         if (remoteContainer.getState() == ContainerState.RUNNING) {
           if (!rmNode.justLaunchedContainers.containsKey(containerId)) {
@@ -565,6 +599,13 @@ public NodeState transition(RMNodeImpl rmNode, RMNodeEvent event) {
           completedContainers.add(remoteContainer);
         }
       }
+      OpportunisticContainerAllocator opportunisticAllocator =
+          rmNode.context.getOpportunisticContainerAllocator();
+      if (opportunisticAllocator != null
+          && !completedOpportunisticContainers.isEmpty()) {
+        opportunisticAllocator.containersCompleted(rmNode.nodeId,
+            completedOpportunisticContainers);
+      }
       if(newlyLaunchedContainers.size() != 0 
           || completedContainers.size() != 0) {
         rmNode.nodeUpdateQueue.add(new UpdatedContainerInfo
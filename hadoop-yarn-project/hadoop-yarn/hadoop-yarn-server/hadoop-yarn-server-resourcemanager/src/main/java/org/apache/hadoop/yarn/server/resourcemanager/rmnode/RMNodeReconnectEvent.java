@@ -18,17 +18,35 @@
 
 package org.apache.hadoop.yarn.server.resourcemanager.rmnode;
 
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.NodeId;
 
 public class RMNodeReconnectEvent extends RMNodeEvent {
   private RMNode reconnectedNode;
+  private final List<Container> containers;
 
   public RMNodeReconnectEvent(NodeId nodeId, RMNode newNode) {
+    this(nodeId, newNode, Collections.<Container>emptyList());
+  }
+
+  public RMNodeReconnectEvent(NodeId nodeId, RMNode newNode,
+      List<Container> containers) {
     super(nodeId, RMNodeEventType.RECONNECTED);
     reconnectedNode = newNode;
+    this.containers = containers;
   }
 
   public RMNode getReconnectedNode() {
     return reconnectedNode;
   }
+
+  /**
+   * @return the containers the node was running when it registered again
+   */
+  public List<Container> getContainers() {
+    return containers;
+  }
 }
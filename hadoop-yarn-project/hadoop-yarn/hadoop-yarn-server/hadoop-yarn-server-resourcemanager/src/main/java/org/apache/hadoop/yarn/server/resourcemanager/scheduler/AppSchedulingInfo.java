@@ -19,6 +19,7 @@
 package org.apache.hadoop.yarn.server.resourcemanager.scheduler;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,8 +60,8 @@ public class AppSchedulingInfo {
 
   final Set<Priority> priorities = new TreeSet<Priority>(
       new org.apache.hadoop.yarn.server.resourcemanager.resource.Priority.Comparator());
-  final Map<Priority, Map<String, ResourceRequest>> requests = 
-    new HashMap<Priority, Map<String, ResourceRequest>>();
+  final Map<Priority, PriorityRequests> requests =
+    new HashMap<Priority, PriorityRequests>();
 
   //private final ApplicationStore store;
   private final ActiveUsersManager activeUsersManager;
@@ -78,6 +79,62 @@ public AppSchedulingInfo(ApplicationAttemptId appAttemptId,
     this.activeUsersManager = activeUsersManager;
   }
 
+  /**
+   * The outstanding requests at one priority, indexed by locality: the
+   * off-switch request is kept on its own, and all requests by their
+   * interned host or rack name. Requests are copied out of the AM's
+   * heartbeats, with copies of their priority and capability, and those with
+   * the same capability share it.
+   */
+  static class PriorityRequests {
+    private final Priority priority;
+    private final Map<String, SchedulerResourceRequest> byName =
+        new HashMap<String, SchedulerResourceRequest>();
+    private final Collection<ResourceRequest> all =
+        Collections.<ResourceRequest>unmodifiableCollection(byName.values());
+    private SchedulerResourceRequest offSwitch = null;
+    private Resource capability = null;
+
+    PriorityRequests(Priority priority) {
+      this.priority = priority;
+    }
+
+    SchedulerResourceRequest get(String resourceName) {
+      if (resourceName.equals(RMNode.ANY)) {
+        return offSwitch;
+      }
+      return byName.get(resourceName);
+    }
+
+    void update(ResourceRequest request) {
+      String resourceName = ResourceNames.intern(request.getHostName());
+      Resource requestCapability = request.getCapability();
+      if (capability == null || !capability.equals(requestCapability)) {
+        capability = SchedulerResourceRequest.copyOf(requestCapability);
+      }
+      SchedulerResourceRequest ask = byName.get(resourceName);
+      if (ask == null) {
+        ask = new SchedulerResourceRequest(priority, resourceName, capability,
+            request.getNumContainers());
+        byName.put(resourceName, ask);
+        if (resourceName.equals(RMNode.ANY)) {
+          offSwitch = ask;
+        }
+      } else {
+        ask.setCapability(capability);
+        ask.setNumContainers(request.getNumContainers());
+      }
+    }
+
+    void remove(String resourceName) {
+      byName.remove(resourceName);
+    }
+
+    Collection<ResourceRequest> getAll() {
+      return all;
+    }
+  }
+
   public ApplicationId getApplicationId() {
     return applicationId;
   }
@@ -127,7 +184,8 @@ synchronized public void updateResourceRequests(
       Priority priority = request.getPriority();
       String hostName = request.getHostName();
       boolean updatePendingResources = false;
-      ResourceRequest lastRequest = null;
+      int lastRequestContainers = 0;
+      Resource lastRequestCapability = Resources.none();
 
       if (hostName.equals(RMNode.ANY)) {
         if (LOG.isDebugEnabled()) {
@@ -147,17 +205,24 @@ synchronized public void updateResourceRequests(
         }
       }
 
-      Map<String, ResourceRequest> asks = this.requests.get(priority);
+      PriorityRequests asks = this.requests.get(priority);
 
       if (asks == null) {
-        asks = new HashMap<String, ResourceRequest>();
+        // not the AM's record, which would be kept as the key
+        priority = SchedulerResourceRequest.copyOf(priority);
+        asks = new PriorityRequests(priority);
         this.requests.put(priority, asks);
         this.priorities.add(priority);
       } else if (updatePendingResources) {
-        lastRequest = asks.get(hostName);
+        ResourceRequest lastRequest = asks.get(hostName);
+        if (lastRequest != null) {
+          // the request is updated in place, so remember what it was
+          lastRequestContainers = lastRequest.getNumContainers();
+          lastRequestCapability = lastRequest.getCapability();
+        }
       }
 
-      asks.put(hostName, request);
+      asks.update(request);
       if (updatePendingResources) {
         
         // Similarly, deactivate application?
@@ -166,10 +231,6 @@ synchronized public void updateResourceRequests(
           checkForDeactivation();
         }
         
-        int lastRequestContainers = lastRequest != null ? lastRequest
-            .getNumContainers() : 0;
-        Resource lastRequestCapability = lastRequest != null ? lastRequest
-            .getCapability() : Resources.none();
         metrics.incrPendingResources(user, request.getNumContainers()
             - lastRequestContainers, Resources.subtractFrom( // save a clone
             Resources.multiply(request.getCapability(), request
@@ -183,15 +244,41 @@ synchronized public Collection<Priority> getPriorities() {
     return priorities;
   }
 
-  synchronized public Map<String, ResourceRequest> getResourceRequests(
+  /**
+   * @return all requests at the given priority, whatever their locality, or
+   *         null if there were never any at that priority
+   */
+  synchronized public Collection<ResourceRequest> getResourceRequests(
       Priority priority) {
-    return requests.get(priority);
+    PriorityRequests asks = requests.get(priority);
+    return (asks == null) ? null : asks.getAll();
   }
 
   synchronized public ResourceRequest getResourceRequest(Priority priority,
       String nodeAddress) {
-    Map<String, ResourceRequest> nodeRequests = requests.get(priority);
-    return (nodeRequests == null) ? null : nodeRequests.get(nodeAddress);
+    PriorityRequests asks = requests.get(priority);
+    return (asks == null) ? null : asks.get(nodeAddress);
+  }
+
+  /**
+   * Get the request at the given priority which the node could serve with
+   * the given locality: the request for its host, for its rack, or the
+   * off-switch one.
+   */
+  synchronized public ResourceRequest getResourceRequest(Priority priority,
+      SchedulerNode node, NodeType type) {
+    PriorityRequests asks = requests.get(priority);
+    if (asks == null) {
+      return null;
+    }
+    switch (type) {
+    case NODE_LOCAL:
+      return asks.get(node.getHostName());
+    case RACK_LOCAL:
+      return asks.get(node.getRackName());
+    default:
+      return asks.get(RMNode.ANY);
+    }
   }
 
   public synchronized Resource getResource(Priority priority) {
@@ -233,6 +320,30 @@ synchronized public void allocate(NodeType type, SchedulerNode node,
     LOG.debug("allocate: user: " + user + ", memory: "
         + request.getCapability());
     metrics.allocateResources(user, 1, request.getCapability());
+    metrics.incrNodeTypeAggregations(user, type);
+  }
+
+  /**
+   * A container of this application was still running on a node when the
+   * ResourceManager restarted. Track it as if it had just been allocated.
+   * 
+   * @param container
+   *          the recovered container
+   */
+  synchronized public void recoverContainer(Container container) {
+    // New containers must not reuse the ids of recovered ones
+    int containerId = container.getId().getId();
+    int current = containerIdCounter.get();
+    while (current < containerId
+        && !containerIdCounter.compareAndSet(current, containerId)) {
+      current = containerIdCounter.get();
+    }
+    QueueMetrics metrics = queue.getMetrics();
+    if (pending) {
+      pending = false;
+      metrics.incrAppsRunning(this, user);
+    }
+    metrics.allocateResources(user, 1, container.getResource());
   }
 
   /**
@@ -249,19 +360,19 @@ synchronized private void allocateNodeLocal(
     allocate(container);
 
     // Update future requirements
+    PriorityRequests asks = this.requests.get(priority);
     nodeLocalRequest.setNumContainers(nodeLocalRequest.getNumContainers() - 1);
     if (nodeLocalRequest.getNumContainers() == 0) {
-      this.requests.get(priority).remove(node.getHostName());
+      asks.remove(node.getHostName());
     }
 
-    ResourceRequest rackLocalRequest = requests.get(priority).get(
-        node.getRackName());
+    ResourceRequest rackLocalRequest = asks.get(node.getRackName());
     rackLocalRequest.setNumContainers(rackLocalRequest.getNumContainers() - 1);
     if (rackLocalRequest.getNumContainers() == 0) {
-      this.requests.get(priority).remove(node.getRackName());
+      asks.remove(node.getRackName());
     }
 
-    decrementOutstanding(requests.get(priority).get(RMNode.ANY));
+    decrementOutstanding(asks.get(RMNode.ANY));
   }
 
   /**
@@ -279,12 +390,13 @@ synchronized private void allocateRackLocal(
     allocate(container);
 
     // Update future requirements
+    PriorityRequests asks = this.requests.get(priority);
     rackLocalRequest.setNumContainers(rackLocalRequest.getNumContainers() - 1);
     if (rackLocalRequest.getNumContainers() == 0) {
-      this.requests.get(priority).remove(node.getRackName());
+      asks.remove(node.getRackName());
     }
 
-    decrementOutstanding(requests.get(priority).get(RMNode.ANY));
+    decrementOutstanding(asks.get(RMNode.ANY));
   }
 
   /**
@@ -350,7 +462,7 @@ synchronized private void allocate(Container container) {
   synchronized public void stop(RMAppAttemptState rmAppAttemptFinalState) {
     // clear pending resources metrics for the application
     QueueMetrics metrics = queue.getMetrics();
-    for (Map<String, ResourceRequest> asks : requests.values()) {
+    for (PriorityRequests asks : requests.values()) {
       ResourceRequest request = asks.get(RMNode.ANY);
       if (request != null) {
         metrics.decrPendingResources(user, request.getNumContainers(),
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.resourcemanager.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.server.resourcemanager.RMContext;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.RMApp;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttempt;
+
+/**
+ * Containers reported by nodes that registered after an RM restart, whose
+ * application attempts have not been added to the scheduler yet.
+ *
+ * Recovered attempts reach the scheduler through the dispatcher, so a node
+ * may register before the attempts of its containers are added. Such
+ * containers are held here until their attempt is added, instead of being
+ * killed as unknown. Not thread safe, callers hold the scheduler lock.
+ */
+@Private
+public class PendingRecoveredContainers {
+
+  private final Map<ApplicationId, List<Container>> containers =
+      new HashMap<ApplicationId, List<Container>>();
+
+  /**
+   * Hold a container if its attempt is the current attempt of an
+   * application known to the RM, and may still be added to the scheduler.
+   *
+   * @param rmContext context of the RM
+   * @param container container of an attempt unknown to the scheduler
+   * @return <code>false</code> if the container is not held, and is to be
+   *         killed
+   */
+  public boolean hold(RMContext rmContext, Container container) {
+    ApplicationAttemptId attemptId =
+        container.getId().getApplicationAttemptId();
+    RMApp rmApp = rmContext.getRMApps().get(attemptId.getApplicationId());
+    if (rmApp == null) {
+      return false;
+    }
+    RMAppAttempt attempt = rmApp.getCurrentAppAttempt();
+    if (attempt == null || !attempt.getAppAttemptId().equals(attemptId)) {
+      return false;
+    }
+    switch (attempt.getAppAttemptState()) {
+    case FAILED:
+    case FINISHED:
+    case KILLED:
+    case RECOVERED:
+      // not resumed, a new attempt replaces it
+      return false;
+    default:
+      break;
+    }
+    List<Container> appContainers =
+        containers.get(attemptId.getApplicationId());
+    if (appContainers == null) {
+      appContainers = new ArrayList<Container>();
+      containers.put(attemptId.getApplicationId(), appContainers);
+    }
+    appContainers.add(container);
+    return true;
+  }
+
+  /**
+   * Stop holding the containers of an application, of any attempt.
+   *
+   * @param applicationId application
+   * @return the containers held for the application
+   */
+  public List<Container> remove(ApplicationId applicationId) {
+    List<Container> appContainers = containers.remove(applicationId);
+    if (appContainers == null) {
+      return Collections.emptyList();
+    }
+    return appContainers;
+  }
+
+  /**
+   * Stop holding the containers of an attempt, once it is done.
+   *
+   * @param attemptId attempt
+   * @return the containers held for the attempt
+   */
+  public List<Container> remove(ApplicationAttemptId attemptId) {
+    List<Container> attemptContainers = new ArrayList<Container>();
+    List<Container> appContainers =
+        containers.get(attemptId.getApplicationId());
+    if (appContainers == null) {
+      return attemptContainers;
+    }
+    for (Iterator<Container> i = appContainers.iterator(); i.hasNext();) {
+      Container container = i.next();
+      if (container.getId().getApplicationAttemptId().equals(attemptId)) {
+        attemptContainers.add(container);
+        i.remove();
+      }
+    }
+    if (appContainers.isEmpty()) {
+      containers.remove(attemptId.getApplicationId());
+    }
+    return attemptContainers;
+  }
+
+  /**
+   * Stop holding a container, once it completed.
+   *
+   * @param containerId container
+   */
+  public void remove(ContainerId containerId) {
+    ApplicationId applicationId =
+        containerId.getApplicationAttemptId().getApplicationId();
+    List<Container> appContainers = containers.get(applicationId);
+    if (appContainers == null) {
+      return;
+    }
+    for (Iterator<Container> i = appContainers.iterator(); i.hasNext();) {
+      if (i.next().getId().equals(containerId)) {
+        i.remove();
+      }
+    }
+    if (appContainers.isEmpty()) {
+      containers.remove(applicationId);
+    }
+  }
+
+  /**
+   * Stop holding the containers of a node, once it is removed.
+   *
+   * @param nodeId node
+   */
+  public void remove(NodeId nodeId) {
+    for (Iterator<List<Container>> i = containers.values().iterator();
+        i.hasNext();) {
+      List<Container> appContainers = i.next();
+      for (Iterator<Container> j = appContainers.iterator(); j.hasNext();) {
+        if (j.next().getNodeId().equals(nodeId)) {
+          j.remove();
+        }
+      }
+      if (appContainers.isEmpty()) {
+        i.remove();
+      }
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (List<Container> appContainers : containers.values()) {
+      size += appContainers.size();
+    }
+    return size;
+  }
+}
@@ -62,6 +62,13 @@ public class QueueMetrics implements MetricsSource {
   @Metric("# of allocated containers") MutableGaugeInt allocatedContainers;
   @Metric("Aggregate # of allocated containers") MutableCounterLong aggregateContainersAllocated;
   @Metric("Aggregate # of released containers") MutableCounterLong aggregateContainersReleased;
+  @Metric("Aggregate # of node-local containers allocated")
+    MutableCounterLong aggregateNodeLocalContainersAllocated;
+  @Metric("Aggregate # of rack-local containers allocated")
+    MutableCounterLong aggregateRackLocalContainersAllocated;
+  @Metric("Aggregate # of off-switch containers allocated")
+    MutableCounterLong aggregateOffSwitchContainersAllocated;
+  @Metric("# of containers allocated per second") MutableGaugeInt containerAllocationRate;
   @Metric("Available memory in MB") MutableGaugeInt availableMB;
   @Metric("Pending memory allocation in MB") MutableGaugeInt pendingMB;
   @Metric("# of pending containers") MutableGaugeInt pendingContainers;
@@ -72,6 +79,12 @@ public class QueueMetrics implements MetricsSource {
   private final MutableGaugeInt[] runningTime;
   private TimeBucketMetrics<ApplicationId> runBuckets;
 
+  // Minimum period over which containerAllocationRate is computed (ms)
+  static final long ALLOCATION_RATE_PERIOD = 1000;
+  // Containers allocated since allocationRatePeriodStart
+  private long allocationsInPeriod = 0;
+  private long allocationRatePeriodStart = System.currentTimeMillis();
+
   static final Logger LOG = LoggerFactory.getLogger(QueueMetrics.class);
   static final MetricsInfo RECORD_INFO = info("QueueMetrics",
       "Metrics for the resource scheduler");
@@ -204,8 +217,23 @@ private void updateRunningTime() {
     }
   }
 
+  /**
+   * Add allocated containers to the current period, and once the period is
+   * long enough, publish the allocation rate over it and start a new one.
+   */
+  private synchronized void updateAllocationRate(int containers, long now) {
+    allocationsInPeriod += containers;
+    long elapsed = now - allocationRatePeriodStart;
+    if (elapsed >= ALLOCATION_RATE_PERIOD) {
+      containerAllocationRate.set((int)(allocationsInPeriod * 1000 / elapsed));
+      allocationsInPeriod = 0;
+      allocationRatePeriodStart = now;
+    }
+  }
+
   public void getMetrics(MetricsCollector collector, boolean all) {
     updateRunningTime();
+    updateAllocationRate(0, System.currentTimeMillis());
     registry.snapshot(collector.addRecord(registry.info()), all);
   }
 
@@ -324,6 +352,7 @@ private void _decrPendingResources(int containers, Resource res) {
   public void allocateResources(String user, int containers, Resource res) {
     allocatedContainers.incr(containers);
     aggregateContainersAllocated.incr(containers);
+    updateAllocationRate(containers, System.currentTimeMillis());
     allocatedMB.incr(res.getMemory() * containers);
     _decrPendingResources(containers, Resources.multiply(res, containers));
     QueueMetrics userMetrics = getUserMetrics(user);
@@ -335,6 +364,27 @@ public void allocateResources(String user, int containers, Resource res) {
     }
   }
 
+  /**
+   * Count a container allocated at the given locality, so that the
+   * locality hit-rate of the queue can be told from the aggregates.
+   */
+  public void incrNodeTypeAggregations(String user, NodeType type) {
+    if (type == NodeType.NODE_LOCAL) {
+      aggregateNodeLocalContainersAllocated.incr();
+    } else if (type == NodeType.RACK_LOCAL) {
+      aggregateRackLocalContainersAllocated.incr();
+    } else {
+      aggregateOffSwitchContainersAllocated.incr();
+    }
+    QueueMetrics userMetrics = getUserMetrics(user);
+    if (userMetrics != null) {
+      userMetrics.incrNodeTypeAggregations(user, type);
+    }
+    if (parent != null) {
+      parent.incrNodeTypeAggregations(user, type);
+    }
+  }
+
   public void releaseResources(String user, int containers, Resource res) {
     allocatedContainers.decr(containers);
     aggregateContainersReleased.incr(containers);
@@ -430,6 +480,10 @@ public int getAllocatedMB() {
     return allocatedMB.value();
   }
 
+  public int getContainerAllocationRate() {
+    return containerAllocationRate.value();
+  }
+
   public int getAllocatedContainers() {
     return allocatedContainers.value();
   }
@@ -461,4 +515,20 @@ public int getActiveUsers() {
   public int getActiveApps() {
     return activeApplications.value();
   }
+
+  public long getAggregateAllocatedContainers() {
+    return aggregateContainersAllocated.value();
+  }
+
+  public long getAggregateNodeLocalContainersAllocated() {
+    return aggregateNodeLocalContainersAllocated.value();
+  }
+
+  public long getAggregateRackLocalContainersAllocated() {
+    return aggregateRackLocalContainersAllocated.value();
+  }
+
+  public long getAggregateOffSwitchContainersAllocated() {
+    return aggregateOffSwitchContainersAllocated.value();
+  }
 }
@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.resourcemanager.scheduler;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Interns the host and rack names of resource requests, which the
+ * applications' request tables are keyed by, so the tables of all
+ * applications share one copy of each name instead of holding the names of
+ * every AM heartbeat. Names are held weakly, and are forgotten once no
+ * request refers to them.
+ */
+@Private
+@Unstable
+public class ResourceNames {
+
+  private static final Interner<String> names = Interners.newWeakInterner();
+
+  private ResourceNames() {
+  }
+
+  /**
+   * Get the canonical instance of a name.
+   */
+  public static String intern(String name) {
+    return names.intern(name);
+  }
+}
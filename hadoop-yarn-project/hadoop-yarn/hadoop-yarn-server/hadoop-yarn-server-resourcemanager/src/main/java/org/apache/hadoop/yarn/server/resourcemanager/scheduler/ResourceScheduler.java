@@ -40,4 +40,19 @@ public interface ResourceScheduler extends YarnScheduler, Recoverable {
    * @throws IOException
    */
   void reinitialize(Configuration conf, RMContext rmContext) throws IOException;
+
+  /**
+   * Stop the threads the <code>ResourceScheduler</code> started, and wait
+   * for them to exit.
+   */
+  void stop();
+
+  /**
+   * Whether the scheduler takes over the containers that NodeManagers report
+   * when they register again after a ResourceManager restart. If it does
+   * not, those containers are killed, and recovered applications must start
+   * new attempts rather than resume the running ones.
+   * @return true if running containers are recovered
+   */
+  boolean isContainerRecoverySupported();
 }
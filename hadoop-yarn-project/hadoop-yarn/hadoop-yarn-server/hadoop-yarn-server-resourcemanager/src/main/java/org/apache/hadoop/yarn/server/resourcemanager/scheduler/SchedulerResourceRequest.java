@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.resourcemanager.scheduler;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+import org.apache.hadoop.yarn.api.records.Priority;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.api.records.ResourceRequest;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+
+/**
+ * A {@link ResourceRequest} as the scheduler keeps it: plain fields instead
+ * of a protocol buffer, so that the requests an application has outstanding
+ * hold on to nothing of the AM's heartbeats once they are processed. Its
+ * priority and capability are copies too, see {@link #copyOf(Priority)} and
+ * {@link #copyOf(Resource)}.
+ */
+@Private
+@Unstable
+public class SchedulerResourceRequest extends ResourceRequest {
+  private Priority priority;
+  private String hostName;
+  private Resource capability;
+  private int numContainers;
+
+  public SchedulerResourceRequest(Priority priority, String hostName,
+      Resource capability, int numContainers) {
+    this.priority = priority;
+    this.hostName = hostName;
+    this.capability = capability;
+    this.numContainers = numContainers;
+  }
+
+  @Override
+  public Priority getPriority() {
+    return priority;
+  }
+
+  @Override
+  public void setPriority(Priority priority) {
+    this.priority = priority;
+  }
+
+  @Override
+  public String getHostName() {
+    return hostName;
+  }
+
+  @Override
+  public void setHostName(String hostName) {
+    this.hostName = hostName;
+  }
+
+  @Override
+  public Resource getCapability() {
+    return capability;
+  }
+
+  @Override
+  public void setCapability(Resource capability) {
+    this.capability = capability;
+  }
+
+  @Override
+  public int getNumContainers() {
+    return numContainers;
+  }
+
+  @Override
+  public void setNumContainers(int numContainers) {
+    this.numContainers = numContainers;
+  }
+
+  /**
+   * The scheduler only keeps guaranteed requests.
+   */
+  @Override
+  public boolean getOpportunistic() {
+    return false;
+  }
+
+  @Override
+  public void setOpportunistic(boolean opportunistic) {
+    if (opportunistic) {
+      throw new UnsupportedOperationException(
+          "Opportunistic requests are not kept by the scheduler");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "{Priority: " + priority + ", Capability: " + capability
+        + ", # Containers: " + numContainers + ", Location: " + hostName + "}";
+  }
+
+  /**
+   * @return a new record of the priority, which is not part of the protocol
+   *         buffer it was read from
+   */
+  public static Priority copyOf(Priority priority) {
+    return BuilderUtils.newPriority(priority.getPriority());
+  }
+
+  /**
+   * @return a new record of the resource, which is not part of the protocol
+   *         buffer it was read from
+   */
+  public static Resource copyOf(Resource resource) {
+    return BuilderUtils.newResource(resource.getMemory(),
+        resource.getVirtualCores());
+  }
+}
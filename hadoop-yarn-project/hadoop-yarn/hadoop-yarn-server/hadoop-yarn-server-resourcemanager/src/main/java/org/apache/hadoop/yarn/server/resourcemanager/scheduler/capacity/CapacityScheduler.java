@@ -24,6 +24,7 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
@@ -46,6 +47,8 @@
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.hadoop.yarn.api.records.ResourceRequest;
 import org.apache.hadoop.yarn.factory.providers.RecordFactoryProvider;
+import org.apache.hadoop.yarn.server.resourcemanager.ClusterMetrics;
+import org.apache.hadoop.yarn.server.resourcemanager.OpportunisticContainerAllocator;
 import org.apache.hadoop.yarn.server.resourcemanager.RMAuditLogger;
 import org.apache.hadoop.yarn.server.resourcemanager.RMAuditLogger.AuditConstants;
 import org.apache.hadoop.yarn.server.resourcemanager.RMContext;
@@ -62,6 +65,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeCleanContainerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.UpdatedContainerInfo;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.Allocation;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.PendingRecoveredContainers;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.QueueMetrics;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.ResourceScheduler;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerAppReport;
@@ -77,6 +81,9 @@
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeUpdateSchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.SchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.security.RMContainerTokenSecretManager;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+
+import com.google.common.annotations.VisibleForTesting;
 
 @LimitedPrivate("yarn")
 @Evolving
@@ -135,15 +142,27 @@ public Configuration getConf() {
     RecordFactoryProvider.getRecordFactory(null).newRecordInstance(Resource.class);
   private int numNodeManagers = 0;
 
+  // Available resources of each node which no container can use
+  private Map<NodeId, Resource> fragmentedResources =
+      new HashMap<NodeId, Resource>();
+
   private Resource minimumAllocation;
   private Resource maximumAllocation;
 
   private Map<ApplicationAttemptId, FiCaSchedulerApp> applications = 
       new ConcurrentHashMap<ApplicationAttemptId, FiCaSchedulerApp>();
 
+  // Containers of nodes which registered before their attempt was added
+  private PendingRecoveredContainers pendingRecoveredContainers =
+      new PendingRecoveredContainers();
+
   private boolean initialized = false;
 
   private ResourceCalculator calculator;
+
+  private boolean scheduleAsynchronously;
+  private long asyncScheduleIntervalMs;
+  private volatile Thread asyncSchedulerThread;
   
   public CapacityScheduler() {}
 
@@ -219,12 +238,23 @@ public Resource getClusterResources() {
       this.rmContext = rmContext;
       
       initializeQueues(this.conf);
+
+      scheduleAsynchronously = this.conf.getScheduleAsynchronously();
+      asyncScheduleIntervalMs =
+          this.conf.getScheduleAsynchronouslyIntervalMs();
+      if (scheduleAsynchronously) {
+        asyncSchedulerThread = new Thread(new AsyncScheduleThread());
+        asyncSchedulerThread.setName("CapacitySchedulerAsyncScheduling");
+        asyncSchedulerThread.setDaemon(true);
+        asyncSchedulerThread.start();
+      }
       
       initialized = true;
       LOG.info("Initialized CapacityScheduler with " +
           "calculator=" + getResourceCalculator().getClass() + ", " +
           "minimumAllocation=<" + getMinimumResourceCapability() + ">, " +
-          "maximumAllocation=<" + getMaximumResourceCapability() + ">");
+          "maximumAllocation=<" + getMaximumResourceCapability() + ">, " +
+          "asynchronousScheduling=" + scheduleAsynchronously);
     } else {
 
       CapacitySchedulerConfiguration oldConf = this.conf; 
@@ -239,6 +269,63 @@ public Resource getClusterResources() {
     }
   }
 
+  // Not synchronized, the thread may be waiting for the scheduler lock
+  @Override
+  public void stop() {
+    Thread thread = asyncSchedulerThread;
+    if (thread != null) {
+      thread.interrupt();
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        LOG.warn("Interrupted while stopping the asynchronous scheduling"
+            + " thread", e);
+        Thread.currentThread().interrupt();
+      }
+      asyncSchedulerThread = null;
+    }
+  }
+
+  @VisibleForTesting
+  Thread getAsyncSchedulerThread() {
+    return asyncSchedulerThread;
+  }
+
+  @Override
+  public boolean isContainerRecoverySupported() {
+    return true;
+  }
+
+  /**
+   * Assigns containers on all nodes in a loop, so that allocation does not
+   * wait for node heartbeats. Each pass starts at a random node, so that the
+   * nodes early in the list are not always offered the requests first.
+   */
+  private class AsyncScheduleThread implements Runnable {
+    private final Random random = new Random();
+
+    @Override
+    public void run() {
+      while (!Thread.currentThread().isInterrupted()) {
+        List<FiCaSchedulerNode> nodeList =
+            new ArrayList<FiCaSchedulerNode>(nodes.values());
+        int numNodes = nodeList.size();
+        if (numNodes > 0) {
+          int start = random.nextInt(numNodes);
+          for (int i = 0; i < numNodes; i++) {
+            allocateContainersToNode(nodeList.get((start + i) % numNodes));
+          }
+        }
+        try {
+          Thread.sleep(asyncScheduleIntervalMs);
+        } catch (InterruptedException e) {
+          LOG.info("Asynchronous scheduling thread interrupted, exiting");
+          return;
+        }
+      }
+    }
+  }
+
   @Private
   public static final String ROOT_QUEUE = 
     CapacitySchedulerConfiguration.PREFIX + CapacitySchedulerConfiguration.ROOT;
@@ -411,6 +498,18 @@ synchronized CSQueue getQueue(String queueName) {
         " queue: " + queue +
         ", currently active: " + applications.size());
 
+    // Take over the containers of the attempt reported before it was added
+    for (Container container : pendingRecoveredContainers.remove(
+        applicationAttemptId.getApplicationId())) {
+      FiCaSchedulerNode node = getNode(container.getNodeId());
+      if (node != null && applicationAttemptId.equals(
+          container.getId().getApplicationAttemptId())) {
+        recoverContainer(node, SchedulerApp, container);
+      } else {
+        killUnknownContainer(container);
+      }
+    }
+
     rmContext.getDispatcher().getEventHandler().handle(
         new RMAppAttemptEvent(applicationAttemptId,
             RMAppAttemptEventType.APP_ACCEPTED));
@@ -424,6 +523,11 @@ private synchronized void doneApplication(
     
     FiCaSchedulerApp application = getApplication(applicationAttemptId);
 
+    for (Container container :
+        pendingRecoveredContainers.remove(applicationAttemptId)) {
+      killUnknownContainer(container);
+    }
+
     if (application == null) {
       //      throw new IOException("Unknown application " + applicationId + 
       //          " has completed!");
@@ -586,13 +690,34 @@ private synchronized void nodeUpdate(RMNode nm) {
     for (ContainerStatus completedContainer : completedContainers) {
       ContainerId containerId = completedContainer.getContainerId();
       LOG.debug("Container FINISHED: " + containerId);
+      pendingRecoveredContainers.remove(containerId);
       completedContainer(getRMContainer(containerId), 
           completedContainer, RMContainerEventType.FINISHED);
     }
 
     // Now node data structures are upto date and ready for scheduling.
+    // With asynchronous scheduling, the scheduling thread assigns
+    // containers to this node instead.
+    if (!scheduleAsynchronously) {
+      allocateContainersToNode(node);
+    }
+  }
+
+  /**
+   * Assign containers on the given node: first try to fulfill the
+   * reservation on it, if any, and otherwise offer it to the queues.
+   * Called on each node heartbeat, or by the {@link AsyncScheduleThread} when
+   * asynchronous scheduling is enabled.
+   */
+  @VisibleForTesting
+  synchronized void allocateContainersToNode(FiCaSchedulerNode node) {
+    // The node may have been removed since the scheduling thread picked it
+    if (nodes.get(node.getNodeID()) != node) {
+      return;
+    }
+
     if(LOG.isDebugEnabled()) {
-      LOG.debug("Node being looked for scheduling " + nm
+      LOG.debug("Node being looked for scheduling " + node
         + " availableResource: " + node.getAvailableResource());
     }
 
@@ -607,7 +732,7 @@ private synchronized void nodeUpdate(RMNode nm) {
       
       // Try to fulfill the reservation
       LOG.info("Trying to fulfill reservation for application " + 
-          reservedApplication.getApplicationId() + " on node: " + nm);
+          reservedApplication.getApplicationId() + " on node: " + node);
       
       LeafQueue queue = ((LeafQueue)reservedApplication.getQueue());
       CSAssignment assignment = queue.assignContainers(clusterResource, node);
@@ -630,12 +755,35 @@ private synchronized void nodeUpdate(RMNode nm) {
     if (node.getReservedContainer() == null) {
       root.assignContainers(clusterResource, node);
     } else {
-      LOG.info("Skipping scheduling since node " + nm + 
+      LOG.info("Skipping scheduling since node " + node + 
           " is reserved by application " + 
           node.getReservedContainer().getContainerId().getApplicationAttemptId()
           );
     }
 
+    updateFragmentedResource(node);
+  }
+
+  /**
+   * A node with less memory or cpu available than the minimum allocation
+   * can't use what it has left of the other resource either.
+   */
+  private void updateFragmentedResource(FiCaSchedulerNode node) {
+    Resource available = node.getAvailableResource();
+    Resource fragmented = Resources.createResource(0, 0);
+    if (available.getVirtualCores() < minimumAllocation.getVirtualCores()) {
+      fragmented.setMemory(Math.max(available.getMemory(), 0));
+    }
+    if (available.getMemory() < minimumAllocation.getMemory()) {
+      fragmented.setVirtualCores(Math.max(available.getVirtualCores(), 0));
+    }
+
+    ClusterMetrics metrics = ClusterMetrics.getMetrics();
+    Resource previous = fragmentedResources.put(node.getNodeID(), fragmented);
+    if (previous != null) {
+      metrics.decrFragmentedResource(previous);
+    }
+    metrics.incrFragmentedResource(fragmented);
   }
 
   private void containerLaunchedOnNode(ContainerId containerId, FiCaSchedulerNode node) {
@@ -660,7 +808,8 @@ public void handle(SchedulerEvent event) {
     case NODE_ADDED:
     {
       NodeAddedSchedulerEvent nodeAddedEvent = (NodeAddedSchedulerEvent)event;
-      addNode(nodeAddedEvent.getAddedRMNode());
+      addNode(nodeAddedEvent.getAddedRMNode(),
+          nodeAddedEvent.getContainers());
     }
     break;
     case NODE_REMOVED:
@@ -706,13 +855,59 @@ public void handle(SchedulerEvent event) {
     }
   }
 
-  private synchronized void addNode(RMNode nodeManager) {
-    this.nodes.put(nodeManager.getNodeID(), new FiCaSchedulerNode(nodeManager));
+  private synchronized void addNode(RMNode nodeManager,
+      List<Container> containers) {
+    FiCaSchedulerNode node = new FiCaSchedulerNode(nodeManager);
+    this.nodes.put(nodeManager.getNodeID(), node);
     Resources.addTo(clusterResource, nodeManager.getTotalCapability());
     root.updateClusterResource(clusterResource);
     ++numNodeManagers;
     LOG.info("Added node " + nodeManager.getNodeAddress() + 
         " clusterResource: " + clusterResource);
+    recoverContainers(node, containers);
+  }
+
+  /**
+   * Take over the containers still running on a node which registered after
+   * the RM restarted. Containers of recovered attempts not added yet are
+   * held until they are, those of applications no longer known are killed.
+   */
+  private void recoverContainers(FiCaSchedulerNode node,
+      List<Container> containers) {
+    for (Container container : containers) {
+      ContainerId containerId = container.getId();
+      if (OpportunisticContainerAllocator.isOpportunistic(containerId)) {
+        killUnknownContainer(container);
+        continue;
+      }
+      FiCaSchedulerApp application =
+          getApplication(containerId.getApplicationAttemptId());
+      if (application != null) {
+        recoverContainer(node, application, container);
+      } else if (!pendingRecoveredContainers.hold(rmContext, container)) {
+        killUnknownContainer(container);
+      }
+    }
+  }
+
+  private void recoverContainer(FiCaSchedulerNode node,
+      FiCaSchedulerApp application, Container container) {
+    if (container.getPriority() == null) {
+      // NMs do not know the priority containers were allocated at
+      container.setPriority(BuilderUtils.newPriority(0));
+    }
+    RMContainer rmContainer = application.recoverContainer(container);
+    node.allocateContainer(application.getApplicationId(), rmContainer);
+    ((LeafQueue) application.getQueue()).recoverContainer(clusterResource,
+        application, container);
+  }
+
+  private void killUnknownContainer(Container container) {
+    LOG.info("Killing unknown container " + container.getId() + " on node: "
+        + container.getNodeId());
+    this.rmContext.getDispatcher().getEventHandler()
+      .handle(new RMNodeCleanContainerEvent(container.getNodeId(),
+          container.getId()));
   }
 
   private synchronized void removeNode(RMNode nodeInfo) {
@@ -745,6 +940,11 @@ private synchronized void removeNode(RMNode nodeInfo) {
     }
 
     this.nodes.remove(nodeInfo.getNodeID());
+    pendingRecoveredContainers.remove(nodeInfo.getNodeID());
+    Resource fragmented = fragmentedResources.remove(nodeInfo.getNodeID());
+    if (fragmented != null) {
+      ClusterMetrics.getMetrics().decrFragmentedResource(fragmented);
+    }
     LOG.info("Removed node " + nodeInfo.getNodeAddress() + 
         " clusterResource: " + clusterResource);
   }
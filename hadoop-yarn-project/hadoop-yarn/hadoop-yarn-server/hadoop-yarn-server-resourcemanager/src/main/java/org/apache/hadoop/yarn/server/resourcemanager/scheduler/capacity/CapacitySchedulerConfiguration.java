@@ -34,6 +34,7 @@
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.server.resourcemanager.resource.ResourceCalculator;
 import org.apache.hadoop.yarn.server.resourcemanager.resource.DefaultResourceCalculator;
+import org.apache.hadoop.yarn.server.resourcemanager.resource.PackingPolicy;
 import org.apache.hadoop.yarn.server.resourcemanager.resource.Resources;
 
 public class CapacitySchedulerConfiguration extends Configuration {
@@ -135,6 +136,67 @@ public class CapacitySchedulerConfiguration extends Configuration {
   @Private 
   public static final int DEFAULT_NODE_LOCALITY_DELAY = -1;
 
+  /**
+   * How long, in ms, an application waits for a node-local container at a
+   * priority before accepting a rack-local one. If set, it is used instead
+   * of {@link #NODE_LOCALITY_DELAY}.
+   */
+  @Private
+  public static final String NODE_LOCALITY_DELAY_MS =
+      PREFIX + "node-locality-delay-ms";
+
+  /**
+   * How long, in ms, an application that asked for containers on every
+   * node of the cluster waits for a rack-local container before accepting
+   * an off-switch one. Applications that asked for fewer nodes wait
+   * proportionately less. If set, it is used instead of the number of
+   * missed scheduling opportunities.
+   */
+  @Private
+  public static final String RACK_LOCALITY_DELAY_MS =
+      PREFIX + "rack-locality-delay-ms";
+
+  @Private
+  public static final long DEFAULT_LOCALITY_DELAY_MS = -1;
+
+  /**
+   * How containers are packed on nodes: <code>none</code>,
+   * <code>best-fit</code> or <code>dot-product</code>. With a packing
+   * policy, containers only fit on nodes with enough memory and cpu,
+   * reservations are only made on nodes which could ever run them, and
+   * rack-local and off-switch containers skip nodes they pack poorly on.
+   */
+  @Private
+  public static final String PACKING_POLICY = PREFIX + "packing-policy";
+
+  @Private
+  public static final String DEFAULT_PACKING_POLICY = "none";
+
+  /**
+   * Score, between 0 and 1, under which a node is skipped for rack-local
+   * and off-switch containers until the application has had a scheduling
+   * opportunity on every node.
+   */
+  @Private
+  public static final String PACKING_THRESHOLD = PREFIX + "packing-threshold";
+
+  @Private
+  public static final float DEFAULT_PACKING_THRESHOLD = 0.5f;
+
+  @Private
+  public static final String SCHEDULE_ASYNCHRONOUSLY_ENABLE =
+      PREFIX + "schedule-asynchronously.enable";
+
+  @Private
+  public static final boolean DEFAULT_SCHEDULE_ASYNCHRONOUSLY_ENABLE = false;
+
+  @Private
+  public static final String SCHEDULE_ASYNCHRONOUSLY_INTERVAL_MS =
+      PREFIX + "schedule-asynchronously.scheduling-interval-ms";
+
+  @Private
+  public static final long DEFAULT_SCHEDULE_ASYNCHRONOUSLY_INTERVAL_MS = 5;
+
   public CapacitySchedulerConfiguration() {
     this(new Configuration());
   }
@@ -328,6 +390,34 @@ public int getNodeLocalityDelay() {
     int delay = getInt(NODE_LOCALITY_DELAY, DEFAULT_NODE_LOCALITY_DELAY);
     return (delay == DEFAULT_NODE_LOCALITY_DELAY) ? 0 : delay;
   }
+
+  public long getNodeLocalityDelayMs() {
+    return getLong(NODE_LOCALITY_DELAY_MS, DEFAULT_LOCALITY_DELAY_MS);
+  }
+
+  public long getRackLocalityDelayMs() {
+    return getLong(RACK_LOCALITY_DELAY_MS, DEFAULT_LOCALITY_DELAY_MS);
+  }
+
+  public PackingPolicy getPackingPolicy() {
+    return PackingPolicy.valueOf(
+        get(PACKING_POLICY, DEFAULT_PACKING_POLICY).trim().toUpperCase()
+            .replace('-', '_'));
+  }
+
+  public float getPackingThreshold() {
+    return getFloat(PACKING_THRESHOLD, DEFAULT_PACKING_THRESHOLD);
+  }
+
+  public boolean getScheduleAsynchronously() {
+    return getBoolean(SCHEDULE_ASYNCHRONOUSLY_ENABLE,
+        DEFAULT_SCHEDULE_ASYNCHRONOUSLY_ENABLE);
+  }
+
+  public long getScheduleAsynchronouslyIntervalMs() {
+    return getLong(SCHEDULE_ASYNCHRONOUSLY_INTERVAL_MS,
+        DEFAULT_SCHEDULE_ASYNCHRONOUSLY_INTERVAL_MS);
+  }
   
   public ResourceCalculator getResourceCalculator() {
     return ReflectionUtils.newInstance(
@@ -36,8 +36,10 @@
 import org.apache.hadoop.security.AccessControlException;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.authorize.AccessControlList;
+import org.apache.hadoop.yarn.Clock;
 import org.apache.hadoop.yarn.Lock;
 import org.apache.hadoop.yarn.Lock.NoLock;
+import org.apache.hadoop.yarn.SystemClock;
 import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
@@ -53,6 +55,7 @@
 import org.apache.hadoop.yarn.api.records.ResourceRequest;
 import org.apache.hadoop.yarn.factories.RecordFactory;
 import org.apache.hadoop.yarn.factory.providers.RecordFactoryProvider;
+import org.apache.hadoop.yarn.server.resourcemanager.resource.PackingPolicy;
 import org.apache.hadoop.yarn.server.resourcemanager.resource.ResourceCalculator;
 import org.apache.hadoop.yarn.server.resourcemanager.resource.Resources;
 import org.apache.hadoop.yarn.server.resourcemanager.rmcontainer.RMContainer;
@@ -125,6 +128,12 @@ public class LeafQueue implements CSQueue {
   private final ActiveUsersManager activeUsersManager;
   
   private final int nodeLocalityDelay;
+  private final long nodeLocalityDelayMs;
+  private final long rackLocalityDelayMs;
+  private Clock clock = new SystemClock();
+
+  private final PackingPolicy packingPolicy;
+  private final float packingThreshold;
   
   private final ResourceCalculator resourceCalculator;
   
@@ -199,6 +208,12 @@ public LeafQueue(CapacitySchedulerContext cs,
 
     this.nodeLocalityDelay = 
         cs.getConfiguration().getNodeLocalityDelay();
+    this.nodeLocalityDelayMs = 
+        cs.getConfiguration().getNodeLocalityDelayMs();
+    this.rackLocalityDelayMs = 
+        cs.getConfiguration().getRackLocalityDelayMs();
+    this.packingPolicy = cs.getConfiguration().getPackingPolicy();
+    this.packingThreshold = cs.getConfiguration().getPackingThreshold();
     
     setupQueueConfigs(
         cs.getClusterResources(),
@@ -550,6 +565,21 @@ public synchronized QueueInfo getQueueInfo(
   public int getNodeLocalityDelay() {
     return nodeLocalityDelay;
   }
+
+  @Private
+  public long getNodeLocalityDelayMs() {
+    return nodeLocalityDelayMs;
+  }
+
+  @Private
+  public long getRackLocalityDelayMs() {
+    return rackLocalityDelayMs;
+  }
+
+  @Private
+  void setClock(Clock clock) {
+    this.clock = clock;
+  }
   
   public String toString() {
     return queueName + ": " + 
@@ -840,7 +870,7 @@ private synchronized FiCaSchedulerApp getApplication(
           }
 
           // Inform the application it is about to get a scheduling opportunity
-          application.addSchedulingOpportunity(priority);
+          application.addSchedulingOpportunity(priority, clock.getTime());
           
           // Try to schedule
           CSAssignment assignment =  
@@ -1125,8 +1155,8 @@ private CSAssignment assignContainersOnNode(Resource clusterResource,
   private Resource assignNodeLocalContainers(Resource clusterResource, 
       FiCaSchedulerNode node, FiCaSchedulerApp application, 
       Priority priority, RMContainer reservedContainer) {
-    ResourceRequest request = 
-        application.getResourceRequest(priority, node.getHostName());
+    ResourceRequest request = application.getResourceRequest(priority, node,
+        NodeType.NODE_LOCAL);
     if (request != null) {
       if (canAssign(application, priority, node, NodeType.NODE_LOCAL, 
           reservedContainer)) {
@@ -1141,11 +1171,12 @@ private Resource assignNodeLocalContainers(Resource clusterResource,
   private Resource assignRackLocalContainers(Resource clusterResource,  
       FiCaSchedulerNode node, FiCaSchedulerApp application, Priority priority,
       RMContainer reservedContainer) {
-    ResourceRequest request = 
-      application.getResourceRequest(priority, node.getRackName());
+    ResourceRequest request = application.getResourceRequest(priority, node,
+        NodeType.RACK_LOCAL);
     if (request != null) {
       if (canAssign(application, priority, node, NodeType.RACK_LOCAL, 
-          reservedContainer)) {
+          reservedContainer) && 
+          packsWell(application, priority, node, request, reservedContainer)) {
         return assignContainer(clusterResource, node, application, priority, request, 
             NodeType.RACK_LOCAL, reservedContainer);
       } 
@@ -1160,7 +1191,8 @@ private Resource assignOffSwitchContainers(Resource clusterResource, FiCaSchedul
       application.getResourceRequest(priority, RMNode.ANY);
     if (request != null) {
       if (canAssign(application, priority, node, NodeType.OFF_SWITCH, 
-          reservedContainer)) {
+          reservedContainer) && 
+          packsWell(application, priority, node, request, reservedContainer)) {
         return assignContainer(clusterResource, node, application, priority, request, 
             NodeType.OFF_SWITCH, reservedContainer);
       }
@@ -1187,12 +1219,20 @@ boolean canAssign(FiCaSchedulerApp application, Priority priority,
         application.getLocalityWaitFactor(priority, 
             scheduler.getNumClusterNodes());
       
+      // Wait for as long as configured if the application asked for every
+      // node in the cluster, less if it asked for fewer
+      long rackLocalityDelayMs = getRackLocalityDelayMs();
+      if (rackLocalityDelayMs >= 0) {
+        return application.getSchedulingDelay(priority, clock.getTime()) >=
+            (long) (rackLocalityDelayMs * localityWaitFactor);
+      }
+
       return ((requiredContainers * localityWaitFactor) < missedOpportunities);
     }
 
     // Check if we need containers on this rack 
-    ResourceRequest rackLocalRequest = 
-      application.getResourceRequest(priority, node.getRackName());
+    ResourceRequest rackLocalRequest = application.getResourceRequest(
+        priority, node, NodeType.RACK_LOCAL);
     if (rackLocalRequest == null || rackLocalRequest.getNumContainers() <= 0) {
       return false;
     }
@@ -1200,6 +1240,11 @@ boolean canAssign(FiCaSchedulerApp application, Priority priority,
     // If we are here, we do need containers on this rack for RACK_LOCAL req
     if (type == NodeType.RACK_LOCAL) {
       // 'Delay' rack-local just a little bit...
+      long nodeLocalityDelayMs = getNodeLocalityDelayMs();
+      if (nodeLocalityDelayMs >= 0) {
+        return application.getSchedulingDelay(priority, clock.getTime()) >=
+            nodeLocalityDelayMs;
+      }
       long missedOpportunities = application.getSchedulingOpportunities(priority);
       return (
           Math.min(scheduler.getNumClusterNodes(), getNodeLocalityDelay()) < 
@@ -1210,8 +1255,8 @@ boolean canAssign(FiCaSchedulerApp application, Priority priority,
     // Check if we need containers on this host
     if (type == NodeType.NODE_LOCAL) {
       // Now check if we need containers on this host...
-      ResourceRequest nodeLocalRequest = 
-        application.getResourceRequest(priority, node.getHostName());
+      ResourceRequest nodeLocalRequest = application.getResourceRequest(
+          priority, node, NodeType.NODE_LOCAL);
       if (nodeLocalRequest != null) {
         return nodeLocalRequest.getNumContainers() > 0;
       }
@@ -1220,6 +1265,39 @@ boolean canAssign(FiCaSchedulerApp application, Priority priority,
     return false;
   }
   
+  /**
+   * Rack-local and off-switch containers can go to any node of the rack or
+   * cluster, so skip the nodes they pack poorly on, as scored by the
+   * configured {@link PackingPolicy}, until the application has had a
+   * scheduling opportunity on every node.
+   */
+  boolean packsWell(FiCaSchedulerApp application, Priority priority,
+      FiCaSchedulerNode node, ResourceRequest request,
+      RMContainer reservedContainer) {
+    if (packingPolicy == PackingPolicy.NONE || reservedContainer != null) {
+      return true;
+    }
+    float score = packingPolicy.score(request.getCapability(),
+        node.getAvailableResource(), node.getRMNode().getTotalCapability());
+    if (score >= packingThreshold) {
+      return true;
+    }
+    return application.getSchedulingOpportunities(priority) >= 
+        scheduler.getNumClusterNodes();
+  }
+
+  /**
+   * Whether a container fits in the given resources. With a packing policy
+   * both memory and cpu have to fit, whatever the resource calculator.
+   */
+  private boolean fitsIn(Resource capability, Resource available) {
+    if (packingPolicy != PackingPolicy.NONE) {
+      return Resources.fitsIn(capability, available);
+    }
+    return resourceCalculator.computeAvailableContainers(
+        available, capability) > 0;
+  }
+
   private Container getContainer(RMContainer rmContainer, 
       FiCaSchedulerApp application, FiCaSchedulerNode node, 
       Resource capability, Priority priority) {
@@ -1279,9 +1357,7 @@ private Resource assignContainer(Resource clusterResource, FiCaSchedulerNode nod
     }
 
     // Can we allocate a container on this node?
-    int availableContainers = 
-        resourceCalculator.computeAvailableContainers(available, capability);
-    if (availableContainers > 0) {
+    if (fitsIn(capability, available)) {
       // Allocate...
 
       // Did we previously reserve containers at this 'priority'?
@@ -1324,6 +1400,10 @@ private Resource assignContainer(Resource clusterResource, FiCaSchedulerNode nod
           " cluster=" + clusterResource);
 
       return container.getResource();
+    } else if (rmContainer == null && packingPolicy != PackingPolicy.NONE &&
+        !fitsIn(capability, node.getRMNode().getTotalCapability())) {
+      // Don't reserve nodes which could never run the container
+      return Resources.none();
     } else {
       // Reserve by 'charging' in advance...
       reserve(application, priority, node, rmContainer, container);
@@ -58,6 +58,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.NodeType;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.Queue;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerApplication;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerNode;
 
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
@@ -101,6 +102,12 @@ public class FiCaSchedulerApp extends SchedulerApplication {
    * is reset to 0.
    */
   Multiset<Priority> schedulingOpportunities = HashMultiset.create();
+
+  /**
+   * When the application was first given an opportunity to schedule a task
+   * at each priority since it last successfully scheduled one.
+   */
+  Map<Priority, Long> firstSchedulingOpportunity = new HashMap<Priority, Long>();
   
   Multiset<Priority> reReservations = HashMultiset.create();
 
@@ -136,7 +143,7 @@ public synchronized void updateResourceRequests(
     this.appSchedulingInfo.updateResourceRequests(requests);
   }
 
-  public Map<String, ResourceRequest> getResourceRequests(Priority priority) {
+  public Collection<ResourceRequest> getResourceRequests(Priority priority) {
     return this.appSchedulingInfo.getResourceRequests(priority);
   }
 
@@ -152,6 +159,11 @@ public ResourceRequest getResourceRequest(Priority priority, String nodeAddress)
     return this.appSchedulingInfo.getResourceRequest(priority, nodeAddress);
   }
 
+  public ResourceRequest getResourceRequest(Priority priority,
+      SchedulerNode node, NodeType type) {
+    return this.appSchedulingInfo.getResourceRequest(priority, node, type);
+  }
+
   public synchronized int getTotalRequiredResources(Priority priority) {
     return getResourceRequest(priority, RMNode.ANY).getNumContainers();
   }
@@ -273,6 +285,28 @@ synchronized public RMContainer allocate(NodeType type, FiCaSchedulerNode node,
     return rmContainer;
   }
   
+  /**
+   * Take over a container that was still running on a node when the
+   * ResourceManager restarted.
+   */
+  synchronized public RMContainer recoverContainer(Container container) {
+    RMContainer rmContainer = new RMContainerImpl(container, this
+        .getApplicationAttemptId(), container.getNodeId(), this.rmContext
+        .getDispatcher().getEventHandler(), this.rmContext
+        .getContainerAllocationExpirer());
+    liveContainers.put(container.getId(), rmContainer);
+
+    appSchedulingInfo.recoverContainer(container);
+    Resources.addTo(currentConsumption, container.getResource());
+
+    rmContainer.handle(
+        new RMContainerEvent(container.getId(), RMContainerEventType.RECOVER));
+
+    LOG.info("Recovered container " + container.getId() + " on node "
+        + container.getNodeId());
+    return rmContainer;
+  }
+
   synchronized public List<Container> pullNewlyAllocatedContainers() {
     List<Container> returnContainerList = new ArrayList<Container>(
         newlyAllocatedContainers.size());
@@ -292,12 +326,12 @@ public Resource getCurrentConsumption() {
   synchronized public void showRequests() {
     if (LOG.isDebugEnabled()) {
       for (Priority priority : getPriorities()) {
-        Map<String, ResourceRequest> requests = getResourceRequests(priority);
+        Collection<ResourceRequest> requests = getResourceRequests(priority);
         if (requests != null) {
           LOG.debug("showRequests:" + " application=" + getApplicationId() + 
               " headRoom=" + getHeadroom() + 
               " currentConsumption=" + currentConsumption.getMemory());
-          for (ResourceRequest request : requests.values()) {
+          for (ResourceRequest request : requests) {
             LOG.debug("showRequests:" + " application=" + getApplicationId()
                 + " request=" + request);
           }
@@ -312,11 +346,30 @@ public synchronized RMContainer getRMContainer(ContainerId id) {
 
   synchronized public void resetSchedulingOpportunities(Priority priority) {
     this.schedulingOpportunities.setCount(priority, 0);
+    this.firstSchedulingOpportunity.remove(priority);
   }
 
   synchronized public void addSchedulingOpportunity(Priority priority) {
-    this.schedulingOpportunities.setCount(priority,
-        schedulingOpportunities.count(priority) + 1);
+    addSchedulingOpportunity(priority, System.currentTimeMillis());
+  }
+
+  synchronized public void addSchedulingOpportunity(Priority priority,
+      long now) {
+    int count = schedulingOpportunities.count(priority);
+    if (count == 0) {
+      this.firstSchedulingOpportunity.put(priority, now);
+    }
+    this.schedulingOpportunities.setCount(priority, count + 1);
+  }
+
+  /**
+   * Return how long, in ms, the application has been trying to schedule a
+   * task at the given priority since the last time it successfully did so,
+   * counted from the first opportunity it was given.
+   */
+  synchronized public long getSchedulingDelay(Priority priority, long now) {
+    Long first = firstSchedulingOpportunity.get(priority);
+    return (first == null) ? 0 : now - first;
   }
 
   /**
@@ -18,19 +18,37 @@
 
 package org.apache.hadoop.yarn.server.resourcemanager.scheduler.event;
 
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
 
 public class NodeAddedSchedulerEvent extends SchedulerEvent {
 
   private final RMNode rmNode;
+  private final List<Container> containers;
 
   public NodeAddedSchedulerEvent(RMNode rmNode) {
+    this(rmNode, Collections.<Container>emptyList());
+  }
+
+  public NodeAddedSchedulerEvent(RMNode rmNode, List<Container> containers) {
     super(SchedulerEventType.NODE_ADDED);
     this.rmNode = rmNode;
+    this.containers = containers;
   }
 
   public RMNode getAddedRMNode() {
     return rmNode;
   }
 
+  /**
+   * @return the containers already running on the node, which the scheduler
+   *         takes over after an RM restart
+   */
+  public List<Container> getContainers() {
+    return containers;
+  }
+
 }
@@ -82,7 +82,7 @@ public void updateDemand() {
 
     // Add up outstanding resource requests
     for (Priority p : app.getPriorities()) {
-      for (ResourceRequest r : app.getResourceRequests(p).values()) {
+      for (ResourceRequest r : app.getResourceRequests(p)) {
         Resource total = Resources.multiply(r.getCapability(), r.getNumContainers());
         Resources.addTo(demand, total);
       }
@@ -314,9 +314,9 @@ public Resource assignContainer(FSSchedulerNode node, boolean reserved) {
         app.addSchedulingOpportunity(priority);
 
         ResourceRequest rackLocalRequest = app.getResourceRequest(priority,
-            node.getRackName());
+            node, NodeType.RACK_LOCAL);
         ResourceRequest localRequest = app.getResourceRequest(priority,
-            node.getHostName());
+            node, NodeType.NODE_LOCAL);
         
         NodeType allowedLocality = app.getAllowedLocalityLevel(priority,
             scheduler.getNumClusterNodes(), scheduler.getNodeLocalityThreshold(),
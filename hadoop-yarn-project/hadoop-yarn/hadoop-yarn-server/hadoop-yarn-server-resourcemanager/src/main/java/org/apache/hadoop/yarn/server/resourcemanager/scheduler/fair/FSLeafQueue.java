@@ -21,10 +21,10 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,6 +33,7 @@
 import org.apache.hadoop.yarn.api.records.QueueACL;
 import org.apache.hadoop.yarn.api.records.QueueUserACLInfo;
 import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.fair.SchedulingAlgorithms.FairShareKey;
 
 public class FSLeafQueue extends FSQueue {
   private static final Log LOG = LogFactory.getLog(
@@ -43,6 +44,8 @@ public class FSLeafQueue extends FSQueue {
 
   /** Scheduling mode for jobs inside the queue (fair or FIFO) */
   private SchedulingMode schedulingMode;
+  private final SchedulingAlgorithms.FairShareCache appFairShares =
+      new SchedulingAlgorithms.FairShareCache();
   
   private final FairScheduler scheduler;
   private final QueueManager queueMgr;
@@ -93,8 +96,9 @@ public void setSchedulingMode(SchedulingMode mode) {
   @Override
   public void recomputeFairShares() {
     if (schedulingMode == SchedulingMode.FAIR) {
-      SchedulingAlgorithms.computeFairShares(appScheds, getFairShare());
+      appFairShares.computeFairShares(appScheds, getFairShare());
     } else {
+      appFairShares.invalidate();
       for (AppSchedulable sched: appScheds) {
         sched.setFairShare(Resources.createResource(0));
       }
@@ -163,25 +167,41 @@ public Resource assignContainer(FSSchedulerNode node, boolean reserved) {
     }
 
     // Otherwise, chose app to schedule based on given policy (fair vs fifo).
+    // The first runnable app in that order usually takes the node, so apps
+    // are polled from a heap rather than all sorted.
     else {
-      Comparator<Schedulable> comparator;
-      if (schedulingMode == SchedulingMode.FIFO) {
-        comparator = new SchedulingAlgorithms.FifoComparator();
-      } else if (schedulingMode == SchedulingMode.FAIR) {
-        comparator = new SchedulingAlgorithms.FairShareComparator();
-      } else {
-        throw new RuntimeException("Unsupported queue scheduling mode " + 
-            schedulingMode);
+      List<AppSchedulable> runnableApps =
+          new ArrayList<AppSchedulable>(appScheds.size());
+      for (AppSchedulable sched : appScheds) {
+        if (sched.getRunnable()) {
+          runnableApps.add(sched);
+        }
       }
 
-      Collections.sort(appScheds, comparator);
-      for (AppSchedulable sched: appScheds) {
-        if (sched.getRunnable()) {
-          Resource assignedResource = sched.assignContainer(node, reserved);
+      if (schedulingMode == SchedulingMode.FIFO) {
+        PriorityQueue<AppSchedulable> apps = new PriorityQueue<AppSchedulable>(
+            Math.max(1, runnableApps.size()),
+            new SchedulingAlgorithms.FifoComparator());
+        apps.addAll(runnableApps);
+        while (!apps.isEmpty()) {
+          Resource assignedResource = apps.poll().assignContainer(node, reserved);
           if (!assignedResource.equals(Resources.none())) {
             return assignedResource;
           }
         }
+      } else if (schedulingMode == SchedulingMode.FAIR) {
+        PriorityQueue<FairShareKey<AppSchedulable>> apps =
+            SchedulingAlgorithms.fairShareHeap(runnableApps);
+        while (!apps.isEmpty()) {
+          Resource assignedResource =
+              apps.poll().getSchedulable().assignContainer(node, reserved);
+          if (!assignedResource.equals(Resources.none())) {
+            return assignedResource;
+          }
+        }
+      } else {
+        throw new RuntimeException("Unsupported queue scheduling mode " + 
+            schedulingMode);
       }
 
       return Resources.none();
@@ -38,6 +38,8 @@ public class FSParentQueue extends FSQueue {
       new ArrayList<FSQueue>();
   private final QueueManager queueMgr;
   private Resource demand = Resources.createResource(0);
+  private final SchedulingAlgorithms.FairShareCache childFairShares =
+      new SchedulingAlgorithms.FairShareCache();
   
   public FSParentQueue(String name, QueueManager queueMgr, FairScheduler scheduler,
       FSParentQueue parent) {
@@ -51,7 +53,7 @@ public void addChildQueue(FSQueue child) {
 
   @Override
   public void recomputeFairShares() {
-    SchedulingAlgorithms.computeFairShares(childQueues, getFairShare());
+    childFairShares.computeFairShares(childQueues, getFairShare());
     for (FSQueue childQueue : childQueues) {
       childQueue.getMetrics().setAvailableResourcesToQueue(childQueue.getFairShare());
       childQueue.recomputeFairShares();
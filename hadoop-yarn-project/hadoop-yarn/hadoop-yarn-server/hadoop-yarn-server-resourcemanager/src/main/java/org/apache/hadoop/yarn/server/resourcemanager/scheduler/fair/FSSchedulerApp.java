@@ -57,6 +57,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.NodeType;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.Queue;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerApplication;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerNode;
 
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
@@ -136,7 +137,7 @@ public synchronized void updateResourceRequests(
     this.appSchedulingInfo.updateResourceRequests(requests);
   }
 
-  public Map<String, ResourceRequest> getResourceRequests(Priority priority) {
+  public Collection<ResourceRequest> getResourceRequests(Priority priority) {
     return appSchedulingInfo.getResourceRequests(priority);
   }
 
@@ -152,6 +153,11 @@ public ResourceRequest getResourceRequest(Priority priority, String nodeAddress)
     return appSchedulingInfo.getResourceRequest(priority, nodeAddress);
   }
 
+  public ResourceRequest getResourceRequest(Priority priority,
+      SchedulerNode node, NodeType type) {
+    return appSchedulingInfo.getResourceRequest(priority, node, type);
+  }
+
   public synchronized int getTotalRequiredResources(Priority priority) {
     return getResourceRequest(priority, RMNode.ANY).getNumContainers();
   }
@@ -252,12 +258,12 @@ public Resource getCurrentConsumption() {
   synchronized public void showRequests() {
     if (LOG.isDebugEnabled()) {
       for (Priority priority : getPriorities()) {
-        Map<String, ResourceRequest> requests = getResourceRequests(priority);
+        Collection<ResourceRequest> requests = getResourceRequests(priority);
         if (requests != null) {
           LOG.debug("showRequests:" + " application=" + getApplicationId() + 
               " headRoom=" + getHeadroom() + 
               " currentConsumption=" + currentConsumption.getMemory());
-          for (ResourceRequest request : requests.values()) {
+          for (ResourceRequest request : requests) {
             LOG.debug("showRequests:" + " application=" + getApplicationId()
                 + " request=" + request);
           }
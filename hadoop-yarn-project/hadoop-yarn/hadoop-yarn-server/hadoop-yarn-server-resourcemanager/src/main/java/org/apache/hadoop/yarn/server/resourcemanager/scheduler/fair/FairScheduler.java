@@ -26,6 +26,7 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
@@ -60,6 +61,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.rmcontainer.RMContainerEventType;
 import org.apache.hadoop.yarn.server.resourcemanager.rmcontainer.RMContainerState;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeCleanContainerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.UpdatedContainerInfo;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.ActiveUsersManager;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.Allocation;
@@ -75,6 +77,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeRemovedSchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeUpdateSchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.SchedulerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.fair.SchedulingAlgorithms.FairShareKey;
 import org.apache.hadoop.yarn.server.resourcemanager.security.RMContainerTokenSecretManager;
 
 /**
@@ -161,6 +164,15 @@ public class FairScheduler implements ResourceScheduler {
   protected boolean assignMultiple; // Allocate multiple containers per
                                     // heartbeat
   protected int maxAssign; // Max containers to assign per heartbeat
+
+  // Whether containers are assigned by the continuous scheduling thread
+  // rather than on node heartbeats
+  protected boolean continuousSchedulingEnabled;
+  // Sleep time between passes of the continuous scheduling thread (ms)
+  protected int continuousSchedulingSleepMs;
+
+  private volatile Thread updateThread;
+  private volatile Thread schedulingThread;
   
   public FairScheduler() {
     clock = new SystemClock();
@@ -187,11 +199,14 @@ private RMContainer getRMContainer(ContainerId containerId) {
    */
   private class UpdateThread implements Runnable {
     public void run() {
-      while (true) {
+      while (!Thread.currentThread().isInterrupted()) {
         try {
           Thread.sleep(UPDATE_INTERVAL);
           update();
           preemptTasksIfNecessary();
+        } catch (InterruptedException e) {
+          LOG.warn("Update thread interrupted. Returning.");
+          return;
         } catch (Exception e) {
           LOG.error("Exception in fair scheduler UpdateThread", e);
         }
@@ -199,12 +214,65 @@ public void run() {
     }
   }
 
+  /**
+   * A runnable which goes over all nodes every
+   * <code>continuousSchedulingSleepMs</code> milliseconds, assigning
+   * containers on each, independently of node heartbeats.
+   */
+  private class ContinuousSchedulingThread implements Runnable {
+    public void run() {
+      while (!Thread.currentThread().isInterrupted()) {
+        try {
+          continuousSchedulingAttempt();
+          Thread.sleep(continuousSchedulingSleepMs);
+        } catch (InterruptedException e) {
+          LOG.warn("Continuous scheduling thread interrupted. Returning.");
+          return;
+        } catch (Exception e) {
+          LOG.error("Exception in fair scheduler ContinuousSchedulingThread",
+              e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Attempt to assign containers on every node, starting with the nodes
+   * with the most available resources. The scheduler lock is taken per
+   * node, so that heartbeats and other events are not held up for a whole
+   * pass.
+   */
+  void continuousSchedulingAttempt() {
+    List<FSSchedulerNode> nodeList =
+        new ArrayList<FSSchedulerNode>(nodes.values());
+    // Available resources only change under the scheduler lock, so sorting
+    // under it keeps the comparator consistent
+    synchronized (this) {
+      Collections.sort(nodeList, new NodeAvailableResourceComparator());
+    }
+    for (FSSchedulerNode node : nodeList) {
+      attemptScheduling(node);
+    }
+  }
+
+  /** Sort nodes by available resource, largest first. */
+  private static class NodeAvailableResourceComparator
+      implements Comparator<FSSchedulerNode> {
+    @Override
+    public int compare(FSSchedulerNode n1, FSSchedulerNode n2) {
+      return n2.getAvailableResource().getMemory()
+          - n1.getAvailableResource().getMemory();
+    }
+  }
+
   /**
    * Recompute the internal variables used by the scheduler - per-job weights,
    * fair shares, deficits, minimum slot allocations, and amount of used and
-   * required resources per job.
+   * required resources per job. This is normally done every
+   * <code>UPDATE_INTERVAL</code> milliseconds by the update thread, but is
+   * public so that simulators running on their own clock can drive it.
    */
-  protected synchronized void update() {
+  public synchronized void update() {
     queueMgr.reloadAllocsIfNecessary(); // Relaod alloc file
     updateRunnability(); // Set job runnability based on user/queue limits
     updatePreemptionVariables(); // Determine if any queues merit preemption
@@ -607,12 +675,20 @@ private synchronized void completedContainer(RMContainer rmContainer,
         " with event: " + event);
   }
 
-  private synchronized void addNode(RMNode node) {
+  private synchronized void addNode(RMNode node, List<Container> containers) {
     nodes.put(node.getNodeID(), new FSSchedulerNode(node));
     Resources.addTo(clusterCapacity, node.getTotalCapability());
 
     LOG.info("Added node " + node.getNodeAddress() +
         " cluster capacity: " + clusterCapacity);
+
+    // Containers running across an RM restart are not recovered
+    for (Container container : containers) {
+      LOG.info("Killing container " + container.getId() + " on node: "
+          + node.getNodeAddress());
+      rmContext.getDispatcher().getEventHandler().handle(
+          new RMNodeCleanContainerEvent(node.getNodeID(), container.getId()));
+    }
   }
 
   private synchronized void removeNode(RMNode rmNode) {
@@ -777,6 +853,24 @@ private synchronized void nodeUpdate(RMNode nm) {
           completedContainer, RMContainerEventType.FINISHED);
     }
 
+    // With continuous scheduling, the containers allocated on this node
+    // are picked up by their applications; only the node state is updated
+    // on a heartbeat
+    if (!continuousSchedulingEnabled) {
+      attemptScheduling(node);
+    }
+  }
+
+  /**
+   * Assign containers on a node to the queues furthest below their fair
+   * share, or complete a reservation made on the node.
+   */
+  private synchronized void attemptScheduling(FSSchedulerNode node) {
+    if (nodes.get(node.getNodeID()) != node) {
+      // the node was removed since the caller looked it up
+      return;
+    }
+
     // Assign new containers...
     // 1. Check for reserved applications
     // 2. Schedule if there are no reservations
@@ -790,34 +884,34 @@ private synchronized void nodeUpdate(RMNode nm) {
 
       // Try to fulfill the reservation
       LOG.info("Trying to fulfill reservation for application " +
-          reservedApplication.getApplicationId() + " on node: " + nm);
+          reservedApplication.getApplicationId() + " on node: " + node);
 
       FSLeafQueue queue = queueMgr.getLeafQueue(reservedApplication.getQueueName());
       queue.assignContainer(node, true);
     }
 
-    // Otherwise, schedule at queue which is furthest below fair share
+    // Otherwise, schedule at queue which is furthest below fair share.
+    // Taking a container only moves the queue that took it in this order,
+    // so that queue is put back in the heap instead of re-sorting all of
+    // them. A queue that declines the node is not offered it again.
     else {
+      PriorityQueue<FairShareKey<FSLeafQueue>> scheds =
+          SchedulingAlgorithms.fairShareHeap(queueMgr.getLeafQueues());
       int assignedContainers = 0;
-      while (node.getReservedContainer() == null) {
+      while (node.getReservedContainer() == null && !scheds.isEmpty()) {
         // At most one task is scheduled each iteration of this loop
-        List<FSLeafQueue> scheds = new ArrayList<FSLeafQueue>(
-            queueMgr.getLeafQueues());
-        Collections.sort(scheds, new SchedulingAlgorithms.FairShareComparator());
-        boolean assignedContainer = false;
-        for (FSLeafQueue sched : scheds) {
-          Resource assigned = sched.assignContainer(node, false);
-          if (Resources.greaterThan(assigned, Resources.none()) ||
-              node.getReservedContainer() != null) {
-            eventLog.log("ASSIGN", nm.getHostName(), assigned);
-            assignedContainers++;
-            assignedContainer = true;
-            break;
-          }
+        FairShareKey<FSLeafQueue> sched = scheds.poll();
+        Resource assigned = sched.getSchedulable().assignContainer(node, false);
+        if (!Resources.greaterThan(assigned, Resources.none()) &&
+            node.getReservedContainer() == null) {
+          continue;
         }
-        if (!assignedContainer) { break; }
+        eventLog.log("ASSIGN", node.getHostName(), assigned);
+        assignedContainers++;
         if (!assignMultiple) { break; }
         if ((assignedContainers >= maxAssign) && (maxAssign > 0)) { break; }
+        sched.update();
+        scheds.add(sched);
       }
     }
   }
@@ -855,7 +949,8 @@ public void handle(SchedulerEvent event) {
         throw new RuntimeException("Unexpected event type: " + event);
       }
       NodeAddedSchedulerEvent nodeAddedEvent = (NodeAddedSchedulerEvent)event;
-      addNode(nodeAddedEvent.getAddedRMNode());
+      addNode(nodeAddedEvent.getAddedRMNode(),
+          nodeAddedEvent.getContainers());
       break;
     case NODE_REMOVED:
       if (!(event instanceof NodeRemovedSchedulerEvent)) {
@@ -935,6 +1030,8 @@ public synchronized void reinitialize(Configuration conf, RMContext rmContext)
       preemptionEnabled = this.conf.getPreemptionEnabled();
       assignMultiple = this.conf.getAssignMultiple();
       maxAssign = this.conf.getMaxAssign();
+      continuousSchedulingEnabled = this.conf.isContinuousSchedulingEnabled();
+      continuousSchedulingSleepMs = this.conf.getContinuousSchedulingSleepMs();
 
       initialized = true;
 
@@ -946,10 +1043,17 @@ public synchronized void reinitialize(Configuration conf, RMContext rmContext)
         throw new IOException("Failed to start FairScheduler", e);
       }
 
-      Thread updateThread = new Thread(new UpdateThread());
+      updateThread = new Thread(new UpdateThread());
       updateThread.setName("FairSchedulerUpdateThread");
       updateThread.setDaemon(true);
       updateThread.start();
+
+      if (continuousSchedulingEnabled) {
+        schedulingThread = new Thread(new ContinuousSchedulingThread());
+        schedulingThread.setName("FairSchedulerContinuousScheduling");
+        schedulingThread.setDaemon(true);
+        schedulingThread.start();
+      }
     } else {
       this.conf = new FairSchedulerConfiguration(conf);
       userAsDefaultQueue = this.conf.getUserAsDefaultQueue();
@@ -965,6 +1069,34 @@ public synchronized void reinitialize(Configuration conf, RMContext rmContext)
     }
   }
 
+  // Not synchronized, the threads may be waiting for the scheduler lock
+  @Override
+  public void stop() {
+    stopThread(schedulingThread);
+    schedulingThread = null;
+    stopThread(updateThread);
+    updateThread = null;
+  }
+
+  private void stopThread(Thread thread) {
+    if (thread == null) {
+      return;
+    }
+    thread.interrupt();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      LOG.warn("Interrupted while stopping " + thread.getName(), e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Containers reported by re-registering nodes are killed, see addNode
+  @Override
+  public boolean isContainerRecoverySupported() {
+    return false;
+  }
+
   @Override
   public QueueInfo getQueueInfo(String queueName, boolean includeChildQueues,
       boolean recursive) throws IOException {
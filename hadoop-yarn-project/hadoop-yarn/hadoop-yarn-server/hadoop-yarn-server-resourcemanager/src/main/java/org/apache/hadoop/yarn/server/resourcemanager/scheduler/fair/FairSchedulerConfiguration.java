@@ -66,6 +66,19 @@ public class FairSchedulerConfiguration extends Configuration {
   protected static final String MAX_ASSIGN = CONF_PREFIX + "max.assign";
   protected static final int DEFAULT_MAX_ASSIGN = -1;
 
+  /**
+   * Whether to assign containers from a scheduling thread which goes over
+   * all nodes, rather than only when a node heartbeats.
+   */
+  protected static final String  CONTINUOUS_SCHEDULING_ENABLED =
+      CONF_PREFIX + "continuous-scheduling-enabled";
+  protected static final boolean DEFAULT_CONTINUOUS_SCHEDULING_ENABLED = false;
+
+  /** How long the continuous scheduling thread sleeps between passes. */
+  protected static final String  CONTINUOUS_SCHEDULING_SLEEP_MS =
+      CONF_PREFIX + "continuous-scheduling-sleep-ms";
+  protected static final int     DEFAULT_CONTINUOUS_SCHEDULING_SLEEP_MS = 5;
+
   public FairSchedulerConfiguration(Configuration conf) {
     super(conf);
     addResource(FS_CONFIGURATION_FILE);
@@ -113,6 +126,16 @@ public int getMaxAssign() {
     return getInt(MAX_ASSIGN, DEFAULT_MAX_ASSIGN);
   }
 
+  public boolean isContinuousSchedulingEnabled() {
+    return getBoolean(CONTINUOUS_SCHEDULING_ENABLED,
+        DEFAULT_CONTINUOUS_SCHEDULING_ENABLED);
+  }
+
+  public int getContinuousSchedulingSleepMs() {
+    return getInt(CONTINUOUS_SCHEDULING_SLEEP_MS,
+        DEFAULT_CONTINUOUS_SCHEDULING_SLEEP_MS);
+  }
+
   public boolean getSizeBasedWeight() {
     return getBoolean(SIZE_BASED_WEIGHT, DEFAULT_SIZE_BASED_WEIGHT);
   }
@@ -19,8 +19,13 @@
 package org.apache.hadoop.yarn.server.resourcemanager.scheduler.fair;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -78,39 +83,133 @@ public static class FairShareComparator implements Comparator<Schedulable>, Seri
 
     @Override
     public int compare(Schedulable s1, Schedulable s2) {
-      double minShareRatio1, minShareRatio2;
-      double useToWeightRatio1, useToWeightRatio2;
-      Resource minShare1 = Resources.min(s1.getMinShare(), s1.getDemand());
-      Resource minShare2 = Resources.min(s2.getMinShare(), s2.getDemand());
-      boolean s1Needy = Resources.lessThan(s1.getResourceUsage(), minShare1);
-      boolean s2Needy = Resources.lessThan(s2.getResourceUsage(), minShare2);
-      Resource one = Resources.createResource(1);
-      minShareRatio1 = (double) s1.getResourceUsage().getMemory() /
-          Resources.max(minShare1, one).getMemory();
-      minShareRatio2 = (double) s2.getResourceUsage().getMemory() /
-          Resources.max(minShare2, one).getMemory();
-      useToWeightRatio1 = s1.getResourceUsage().getMemory() / s1.getWeight();
-      useToWeightRatio2 = s2.getResourceUsage().getMemory() / s2.getWeight();
+      return new FairShareKey<Schedulable>(s1).compareTo(
+          new FairShareKey<Schedulable>(s2));
+    }
+  }
+
+  /**
+   * The values that {@link FairShareComparator} orders a Schedulable by,
+   * computed once. Ordering n Schedulables by their keys calls the usage,
+   * demand, min share and weight getters, which can be expensive (a queue's
+   * usage is summed over its apps), n times rather than on every comparison.
+   */
+  static class FairShareKey<S extends Schedulable>
+      implements Comparable<FairShareKey<S>> {
+    private static final Resource ONE = Resources.createResource(1);
+
+    private final S sched;
+    private final long startTime;
+    private final String name;
+    private boolean needy;
+    private double minShareRatio;
+    private double useToWeightRatio;
+
+    FairShareKey(S sched) {
+      this.sched = sched;
+      this.startTime = sched.getStartTime();
+      this.name = sched.getName();
+      update();
+    }
+
+    S getSchedulable() {
+      return sched;
+    }
+
+    /**
+     * Recompute the key, after the usage of the Schedulable has changed.
+     */
+    void update() {
+      Resource usage = sched.getResourceUsage();
+      Resource minShare = Resources.min(sched.getMinShare(), sched.getDemand());
+      needy = Resources.lessThan(usage, minShare);
+      minShareRatio = (double) usage.getMemory() /
+          Resources.max(minShare, ONE).getMemory();
+      useToWeightRatio = usage.getMemory() / sched.getWeight();
+    }
+
+    @Override
+    public int compareTo(FairShareKey<S> other) {
       int res = 0;
-      if (s1Needy && !s2Needy)
+      if (needy && !other.needy)
         res = -1;
-      else if (s2Needy && !s1Needy)
+      else if (other.needy && !needy)
         res = 1;
-      else if (s1Needy && s2Needy)
-        res = (int) Math.signum(minShareRatio1 - minShareRatio2);
+      else if (needy && other.needy)
+        res = (int) Math.signum(minShareRatio - other.minShareRatio);
       else // Neither schedulable is needy
-        res = (int) Math.signum(useToWeightRatio1 - useToWeightRatio2);
+        res = (int) Math.signum(useToWeightRatio - other.useToWeightRatio);
       if (res == 0) {
         // Apps are tied in fairness ratio. Break the tie by submit time and job
         // name to get a deterministic ordering, which is useful for unit tests.
-        res = (int) Math.signum(s1.getStartTime() - s2.getStartTime());
+        res = (int) Math.signum(startTime - other.startTime);
         if (res == 0)
-          res = s1.getName().compareTo(s2.getName());
+          res = name.compareTo(other.name);
       }
       return res;
     }
   }
 
+  /**
+   * Build a heap of Schedulables in {@link FairShareComparator} order. Callers
+   * that offer a resource down this order usually stop at one of the first
+   * few Schedulables, so polling a heap, which is built in linear time,
+   * is cheaper than sorting them all.
+   */
+  static <S extends Schedulable> PriorityQueue<FairShareKey<S>> fairShareHeap(
+      Collection<S> schedulables) {
+    List<FairShareKey<S>> keys =
+        new ArrayList<FairShareKey<S>>(schedulables.size());
+    for (S sched : schedulables) {
+      keys.add(new FairShareKey<S>(sched));
+    }
+    return new PriorityQueue<FairShareKey<S>>(keys);
+  }
+
+  /**
+   * Remembers the inputs of the last computeFairShares call over a queue's
+   * children, to skip recomputing shares that cannot have changed. The
+   * scheduler recomputes the shares of every queue on each update, while
+   * the demands, min shares and weights they depend on usually stay the same
+   * between updates.
+   */
+  static class FairShareCache {
+    private List<Schedulable> schedulables = Collections.emptyList();
+    private double[] inputs = new double[0];
+
+    /**
+     * Set the fair shares of the given Schedulables as computeFairShares
+     * would, unless they were already computed from the same inputs.
+     */
+    void computeFairShares(Collection<? extends Schedulable> scheds,
+        Resource totalResources) {
+      double[] newInputs = new double[1 + 3 * scheds.size()];
+      int i = 0;
+      newInputs[i++] = totalResources.getMemory();
+      for (Schedulable sched : scheds) {
+        newInputs[i++] = sched.getDemand().getMemory();
+        newInputs[i++] = sched.getMinShare().getMemory();
+        newInputs[i++] = sched.getWeight();
+      }
+      List<Schedulable> newSchedulables = new ArrayList<Schedulable>(scheds);
+      if (Arrays.equals(inputs, newInputs) &&
+          schedulables.equals(newSchedulables)) {
+        return;
+      }
+      SchedulingAlgorithms.computeFairShares(scheds, totalResources);
+      inputs = newInputs;
+      schedulables = newSchedulables;
+    }
+
+    /**
+     * Forget the last inputs, because the shares were set by other means.
+     */
+    void invalidate() {
+      schedulables = Collections.emptyList();
+      inputs = new double[0];
+    }
+  }
+
   /**
    * Number of iterations for the binary search in computeFairShares. This is
    * equivalent to the number of bits of precision in the output. 25 iterations
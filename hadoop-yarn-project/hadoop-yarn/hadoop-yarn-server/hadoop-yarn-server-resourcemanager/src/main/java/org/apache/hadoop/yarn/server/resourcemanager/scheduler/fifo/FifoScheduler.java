@@ -53,6 +53,7 @@
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.factories.RecordFactory;
 import org.apache.hadoop.yarn.factory.providers.RecordFactoryProvider;
+import org.apache.hadoop.yarn.server.resourcemanager.OpportunisticContainerAllocator;
 import org.apache.hadoop.yarn.server.resourcemanager.RMAuditLogger;
 import org.apache.hadoop.yarn.server.resourcemanager.RMAuditLogger.AuditConstants;
 import org.apache.hadoop.yarn.server.resourcemanager.RMContext;
@@ -70,6 +71,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.UpdatedContainerInfo;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.ActiveUsersManager;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.Allocation;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.PendingRecoveredContainers;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.NodeType;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.Queue;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.QueueMetrics;
@@ -112,6 +114,10 @@ public class FifoScheduler implements ResourceScheduler, Configurable {
 
   private Map<ApplicationAttemptId, FiCaSchedulerApp> applications
       = new TreeMap<ApplicationAttemptId, FiCaSchedulerApp>();
+
+  // Containers of nodes which registered before their attempt was added
+  private PendingRecoveredContainers pendingRecoveredContainers =
+      new PendingRecoveredContainers();
   
   private ActiveUsersManager activeUsersManager;
 
@@ -217,6 +223,16 @@ public Resource getMaximumResourceCapability() {
     }
   }
 
+  @Override
+  public void stop() {
+    // no threads of its own
+  }
+
+  @Override
+  public boolean isContainerRecoverySupported() {
+    return true;
+  }
+
   private static final Allocation EMPTY_ALLOCATION = 
       new Allocation(EMPTY_CONTAINER_LIST, Resources.createResource(0));
   @Override
@@ -303,6 +319,17 @@ private synchronized void addApplication(ApplicationAttemptId appAttemptId,
     metrics.submitApp(user, appAttemptId.getAttemptId());
     LOG.info("Application Submission: " + appAttemptId.getApplicationId() + 
         " from " + user + ", currently active: " + applications.size());
+    // Take over the containers of the attempt reported before it was added
+    for (Container container : pendingRecoveredContainers.remove(
+        appAttemptId.getApplicationId())) {
+      FiCaSchedulerNode node = getNode(container.getNodeId());
+      if (node != null && appAttemptId.equals(
+          container.getId().getApplicationAttemptId())) {
+        recoverContainer(node, schedulerApp, container);
+      } else {
+        killUnknownContainer(container);
+      }
+    }
     rmContext.getDispatcher().getEventHandler().handle(
         new RMAppAttemptEvent(appAttemptId,
             RMAppAttemptEventType.APP_ACCEPTED));
@@ -312,6 +339,10 @@ private synchronized void doneApplication(
       ApplicationAttemptId applicationAttemptId,
       RMAppAttemptState rmAppAttemptFinalState)
       throws IOException {
+    for (Container container :
+        pendingRecoveredContainers.remove(applicationAttemptId)) {
+      killUnknownContainer(container);
+    }
     FiCaSchedulerApp application = getApplication(applicationAttemptId);
     if (application == null) {
       throw new IOException("Unknown application " + applicationAttemptId + 
@@ -596,6 +627,7 @@ private synchronized void nodeUpdate(RMNode rmNode) {
     for (ContainerStatus completedContainer : completedContainers) {
       ContainerId containerId = completedContainer.getContainerId();
       LOG.debug("Container FINISHED: " + containerId);
+      pendingRecoveredContainers.remove(containerId);
       containerCompleted(getRMContainer(containerId), 
           completedContainer, RMContainerEventType.FINISHED);
     }
@@ -621,7 +653,8 @@ public void handle(SchedulerEvent event) {
     case NODE_ADDED:
     {
       NodeAddedSchedulerEvent nodeAddedEvent = (NodeAddedSchedulerEvent)event;
-      addNode(nodeAddedEvent.getAddedRMNode());
+      addNode(nodeAddedEvent.getAddedRMNode(),
+          nodeAddedEvent.getContainers());
     }
     break;
     case NODE_REMOVED:
@@ -750,6 +783,7 @@ private synchronized void removeNode(RMNode nodeInfo) {
     
     //Remove the node
     this.nodes.remove(nodeInfo.getNodeID());
+    pendingRecoveredContainers.remove(nodeInfo.getNodeID());
     
     // Update cluster metrics
     Resources.subtractFrom(clusterResource, node.getRMNode().getTotalCapability());
@@ -766,9 +800,47 @@ public List<QueueUserACLInfo> getQueueUserAclInfo() {
     return DEFAULT_QUEUE.getQueueUserAclInfo(null); 
   }
 
-  private synchronized void addNode(RMNode nodeManager) {
-    this.nodes.put(nodeManager.getNodeID(), new FiCaSchedulerNode(nodeManager));
+  private synchronized void addNode(RMNode nodeManager,
+      List<Container> containers) {
+    FiCaSchedulerNode node = new FiCaSchedulerNode(nodeManager);
+    this.nodes.put(nodeManager.getNodeID(), node);
     Resources.addTo(clusterResource, nodeManager.getTotalCapability());
+
+    // Take over the containers still running after an RM restart. Those of
+    // recovered attempts not added yet are held until they are.
+    for (Container container : containers) {
+      ContainerId containerId = container.getId();
+      if (OpportunisticContainerAllocator.isOpportunistic(containerId)) {
+        killUnknownContainer(container);
+        continue;
+      }
+      FiCaSchedulerApp application =
+          getApplication(containerId.getApplicationAttemptId());
+      if (application != null) {
+        recoverContainer(node, application, container);
+      } else if (!pendingRecoveredContainers.hold(rmContext, container)) {
+        killUnknownContainer(container);
+      }
+    }
+  }
+
+  private void recoverContainer(FiCaSchedulerNode node,
+      FiCaSchedulerApp application, Container container) {
+    if (container.getPriority() == null) {
+      // NMs do not know the priority containers were allocated at
+      container.setPriority(BuilderUtils.newPriority(0));
+    }
+    RMContainer rmContainer = application.recoverContainer(container);
+    node.allocateContainer(application.getApplicationId(), rmContainer);
+    Resources.addTo(usedResource, container.getResource());
+  }
+
+  private void killUnknownContainer(Container container) {
+    LOG.info("Killing unknown container " + container.getId() + " on node: "
+        + container.getNodeId());
+    this.rmContext.getDispatcher().getEventHandler()
+      .handle(new RMNodeCleanContainerEvent(container.getNodeId(),
+          container.getId()));
   }
 
   @Override
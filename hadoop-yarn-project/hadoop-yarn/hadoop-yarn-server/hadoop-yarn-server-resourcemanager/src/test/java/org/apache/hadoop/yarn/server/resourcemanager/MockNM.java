@@ -80,10 +80,16 @@ public void containerStatus(Container container) throws Exception {
   }
 
   public RegistrationResponse registerNode() throws Exception {
+    return registerNode(new ArrayList<Container>());
+  }
+
+  public RegistrationResponse registerNode(List<Container> containers)
+      throws Exception {
     RegisterNodeManagerRequest req = Records.newRecord(
         RegisterNodeManagerRequest.class);
     req.setNodeId(nodeId);
     req.setHttpPort(httpPort);
+    req.setContainers(containers);
     Resource resource = Records.newRecord(Resource.class);
     resource.setMemory(memory);
     req.setResource(resource);
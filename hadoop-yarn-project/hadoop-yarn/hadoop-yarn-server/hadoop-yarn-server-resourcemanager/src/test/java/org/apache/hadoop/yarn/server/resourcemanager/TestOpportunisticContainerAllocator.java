@@ -0,0 +1,233 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.resourcemanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerState;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.api.records.Priority;
+import org.apache.hadoop.yarn.api.records.ResourceRequest;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.event.Dispatcher;
+import org.apache.hadoop.yarn.event.Event;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.RMApp;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttemptEventType;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.event.RMAppAttemptContainerFinishedEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeCleanContainerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerNodeReport;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.YarnScheduler;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeRemovedSchedulerEvent;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOpportunisticContainerAllocator {
+
+  private final List<Event> events = new ArrayList<Event>();
+  private final Priority priority = BuilderUtils.newPriority(1);
+  private ApplicationAttemptId attemptId;
+  private RMNode smallNode;
+  private RMNode busyNode;
+  private RMNode idleNode;
+  private RMContext rmContext;
+  private YarnScheduler scheduler;
+  private OpportunisticContainerAllocator allocator;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setUp() {
+    ApplicationId appId = BuilderUtils.newApplicationId(1, 1);
+    attemptId = BuilderUtils.newApplicationAttemptId(appId, 1);
+    RMApp app = mock(RMApp.class);
+    when(app.getUser()).thenReturn("user");
+    ConcurrentMap<ApplicationId, RMApp> apps =
+        new ConcurrentHashMap<ApplicationId, RMApp>();
+    apps.put(appId, app);
+
+    smallNode = MockNodes.newNodeInfo(0, BuilderUtils.newResource(1024, 1));
+    busyNode = MockNodes.newNodeInfo(0, BuilderUtils.newResource(4096, 4));
+    idleNode = MockNodes.newNodeInfo(0, BuilderUtils.newResource(4096, 4));
+    ConcurrentMap<NodeId, RMNode> nodes =
+        new ConcurrentHashMap<NodeId, RMNode>();
+    for (RMNode node : Arrays.asList(smallNode, busyNode, idleNode)) {
+      nodes.put(node.getNodeID(), node);
+    }
+
+    // The scheduler has three containers running on the busy node
+    scheduler = mock(YarnScheduler.class);
+    SchedulerNodeReport busyReport = mock(SchedulerNodeReport.class);
+    when(busyReport.getNumContainers()).thenReturn(3);
+    when(scheduler.getNodeReport(busyNode.getNodeID())).thenReturn(busyReport);
+
+    Dispatcher dispatcher = mock(Dispatcher.class);
+    when(dispatcher.getEventHandler()).thenReturn(new EventHandler<Event>() {
+      @Override
+      public void handle(Event event) {
+        events.add(event);
+      }
+    });
+
+    rmContext = mock(RMContext.class);
+    when(rmContext.getRMApps()).thenReturn(apps);
+    when(rmContext.getRMNodes()).thenReturn(nodes);
+    when(rmContext.getDispatcher()).thenReturn(dispatcher);
+    allocator = new OpportunisticContainerAllocator(rmContext, scheduler,
+        new Configuration());
+  }
+
+  private ResourceRequest newRequest(String hostName, int containers) {
+    ResourceRequest request = BuilderUtils.newResourceRequest(priority,
+        hostName, BuilderUtils.newResource(2048, 1), containers);
+    request.setOpportunistic(true);
+    return request;
+  }
+
+  @Test
+  public void testPlacedOnLeastLoadedNodes() {
+    List<Container> containers = allocator.allocate(attemptId,
+        Arrays.asList(newRequest(RMNode.ANY, 5)));
+    assertEquals(5, containers.size());
+
+    Set<ContainerId> ids = new HashSet<ContainerId>();
+    for (Container container : containers) {
+      assertTrue(container.getOpportunistic());
+      assertTrue(OpportunisticContainerAllocator.isOpportunistic(
+          container.getId()));
+      ids.add(container.getId());
+    }
+    assertEquals(5, ids.size());
+    assertEquals(5, events.size());
+
+    // The small node cannot run them, and the busy one only gets some once
+    // the idle one has as many containers
+    int idle = allocator.getOutstandingContainers(idleNode.getNodeID());
+    int busy = allocator.getOutstandingContainers(busyNode.getNodeID());
+    assertEquals(0, allocator.getOutstandingContainers(smallNode.getNodeID()));
+    assertEquals(5, idle + busy);
+    assertTrue(idle >= 3);
+    assertTrue(busy >= 1);
+  }
+
+  @Test
+  public void testPreferredHosts() {
+    List<Container> containers = allocator.allocate(attemptId,
+        Arrays.asList(newRequest(busyNode.getHostName(), 2),
+            newRequest(RMNode.ANY, 2)));
+    assertEquals(2, containers.size());
+    for (Container container : containers) {
+      assertEquals(busyNode.getNodeID(), container.getNodeId());
+    }
+  }
+
+  @Test
+  public void testCompletedReleasedAndLost() {
+    List<Container> containers = allocator.allocate(attemptId,
+        Arrays.asList(newRequest(idleNode.getHostName(), 3),
+            newRequest(RMNode.ANY, 3)));
+    assertEquals(3, allocator.getOutstandingContainers(idleNode.getNodeID()));
+    events.clear();
+
+    // Completed on the node
+    ContainerId completed = containers.get(0).getId();
+    allocator.containersCompleted(idleNode.getNodeID(), Arrays.asList(
+        BuilderUtils.newContainerStatus(completed, ContainerState.COMPLETE,
+            "", 0)));
+    assertEquals(2, allocator.getOutstandingContainers(idleNode.getNodeID()));
+    assertEquals(1, events.size());
+    assertEquals(RMAppAttemptEventType.CONTAINER_FINISHED,
+        events.get(0).getType());
+    assertEquals(completed, ((RMAppAttemptContainerFinishedEvent)
+        events.get(0)).getContainerStatus().getContainerId());
+
+    // Released by the AM: killed on the node and reported as completed
+    events.clear();
+    ContainerId released = containers.get(1).getId();
+    allocator.release(attemptId, Arrays.asList(released));
+    assertEquals(1, allocator.getOutstandingContainers(idleNode.getNodeID()));
+    assertEquals(2, events.size());
+    assertEquals(released,
+        ((RMNodeCleanContainerEvent) events.get(0)).getContainerId());
+    assertEquals(RMAppAttemptEventType.CONTAINER_FINISHED,
+        events.get(1).getType());
+
+    // Lost with the node
+    events.clear();
+    allocator.handle(new NodeRemovedSchedulerEvent(idleNode));
+    assertEquals(0, allocator.getOutstandingContainers(idleNode.getNodeID()));
+    assertEquals(1, events.size());
+    assertEquals(containers.get(2).getId(),
+        ((RMAppAttemptContainerFinishedEvent) events.get(0))
+            .getContainerStatus().getContainerId());
+  }
+
+  @Test
+  public void testNodeLimit() {
+    Configuration conf = new Configuration();
+    conf.setInt(YarnConfiguration.RM_OPPORTUNISTIC_CONTAINERS_MAX_PER_NODE,
+        1);
+    allocator = new OpportunisticContainerAllocator(rmContext, scheduler,
+        conf);
+
+    // One on each node they fit on
+    List<Container> containers = allocator.allocate(attemptId,
+        Arrays.asList(newRequest(RMNode.ANY, 5)));
+    assertEquals(2, containers.size());
+    assertEquals(1, allocator.getOutstandingContainers(idleNode.getNodeID()));
+    assertEquals(1, allocator.getOutstandingContainers(busyNode.getNodeID()));
+  }
+
+  @Test
+  public void testApplicationLimit() {
+    Configuration conf = new Configuration();
+    conf.setInt(YarnConfiguration.RM_OPPORTUNISTIC_CONTAINERS_MAX_PER_APP, 3);
+    allocator = new OpportunisticContainerAllocator(rmContext, scheduler,
+        conf);
+
+    List<Container> containers = allocator.allocate(attemptId,
+        Arrays.asList(newRequest(RMNode.ANY, 5)));
+    assertEquals(3, containers.size());
+
+    // Another one once one completed
+    Container completed = containers.get(0);
+    allocator.containersCompleted(completed.getNodeId(), Arrays.asList(
+        BuilderUtils.newContainerStatus(completed.getId(),
+            ContainerState.COMPLETE, "", 0)));
+    assertEquals(1, allocator.allocate(attemptId,
+        Arrays.asList(newRequest(RMNode.ANY, 5))).size());
+  }
+}
@@ -31,11 +31,13 @@
 import junit.framework.Assert;
 
 import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.ContainerStatus;
 import org.apache.hadoop.yarn.api.records.NodeHealthStatus;
 import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.api.records.NodeState;
+import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.hadoop.yarn.event.InlineDispatcher;
 import org.apache.hadoop.yarn.server.api.records.HeartbeatResponse;
@@ -44,6 +46,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeEventType;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeImpl;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeReconnectEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNodeStatusEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.UpdatedContainerInfo;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.YarnScheduler;
@@ -57,6 +60,7 @@
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentMatcher;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -335,10 +339,44 @@ public void testUpdateHeartbeatResponseForCleanup() {
     Assert.assertEquals(finishedAppId, hbrsp.getApplicationsToCleanup(0));
   }
 
+  @Test
+  public void testReconnectWithRecoveredContainers() {
+    Resource capability = BuilderUtils.newResource(4096, 4);
+    RMNodeImpl node = getRunningNode(capability);
+    NodeId nodeId = node.getNodeID();
+    RMNodeImpl newNode = new RMNodeImpl(nodeId, rmContext, null, 0, 0,
+        null, capability);
+    Container container = mock(Container.class);
+
+    // The NM recovered its containers, so the scheduler keeps the node
+    eventType = null;
+    node.handle(new RMNodeReconnectEvent(nodeId, newNode,
+        Collections.singletonList(container)));
+    Assert.assertNull(eventType);
+    Assert.assertEquals(NodeState.RUNNING, node.getState());
+    Assert.assertEquals(0, node.getLastHeartBeatResponse().getResponseId());
+
+    // Without containers the node is removed and added again
+    node.handle(new RMNodeReconnectEvent(nodeId, newNode));
+    verify(scheduler).handle(argThat(new ArgumentMatcher<SchedulerEvent>() {
+      @Override
+      public boolean matches(Object event) {
+        return ((SchedulerEvent) event).getType()
+            == SchedulerEventType.NODE_REMOVED;
+      }
+    }));
+    Assert.assertEquals(SchedulerEventType.NODE_ADDED, eventType);
+    Assert.assertEquals(NodeState.RUNNING, node.getState());
+  }
+
   private RMNodeImpl getRunningNode() {
+    return getRunningNode(null);
+  }
+
+  private RMNodeImpl getRunningNode(Resource capability) {
     NodeId nodeId = BuilderUtils.newNodeId("localhost", 0);
     RMNodeImpl node = new RMNodeImpl(nodeId, rmContext,null, 0, 0,
-        null, null);
+        null, capability);
     node.handle(new RMNodeEvent(node.getNodeID(), RMNodeEventType.STARTED));
     Assert.assertEquals(NodeState.RUNNING, node.getState());
     return node;
@@ -19,6 +19,7 @@
 package org.apache.hadoop.yarn.server.resourcemanager;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -31,8 +32,10 @@
 import org.apache.hadoop.yarn.api.records.ContainerState;
 import org.apache.hadoop.yarn.api.records.ResourceRequest;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.hadoop.yarn.server.api.records.HeartbeatResponse;
 import org.apache.hadoop.yarn.server.api.records.NodeAction;
+import org.apache.hadoop.yarn.server.resourcemanager.ResourceManager.SchedulerEventDispatcher;
 import org.apache.hadoop.yarn.server.resourcemanager.recovery.MemoryRMStateStore;
 import org.apache.hadoop.yarn.server.resourcemanager.recovery.RMStateStore.ApplicationAttemptState;
 import org.apache.hadoop.yarn.server.resourcemanager.recovery.RMStateStore.ApplicationState;
@@ -41,6 +44,11 @@
 import org.apache.hadoop.yarn.server.resourcemanager.rmapp.RMAppState;
 import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttempt;
 import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttemptState;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.ResourceScheduler;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerNodeReport;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.capacity.CapacityScheduler;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.SchedulerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.SchedulerEventType;
 import org.apache.hadoop.yarn.util.BuilderUtils;
 import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
@@ -304,5 +312,311 @@ public void testRMRestart() throws Exception {
     // completed apps should be removed
     Assert.assertEquals(0, rmAppState.size());
  }
+
+  @Test
+  public void testWorkPreservingRMRestart() throws Exception {
+    ExitUtil.disableSystemExit();
+
+    YarnConfiguration conf = new YarnConfiguration();
+    conf.set(YarnConfiguration.RECOVERY_ENABLED, "true");
+    conf.setBoolean(YarnConfiguration.RM_WORK_PRESERVING_RECOVERY_ENABLED,
+        true);
+    conf.set(YarnConfiguration.RM_STORE, 
+    "org.apache.hadoop.yarn.server.resourcemanager.recovery.MemoryRMStateStore");
+    conf.set(YarnConfiguration.RM_SCHEDULER, 
+    "org.apache.hadoop.yarn.server.resourcemanager.scheduler.capacity.CapacityScheduler");
+
+    MemoryRMStateStore memStore = new MemoryRMStateStore();
+    memStore.init(conf);
+    Map<ApplicationId, ApplicationState> rmAppState = 
+        memStore.getState().getApplicationState();
+
+    // PHASE 1: run an app with a task container in an RM
+    MockRM rm1 = new MockRM(conf, memStore);
+    rm1.start();
+    MockNM nm1 = new MockNM("h1:1234", 15120, rm1.getResourceTrackerService());
+    nm1.registerNode();
+
+    RMApp app1 = rm1.submitApp(200);
+    nm1.nodeHeartbeat(true);
+    ApplicationAttemptId attemptId1 =
+        app1.getCurrentAppAttempt().getAppAttemptId();
+    rm1.waitForState(attemptId1, RMAppAttemptState.ALLOCATED);
+    MockAM am1 = rm1.sendAMLaunched(attemptId1);
+    am1.registerAppAttempt();
+
+    am1.allocate("h1" , 1000, 1, new ArrayList<ContainerId>());
+    nm1.nodeHeartbeat(true);
+    List<Container> conts = am1.allocate(new ArrayList<ResourceRequest>(),
+        new ArrayList<ContainerId>()).getAllocatedContainers();
+    while (conts.size() == 0) {
+      nm1.nodeHeartbeat(true);
+      conts.addAll(am1.allocate(new ArrayList<ResourceRequest>(),
+          new ArrayList<ContainerId>()).getAllocatedContainers());
+      Thread.sleep(500);
+    }
+
+    // the containers the NM keeps running across the restart
+    Container amContainer = rmAppState.get(app1.getApplicationId())
+        .getAttempt(attemptId1).getMasterContainer();
+    List<Container> running = new ArrayList<Container>();
+    for (Container container : Arrays.asList(amContainer, conts.get(0))) {
+      Container c = BuilderUtils.newContainer(container.getId(),
+          nm1.getNodeId(), "h1:" + nm1.getHttpPort(),
+          container.getResource(), null, null);
+      c.setState(ContainerState.RUNNING);
+      c.getContainerStatus().setState(ContainerState.RUNNING);
+      running.add(c);
+    }
+    int usedMemory = amContainer.getResource().getMemory()
+        + conts.get(0).getResource().getMemory();
+
+    // PHASE 2: restart the RM, keeping the AM and its containers
+    MockRM rm2 = new MockRM(conf, memStore);
+    rm2.start();
+    nm1.setResourceTrackerService(rm2.getResourceTrackerService());
+
+    // the attempt is resumed instead of replaced
+    RMApp loadedApp1 =
+        rm2.getRMContext().getRMApps().get(app1.getApplicationId());
+    rm2.waitForState(attemptId1, RMAppAttemptState.RUNNING);
+    Assert.assertEquals(1, loadedApp1.getAppAttempts().size());
+
+    // the NM is asked to resync rather than reboot
+    HeartbeatResponse hbResponse = nm1.nodeHeartbeat(true);
+    Assert.assertEquals(NodeAction.RESYNC, hbResponse.getNodeAction());
+    nm1.registerNode(running);
+
+    // the scheduler takes over the running containers
+    CapacityScheduler cs = (CapacityScheduler) rm2.getResourceScheduler();
+    int waitCount = 0;
+    while ((cs.getNodeReport(nm1.getNodeId()) == null
+        || cs.getNodeReport(nm1.getNodeId()).getNumContainers() < 2)
+        && waitCount++ < 20) {
+      Thread.sleep(500);
+    }
+    SchedulerNodeReport nodeReport = cs.getNodeReport(nm1.getNodeId());
+    Assert.assertEquals(2, nodeReport.getNumContainers());
+    Assert.assertEquals(usedMemory, nodeReport.getUsedResource().getMemory());
+    Assert.assertEquals(2,
+        cs.getSchedulerAppInfo(attemptId1).getLiveContainers().size());
+    Assert.assertEquals(usedMemory,
+        cs.getRootQueue().getUsedResources().getMemory());
+
+    // the AM is asked to resync and registers again
+    am1.setAMRMProtocol(rm2.getApplicationMasterService());
+    AMResponse amResponse = am1.allocate(new ArrayList<ResourceRequest>(),
+        new ArrayList<ContainerId>());
+    Assert.assertFalse(amResponse.getReboot());
+    Assert.assertTrue(amResponse.getResync());
+    am1.registerAppAttempt();
+    rm2.waitForState(app1.getApplicationId(), RMAppState.RUNNING);
+
+    // new containers do not reuse the ids of the recovered ones
+    am1.allocate("h1" , 1000, 1, new ArrayList<ContainerId>());
+    nm1.nodeHeartbeat(true);
+    conts = am1.allocate(new ArrayList<ResourceRequest>(),
+        new ArrayList<ContainerId>()).getAllocatedContainers();
+    while (conts.size() == 0) {
+      nm1.nodeHeartbeat(true);
+      conts.addAll(am1.allocate(new ArrayList<ResourceRequest>(),
+          new ArrayList<ContainerId>()).getAllocatedContainers());
+      Thread.sleep(500);
+    }
+    Assert.assertEquals(3, conts.get(0).getId().getId());
+
+    // finish the AM
+    am1.unregisterAppAttempt();
+    nm1.nodeHeartbeat(attemptId1, 1, ContainerState.COMPLETE);
+    rm2.waitForState(attemptId1, RMAppAttemptState.FINISHED);
+
+    rm2.stop();
+    rm1.stop();
+    Assert.assertEquals(0, rmAppState.size());
+  }
+
+  /**
+   * Holds APP_ADDED events back until released, so that nodes register
+   * before the recovered attempts reach the scheduler.
+   */
+  private static class AppAddedHoldingDispatcher
+      extends SchedulerEventDispatcher {
+    private final List<SchedulerEvent> held = new ArrayList<SchedulerEvent>();
+    private boolean holding = true;
+
+    AppAddedHoldingDispatcher(ResourceScheduler scheduler) {
+      super(scheduler);
+    }
+
+    @Override
+    public synchronized void handle(SchedulerEvent event) {
+      if (holding && event.getType() == SchedulerEventType.APP_ADDED) {
+        held.add(event);
+        return;
+      }
+      super.handle(event);
+    }
+
+    synchronized void release() {
+      holding = false;
+      for (SchedulerEvent event : held) {
+        super.handle(event);
+      }
+      held.clear();
+    }
+  }
+
+  @Test
+  public void testWorkPreservingRMRestartNodeRegistersFirst()
+      throws Exception {
+    ExitUtil.disableSystemExit();
+
+    YarnConfiguration conf = new YarnConfiguration();
+    conf.set(YarnConfiguration.RECOVERY_ENABLED, "true");
+    conf.setBoolean(YarnConfiguration.RM_WORK_PRESERVING_RECOVERY_ENABLED,
+        true);
+    conf.set(YarnConfiguration.RM_STORE, 
+    "org.apache.hadoop.yarn.server.resourcemanager.recovery.MemoryRMStateStore");
+    conf.set(YarnConfiguration.RM_SCHEDULER, 
+    "org.apache.hadoop.yarn.server.resourcemanager.scheduler.capacity.CapacityScheduler");
+
+    MemoryRMStateStore memStore = new MemoryRMStateStore();
+    memStore.init(conf);
+    Map<ApplicationId, ApplicationState> rmAppState = 
+        memStore.getState().getApplicationState();
+
+    // PHASE 1: run an app with a task container in an RM
+    MockRM rm1 = new MockRM(conf, memStore);
+    rm1.start();
+    MockNM nm1 = new MockNM("h1:1234", 15120, rm1.getResourceTrackerService());
+    nm1.registerNode();
+
+    RMApp app1 = rm1.submitApp(200);
+    nm1.nodeHeartbeat(true);
+    ApplicationAttemptId attemptId1 =
+        app1.getCurrentAppAttempt().getAppAttemptId();
+    rm1.waitForState(attemptId1, RMAppAttemptState.ALLOCATED);
+    MockAM am1 = rm1.sendAMLaunched(attemptId1);
+    am1.registerAppAttempt();
+
+    am1.allocate("h1" , 1000, 1, new ArrayList<ContainerId>());
+    nm1.nodeHeartbeat(true);
+    List<Container> conts = am1.allocate(new ArrayList<ResourceRequest>(),
+        new ArrayList<ContainerId>()).getAllocatedContainers();
+    while (conts.size() == 0) {
+      nm1.nodeHeartbeat(true);
+      conts.addAll(am1.allocate(new ArrayList<ResourceRequest>(),
+          new ArrayList<ContainerId>()).getAllocatedContainers());
+      Thread.sleep(500);
+    }
+
+    Container amContainer = rmAppState.get(app1.getApplicationId())
+        .getAttempt(attemptId1).getMasterContainer();
+    List<Container> running = new ArrayList<Container>();
+    for (Container container : Arrays.asList(amContainer, conts.get(0))) {
+      Container c = BuilderUtils.newContainer(container.getId(),
+          nm1.getNodeId(), "h1:" + nm1.getHttpPort(),
+          container.getResource(), null, null);
+      c.setState(ContainerState.RUNNING);
+      c.getContainerStatus().setState(ContainerState.RUNNING);
+      running.add(c);
+    }
+
+    // PHASE 2: restart the RM, and have the NM register again before the
+    // recovered attempt is added to the scheduler
+    final AppAddedHoldingDispatcher[] schedulerDispatcher =
+        new AppAddedHoldingDispatcher[1];
+    MockRM rm2 = new MockRM(conf, memStore) {
+      @Override
+      protected EventHandler<SchedulerEvent> createSchedulerEventDispatcher() {
+        schedulerDispatcher[0] = new AppAddedHoldingDispatcher(scheduler);
+        return schedulerDispatcher[0];
+      }
+    };
+    rm2.start();
+    nm1.setResourceTrackerService(rm2.getResourceTrackerService());
+    rm2.waitForState(attemptId1, RMAppAttemptState.SUBMITTED);
+
+    HeartbeatResponse hbResponse = nm1.nodeHeartbeat(true);
+    Assert.assertEquals(NodeAction.RESYNC, hbResponse.getNodeAction());
+    nm1.registerNode(running);
+
+    CapacityScheduler cs = (CapacityScheduler) rm2.getResourceScheduler();
+    int waitCount = 0;
+    while (cs.getNodeReport(nm1.getNodeId()) == null && waitCount++ < 20) {
+      Thread.sleep(500);
+    }
+    // the containers are held for the attempt, not killed
+    Assert.assertEquals(0,
+        cs.getNodeReport(nm1.getNodeId()).getNumContainers());
+    hbResponse = nm1.nodeHeartbeat(true);
+    Assert.assertEquals(0, hbResponse.getContainersToCleanupCount());
+
+    // the scheduler takes them over once the attempt is added
+    schedulerDispatcher[0].release();
+    rm2.waitForState(attemptId1, RMAppAttemptState.RUNNING);
+    waitCount = 0;
+    while (cs.getNodeReport(nm1.getNodeId()).getNumContainers() < 2
+        && waitCount++ < 20) {
+      Thread.sleep(500);
+    }
+    Assert.assertEquals(2,
+        cs.getNodeReport(nm1.getNodeId()).getNumContainers());
+    Assert.assertEquals(2,
+        cs.getSchedulerAppInfo(attemptId1).getLiveContainers().size());
+    hbResponse = nm1.nodeHeartbeat(true);
+    Assert.assertEquals(0, hbResponse.getContainersToCleanupCount());
+
+    rm2.stop();
+    rm1.stop();
+  }
+
+  @Test
+  public void testWorkPreservingRMRestartWithoutContainerRecovery()
+      throws Exception {
+    ExitUtil.disableSystemExit();
+
+    YarnConfiguration conf = new YarnConfiguration();
+    conf.set(YarnConfiguration.RECOVERY_ENABLED, "true");
+    conf.setBoolean(YarnConfiguration.RM_WORK_PRESERVING_RECOVERY_ENABLED,
+        true);
+    conf.set(YarnConfiguration.RM_STORE, 
+    "org.apache.hadoop.yarn.server.resourcemanager.recovery.MemoryRMStateStore");
+    conf.set(YarnConfiguration.RM_SCHEDULER, 
+    "org.apache.hadoop.yarn.server.resourcemanager.scheduler.fair.FairScheduler");
+
+    MemoryRMStateStore memStore = new MemoryRMStateStore();
+    memStore.init(conf);
+
+    // PHASE 1: run an app in an RM
+    MockRM rm1 = new MockRM(conf, memStore);
+    rm1.start();
+    MockNM nm1 = new MockNM("h1:1234", 15120, rm1.getResourceTrackerService());
+    nm1.registerNode();
+
+    RMApp app1 = rm1.submitApp(200);
+    nm1.nodeHeartbeat(true);
+    ApplicationAttemptId attemptId1 =
+        app1.getCurrentAppAttempt().getAppAttemptId();
+    rm1.waitForState(attemptId1, RMAppAttemptState.ALLOCATED);
+    MockAM am1 = rm1.sendAMLaunched(attemptId1);
+    am1.registerAppAttempt();
+
+    // PHASE 2: restart the RM. The FairScheduler kills the containers of
+    // re-registering nodes, so the attempt must not wait for its AM
+    MockRM rm2 = new MockRM(conf, memStore);
+    rm2.start();
+    RMApp loadedApp1 =
+        rm2.getRMContext().getRMApps().get(app1.getApplicationId());
+    rm2.waitForState(loadedApp1.getApplicationId(), RMAppState.ACCEPTED);
+    Assert.assertEquals(2, loadedApp1.getAppAttempts().size());
+    Assert.assertFalse(attemptId1.equals(
+        loadedApp1.getCurrentAppAttempt().getAppAttemptId()));
+    Assert.assertEquals(RMAppAttemptState.RECOVERED, loadedApp1
+        .getAppAttempts().get(attemptId1).getAppAttemptState());
+
+    rm2.stop();
+    rm1.stop();
+  }
   
 }
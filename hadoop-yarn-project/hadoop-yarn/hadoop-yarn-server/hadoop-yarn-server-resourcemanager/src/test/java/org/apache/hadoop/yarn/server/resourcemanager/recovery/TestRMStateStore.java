@@ -21,8 +21,15 @@
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -31,6 +38,7 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
@@ -39,23 +47,30 @@
 import org.apache.hadoop.yarn.api.records.ApplicationSubmissionContext;
 import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.impl.pb.ApplicationStateDataPBImpl;
 import org.apache.hadoop.yarn.api.records.impl.pb.ApplicationSubmissionContextPBImpl;
 import org.apache.hadoop.yarn.api.records.impl.pb.ContainerPBImpl;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.event.Dispatcher;
 import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.hadoop.yarn.server.recovery.KeyValueLog;
 import org.apache.hadoop.yarn.server.resourcemanager.recovery.RMStateStore.ApplicationAttemptState;
 import org.apache.hadoop.yarn.server.resourcemanager.recovery.RMStateStore.ApplicationState;
 import org.apache.hadoop.yarn.server.resourcemanager.recovery.RMStateStore.RMState;
 import org.apache.hadoop.yarn.server.resourcemanager.rmapp.RMApp;
 import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttempt;
 import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.event.RMAppAttemptStoredEvent;
+import org.apache.hadoop.yarn.util.BuilderUtils;
 import org.apache.hadoop.yarn.util.ConverterUtils;
 
 public class TestRMStateStore {
 
   public static final Log LOG = LogFactory.getLog(TestRMStateStore.class);
 
+  private static final File TEST_DIR = new File(
+      System.getProperty("test.build.data", "target/test/data"),
+      TestRMStateStore.class.getSimpleName());
+
   class TestDispatcher implements Dispatcher, EventHandler<RMAppAttemptStoredEvent> {
 
     ApplicationAttemptId attemptId;
@@ -156,6 +171,307 @@ public boolean isFinalStateValid() throws Exception {
     }
   }
 
+  @Test
+  public void testLocalRMStateStore() throws Exception {
+    testRMStateStore(new TestLocalRMStateStoreTester());
+  }
+
+  class TestLocalRMStateStoreTester implements RMStateStoreHelper {
+    File storeDir = new File(TEST_DIR, "local");
+    LocalRMStateStore store;
+
+    TestLocalRMStateStoreTester() {
+      FileUtil.fullyDelete(storeDir);
+    }
+
+    @Override
+    public RMStateStore getRMStateStore() throws Exception {
+      YarnConfiguration conf = new YarnConfiguration();
+      conf.set(YarnConfiguration.LOCAL_RM_STATE_STORE_DIR,
+          storeDir.getPath());
+      store = new LocalRMStateStore();
+      store.init(conf);
+      return store;
+    }
+
+    @Override
+    public void addOrphanAttemptIfNeeded(RMStateStore testStore,
+                                 TestDispatcher dispatcher) throws Exception {
+      ApplicationAttemptId attemptId = ConverterUtils.toApplicationAttemptId(
+                                      "appattempt_1352994193343_0003_000001");
+      storeAttempt(testStore, attemptId,
+          "container_1352994193343_0003_01_000001", dispatcher);
+    }
+
+    @Override
+    public boolean isFinalStateValid() throws Exception {
+      // only the app and its two attempts are left, the orphan is removed
+      return store.getKeyValueLog().load().size() == 3;
+    }
+  }
+
+  @Test
+  public void testKeyValueLogCompaction() throws Exception {
+    File dir = new File(TEST_DIR, "compaction");
+    FileUtil.fullyDelete(dir);
+    assertTrue(dir.mkdirs());
+    File file = new File(dir, "kv.log");
+
+    KeyValueLog kvLog = new KeyValueLog(file, 0, 0.5f);
+    long seq = 0;
+    for (int i = 0; i < 10; i++) {
+      seq = kvLog.put("key" + i, new byte[] { (byte) i });
+    }
+    seq = kvLog.put("key0", new byte[] { 42 });
+    for (int i = 2; i < 10; i++) {
+      seq = kvLog.delete("key" + i);
+    }
+    kvLog.sync(seq);
+    assertTrue(kvLog.needsCompaction());
+    kvLog.compact();
+    assertFalse(kvLog.needsCompaction());
+    assertEquals(kvLog.getLiveBytes(), kvLog.getLogBytes());
+    assertEquals(file.length(), kvLog.getLogBytes());
+    kvLog.sync(kvLog.put("key2", new byte[] { 2 }));
+    kvLog.close();
+
+    // a record cut short by a crash is dropped
+    long length = file.length();
+    FileOutputStream out = new FileOutputStream(file, true);
+    out.write(new byte[] { 0, 0, 0, 100, 1, 2 });
+    out.close();
+
+    kvLog = new KeyValueLog(file, 0, 0.5f);
+    assertEquals(length, file.length());
+    Map<String, byte[]> values = kvLog.load();
+    assertEquals(3, values.size());
+    assertEquals(42, values.get("key0")[0]);
+    assertEquals(1, values.get("key1")[0]);
+    assertEquals(2, values.get("key2")[0]);
+    kvLog.close();
+  }
+
+  @Test
+  public void testKeyValueLogCorruptRecord() throws Exception {
+    File dir = new File(TEST_DIR, "corrupt");
+    FileUtil.fullyDelete(dir);
+    assertTrue(dir.mkdirs());
+    File file = new File(dir, "kv.log");
+
+    KeyValueLog kvLog = new KeyValueLog(file, 0, 0.5f);
+    long seq = 0;
+    for (int i = 0; i < 3; i++) {
+      seq = kvLog.put("key" + i, new byte[] { (byte) i });
+    }
+    kvLog.sync(seq);
+    long length = kvLog.getLogBytes();
+    kvLog.close();
+
+    // flip the value of the middle record
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    long offset = length / 3 * 2 - 1;
+    raf.seek(offset);
+    byte b = raf.readByte();
+    raf.seek(offset);
+    raf.writeByte(b ^ 0xff);
+    raf.close();
+
+    // the log is cut at the corrupt record
+    kvLog = new KeyValueLog(file, 0, 0.5f);
+    assertEquals(length / 3, file.length());
+    Map<String, byte[]> values = kvLog.load();
+    assertEquals(1, values.size());
+    assertEquals(0, values.get("key0")[0]);
+
+    // and appended to after it
+    kvLog.sync(kvLog.put("key3", new byte[] { 3 }));
+    kvLog.close();
+    kvLog = new KeyValueLog(file, 0, 0.5f);
+    values = kvLog.load();
+    assertEquals(2, values.size());
+    assertEquals(3, values.get("key3")[0]);
+    kvLog.close();
+  }
+
+  @Test
+  public void testKeyValueLogCorruptLength() throws Exception {
+    File dir = new File(TEST_DIR, "corruptlength");
+    FileUtil.fullyDelete(dir);
+    assertTrue(dir.mkdirs());
+    File file = new File(dir, "kv.log");
+
+    KeyValueLog kvLog = new KeyValueLog(file, 0, 0.5f);
+    long seq = kvLog.put("key0", new byte[] { 0 });
+    long putLength = kvLog.getLogBytes();
+    kvLog.delete("key0");
+    seq = kvLog.put("key1", new byte[] { 1 });
+    kvLog.sync(seq);
+    long length = kvLog.getLogBytes();
+    kvLog.close();
+
+    // a huge length in the header of the delete must not be allocated,
+    // nor the records after it read misaligned
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    raf.seek(putLength);
+    raf.writeInt(Integer.MAX_VALUE);
+    raf.close();
+
+    kvLog = new KeyValueLog(file, 0, 0.5f);
+    assertEquals(putLength, file.length());
+    Map<String, byte[]> values = kvLog.load();
+    assertEquals(1, values.size());
+    assertEquals(0, values.get("key0")[0]);
+    kvLog.close();
+
+    // a plausible length past the end of the log is cut as well
+    raf = new RandomAccessFile(file, "rw");
+    raf.seek(0);
+    raf.writeInt((int) length);
+    raf.close();
+    kvLog = new KeyValueLog(file, 0, 0.5f);
+    assertEquals(0, file.length());
+    assertEquals(0, kvLog.load().size());
+    kvLog.close();
+  }
+
+  /**
+   * Stores many applications from concurrent threads, as RPC handlers do
+   * when they are submitted, and times how long recovering them takes.
+   * Set rmstore.test.apps to 100000 to benchmark a large store.
+   */
+  @Test (timeout = 300000)
+  public void testLocalRMStateStoreRecovery() throws Exception {
+    final int numApps = Integer.getInteger("rmstore.test.apps", 5000);
+    final int numThreads = 8;
+    File storeDir = new File(TEST_DIR, "recovery");
+    FileUtil.fullyDelete(storeDir);
+    final YarnConfiguration conf = new YarnConfiguration();
+    conf.set(YarnConfiguration.LOCAL_RM_STATE_STORE_DIR, storeDir.getPath());
+
+    final LocalRMStateStore store = new LocalRMStateStore();
+    store.init(conf);
+    final long clusterTimestamp = System.currentTimeMillis();
+    final AtomicInteger nextApp = new AtomicInteger(0);
+    final List<Exception> errors = new ArrayList<Exception>();
+    List<Thread> threads = new ArrayList<Thread>();
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < numThreads; i++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            int app;
+            while ((app = nextApp.incrementAndGet()) <= numApps) {
+              ApplicationId appId = ConverterUtils.toApplicationId(
+                  "application_" + clusterTimestamp + "_" + app);
+              ApplicationSubmissionContext context =
+                  new ApplicationSubmissionContextPBImpl();
+              context.setApplicationId(appId);
+              ApplicationStateDataPBImpl appStateData =
+                  new ApplicationStateDataPBImpl();
+              appStateData.setSubmitTime(clusterTimestamp);
+              appStateData.setApplicationSubmissionContext(context);
+              store.storeApplicationState(appId.toString(), appStateData);
+            }
+          } catch (Exception e) {
+            synchronized (errors) {
+              errors.add(e);
+            }
+          }
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long storeTime = System.currentTimeMillis() - start;
+    assertTrue(errors.toString(), errors.isEmpty());
+    // concurrent stores share syncs
+    long numSyncs = store.getKeyValueLog().getNumSyncs();
+    assertTrue("Expected fewer than " + numApps + " syncs, got " + numSyncs,
+        numSyncs < numApps);
+    store.close();
+
+    LocalRMStateStore recovered = new LocalRMStateStore();
+    start = System.currentTimeMillis();
+    recovered.init(conf);
+    RMState state = recovered.loadState();
+    long recoveryTime = System.currentTimeMillis() - start;
+    assertEquals(numApps, state.getApplicationState().size());
+    recovered.close();
+
+    LOG.info("Stored " + numApps + " applications from " + numThreads
+        + " threads in " + storeTime + "ms with " + numSyncs
+        + " syncs, recovered them in " + recoveryTime + "ms");
+  }
+
+  /**
+   * Attempt stores and removals queued while a commit runs are committed
+   * together by the next one.
+   */
+  @Test (timeout = 60000)
+  public void testLocalRMStateStoreGroupCommitsAttempts() throws Exception {
+    final int numAttempts = 100;
+    File storeDir = new File(TEST_DIR, "groupcommit");
+    FileUtil.fullyDelete(storeDir);
+    YarnConfiguration conf = new YarnConfiguration();
+    conf.set(YarnConfiguration.LOCAL_RM_STATE_STORE_DIR, storeDir.getPath());
+    LocalRMStateStore store = new LocalRMStateStore();
+    store.init(conf);
+
+    // the first commit waits in its notification until all are queued
+    final CountDownLatch queued = new CountDownLatch(1);
+    final AtomicInteger stored = new AtomicInteger(0);
+    store.setDispatcher(new TestDispatcher() {
+      @Override
+      public void handle(RMAppAttemptStoredEvent event) {
+        assertNull(event.getStoredException());
+        try {
+          queued.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        stored.incrementAndGet();
+      }
+    });
+
+    long clusterTimestamp = System.currentTimeMillis();
+    ApplicationId appId = ConverterUtils.toApplicationId(
+        "application_" + clusterTimestamp + "_1");
+    storeApp(store, appId, clusterTimestamp);
+    ApplicationId removedAppId = ConverterUtils.toApplicationId(
+        "application_" + clusterTimestamp + "_2");
+    storeApp(store, removedAppId, clusterTimestamp);
+    long numSyncs = store.getKeyValueLog().getNumSyncs();
+    for (int i = 1; i <= numAttempts; i++) {
+      ApplicationAttemptId attemptId =
+          BuilderUtils.newApplicationAttemptId(appId, i);
+      RMAppAttempt mockAttempt = mock(RMAppAttempt.class);
+      when(mockAttempt.getAppAttemptId()).thenReturn(attemptId);
+      store.storeApplicationAttempt(mockAttempt);
+    }
+    ApplicationSubmissionContext context =
+        new ApplicationSubmissionContextPBImpl();
+    context.setApplicationId(removedAppId);
+    store.removeApplication(new ApplicationState(clusterTimestamp, context));
+    queued.countDown();
+    store.close();
+
+    assertEquals(numAttempts, stored.get());
+    numSyncs = store.getKeyValueLog().getNumSyncs() - numSyncs;
+    assertTrue("Expected at most 2 syncs, got " + numSyncs, numSyncs <= 2);
+
+    store = new LocalRMStateStore();
+    store.init(conf);
+    RMState state = store.loadState();
+    assertEquals(1, state.getApplicationState().size());
+    assertEquals(numAttempts,
+        state.getApplicationState().get(appId).getAttemptCount());
+    store.close();
+  }
+
   void waitNotify(TestDispatcher dispatcher) {
     long startTime = System.currentTimeMillis();
     while(!dispatcher.notified) {
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.resourcemanager.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.Priority;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.api.records.ResourceRequest;
+import org.apache.hadoop.yarn.server.resourcemanager.MockNodes;
+import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.common.fica.FiCaSchedulerNode;
+import org.apache.hadoop.yarn.util.BuilderUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAppSchedulingInfo {
+
+  private AppSchedulingInfo app;
+  private FiCaSchedulerNode node;
+  private final Priority priority = BuilderUtils.newPriority(1);
+  private final Resource capability = BuilderUtils.newResource(1024, 1);
+
+  @Before
+  public void setUp() {
+    Queue queue = mock(Queue.class);
+    when(queue.getQueueName()).thenReturn("default");
+    when(queue.getMetrics()).thenReturn(mock(QueueMetrics.class));
+    ApplicationAttemptId attemptId = BuilderUtils.newApplicationAttemptId(
+        BuilderUtils.newApplicationId(1, 1), 1);
+    app = new AppSchedulingInfo(attemptId, "user", queue,
+        mock(ActiveUsersManager.class));
+    node = new FiCaSchedulerNode(
+        MockNodes.newNodeInfo(0, MockNodes.newResource(4096), 1));
+  }
+
+  private ResourceRequest newRequest(String resourceName, int containers) {
+    return BuilderUtils.newResourceRequest(priority, resourceName,
+        capability, containers);
+  }
+
+  @Test
+  public void testLookups() {
+    ResourceRequest hostRequest = newRequest(node.getHostName(), 2);
+    app.updateResourceRequests(Arrays.asList(hostRequest,
+        newRequest(node.getRackName(), 3), newRequest(RMNode.ANY, 4)));
+
+    // the AM's requests are copied, not kept
+    ResourceRequest byName = app.getResourceRequest(priority,
+        node.getHostName());
+    assertTrue(byName instanceof SchedulerResourceRequest);
+    assertEquals(2, byName.getNumContainers());
+    assertEquals(node.getHostName(), byName.getHostName());
+    assertEquals(capability, byName.getCapability());
+
+    assertSame(byName, app.getResourceRequest(priority, node,
+        NodeType.NODE_LOCAL));
+    assertEquals(3, app.getResourceRequest(priority, node,
+        NodeType.RACK_LOCAL).getNumContainers());
+    assertEquals(4, app.getResourceRequest(priority, node,
+        NodeType.OFF_SWITCH).getNumContainers());
+    assertSame(app.getResourceRequest(priority, RMNode.ANY),
+        app.getResourceRequest(priority, node, NodeType.OFF_SWITCH));
+    assertEquals(3, app.getResourceRequests(priority).size());
+
+    // requests at the same priority with the same capability share it
+    assertSame(byName.getCapability(),
+        app.getResourceRequest(priority, RMNode.ANY).getCapability());
+
+    // neither are their priority and capability
+    assertNotSame(capability, byName.getCapability());
+    assertEquals(priority, byName.getPriority());
+    assertNotSame(priority, byName.getPriority());
+    assertNotSame(priority, app.getPriorities().iterator().next());
+    // and their names are shared
+    assertSame(ResourceNames.intern(node.getHostName()),
+        byName.getHostName());
+
+    assertNull(app.getResourceRequest(priority, "never-asked-for"));
+    assertNull(app.getResourceRequest(BuilderUtils.newPriority(2), node,
+        NodeType.NODE_LOCAL));
+    assertNull(app.getResourceRequests(BuilderUtils.newPriority(2)));
+  }
+
+  @Test
+  public void testUpdateReplacesRequests() {
+    app.updateResourceRequests(Arrays.asList(
+        newRequest(node.getHostName(), 2), newRequest(RMNode.ANY, 2)));
+    ResourceRequest before = app.getResourceRequest(priority, RMNode.ANY);
+    app.updateResourceRequests(Arrays.asList(newRequest(RMNode.ANY, 5)));
+    assertSame(before, app.getResourceRequest(priority, RMNode.ANY));
+    assertEquals(5, before.getNumContainers());
+    assertEquals(2, app.getResourceRequest(priority,
+        node.getHostName()).getNumContainers());
+  }
+
+  @Test
+  public void testAllocateNodeLocal() {
+    app.updateResourceRequests(Arrays.asList(
+        newRequest(node.getHostName(), 1), newRequest(node.getRackName(), 2),
+        newRequest(RMNode.ANY, 3)));
+    Container container = mock(Container.class);
+    when(container.getNodeId()).thenReturn(node.getNodeID());
+    app.allocate(NodeType.NODE_LOCAL, node, priority,
+        app.getResourceRequest(priority, node, NodeType.NODE_LOCAL),
+        container);
+
+    // the host's request is used up and gone, the others are decremented
+    assertNull(app.getResourceRequest(priority, node, NodeType.NODE_LOCAL));
+    assertEquals(1, app.getResourceRequest(priority, node,
+        NodeType.RACK_LOCAL).getNumContainers());
+    assertEquals(2, app.getResourceRequest(priority, RMNode.ANY)
+        .getNumContainers());
+    assertEquals(2, app.getResourceRequests(priority).size());
+    assertFalse(app.getResourceRequests(priority).isEmpty());
+  }
+}
@@ -35,17 +35,23 @@
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.event.AsyncDispatcher;
 import org.apache.hadoop.yarn.server.resourcemanager.Application;
+import org.apache.hadoop.yarn.server.resourcemanager.ClusterMetrics;
 import org.apache.hadoop.yarn.server.resourcemanager.MockNodes;
+import org.apache.hadoop.yarn.server.resourcemanager.MockRM;
 import org.apache.hadoop.yarn.server.resourcemanager.RMContextImpl;
 import org.apache.hadoop.yarn.server.resourcemanager.ResourceManager;
 import org.apache.hadoop.yarn.server.resourcemanager.Task;
 import org.apache.hadoop.yarn.server.resourcemanager.resource.Resources;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.RMApp;
+import org.apache.hadoop.yarn.server.resourcemanager.rmapp.attempt.RMAppAttemptState;
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.ResourceScheduler;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeAddedSchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeRemovedSchedulerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeUpdateSchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.security.ClientToAMTokenSecretManagerInRM;
 import org.apache.hadoop.yarn.server.resourcemanager.security.RMContainerTokenSecretManager;
+import org.apache.hadoop.yarn.util.BuilderUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -391,6 +397,46 @@ null, null, new RMContainerTokenSecretManager(csConf),
     Assert.assertEquals(4 * GB, cs.getClusterResources().getMemory());
   }
 
+  @Test
+  public void testFragmentedResources() throws Exception {
+    CapacitySchedulerConfiguration csConf =
+        new CapacitySchedulerConfiguration();
+    setupQueueConfiguration(csConf);
+    CapacityScheduler cs = new CapacityScheduler();
+    cs.setConf(new YarnConfiguration());
+    cs.reinitialize(csConf, new RMContextImpl(null, null, null, null,
+      null, null, new RMContainerTokenSecretManager(csConf),
+      new ClientToAMTokenSecretManagerInRM()));
+
+    ClusterMetrics metrics = ClusterMetrics.getMetrics();
+    int fragmentedMB = metrics.getFragmentedMB();
+    int fragmentedVirtualCores = metrics.getFragmentedVirtualCores();
+
+    // No container fits on a node without cpus, or with less memory than
+    // the minimum allocation
+    RMNode n1 = MockNodes.newNodeInfo(0, BuilderUtils.newResource(4 * GB, 0),
+        1);
+    RMNode n2 = MockNodes.newNodeInfo(0, BuilderUtils.newResource(512, 4), 2);
+    RMNode n3 = MockNodes.newNodeInfo(0, BuilderUtils.newResource(4 * GB, 4),
+        3);
+    for (RMNode n : new RMNode[] { n1, n2, n3 }) {
+      cs.handle(new NodeAddedSchedulerEvent(n));
+      cs.handle(new NodeUpdateSchedulerEvent(n));
+    }
+    assertEquals(fragmentedMB + 4 * GB, metrics.getFragmentedMB());
+    assertEquals(fragmentedVirtualCores + 4,
+        metrics.getFragmentedVirtualCores());
+
+    // Updates of a node don't count it twice
+    cs.handle(new NodeUpdateSchedulerEvent(n1));
+    assertEquals(fragmentedMB + 4 * GB, metrics.getFragmentedMB());
+
+    cs.handle(new NodeRemovedSchedulerEvent(n1));
+    cs.handle(new NodeRemovedSchedulerEvent(n2));
+    assertEquals(fragmentedMB, metrics.getFragmentedMB());
+    assertEquals(fragmentedVirtualCores, metrics.getFragmentedVirtualCores());
+  }
+
   @Test
   public void testRefreshQueuesWithNewQueue() throws Exception {
     CapacityScheduler cs = new CapacityScheduler();
@@ -442,6 +488,33 @@ public void testCapacitySchedulerInfo() throws Exception {
 
   }
 
+  @Test (timeout = 30000)
+  public void testAsyncScheduling() throws Exception {
+    YarnConfiguration conf = new YarnConfiguration();
+    conf.setClass(YarnConfiguration.RM_SCHEDULER, CapacityScheduler.class,
+        ResourceScheduler.class);
+    conf.setBoolean(
+        CapacitySchedulerConfiguration.SCHEDULE_ASYNCHRONOUSLY_ENABLE, true);
+    MockRM rm = new MockRM(conf);
+    rm.start();
+    CapacityScheduler cs = (CapacityScheduler) rm.getResourceScheduler();
+    Thread asyncSchedulerThread = cs.getAsyncSchedulerThread();
+    try {
+      Assert.assertTrue(asyncSchedulerThread.isAlive());
+      rm.registerNode("127.0.0.1:1234", 8 * GB);
+      RMApp app = rm.submitApp(GB);
+
+      // the AM container is allocated without any node heartbeat
+      rm.waitForState(app.getCurrentAppAttempt().getAppAttemptId(),
+          RMAppAttemptState.ALLOCATED);
+    } finally {
+      rm.stop();
+    }
+    // and the scheduling thread goes away with the RM
+    Assert.assertFalse(asyncSchedulerThread.isAlive());
+    Assert.assertNull(cs.getAsyncSchedulerThread());
+  }
+
   private int getQueueCount(List<QueueUserACLInfo> queueInformation, String queueName) {
     int result = 0;
     for (QueueUserACLInfo queueUserACLInfo : queueInformation) {
@@ -42,6 +42,7 @@
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.yarn.Clock;
 import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
@@ -1334,6 +1335,206 @@ public void testLocalityScheduling() throws Exception {
     assertEquals(NodeType.RACK_LOCAL, assignment.getType());
   }
   
+  @Test
+  public void testTimeBasedLocalityScheduling() throws Exception {
+
+    // Manipulate queue 'a'
+    LeafQueue a = stubLeafQueue((LeafQueue)queues.get(A));
+    doReturn(1000L).when(a).getNodeLocalityDelayMs();
+    doReturn(3000L).when(a).getRackLocalityDelayMs();
+    Clock clock = mock(Clock.class);
+    a.setClock(clock);
+
+    // User
+    String user_0 = "user_0";
+    
+    // Submit applications
+    final ApplicationAttemptId appAttemptId_0 = 
+        TestUtils.getMockApplicationAttemptId(0, 0); 
+    FiCaSchedulerApp app_0 = 
+        spy(new FiCaSchedulerApp(appAttemptId_0, user_0, a, 
+            mock(ActiveUsersManager.class), rmContext));
+    a.submitApplication(app_0, user_0, A);
+    
+    // Setup some nodes and racks
+    String rack_0 = "rack_0";
+    String host_0 = "host_0";
+    FiCaSchedulerNode node_0 = TestUtils.getMockNode(host_0, rack_0, 0, 8*GB);
+    String host_1 = "host_1";
+    FiCaSchedulerNode node_1 = TestUtils.getMockNode(host_1, rack_0, 0, 8*GB);
+    
+    String host_2 = "host_2";
+    String rack_1 = "rack_1";
+    FiCaSchedulerNode node_2 = TestUtils.getMockNode(host_2, rack_1, 0, 8*GB);
+
+    final int numNodes = 3;
+    Resource clusterResource = 
+        Resources.createResource(numNodes * (8*GB), numNodes * 16);
+    when(csContext.getNumClusterNodes()).thenReturn(numNodes);
+    
+    // Setup resource-requests and submit
+    Priority priority = TestUtils.createMockPriority(1);
+    List<ResourceRequest> app_0_requests_0 = new ArrayList<ResourceRequest>();
+    app_0_requests_0.add(
+        TestUtils.createResourceRequest(host_0, 1*GB, 1, 
+            priority, recordFactory));
+    app_0_requests_0.add(
+        TestUtils.createResourceRequest(rack_0, 1*GB, 2, 
+            priority, recordFactory));
+    app_0_requests_0.add(
+        TestUtils.createResourceRequest(RMNodeImpl.ANY, 1*GB, 3, 
+            priority, recordFactory));
+    app_0.updateResourceRequests(app_0_requests_0);
+
+    QueueMetrics metrics = a.getMetrics();
+    long nodeLocal = metrics.getAggregateNodeLocalContainersAllocated();
+    long rackLocal = metrics.getAggregateRackLocalContainersAllocated();
+    long offSwitch = metrics.getAggregateOffSwitchContainersAllocated();
+
+    // Start testing...
+    CSAssignment assignment = null;
+
+    // Rack-local, shouldn't allocate before the node-locality delay
+    when(clock.getTime()).thenReturn(0L);
+    assignment = a.assignContainers(clusterResource, node_1);
+    when(clock.getTime()).thenReturn(999L);
+    assignment = a.assignContainers(clusterResource, node_1);
+    verify(app_0, never()).allocate(any(NodeType.class), eq(node_1), 
+        any(Priority.class), any(ResourceRequest.class), any(Container.class));
+    assertEquals(2, app_0.getSchedulingOpportunities(priority));
+    assertEquals(999L, app_0.getSchedulingDelay(priority, 999L));
+
+    // Should assign RACK_LOCAL now, however few heartbeats there were
+    when(clock.getTime()).thenReturn(1000L);
+    assignment = a.assignContainers(clusterResource, node_1);
+    verify(app_0).allocate(eq(NodeType.RACK_LOCAL), eq(node_1), 
+        any(Priority.class), any(ResourceRequest.class), any(Container.class));
+    assertEquals(0, app_0.getSchedulingOpportunities(priority)); // should reset
+    assertEquals(0L, app_0.getSchedulingDelay(priority, 1000L));
+    assertEquals(2, app_0.getTotalRequiredResources(priority));
+    assertEquals(NodeType.RACK_LOCAL, assignment.getType());
+
+    // Off switch, the app asked for 2 of the 3 nodes so waits 2/3 of 3000ms
+    assignment = a.assignContainers(clusterResource, node_2);
+    when(clock.getTime()).thenReturn(2999L);
+    assignment = a.assignContainers(clusterResource, node_2);
+    verify(app_0, never()).allocate(any(NodeType.class), eq(node_2), 
+        any(Priority.class), any(ResourceRequest.class), any(Container.class));
+    assertEquals(2, app_0.getTotalRequiredResources(priority));
+
+    when(clock.getTime()).thenReturn(3000L);
+    assignment = a.assignContainers(clusterResource, node_2);
+    verify(app_0).allocate(eq(NodeType.OFF_SWITCH), eq(node_2), 
+        any(Priority.class), any(ResourceRequest.class), any(Container.class));
+    assertEquals(3, app_0.getSchedulingOpportunities(priority)); // should NOT reset
+    assertEquals(1, app_0.getTotalRequiredResources(priority));
+    assertEquals(NodeType.OFF_SWITCH, assignment.getType());
+
+    // NODE_LOCAL - node_0
+    assignment = a.assignContainers(clusterResource, node_0);
+    verify(app_0).allocate(eq(NodeType.NODE_LOCAL), eq(node_0), 
+        any(Priority.class), any(ResourceRequest.class), any(Container.class));
+    assertEquals(0, app_0.getSchedulingOpportunities(priority)); // should reset
+    assertEquals(0, app_0.getTotalRequiredResources(priority));
+    assertEquals(NodeType.NODE_LOCAL, assignment.getType());
+
+    // Allocations are counted by locality
+    assertEquals(nodeLocal + 1,
+        metrics.getAggregateNodeLocalContainersAllocated());
+    assertEquals(rackLocal + 1,
+        metrics.getAggregateRackLocalContainersAllocated());
+    assertEquals(offSwitch + 1,
+        metrics.getAggregateOffSwitchContainersAllocated());
+  }
+
+  @Test
+  public void testPacking() throws Exception {
+    csConf.set(CapacitySchedulerConfiguration.PACKING_POLICY, "dot-product");
+    csConf.setFloat(CapacitySchedulerConfiguration.PACKING_THRESHOLD, 0.9f);
+    root = 
+        CapacityScheduler.parseQueue(csContext, csConf, null, 
+            CapacitySchedulerConfiguration.ROOT, 
+            queues, queues, 
+            TestUtils.spyHook);
+
+    // Manipulate queue 'a'
+    LeafQueue a = stubLeafQueue((LeafQueue)queues.get(A));
+    a.setMaxCapacity(1.0f);
+
+    // Users
+    final String user_0 = "user_0";
+    final String user_1 = "user_1";
+
+    // Submit applications
+    final ApplicationAttemptId appAttemptId_0 = 
+        TestUtils.getMockApplicationAttemptId(0, 0); 
+    FiCaSchedulerApp app_0 = 
+        spy(new FiCaSchedulerApp(appAttemptId_0, user_0, a, 
+            mock(ActiveUsersManager.class), rmContext));
+    a.submitApplication(app_0, user_0, A);
+
+    final ApplicationAttemptId appAttemptId_1 = 
+        TestUtils.getMockApplicationAttemptId(1, 0); 
+    FiCaSchedulerApp app_1 = 
+        spy(new FiCaSchedulerApp(appAttemptId_1, user_1, a, 
+            mock(ActiveUsersManager.class), rmContext));
+    a.submitApplication(app_1, user_1, A);
+
+    // Setup a node with many cpus and one with much memory
+    FiCaSchedulerNode node_0 = TestUtils.getMockNode("host_0", DEFAULT_RACK,
+        0, Resources.createResource(8*GB, 16));
+    FiCaSchedulerNode node_1 = TestUtils.getMockNode("host_1", DEFAULT_RACK,
+        0, Resources.createResource(16*GB, 2));
+
+    final int numNodes = 2;
+    Resource clusterResource = Resources.createResource(24*GB, 18);
+    when(csContext.getNumClusterNodes()).thenReturn(numNodes);
+
+    // Memory-heavy containers
+    Priority priority = TestUtils.createMockPriority(1);
+    app_0.updateResourceRequests(Collections.singletonList(
+        TestUtils.createResourceRequest(RMNodeImpl.ANY, 4*GB, 2, priority,
+            recordFactory)));
+
+    // Start testing...
+
+    // Memory-heavy containers pack poorly on node_0...
+    a.assignContainers(clusterResource, node_0);
+    verify(app_0, never()).allocate(any(NodeType.class), eq(node_0), 
+        any(Priority.class), any(ResourceRequest.class), any(Container.class));
+
+    // ... but well on node_1
+    a.assignContainers(clusterResource, node_1);
+    verify(app_0).allocate(eq(NodeType.OFF_SWITCH), eq(node_1), 
+        any(Priority.class), any(ResourceRequest.class), any(Container.class));
+
+    // Once offered every node, the application takes node_0 anyway
+    a.assignContainers(clusterResource, node_0);
+    verify(app_0).allocate(eq(NodeType.OFF_SWITCH), eq(node_0), 
+        any(Priority.class), any(ResourceRequest.class), any(Container.class));
+    assertEquals(0, app_0.getTotalRequiredResources(priority));
+
+    // A cpu-heavy container
+    ResourceRequest cpuRequest = TestUtils.createResourceRequest(
+        RMNodeImpl.ANY, 1*GB, 1, priority, recordFactory);
+    cpuRequest.setCapability(Resources.createResource(1*GB, 4));
+    app_1.updateResourceRequests(Collections.singletonList(cpuRequest));
+
+    // node_1 doesn't have the cpus for app_1, even though it has the memory,
+    // and it is not reserved either since it never will
+    a.assignContainers(clusterResource, node_1);
+    a.assignContainers(clusterResource, node_1);
+    verify(app_1, never()).allocate(any(NodeType.class), eq(node_1), 
+        any(Priority.class), any(ResourceRequest.class), any(Container.class));
+    assertEquals(null, node_1.getReservedContainer());
+    assertEquals(0*GB, app_1.getCurrentReservation().getMemory());
+
+    a.assignContainers(clusterResource, node_0);
+    verify(app_1).allocate(eq(NodeType.OFF_SWITCH), eq(node_0), 
+        any(Priority.class), any(ResourceRequest.class), any(Container.class));
+    assertEquals(5, node_0.getUsedResource().getVirtualCores());
+  }
+
   @Test
   public void testApplicationPriorityScheduling() throws Exception {
     // Manipulate queue 'a'
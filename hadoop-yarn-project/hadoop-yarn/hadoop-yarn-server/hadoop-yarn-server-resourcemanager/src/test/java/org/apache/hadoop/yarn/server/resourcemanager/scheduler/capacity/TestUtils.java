@@ -147,13 +147,17 @@ public static ApplicationId getMockApplicationId(int appId) {
   
   public static FiCaSchedulerNode getMockNode(
       String host, String rack, int port, int capability) {
+    return getMockNode(host, rack, port, Resources.createResource(capability, 1));
+  }
+
+  public static FiCaSchedulerNode getMockNode(
+      String host, String rack, int port, Resource capability) {
     NodeId nodeId = mock(NodeId.class);
     when(nodeId.getHost()).thenReturn(host);
     when(nodeId.getPort()).thenReturn(port);
     RMNode rmNode = mock(RMNode.class);
     when(rmNode.getNodeID()).thenReturn(nodeId);
-    when(rmNode.getTotalCapability()).thenReturn(
-        Resources.createResource(capability, 1));
+    when(rmNode.getTotalCapability()).thenReturn(capability);
     when(rmNode.getNodeAddress()).thenReturn(host+":"+port);
     when(rmNode.getHostName()).thenReturn(host);
     when(rmNode.getRackName()).thenReturn(rack);
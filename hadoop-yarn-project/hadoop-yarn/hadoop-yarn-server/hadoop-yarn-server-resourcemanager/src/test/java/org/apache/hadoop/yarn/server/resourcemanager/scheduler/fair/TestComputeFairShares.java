@@ -19,7 +19,9 @@
 package org.apache.hadoop.yarn.server.resourcemanager.scheduler.fair;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import junit.framework.Assert;
 
@@ -172,6 +174,59 @@ public void testEmptyList() {
     verifyShares();
   }
   
+  /**
+   * Test that cached shares are only recomputed when their inputs change.
+   */
+  @Test
+  public void testFairShareCache() {
+    scheds.add(new FakeSchedulable(100));
+    scheds.add(new FakeSchedulable(50));
+    SchedulingAlgorithms.FairShareCache cache =
+        new SchedulingAlgorithms.FairShareCache();
+    cache.computeFairShares(scheds, Resources.createResource(40));
+    verifyShares(20, 20);
+
+    // Same inputs: the shares are left alone
+    scheds.get(0).setFairShare(Resources.createResource(0));
+    cache.computeFairShares(scheds, Resources.createResource(40));
+    verifyShares(0, 20);
+
+    // A demand change forces a recomputation
+    scheds.get(1).getDemand().setMemory(10);
+    cache.computeFairShares(scheds, Resources.createResource(40));
+    verifyShares(30, 10);
+
+    // So does a change of the total resources
+    cache.computeFairShares(scheds, Resources.createResource(20));
+    verifyShares(10, 10);
+
+    // And adding a schedulable
+    scheds.add(new FakeSchedulable(100));
+    cache.computeFairShares(scheds, Resources.createResource(30));
+    verifyShares(10, 10, 10);
+  }
+
+  /**
+   * Test that the fair share heap polls schedulables in comparator order.
+   */
+  @Test
+  public void testFairShareHeapOrder() {
+    scheds.add(new FakeSchedulable(100, 0, 1, 0, 30, 0));
+    scheds.add(new FakeSchedulable(100, 20, 1, 0, 10, 0));
+    scheds.add(new FakeSchedulable(100, 0, 2, 0, 40, 0));
+    scheds.add(new FakeSchedulable(100, 0, 1, 0, 10, 0));
+    scheds.add(new FakeSchedulable(100, 50, 1, 0, 40, 0));
+    List<Schedulable> sorted = new ArrayList<Schedulable>(scheds);
+    Collections.sort(sorted, new SchedulingAlgorithms.FairShareComparator());
+
+    PriorityQueue<SchedulingAlgorithms.FairShareKey<Schedulable>> heap =
+        SchedulingAlgorithms.fairShareHeap(scheds);
+    for (Schedulable sched : sorted) {
+      Assert.assertSame(sched, heap.poll().getSchedulable());
+    }
+    Assert.assertTrue(heap.isEmpty());
+  }
+
   /**
    * Check that a given list of shares have been assigned to this.scheds.
    */
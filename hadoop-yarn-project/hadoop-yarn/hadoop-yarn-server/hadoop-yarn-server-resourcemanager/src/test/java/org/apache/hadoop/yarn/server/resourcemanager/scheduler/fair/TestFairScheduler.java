@@ -120,6 +120,9 @@ public void setUp() throws IOException {
 
   @After
   public void tearDown() {
+    if (scheduler != null) {
+      scheduler.stop();
+    }
     scheduler = null;
     resourceManager = null;
   }
@@ -306,6 +309,32 @@ public void testSimpleContainerAllocation() {
       getResourceUsage().getMemory());
   }
 
+  @Test (timeout = 10000)
+  public void testContinuousScheduling() throws Exception {
+    // Use a scheduler which assigns containers outside of node heartbeats
+    scheduler.stop();
+    scheduler = new FairScheduler();
+    Configuration conf = createConfiguration();
+    conf.setBoolean(FairSchedulerConfiguration.CONTINUOUS_SCHEDULING_ENABLED,
+        true);
+    scheduler.reinitialize(conf, resourceManager.getRMContext());
+
+    RMNode node1 = MockNodes.newNodeInfo(1, Resources.createResource(1024));
+    scheduler.handle(new NodeAddedSchedulerEvent(node1));
+    RMNode node2 = MockNodes.newNodeInfo(1, Resources.createResource(1024));
+    scheduler.handle(new NodeAddedSchedulerEvent(node2));
+
+    createSchedulingRequest(1024, "queue1", "user1", 2);
+    scheduler.update();
+
+    // Both requests are satisfied without any node heartbeat
+    FSLeafQueue queue1 = scheduler.getQueueManager().getLeafQueue("queue1");
+    while (queue1.getResourceUsage().getMemory() < 2048) {
+      Thread.sleep(10);
+    }
+    assertEquals(2048, queue1.getResourceUsage().getMemory());
+  }
+
   @Test (timeout = 5000)
   public void testSimpleContainerReservation() throws InterruptedException {
     // Add a node